@@ -69,8 +69,10 @@ import org.apache.derby.impl.sql.catalog.XPLAINStatementDescriptor;
 import org.apache.derby.impl.sql.catalog.XPLAINStatementTimingsDescriptor;
 import org.apache.derby.impl.sql.execute.JarUtil;
 import org.apache.derby.jdbc.InternalDriver;
+import org.apache.derby.iapi.store.access.ConglomerateController;
 import org.apache.derby.iapi.store.access.TransactionController;
 import org.apache.derby.iapi.sql.dictionary.AliasDescriptor;
+import org.apache.derby.iapi.sql.dictionary.ConglomerateDescriptor;
 import org.apache.derby.iapi.sql.dictionary.DataDictionary;
 import org.apache.derby.iapi.sql.dictionary.DataDescriptorGenerator;
 import org.apache.derby.iapi.sql.dictionary.PasswordHasher;
@@ -1305,6 +1307,117 @@ public class SystemProcedures  {
 		conn.close();
     }
 
+    /**
+    Implementation of SYSCS_UTIL.SYSCS_DEFRAGMENT_INDEX().
+    <p>
+    Code which implements the following system procedure:
+
+    void SYSCS_UTIL.SYSCS_DEFRAGMENT_INDEX(
+        IN SCHEMANAME        VARCHAR(128),
+        IN TABLENAME         VARCHAR(128),
+        IN INDEXNAME         VARCHAR(128))
+    <p>
+    Merges the underfilled leaf pages of an index into their neighbours and
+    returns the freed pages to the index, for reuse by later inserts.  Unlike
+    SYSCS_UTIL.SYSCS_INPLACE_COMPRESS_TABLE() it gets no exclusive table lock:
+    the work is done in small batches, each of which only latches the pages
+    it merges, while other transactions go on reading and changing the table.
+    Committed deleted rows are purged from the merged pages.
+    <p>
+    INDEXNAME:
+    The name of the index, or null to defragment every index of the table.
+    <p>
+    SQL example:
+    call SYSCS_UTIL.SYSCS_DEFRAGMENT_INDEX('US', 'CUSTOMER', 'CUSTOMER_IDX');
+
+    @exception SQLException if the table or the index does not exist, or
+    the table is locked by another transaction.
+    **/
+    public static void SYSCS_DEFRAGMENT_INDEX(
+    String  schema,
+    String  tablename,
+    String  indexname)
+		throws SQLException
+    {
+		LanguageConnectionContext lcc       = ConnectionUtil.getCurrentLCC();
+		TransactionController     tc        = lcc.getTransactionExecute();
+
+		try
+        {
+            // make sure that application code doesn't bypass security checks
+            // by calling this public entry point
+            SecurityUtil.authorize( Securable.DEFRAGMENT_INDEX );
+
+            DataDictionary data_dictionary = lcc.getDataDictionary();
+            SchemaDescriptor sd =
+                data_dictionary.getSchemaDescriptor(schema, tc, true);
+            TableDescriptor  td =
+                data_dictionary.getTableDescriptor(tablename, sd, tc);
+
+            if (td == null ||
+                td.getTableType() == TableDescriptor.VIEW_TYPE ||
+                td.getTableType() == TableDescriptor.VTI_TYPE)
+            {
+                throw StandardException.newException(
+                    SQLState.LANG_TABLE_NOT_FOUND,
+                    schema + "." + tablename);
+            }
+
+            // Open the base table with row locking, which keeps an intent
+            // lock on it until the end of the transaction, so that the
+            // indexes cannot be dropped while they are defragmented.
+            ConglomerateController base_cc =
+                tc.openConglomerate(
+                    td.getHeapConglomerateId(), false, 0,
+                    TransactionController.MODE_RECORD,
+                    TransactionController.ISOLATION_REPEATABLE_READ);
+            base_cc.close();
+
+            boolean found = false;
+            ConglomerateDescriptor[] cds = td.getConglomerateDescriptors();
+            for (int i = 0; i < cds.length; i++)
+            {
+                if (!cds[i].isIndex() ||
+                    (indexname != null &&
+                     !indexname.equals(cds[i].getConglomerateName())))
+                {
+                    continue;
+                }
+
+                found = true;
+
+                // Indexes which are duplicates of each other share their
+                // conglomerate, defragment it once.
+                long conglomId = cds[i].getConglomerateNumber();
+                boolean shared = false;
+                for (int j = 0; j < i; j++)
+                {
+                    if (cds[j].isIndex() &&
+                        cds[j].getConglomerateNumber() == conglomId)
+                    {
+                        shared = true;
+                    }
+                }
+
+                if (indexname == null && shared)
+                    continue;
+
+                tc.shrinkConglomerate(conglomId);
+            }
+
+            if (indexname != null && !found)
+            {
+                throw StandardException.newException(
+                    SQLState.LANG_INDEX_NOT_FOUND,
+                    indexname);
+            }
+        }
+		catch (StandardException se)
+		{
+			throw PublicAPI.wrapStandardException(se);
+		}
+    }
+
     public static String SYSCS_GET_RUNTIMESTATISTICS()
 		throws SQLException
     {
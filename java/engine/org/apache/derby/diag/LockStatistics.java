@@ -0,0 +1,266 @@
+/*
+
+   Derby - Class org.apache.derby.diag.LockStatistics
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.diag;
+
+// temp
+import org.apache.derby.impl.services.locks.TableNameInfo;
+
+import org.apache.derby.iapi.error.PublicAPI;
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.services.locks.ContainerLockStatistics;
+import org.apache.derby.iapi.sql.conn.LanguageConnectionContext;
+import org.apache.derby.iapi.sql.conn.ConnectionUtil;
+import org.apache.derby.iapi.store.access.TransactionController;
+
+import org.apache.derby.vti.VTITemplate;
+import org.apache.derby.vti.VTICosting;
+import org.apache.derby.vti.VTIEnvironment;
+
+import org.apache.derby.iapi.sql.ResultColumnDescriptor;
+import org.apache.derby.impl.jdbc.EmbedResultSetMetaData;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Iterator;
+
+/**
+	LockStatistics is a virtual table that shows how the tables and indexes
+	of the database have been locked since the database was booted.
+
+	This virtual table can be invoked by calling it
+	directly
+	<PRE> select * from SYSCS_DIAG.LOCK_STATISTICS </PRE>
+
+	<P>Unlike SYSCS_DIAG.LOCK_TABLE, which shows the locks held at the
+	moment, the counts in this table are cumulative, so that the tables
+	and indexes where transactions wait for each other can be found after
+	the fact. Row locks are counted in the statistics of the table or
+	index the row belongs to.
+
+	<P>The LockStatistics virtual table has the following columns:
+	<UL>
+	<LI>TABLENAME varchar(128) - not nullable.  The name of the base table
+	the locks are for.</LI>
+	<LI>INDEXNAME varchar(128) - nullable.  If non-null, the locks are on
+	this index of the table.</LI>
+	<LI>TABLETYPE varchar(9) - not nullable.  'T' for user table, 'S' for
+	system table.</LI>
+	<LI>ACQUISITIONS bigint - not nullable.  The number of locks
+	granted.</LI>
+	<LI>WAITS bigint - not nullable.  The number of lock requests that had
+	to wait for another transaction.</LI>
+	<LI>WAIT_TIME bigint - not nullable.  The total time lock requests have
+	waited, in milliseconds.</LI>
+	<LI>TIMEOUTS bigint - not nullable.  The number of waits that ended with
+	a lock timeout.</LI>
+	<LI>DEADLOCKS bigint - not nullable.  The number of waits that ended
+	because the transaction was picked as the victim of a deadlock.</LI>
+	<LI>ESCALATIONS bigint - not nullable.  The number of times the row
+	locks of a transaction were escalated to a table lock.</LI>
+	</UL>
+*/
+public class LockStatistics extends VTITemplate implements VTICosting {
+
+	private Iterator<ContainerLockStatistics> statistics;
+	private ContainerLockStatistics currentRow;
+	private TableNameInfo tabInfo;
+	private TransactionController tc;
+	private String tableName;
+	private String indexName;
+	private String tableType;
+	private boolean wasNull;
+	boolean initialized;
+
+    public  LockStatistics()    throws StandardException
+    {
+        DiagUtil.checkAccess();
+    }
+
+	/**
+		@see java.sql.ResultSet#getMetaData
+	 */
+	public ResultSetMetaData getMetaData()
+	{
+		return metadata;
+	}
+
+	/**
+		@see java.sql.ResultSet#next
+		@exception SQLException if no transaction context can be found, or
+		other Derby internal errors are encountered.
+	 */
+	public boolean next() throws SQLException
+	{
+		try
+		{
+			if (!initialized)
+			{
+				LanguageConnectionContext lcc =
+					ConnectionUtil.getCurrentLCC();
+
+				tc = lcc.getTransactionExecute();
+				statistics = tc.getAccessManager().getLockFactory().
+					getLockStatistics().iterator();
+				tabInfo = new TableNameInfo(lcc, true);
+				initialized = true;
+			}
+
+			if (statistics == null || !statistics.hasNext())
+			{
+				statistics = null;
+				currentRow = null;
+				return false;
+			}
+
+			currentRow = statistics.next();
+
+			Long conglomId =
+				tc.findConglomid(currentRow.getContainerId());
+			tableName = tabInfo.getTableName(conglomId);
+			indexName = tabInfo.getIndexName(conglomId);
+			tableType = tabInfo.getTableType(conglomId);
+		}
+		catch (StandardException se)
+		{
+			throw PublicAPI.wrapStandardException(se);
+		}
+
+		return true;
+	}
+
+	/**
+		@see java.sql.ResultSet#close
+	 */
+	public void close()
+	{
+		statistics = null;
+		currentRow = null;
+		tabInfo = null;
+	}
+
+	/**
+		@see java.sql.ResultSet#getString
+	 */
+	public String getString(int columnNumber)
+	{
+		String val;
+		switch (columnNumber)
+		{
+		case 1:
+			val = tableName;
+			break;
+		case 2:
+			val = indexName;
+			break;
+		case 3:
+			val = tableType;
+			break;
+		default:
+			val = Long.toString(getLong(columnNumber));
+			break;
+		}
+		wasNull = (val == null);
+		return val;
+	}
+
+	/**
+		@see java.sql.ResultSet#getLong
+	 */
+	public long getLong(int columnNumber)
+	{
+		wasNull = false;
+		switch (columnNumber)
+		{
+		case 4:
+			return currentRow.getAcquisitions();
+		case 5:
+			return currentRow.getWaits();
+		case 6:
+			return currentRow.getWaitTime();
+		case 7:
+			return currentRow.getTimeouts();
+		case 8:
+			return currentRow.getDeadlocks();
+		case 9:
+			return currentRow.getEscalations();
+		default:
+			return 0;
+		}
+	}
+
+	/**
+		@see java.sql.ResultSet#wasNull
+	 */
+	public boolean wasNull()
+	{
+		return wasNull;
+	}
+
+
+	/**  VTI costing interface */
+
+	/**
+		@see VTICosting#getEstimatedRowCount
+	 */
+	public double getEstimatedRowCount(VTIEnvironment vtiEnvironment)
+	{
+		return VTICosting.defaultEstimatedRowCount;
+	}
+
+	/**
+		@see VTICosting#getEstimatedCostPerInstantiation
+	 */
+	public double getEstimatedCostPerInstantiation(VTIEnvironment vtiEnvironment)
+	{
+		return VTICosting.defaultEstimatedCost;
+	}
+
+	/**
+		@return false
+		@see VTICosting#supportsMultipleInstantiations
+	 */
+	public boolean supportsMultipleInstantiations(VTIEnvironment vtiEnvironment)
+	{
+		return false;
+	}
+
+
+	/*
+	** Metadata
+	*/
+	private static final ResultColumnDescriptor[] columnInfo = {
+
+		EmbedResultSetMetaData.getResultColumnDescriptor("TABLENAME",    Types.VARCHAR, false, 128),
+		EmbedResultSetMetaData.getResultColumnDescriptor("INDEXNAME",    Types.VARCHAR, true,  128),
+		EmbedResultSetMetaData.getResultColumnDescriptor("TABLETYPE",    Types.VARCHAR, false, 9),
+		EmbedResultSetMetaData.getResultColumnDescriptor("ACQUISITIONS", Types.BIGINT,  false),
+		EmbedResultSetMetaData.getResultColumnDescriptor("WAITS",        Types.BIGINT,  false),
+		EmbedResultSetMetaData.getResultColumnDescriptor("WAIT_TIME",    Types.BIGINT,  false),
+		EmbedResultSetMetaData.getResultColumnDescriptor("TIMEOUTS",     Types.BIGINT,  false),
+		EmbedResultSetMetaData.getResultColumnDescriptor("DEADLOCKS",    Types.BIGINT,  false),
+		EmbedResultSetMetaData.getResultColumnDescriptor("ESCALATIONS",  Types.BIGINT,  false),
+	};
+
+    private static final ResultSetMetaData metadata =
+        new EmbedResultSetMetaData(columnInfo);
+}
@@ -0,0 +1,195 @@
+/*
+
+   Derby - Class org.apache.derby.diag.LogStatistics
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.diag;
+
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.sql.conn.LanguageConnectionContext;
+import org.apache.derby.iapi.sql.conn.ConnectionUtil;
+
+import org.apache.derby.vti.VTITemplate;
+import org.apache.derby.vti.VTICosting;
+import org.apache.derby.vti.VTIEnvironment;
+
+import org.apache.derby.iapi.sql.ResultColumnDescriptor;
+import org.apache.derby.impl.jdbc.EmbedResultSetMetaData;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+	LogStatistics is a virtual table that shows statistics about the
+	transaction log of the database.
+
+	This virtual table can be invoked by calling it
+	directly
+	<PRE> select * from SYSCS_DIAG.LOG_STATISTICS </PRE>
+
+	<P>The LogStatistics virtual table has the following columns:
+	<UL>
+	<LI>NAME varchar(128) - not nullable.  The name of the statistic.</LI>
+	<LI>VALUE bigint - not nullable.  The value of the statistic.</LI>
+	</UL>
+
+	<P>The following statistics are shown:
+	<UL>
+	<LI>LOG_FILE_NUMBER - the number of the current log file.</LI>
+	<LI>LOG_SWITCHES - the number of log file switches since the database
+	was booted.</LI>
+	<LI>LOG_SWITCHES_FROM_POOL - the number of those switches that reused a
+	spare log file (see derby.storage.logFilePoolSize).</LI>
+	<LI>LOG_SWITCH_TIME_TOTAL - the total time spent switching log files, in
+	microseconds.</LI>
+	<LI>LOG_SWITCH_TIME_MAX - the longest log file switch, in
+	microseconds.</LI>
+	<LI>SPARE_LOG_FILES - the number of spare log files ready for use.</LI>
+	<LI>COMPRESSED_LOG_RECORDS - the number of log records written in
+	compressed form, see derby.storage.logCompressionThreshold.</LI>
+	<LI>COMPRESSED_LOG_BYTES_SAVED - the number of bytes log compression
+	has kept out of the log.</LI>
+	</UL>
+*/
+public class LogStatistics extends VTITemplate implements VTICosting {
+
+	private Iterator<Map.Entry<String, Long>> statistics;
+	private Map.Entry<String, Long> currentRow;
+	boolean initialized;
+
+    public  LogStatistics()    throws StandardException
+    {
+        DiagUtil.checkAccess();
+    }
+
+	/**
+		@see java.sql.ResultSet#getMetaData
+	 */
+	public ResultSetMetaData getMetaData()
+	{
+		return metadata;
+	}
+
+	/**
+		@see java.sql.ResultSet#next
+		@exception SQLException if no transaction context can be found
+	 */
+	public boolean next() throws SQLException
+	{
+		if (!initialized)
+		{
+			LanguageConnectionContext lcc = ConnectionUtil.getCurrentLCC();
+
+			statistics = lcc.getTransactionExecute().
+			   getAccessManager().getLogStatistics().entrySet().iterator();
+
+			initialized = true;
+		}
+
+		if (statistics == null || !statistics.hasNext())
+		{
+			statistics = null;
+			currentRow = null;
+			return false;
+		}
+
+		currentRow = statistics.next();
+		return true;
+	}
+
+	/**
+		@see java.sql.ResultSet#close
+	 */
+	public void close()
+	{
+		statistics = null;
+		currentRow = null;
+	}
+
+	/**
+		@see java.sql.ResultSet#getString
+	 */
+	public String getString(int columnNumber)
+	{
+		if (columnNumber == 1)
+			return currentRow.getKey();
+		return currentRow.getValue().toString();
+	}
+
+	/**
+		@see java.sql.ResultSet#getLong
+	 */
+	public long getLong(int columnNumber)
+	{
+		return currentRow.getValue().longValue();
+	}
+
+	/**
+		Neither column is nullable.
+		@see java.sql.ResultSet#wasNull
+	 */
+	public boolean wasNull()
+	{
+		return false;
+	}
+
+
+	/**  VTI costing interface */
+
+	/**
+		@see VTICosting#getEstimatedRowCount
+	 */
+	public double getEstimatedRowCount(VTIEnvironment vtiEnvironment)
+	{
+		return VTICosting.defaultEstimatedRowCount;
+	}
+
+	/**
+		@see VTICosting#getEstimatedCostPerInstantiation
+	 */
+	public double getEstimatedCostPerInstantiation(VTIEnvironment vtiEnvironment)
+	{
+		return VTICosting.defaultEstimatedCost;
+	}
+
+	/**
+		@return false
+		@see VTICosting#supportsMultipleInstantiations
+	 */
+	public boolean supportsMultipleInstantiations(VTIEnvironment vtiEnvironment)
+	{
+		return false;
+	}
+
+
+	/*
+	** Metadata
+	*/
+	private static final ResultColumnDescriptor[] columnInfo = {
+
+		EmbedResultSetMetaData.getResultColumnDescriptor("NAME",  Types.VARCHAR, false, 128),
+		EmbedResultSetMetaData.getResultColumnDescriptor("VALUE", Types.BIGINT,  false),
+	};
+
+    private static final ResultSetMetaData metadata =
+        new EmbedResultSetMetaData(columnInfo);
+}
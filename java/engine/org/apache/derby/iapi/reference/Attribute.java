@@ -194,6 +194,14 @@ public interface Attribute {
 	*/
 	String DRDAID_ATTR = "drdaID";
 
+	/**
+		The attribute that is used to request asynchronous commit for the
+		connection. Commits return once the commit log record is buffered,
+		and the log is synced in the background within
+		derby.storage.logAsyncCommitMaxDelay milliseconds.
+	*/
+	String ASYNC_COMMIT_ATTR = "asyncCommit";
+
 	/**
 		The attribute that is used to allow upgrade.
 	*/
@@ -340,6 +340,24 @@ public interface Property {
 	 */
 	int MIN_LOCKS_ESCALATION_THRESHOLD = 100;
 
+	/**
+		derby.locks.escalationLockTableSize
+		<BR>
+		The number of locked objects in the lock table above which a
+		transaction tries to escalate its row locks to table locks once it
+		holds a quarter of LOCKS_ESCALATION_THRESHOLD locks, instead of
+		waiting until it holds all of them. Keeps the lock table from
+		growing without bound when many transactions hold many row locks.
+		The String value must be convertible to an int. Default is 0, which
+		means the lock table size is not considered.
+		<BR>
+		This property takes effect dynamically.
+
+		Undocumented.
+	 */
+	String LOCKS_ESCALATION_LOCK_TABLE_SIZE =
+		"derby.locks.escalationLockTableSize";
+
 	/**
 		Configuration parameter for deadlock timeouts, set in seconds.
 	*/
@@ -378,6 +396,23 @@ public interface Property {
 	 */
 	public static final String DEADLOCK_TRACE = "derby.locks.deadlockTrace";
 
+	/**
+		derby.locks.deadlockDetectorInterval
+		<BR>
+		If set to a positive number of milliseconds, a background thread
+		looks for deadlocks among the waiting lock requests that often,
+		and lock requests no longer look for deadlocks themselves after
+		derby.locks.deadlockTimeout. The victim of a deadlock is the
+		transaction which has written the fewest bytes of log. Default
+		value is 0, which means no background detection.
+		<BR>
+		This property takes effect dynamically.
+
+		Undocumented.
+	 */
+	public static final String DEADLOCK_DETECTOR_INTERVAL =
+		"derby.locks.deadlockDetectorInterval";
+
 	/**
 		Configuration parameter for lock wait timeouts, set in seconds.
 	*/
@@ -514,7 +549,60 @@ public interface Property {
 		<P>
 	*/
 	String STORAGE_TEMP_DIRECTORY = "derby.storage.tempDirectory";
-	
+
+	/**
+		derby.storage.indexFillFactor
+		<BR>
+		How full, in percent, the pages of an index are left when the index
+		is built from sorted rows, by CREATE INDEX or by a bulk insert into
+		an empty table. Leaving room on the pages lets later inserts into
+		the index go without splitting pages. The String value must be
+		convertible to an int between MIN_INDEX_FILL_FACTOR and
+		MAX_INDEX_FILL_FACTOR. The
+		default is 100.
+		<BR>
+		Undocumented.
+	*/
+	String INDEX_FILL_FACTOR = "derby.storage.indexFillFactor";
+
+	/**
+		The default value for INDEX_FILL_FACTOR
+	*/
+	int DEFAULT_INDEX_FILL_FACTOR = 100;
+
+	/**
+		The minimum value for INDEX_FILL_FACTOR
+	*/
+	int MIN_INDEX_FILL_FACTOR = 10;
+
+	/**
+		The maximum value for INDEX_FILL_FACTOR
+	*/
+	int MAX_INDEX_FILL_FACTOR = 100;
+
+	/**
+		derby.storage.indexSortThreads
+		<BR>
+		The number of worker threads which sort the merge runs of the
+		external sorts of CREATE INDEX and of the index rebuilds of
+		SYSCS_UTIL.SYSCS_COMPRESS_TABLE. The String value must be
+		convertible to an int between 1 and MAX_INDEX_SORT_THREADS. The
+		default is 1, which sorts on the thread building the index.
+		<BR>
+		Undocumented.
+	*/
+	String INDEX_SORT_THREADS = "derby.storage.indexSortThreads";
+
+	/**
+		The default value for INDEX_SORT_THREADS
+	*/
+	int DEFAULT_INDEX_SORT_THREADS = 1;
+
+	/**
+		The maximum value for INDEX_SORT_THREADS
+	*/
+	int MAX_INDEX_SORT_THREADS = 64;
+
     /**
      * derby.system.durability
      * <p>
@@ -751,6 +839,46 @@ public interface Property {
 	int MIN_LANGUAGE_STALE_PLAN_CHECK_INTERVAL = 5;
 
 
+	/**
+		derby.language.parallelScanThreads
+		<BR>
+		The number of worker threads which read the rows of a heap for
+		COUNT, SUM, AVG, MIN and MAX aggregates over INTEGER, BIGINT, DOUBLE
+		and DATE columns, each worker reading other pages of the heap. The
+		String value must be convertible to an int between 1 and
+		MAX_LANG_PARALLEL_SCAN_THREADS. The default is 1, which reads the
+		heap on the thread executing the statement.
+		<BR>
+		Undocumented.
+	*/
+	String LANG_PARALLEL_SCAN_THREADS = "derby.language.parallelScanThreads";
+
+	/**
+		The default value for LANG_PARALLEL_SCAN_THREADS
+	*/
+	int DEFAULT_LANG_PARALLEL_SCAN_THREADS = 1;
+
+	/**
+		The maximum value for LANG_PARALLEL_SCAN_THREADS
+	*/
+	int MAX_LANG_PARALLEL_SCAN_THREADS = 64;
+
+	/**
+		derby.language.parallelScanMinRows
+		<BR>
+		The number of rows the optimizer must estimate that a scan returns
+		before the scan is read by the worker threads of
+		LANG_PARALLEL_SCAN_THREADS.
+		<BR>
+		Undocumented.
+	*/
+	String LANG_PARALLEL_SCAN_MIN_ROWS = "derby.language.parallelScanMinRows";
+
+	/**
+		The default value for LANG_PARALLEL_SCAN_MIN_ROWS
+	*/
+	int DEFAULT_LANG_PARALLEL_SCAN_MIN_ROWS = 100000;
+
 	/*
 		Statement plan cache size
 		By default, 100 statements are cached
@@ -1048,8 +1176,193 @@ public interface Property {
         Undocumented.
 	 */
 	public static final String LOG_BUFFER_SIZE = "derby.storage.logBufferSize";
-	
-	
+
+	/**
+		Property name for enabling group commit. When true, transactions
+		that need the log synced at commit hand their commit log instant to
+		a dedicated log flusher thread, which writes and syncs the log once
+		on behalf of every transaction waiting at that time.
+
+        Undocumented.
+	 */
+	public static final String LOG_GROUP_COMMIT = "derby.storage.logGroupCommit";
+
+	/**
+		Property name for the longest time (in microseconds) the log flusher
+		waits for more committing transactions to join a group commit before
+		it syncs the log.
+
+        Undocumented.
+	 */
+	public static final String LOG_GROUP_COMMIT_MAX_WAIT =
+        "derby.storage.logGroupCommitMaxWait";
+
+	/**
+		Property name for the number of waiting transactions at which the log
+		flusher stops waiting for more to join a group commit and syncs the
+		log at once.
+
+        Undocumented.
+	 */
+	public static final String LOG_GROUP_COMMIT_MAX_BATCH_SIZE =
+        "derby.storage.logGroupCommitMaxBatchSize";
+
+	/**
+		Property name for the longest time (in milliseconds) the commit log
+		record of a connection using asynchronous commit (the asyncCommit
+		connection attribute) may stay unsynced before the log flusher
+		writes and syncs it.
+
+        Undocumented.
+	 */
+	public static final String LOG_ASYNC_COMMIT_MAX_DELAY =
+        "derby.storage.logAsyncCommitMaxDelay";
+
+	/**
+		Property name for the number of spare log files kept ready in the
+		log directory. Log files no longer needed after a checkpoint are
+		zeroed and kept as spares instead of being deleted, and a log switch
+		renames a spare file rather than creating and preallocating a new
+		one. 0 (the default) disables the pool.
+
+        Undocumented.
+	 */
+	public static final String LOG_FILE_POOL_SIZE =
+        "derby.storage.logFilePoolSize";
+
+	/**
+		Property name for the number of threads that redo log records during
+		crash recovery. Log operations on single pages are redone by that
+		many worker threads, partitioned by container, while the log is still
+		read sequentially. 1 (the default) redoes the log serially.
+
+        Undocumented.
+	 */
+	public static final String LOG_REDO_THREADS =
+        "derby.storage.redoThreads";
+
+	/**
+		Property name for the length in bytes from which log records are
+		compressed before they are written to the log. Only log records whose
+		compressed form is at least an eighth shorter are compressed. 0 (the
+		default) never compresses log records. Log records are not compressed
+		until the database has been upgraded to 10.16, since older versions
+		of Derby cannot recover a log with compressed log records.
+
+        Undocumented.
+	 */
+	public static final String LOG_COMPRESSION_THRESHOLD =
+        "derby.storage.logCompressionThreshold";
+
+	/**
+		Property name for enabling incremental checkpoints. A background
+		checkpoint then keeps a table of the dirty pages with the log instant
+		of their oldest change, and only writes out the pages changed before
+		the previous checkpoint instead of every dirty page. The redo low
+		water mark is moved to the oldest change left in the cache.
+		Checkpoints requested by users, backup and shutdown still write out
+		every dirty page. false (the default) disables them.
+
+        Undocumented.
+	 */
+	public static final String STORAGE_INCREMENTAL_CHECKPOINT =
+        "derby.storage.incrementalCheckpoint";
+
+	/**
+		Property name for the number of pages per second an incremental
+		checkpoint writes out, to spread its I/O over time. 0 means no limit,
+		the default is 1000.
+
+        Undocumented.
+	 */
+	public static final String STORAGE_CHECKPOINT_PAGE_RATE =
+        "derby.storage.checkpointPageRate";
+
+	/**
+		Property name for reading pages of data files through memory
+		mapped segments of the file instead of a read system call for each
+		page. Pages are still written through the file channel. Each
+		container maps its file in segments of 64 megabytes as they are
+		read, which takes address space but no heap. Platforms which cannot
+		delete or shrink a file while it is mapped should not use this.
+		false (the default) reads pages with the file channel.
+
+        Undocumented.
+	 */
+	public static final String STORAGE_MAPPED_READS =
+        "derby.storage.mappedReads";
+
+	/**
+		Property name for the number of pages read ahead of a sequential
+		scan of a table or index. Once a scan has read a few pages in
+		ascending order, a background thread reads up to this many of the
+		following pages into the file system cache. 0 (the default) turns
+		read-ahead off.
+
+        Undocumented.
+	 */
+	public static final String STORAGE_READ_AHEAD_PAGES =
+        "derby.storage.readAheadPages";
+
+	/**
+		Property name for the largest number of pages that all scans
+		together may have queued for read-ahead and not yet read. Requests
+		beyond that are dropped. The default is 8 times
+		derby.storage.readAheadPages.
+
+        Undocumented.
+	 */
+	public static final String STORAGE_READ_AHEAD_BUDGET =
+        "derby.storage.readAheadBudget";
+
+	/**
+		Property name for the percentage of the page cache that the
+		background writer keeps clean, counted from the next page to be
+		evicted. The background writer runs in a thread of its own and writes
+		the dirty pages there which have not been used recently, so that
+		threads reading a page into the cache seldom have to write one out
+		first. 0 (the default) turns the background writer off.
+
+        Undocumented.
+	 */
+	public static final String STORAGE_BACKGROUND_WRITER_PERCENT =
+        "derby.storage.backgroundWriterPercent";
+
+	/**
+		Property name for the maximum number of pages per second written by
+		the background writer. The default is 1000.
+
+        Undocumented.
+	 */
+	public static final String STORAGE_BACKGROUND_WRITER_RATE =
+        "derby.storage.backgroundWriterRate";
+
+	/**
+		Property name for the replacement policy of the page cache. "clock"
+		(the default) evicts the pages that have not been used since the
+		clock hand last passed them. "2Q" keeps a quarter of the cache for
+		pages that have been read once, and only lets pages that are read
+		again soon after being evicted into the rest of the cache, so that
+		a scan of a large table does not push out the pages that are used
+		over and over again.
+
+        Undocumented.
+	 */
+	public static final String STORAGE_PAGE_REPLACEMENT_POLICY =
+        "derby.storage.pageReplacementPolicy";
+
+	/**
+		Property name for letting scans at read committed isolation read the
+		committed version of a row which another transaction is changing,
+		instead of waiting for the lock on the row. Only applies to rows
+		read from heap conglomerates. Default is false.
+
+        Undocumented.
+	 */
+	public static final String STORAGE_SNAPSHOT_READS =
+        "derby.storage.snapshotReads";
+
+
 	/*
 	** Replication
 	*/
@@ -254,6 +254,13 @@ public enum Securable
              AliasInfo.ALIAS_TYPE_PROCEDURE_AS_CHAR
              ),
             
+        DEFRAGMENT_INDEX
+            (
+             SchemaDescriptor.SYSCS_UTIL_SCHEMA_UUID,
+             "SYSCS_DEFRAGMENT_INDEX",
+             AliasInfo.ALIAS_TYPE_PROCEDURE_AS_CHAR
+             ),
+            
             ;
 
         /** UUID string of schema holding the system routine associated with the operation */
@@ -39,5 +39,22 @@ public interface CacheFactory {
 	
 	public CacheManager newCacheManager(CacheableFactory holderFactory, String name,
 										int initialSize, int maximumSize);
+
+	/**
+		Create a cache as above, choosing whether its replacement policy
+		should resist scans. A scan resistant cache does not let a large
+		number of objects that are used only once, such as the pages read by
+		a scan of a large table, push out the objects that are used over and
+		over again.
+
+		@param holderFactory The factory for the objects that are to be cached.
+		@param name			The name of the cache
+		@param initialSize	The initial capacity of the cache
+		@param maximumSize  The maximum number of objects the cache will hold
+		@param scanResistant Whether to use a scan resistant replacement policy
+	*/
+	public CacheManager newCacheManager(CacheableFactory holderFactory, String name,
+										int initialSize, int maximumSize,
+										boolean scanResistant);
 }
 
@@ -71,6 +71,24 @@ public interface CacheManager {
 	*/
 	public Cacheable find(Object key) throws StandardException;
 
+	/**
+		Find an object in the cache, adding it if it is not there, for a
+		caller that will use the object once and then not again for a
+		long time, such as a scan passing over every page of a table.
+		<BR>
+		The object is found and kept exactly as by find(), but the
+		replacement policy is told not to count this access as a use, so
+		that objects used once do not push out the objects that are used
+		over and over again.
+
+		@return A reference to an object in the cache, or null if the object cannot be found.
+
+		@exception StandardException Standard Derby error policy.
+
+		@see #find
+	*/
+	public Cacheable findUseOnce(Object key) throws StandardException;
+
 	/**
         Find an object in the cache.
         <p>
@@ -237,6 +255,21 @@ public interface CacheManager {
 	*/
 	public void useDaemonService(DaemonService daemon);
 
+	/**
+		Start a background writer which keeps the objects that are next in
+		line to be evicted clean, so that the threads needing room for a new
+		object seldom have to clean one first. The writer runs in a thread of
+		its own until the cache is shut down. Calling this method again has
+		no effect.
+
+		@param cleanPercent percentage of the cache, counted from the next
+		object to be evicted, to keep clean
+		@param maxCleansPerSecond the maximum number of objects the writer
+		cleans per second
+	*/
+	public void startBackgroundWriter(int cleanPercent,
+									  int maxCleansPerSecond);
+
 
 	/**
 		Discard all objects that match the partialKey (or exact key).
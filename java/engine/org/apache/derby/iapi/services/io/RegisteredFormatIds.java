@@ -536,6 +536,8 @@ private static final    String[] TwoByte = {
         /* 475 */       "org.apache.derby.catalog.types.AggregateAliasInfo",
         /* 476 */       "org.apache.derby.impl.sql.execute.MatchingClauseConstantAction",
         /* 477 */       "org.apache.derby.impl.sql.execute.MergeConstantAction",
+        /* 478 */       "org.apache.derby.impl.store.access.hash.HashIndex",
+        /* 479 */       "org.apache.derby.impl.store.access.hash.HashIndexUndo",
 };
 
     /** Return the number of two-byte format ids */
@@ -0,0 +1,95 @@
+/*
+ * Derby - Class org.apache.derby.iapi.services.locks.ContainerLockStatistics
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.derby.iapi.services.locks;
+
+/**
+ * The lock statistics collected by a lock factory for one container (a
+ * table or an index), see {@link LockFactory#getLockStatistics()}. The
+ * counts are a snapshot, taken while other threads may be changing them.
+ */
+public final class ContainerLockStatistics {
+
+    private final long containerId;
+    private final long acquisitions;
+    private final long waits;
+    private final long waitTime;
+    private final long timeouts;
+    private final long deadlocks;
+    private final long escalations;
+
+    /**
+     * Create a snapshot of the lock statistics of a container.
+     *
+     * @param containerId the id of the container
+     * @param acquisitions the number of locks granted
+     * @param waits the number of lock requests that had to wait
+     * @param waitTime the total time spent waiting, in milliseconds
+     * @param timeouts the number of waits that timed out
+     * @param deadlocks the number of waits ended as a deadlock victim
+     * @param escalations the number of times row locks were escalated to a
+     *   table lock
+     */
+    public ContainerLockStatistics(long containerId, long acquisitions,
+                                   long waits, long waitTime, long timeouts,
+                                   long deadlocks, long escalations) {
+        this.containerId = containerId;
+        this.acquisitions = acquisitions;
+        this.waits = waits;
+        this.waitTime = waitTime;
+        this.timeouts = timeouts;
+        this.deadlocks = deadlocks;
+        this.escalations = escalations;
+    }
+
+    /** Get the id of the container. */
+    public long getContainerId() {
+        return containerId;
+    }
+
+    /** Get the number of locks granted on the container and its rows. */
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    /** Get the number of lock requests that could not be granted at once. */
+    public long getWaits() {
+        return waits;
+    }
+
+    /** Get the total time lock requests have waited, in milliseconds. */
+    public long getWaitTime() {
+        return waitTime;
+    }
+
+    /** Get the number of lock requests that timed out. */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /** Get the number of lock requests picked as a deadlock victim. */
+    public long getDeadlocks() {
+        return deadlocks;
+    }
+
+    /** Get the number of times row locks were escalated to a table lock. */
+    public long getEscalations() {
+        return escalations;
+    }
+}
@@ -25,6 +25,7 @@ import org.apache.derby.iapi.util.Matchable;
 import org.apache.derby.iapi.error.StandardException;
 import org.apache.derby.iapi.services.property.PropertySetCallback;
 import java.util.Enumeration;
+import java.util.List;
 
 
 /**
@@ -225,6 +226,36 @@ public interface LockFactory extends PropertySetCallback {
 	 */
 	public Enumeration makeVirtualLockTable();
 
+	/**
+		Note that the locks held by a transaction on the rows of a
+		container have been replaced by a lock on the container itself.
+		Only used for the lock statistics.
+
+		@param ref the lock on the container
+	 */
+	public void countEscalation(Lockable ref);
+
+	/**
+		Get the lock statistics collected for each container since the lock
+		factory was booted. Only containers whose locks have been requested
+		are included.
+		@see Lockable#getLockStatisticsContainerId
+	 */
+	public List<ContainerLockStatistics> getLockStatistics();
+
+	/**
+		Forget the lock statistics of a container, once the container has
+		been removed for good.
+
+		@param ref the lock on the container
+	 */
+	public void removeLockStatistics(Lockable ref);
+
+	/**
+		Get the number of objects currently locked or waited for.
+	 */
+	public int getLockedObjectCount();
+
 }
 
 
@@ -67,4 +67,13 @@ public interface LockOwner {
      */
     public boolean nestsUnder( LockOwner other );
 
+    /**
+     * <p>
+     * Return the number of bytes of log written by this owner, as a measure
+     * of the work that is lost if it is aborted. Used to pick the victim
+     * when the lock manager breaks a deadlock.
+     * </p>
+     */
+    public long getLogBytesWritten();
+
 }
@@ -148,4 +148,19 @@ public interface Lockable {
 		@see VirtualLockTable
 	 */
 	public boolean lockAttributes(int flag, Hashtable<String,Object> attributes);
+
+	/**
+		Return the id of the container (table or index) this lockable object
+		belongs to, if locks on it should be counted in the lock statistics
+		that the lock manager keeps per container. The id is the same as the
+		VirtualLockTable.CONTAINERID attribute.
+		<P>
+		MT - this routine must be MP safe, it is called on every lock request
+		and must be cheap.
+		<P>
+		@return the container id, or -1 if locks on this object should not be
+		counted.
+		@see LockFactory#getLockStatistics
+	 */
+	public long getLockStatisticsContainerId();
 }
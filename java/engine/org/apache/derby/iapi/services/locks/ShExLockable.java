@@ -110,4 +110,12 @@ public class ShExLockable implements Lockable
 		return true;
 	}
 
+	/**
+		Not counted in the lock statistics.
+	 */
+	public long getLockStatisticsContainerId()
+	{
+		return -1;
+	}
+
 }
@@ -109,6 +109,19 @@ public interface AccessPath {
 	 */
 	public int getLockMode();
 
+	/**
+	 * Set whether this access path belongs to a plan that avoids a sort,
+	 * which relies on the join strategy to return the rows in the order
+	 * of the outer rows.
+	 */
+	public void setSortAvoidance(boolean sortAvoidance);
+
+	/**
+	 * Return whether this access path belongs to a plan that avoids a
+	 * sort, as last set in setSortAvoidance().
+	 */
+	public boolean getSortAvoidance();
+
 	/**
 	 * Copy all information from the given AccessPath to this one.
 	 */
@@ -292,6 +292,21 @@ public interface Optimizer
      */
     public  Optimizable getOptimizable( int idx );
 
+    /**
+     * Get the Optimizable in the first position of the join order that is
+     * currently being costed. If the Optimizable being costed is itself in
+     * the first position, this is the Optimizable given to
+     * setOutermostOptimizable(), or null if nothing is outer to it.
+     */
+    public  Optimizable getOutermostOptimizable();
+
+    /**
+     * Tell the optimizer which Optimizable produces the rows that are outer
+     * to the first position of its join order, as the left side of a join
+     * node does for the right side.
+     */
+    public  void    setOutermostOptimizable( Optimizable outermost );
+
 	/**
 	 * Process (i.e. add, load, or remove) current best join order as the
 	 * best one for some outer query or ancestor node, represented by another
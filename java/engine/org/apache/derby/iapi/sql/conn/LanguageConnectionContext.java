@@ -1042,6 +1042,21 @@ public interface LanguageConnectionContext extends Context {
 	 */
 	public void setDrdaID(String drdaID);
 
+	/**
+	 * Tell whether regular commits of this connection are asynchronous,
+	 * that is, return before the commit log record has been synced.
+	 *
+	 * @return true if this connection uses asynchronous commit
+	 */
+	public boolean isAsyncCommit();
+
+	/**
+	 * Turn asynchronous commit on or off for this connection.
+	 *
+	 * @param asyncCommit true to return from commit before the log is synced
+	 */
+	public void setAsyncCommit(boolean asyncCommit);
+
 	/**
 	 * Get the database name of this LCC.
 	 *
@@ -136,9 +136,12 @@ public interface DataDictionary
 	/** Derby 10.14 System Catalog version */
 	public static final int DD_VERSION_DERBY_10_14		= 260;
 
-	/** Derby 10.14 System Catalog version */
+	/** Derby 10.15 System Catalog version */
 	public static final int DD_VERSION_DERBY_10_15		= 270;
 
+	/** Derby 10.16 System Catalog version */
+	public static final int DD_VERSION_DERBY_10_16		= 280;
+
 	// general info
 	public	static	final	String	DATABASE_ID = "derby.databaseID";
 
@@ -328,6 +328,16 @@ public class IndexRowGenerator implements IndexDescriptor, Formatable
 		return id.indexType();
 	}
 
+	/**
+	 * Tell whether the index keeps its rows in key order.  A hash index
+	 * does not, so it can only be used to look up rows with equal values
+	 * on all of its key columns.
+	 */
+	public boolean isOrdered()
+	{
+		return !"HASH".equals(id.indexType());
+	}
+
 	public String toString()
 	{
 		return id.toString();
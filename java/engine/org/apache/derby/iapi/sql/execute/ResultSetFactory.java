@@ -415,6 +415,9 @@ public interface ResultSetFactory {
 		@param optimizerEstimatedRowCount	Estimated total # of rows by
 											optimizer
 		@param optimizerEstimatedCost		Estimated total cost by optimizer
+		@param hashCapacity	the number of distinct rows to hold in a hash
+			table, which removes the duplicates before the sort, or 0 to
+			remove them in the sort
 		@return the distinct operation as a result set.
 		@exception StandardException thrown when unable to create the
 			result set
@@ -427,7 +430,8 @@ public interface ResultSetFactory {
 		int rowSize,
 		int resultSetNumber, 
 		double optimizerEstimatedRowCount,
-		double optimizerEstimatedCost) 
+		double optimizerEstimatedCost,
+		int hashCapacity) 
 			throws StandardException;
 
 	/**
@@ -516,6 +520,8 @@ public interface ResultSetFactory {
 											optimizer
 		@param optimizerEstimatedCost		Estimated total cost by optimizer
 		@param isRollup true if this is a GROUP BY ROLLUP()
+		@param hashCapacity	the number of groups to aggregate in a hash
+			table before they are sorted, or 0 to aggregate them in the sort
 		@return the scalar aggregation operation as a result set.
 		@exception StandardException thrown when unable to create the
 			result set
@@ -529,7 +535,8 @@ public interface ResultSetFactory {
 		int resultSetNumber, 
 		double optimizerEstimatedRowCount,
 		double optimizerEstimatedCost,
-		boolean isRollup) 
+		boolean isRollup,
+		int hashCapacity) 
 			throws StandardException;
 
 	/**
@@ -741,6 +748,10 @@ public interface ResultSetFactory {
 		@param initialCapacity	The initialCapacity for the HashTable.
 		@param loadFactor		The loadFactor for the HashTable.
 		@param maxCapacity		The maximum size for the HashTable.
+		@param keepProbeOrder	True means that the join has to return its
+								rows in the order of the probes, so the
+								HashTable is never split into partitions
+								which are joined one at a time.
 		@param hashKeyColumn	The 0-based column # for the hash key.
 		@param tableName		The full name of the table 
 		@param userSuppliedOptimizerOverrides		Overrides specified by the user on the sql
@@ -778,6 +789,7 @@ public interface ResultSetFactory {
 								int initialCapacity,
 								float loadFactor,
 								int maxCapacity,
+								boolean keepProbeOrder,
 								int hashKeyColumn,
 								String tableName,
 								String userSuppliedOptimizerOverrides,
@@ -843,6 +855,52 @@ public interface ResultSetFactory {
 								double optimizerEstimatedCost)
 			throws StandardException;
 
+	/**
+		A merge scan result set returns the rows of a conglomerate in
+		ascending order of a key column, for use as the inner table of a
+		merge join. The rows are read once; each probe with a value that
+		is not smaller than the previous one continues where the previous
+		probe stopped. If the conglomerate is not ordered on the key column,
+		its rows are sorted on the first open.
+		<p>
+		All arguments are the same as for getHashScanResultSet, except for
+		the hash table sizes, plus the following:
+
+		@param mergeKeyItem	The saved item for the 0-based column #s of the
+			keys. The rows are merged on the first one; nextQualifiers starts
+			with the equality qualifiers on them.
+		@param inputOrdered	true if the conglomerate returns the rows in
+			ascending order of the merge key, false if they must be sorted
+	 */
+	NoPutResultSet getMergeScanResultSet(
+			                    Activation activation,
+								long conglomId,
+								int scociItem,
+								int resultRowTemplate,
+								int resultSetNumber,
+								GeneratedMethod startKeyGetter,
+								int startSearchOperator,
+								GeneratedMethod stopKeyGetter,
+								int stopSearchOperator,
+								boolean sameStartStopPosition,
+								Qualifier[][] scanQualifiers,
+								Qualifier[][] nextQualifiers,
+								int mergeKeyItem,
+								boolean inputOrdered,
+								String tableName,
+								String userSuppliedOptimizerOverrides,
+								String indexName,
+								boolean isConstraint,
+								boolean forUpdate,
+								int colRefItem,
+								int indexColItem,
+								int lockMode,
+								boolean tableLocked,
+								int isolationLevel,
+								double optimizerEstimatedRowCount,
+								double optimizerEstimatedCost)
+			throws StandardException;
+
 	/**
 		A table scan result set forms a result set on a scan
 		of a table.
@@ -1270,6 +1328,24 @@ public interface ResultSetFactory {
 			throws StandardException;
 
 
+	/**
+		A merge join. The right result set is a merge scan result set
+		on the join column of the rows of the left result set.
+		All arguments are the same as for getHashJoinResultSet.
+	 */
+    public NoPutResultSet getMergeJoinResultSet(NoPutResultSet leftResultSet,
+								   int leftNumCols,
+								   NoPutResultSet rightResultSet,
+								   int rightNumCols,
+								   GeneratedMethod joinClause,
+								   int resultSetNumber,
+								   boolean oneRowRightSide,
+								   boolean notExistsRightSide,
+								   double optimizerEstimatedRowCount,
+								   double optimizerEstimatedCost,
+								   String userSuppliedOptimizerOverrides)
+			throws StandardException;
+
 	/**
 		A nested loop join result set forms a result set on top of
 		2 other result sets.
@@ -1367,6 +1443,25 @@ public interface ResultSetFactory {
 								   String userSuppliedOptimizerOverrides)
 			throws StandardException;
 
+	/**
+		A left outer join using a merge join.
+		All arguments are the same as for getHashLeftOuterJoinResultSet.
+	 */
+    public NoPutResultSet getMergeLeftOuterJoinResultSet(NoPutResultSet leftResultSet,
+								   int leftNumCols,
+								   NoPutResultSet rightResultSet,
+								   int rightNumCols,
+								   GeneratedMethod joinClause,
+								   int resultSetNumber,
+								   GeneratedMethod emptyRowFun,
+								   boolean wasRightOuterJoin,
+								   boolean oneRowRightSide,
+								   boolean notExistsRightSide,
+								   double optimizerEstimatedRowCount,
+								   double optimizerEstimatedCost,
+								   String userSuppliedOptimizerOverrides)
+			throws StandardException;
+
 	/**
 		A ResultSet which materializes the underlying ResultSet tree into a 
 		temp table on the 1st open.  All subsequent "scans" of this ResultSet
@@ -31,6 +31,7 @@ import org.apache.derby.iapi.error.StandardException;
 import org.apache.derby.iapi.store.access.conglomerate.MethodFactory;
 
 import org.apache.derby.iapi.services.property.PropertySetCallback;
+import java.util.Map;
 import java.util.Properties;
 import java.io.File;
 
@@ -180,6 +181,16 @@ public interface AccessFactory
      **/
 	public TransactionInfo[] getTransactionInfo();
 
+    /**
+     * Return a snap shot of the log statistics of the database.
+     * <p>
+     * Includes the number of log file switches, how many of them reused a
+     * spare log file, and the time spent switching log files.
+     *
+     * @return the statistics by name
+     **/
+	public Map<String, Long> getLogStatistics();
+
 	/**
      * Start a global transaction.
      * <p>
@@ -74,6 +74,12 @@ public interface AccessFactoryGlobals
     public static final String SORT_UNIQUEWITHDUPLICATENULLS_EXTERNAL 
                                     = "sort almost unique external";
 
+    /**
+     * Sort parameter: the number of worker threads which sort the merge
+     * runs of an external sort.
+     */
+    public static final String SORT_WORKER_THREADS = "sortWorkerThreads";
+
 	public static final String NESTED_READONLY_USER_TRANS = "nestedReadOnlyUserTransaction";
 	public static final String NESTED_UPDATE_USER_TRANS = "nestedUpdateUserTransaction";
 
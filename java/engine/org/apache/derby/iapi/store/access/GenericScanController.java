@@ -218,4 +218,32 @@ public interface GenericScanController extends RowCountable
     RowLocation startRowLocation,
     Qualifier qualifier[][])
         throws StandardException;
+
+    /**
+    Reposition the current scan to read the rows of a range of pages of the
+    conglomerate.  The scan is reopened with the same qualifiers, "scan
+    column list", "hold" and "forUpdate" parameters passed in the original
+    openScan, and returns the rows of the pages numbered firstPage to
+    lastPage.  Scans of disjoint ranges of pages together return every row
+    of the conglomerate once, so several scans, each in its own transaction,
+    can read the conglomerate at the same time.
+    <p>
+    The statistics gathered by the scan are not reset to 0, rather they
+    continue to accumulate.
+    <p>
+    Note that this operation is currently only supported on Heap conglomerates.
+
+	@param firstPage  The number of the first page to read.
+	@param lastPage   The number of the last page to read.
+
+    @return false if the conglomerate has no pages numbered firstPage or
+    higher, in which case the scan returns no rows, and neither does a
+    scan of any range of pages after it.
+
+	@exception StandardException Standard exception policy.
+    **/
+	boolean reopenScanByPageRange(
+    long    firstPage,
+    long    lastPage)
+        throws StandardException;
 }
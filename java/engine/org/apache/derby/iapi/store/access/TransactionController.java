@@ -252,6 +252,15 @@ public interface TransactionController
      **/
     static final int OPENMODE_LOCK_ROW_NOWAIT       = 0x00008000;
 
+    /**
+     * The pages of the conglomerate are read once.
+     * <p>
+     * Use this mode for a scan which reads each page of the conglomerate
+     * once, so that the pages it reads are evicted from the page cache
+     * before the pages that other transactions use over and over again.
+     **/
+    static final int OPENMODE_USE_ONCE              = 0x00010000;
+
     /**
      * Constants used for the countOpen() call.
      **/
@@ -772,6 +781,32 @@ public interface TransactionController
     boolean flush_log_on_xact_end)
         throws StandardException;
 
+    /**
+     * Get a nested read only user transaction for another thread.
+     * <p>
+     * The child transaction shares the lock compatibility space of this
+     * transaction, like the readOnly transaction of
+     * startNestedUserTransaction(), but it runs under the given context
+     * manager, which belongs to the thread that uses the child transaction.
+     * Any number of such transactions can be started, so that several
+     * threads can read the same data on behalf of this transaction.
+     * <p>
+     * Unlike the transactions of startNestedUserTransaction(), an abort of
+     * the child transaction does not abort this transaction.  The child
+     * transaction should be committed and destroyed once its thread has
+     * finished reading, and before work continues in this transaction.
+     *
+     * @param cm    The context manager of the thread using the child
+     *              transaction.
+     *
+	 * @return The new nested user transaction.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public TransactionController startNestedReadOnlyUserTransaction(
+    ContextManager cm)
+        throws StandardException;
+
     /**
      * A superset of properties that "users" can specify.
      * <p>
@@ -1367,6 +1402,24 @@ public interface TransactionController
 	void compressConglomerate(long conglomId)
 			throws StandardException;
 
+    /**
+     * Return underfilled pages of the conglomerate to the container, while
+     * other transactions go on using it.
+     * <p>
+     * Underfilled btree leaves are merged into their left sibling, and the
+     * freed pages are returned to the container for reuse, in small batches
+     * of internal transactions that only latch the pages they merge.
+     * Heap conglomerates are not changed.  The caller should hold a lock on
+     * the base table, which keeps the conglomerate from being dropped.
+     * <p>
+     *
+     * @param conglomId Id of the conglomerate to shrink.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	void shrinkConglomerate(long conglomId)
+			throws StandardException;
+
 
     /**
      * Retrieve the maximum value row in an ordered conglomerate.
@@ -1845,6 +1898,20 @@ public interface TransactionController
 	public void commit()
 		throws StandardException;
 
+	/**
+	Commit this transaction without waiting for the log to be synced.
+	Everything else is identical to commit().  The commit log record is
+	written to the log buffer and the log is synced in the background within
+	a bounded delay, so a crash may lose the most recently committed
+	transactions but never leaves the database inconsistent.
+
+	@exception StandardException Only exceptions with severities greater than
+	ExceptionSeverity.TRANSACTION_SEVERITY will be thrown.
+	@see TransactionController#commit
+	**/
+	public void commitAsync()
+		throws StandardException;
+
 	/**
 	"Commit" this transaction without sync'ing the log.  Everything else is
 	identical to commit(), use this at your own risk.
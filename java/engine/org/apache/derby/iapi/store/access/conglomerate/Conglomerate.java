@@ -372,6 +372,20 @@ public interface Conglomerate extends Storable, DataValueDescriptor
     Transaction                     rawtran)
         throws StandardException;
 
+    /**
+     * Return underfilled pages of the conglomerate to the container, while
+     * other transactions go on using it.
+     * <p>
+     * The caller's transaction is expected to hold a lock on the base table,
+     * which keeps the conglomerate from being dropped.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	void shrinkConglomerate(
+    TransactionManager              xact_manager,
+    Transaction                     rawtran)
+        throws StandardException;
+
     /**
      * Return an open StoreCostController for the conglomerate.
      * <p>
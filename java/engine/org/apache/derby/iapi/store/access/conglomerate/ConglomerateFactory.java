@@ -47,6 +47,7 @@ public interface ConglomerateFactory extends MethodFactory
 
     static final int    HEAP_FACTORY_ID     = 0x00;
     static final int    BTREE_FACTORY_ID    = 0x01;
+    static final int    HASH_FACTORY_ID     = 0x02;
 
 
     /**
@@ -83,6 +83,9 @@ import java.util.Properties;
 	wait for the container lock.  This flag only dictates whether the lock
 	should be waited for or not.  After the container is successfully opened,
 	whether this bit is set or not has no effect on the container handle.
+	<LI>MODE_USE_ONCE - if set, the pages read through the handle are
+	expected to be used once, for instance by a scan of the whole container,
+	and are not marked as recently used in the page cache.
 	</UL>
 	If neither or both of the {MODE_READONLY, MODE_FORUPDATE} modes are 
     specified then the behaviour of the container is unspecified.
@@ -145,6 +148,7 @@ public interface ContainerHandle
     public static final int MODE_SECONDARY_LOCKED      = 0x00002000; // external access
     public static final int MODE_BASEROW_INSERT_LOCKED = 0x00004000; // external access
     public static final int MODE_LOCK_ROW_NOWAIT       = 0x00008000;
+    public static final int MODE_USE_ONCE              = 0x00010000;
 
 	public static final int TEMPORARY_SEGMENT = -1;
 
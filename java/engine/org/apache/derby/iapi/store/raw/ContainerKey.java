@@ -184,4 +184,12 @@ public final class ContainerKey implements Matchable, Lockable
 
 		return true;
 	}
+
+	/**
+		Table locks are counted in the lock statistics of the container.
+	 */
+	public long getLockStatisticsContainerId()
+	{
+		return getContainerId();
+	}
 }
@@ -161,7 +161,8 @@ public interface Loggable extends Formatable {
 
 	public static final int RAWSTORE =		  0x100;	// a log record generated by the raw store
 	public static final int FILE_RESOURCE =   0x400;    // related to "non-transactional" files.
-	public static final int CHECKSUM =        0x800;    // a checksum log record 
+	public static final int CHECKSUM =        0x800;    // a checksum log record
+	public static final int COMPRESSED =     0x1000;    // a compressed log record, set by the logger and never by a loggable
 
 
 	/**
@@ -931,6 +931,28 @@ public interface Page
     int     dest_slot)
 		 throws StandardException;
 
+    /**
+     * Is there enough space on this page to copy rows of another page to it?
+     * <p>
+     * Tell whether copyAndPurge() of slot[src_slot] to 
+     * slot[src_slot + num_rows - 1] of srcPage to this page will find enough
+     * space on this page.  Both pages must be latched and from the same 
+     * container.
+     *
+	 * @return true if the rows will fit on this page.
+     *
+     * @param srcPage  the page to copy from
+     * @param src_slot the first slot to copy
+     * @param num_rows the number of rows to copy
+     *
+     * @exception StandardException Standard Derby error policy
+     **/
+    public boolean spaceForCopy(
+    Page    srcPage,
+    int     src_slot,
+    int     num_rows)
+         throws StandardException;
+
 	/**
 		Update the complete record identified by the slot.
 
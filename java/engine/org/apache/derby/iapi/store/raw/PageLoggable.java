@@ -0,0 +1,41 @@
+/*
+
+   Derby - Class org.apache.derby.iapi.store.raw.PageLoggable
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.iapi.store.raw;
+
+/**
+	A PageLoggable is a log operation that changes exactly one page and
+	nothing else.  Its needsRedo, doMe and releaseResource methods only use
+	the page they are given by getPageId, so that recovery redo may replay
+	log operations on different containers on different threads, as long as
+	the operations on any one container are redone in log order.
+
+	@see Loggable
+*/
+public interface PageLoggable extends Loggable {
+
+	/**
+	  Get the page this operation applies to.
+
+	  @return the key of the page changed by this operation
+	*/
+	public PageKey getPageId();
+}
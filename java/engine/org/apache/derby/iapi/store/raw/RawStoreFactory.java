@@ -33,6 +33,7 @@ import org.apache.derby.iapi.store.raw.xact.TransactionFactory;
 import org.apache.derby.iapi.error.StandardException;
 
 import org.apache.derby.iapi.store.access.DatabaseInstant;
+import java.util.Map;
 import java.util.Properties;
 import java.io.Serializable;
 
@@ -111,6 +112,9 @@ public interface RawStoreFactory extends Corruptable {
     /** Derby Store Minor Version (10) **/
     public static final int DERBY_STORE_MINOR_VERSION_10   = 10;
 
+    /** Derby Store Minor Version (16) **/
+    public static final int DERBY_STORE_MINOR_VERSION_16   = 16;
+
     /** Derby 10 Store Major version */
     public static final int DERBY_STORE_MAJOR_VERSION_10   = 10;
 
@@ -771,6 +775,11 @@ public interface RawStoreFactory extends Corruptable {
      */
     public TransactionInfo[] getTransactionInfo();
 
+    /**
+      @see org.apache.derby.iapi.store.access.AccessFactory#getLogStatistics
+     */
+    public Map<String, Long> getLogStatistics();
+
     /**
      * Start the replication master role for this database
      * @param dbmaster The master database that is being replicated.
@@ -67,11 +67,17 @@ public interface RecordHandle extends Lockable {
 	public static final int PREVIOUS_KEY_HANDLE = 3;
 
 	/**
-		Reserve for future use - name it and define it when you have a need to
-		use one
+		A lock with this recordHandle, and the container id of a hash index
+		and the hash of a key as its page number, is used to lock the keys
+		with that hash in the hash index.
 	*/
-	public static final int RESERVED4_RECORD_HANDLE = 4;
-	public static final int RESERVED5_RECORD_HANDLE = 5;
+	public static final int HASH_KEY_HANDLE = 4;
+
+	/**
+		A lock with this recordHandle, and the container id of a hash index
+		as its page number, is used to lock all the keys of the hash index.
+	*/
+	public static final int HASH_INDEX_HANDLE = 5;
 	
 	/** 
 		First recordId that is used to identify a record.
@@ -169,6 +169,23 @@ public interface Transaction {
 
 	public LogInstant commit() throws StandardException;
 
+	/**
+		Commit this transaction without waiting for the commit log record to
+		be synced. The log is synced by a background thread within
+		derby.storage.logAsyncCommitMaxDelay milliseconds. Everything else is
+		identical to commit(). A crash may lose transactions committed this
+		way during that window, but recovery always sees a consistent prefix
+		of the log.
+
+		@return the commit instant of this transaction, or null if it
+		didn't make any changes 
+
+		@exception StandardException Standard Derby error policy
+		@see Transaction#commit
+	*/
+
+	public LogInstant commitAsync() throws StandardException;
+
 	/**
 	    "Commit" this transaction without sync'ing the log.
 		Everything else is identical to commit(), use this at your own risk.
@@ -187,6 +187,29 @@ public interface DataFactory extends Corruptable {
 
 	public void checkpoint() throws StandardException;
 
+	/**
+		Checkpoint that only writes out the pages changed by log records
+		before the target, if incremental checkpoints are enabled, and
+		otherwise every dirty page like checkpoint().
+
+		@param target changes logged before this instant are written out,
+		null to write out every dirty page
+
+		@return the instant of the oldest logged change that may still only
+		be in the page cache, or null if every change logged so far has been
+		written out.  The redo low water mark of the checkpoint must not be
+		after it.
+
+		@exception StandardException Standard Derby Error policy
+	*/
+	public LogInstant checkpoint(LogInstant target) throws StandardException;
+
+	/**
+		Someone is waiting for the checkpoint in progress, which should
+		finish as soon as possible.
+	*/
+	public void hurryCheckpoint();
+
 	public void idle() throws StandardException;
 
 	/**
@@ -33,6 +33,7 @@ import org.apache.derby.io.StorageFile;
 import org.apache.derby.iapi.store.access.DatabaseInstant;
 import org.apache.derby.iapi.reference.Property;
 import java.io.File;
+import java.util.Map;
 
 public interface LogFactory extends Corruptable {
 
@@ -412,5 +413,14 @@ public interface LogFactory extends Corruptable {
      */
     public void stopReplicationMasterRole();
 
+    /**
+     * Get statistics about the log, such as the number of log switches and
+     * the time spent switching log files. Shown by the
+     * SYSCS_DIAG.LOG_STATISTICS diagnostic table.
+     *
+     * @return the statistics by name, in a stable order
+     */
+    public Map<String, Long> getLogStatistics();
+
 }
 
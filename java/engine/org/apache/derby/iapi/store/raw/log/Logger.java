@@ -95,6 +95,16 @@ public interface Logger {
 	*/
 	public void flush(LogInstant where) throws StandardException;
 
+	/**
+		Arrange for all unwritten log records up to the given log instant to
+		be flushed to disk by a background thread, without waiting for it.
+
+		@param where flush log up to here
+
+		@exception StandardException cannot flush due to sync error
+	*/
+	public void flushLater(LogInstant where) throws StandardException;
+
 
 	/**
 		Flush all unwritten log to disk
@@ -174,6 +174,12 @@ public abstract class RawTransaction extends DerbyObservable implements Transact
 	*/
 	abstract public LogInstant getLastLogInstant();
 
+	/**
+		Add the length of a log record written by this transaction to the
+		number of bytes of log it has written.
+	*/
+	abstract public void addLogBytes(int length);
+
 
 	/**
 		Check to see if a logical operation is allowed by this transaction, 
@@ -80,7 +80,14 @@ public final class SQLDate extends DataType
         return BASE_MEMORY_USAGE;
     } // end of estimateMemoryUsage
 
-    int getEncodedDate()
+    /**
+     * Get the date encoded as an int, with the year in the high order
+     * bits, then the month, then the day. The encoded dates sort in the
+     * same order as the dates.
+     *
+     * @return the encoded date
+     */
+    public int getEncodedDate()
     {
         return encodedDate;
     }
@@ -360,7 +367,12 @@ public final class SQLDate extends DataType
 		encodedDate = computeEncodedDate(value);
 	}
 
-	private SQLDate(int encodedDate) {
+	/**
+	 * Create a date from a value returned by {@link #getEncodedDate()}.
+	 *
+	 * @param encodedDate the encoded date
+	 */
+	public SQLDate(int encodedDate) {
 		this.encodedDate = encodedDate;
 	}
 
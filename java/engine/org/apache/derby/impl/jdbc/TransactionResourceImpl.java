@@ -124,6 +124,7 @@ public final class TransactionResourceImpl
 	private InternalDriver driver;
 	private String url;
 	private String drdaID;
+	private boolean asyncCommit;
 
 	// set these up after constructor, called by EmbedConnection
 	protected Database database;
@@ -150,6 +151,9 @@ public final class TransactionResourceImpl
 
 		drdaID = info.getProperty(Attribute.DRDAID_ATTR, null);
 
+		asyncCommit = Boolean.valueOf(
+			info.getProperty(Attribute.ASYNC_COMMIT_ATTR)).booleanValue();
+
 		// make a new context manager for this TransactionResource
 
 		// note that the Database API requires that the 
@@ -187,6 +191,7 @@ public final class TransactionResourceImpl
 	{
 		// setting up local connection
 		lcc = database.setupConnection(cm, username, drdaID, dbname);
+		lcc.setAsyncCommit(asyncCommit);
 	}
 
 	/**
@@ -0,0 +1,147 @@
+/*
+
+   Derby - Class org.apache.derby.impl.services.cache.BackgroundWriter
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.services.cache;
+
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.util.InterruptStatus;
+import org.apache.derby.shared.common.sanity.SanityManager;
+
+/**
+ * A background writer that keeps the entries that the replacement policy
+ * will evict next clean, so that the threads which need an entry for a new
+ * object seldom have to clean a dirty one first. Unlike the {@code
+ * BackgroundCleaner}, which only cleans the entries the replacement policy
+ * has already found dirty, the writer runs all the time in a thread of its
+ * own. Every {@code TICK_MILLIS} milliseconds it looks at the given
+ * percentage of the cache ahead of the replacement policy and cleans the
+ * dirty entries there, at most {@code maxCleansPerSecond} per second.
+ *
+ * <p>
+ *
+ * If cleaning fails, the writer stops, and the threads using the cache clean
+ * the entries themselves and get the error.
+ */
+final class BackgroundWriter implements Runnable {
+
+    /** How often the writer looks for entries to clean. */
+    private static final long TICK_MILLIS = 100;
+
+    /** The cache manager owning this writer. */
+    private final ConcurrentCache cacheManager;
+
+    /** Percentage of the cache to look at ahead of the replacement policy. */
+    private final int cleanPercent;
+
+    /** The maximum number of entries to clean every tick. */
+    private final int maxCleansPerTick;
+
+    /** Set when the writer must stop. Protected by the monitor on this. */
+    private boolean stopped;
+
+    /** The writer thread. Protected by the monitor on this. */
+    private Thread writerThread;
+
+    /**
+     * Create a background writer.
+     *
+     * @param cache the cache manager that owns the writer
+     * @param cleanPercent percentage of the cache to keep clean ahead of the
+     * replacement policy
+     * @param maxCleansPerSecond the maximum number of entries to clean per
+     * second
+     */
+    BackgroundWriter(ConcurrentCache cache, int cleanPercent,
+                     int maxCleansPerSecond) {
+        cacheManager = cache;
+        this.cleanPercent = cleanPercent;
+        maxCleansPerTick =
+            (int) Math.max(1, maxCleansPerSecond * TICK_MILLIS / 1000);
+    }
+
+    /**
+     * Start the writer thread.
+     *
+     * @param t the thread to run the writer in
+     */
+    synchronized void start(Thread t) {
+        if (SanityManager.DEBUG) {
+            SanityManager.ASSERT(writerThread == null,
+                                 "background writer already started");
+        }
+        writerThread = t;
+        writerThread.start();
+    }
+
+    /**
+     * Stop the writer thread and wait for it to finish.
+     */
+    void stop() {
+        Thread t;
+        synchronized (this) {
+            stopped = true;
+            t = writerThread;
+            notifyAll();
+        }
+
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join();
+            } catch (InterruptedException ie) {
+                InterruptStatus.setInterrupted();
+            }
+        }
+    }
+
+    /**
+     * The writer thread. Cleans entries ahead of the replacement policy
+     * every tick until stopped.
+     */
+    public void run() {
+        for (;;) {
+            synchronized (this) {
+                if (!stopped) {
+                    try {
+                        wait(TICK_MILLIS);
+                    } catch (InterruptedException ie) {
+                        InterruptStatus.setInterrupted();
+                    }
+                }
+                if (stopped) {
+                    return;
+                }
+            }
+
+            ReplacementPolicy policy = cacheManager.getReplacementPolicy();
+            int window = Math.max(1, policy.size() * cleanPercent / 100);
+
+            try {
+                int cleaned = policy.cleanAhead(window, maxCleansPerTick);
+                cacheManager.countBackgroundCleans(cleaned);
+            } catch (StandardException se) {
+                synchronized (this) {
+                    stopped = true;
+                }
+                return;
+            }
+        }
+    }
+}
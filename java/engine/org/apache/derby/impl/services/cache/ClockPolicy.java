@@ -67,8 +67,18 @@ import org.apache.derby.shared.common.sanity.SanityManager;
  * clock structure or on a <code>Holder</code> object. The threads are however
  * allowed to obtain synchronization locks on the clock structure or on a
  * holder while they are locking one or more <code>CacheEntry</code> objects.
+ *
+ * <p>
+ *
+ * Subclasses may change which entries the clock hand evicts by overriding
+ * {@code mayEvict()}, and keep track of the entries through
+ * {@code entryInserted()}, {@code entryEvicted()} and {@code entryFreed()}.
+ * These methods are called while the current thread has locked the entry,
+ * and they must not obtain other synchronization locks than their own.
+ *
+ * @see TwoQueuePolicy
  */
-final class ClockPolicy implements ReplacementPolicy {
+class ClockPolicy implements ReplacementPolicy {
 
     /**
      * The minimum number of items to check before we decide to give up
@@ -147,9 +157,24 @@ final class ClockPolicy implements ReplacementPolicy {
      * entries available for reuse, increase the size of the cache.
      *
      * @param entry the entry to insert (must be locked)
+     * @param key the identity of the object being inserted
+     * @param useOnce whether the object is expected to be used only once
+     * @exception StandardException if an error occurs when inserting the entry
+     */
+    public void insertEntry(CacheEntry entry, Object key, boolean useOnce)
+            throws StandardException {
+        entryInserted(findHolder(entry), key, useOnce);
+    }
+
+    /**
+     * Find a holder for an entry that is being inserted, evicting another
+     * entry or growing the clock if needed.
+     *
+     * @param entry the entry to insert (must be locked)
+     * @return the holder which now holds the entry
      * @exception StandardException if an error occurs when inserting the entry
      */
-    public void insertEntry(CacheEntry entry) throws StandardException {
+    private Holder findHolder(CacheEntry entry) throws StandardException {
 
         final int size;
         synchronized (clock) {
@@ -158,8 +183,9 @@ final class ClockPolicy implements ReplacementPolicy {
                 if (freeEntries.get() == 0) {
                     // We have not reached the maximum size yet, and there's no
                     // free entry to reuse. Make room by growing.
-                    clock.add(new Holder(entry));
-                    return;
+                    Holder h = new Holder(entry);
+                    clock.add(h);
+                    return h;
                 }
             }
         }
@@ -184,10 +210,45 @@ final class ClockPolicy implements ReplacementPolicy {
 
         if (h == null) {
             // didn't find a victim, so we need to grow
+            h = new Holder(entry);
             synchronized (clock) {
-                clock.add(new Holder(entry));
+                clock.add(h);
             }
         }
+
+        return h;
+    }
+
+    /**
+     * Called when an entry has been inserted into a holder. This
+     * implementation does nothing.
+     *
+     * @param h the holder of the entry (the entry must be locked)
+     * @param key the identity of the object being inserted
+     * @param useOnce whether the object is expected to be used only once
+     */
+    void entryInserted(Holder h, Object key, boolean useOnce) {
+    }
+
+    /**
+     * Called when the entry in a holder is about to be evicted, either to
+     * make room for another entry or to shrink the clock. This
+     * implementation does nothing.
+     *
+     * @param h the holder of the entry (the entry must be locked)
+     * @param key the identity of the object being evicted
+     */
+    void entryEvicted(Holder h, Object key) {
+    }
+
+    /**
+     * Called when the entry in a holder has been removed from the cache, and
+     * the holder is free to be reused. Called while synchronized on the
+     * holder. This implementation does nothing.
+     *
+     * @param h the holder that was freed (its former entry must be locked)
+     */
+    void entryFreed(Holder h) {
     }
 
     /**
@@ -197,7 +258,7 @@ final class ClockPolicy implements ReplacementPolicy {
      * <code>ConcurrentCache</code> can notify the clock policy about events
      * relevant to the clock algorithm.
      */
-    private class Holder implements Callback {
+    class Holder implements Callback {
         /**
          * Flag indicating whether or not this entry has been accessed
          * recently. Should only be accessed/modified when the current thread
@@ -206,6 +267,13 @@ final class ClockPolicy implements ReplacementPolicy {
          */
         boolean recentlyUsed;
 
+        /**
+         * Flag used by subclasses to tell whether the entry is on probation
+         * (see {@code TwoQueuePolicy}). Same access rules as
+         * <code>recentlyUsed</code>.
+         */
+        boolean cold;
+
         /**
          * Reference to the <code>CacheEntry</code> object held by this
          * object. The reference should only be accessed when the thread owns
@@ -253,6 +321,7 @@ final class ClockPolicy implements ReplacementPolicy {
             freedCacheable = entry.getCacheable();
             entry = null;
             recentlyUsed = false;
+            entryFreed(this);
             // let others know that a free entry is available
             int free = freeEntries.incrementAndGet();
             if (SanityManager.DEBUG) {
@@ -451,6 +520,7 @@ final class ClockPolicy implements ReplacementPolicy {
                 Cacheable c = e.getCacheable();
                 if (!c.isDirty()) {
                     // Not in use and not dirty. Take over the holder.
+                    entryEvicted(h, c.getIdentity());
                     h.switchEntry(entry);
                     cacheManager.evictEntry(c.getIdentity());
                     return h;
@@ -481,6 +551,7 @@ final class ClockPolicy implements ReplacementPolicy {
 
             // Clean the entry and unkeep it.
             cacheManager.cleanAndUnkeepEntry(e, dirty);
+            cacheManager.countForegroundClean();
 
             // If no one has touched the entry while we were cleaning it, we
             // could reuse it at this point. The old buffer manager (Clock)
@@ -496,9 +567,72 @@ final class ClockPolicy implements ReplacementPolicy {
         return null;
     }
 
+    /**
+     * Clean dirty entries ahead of the clock hand. The entries are looked at
+     * in the order the clock hand will reach them, but the hand is not moved
+     * and the recently used flags are left alone, so the entries are evicted
+     * in the same order as without cleaning ahead.
+     *
+     * @param window how many entries ahead of the clock hand to look at
+     * @param maxCleans the maximum number of entries to clean
+     * @return the number of entries cleaned
+     * @exception StandardException if an error occurs while cleaning
+     */
+    public int cleanAhead(int window, int maxCleans)
+            throws StandardException {
+
+        final Holder[] ahead;
+        synchronized (clock) {
+            final int size = clock.size();
+            ahead = new Holder[Math.min(window, size)];
+            int pos = hand;
+            for (int i = 0; i < ahead.length; i++) {
+                if (pos >= size) {
+                    pos = 0;
+                }
+                ahead[i] = clock.get(pos++);
+            }
+        }
+
+        int cleaned = 0;
+        for (int i = 0; i < ahead.length && cleaned < maxCleans; i++) {
+
+            final Holder h = ahead[i];
+            final CacheEntry e = h.getEntry();
+            if (e == null) {
+                // free entry, nothing to clean
+                continue;
+            }
+
+            final Cacheable dirty;
+            e.lock();
+            try {
+                if (!isEvictable(e, h, false)) {
+                    continue;
+                }
+                Cacheable c = e.getCacheable();
+                if (!c.isDirty()) {
+                    continue;
+                }
+                // Keep the entry while it is cleaned, but don't mark it as
+                // recently used.
+                e.keep(false);
+                dirty = c;
+            } finally {
+                e.unlock();
+            }
+
+            cacheManager.cleanAndUnkeepEntry(e, dirty);
+            cleaned++;
+        }
+
+        return cleaned;
+    }
+
     /**
      * Check if an entry can be evicted. Only entries that still are present in
-     * the cache, are not kept and not recently used, can be evicted. This
+     * the cache, are not kept and that {@code mayEvict()} allows, can be
+     * evicted. This
      * method does not check whether the {@code Cacheable} contained in the
      * entry is dirty, so it may be necessary to clean it before an eviction
      * can take place even if the method returns {@code true}. The caller must
@@ -535,6 +669,21 @@ final class ClockPolicy implements ReplacementPolicy {
             SanityManager.ASSERT(!h.isEvicted(), "Holder is evicted");
         }
 
+        return mayEvict(h, clearRecentlyUsedFlag);
+    }
+
+    /**
+     * Check whether the replacement policy allows the evicting of a valid
+     * entry which is not kept. In the clock algorithm, entries that have
+     * been used since the clock hand last swept over them cannot be evicted.
+     * The caller must hold the lock on the entry.
+     *
+     * @param h the holder which holds the entry
+     * @param clearRecentlyUsedFlag tells whether or not the recently used flag
+     * should be cleared on the entry
+     * @return whether or not this entry can be evicted
+     */
+    boolean mayEvict(Holder h, boolean clearRecentlyUsedFlag) {
         if (h.recentlyUsed) {
             // The object has been used recently, so it cannot be evicted.
             if (clearRecentlyUsedFlag) {
@@ -659,6 +808,7 @@ final class ClockPolicy implements ReplacementPolicy {
                 }
 
                 // mark as evicted to prevent reuse
+                entryEvicted(h, c.getIdentity());
                 h.setEvicted();
 
                 // remove from cache manager
@@ -81,6 +81,13 @@ final class ConcurrentCache implements CacheManager {
     private final AtomicLong misses = new AtomicLong();
     /** The number of evictions from the cache. */
     private final AtomicLong evictions = new AtomicLong();
+    /** The number of objects cleaned by the background writer. */
+    private final AtomicLong backgroundCleans = new AtomicLong();
+    /**
+     * The number of dirty objects cleaned by threads that wanted to reuse
+     * their entries.
+     */
+    private final AtomicLong foregroundCleans = new AtomicLong();
 
     /**
      * Flag that indicates whether this cache instance has been shut down. When
@@ -97,6 +104,14 @@ final class ConcurrentCache implements CacheManager {
      */
     private BackgroundCleaner cleaner;
 
+    /**
+     * Background writer which keeps the entries that will be evicted next
+     * clean, or {@code null} if it has not been started. Only set while
+     * synchronized on this object, and declared {@code volatile} so that
+     * {@code shutdown()} sees it without synchronization.
+     */
+    private volatile BackgroundWriter writer;
+
     /**
      * Creates a new cache manager.
      *
@@ -104,11 +119,15 @@ final class ConcurrentCache implements CacheManager {
      * @param name the name of the cache
      * @param initialSize the initial capacity of the cache
      * @param maxSize maximum number of elements in the cache
+     * @param scanResistant whether to use a replacement policy that does not
+     * let objects which are used only once push out the frequently used ones
      */
     ConcurrentCache(CacheableFactory holderFactory, String name,
-                    int initialSize, int maxSize) {
+                    int initialSize, int maxSize, boolean scanResistant) {
         cache = new ConcurrentHashMap<Object, CacheEntry>(initialSize);
-        replacementPolicy = new ClockPolicy(this, initialSize, maxSize);
+        replacementPolicy = scanResistant ?
+            new TwoQueuePolicy(this, initialSize, maxSize) :
+            new ClockPolicy(this, initialSize, maxSize);
         this.holderFactory = holderFactory;
         this.name = name;
         this.maxSize = maxSize;
@@ -218,15 +237,17 @@ final class ConcurrentCache implements CacheManager {
      *
      * @param key the identity of the object being inserted
      * @param entry the entry that is being inserted
+     * @param useOnce whether the object is expected to be used only once
      * @return a {@code Cacheable} object that the caller can reuse
      * @throws StandardException if an error occurs while inserting the entry
      * or while allocating a new {@code Cacheable}
      */
-    private Cacheable insertIntoFreeSlot(Object key, CacheEntry entry)
+    private Cacheable insertIntoFreeSlot(Object key, CacheEntry entry,
+                                         boolean useOnce)
             throws StandardException {
 
         try {
-            replacementPolicy.insertEntry(entry);
+            replacementPolicy.insertEntry(entry, key, useOnce);
         } catch (StandardException se) {
             // Failed to insert the entry into the replacement policy. Make
             // sure that it's also removed from the hash table.
@@ -241,7 +262,7 @@ final class ConcurrentCache implements CacheManager {
             free = holderFactory.newCacheable(this);
         }
 
-        entry.keep(true);
+        entry.keep(!useOnce);
 
         return free;
     }
@@ -284,6 +305,33 @@ final class ConcurrentCache implements CacheManager {
      * @return the cached object, or <code>null</code> if it cannot be found
      */
     public Cacheable find(Object key) throws StandardException {
+        return find(key, false);
+    }
+
+    /**
+     * Find an object in the cache, and add it if it is not present, without
+     * marking it as recently used. The returned object is kept until
+     * <code>release()</code> is called.
+     *
+     * @param key identity of the object to find
+     * @return the cached object, or <code>null</code> if it cannot be found
+     */
+    public Cacheable findUseOnce(Object key) throws StandardException {
+        return find(key, true);
+    }
+
+    /**
+     * Find an object in the cache. If it is not present, add it to the
+     * cache. The returned object is kept until <code>release()</code> is
+     * called.
+     *
+     * @param key identity of the object to find
+     * @param useOnce whether the caller will use the object only once, in
+     * which case the access is not reported to the replacement policy
+     * @return the cached object, or <code>null</code> if it cannot be found
+     */
+    private Cacheable find(Object key, boolean useOnce)
+            throws StandardException {
 
         if (stopped) {
             return null;
@@ -297,13 +345,13 @@ final class ConcurrentCache implements CacheManager {
             if (item != null) {
                 // The object is already cached. Increase the use count and
                 // return it.
-                entry.keep(true);
+                entry.keep(!useOnce);
                 countHit();
                 return item;
             } else {
                 // The object is not cached. Insert the entry into a free
                 // slot and retrieve a reusable Cacheable.
-                item = insertIntoFreeSlot(key, entry);
+                item = insertIntoFreeSlot(key, entry, useOnce);
                 countMiss();
             }
         } finally {
@@ -403,7 +451,7 @@ final class ConcurrentCache implements CacheManager {
 
         Cacheable item;
         try {
-            item = insertIntoFreeSlot(key, entry);
+            item = insertIntoFreeSlot(key, entry, false);
         } finally {
             entry.unlock();
         }
@@ -622,6 +670,9 @@ final class ConcurrentCache implements CacheManager {
      */
     public void shutdown() throws StandardException {
         stopped = true;
+        if (writer != null) {
+            writer.stop();
+        }
         cleanAll();
         ageOut();
         if (cleaner != null) {
@@ -650,6 +701,24 @@ final class ConcurrentCache implements CacheManager {
         return cleaner;
     }
 
+    /**
+     * Start a background writer which keeps the entries that will be
+     * evicted next clean. It is stopped when the cache is shut down.
+     *
+     * @param cleanPercent percentage of the cache to keep clean ahead of the
+     * replacement policy
+     * @param maxCleansPerSecond the maximum number of objects to clean per
+     * second
+     */
+    public synchronized void startBackgroundWriter(int cleanPercent,
+                                                   int maxCleansPerSecond) {
+        if (writer == null && !stopped) {
+            writer = new BackgroundWriter(
+                    this, cleanPercent, maxCleansPerSecond);
+            writer.start(getDaemonThread(writer, name + "-writer"));
+        }
+    }
+
     /**
      * Discard all unused objects that match a partial key. Dirty objects will
      * not be cleaned before their removal.
@@ -762,6 +831,19 @@ final class ConcurrentCache implements CacheManager {
         }
     }
 
+    /** Count objects cleaned by the background writer. */
+    void countBackgroundCleans(int count) {
+        backgroundCleans.getAndAdd(count);
+    }
+
+    /**
+     * Count a dirty object cleaned by a thread that wanted to reuse its
+     * entry.
+     */
+    void countForegroundClean() {
+        foregroundCleans.getAndIncrement();
+    }
+
     /** Enable or disable collection of hit/miss/eviction counts. */
     void setCollectAccessCounts(boolean collect) {
         collectAccessCounts = collect;
@@ -787,6 +869,19 @@ final class ConcurrentCache implements CacheManager {
         return evictions.get();
     }
 
+    /** Get the number of objects cleaned by the background writer. */
+    long getBackgroundCleanCount() {
+        return backgroundCleans.get();
+    }
+
+    /**
+     * Get the number of dirty objects cleaned by threads that wanted to
+     * reuse their entries.
+     */
+    long getForegroundCleanCount() {
+        return foregroundCleans.get();
+    }
+
     /** Get the maximum number of entries in the cache. */
     long getMaxEntries() {
         return maxSize;
@@ -802,6 +897,21 @@ final class ConcurrentCache implements CacheManager {
         return cache.size();
     }
     
+    /**
+     * Privileged creation of a daemon thread. Must be private so that user
+     * code can't call this entry point.
+     */
+    private static Thread getDaemonThread(final Runnable task,
+                                          final String threadName) {
+        return AccessController.doPrivileged(
+            new PrivilegedAction<Thread>() {
+                public Thread run() {
+                    return Monitor.getMonitor().getDaemonThread(
+                        task, threadName, false);
+                }
+            });
+    }
+
     /**
      * Privileged module lookup. Must be private so that user code
      * can't call this entry point.
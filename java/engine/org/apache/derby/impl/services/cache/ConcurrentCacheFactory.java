@@ -43,6 +43,26 @@ public class ConcurrentCacheFactory implements CacheFactory {
                                         String name,
                                         int initialSize, int maximumSize) {
         return new ConcurrentCache(holderFactory, name,
-                                   initialSize, maximumSize);
+                                   initialSize, maximumSize, false);
+    }
+
+    /**
+     * Create a new <code>ConcurrentCache</code> instance, optionally with a
+     * scan resistant replacement policy.
+     *
+     * @param holderFactory factory which creates <code>Cacheable</code>s
+     * @param name name of the cache
+     * @param initialSize initial capacity of the cache (number of objects)
+     * @param maximumSize maximum size of the cache (number of objects)
+     * @param scanResistant whether to use the 2Q replacement policy instead
+     * of the clock
+     * @return a <code>ConcurrentCache</code> instance
+     */
+    public CacheManager newCacheManager(CacheableFactory holderFactory,
+                                        String name,
+                                        int initialSize, int maximumSize,
+                                        boolean scanResistant) {
+        return new ConcurrentCache(holderFactory, name,
+                                   initialSize, maximumSize, scanResistant);
     }
 }
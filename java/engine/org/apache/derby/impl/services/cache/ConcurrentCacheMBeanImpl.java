@@ -68,6 +68,18 @@ final class ConcurrentCacheMBeanImpl implements CacheManagerMBean {
         return cache.getEvictionCount();
     }
 
+    @Override
+    public long getBackgroundCleanCount() {
+        checkPermission();
+        return cache.getBackgroundCleanCount();
+    }
+
+    @Override
+    public long getForegroundCleanCount() {
+        checkPermission();
+        return cache.getForegroundCleanCount();
+    }
+
     @Override
     public long getMaxEntries() {
         checkPermission();
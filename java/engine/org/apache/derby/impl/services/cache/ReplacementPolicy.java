@@ -41,13 +41,22 @@ interface ReplacementPolicy {
      * use to communicate back to the replacement policy events (for instance,
      * that it has been accessed or become invalid).
      *
+     * <p>
+     *
+     * If {@code useOnce} is {@code true}, the caller expects to use the
+     * object only once, and the replacement policy may choose to evict it
+     * before the objects that are used over and over again.
+     *
      * @param entry the entry to insert
+     * @param key the identity of the object that is being inserted
+     * @param useOnce whether the object is expected to be used only once
      * @exception StandardException if an error occurs while inserting the
      * entry
      *
      * @see CacheEntry#setCallback(ReplacementPolicy.Callback)
      */
-    void insertEntry(CacheEntry entry) throws StandardException;
+    void insertEntry(CacheEntry entry, Object key, boolean useOnce)
+            throws StandardException;
 
     /**
      * Try to shrink the cache if it has exceeded its maximum size. It is not
@@ -55,6 +64,21 @@ interface ReplacementPolicy {
      */
     void doShrink();
 
+    /**
+     * Clean dirty entries which are not in use and will be evicted soon, so
+     * that the threads inserting entries find clean entries to reuse and do
+     * not have to clean them first. Entries that have been used recently are
+     * not cleaned, since they are likely to be changed again before they are
+     * evicted.
+     *
+     * @param window how many of the entries that are next in line for
+     * eviction to look at
+     * @param maxCleans the maximum number of entries to clean
+     * @return the number of entries cleaned
+     * @exception StandardException if an error occurs while cleaning
+     */
+    int cleanAhead(int window, int maxCleans) throws StandardException;
+
     /**
      * Get the number of entries allocated in the data structure that holds
      * cached objects. This number could include empty entries for objects
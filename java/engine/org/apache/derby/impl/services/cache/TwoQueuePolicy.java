@@ -0,0 +1,184 @@
+/*
+
+   Derby - Class org.apache.derby.impl.services.cache.TwoQueuePolicy
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.services.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.derby.shared.common.sanity.SanityManager;
+
+/**
+ * Scan resistant replacement policy based on the 2Q algorithm, built on the
+ * clock of {@code ClockPolicy}. The entries in the clock are either cold or
+ * hot:
+ *
+ * <ul>
+ *
+ * <li>A new entry is cold. Cold entries are evicted in the order the clock
+ * hand reaches them, which is the order they were inserted in, whether or
+ * not they have been used since. Only cold entries are evicted while they
+ * take up more than {@code COLD_PERCENT} percent of the cache.</li>
+ *
+ * <li>The identities of the cold entries that are evicted are remembered in
+ * a ghost list of {@code GHOST_PERCENT} percent of the cache size. An object
+ * that is inserted again while it is in the ghost list has been used more
+ * than once in a short time, and its entry is hot.</li>
+ *
+ * <li>Hot entries are evicted by the clock algorithm when the cold entries
+ * take up less than their share of the cache.</li>
+ *
+ * </ul>
+ *
+ * A scan that reads each object once therefore only replaces cold entries,
+ * and leaves the hot ones alone. Entries that have only been used by callers
+ * that use each object once (see {@code CacheManager.findUseOnce()}) are not
+ * remembered in the ghost list, so they do not become hot even if the scan
+ * is repeated.
+ *
+ * <p>
+ *
+ * The recently used flag of a cold entry is not cleared by the clock hand,
+ * so it tells whether the entry has been used by a caller other than a
+ * single use one since it was inserted.
+ */
+final class TwoQueuePolicy extends ClockPolicy {
+
+    /** The share of the cache for the cold entries, in percent. */
+    private static final int COLD_PERCENT = 25;
+
+    /** The size of the ghost list, in percent of the cache size. */
+    private static final int GHOST_PERCENT = 50;
+
+    /**
+     * The number of cold entries the cache can hold before the hot entries
+     * are left alone.
+     */
+    private final int coldTarget;
+
+    /** The number of cold entries in the clock. */
+    private final AtomicInteger coldEntries = new AtomicInteger();
+
+    /**
+     * The identities of the cold entries that were evicted most recently,
+     * oldest first. Accesses must be synchronized on the map, and no other
+     * synchronization locks must be obtained while holding that lock.
+     */
+    private final GhostList ghosts;
+
+    /**
+     * Create a new <code>TwoQueuePolicy</code> instance.
+     *
+     * @param cacheManager the cache manager that requests this policy
+     * @param initialSize the initial capacity of the cache
+     * @param maxSize the maximum size of the cache
+     */
+    TwoQueuePolicy(ConcurrentCache cacheManager, int initialSize,
+                   int maxSize) {
+        super(cacheManager, initialSize, maxSize);
+        coldTarget = Math.max(1, maxSize * COLD_PERCENT / 100);
+        ghosts = new GhostList(Math.max(1, maxSize * GHOST_PERCENT / 100));
+    }
+
+    /**
+     * The list of identities of evicted entries, which forgets the oldest
+     * identity when it grows beyond its maximum size.
+     */
+    private static class GhostList extends LinkedHashMap<Object, Object> {
+
+        /** Maximum number of identities. */
+        private final int maxSize;
+
+        GhostList(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    /**
+     * Make the new entry hot if its object was evicted from the cold
+     * entries a short while ago, and cold otherwise.
+     */
+    @Override
+    void entryInserted(Holder h, Object key, boolean useOnce) {
+        boolean hot = false;
+        if (!useOnce) {
+            synchronized (ghosts) {
+                hot = (ghosts.remove(key) != null);
+            }
+        }
+        h.cold = !hot;
+        // The holder may have been taken over from a cold entry that was
+        // used. Whether the new entry is used is decided by the caller.
+        h.recentlyUsed = false;
+        if (!hot) {
+            coldEntries.incrementAndGet();
+        }
+    }
+
+    /**
+     * Remember the identity of an evicted cold entry in the ghost list,
+     * unless the entry has only been used once.
+     */
+    @Override
+    void entryEvicted(Holder h, Object key) {
+        if (h.cold) {
+            decrementColdEntries();
+            if (h.recentlyUsed) {
+                synchronized (ghosts) {
+                    ghosts.put(key, key);
+                }
+            }
+        }
+        h.cold = false;
+    }
+
+    @Override
+    void entryFreed(Holder h) {
+        if (h.cold) {
+            decrementColdEntries();
+        }
+        h.cold = false;
+    }
+
+    /**
+     * Allow cold entries to be evicted while there are too many of them, and
+     * hot entries which have not been used recently otherwise.
+     */
+    @Override
+    boolean mayEvict(Holder h, boolean clearRecentlyUsedFlag) {
+        if (coldEntries.get() > coldTarget) {
+            return h.cold;
+        }
+        return !h.cold && super.mayEvict(h, clearRecentlyUsedFlag);
+    }
+
+    /** Decrement the number of cold entries. */
+    private void decrementColdEntries() {
+        int cold = coldEntries.decrementAndGet();
+        if (SanityManager.DEBUG) {
+            SanityManager.ASSERT(cold >= 0, "coldEntries is negative: " + cold);
+        }
+    }
+}
@@ -461,6 +461,15 @@ public class IndexStatisticsDaemonImpl
 
                 IndexRowGenerator irg = cds[i].getIndexDescriptor();
 
+                // Skip hash indexes, a scan of them does not return the keys
+                // in order, which the cardinality is counted from.  Their
+                // statistics are only made when the index is built.
+                if (!irg.isOrdered()) {
+                    conglomerateNumber[i] = -1;
+                    non_disposable_objectUUID[i] = cds[i].getUUID();
+                    continue;
+                }
+
                 // Skip single-column unique indexes unless we're told not to,
                 // or we are running in soft-upgrade-mode on a pre 10.9 db.
                 if (skipDisposableStats) {
@@ -22,6 +22,7 @@
 package org.apache.derby.impl.services.locks;
 
 import org.apache.derby.iapi.services.locks.CompatibilitySpace;
+import org.apache.derby.iapi.services.locks.ContainerLockStatistics;
 import org.apache.derby.iapi.services.locks.LockFactory;
 import org.apache.derby.iapi.services.locks.C_LockFactory;
 import org.apache.derby.iapi.services.locks.Lockable;
@@ -31,14 +32,24 @@ import org.apache.derby.iapi.error.StandardException;
 
 import org.apache.derby.iapi.services.property.PropertyUtil;
 import org.apache.derby.iapi.services.daemon.Serviceable;
+import org.apache.derby.iapi.services.jmx.ManagementService;
+import org.apache.derby.iapi.services.monitor.ModuleControl;
+import org.apache.derby.iapi.services.monitor.Monitor;
+import org.apache.derby.iapi.services.monitor.PersistentService;
 
 import org.apache.derby.shared.common.sanity.SanityManager;
 import org.apache.derby.iapi.util.Matchable;
+import org.apache.derby.iapi.reference.Module;
 import org.apache.derby.iapi.reference.Property;
+import org.apache.derby.mbeans.LockManagerMBean;
 
 import java.io.Serializable;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
 import org.apache.derby.iapi.reference.SQLState;
 import org.apache.derby.iapi.services.locks.LockOwner;
 
@@ -51,7 +62,7 @@ import org.apache.derby.iapi.services.locks.LockOwner;
  *
  * <BR> MT - Mutable - Container Object : Thread Aware
  */
-abstract class AbstractPool implements LockFactory
+abstract class AbstractPool implements LockFactory, ModuleControl
 {
 	/**
 		The complete set of locks in the system
@@ -66,6 +77,16 @@ abstract class AbstractPool implements LockFactory
 	*/
 	int deadlockMonitor;
 
+	/**
+		The number of locked objects in the lock table above which
+		transactions escalate early, or 0 if the size of the lock table
+		does not matter. See Property.LOCKS_ESCALATION_LOCK_TABLE_SIZE.
+	*/
+	private int escalationLockTableSize;
+
+	/** The identifier of the MBean that allows monitoring of the locks. */
+	private Object mbean;
+
 	protected AbstractPool() {
 		lockTable = createLockTable();
 	}
@@ -78,6 +99,46 @@ abstract class AbstractPool implements LockFactory
 	 */
 	protected abstract LockTable createLockTable();
 
+	/*
+	** Methods of ModuleControl
+	*/
+
+	/**
+		Register the MBean which shows the lock statistics.
+	*/
+	public void boot(boolean create, Properties properties)
+		throws StandardException {
+
+		String dbName = properties.getProperty(PersistentService.ROOT);
+		ManagementService managementService =
+			(ManagementService) getSystemModule(Module.JMX);
+
+		if ((dbName != null) && (managementService != null)) {
+			mbean = managementService.registerMBean(
+				new LockManagerMBeanImpl(this),
+				LockManagerMBean.class,
+				"type=LockManager,db=" +
+					managementService.quotePropertyValue(dbName));
+		}
+	}
+
+	/**
+		Stop the background deadlock detector, if it is running, and
+		unregister the MBean.
+	*/
+	public void stop() {
+		lockTable.setDeadlockDetectorInterval(0);
+
+		if (mbean != null) {
+			ManagementService managementService =
+				(ManagementService) getSystemModule(Module.JMX);
+			if (managementService != null) {
+				managementService.unregisterMBean(mbean);
+			}
+			mbean = null;
+		}
+	}
+
 	/*
 	** Methods of LockFactory
 	*/
@@ -156,7 +217,7 @@ abstract class AbstractPool implements LockFactory
 	 * @return an object which represents a compatibility space
 	 */
 	public CompatibilitySpace createCompatibilitySpace(LockOwner owner) {
-		return new LockSpace(owner);
+		return new LockSpace(this, owner);
 	}
 
 	/**
@@ -329,6 +390,16 @@ abstract class AbstractPool implements LockFactory
 	*/
 	public int getWaitTimeout() { return lockTable.getWaitTimeout(); }
 
+	/**
+		Return true if the lock table holds so many locked objects that
+		transactions should escalate their row locks before they reach
+		their limit.
+	*/
+	boolean isLockTableFull() {
+		int maxSize = escalationLockTableSize;
+		return (maxSize > 0) && (lockTable.size() > maxSize);
+	}
+
 	public void setLimit(CompatibilitySpace compatibilitySpace,
 						 Object group, int limit, Limit callback) {
 		((LockSpace) compatibilitySpace).setLimit(group, limit, callback);
@@ -342,6 +413,34 @@ abstract class AbstractPool implements LockFactory
 		((LockSpace) compatibilitySpace).clearLimit(group);
 	}
 
+	/**
+		@see LockFactory#countEscalation
+	*/
+	public void countEscalation(Lockable ref) {
+		lockTable.countEscalation(ref);
+	}
+
+	/**
+		@see LockFactory#getLockStatistics
+	*/
+	public List<ContainerLockStatistics> getLockStatistics() {
+		return lockTable.getLockStatistics();
+	}
+
+	/**
+		@see LockFactory#removeLockStatistics
+	*/
+	public void removeLockStatistics(Lockable ref) {
+		lockTable.removeLockStatistics(ref);
+	}
+
+	/**
+		@see LockFactory#getLockedObjectCount
+	*/
+	public int getLockedObjectCount() {
+		return lockTable.size();
+	}
+
     /**
      * Check if we should not wait for locks, given the specified timeout and
      * compatibility space. If the timeout is {@code C_LockFactory.NO_WAIT} or
@@ -387,6 +486,8 @@ abstract class AbstractPool implements LockFactory
 		getAndApply(dbOnly, p, Property.DEADLOCK_TIMEOUT);
 		getAndApply(dbOnly, p, Property.LOCKWAIT_TIMEOUT);
 		getAndApply(dbOnly, p, Property.DEADLOCK_MONITOR);
+		getAndApply(dbOnly, p, Property.DEADLOCK_DETECTOR_INTERVAL);
+		getAndApply(dbOnly, p, Property.LOCKS_ESCALATION_LOCK_TABLE_SIZE);
 //EXCLUDE-START-lockdiag- 
         getAndApply(dbOnly, p, Property.DEADLOCK_TRACE);
 //EXCLUDE-END-lockdiag- 
@@ -448,6 +549,12 @@ abstract class AbstractPool implements LockFactory
 			deadlockMonitor = PropertyUtil.booleanProperty(Property.DEADLOCK_MONITOR, svalue, false) ?
 				StandardException.REPORT_ALWAYS : StandardException.REPORT_DEFAULT;
 		}
+		else if (key.equals(Property.DEADLOCK_DETECTOR_INTERVAL))
+			lockTable.setDeadlockDetectorInterval(
+				PropertyUtil.handleInt(svalue, 0, Integer.MAX_VALUE, 0));
+		else if (key.equals(Property.LOCKS_ESCALATION_LOCK_TABLE_SIZE))
+			escalationLockTableSize =
+				PropertyUtil.handleInt(svalue, 0, Integer.MAX_VALUE, 0);
 //EXCLUDE-START-lockdiag- 
         else if (key.equals(Property.DEADLOCK_TRACE))
             lockTable.setDeadlockTrace(PropertyUtil.booleanProperty(Property.DEADLOCK_TRACE, svalue, false));
@@ -464,6 +571,20 @@ abstract class AbstractPool implements LockFactory
 	** Property related methods
 	*/
 	
+	/**
+	 * Privileged Monitor lookup. Must be private so that user code
+	 * can't call this entry point.
+	 */
+	private static Object getSystemModule(final String factoryInterface)
+	{
+		return AccessController.doPrivileged(
+			new PrivilegedAction<Object>() {
+				public Object run() {
+					return Monitor.getSystemModule(factoryInterface);
+				}
+			});
+	}
+
 	private static int getWaitValue(String value, int defaultValue ) {
 
 		// properties are defined in seconds
@@ -57,6 +57,16 @@ public final class ActiveLock extends Lock {
 	*/
 	protected boolean canSkip;
 
+	/**
+		Set by the background deadlock detector when it picks this lock
+		request as the victim of a deadlock, to the description of the
+		deadlock. The waiting thread throws the deadlock exception without
+		searching the lock table for the deadlock itself.
+
+		MT - mutable - protected by the lock table entry of the Lockable
+	*/
+	Object[] deadlockData;
+
 	/**
 		Initialize the lock, should be seen as part of the constructor. A future
 		version of this class may become mutable - mutable identity.
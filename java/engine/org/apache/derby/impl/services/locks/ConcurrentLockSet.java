@@ -22,6 +22,7 @@
 package org.apache.derby.impl.services.locks;
 
 import org.apache.derby.iapi.services.locks.CompatibilitySpace;
+import org.apache.derby.iapi.services.locks.ContainerLockStatistics;
 import org.apache.derby.iapi.services.locks.Latch;
 import org.apache.derby.iapi.services.locks.Lockable;
 import org.apache.derby.iapi.services.locks.C_LockFactory;
@@ -30,18 +31,27 @@ import org.apache.derby.iapi.error.StandardException;
 
 import org.apache.derby.shared.common.sanity.SanityManager;
 import org.apache.derby.iapi.services.diag.DiagnosticUtil;
+import org.apache.derby.iapi.services.locks.LockOwner;
+import org.apache.derby.iapi.services.monitor.Monitor;
 
 import org.apache.derby.iapi.reference.Property;
 import org.apache.derby.iapi.reference.SQLState;
 
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Stack;
 
 
 /**
@@ -111,6 +121,27 @@ final class ConcurrentLockSet implements LockTable {
 	// The number of waiters for locks
 	private final AtomicInteger blockCount;
 
+    /**
+     * The lock requests which are waiting, by the compatibility space of
+     * the waiter. These are the nodes of the wait-for graph which the
+     * background deadlock detector looks for cycles in.
+     */
+    private final ConcurrentHashMap<CompatibilitySpace, ActiveLock>
+        waitingLocks = new ConcurrentHashMap<CompatibilitySpace, ActiveLock>();
+
+    /**
+     * The background deadlock detector, or {@code null} if lock requests
+     * look for deadlocks themselves. Only set while synchronized on this
+     * object.
+     */
+    private volatile DeadlockDetector detector;
+
+    /**
+     * The lock statistics, by the container id returned by
+     * {@code Lockable.getLockStatisticsContainerId()}.
+     */
+    private final LockCountersTable counters = new LockCountersTable();
+
 	/*
 	** Constructor
 	*/
@@ -320,6 +351,7 @@ final class ConcurrentLockSet implements LockTable {
 		Lock lockItem;
         String  lockDebug = null;
         boolean blockedByParent = false;
+        LockCounters stats = getCounters(ref);
 
         Entry entry = getEntry(ref);
         try {
@@ -335,6 +367,9 @@ final class ConcurrentLockSet implements LockTable {
 
 				entry.control = gl;
 
+				if (stats != null)
+					stats.acquisitions.increment();
+
 				return gl;
 			}
 
@@ -353,6 +388,8 @@ final class ConcurrentLockSet implements LockTable {
 			lockItem = control.addLock(this, compatibilitySpace, qualifier);
 
 			if (lockItem.getCount() != 0) {
+				if (stats != null)
+					stats.acquisitions.increment();
 				return lockItem;
 			}
 
@@ -419,7 +456,15 @@ final class ConcurrentLockSet implements LockTable {
 		boolean deadlockWait = false;
 		int actualTimeout;
 
-		if (timeout == C_LockFactory.WAIT_FOREVER)
+		if (detector != null)
+		{
+			// the background deadlock detector looks for deadlocks, just
+			// wait until the lock is granted or the wait times out
+			if (timeout == C_LockFactory.TIMED_WAIT)
+				timeout = waitTimeout;
+			actualTimeout = timeout;
+		}
+		else if (timeout == C_LockFactory.WAIT_FOREVER)
 		{
 			// always check for deadlocks as there should not be any
 			deadlockWait = true;
@@ -475,7 +520,13 @@ final class ConcurrentLockSet implements LockTable {
 
         int earlyWakeupCount = 0;
         long startWaitTime = 0;
+        long waitStart = System.nanoTime();
 
+        if (stats != null)
+            stats.waits.increment();
+
+        waitingLocks.put(compatibilitySpace, waitingLock);
+        try {
 forever:	for (;;) {
 
                 byte wakeupReason = 0;
@@ -513,6 +564,9 @@ forever:	for (;;) {
                             nextWaitingLock = 
                                 control.getNextWaiter(waitingLock, true, this);
 
+                            if (stats != null)
+                                stats.acquisitions.increment();
+
                             return waitingLock;
                         }
 
@@ -527,11 +581,19 @@ forever:	for (;;) {
                             (wakeupReason == Constants.WAITING_LOCK_DEADLOCK))
                         {
 
+                            // If the background deadlock detector selected
+                            // us as a victim it has already checked that the
+                            // deadlock exists while holding the entries.
+                            deadlockData = waitingLock.deadlockData;
+                            waitingLock.deadlockData = null;
+
                             // check for a deadlock, even if we were woken up 
                             // because we were selected as a victim we still 
                             // check because the situation may have changed.
-                            deadlockData = 
-                                checkDeadlock(entry, waitingLock, wakeupReason);
+                            if (deadlockData == null) {
+                                deadlockData = checkDeadlock(
+                                    entry, waitingLock, wakeupReason);
+                            }
 
                             if (deadlockData == null) {
                                 // we don't have a deadlock
@@ -576,6 +638,14 @@ forever:	for (;;) {
 
                     if (willQuitWait)
                     {
+                        if ((stats != null) && (wakeupReason !=
+                                Constants.WAITING_LOCK_INTERRUPTED)) {
+                            if (deadlockData == null)
+                                stats.timeouts.increment();
+                            else
+                                stats.deadlocks.increment();
+                        }
+
                         if (deadlockTrace && (deadlockData == null)) {
                             // if ending lock request due to lock timeout
                             // want a copy of the LockTable and the time,
@@ -677,6 +747,12 @@ forever:	for (;;) {
 
 
             } // for(;;)
+        } finally {
+            waitingLocks.remove(compatibilitySpace, waitingLock);
+
+            if (stats != null)
+                stats.waitTime.add(System.nanoTime() - waitStart);
+        }
 	}
 
 	/**
@@ -924,6 +1000,310 @@ forever:	for (;;) {
      * Get the wait timeout in milliseconds.
      */
     public int getWaitTimeout() { return waitTimeout; }
+
+    /**
+     * Get the number of locked objects in the lock table.
+     */
+    public int size() {
+        return locks.size();
+    }
+
+    /**
+     * Get the lock statistics of the container a lockable object belongs
+     * to, creating them the first time the container is seen.
+     *
+     * @param ref the lockable object
+     * @return the lock statistics, or {@code null} if locks on the object
+     * are not counted
+     */
+    private LockCounters getCounters(Lockable ref) {
+        long containerId = ref.getLockStatisticsContainerId();
+        if (containerId < 0) {
+            return null;
+        }
+
+        LockCounters stats = counters.get(containerId);
+        if (stats == null) {
+            stats = counters.add(containerId);
+        }
+        return stats;
+    }
+
+    /**
+     * Count an escalation of row locks to a lock on a container.
+     *
+     * @param ref the lock on the container
+     */
+    public void countEscalation(Lockable ref) {
+        LockCounters stats = getCounters(ref);
+        if (stats != null) {
+            stats.escalations.increment();
+        }
+    }
+
+    /**
+     * Get a snapshot of the lock statistics of every container whose locks
+     * have been requested.
+     *
+     * @return the lock statistics, one element per container
+     */
+    public List<ContainerLockStatistics> getLockStatistics() {
+        return counters.snapshot();
+    }
+
+    /**
+     * Forget the lock statistics of a container which has been removed.
+     *
+     * @param ref the lock on the container
+     */
+    public void removeLockStatistics(Lockable ref) {
+        long containerId = ref.getLockStatisticsContainerId();
+        if (containerId >= 0) {
+            counters.remove(containerId);
+        }
+    }
+
+    /**
+     * Start, stop or change the interval of the background deadlock
+     * detector.
+     *
+     * @param interval how often the detector looks for deadlocks, in
+     * milliseconds, or zero to stop the detector
+     */
+    public synchronized void setDeadlockDetectorInterval(int interval) {
+        if (interval > 0) {
+            if (detector == null) {
+                DeadlockDetector d = new DeadlockDetector(this, interval);
+                d.start(getDaemonThread(d, "derby.deadlockDetector"));
+                detector = d;
+            } else {
+                detector.setInterval(interval);
+            }
+        } else if (detector != null) {
+            detector.stop();
+            detector = null;
+        }
+    }
+
+    /**
+     * Look for deadlocks among the waiting lock requests, and break each
+     * deadlock found by waking up a victim. Called by the background
+     * deadlock detector.
+     *
+     * <p>
+     *
+     * Unlike {@code Deadlock.look()}, this does not look at the entire lock
+     * table. The wait-for graph is built from the entries of the waiting
+     * lock requests only, locking one entry at a time. Each cycle found is
+     * then checked again while holding the locks on the entries of all the
+     * requests in the cycle, the same way {@code Deadlock.look()} holds the
+     * entries it has visited, so that a deadlock which has gone away while
+     * the graph was built is not reported.
+     */
+    void detectDeadlocks() {
+        if (waitingLocks.size() < 2) {
+            return;
+        }
+
+        // edges from each waiting space to the spaces it waits for
+        HashMap<CompatibilitySpace, List<CompatibilitySpace>> graph =
+            new HashMap<CompatibilitySpace, List<CompatibilitySpace>>();
+
+        for (Map.Entry<CompatibilitySpace, ActiveLock> w :
+                 waitingLocks.entrySet()) {
+            ActiveLock waitingLock = w.getValue();
+            Entry entry = locks.get(waitingLock.getLockable());
+            if (entry == null) {
+                continue;
+            }
+
+            ArrayList<CompatibilitySpace> blockers =
+                new ArrayList<CompatibilitySpace>();
+            entry.lock();
+            try {
+                Control control = entry.control;
+                if (!(control instanceof LockControl) ||
+                        !((LockControl) control).addBlockers(
+                            waitingLock, blockers)) {
+                    continue;
+                }
+            } finally {
+                entry.unlock();
+            }
+
+            if (!blockers.isEmpty()) {
+                graph.put(w.getKey(), blockers);
+            }
+        }
+
+        HashSet<CompatibilitySpace> done = new HashSet<CompatibilitySpace>();
+        for (CompatibilitySpace space : graph.keySet()) {
+            if (!done.contains(space)) {
+                List<CompatibilitySpace> cycle = findCycle(space, graph, done);
+                if (cycle != null) {
+                    breakDeadlock(cycle);
+                }
+            }
+        }
+    }
+
+    /**
+     * Search the wait-for graph depth first for a cycle reachable from a
+     * space. All the spaces visited are added to {@code done}.
+     *
+     * @param start the space to start the search from
+     * @param graph the wait-for graph
+     * @param done the spaces which have already been searched
+     * @return the spaces of the cycle, in wait-for order, or {@code null}
+     * if no cycle was found
+     */
+    private static List<CompatibilitySpace> findCycle(
+            CompatibilitySpace start,
+            Map<CompatibilitySpace, List<CompatibilitySpace>> graph,
+            HashSet<CompatibilitySpace> done) {
+        ArrayList<CompatibilitySpace> path = new ArrayList<CompatibilitySpace>();
+        ArrayList<Iterator<CompatibilitySpace>> next =
+            new ArrayList<Iterator<CompatibilitySpace>>();
+
+        path.add(start);
+        next.add(graph.get(start).iterator());
+
+        while (!path.isEmpty()) {
+            int top = path.size() - 1;
+            Iterator<CompatibilitySpace> it = next.get(top);
+
+            if (!it.hasNext()) {
+                done.add(path.remove(top));
+                next.remove(top);
+                continue;
+            }
+
+            CompatibilitySpace space = it.next();
+            int index = path.indexOf(space);
+            if (index != -1) {
+                List<CompatibilitySpace> cycle =
+                    new ArrayList<CompatibilitySpace>(
+                        path.subList(index, path.size()));
+                done.addAll(path);
+                return cycle;
+            }
+
+            List<CompatibilitySpace> edges = graph.get(space);
+            if (edges == null || done.contains(space)) {
+                // not waiting, or already searched
+                continue;
+            }
+
+            path.add(space);
+            next.add(edges.iterator());
+        }
+
+        return null;
+    }
+
+    /**
+     * Check that a cycle in the wait-for graph is still a deadlock, and if
+     * so, wake up a victim. The victim is the transaction in the cycle
+     * which has written the fewest bytes of log, and if several have, the
+     * one holding the fewest locks.
+     *
+     * @param cycle the spaces in the cycle, each one waiting for the next,
+     * and the last one waiting for the first
+     */
+    private void breakDeadlock(List<CompatibilitySpace> cycle) {
+        int n = cycle.size();
+        ActiveLock[] requests = new ActiveLock[n];
+        LockControl[] controls = new LockControl[n];
+        ArrayList<Entry> locked = new ArrayList<Entry>(n);
+        ArrayList<CompatibilitySpace> blockers =
+            new ArrayList<CompatibilitySpace>();
+
+        synchronized (Deadlock.class) {
+            try {
+                for (int i = 0; i < n; i++) {
+                    ActiveLock waitingLock = waitingLocks.get(cycle.get(i));
+                    if (waitingLock == null) {
+                        return;
+                    }
+                    Entry entry = locks.get(waitingLock.getLockable());
+                    if (entry == null) {
+                        return;
+                    }
+                    if (!locked.contains(entry)) {
+                        entry.lockForDeadlockDetection();
+                        locked.add(entry);
+                    }
+
+                    Control control = entry.control;
+                    blockers.clear();
+                    if (!(control instanceof LockControl) ||
+                            !((LockControl) control).addBlockers(
+                                waitingLock, blockers) ||
+                            !blockers.contains(cycle.get((i + 1) % n))) {
+                        // no longer waiting for the next space in the cycle
+                        return;
+                    }
+
+                    requests[i] = waitingLock;
+                    controls[i] = (LockControl) control;
+                }
+
+                int victim = 0;
+                long minLogBytes = Long.MAX_VALUE;
+                int minLockCount = Integer.MAX_VALUE;
+                for (int i = 0; i < n; i++) {
+                    LockSpace space = (LockSpace) cycle.get(i);
+                    LockOwner owner = space.getOwner();
+                    long logBytes =
+                        (owner == null) ? 0 : owner.getLogBytesWritten();
+                    if (logBytes > minLogBytes) {
+                        continue;
+                    }
+                    int lockCount = space.deadlockCount(minLockCount);
+                    if (logBytes < minLogBytes || lockCount < minLockCount) {
+                        victim = i;
+                        minLogBytes = logBytes;
+                        minLockCount = lockCount;
+                    }
+                }
+
+                // describe the deadlock the way Deadlock.look() does, with
+                // the victim first
+                Stack<Object> chain = new Stack<Object>();
+                Hashtable<Object, Object> waiters =
+                    new Hashtable<Object, Object>();
+                for (int j = 0; j < n; j++) {
+                    int i = (victim + j) % n;
+                    chain.push(cycle.get(i));
+                    chain.push(controls[i].getGrants());
+                    waiters.put(cycle.get(i), requests[i]);
+                }
+
+                requests[victim].deadlockData = new Object[] {chain, waiters};
+                requests[victim].wakeUp(Constants.WAITING_LOCK_DEADLOCK);
+
+            } finally {
+                for (Entry e : locked) {
+                    e.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Privileged creation of a daemon thread. Must be private so that user
+     * code can't call this entry point.
+     */
+    private static Thread getDaemonThread(final Runnable task,
+                                          final String threadName) {
+        return AccessController.doPrivileged(
+            new PrivilegedAction<Thread>() {
+                public Thread run() {
+                    return Monitor.getMonitor().getDaemonThread(
+                        task, threadName, false);
+                }
+            });
+    }
     
 	/*
 	** Non public methods
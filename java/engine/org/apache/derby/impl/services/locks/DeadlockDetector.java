@@ -0,0 +1,124 @@
+/*
+
+   Derby - Class org.apache.derby.impl.services.locks.DeadlockDetector
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.services.locks;
+
+import org.apache.derby.iapi.util.InterruptStatus;
+
+/**
+ * A background thread which looks for deadlocks among the waiting lock
+ * requests in a {@code ConcurrentLockSet} at a fixed interval, see
+ * {@link ConcurrentLockSet#detectDeadlocks}. While the detector runs, lock
+ * requests do not search the lock table for deadlocks themselves, they wait
+ * until they are granted, time out or are picked as the victim of a
+ * deadlock by the detector.
+ */
+final class DeadlockDetector implements Runnable {
+
+    /** The lock table to look for deadlocks in. */
+    private final ConcurrentLockSet lockSet;
+
+    /**
+     * How often to look for deadlocks, in milliseconds. Protected by the
+     * monitor on this.
+     */
+    private int interval;
+
+    /** Set when the detector must stop. Protected by the monitor on this. */
+    private boolean stopped;
+
+    /** The detector thread. Protected by the monitor on this. */
+    private Thread detectorThread;
+
+    /**
+     * Create a deadlock detector.
+     *
+     * @param lockSet the lock table to look for deadlocks in
+     * @param interval how often to look for deadlocks, in milliseconds
+     */
+    DeadlockDetector(ConcurrentLockSet lockSet, int interval) {
+        this.lockSet = lockSet;
+        this.interval = interval;
+    }
+
+    /**
+     * Start the detector thread.
+     *
+     * @param t the thread to run the detector in
+     */
+    synchronized void start(Thread t) {
+        detectorThread = t;
+        detectorThread.start();
+    }
+
+    /**
+     * Change how often the detector looks for deadlocks.
+     *
+     * @param interval the new interval, in milliseconds
+     */
+    synchronized void setInterval(int interval) {
+        this.interval = interval;
+        notifyAll();
+    }
+
+    /**
+     * Stop the detector thread and wait for it to finish.
+     */
+    void stop() {
+        Thread t;
+        synchronized (this) {
+            stopped = true;
+            t = detectorThread;
+            notifyAll();
+        }
+
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join();
+            } catch (InterruptedException ie) {
+                InterruptStatus.setInterrupted();
+            }
+        }
+    }
+
+    /**
+     * The detector thread. Looks for deadlocks every interval until
+     * stopped.
+     */
+    public void run() {
+        for (;;) {
+            synchronized (this) {
+                if (!stopped) {
+                    try {
+                        wait(interval);
+                    } catch (InterruptedException ie) {
+                        InterruptStatus.setInterrupted();
+                    }
+                }
+                if (stopped) {
+                    return;
+                }
+            }
+
+            lockSet.detectDeadlocks();
+        }
+    }
+}
@@ -41,20 +41,20 @@ class Lock implements Latch, Control {
 
 	/**
 		Compatibility space the object is locked in.
-		MT - immutable - reference only
+		MT - immutable - reference only, except for copies, see reuseCopy()
 	*/
-	private final CompatibilitySpace space;
+	private CompatibilitySpace space;
 
 	/**
 		Object being locked.
-		MT - immutable - reference only
+		MT - immutable - reference only, except for copies, see reuseCopy()
 	*/
-	private final Lockable	ref;
+	private Lockable	ref;
 	/**
 		Qualifier used in the lock request..
-		MT - immutable - reference only
+		MT - immutable - reference only, except for copies, see reuseCopy()
 	*/
-	private final Object	qualifier;
+	private Object	qualifier;
 
 	int count;
 
@@ -110,6 +110,29 @@ class Lock implements Latch, Control {
 		return new Lock(space, ref, qualifier);
 	}
 
+	/**
+		Turn a copy which is no longer in use into a copy of another lock,
+		with the count set to zero. Only to be used in the LockSpace code,
+		which keeps its unused copies so that it does not have to allocate
+		a new one for every lock obtained.
+
+		@param lock the lock to copy, or null to clear the identity of this
+		copy while it is not in use
+	*/
+	final void reuseCopy(Lock lock) {
+
+		if (lock == null) {
+			space = null;
+			ref = null;
+			qualifier = null;
+		} else {
+			space = lock.space;
+			ref = lock.ref;
+			qualifier = lock.qualifier;
+		}
+		count = 0;
+	}
+
 	void grant() {
 
 		count++;
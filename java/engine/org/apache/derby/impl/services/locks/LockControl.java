@@ -552,6 +552,48 @@ final class LockControl implements Control {
 		}
 	}
 
+	/**
+		Add the compatibility spaces which a waiting lock request is blocked
+		by to a list. These are the spaces holding a granted lock which is
+		incompatible with the request, and unless the request can skip the
+		queue, the spaces of the incompatible requests waiting ahead of it.
+		Used by the background deadlock detector.
+
+		@return false if the request is no longer waiting on this Lockable,
+		or has been picked to be granted, true otherwise
+	*/
+	boolean addBlockers(ActiveLock waitingLock,
+						List<CompatibilitySpace> blockers) {
+
+		if ((waiting == null) || waitingLock.potentiallyGranted)
+			return false;
+
+		CompatibilitySpace space = waitingLock.getCompatabilitySpace();
+		Object qualifier = waitingLock.getQualifier();
+
+		// a space waiting for itself is not a deadlock between transactions,
+		// so the space's own locks are not counted
+		if (!isUnlocked()) {
+			for (Lock gl : getGrants()) {
+				if ((gl.getCompatabilitySpace() != space) &&
+					!ref.requestCompatible(qualifier, gl.getQualifier()))
+					blockers.add(gl.getCompatabilitySpace());
+			}
+		}
+
+		for (Lock wl : waiting) {
+			if (wl == waitingLock)
+				return true;
+			if (!waitingLock.canSkip &&
+				(wl.getCompatabilitySpace() != space) &&
+				!ref.requestCompatible(qualifier, wl.getQualifier()))
+				blockers.add(wl.getCompatabilitySpace());
+		}
+
+		// not in the queue
+		return false;
+	}
+
 	/**
 		Return a Stack of the
 		held locks (Lock objects) on this Lockable.
@@ -0,0 +1,70 @@
+/*
+
+   Derby - Class org.apache.derby.impl.services.locks.LockCounters
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.services.locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.derby.iapi.services.locks.ContainerLockStatistics;
+
+/**
+ * The lock statistics of one container, updated by the lock table without
+ * holding any lock table entry. The counters are {@code LongAdder}s so that
+ * threads locking rows of the same container do not contend on a single
+ * counter.
+ */
+final class LockCounters {
+
+    /** The number of locks granted. */
+    final LongAdder acquisitions = new LongAdder();
+
+    /** The number of lock requests that had to wait. */
+    final LongAdder waits = new LongAdder();
+
+    /** The total time lock requests have waited, in nanoseconds. */
+    final LongAdder waitTime = new LongAdder();
+
+    /** The number of waits that timed out. */
+    final LongAdder timeouts = new LongAdder();
+
+    /** The number of waits that ended as the victim of a deadlock. */
+    final LongAdder deadlocks = new LongAdder();
+
+    /** The number of escalations of row locks to a container lock. */
+    final LongAdder escalations = new LongAdder();
+
+    /**
+     * Take a snapshot of the counters.
+     *
+     * @param containerId the id of the container the counters are for
+     * @return the current values of the counters
+     */
+    ContainerLockStatistics snapshot(long containerId) {
+        return new ContainerLockStatistics(
+                containerId,
+                acquisitions.sum(),
+                waits.sum(),
+                TimeUnit.NANOSECONDS.toMillis(waitTime.sum()),
+                timeouts.sum(),
+                deadlocks.sum(),
+                escalations.sum());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+
+   Derby - Class org.apache.derby.impl.services.locks.LockCountersTable
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.services.locks;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.derby.iapi.services.locks.ContainerLockStatistics;
+
+/**
+ * The lock statistics of the containers, by container id. Every lock
+ * request looks up the statistics of its container, so the ids are kept
+ * in an array of primitive longs and a lookup neither allocates nor
+ * synchronizes. Containers are added and removed far less often than they
+ * are looked up: every change copies the table and publishes the copy.
+ */
+final class LockCountersTable {
+
+    /** An open addressing hash table which is never changed once built. */
+    private static final class Table {
+        final long[] ids;
+        final LockCounters[] counters;
+        final int size;
+
+        Table(int capacity, int size) {
+            ids = new long[capacity];
+            counters = new LockCounters[capacity];
+            this.size = size;
+        }
+
+        LockCounters get(long id) {
+            int mask = ids.length - 1;
+            for (int i = slot(id, mask); ; i = (i + 1) & mask) {
+                LockCounters stats = counters[i];
+                if (stats == null || ids[i] == id) {
+                    return stats;
+                }
+            }
+        }
+
+        void put(long id, LockCounters stats) {
+            int mask = ids.length - 1;
+            int i = slot(id, mask);
+            while (counters[i] != null) {
+                i = (i + 1) & mask;
+            }
+            ids[i] = id;
+            counters[i] = stats;
+        }
+
+        private static int slot(long id, int mask) {
+            long hash = id * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+
+    /** The smallest capacity of the hash table, a power of two. */
+    private static final int MIN_CAPACITY = 16;
+
+    /** The current table, replaced by a new one on every change. */
+    private volatile Table table = new Table(MIN_CAPACITY, 0);
+
+    /**
+     * Get the lock statistics of a container.
+     *
+     * @param containerId the id of the container
+     * @return the lock statistics, or {@code null} if the container has
+     * none yet
+     */
+    LockCounters get(long containerId) {
+        return table.get(containerId);
+    }
+
+    /**
+     * Get the lock statistics of a container, creating them if the
+     * container has none yet.
+     *
+     * @param containerId the id of the container
+     * @return the lock statistics
+     */
+    synchronized LockCounters add(long containerId) {
+        Table old = table;
+        LockCounters stats = old.get(containerId);
+        if (stats == null) {
+            stats = new LockCounters();
+            Table t = copy(old, old.size + 1, -1);
+            t.put(containerId, stats);
+            table = t;
+        }
+        return stats;
+    }
+
+    /**
+     * Forget the lock statistics of a container.
+     *
+     * @param containerId the id of the container
+     */
+    synchronized void remove(long containerId) {
+        Table old = table;
+        if (old.get(containerId) != null) {
+            table = copy(old, old.size - 1, containerId);
+        }
+    }
+
+    /**
+     * Get a snapshot of the lock statistics of every container.
+     *
+     * @return the lock statistics, one element per container
+     */
+    List<ContainerLockStatistics> snapshot() {
+        Table t = table;
+        ArrayList<ContainerLockStatistics> list =
+            new ArrayList<ContainerLockStatistics>(t.size);
+        for (int i = 0; i < t.ids.length; i++) {
+            if (t.counters[i] != null) {
+                list.add(t.counters[i].snapshot(t.ids[i]));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Copy the entries of a table into a new table, sized so that it is at
+     * most half full.
+     *
+     * @param old the table to copy
+     * @param size the number of entries of the new table
+     * @param skip the id of a container to leave out, or -1
+     * @return the new table, which may not be shared until it is complete
+     */
+    private static Table copy(Table old, int size, long skip) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        Table t = new Table(capacity, size);
+        for (int i = 0; i < old.ids.length; i++) {
+            if (old.counters[i] != null && old.ids[i] != skip) {
+                t.put(old.ids[i], old.counters[i]);
+            }
+        }
+        return t;
+    }
+}
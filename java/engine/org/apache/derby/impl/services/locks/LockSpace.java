@@ -56,6 +56,8 @@ final class LockSpace implements CompatibilitySpace {
     private final HashMap<Object, HashMap<Lock, Lock>> groups;
 	/** Reference to the owner of this compatibility space. */
 	private final LockOwner owner;
+	/** The lock factory which created this compatibility space. */
+	private final AbstractPool factory;
 
     /** The maximum number of elements to cache in {@link #spareGroups}. */
     private static final int MAX_CACHED_GROUPS = 3;
@@ -64,19 +66,38 @@ final class LockSpace implements CompatibilitySpace {
     private final ArrayDeque<HashMap<Lock, Lock>> spareGroups =
             new ArrayDeque<HashMap<Lock, Lock>>(MAX_CACHED_GROUPS);
 
+    /** The maximum number of elements to cache in {@link #spareLocks}. */
+    private static final int MAX_CACHED_LOCKS = 512;
+
+    /**
+     * Cached copies of locks, which are no longer in any group. Reused by
+     * {@link #addLock} so that obtaining a lock, typically a row lock which
+     * is released at commit, does not allocate a new copy for the group.
+     */
+    private final ArrayDeque<Lock> spareLocks = new ArrayDeque<Lock>();
+
+	/**
+		When the lock table is full, the callback is called as if the limit
+		were this many times lower.
+	*/
+	private static final int LOCK_TABLE_FULL_DIVISOR = 4;
+
 	// the Limit info.
 	private Object callbackGroup;
 	private int    limit;
 	private int    nextLimitCall;
+	private int    nextFullTableCall;
 	private Limit  callback;
 
 	/**
 	 * Creates a new <code>LockSpace</code> instance.
 	 *
+	 * @param factory the lock factory creating the compatibility space
 	 * @param owner an object representing the owner of the compatibility space
 	 */
-	LockSpace(LockOwner owner) {
+	LockSpace(AbstractPool factory, LockOwner owner) {
         groups = new HashMap<Object, HashMap<Lock, Lock>>();
+		this.factory = factory;
 		this.owner = owner;
 	}
 
@@ -105,7 +126,7 @@ final class LockSpace implements CompatibilitySpace {
 		}
 
 		if (lockInGroup == null) {
-			lockInGroup = lock.copy();
+			lockInGroup = getCopy(lock);
 			dl.put(lockInGroup, lockInGroup);
 		}
 		lockInGroup.count++;
@@ -117,8 +138,25 @@ final class LockSpace implements CompatibilitySpace {
 			return;
 
 		int groupSize = dl.size();
-		
-		if (groupSize > nextLimitCall) {
+
+		if ((groupSize > nextFullTableCall) && (groupSize <= nextLimitCall) &&
+			factory.isLockTableFull()) {
+
+			// The lock table holds too many locks, so call the callback
+			// early, telling it the lower limit, which makes the
+			// callback escalate tables with fewer locks than it would
+			// otherwise. If that does not release enough locks, try again
+			// when another part of the lower limit has been obtained.
+			int fullTableLimit = limit / LOCK_TABLE_FULL_DIVISOR;
+
+			inLimit = true;
+			callback.reached(this, group, fullTableLimit,
+				new LockList(java.util.Collections.enumeration(dl.keySet())), groupSize);
+			inLimit = false;
+
+			nextFullTableCall = dl.size() + fullTableLimit;
+
+		} else if (groupSize > nextLimitCall) {
 
 			inLimit = true;
 			callback.reached(this, group, limit,
@@ -151,10 +189,12 @@ final class LockSpace implements CompatibilitySpace {
 
         for (Lock lock : dl.keySet()) {
             lset.unlock(lock, 0);
+            saveCopy(lock);
 		}
 
 		if ((callbackGroup != null) && group.equals(callbackGroup)) {
 			nextLimitCall = limit;
+			nextFullTableCall = limit / LOCK_TABLE_FULL_DIVISOR;
 		}
 
 		saveGroup(dl);
@@ -177,6 +217,31 @@ final class LockSpace implements CompatibilitySpace {
         }
 	}
 
+    /**
+     * Get a copy of a lock to add to a group, reusing a cached copy if
+     * there is one.
+     */
+    private Lock getCopy(Lock lock) {
+        Lock copy = spareLocks.poll();
+
+        if (copy == null)
+            return lock.copy();
+
+        copy.reuseCopy(lock);
+        return copy;
+    }
+
+    /**
+     * Cache a copy of a lock which has been removed from its group and is
+     * no longer referenced by the lock table.
+     */
+    private void saveCopy(Lock copy) {
+        if (spareLocks.size() < MAX_CACHED_LOCKS) {
+            copy.reuseCopy(null);
+            spareLocks.offer(copy);
+        }
+    }
+
 	/**
 		Unlock all locks in the group that match the key
 	*/
@@ -194,6 +259,7 @@ final class LockSpace implements CompatibilitySpace {
 			}
 			lset.unlock(lock, 0);
 			e.remove();
+			saveCopy(lock);
 		}
 
 		if (allUnlocked) {
@@ -201,6 +267,7 @@ final class LockSpace implements CompatibilitySpace {
 			saveGroup(dl);
 			if ((callbackGroup != null) && group.equals(callbackGroup)) {
 				nextLimitCall = limit;
+				nextFullTableCall = limit / LOCK_TABLE_FULL_DIVISOR;
 			}
 		}
 	}
@@ -252,6 +319,7 @@ final class LockSpace implements CompatibilitySpace {
                 Lock intoL = lockI;
 
 				intoL.count += fromL.getCount();
+				saveCopy(fromL);
 			}
 		}
 
@@ -272,11 +340,14 @@ final class LockSpace implements CompatibilitySpace {
 
 		if (lockInGroup.getCount() == 1) {
 
+			saveCopy(lockInGroup);
+
 			if (dl.isEmpty()) {
 				groups.remove(group);
 				saveGroup(dl);
 				if ((callbackGroup != null) && group.equals(callbackGroup)) {
 					nextLimitCall = limit;
+					nextFullTableCall = limit / LOCK_TABLE_FULL_DIVISOR;
 				}
 			}
 
@@ -317,6 +388,7 @@ final class LockSpace implements CompatibilitySpace {
 	synchronized void setLimit(Object group, int limit, Limit callback) {
 		callbackGroup = group;
 		this.nextLimitCall = this.limit = limit;
+		this.nextFullTableCall = limit / LOCK_TABLE_FULL_DIVISOR;
 		this.callback = callback;
 	}
 
@@ -326,7 +398,7 @@ final class LockSpace implements CompatibilitySpace {
 	synchronized void clearLimit(Object group) {
 		if (group.equals(callbackGroup)) {
 			callbackGroup = null;
-			nextLimitCall = limit = Integer.MAX_VALUE;
+			nextLimitCall = nextFullTableCall = limit = Integer.MAX_VALUE;
 			callback = null;
 		}
 	}
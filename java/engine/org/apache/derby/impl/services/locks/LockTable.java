@@ -21,9 +21,11 @@
 
 package org.apache.derby.impl.services.locks;
 
+import java.util.List;
 import java.util.Map;
 import org.apache.derby.iapi.error.StandardException;
 import org.apache.derby.iapi.services.locks.CompatibilitySpace;
+import org.apache.derby.iapi.services.locks.ContainerLockStatistics;
 import org.apache.derby.iapi.services.locks.Latch;
 import org.apache.derby.iapi.services.locks.Lockable;
 
@@ -140,6 +142,43 @@ interface LockTable {
      */
     int getWaitTimeout();
 
+    /**
+     * Start, stop or change the interval of the background deadlock
+     * detector.
+     *
+     * @param interval how often to look for deadlocks in milliseconds, or
+     * zero to stop looking for deadlocks in the background
+     */
+    void setDeadlockDetectorInterval(int interval);
+
+    /**
+     * Get the number of locked objects in the lock table.
+     */
+    int size();
+
+    /**
+     * Count an escalation of row locks to a lock on a container in the lock
+     * statistics of the container.
+     *
+     * @param ref the lock on the container
+     */
+    void countEscalation(Lockable ref);
+
+    /**
+     * Get a snapshot of the lock statistics of every container whose locks
+     * have been requested.
+     *
+     * @return the lock statistics, one element per container
+     */
+    List<ContainerLockStatistics> getLockStatistics();
+
+    /**
+     * Forget the lock statistics of a container which has been removed.
+     *
+     * @param ref the lock on the container
+     */
+    void removeLockStatistics(Lockable ref);
+
     /**
      * Enable or disable tracing of deadlocks.
      *
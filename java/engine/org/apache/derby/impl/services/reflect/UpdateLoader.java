@@ -426,6 +426,11 @@ final class UpdateLoader implements LockOwner {
     {
         return false;
     }
+
+    public long getLogBytesWritten()
+    {
+        return 0;
+    }
     
     
     /**
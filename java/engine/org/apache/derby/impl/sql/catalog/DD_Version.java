@@ -156,6 +156,8 @@ public	class DD_Version implements	Formatable
 			return "10.14";
 		case DataDictionary.DD_VERSION_DERBY_10_15:
 			return "10.15";
+		case DataDictionary.DD_VERSION_DERBY_10_16:
+			return "10.16";
 		default:
 			return null;
 		}
@@ -556,6 +558,13 @@ public	class DD_Version implements	Formatable
 			bootingDictionary.upgrade_SYSCOLUMNS_AUTOINCCYCLE(tc);
 		}
 
+        if (fromMajorVersionNumber <= DataDictionary.DD_VERSION_DERBY_10_15)
+        {
+            // On upgrade from versions before 10.16, create system procedures
+            // added in 10.16.
+            bootingDictionary.create_10_16_system_procedures( tc, newlyCreatedRoutines );
+        }
+
         // Grant PUBLIC access to some system routines
         bootingDictionary.grantPublicAccessToSystemRoutines(newlyCreatedRoutines, tc, aid);
 	}
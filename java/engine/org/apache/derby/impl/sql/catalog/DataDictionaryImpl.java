@@ -517,7 +517,7 @@ public final class	DataDictionaryImpl
 	public void boot(boolean create, Properties startParams) 
 			throws StandardException
 	{
-		softwareVersion = new DD_Version(this, DataDictionary.DD_VERSION_DERBY_10_15);
+		softwareVersion = new DD_Version(this, DataDictionary.DD_VERSION_DERBY_10_16);
 
 		startupParameters = startParams;
 
@@ -11456,6 +11456,8 @@ public final class	DataDictionaryImpl
         create_10_12_system_procedures( tc, newlyCreatedRoutines );
         // add 10.13 specific system procedures
         create_10_13_system_procedures( tc, newlyCreatedRoutines );
+        // add 10.16 specific system procedures
+        create_10_16_system_procedures( tc, newlyCreatedRoutines );
     }
 
     /**
@@ -13554,6 +13556,54 @@ public final class	DataDictionaryImpl
 
 	
 
+    }
+
+    /**
+     * <p>
+     * Create system procedures that are part of the SYSCS_UTIL schema, added in version 10.16.
+     * </p>
+     *
+     * @param tc an instance of the Transaction Controller.
+     * @param newlyCreatedRoutines set of routines we are creating (used to add permissions later on)
+     **/
+    void create_10_16_system_procedures( TransactionController   tc, HashSet<String> newlyCreatedRoutines )
+        throws StandardException
+    {
+        UUID  sysUtilUUID = getSystemUtilSchemaDescriptor().getUUID();
+
+        // void SYSCS_UTIL.SYSCS_DEFRAGMENT_INDEX(
+        //     IN SCHEMANAME        VARCHAR(128),
+        //     IN TABLENAME         VARCHAR(128),
+        //     IN INDEXNAME         VARCHAR(128)
+        //     )
+        {
+            // procedure argument names
+            String[] arg_names = {
+                "SCHEMANAME",
+                "TABLENAME",
+                "INDEXNAME"};
+
+            // procedure argument types
+            TypeDescriptor[] arg_types = {
+                CATALOG_TYPE_SYSTEM_IDENTIFIER,
+                CATALOG_TYPE_SYSTEM_IDENTIFIER,
+                CATALOG_TYPE_SYSTEM_IDENTIFIER
+            };
+
+            createSystemProcedureOrFunction(
+                "SYSCS_DEFRAGMENT_INDEX",
+                sysUtilUUID,
+                arg_names,
+                arg_types,
+                0,
+                0,
+                RoutineAliasInfo.MODIFIES_SQL_DATA,
+                false,
+                false,
+                (TypeDescriptor) null,
+                newlyCreatedRoutines,
+                tc);
+        }
     }
 
 
@@ -14019,6 +14069,8 @@ public final class	DataDictionaryImpl
 			{"STATEMENT_CACHE", "org.apache.derby.diag.StatementCache"},
 			{"TRANSACTION_TABLE", "org.apache.derby.diag.TransactionTable"},
 			{"ERROR_MESSAGES", "org.apache.derby.diag.ErrorMessages"},
+			{"LOG_STATISTICS", "org.apache.derby.diag.LogStatistics"},
+			{"LOCK_STATISTICS", "org.apache.derby.diag.LockStatistics"},
 	};
 	
 	private String[][] DIAG_VTI_TABLE_FUNCTION_CLASSES =
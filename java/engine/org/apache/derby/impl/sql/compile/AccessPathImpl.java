@@ -41,6 +41,7 @@ class AccessPathImpl implements AccessPath
 	boolean					nonMatchingIndexScan = false;
 	JoinStrategy			joinStrategy = null;
 	int						lockMode;
+	boolean					sortAvoidance = false;
 	Optimizer				optimizer;
     private String          accessPathName =  "";
 
@@ -138,6 +139,18 @@ class AccessPathImpl implements AccessPath
 		return lockMode;
 	}
 
+	/** @see AccessPath#setSortAvoidance */
+	public void setSortAvoidance(boolean sortAvoidance)
+	{
+		this.sortAvoidance = sortAvoidance;
+	}
+
+	/** @see AccessPath#getSortAvoidance */
+	public boolean getSortAvoidance()
+	{
+		return sortAvoidance;
+	}
+
 	/** @see AccessPath#copy */
 	public void copy(AccessPath copyFrom)
 	{
@@ -147,6 +160,7 @@ class AccessPathImpl implements AccessPath
 		setNonMatchingIndexScan(copyFrom.getNonMatchingIndexScan());
 		setJoinStrategy(copyFrom.getJoinStrategy());
 		setLockMode(copyFrom.getLockMode());
+		setSortAvoidance(copyFrom.getSortAvoidance());
 	}
 
 	/** @see AccessPath#getOptimizer */
@@ -28,6 +28,7 @@ import org.apache.derby.iapi.reference.ClassName;
 import org.apache.derby.iapi.services.classfile.VMOpcode;
 import org.apache.derby.iapi.services.compiler.MethodBuilder;
 import org.apache.derby.iapi.services.context.ContextManager;
+import org.apache.derby.iapi.services.io.FormatableArrayHolder;
 import org.apache.derby.shared.common.sanity.SanityManager;
 import org.apache.derby.iapi.sql.compile.CostEstimate;
 import org.apache.derby.iapi.sql.compile.Optimizable;
@@ -38,6 +39,7 @@ import org.apache.derby.iapi.sql.compile.RequiredRowOrdering;
 import org.apache.derby.iapi.sql.compile.RowOrdering;
 import org.apache.derby.iapi.sql.dictionary.ConglomerateDescriptor;
 import org.apache.derby.iapi.sql.dictionary.DataDictionary;
+import org.apache.derby.iapi.store.access.ColumnOrdering;
 
 /**
  * A DistinctNode represents a result set for a distinct operation
@@ -270,7 +272,14 @@ class DistinctNode extends SingleChildResultSetNode
 		/*
 			create the orderItem and stuff it in.
 		 */
-		int orderItem = acb.addItem(acb.getColumnOrdering(getResultColumns()));
+		FormatableArrayHolder orderingHolder =
+			acb.getColumnOrdering(getResultColumns());
+		int orderItem = acb.addItem(orderingHolder);
+
+		/* Unordered rows may be grouped by hashing instead of sorting */
+		int hashCapacity = inSortedOrder ? 0 :
+			hashGroupingCapacity(
+				orderingHolder.getArray(ColumnOrdering[].class));
 
 		/* Generate the SortResultSet:
 		 *	arg1: childExpress - Expression for childResultSet
@@ -281,6 +290,9 @@ class DistinctNode extends SingleChildResultSetNode
 		 *			from the sort
 		 *  arg6: row size
 		 *  arg7: resultSetNumber
+		 *  arg8: estimated row count
+		 *  arg9: estimated cost
+		 *  arg10: hashCapacity - groups to hash in memory, or 0 to sort
 		 */
 
 		acb.pushGetResultSetFactoryExpression(mb);
@@ -294,8 +306,9 @@ class DistinctNode extends SingleChildResultSetNode
 		mb.push(getResultSetNumber());
 		mb.push(getCostEstimate().rowCount());
 		mb.push(getCostEstimate().getEstimatedCost());
+		mb.push(hashCapacity);
 
 		mb.callMethod(VMOpcode.INVOKEINTERFACE, (String) null, "getSortResultSet",
-                ClassName.NoPutResultSet, 9);
+                ClassName.NoPutResultSet, 10);
 	}
 }
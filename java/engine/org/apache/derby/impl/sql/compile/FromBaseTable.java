@@ -466,6 +466,11 @@ class FromBaseTable extends FromTable
                     if ( optimizerTracingIsOn() ) { getOptimizerTracer().traceScanningHeapWithUniqueKey(); }
 				}
 			}
+			else if ( ! currentConglomerateDescriptor.getIndexDescriptor().isOrdered())
+			{
+				/* A hash index returns its rows in no particular order */
+				rowOrdering.addUnorderedOptimizable(this);
+			}
 			else
 			{
 				IndexRowGenerator irg =
@@ -2048,6 +2053,17 @@ class FromBaseTable extends FromTable
 			}
 		}
 
+		/*
+		** A join strategy that scans the inner table only once may add
+		** a cost of its own, like the sort of the inner rows of a merge
+		** join.
+		*/
+		if (! currentJoinStrategy.multiplyBaseCostByOuterRows())
+		{
+			currentJoinStrategy.estimateCost(this, predList, cd, outerCost,
+											 optimizer, costEst);
+		}
+
 		/* Put the base predicates back in the predicate list */
 		currentJoinStrategy.putBasePredicates(predList,
 									   baseTableRestrictionList);
@@ -2144,9 +2160,31 @@ class FromBaseTable extends FromTable
 	public boolean memoryUsageOK(double rowCount, int maxMemoryPerTable)
 			throws StandardException
 	{
+		/*
+		** The hash table of a base table does not have to fit in memory,
+		** the rows that do not fit are joined partition by partition. The
+		** join strategy adds the cost of that to the cost estimate.
+		*/
+		if (getCurrentAccessPath().getJoinStrategy().getClass() ==
+				HashJoinStrategy.class)
+		{
+			return true;
+		}
+
 		return super.memoryUsageOK(singleScanRowCount, maxMemoryPerTable);
 	}
 
+	/**
+	 * Get the estimated number of rows that a hash table on this table
+	 * holds, that is, the rows that qualify for the restrictions on this
+	 * table alone. Only valid after estimateCost() has been called for
+	 * the current access path.
+	 */
+	double hashTableRowCount()
+	{
+		return singleScanRowCount;
+	}
+
 	/**
 	 * @see org.apache.derby.iapi.sql.compile.Optimizable#isTargetTable
 	 */
@@ -4434,9 +4472,9 @@ class FromBaseTable extends FromTable
 				return false;
 			}
 		}
-		// Verify access path is an index
+		// Verify access path is an ordered index
 		ConglomerateDescriptor cd = getTrulyTheBestAccessPath().getConglomerateDescriptor();
-		if (! cd.isIndex())
+		if (! cd.isIndex() || ! cd.getIndexDescriptor().isOrdered())
 		{
 			return false;
 		}
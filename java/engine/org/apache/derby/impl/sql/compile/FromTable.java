@@ -991,6 +991,7 @@ abstract class FromTable extends ResultSetNode implements Optimizable
 		if (bestSortAvoidancePath == null)
 		{
 			bestSortAvoidancePath = new AccessPathImpl(optimizer);
+			bestSortAvoidancePath.setSortAvoidance(true);
 		}
 		if (trulyTheBestAccessPath == null)
 		{
@@ -1062,7 +1062,15 @@ class GroupByNode extends SingleChildResultSetNode
 		/* Generate a (Distinct)GroupedAggregateResultSet if grouped aggregates */
 		else
 		{
-			genGroupedAggregateResultSet(acb, mb);
+			/* Unordered rows may be grouped by hashing instead of sorting */
+			int hashCapacity = 0;
+			if (!isInSortedOrder && !addDistinctAggregate &&
+				!groupingList.isRollup())
+			{
+				hashCapacity = hashGroupingCapacity(
+					orderingHolder.getArray(ColumnOrdering[].class));
+			}
+			genGroupedAggregateResultSet(acb, mb, hashCapacity);
 		}
 	}
 
@@ -1100,7 +1108,8 @@ class GroupByNode extends SingleChildResultSetNode
 	 *
 	 */
 	private	void genGroupedAggregateResultSet(ActivationClassBuilder acb,
-												   MethodBuilder mb)
+												   MethodBuilder mb,
+												   int hashCapacity)
 				throws StandardException
 	{
 		/* Generate the (Distinct)GroupedAggregateResultSet:
@@ -1114,6 +1123,8 @@ class GroupByNode extends SingleChildResultSetNode
 		 *  arg7: row size
 		 *  arg8: resultSetNumber
 		 *  arg9: isRollup
+		 *  arg10: hashCapacity - groups to hash in memory, or 0 to sort
+		 *			(GroupedAggregateResultSet only)
 		 */
 		String resultSet = (addDistinctAggregate) ? "getDistinctGroupedAggregateResultSet" : "getGroupedAggregateResultSet";
     
@@ -1121,8 +1132,17 @@ class GroupByNode extends SingleChildResultSetNode
 		mb.push(getCostEstimate().getEstimatedCost());
 		mb.push(groupingList.isRollup());
 
-		mb.callMethod(VMOpcode.INVOKEINTERFACE, (String) null, resultSet,
-                ClassName.NoPutResultSet, 10);
+		if (addDistinctAggregate)
+		{
+			mb.callMethod(VMOpcode.INVOKEINTERFACE, (String) null, resultSet,
+					ClassName.NoPutResultSet, 10);
+		}
+		else
+		{
+			mb.push(hashCapacity);
+			mb.callMethod(VMOpcode.INVOKEINTERFACE, (String) null, resultSet,
+					ClassName.NoPutResultSet, 11);
+		}
 
 	}
 
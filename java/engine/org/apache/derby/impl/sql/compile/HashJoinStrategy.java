@@ -257,11 +257,53 @@ class HashJoinStrategy extends BaseJoinStrategy {
 							 ConglomerateDescriptor cd,
 							 CostEstimate outerCost,
 							 Optimizer optimizer,
-							 CostEstimate costEstimate) {
+							 CostEstimate costEstimate)
+		throws StandardException
+	{
 		/*
 		** The cost of a hash join is the cost of building the hash table.
-		** There is no extra cost per outer row, so don't do anything here.
+		** There is no extra cost per outer row, unless the hash table of a
+		** base table does not fit in memory. Then the inner rows that do
+		** not fit are written to disk in partitions, together with the
+		** outer rows that join to them, and both are read back one
+		** partition at a time (a hybrid hash join).
 		*/
+		if (! spillsToDisk(innerTable, optimizer.getMaxMemoryPerTable()))
+		{
+			return;
+		}
+
+		double rowCount = ((FromBaseTable) innerTable).hashTableRowCount();
+		int capacity =
+			innerTable.maxCapacity(this, optimizer.getMaxMemoryPerTable());
+		double spilledFraction = 1.0 - (capacity / rowCount);
+		costEstimate.setCost(
+				costEstimate.getEstimatedCost() +
+					2 * spilledFraction * (costEstimate.getEstimatedCost() +
+										 outerCost.getEstimatedCost()),
+				costEstimate.rowCount(),
+				costEstimate.singleScanRowCount());
+	}
+
+	/**
+	 * Tell whether the hash table of a base table is estimated not to fit
+	 * in memory. The join is then done partition by partition, and the
+	 * outer rows of the partitions written to disk are joined last, out of
+	 * their order. Only valid after the cost of the current access path
+	 * of the inner table has been estimated.
+	 *
+	 * @exception StandardException		Thrown on error
+	 */
+	boolean spillsToDisk(Optimizable innerTable, int maxMemoryPerTable)
+		throws StandardException
+	{
+		if (! (innerTable instanceof FromBaseTable))
+		{
+			return false;
+		}
+
+		return ((FromBaseTable) innerTable).hashTableRowCount() >
+			innerTable.maxCapacity(this, maxMemoryPerTable);
 	}
 
 	/** @see JoinStrategy#maxCapacity */
@@ -375,6 +417,8 @@ class HashJoinStrategy extends BaseJoinStrategy {
 		mb.push(innerTable.initialCapacity());
 		mb.push(innerTable.loadFactor());
 		mb.push(innerTable.maxCapacity( (JoinStrategy) this, maxMemoryPerTable));
+		/* A plan that avoids a sort needs the rows in the order of the probes */
+		mb.push(innerTable.getTrulyTheBestAccessPath().getSortAvoidance());
 		/* Get the hash key columns and wrap them in a formattable */
 		int[] hashKeyColumns = innerTable.hashKeyColumns();
 		FormatableIntHolder[] fihArray = 
@@ -392,7 +436,7 @@ class HashJoinStrategy extends BaseJoinStrategy {
 						tableLocked,
 						isolationLevel);
 
-		return 28;
+		return 29;
 	}
 
 	/**
@@ -599,7 +643,7 @@ class HashJoinStrategy extends BaseJoinStrategy {
 	 *
 	 * @exception StandardException		Thrown on error
 	 */
-	private int[] findHashKeyColumns(Optimizable innerTable,
+	int[] findHashKeyColumns(Optimizable innerTable,
 									ConglomerateDescriptor cd,
 									OptimizablePredicateList predList)
 				throws StandardException
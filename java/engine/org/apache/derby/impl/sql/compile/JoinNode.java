@@ -276,6 +276,24 @@ class JoinNode extends TableOperatorNode
 		return getCostEstimate();
 	}
 
+	/**
+	 * The rows of the left side are outer to the right side, which lets
+	 * the right side be merge joined to an ordered left side.
+	 *
+	 * @see TableOperatorNode#getOuterSource
+	 */
+    @Override
+	Optimizable getOuterSource(ResultSetNode sourceResultSet)
+	{
+		if (sourceResultSet == rightResultSet &&
+			leftResultSet instanceof Optimizable)
+		{
+			return (Optimizable) leftResultSet;
+		}
+
+		return null;
+	}
+
 	/**
 	 * @see Optimizable#pushOptPredicate
 	 *
@@ -0,0 +1,370 @@
+/*
+
+   Derby - Class org.apache.derby.impl.sql.compile.MergeJoinStrategy
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.sql.compile;
+
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.services.compiler.MethodBuilder;
+import org.apache.derby.iapi.services.io.FormatableArrayHolder;
+import org.apache.derby.iapi.services.io.FormatableIntHolder;
+import org.apache.derby.iapi.sql.compile.CostEstimate;
+import org.apache.derby.iapi.sql.compile.ExpressionClassBuilderInterface;
+import org.apache.derby.iapi.sql.compile.JoinStrategy;
+import org.apache.derby.iapi.sql.compile.Optimizable;
+import org.apache.derby.iapi.sql.compile.OptimizablePredicateList;
+import org.apache.derby.iapi.sql.compile.Optimizer;
+import org.apache.derby.iapi.sql.dictionary.ConglomerateDescriptor;
+import org.apache.derby.iapi.sql.dictionary.IndexRowGenerator;
+import org.apache.derby.iapi.store.access.SortCostController;
+import org.apache.derby.iapi.store.access.TransactionController;
+import org.apache.derby.iapi.types.DataTypeDescriptor;
+
+/**
+ * A sort-merge join. The outer rows must arrive in ascending order of
+ * the join column, which is the case when the outermost table of the
+ * join order is read through an ascending index that leads with that
+ * column. The inner table is then read once, in the same order: either
+ * straight from an index on the join column, or from a heap (or an
+ * unordered index) whose rows are sorted on the join column when the
+ * scan is opened. Each outer row only moves the inner scan forward, so
+ * no hash table has to be built and the join needs no more memory than
+ * the inner rows sharing one join key.
+ * <p>
+ * The predicate handling is the same as for a hash join: the equijoin
+ * predicates are evaluated against the inner rows by the scan, instead of
+ * being turned into start and stop keys for every outer row.
+ */
+class MergeJoinStrategy extends HashJoinStrategy {
+    MergeJoinStrategy() {
+	}
+
+	/**
+	 * @see JoinStrategy#feasible
+	 *
+	 * @exception StandardException		Thrown on error
+	 */
+    @Override
+	public boolean feasible(Optimizable innerTable,
+							OptimizablePredicateList predList,
+							Optimizer optimizer
+							)
+					throws StandardException
+	{
+		/* Only scans of base tables can be merged */
+		if (! (innerTable instanceof FromBaseTable))
+		{
+			return false;
+		}
+
+		if (! super.feasible(innerTable, predList, optimizer))
+		{
+			return false;
+		}
+
+		/*
+		** The outer rows must come out of an ascending index on a column
+		** that is joined to the first key column of the inner table.
+		*/
+		FromBaseTable outerTable =
+			getBaseTable(optimizer.getOutermostOptimizable());
+		if (outerTable == null)
+		{
+			return false;
+		}
+
+		ConglomerateDescriptor outerCD =
+			outerTable.getBestAccessPath().getConglomerateDescriptor();
+		if (! isAscendingIndex(outerCD))
+		{
+			return false;
+		}
+
+		ConglomerateDescriptor cd =
+			innerTable.getCurrentAccessPath().getConglomerateDescriptor();
+		int[] keyColumns = findHashKeyColumns(innerTable, cd, predList);
+		if (! inputOrdered(cd, keyColumns) && isAscendingIndex(cd))
+		{
+			/*
+			** Sorting the rows of an ordered index on some other column
+			** would lose the index order that the optimizer assumes for
+			** the inner rows of each outer row.
+			*/
+			return false;
+		}
+
+		int innerColumn = cd.isIndex() ?
+			cd.getIndexDescriptor().baseColumnPositions()[keyColumns[0]] :
+			keyColumns[0] + 1;
+		int outerColumn =
+			outerCD.getIndexDescriptor().baseColumnPositions()[0];
+
+		return hasMergeableEquijoin(innerTable, innerColumn,
+									outerTable, outerColumn,
+									predList);
+	}
+
+	/** @see JoinStrategy#estimateCost */
+    @Override
+	public void estimateCost(Optimizable innerTable,
+							 OptimizablePredicateList predList,
+							 ConglomerateDescriptor cd,
+							 CostEstimate outerCost,
+							 Optimizer optimizer,
+							 CostEstimate costEstimate)
+		throws StandardException
+	{
+		/*
+		** The inner table is scanned only once. If its rows do not come
+		** out of an index on the join column, they have to be sorted
+		** before the first outer row can be matched.
+		*/
+		int[] keyColumns = findHashKeyColumns(innerTable, cd, predList);
+		if (keyColumns == null || inputOrdered(cd, keyColumns))
+		{
+			return;
+		}
+
+		SortCostController scc =
+			((FromTable) innerTable).getCompilerContext().
+				getSortCostController();
+		double sortCost = scc.getSortCost(
+								null,
+								null,
+								false,
+								(long) costEstimate.singleScanRowCount(),
+								(long) costEstimate.singleScanRowCount(),
+								0);
+
+		costEstimate.setCost(
+				costEstimate.getEstimatedCost() + sortCost,
+				costEstimate.rowCount(),
+				costEstimate.singleScanRowCount());
+	}
+
+	/** @see JoinStrategy#maxCapacity */
+    @Override
+	public int maxCapacity( int userSpecifiedCapacity,
+                            int maxMemoryPerTable,
+                            double perRowUsage) {
+		/* Only the rows of the current join key are held in memory */
+		return Integer.MAX_VALUE;
+	}
+
+	/** @see JoinStrategy#getName */
+    @Override
+	public String getName() {
+		return "MERGE";
+	}
+
+	/** @see JoinStrategy#getOperatorSymbol */
+    @Override
+    public  String  getOperatorSymbol() { return "&"; }
+
+	/** @see JoinStrategy#resultSetMethodName */
+    @Override
+    public String resultSetMethodName(
+            boolean bulkFetch,
+            boolean multiprobe,
+            boolean validatingCheckConstraint) {
+		return "getMergeScanResultSet";
+	}
+
+	/** @see JoinStrategy#joinResultSetMethodName */
+    @Override
+	public String joinResultSetMethodName() {
+		return "getMergeJoinResultSet";
+	}
+
+	/** @see JoinStrategy#halfOuterJoinResultSetMethodName */
+    @Override
+	public String halfOuterJoinResultSetMethodName() {
+		return "getMergeLeftOuterJoinResultSet";
+	}
+
+	/**
+	 * @see JoinStrategy#getScanArgs
+	 *
+	 * @exception StandardException		Thrown on error
+	 */
+    @Override
+	public int getScanArgs(
+							TransactionController tc,
+							MethodBuilder mb,
+							Optimizable innerTable,
+							OptimizablePredicateList storeRestrictionList,
+							OptimizablePredicateList nonStoreRestrictionList,
+							ExpressionClassBuilderInterface acbi,
+							int bulkFetch,
+							int resultRowTemplate,
+							int colRefItem,
+							int indexColItem,
+							int lockMode,
+							boolean tableLocked,
+							int isolationLevel,
+							int maxMemoryPerTable,
+							boolean genInListVals
+							)
+						throws StandardException
+	{
+		ExpressionClassBuilder acb = (ExpressionClassBuilder) acbi;
+
+		fillInScanArgs1(tc,
+										mb,
+										innerTable,
+										storeRestrictionList,
+										acb,
+										resultRowTemplate);
+
+		nonStoreRestrictionList.generateQualifiers(acb,	mb, innerTable, true);
+
+		/*
+		** Get the key columns and wrap them in a formattable. The rows
+		** are merged on the first one.
+		*/
+		int[] keyColumns = innerTable.hashKeyColumns();
+		FormatableIntHolder[] fihArray =
+				FormatableIntHolder.getFormatableIntHolders(keyColumns);
+		FormatableArrayHolder keyHolder = new FormatableArrayHolder(fihArray);
+		mb.push(acb.addItem(keyHolder));
+
+		/* Tell the scan whether it has to sort the rows itself */
+		mb.push(inputOrdered(
+			innerTable.getTrulyTheBestAccessPath().getConglomerateDescriptor(),
+			keyColumns));
+
+		fillInScanArgs2(mb,
+						innerTable,
+						bulkFetch,
+						colRefItem,
+						indexColItem,
+						lockMode,
+						tableLocked,
+						isolationLevel);
+
+		return 26;
+	}
+
+	/**
+	 * Tell whether the rows of a conglomerate come out in ascending order
+	 * of the first key column.
+	 *
+	 * @param cd			The conglomerate to scan
+	 * @param keyColumns	The key columns, as returned by findHashKeyColumns()
+	 */
+	private static boolean inputOrdered(ConglomerateDescriptor cd,
+										int[] keyColumns)
+	{
+		return isAscendingIndex(cd) && keyColumns[0] == 0;
+	}
+
+	/**
+	 * Tell whether a conglomerate is an ordered index whose first column
+	 * is in ascending order.
+	 */
+	private static boolean isAscendingIndex(ConglomerateDescriptor cd)
+	{
+		if (cd == null || ! cd.isIndex())
+		{
+			return false;
+		}
+
+		IndexRowGenerator irg = cd.getIndexDescriptor();
+		return irg.isOrdered() && irg.isAscending()[0];
+	}
+
+	/**
+	 * Get the base table an Optimizable scans, looking through the
+	 * ProjectRestrictNode that is put over a base table in a FROM list.
+	 *
+	 * @return the base table, or null if the Optimizable is no base table
+	 */
+	private static FromBaseTable getBaseTable(Optimizable optimizable)
+	{
+		Object table = optimizable;
+		if (table instanceof ProjectRestrictNode)
+		{
+			table = ((ProjectRestrictNode) table).getChildResult();
+		}
+
+		if (table instanceof FromBaseTable)
+		{
+			return (FromBaseTable) table;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Look for an equijoin between a column of the inner table and a column
+	 * of the outer table whose values compare the same way on both sides.
+	 *
+	 * @param innerTable	The inner table of the join
+	 * @param innerColumn	The column number of the inner column
+	 * @param outerTable	The table that produces the order of the outer rows
+	 * @param outerColumn	The column number of the outer column
+	 * @param predList		The predicate list to look for the equijoin in
+	 *
+	 * @return	true if there is such an equijoin
+	 *
+	 * @exception StandardException		Thrown on error
+	 */
+	private static boolean hasMergeableEquijoin(Optimizable innerTable,
+												int innerColumn,
+												Optimizable outerTable,
+												int outerColumn,
+												OptimizablePredicateList predList)
+			throws StandardException
+	{
+		for (int i = 0; i < predList.size(); i++)
+		{
+			Predicate pred = (Predicate) predList.getOptPredicate(i);
+
+			if (pred.isScopedForPush() ||
+				! (pred.getAndNode().getLeftOperand() instanceof
+						BinaryRelationalOperatorNode))
+			{
+				continue;
+			}
+
+			BinaryRelationalOperatorNode bron = (BinaryRelationalOperatorNode)
+				pred.getAndNode().getLeftOperand();
+
+			if (! bron.optimizableEqualityNode(innerTable, innerColumn, false) ||
+				! bron.optimizableEqualityNode(outerTable, outerColumn, false))
+			{
+				continue;
+			}
+
+			DataTypeDescriptor innerType =
+				bron.getColumnOperand(innerTable, innerColumn).getTypeServices();
+			DataTypeDescriptor outerType =
+				bron.getColumnOperand(outerTable, outerColumn).getTypeServices();
+
+			if (innerType.getTypeId().equals(outerType.getTypeId()) &&
+				innerType.getCollationType() == outerType.getCollationType())
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
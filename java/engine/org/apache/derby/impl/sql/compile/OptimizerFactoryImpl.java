@@ -157,9 +157,10 @@ public class OptimizerFactoryImpl
 		 */
 		if (joinStrategySet == null)
 		{
-			JoinStrategy[] jss = new JoinStrategy[2];
+			JoinStrategy[] jss = new JoinStrategy[3];
 			jss[0] = new NestedLoopJoinStrategy();
 			jss[1] = new HashJoinStrategy();
+			jss[2] = new MergeJoinStrategy();
 			joinStrategySet = jss;
 		}
 
@@ -104,6 +104,9 @@ class OptimizerImpl implements Optimizer
 	private boolean			 ruleBasedOptimization;
 
 	private CostEstimateImpl outermostCostEstimate;
+
+	/* The Optimizable whose rows are outer to the whole join order, if any */
+	private Optimizable outermostOptimizable;
 	private CostEstimateImpl currentCost;
 	private CostEstimateImpl currentSortAvoidanceCost;
 	private CostEstimateImpl bestCost;
@@ -2325,12 +2328,20 @@ class OptimizerImpl implements Optimizer
 		{
 			/*
 			** The current optimizable can avoid a sort only if the
-			** outer one does, also (if there is an outer one).
+			** outer one does, also (if there is an outer one). A hash
+			** join whose hash table does not fit in memory does not keep
+			** the order of the outer rows, so it cannot avoid a sort.
 			*/
-			if (joinPosition == 0 ||
-				optimizableList.getOptimizable(
+			JoinStrategy joinStrategy =
+				optimizable.getCurrentAccessPath().getJoinStrategy();
+
+			if ((joinPosition == 0 ||
+				 optimizableList.getOptimizable(
 										proposedJoinOrder[joinPosition - 1]).
-												considerSortAvoidancePath())
+												considerSortAvoidancePath()) &&
+				! (joinStrategy instanceof HashJoinStrategy &&
+				   ((HashJoinStrategy) joinStrategy).spillsToDisk(
+											optimizable, maxMemoryPerTable)))
 			{
 				/*
 				** There is a required row ordering - does the proposed access
@@ -2882,4 +2893,18 @@ class OptimizerImpl implements Optimizer
     public  int getOptimizableCount() { return optimizableList.size(); }
 
     public  Optimizable getOptimizable( int idx ) { return optimizableList.getOptimizable( idx ); }
+
+    /** @see Optimizer#getOutermostOptimizable */
+    public  Optimizable getOutermostOptimizable()
+    {
+        if ( joinPosition <= 0 ) { return outermostOptimizable; }
+
+        return optimizableList.getOptimizable( proposedJoinOrder[ 0 ] );
+    }
+
+    /** @see Optimizer#setOutermostOptimizable */
+    public  void    setOutermostOptimizable( Optimizable outermost )
+    {
+        outermostOptimizable = outermost;
+    }
 }
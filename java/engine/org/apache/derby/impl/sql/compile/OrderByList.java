@@ -372,6 +372,7 @@ class OrderByList extends OrderedColumnList<OrderByColumn>
 		 *  arg7: resultSetNumber
 		 *  arg8: estimated row count
 		 *  arg9: estimated cost
+		 *  arg10: hashCapacity - always 0, only distincts are hashed
 		 */
 
 		acb.pushGetResultSetFactoryExpression(mb);
@@ -402,8 +403,11 @@ class OrderByList extends OrderedColumnList<OrderByColumn>
 		mb.push(costEstimate.rowCount());
 		mb.push(costEstimate.getEstimatedCost());
 
+		// sorted, not hashed
+		mb.push(0);
+
 		mb.callMethod(VMOpcode.INVOKEINTERFACE, (String) null, "getSortResultSet",
-							ClassName.NoPutResultSet, 9);
+							ClassName.NoPutResultSet, 10);
 
 	}
 
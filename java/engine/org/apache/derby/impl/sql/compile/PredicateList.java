@@ -162,6 +162,10 @@ class PredicateList extends QueryTreeNodeVector<Predicate>
 		if ( ! cd.isIndex())
 			return false;
 
+		/* An unordered (hash) index is only useful for an equality lookup */
+		if ( ! cd.getIndexDescriptor().isOrdered())
+			return hasEqualityOnAllKeys(optTable, cd);
+
 		/*
 		** A PredicateList is useful for a BTREE if it contains a relational
 		** operator directly below a top-level AND comparing the first column
@@ -466,6 +470,53 @@ class PredicateList extends QueryTreeNodeVector<Predicate>
 		}
 	}
 
+	/**
+	 * Tell whether every key column of an index is compared for equality
+	 * to an expression which does not refer to the table.
+	 *
+	 * @param optTable	The table in question
+	 * @param cd		The index
+	 *
+	 * @exception StandardException		Thrown on error
+	 */
+	private boolean hasEqualityOnAllKeys(Optimizable optTable,
+										 ConglomerateDescriptor cd)
+						throws StandardException
+	{
+		int[] baseColumnPositions =
+			cd.getIndexDescriptor().baseColumnPositions();
+
+		for (int i = 0; i < baseColumnPositions.length; i++)
+		{
+			boolean found = false;
+
+			for (Predicate pred : this)
+			{
+				RelationalOperator relop = pred.getRelop();
+
+				if (relop == null ||
+					relop.getOperator() != RelationalOperator.EQUALS_RELOP)
+				{
+					continue;
+				}
+
+				ColumnReference indexCol =
+					relop.getColumnOperand(optTable, baseColumnPositions[i]);
+
+				if (indexCol != null && ! relop.selfComparison(indexCol))
+				{
+					found = true;
+					break;
+				}
+			}
+
+			if ( ! found)
+				return false;
+		}
+
+		return true;
+	}
+
 	private void orderUsefulPredicates(Optimizable optTable,
 										ConglomerateDescriptor cd,
 										boolean pushPreds,
@@ -592,6 +643,15 @@ class PredicateList extends QueryTreeNodeVector<Predicate>
 		baseColumnPositions = cd.getIndexDescriptor().baseColumnPositions();
 		isAscending = cd.getIndexDescriptor().isAscending();
 
+		/* A hash index can only look up a full key, so unless every key
+		 * column has an equality predicate all the predicates are left to
+		 * be evaluated above the scan.
+		 */
+		boolean unordered = ! cd.getIndexDescriptor().isOrdered();
+
+		if (unordered && ! hasEqualityOnAllKeys(optTable, cd))
+			return;
+
 		/* If we have a "useful" IN list probe predicate we will generate a
 		 * start/stop key for optTable of the form "col = <val>", where <val>
 		 * is the first value in the IN-list.  Then during normal index multi-
@@ -661,6 +721,14 @@ class PredicateList extends QueryTreeNodeVector<Predicate>
 			if (skipProbePreds && pred.isInListProbePredicate())
 				continue;
 
+			/* Only equality predicates are keys of a hash index */
+			if (unordered &&
+				((relop == null) ||
+				 (relop.getOperator() != RelationalOperator.EQUALS_RELOP)))
+			{
+				continue;
+			}
+
 			/* Look for an index column on one side of the relop */
 			for (indexPosition = 0;
 				indexPosition < baseColumnPositions.length;
@@ -1840,6 +1840,33 @@ class ResultColumn extends ValueNode
 		}
 	}
 
+	/**
+	 * Get the descriptor of the table column that this result column is a
+	 * simple reference to, found the same way as the BaseColumnNode in
+	 * {@link #getBaseColumnNode()}.
+	 *
+	 * @return a ColumnDescriptor,
+	 *   or null if the result column is not a simple column reference
+	 */
+    ColumnDescriptor getBaseColumnDescriptor() {
+		ResultColumn rc = this;
+		ValueNode vn = _expression;
+		while (true) {
+			if (vn instanceof ResultColumn) {
+				rc = (ResultColumn) vn;
+				vn = rc._expression;
+			} else if (vn instanceof ColumnReference) {
+				vn = ((ColumnReference) vn).getSource();
+			} else if (vn instanceof VirtualColumnNode) {
+				vn = ((VirtualColumnNode) vn).getSourceColumn();
+			} else if (vn instanceof BaseColumnNode) {
+				return rc._columnDescriptor;
+			} else {
+				return null;
+			}
+		}
+	}
+
 	/**
 	 * Search the tree beneath this ResultColumn until we find
 	 * the number of the table to which this RC points, and
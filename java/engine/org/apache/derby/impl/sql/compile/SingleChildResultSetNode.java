@@ -21,9 +21,11 @@
 
 package	org.apache.derby.impl.sql.compile;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.services.cache.ClassSize;
 import org.apache.derby.iapi.services.context.ContextManager;
 import org.apache.derby.shared.common.sanity.SanityManager;
 import org.apache.derby.iapi.sql.compile.AccessPath;
@@ -33,7 +35,13 @@ import org.apache.derby.iapi.sql.compile.OptimizablePredicateList;
 import org.apache.derby.iapi.sql.compile.Optimizer;
 import org.apache.derby.iapi.sql.compile.RequiredRowOrdering;
 import org.apache.derby.iapi.sql.compile.Visitor;
+import org.apache.derby.iapi.sql.dictionary.ColumnDescriptor;
+import org.apache.derby.iapi.sql.dictionary.ConglomerateDescriptor;
 import org.apache.derby.iapi.sql.dictionary.DataDictionary;
+import org.apache.derby.iapi.sql.dictionary.StatisticsDescriptor;
+import org.apache.derby.iapi.sql.dictionary.TableDescriptor;
+import org.apache.derby.iapi.store.access.ColumnOrdering;
+import org.apache.derby.iapi.types.DataTypeDescriptor;
 import org.apache.derby.iapi.util.JBitSet;
 
 /**
@@ -43,6 +51,9 @@ import org.apache.derby.iapi.util.JBitSet;
 
 abstract class SingleChildResultSetNode extends FromTable
 {
+	// Fewest rows per group for grouping by hashing instead of sorting
+	private static final int MIN_ROWS_PER_HASH_GROUP = 10;
+
 	/**
 	 * ResultSetNode under the SingleChildResultSetNode
 	 */
@@ -588,6 +599,176 @@ abstract class SingleChildResultSetNode extends FromTable
 		}
 	}
 
+	/**
+	 * Get the number of groups that a hash table may hold in memory when
+	 * the rows of this node are grouped on the given columns by hashing
+	 * instead of by sorting. Hashing only pays off when there are few
+	 * groups for the number of rows, so the rows are sorted unless the
+	 * statistics of the indexes on the columns estimate that the groups
+	 * fit in memory and are at most a tenth of the rows. Columns that are
+	 * not simple references to table columns with statistics could have a
+	 * group for every row.
+	 *
+	 * Called during generation, once the final cost estimate of this node
+	 * is set.
+	 *
+	 * @param order	The grouping columns, as ordered for the sort
+	 *
+	 * @return the number of groups the hash table may hold, or 0 if the
+	 *		rows are to be sorted
+	 *
+	 * @exception StandardException		Thrown on error
+	 */
+	int hashGroupingCapacity(ColumnOrdering[] order)
+		throws StandardException
+	{
+		double rows = getCostEstimate().rowCount();
+		if (order.length == 0 || rows < MIN_ROWS_PER_HASH_GROUP)
+		{
+			return 0;
+		}
+
+		/*
+		** The columns of a UNION, INTERSECT or EXCEPT look like the
+		** columns of its left side only.
+		*/
+		HasNodeVisitor visitor = new HasNodeVisitor(SetOperatorNode.class);
+		childResult.accept(visitor);
+		if (visitor.hasNode())
+		{
+			return 0;
+		}
+
+		/*
+		** The groups are at most the product of the distinct values of
+		** the columns, and at most the distinct values of an index whose
+		** leading columns are exactly the grouping columns.
+		*/
+		ColumnDescriptor[] columns = new ColumnDescriptor[order.length];
+		TableDescriptor table = null;
+		HashSet<Integer> positions = new HashSet<Integer>();
+		for (int i = 0; i < order.length; i++)
+		{
+			columns[i] = getResultColumns().
+				elementAt(order[i].getColumnId()).getBaseColumnDescriptor();
+			if (columns[i] == null || columns[i].getTableDescriptor() == null)
+			{
+				return 0;
+			}
+
+			if (i == 0)
+			{
+				table = columns[i].getTableDescriptor();
+			}
+			else if (table != columns[i].getTableDescriptor())
+			{
+				table = null;
+			}
+			positions.add(columns[i].getPosition());
+		}
+
+		double groups = 1.0;
+		for (int i = 0; i < columns.length && groups >= 0; i++)
+		{
+			double distinct = distinctValues(columns[i].getTableDescriptor(),
+											 new int[] {columns[i].getPosition()});
+			groups = (distinct < 0) ? -1 : groups * distinct;
+		}
+		if (table != null && positions.size() > 1)
+		{
+			int[] keys = new int[positions.size()];
+			int k = 0;
+			for (Integer position : positions)
+			{
+				keys[k++] = position;
+			}
+			double distinct = distinctValues(table, keys);
+			if (distinct >= 0)
+			{
+				groups = (groups < 0) ? distinct : Math.min(groups, distinct);
+			}
+		}
+		if (groups < 0)
+		{
+			return 0;
+		}
+
+		double perGroupUsage = ClassSize.estimateHashEntrySize();
+		for (ResultColumn rc : getResultColumns())
+		{
+			DataTypeDescriptor type = rc.getTypeServices();
+			if (type != null)
+			{
+				perGroupUsage += type.estimatedMemoryUsage();
+			}
+		}
+		int capacity = (int) (getOptimizerFactory().getMaxMemoryPerTable() /
+							  perGroupUsage);
+
+		if (groups > capacity || groups * MIN_ROWS_PER_HASH_GROUP > rows)
+		{
+			return 0;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Get the number of distinct values of a set of columns of a table,
+	 * from the statistics of an index whose leading columns are exactly
+	 * the set of columns.
+	 *
+	 * @param table		The table
+	 * @param columns	The positions of the columns in the table
+	 *
+	 * @return the number of distinct values, or -1 if no index on the
+	 *		columns has statistics
+	 *
+	 * @exception StandardException		Thrown on error
+	 */
+	private static double distinctValues(TableDescriptor table, int[] columns)
+		throws StandardException
+	{
+		for (ConglomerateDescriptor cd : table.getConglomerateDescriptors())
+		{
+			if (!cd.isIndex())
+			{
+				continue;
+			}
+			int[] keys = cd.getIndexDescriptor().baseColumnPositions();
+			if (keys.length < columns.length)
+			{
+				continue;
+			}
+			boolean leading = true;
+			for (int i = 0; i < columns.length && leading; i++)
+			{
+				leading = false;
+				for (int j = 0; j < columns.length; j++)
+				{
+					if (keys[j] == columns[i])
+					{
+						leading = true;
+					}
+				}
+			}
+			if (!leading)
+			{
+				continue;
+			}
+
+			for (StatisticsDescriptor stat : table.getStatistics())
+			{
+				if (cd.getUUID().equals(stat.getReferenceID()) &&
+					stat.getColumnCount() == columns.length &&
+					stat.getStatistic().getRowEstimate() > 0)
+				{
+					return 1 / stat.getStatistic().selectivity((Object[]) null);
+				}
+			}
+		}
+		return -1;
+	}
+
 	/**
 	 * Accept the visitor for all visitable children of this node.
 	 * 
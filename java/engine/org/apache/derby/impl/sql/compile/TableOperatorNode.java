@@ -822,6 +822,19 @@ abstract class TableOperatorNode extends FromTable
 			   rightResultSet.referencesSessionSchema();
 	}
 
+	/**
+	 * Get the source whose rows are outer to the given source when this
+	 * operator is evaluated.
+	 *
+	 * @param sourceResultSet	The source being optimized
+	 *
+	 * @return	the outer source, or null if the source has none
+	 */
+	Optimizable getOuterSource(ResultSetNode sourceResultSet)
+	{
+		return null;
+	}
+
 	/** 
 	 * Optimize a source result set to this table operator.
 	 *
@@ -878,6 +891,7 @@ abstract class TableOperatorNode extends FromTable
 			** the plan.
 			*/
 			optimizer.setOuterRows(outerCost.rowCount());
+			optimizer.setOutermostOptimizable(getOuterSource(sourceResultSet));
 
 			/* Optimize the underlying result set */
 			while (optimizer.getNextPermutation())
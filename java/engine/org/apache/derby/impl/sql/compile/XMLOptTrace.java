@@ -704,7 +704,7 @@ class   XMLOptTrace implements  OptTrace
      * <pre>
      * join :== factor OP factor
      *
-     * OP :== "*" | "#"
+     * OP :== "*" | "#" | "&"
      *
      * factor :== factor | conglomerateName
      * </pre>
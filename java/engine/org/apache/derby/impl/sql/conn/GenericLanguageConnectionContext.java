@@ -162,6 +162,7 @@ public class GenericLanguageConnectionContext
     private final int instanceNumber;
     private String drdaID;
     private String dbname;
+    private boolean asyncCommit;
 
     private Object lastQueryTree; // for debugging
     
@@ -1549,8 +1550,12 @@ public class GenericLanguageConnectionContext
             {
                 if (commitflag == NON_XA)
                 {
-                    // regular commit
-                    tc.commit();
+                    // regular commit, the log is synced in the background
+                    // if the connection asked for asynchronous commit
+                    if (asyncCommit)
+                        tc.commitAsync();
+                    else
+                        tc.commit();
                 }
                 else
                 {
@@ -3502,6 +3507,22 @@ public class GenericLanguageConnectionContext
         this.drdaID = drdaID;
     }
 
+    /**
+     * @see LanguageConnectionContext#isAsyncCommit
+     */
+    public boolean isAsyncCommit()
+    {
+        return asyncCommit;
+    }
+
+    /**
+     * @see LanguageConnectionContext#setAsyncCommit
+     */
+    public void setAsyncCommit(boolean asyncCommit)
+    {
+        this.asyncCommit = asyncCommit;
+    }
+
     /**
      * @see LanguageConnectionContext#getDbname
      */
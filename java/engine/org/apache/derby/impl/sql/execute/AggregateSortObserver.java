@@ -23,6 +23,7 @@ package org.apache.derby.impl.sql.execute;
 
 import org.apache.derby.iapi.error.StandardException;
 import org.apache.derby.shared.common.sanity.SanityManager;
+import org.apache.derby.iapi.sql.execute.ExecAggregator;
 import org.apache.derby.iapi.sql.execute.ExecRow;
 import org.apache.derby.iapi.types.DataValueDescriptor;
 import org.apache.derby.iapi.types.UserDataValue;
@@ -175,6 +176,14 @@ class AggregateSortObserver extends BasicSortObserver
 			}
 			else
 			{
+				// Merging does not carry over that NULLs were eliminated
+				// from the partial group
+				DataValueDescriptor partial = insertRow[aggregator.getColumnId()];
+				if (((ExecAggregator) partial.getObject()).didEliminateNulls())
+				{
+					aggregator.accumulate((DataValueDescriptor) null,
+						existingRow[aggregator.getColumnId()]);
+				}
 				aggregator.merge(insertRow, existingRow);
 			}
 		}
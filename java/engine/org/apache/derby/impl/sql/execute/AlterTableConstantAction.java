@@ -2849,7 +2849,7 @@ class AlterTableConstantAction extends DDLSingleTableConstantAction
 
             newIndexCongloms[index] = 
                 tc.createAndLoadConglomerate(
-                    "BTREE",
+                    compressIRGs[index].indexType(),
                     indexRows[index].getRowArray(),
                     ordering[index],
                     collation[index],
@@ -2898,7 +2898,7 @@ class AlterTableConstantAction extends DDLSingleTableConstantAction
 		{
             newIndexCongloms[index] = 
                 tc.createConglomerate(
-                    "BTREE",
+                    compressIRGs[index].indexType(),
                     indexRows[index].getRowArray(),
                     ordering[index],
                     collation[index],
@@ -3207,6 +3207,8 @@ class AlterTableConstantAction extends DDLSingleTableConstantAction
 		needToDropSort  = new boolean[numIndexes];
 		sortIds         = new long[numIndexes];
 
+		Properties sortProperties = addIndexSortThreads(tc, null);
+
 		/* For each index, build a single index row and a sorter. */
 		for (int index = 0; index < numIndexes; index++)
 		{
@@ -3254,7 +3256,7 @@ class AlterTableConstantAction extends DDLSingleTableConstantAction
 			// create the sorters
 			sortIds[index] = 
                 tc.createSort(
-                   (Properties)null, 
+                    sortProperties,
                     indexRows[index].getRowArrayClone(),
                     ordering[index],
                     sortObserver,
@@ -124,6 +124,22 @@ public final class AvgAggregator extends SumAggregator
 		accumulate(addend);
 	}
 
+	/**
+	 * Accumulate the sum of a number of values at once.
+	 *
+	 * @param sum the sum of the values, of the type of the values
+	 * @param rows the number of values
+	 *
+	 * @exception StandardException on error
+	 */
+	void accumulateSum(DataValueDescriptor sum, long rows)
+		throws StandardException
+	{
+		// subtract one here as the accumulate will add one back in
+		accumulate(sum);
+		count += rows - 1;
+	}
+
 	public void merge(ExecAggregator addend)
 		throws StandardException
 	{
@@ -0,0 +1,490 @@
+/*
+
+   Derby - Class org.apache.derby.impl.sql.execute.BatchAggregator
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.sql.execute;
+
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.reference.ClassName;
+import org.apache.derby.iapi.sql.execute.ExecAggregator;
+import org.apache.derby.iapi.sql.execute.ExecRow;
+import org.apache.derby.iapi.sql.execute.NoPutResultSet;
+import org.apache.derby.iapi.types.UserDataValue;
+
+/**
+ * Accumulates a COUNT, SUM, AVG, MIN or MAX aggregate over the rows of
+ * {@link ColumnBatch}es. The values are summed or compared as primitives,
+ * and handed to the aggregator of the result row only once for each range
+ * of rows, so the result is the same as when the rows are accumulated one
+ * at a time.
+ */
+final class BatchAggregator
+{
+	private static final int COUNT = 0;
+	private static final int COUNT_STAR = 1;
+	private static final int SUM = 2;
+	private static final int AVG = 3;
+	private static final int MIN = 4;
+	private static final int MAX = 5;
+
+	private final GenericAggregator aggregate;
+	private final int operation;
+	private final int inputColumn;
+	private final int aggregatorColumn;
+
+	// The aggregator of the current result row
+	private ExecAggregator target;
+
+	private boolean sawNull;
+	private double doubleSum;
+	private long doubleCount;
+	private boolean doubleOverflow;
+	private long longSum;
+	private boolean longOverflow;
+	private boolean haveBest;
+	private int bestKind;
+	private long bestLong;
+	private double bestDouble;
+
+	private BatchAggregator(GenericAggregator aggregate, int operation)
+	{
+		AggregatorInfo aggInfo = aggregate.getAggregatorInfo();
+
+		this.aggregate = aggregate;
+		this.operation = operation;
+		this.inputColumn = aggInfo.getInputColNum() + 1;
+		this.aggregatorColumn = aggInfo.getAggregatorColNum() + 1;
+	}
+
+	/**
+	 * Ask a source to return its rows in batches, and set up the
+	 * aggregators to accumulate them.
+	 *
+	 * @param aggregates the aggregates to compute
+	 * @param source the source of the rows
+	 * @param numColumns the number of columns in the rows of the source
+	 * @param extraColumns other 1-based columns that the caller reads
+	 *		from the batches, such as grouping columns
+	 *
+	 * @return an aggregator for each aggregate, or null if the aggregates
+	 *		cannot be computed from batches. The source has not changed if
+	 *		null is returned.
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	static BatchAggregator[] getBatchAggregators(GenericAggregator[] aggregates,
+												 NoPutResultSet source,
+												 int numColumns,
+												 int[] extraColumns)
+		throws StandardException
+	{
+		if (!(source instanceof BatchResultSet))
+		{
+			return null;
+		}
+
+		// The rows must hold nothing but the columns of the aggregates and
+		// the extra columns, since the other columns are not in the batches.
+		boolean[] covered = new boolean[numColumns];
+		boolean[] read = new boolean[numColumns];
+		int numRead = 0;
+
+		BatchAggregator[] result = new BatchAggregator[aggregates.length];
+		for (int i = 0; i < aggregates.length; i++)
+		{
+			AggregatorInfo aggInfo = aggregates[i].getAggregatorInfo();
+			if (aggInfo.isDistinct())
+			{
+				return null;
+			}
+
+			String className = aggInfo.getAggregatorClassName();
+			String name = aggInfo.getAggregateName();
+			int operation;
+			if (className.equals(ClassName.CountAggregator))
+			{
+				operation = name.equals("COUNT(*)") ? COUNT_STAR : COUNT;
+			}
+			else if (className.equals(ClassName.SumAggregator))
+			{
+				operation = SUM;
+			}
+			else if (className.equals(ClassName.AvgAggregator))
+			{
+				operation = AVG;
+			}
+			else if (className.equals(ClassName.MaxMinAggregator))
+			{
+				operation = name.equals("MAX") ? MAX : MIN;
+			}
+			else
+			{
+				return null;
+			}
+
+			result[i] = new BatchAggregator(aggregates[i], operation);
+
+			int input = aggInfo.getInputColNum();
+			covered[input] = true;
+			covered[aggInfo.getAggregatorColNum()] = true;
+			covered[aggInfo.getOutputColNum()] = true;
+			if (operation != COUNT_STAR && !read[input])
+			{
+				read[input] = true;
+				numRead++;
+			}
+		}
+
+		for (int i = 0; i < extraColumns.length; i++)
+		{
+			int c = extraColumns[i] - 1;
+			covered[c] = true;
+			if (!read[c])
+			{
+				read[c] = true;
+				numRead++;
+			}
+		}
+
+		int[] columns = new int[numRead];
+		int next = 0;
+		for (int c = 0; c < numColumns; c++)
+		{
+			if (!covered[c])
+			{
+				return null;
+			}
+			if (read[c])
+			{
+				columns[next++] = c + 1;
+			}
+		}
+
+		if (!((BatchResultSet) source).enableBatches(columns))
+		{
+			return null;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Copy aggregators for a worker thread of a {@link ParallelScan}. The
+	 * copies have aggregates of their own, and must be made on the thread
+	 * executing the statement.
+	 *
+	 * @param aggregators the aggregators to copy
+	 *
+	 * @return the copies
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	static BatchAggregator[] copy(BatchAggregator[] aggregators)
+		throws StandardException
+	{
+		BatchAggregator[] copies = new BatchAggregator[aggregators.length];
+		for (int i = 0; i < aggregators.length; i++)
+		{
+			copies[i] = new BatchAggregator(aggregators[i].aggregate.copy(),
+											aggregators[i].operation);
+		}
+		return copies;
+	}
+
+	/**
+	 * Start the aggregation into a result row.
+	 *
+	 * @param row the result row, whose aggregator columns are set up here
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	void start(ExecRow row) throws StandardException
+	{
+		aggregate.initialize(row);
+		target = (ExecAggregator)
+			((UserDataValue) row.getColumn(aggregatorColumn)).getObject();
+
+		sawNull = false;
+		doubleSum = 0;
+		doubleCount = 0;
+		doubleOverflow = false;
+		longSum = 0;
+		longOverflow = false;
+		haveBest = false;
+	}
+
+	/**
+	 * Accumulate a range of rows of a batch.
+	 *
+	 * @param batch the batch
+	 * @param from the first row
+	 * @param to the row after the last row
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	void accumulate(ColumnBatch batch, int from, int to)
+		throws StandardException
+	{
+		if (operation == COUNT_STAR)
+		{
+			((CountAggregator) target).accumulateCount(to - from);
+			return;
+		}
+
+		int kind = batch.getKind(inputColumn);
+		boolean[] nulls = batch.getNulls(inputColumn);
+		boolean anyNull = batch.hasNulls(inputColumn);
+
+		switch (operation)
+		{
+			case COUNT:
+				long count = to - from;
+				if (anyNull)
+				{
+					for (int i = from; i < to; i++)
+					{
+						if (nulls[i])
+						{
+							count--;
+							sawNull = true;
+						}
+					}
+				}
+				((CountAggregator) target).accumulateCount(count);
+				return;
+
+			case SUM:
+			case AVG:
+				if (kind == ColumnBatch.DOUBLE)
+				{
+					double[] values = batch.getDoubles(inputColumn);
+					for (int i = from; i < to; i++)
+					{
+						if (anyNull && nulls[i])
+						{
+							sawNull = true;
+							continue;
+						}
+
+						double sum = doubleSum + values[i];
+						if (doubleOverflow || Double.isInfinite(sum))
+						{
+							// Hand the values to the aggregator one at a
+							// time from here on, so that it raises the
+							// overflow error, or promotes the type of the
+							// sum for AVG
+							if (!doubleOverflow)
+							{
+								finishDoubleSum();
+								doubleOverflow = true;
+							}
+							target.accumulate(
+								ColumnBatch.newValue(values[i]), aggregate);
+							continue;
+						}
+						doubleSum = sum;
+						doubleCount++;
+					}
+				}
+				else
+				{
+					accumulateSum(kind, batch.getLongs(inputColumn),
+								  anyNull ? nulls : null, from, to);
+				}
+				return;
+
+			default:
+				if (kind == ColumnBatch.DOUBLE)
+				{
+					double[] values = batch.getDoubles(inputColumn);
+					for (int i = from; i < to; i++)
+					{
+						if (anyNull && nulls[i])
+						{
+							sawNull = true;
+						}
+						else if (!haveBest ||
+								 (operation == MAX ?
+								  values[i] > bestDouble :
+								  values[i] < bestDouble))
+						{
+							bestDouble = values[i];
+							bestKind = kind;
+							haveBest = true;
+						}
+					}
+				}
+				else
+				{
+					long[] values = batch.getLongs(inputColumn);
+					for (int i = from; i < to; i++)
+					{
+						if (anyNull && nulls[i])
+						{
+							sawNull = true;
+						}
+						else if (!haveBest ||
+								 (operation == MAX ?
+								  values[i] > bestLong :
+								  values[i] < bestLong))
+						{
+							bestLong = values[i];
+							bestKind = kind;
+							haveBest = true;
+						}
+					}
+				}
+				return;
+		}
+	}
+
+	/**
+	 * Sum a range of INTEGER or BIGINT values and hand the sum to the
+	 * aggregator. The aggregator checks the running sum after each value,
+	 * so once the running sum leaves the range of the type the values are
+	 * handed to it one at a time instead. It then raises the same overflow
+	 * error, or promotes the type of the sum for AVG, as it does for
+	 * single rows.
+	 */
+	private void accumulateSum(int kind, long[] values, boolean[] nulls,
+							   int from, int to)
+		throws StandardException
+	{
+		if (!longOverflow)
+		{
+			long total = longSum;
+			long count = 0;
+			for (int i = from; i < to; i++)
+			{
+				if (nulls != null && nulls[i])
+				{
+					sawNull = true;
+					continue;
+				}
+				try
+				{
+					total = Math.addExact(total, values[i]);
+				}
+				catch (ArithmeticException ae)
+				{
+					longOverflow = true;
+					break;
+				}
+				if (kind == ColumnBatch.INTEGER && total != (int) total)
+				{
+					longOverflow = true;
+					break;
+				}
+				count++;
+			}
+
+			if (!longOverflow)
+			{
+				if (count == 0)
+				{
+					return;
+				}
+
+				// The sum of the range may not fit even if the running
+				// sum does
+				long sum = total - longSum;
+				if (((total ^ longSum) & (total ^ sum)) >= 0 &&
+					(kind != ColumnBatch.INTEGER || sum == (int) sum))
+				{
+					longSum = total;
+					if (operation == AVG)
+					{
+						((AvgAggregator) target).accumulateSum(
+							ColumnBatch.newValue(kind, sum), count);
+					}
+					else
+					{
+						target.accumulate(
+							ColumnBatch.newValue(kind, sum), aggregate);
+					}
+					return;
+				}
+				longSum = total;
+			}
+		}
+
+		for (int i = from; i < to; i++)
+		{
+			if (nulls != null && nulls[i])
+			{
+				sawNull = true;
+			}
+			else
+			{
+				target.accumulate(
+					ColumnBatch.newValue(kind, values[i]), aggregate);
+			}
+		}
+	}
+
+	/**
+	 * Hand the running sum of DOUBLE values to the aggregator.
+	 */
+	private void finishDoubleSum() throws StandardException
+	{
+		if (doubleCount > 0)
+		{
+			if (operation == AVG)
+			{
+				((AvgAggregator) target).accumulateSum(
+					ColumnBatch.newValue(doubleSum), doubleCount);
+			}
+			else
+			{
+				target.accumulate(ColumnBatch.newValue(doubleSum), aggregate);
+			}
+			doubleSum = 0;
+			doubleCount = 0;
+		}
+	}
+
+	/**
+	 * Hand what is left of the aggregation to the aggregator of the
+	 * result row. The result itself is set by
+	 * GenericAggregator.finish().
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	void finish() throws StandardException
+	{
+		finishDoubleSum();
+
+		if (haveBest)
+		{
+			target.accumulate(bestKind == ColumnBatch.DOUBLE ?
+							  ColumnBatch.newValue(bestDouble) :
+							  ColumnBatch.newValue(bestKind, bestLong),
+							  aggregate);
+		}
+
+		// Let the aggregator know that NULLs were eliminated
+		if (sawNull)
+		{
+			target.accumulate(null, aggregate);
+		}
+
+		target = null;
+	}
+}
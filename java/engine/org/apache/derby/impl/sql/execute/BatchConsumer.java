@@ -0,0 +1,57 @@
+/*
+
+   Derby - Class org.apache.derby.impl.sql.execute.BatchConsumer
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+
+package org.apache.derby.impl.sql.execute;
+
+import org.apache.derby.iapi.error.StandardException;
+
+/**
+ * Receives the batches that a worker thread of a {@link ParallelScan}
+ * reads. Each worker has its own consumer, and calls it on the worker
+ * thread only, so a consumer needs no synchronization. It must not use the
+ * activation or the contexts of the user thread. Results go back to the
+ * user thread with {@link ParallelScan#handOver}.
+ */
+interface BatchConsumer
+{
+	/**
+	 * Consume a batch. The batch and its arrays are reused for the next
+	 * batch of the worker.
+	 *
+	 * @param batch the batch, which holds at least one row
+	 * @param scan the scan the worker belongs to
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	void consume(ColumnBatch batch, ParallelScan scan)
+		throws StandardException;
+
+	/**
+	 * Called once the worker has read its last batch, unless the scan
+	 * failed or was stopped.
+	 *
+	 * @param scan the scan the worker belongs to
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	void finish(ParallelScan scan) throws StandardException;
+}
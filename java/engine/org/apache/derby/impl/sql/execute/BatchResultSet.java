@@ -0,0 +1,86 @@
+/*
+
+   Derby - Class org.apache.derby.impl.sql.execute.BatchResultSet
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.sql.execute;
+
+import org.apache.derby.iapi.error.StandardException;
+
+/**
+ * A result set that can return its rows as {@link ColumnBatch}es instead
+ * of one row at a time. The result set above it asks for batches when it
+ * is constructed, and from then on reads the rows only with
+ * getNextBatch(). The batches carry the column values only, so the
+ * current row of the result set is not set.
+ */
+interface BatchResultSet
+{
+	/**
+	 * Ask the result set to return its rows in batches. This must be
+	 * called before the result set is opened.
+	 *
+	 * @param columns the 1-based columns of the rows that the caller reads.
+	 *		The other columns are left out of the batches.
+	 *
+	 * @return true if the rows will be returned in batches, false if the
+	 *		result set cannot return the columns in batches and has not
+	 *		changed
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	boolean enableBatches(int[] columns) throws StandardException;
+
+	/**
+	 * Get the next batch of rows. The batch and its arrays may be reused
+	 * for the batch after it.
+	 *
+	 * @return the next batch, which holds at least one row, or null if
+	 *		there are no more rows
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	ColumnBatch getNextBatch() throws StandardException;
+
+	/**
+	 * Get the number of worker threads that read the batches of the open
+	 * result set if startParallel() is called.
+	 *
+	 * @return the number of threads, or 0 if the batches can only be read
+	 *		with getNextBatch()
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	int getParallelism() throws StandardException;
+
+	/**
+	 * Read all the batches on worker threads instead of with
+	 * getNextBatch(). Each worker hands its batches to its own consumer.
+	 * The caller must stop the returned scan once it is done with it,
+	 * also on error.
+	 *
+	 * @param consumers a consumer for each of getParallelism() workers
+	 *
+	 * @return the scan, which is running
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	ParallelScan startParallel(BatchConsumer[] consumers)
+		throws StandardException;
+}
@@ -46,6 +46,8 @@ import org.apache.derby.shared.common.sanity.SanityManager;
 import org.apache.derby.iapi.services.loader.GeneratedMethod;
 
 import org.apache.derby.iapi.services.io.FormatableBitSet;
+import org.apache.derby.iapi.services.property.PropertyUtil;
+import org.apache.derby.iapi.reference.Property;
 
 /**
  * Read a base table or index in bulk.  Most of the
@@ -67,7 +69,7 @@ import org.apache.derby.iapi.services.io.FormatableBitSet;
  *
  */
 class BulkTableScanResultSet extends TableScanResultSet
-	implements CursorResultSet
+	implements CursorResultSet, BatchResultSet
 {
 	private DataValueDescriptor[][] rowArray;
     private RowLocation[]   rowLocations;
@@ -76,6 +78,20 @@ class BulkTableScanResultSet extends TableScanResultSet
     private int         baseColumnCount;
     private int         resultColumnCount;
 
+	// Set if the rows are returned in batches
+	private ColumnBatch batch;
+	private int[] batchColumns;
+	private int[] batchPositions;
+	private int[] batchKinds;
+	private int[] keptRows;
+
+	// Set if the batches are read by worker threads
+	private int parallelism;
+	private ParallelScan parallelScan;
+
+	// Run time statistics
+	public int parallelThreads;
+
 	private static int OUT_OF_ROWS = 0;
 
     /**
@@ -243,7 +259,9 @@ class BulkTableScanResultSet extends TableScanResultSet
 			tc = activation.getTransactionController();
 		scanController = tc.openCompiledScan(
 				activation.getResultSetHoldability(),
-				(forUpdate ? TransactionController.OPENMODE_FORUPDATE : 0),
+				(forUpdate ?
+                    TransactionController.OPENMODE_FORUPDATE :
+                    getUseOnceOpenMode()),
                 lockMode,
                 isolationLevel,
 				accessedCols,
@@ -290,7 +308,9 @@ class BulkTableScanResultSet extends TableScanResultSet
 		** already added up its time in openCore().
 		*/
 		beginTime = getCurrentTimeMillis();
-		rowArray = new DataValueDescriptor[rowsPerRead][];
+		// Fill a whole batch with each fetch when returning batches
+		rowArray = new DataValueDescriptor[
+			batch == null ? rowsPerRead : ColumnBatch.CAPACITY][];
         if ( fetchRowLocations ) { rowLocations = new RowLocation[ rowsPerRead ]; }
 
 		// we only allocate the first row -- the
@@ -299,10 +319,89 @@ class BulkTableScanResultSet extends TableScanResultSet
 		rowArray[0] = candidate.getRowArrayClone();
 		numRowsInArray = 0;
 		curRowPosition = -1;
+
+		parallelism = (batch == null) ? 0 : getParallelScanThreads();
+		parallelThreads = 0;
 		
 		openTime += getElapsedMillis(beginTime);
 	}
 
+	/**
+	 * Decide whether the open scan can be read by worker threads, and by
+	 * how many. It can if it is a read only scan of a whole permanent heap
+	 * whose qualifiers do not change during the scan, and the optimizer
+	 * estimates that it returns at least
+	 * derby.language.parallelScanMinRows rows.
+	 * <p>
+	 * The workers lock rows in transactions of their own, which they
+	 * commit when done, so at REPEATABLE READ and SERIALIZABLE the scan must
+	 * hold a table lock, which the user transaction keeps.
+	 *
+	 * @return the number of threads, or 0 to read the batches on the user
+	 *		thread
+	 */
+	private int getParallelScanThreads() throws StandardException
+	{
+		if (!scanControllerOpened || forUpdate || isKeyed || conglomId < 0 ||
+			startKeyGetter != null || stopKeyGetter != null)
+		{
+			return 0;
+		}
+
+		switch (isolationLevel)
+		{
+			case TransactionController.ISOLATION_READ_UNCOMMITTED:
+			case TransactionController.ISOLATION_READ_COMMITTED:
+			case TransactionController.ISOLATION_READ_COMMITTED_NOHOLDLOCK:
+				break;
+
+			default:
+				if (lockMode != TransactionController.MODE_TABLE)
+				{
+					return 0;
+				}
+				break;
+		}
+
+		if (qualifiers != null)
+		{
+			for (int term = 0; term < qualifiers.length; term++)
+			{
+				for (int i = 0; i < qualifiers[term].length; i++)
+				{
+					if (((GenericQualifier) qualifiers[term][i]).variantType ==
+							Qualifier.VARIANT)
+					{
+						return 0;
+					}
+				}
+			}
+		}
+
+		TransactionController tc = activation.getTransactionController();
+		int threads = PropertyUtil.getServiceInt(tc,
+			Property.LANG_PARALLEL_SCAN_THREADS,
+			1,
+			Property.MAX_LANG_PARALLEL_SCAN_THREADS,
+			Property.DEFAULT_LANG_PARALLEL_SCAN_THREADS);
+		if (threads <= 1)
+		{
+			return 0;
+		}
+
+		int minRows = PropertyUtil.getServiceInt(tc,
+			Property.LANG_PARALLEL_SCAN_MIN_ROWS,
+			0,
+			Integer.MAX_VALUE,
+			Property.DEFAULT_LANG_PARALLEL_SCAN_MIN_ROWS);
+		if (optimizerEstimatedRowCount < minRows)
+		{
+			return 0;
+		}
+
+		return threads;
+	}
+
     /**
      * Get a blank row by cloning the candidate row and lopping off
      * the trailing RowLocation column for scans done on
@@ -332,6 +431,7 @@ class BulkTableScanResultSet extends TableScanResultSet
 		super.reopenCore();
 		numRowsInArray = 0;
 		curRowPosition = -1;
+		stopParallelScan();
 	}
 		
 	/**
@@ -413,6 +513,224 @@ outer:		for (;;)
 	    return result;
 	}
 
+	/**
+	 * Return the rows in batches if the columns are INTEGER, BIGINT, DOUBLE
+	 * or DATE columns. Scans that return row locations or are for update
+	 * return one row at a time.
+	 *
+	 * @see BatchResultSet#enableBatches
+	 */
+	public boolean enableBatches(int[] columns) throws StandardException
+	{
+		if (fetchRowLocations || forUpdate || rowsPerRead <= 1 || isOpen)
+		{
+			return false;
+		}
+
+		// Map the columns of the compact row to the columns of the
+		// candidate row, as getCompactRow() does
+		int numCandidateCols = candidate.nColumns();
+		int[] map;
+		if (accessedCols == null)
+		{
+			map = new int[numCandidateCols];
+			for (int i = 0; i < map.length; i++)
+				map[i] = i;
+		}
+		else
+		{
+			map = new int[accessedCols.getNumBitsSet()];
+			int position = 0;
+			for (int i = accessedCols.anySetBit();
+					i != -1 && i < numCandidateCols;
+					i = accessedCols.anySetBit(i))
+			{
+				map[position++] = i;
+			}
+		}
+
+		int numColumns = 0;
+		for (int i = 0; i < columns.length; i++)
+		{
+			numColumns = Math.max(numColumns, columns[i]);
+		}
+		if (numColumns > map.length)
+		{
+			return false;
+		}
+
+		int[] kinds = new int[numColumns];
+		int[] positions = new int[columns.length];
+		for (int i = 0; i < columns.length; i++)
+		{
+			int position = map[columns[i] - 1];
+			int kind = ColumnBatch.kindOf(candidate.getColumn(position + 1));
+			if (kind == ColumnBatch.UNSUPPORTED)
+			{
+				return false;
+			}
+			kinds[columns[i] - 1] = kind;
+			positions[i] = position;
+		}
+
+		batch = new ColumnBatch(kinds);
+		batchKinds = kinds;
+		batchColumns = (int[]) columns.clone();
+		batchPositions = positions;
+		keptRows = new int[ColumnBatch.CAPACITY];
+		return true;
+	}
+
+	/**
+	 * Fetch the next group of rows from the store and copy the columns
+	 * into the batch.
+	 *
+	 * @see BatchResultSet#getNextBatch
+	 */
+	public ColumnBatch getNextBatch() throws StandardException
+	{
+		if (isXplainOnlyMode() || !(isOpen && scanControllerOpened) ||
+			parallelScan != null)
+			return null;
+
+		checkCancellationFlag();
+
+		beginTime = getCurrentTimeMillis();
+		try
+		{
+			for (;;)
+			{
+				if (reloadArray() == OUT_OF_ROWS)
+				{
+					setRowCountIfPossible(rowsThisScan);
+					return null;
+				}
+
+				rowsSeen += numRowsInArray;
+				rowsThisScan += numRowsInArray;
+
+				/*
+				** Skip rows where there are start or stop positioners
+				** that do not implement ordered null semantics and
+				** there are columns in those positions that contain
+				** null.
+				*/
+				int[] selected = null;
+				int count = numRowsInArray;
+				if (cncLen > 0)
+				{
+					count = 0;
+					for (int i = 0; i < numRowsInArray; i++)
+					{
+						candidate.setRowArray(rowArray[i]);
+						if (skipRow(candidate))
+						{
+							rowsFiltered++;
+							continue;
+						}
+						keptRows[count++] = i;
+					}
+					selected = keptRows;
+				}
+				curRowPosition = numRowsInArray - 1;
+
+				if (count == 0)
+				{
+					continue;
+				}
+
+				for (int i = 0; i < batchColumns.length; i++)
+				{
+					batch.loadColumn(batchColumns[i], rowArray,
+									 batchPositions[i], selected, count);
+				}
+				batch.setSize(count);
+				return batch;
+			}
+		}
+		finally
+		{
+			nextTime += getElapsedMillis(beginTime);
+		}
+	}
+
+	/**
+	 * @see BatchResultSet#getParallelism
+	 */
+	public int getParallelism()
+	{
+		return (isOpen && !isXplainOnlyMode()) ? parallelism : 0;
+	}
+
+	/**
+	 * Start worker threads which read the heap in ranges of pages. The
+	 * scan of this result set stays open, and keeps its locks on the
+	 * table, but returns no more rows.
+	 *
+	 * @see BatchResultSet#startParallel
+	 */
+	public ParallelScan startParallel(BatchConsumer[] consumers)
+		throws StandardException
+	{
+		if (SanityManager.DEBUG)
+		{
+			SanityManager.ASSERT(parallelScan == null,
+				"parallel scan already started");
+			SanityManager.ASSERT(consumers.length == getParallelism(),
+				"expected " + getParallelism() + " consumers, got " +
+				consumers.length);
+		}
+
+		checkCancellationFlag();
+
+		// The qualifiers are evaluated once for all the workers
+		if (qualifiers != null)
+		{
+			clearOrderableCache(qualifiers);
+		}
+
+		parallelScan = new ParallelScan(this, consumers, batchKinds,
+										batchColumns, batchPositions);
+		parallelThreads = parallelScan.getThreadCount();
+		parallelScan.start();
+		return parallelScan;
+	}
+
+	/**
+	 * Called on the user thread once the workers of the parallel scan are
+	 * done or stopped.
+	 *
+	 * @param rows the number of rows the workers read
+	 */
+	void parallelScanDone(long rows)
+	{
+		rowsSeen += rows;
+		rowsThisScan += rows;
+	}
+
+	/**
+	 * Called on the user thread once the parallel scan has read every row
+	 * of the heap.
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	void parallelScanComplete() throws StandardException
+	{
+		setRowCountIfPossible(rowsThisScan);
+	}
+
+	/**
+	 * Stop the workers of a parallel scan if they are still running.
+	 */
+	private void stopParallelScan()
+	{
+		if (parallelScan != null)
+		{
+			parallelScan.stop();
+			parallelScan = null;
+		}
+	}
+
 	/*
 	** Load up rowArray with a batch of
 	** rows.
@@ -441,6 +759,7 @@ outer:		for (;;)
 		** the time it takes to close up, so
 		** no timing here.
 		*/
+		stopParallelScan();
 		super.close();
 		numRowsInArray = -1;
 		curRowPosition = -1;
@@ -0,0 +1,373 @@
+/*
+
+   Derby - Class org.apache.derby.impl.sql.execute.ColumnBatch
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.sql.execute;
+
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.services.io.StoredFormatIds;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.iapi.types.SQLDate;
+import org.apache.derby.iapi.types.SQLDouble;
+import org.apache.derby.iapi.types.SQLInteger;
+import org.apache.derby.iapi.types.SQLLongint;
+import org.apache.derby.shared.common.sanity.SanityManager;
+
+/**
+ * A batch of rows, held column by column in arrays of primitives. Result
+ * sets that implement {@link BatchResultSet} pass these to each other
+ * instead of one row at a time.
+ * <p>
+ * Only fixed width types are held. INTEGER, BIGINT and DATE values are
+ * held in a long[], DATE as its encoded value, which sorts like the date.
+ * DOUBLE values are held in a double[]. A column of any other type, or
+ * one that the reader did not ask for, has no arrays. Columns are numbered
+ * from 1, like the columns of the rows of the result set.
+ */
+final class ColumnBatch
+{
+	/** The kinds of columns */
+	static final int UNSUPPORTED = 0;
+	static final int INTEGER = 1;
+	static final int BIGINT = 2;
+	static final int DOUBLE = 3;
+	static final int DATE = 4;
+
+	/** The most rows a batch holds */
+	static final int CAPACITY = 1024;
+
+	private final int[] kinds;
+	private final long[][] longs;
+	private final double[][] doubles;
+	private final boolean[][] nulls;
+	private final boolean[] hasNulls;
+	private int size;
+
+	/**
+	 * Create a batch whose columns all have no arrays yet.
+	 *
+	 * @param numColumns the number of columns
+	 */
+	ColumnBatch(int numColumns)
+	{
+		kinds = new int[numColumns];
+		longs = new long[numColumns][];
+		doubles = new double[numColumns][];
+		nulls = new boolean[numColumns][];
+		hasNulls = new boolean[numColumns];
+	}
+
+	/**
+	 * Create a batch with arrays for the columns of the given kinds.
+	 *
+	 * @param kinds the kind of each column, UNSUPPORTED for a column
+	 *		that is left out
+	 */
+	ColumnBatch(int[] kinds)
+	{
+		this(kinds.length);
+		for (int i = 0; i < kinds.length; i++)
+		{
+			this.kinds[i] = kinds[i];
+			switch (kinds[i])
+			{
+				case UNSUPPORTED:
+					continue;
+
+				case DOUBLE:
+					doubles[i] = new double[CAPACITY];
+					break;
+
+				default:
+					longs[i] = new long[CAPACITY];
+					break;
+			}
+			nulls[i] = new boolean[CAPACITY];
+		}
+	}
+
+	/**
+	 * Get the kind of column that holds values like the given one.
+	 *
+	 * @return the kind, or UNSUPPORTED if a batch cannot hold the type
+	 */
+	static int kindOf(DataValueDescriptor value)
+	{
+		if (value == null)
+		{
+			return UNSUPPORTED;
+		}
+
+		switch (value.getTypeFormatId())
+		{
+			case StoredFormatIds.SQL_INTEGER_ID:
+				return INTEGER;
+			case StoredFormatIds.SQL_LONGINT_ID:
+				return BIGINT;
+			case StoredFormatIds.SQL_DOUBLE_ID:
+				return DOUBLE;
+			case StoredFormatIds.SQL_DATE_ID:
+				return DATE;
+			default:
+				return UNSUPPORTED;
+		}
+	}
+
+	/**
+	 * Create a value of a kind of column.
+	 *
+	 * @param kind INTEGER, BIGINT or DATE
+	 * @param value the value as held in the batch
+	 */
+	static DataValueDescriptor newValue(int kind, long value)
+	{
+		switch (kind)
+		{
+			case INTEGER:
+				return new SQLInteger((int) value);
+			case DATE:
+				return new SQLDate((int) value);
+			default:
+				if (SanityManager.DEBUG)
+				{
+					SanityManager.ASSERT(kind == BIGINT,
+						"unexpected kind of column " + kind);
+				}
+				return new SQLLongint(value);
+		}
+	}
+
+	/**
+	 * Create a DOUBLE value.
+	 *
+	 * @exception StandardException if the value is out of range
+	 */
+	static DataValueDescriptor newValue(double value) throws StandardException
+	{
+		return new SQLDouble(value);
+	}
+
+	/** Get the number of rows in the batch */
+	int size()
+	{
+		return size;
+	}
+
+	void setSize(int size)
+	{
+		this.size = size;
+	}
+
+	/** Get the number of columns */
+	int getColumnCount()
+	{
+		return kinds.length;
+	}
+
+	/** Get the kind of a column */
+	int getKind(int column)
+	{
+		return kinds[column - 1];
+	}
+
+	/** Get the values of an INTEGER, BIGINT or DATE column */
+	long[] getLongs(int column)
+	{
+		return longs[column - 1];
+	}
+
+	/** Get the values of a DOUBLE column */
+	double[] getDoubles(int column)
+	{
+		return doubles[column - 1];
+	}
+
+	/** Get the flags that tell which values of a column are NULL */
+	boolean[] getNulls(int column)
+	{
+		return nulls[column - 1];
+	}
+
+	/** Tell whether any value of a column is NULL */
+	boolean hasNulls(int column)
+	{
+		return hasNulls[column - 1];
+	}
+
+	/**
+	 * Fill a column from the values of some rows.
+	 *
+	 * @param column the column to fill
+	 * @param rows the rows
+	 * @param position the 0-based position of the values in the rows
+	 * @param selected the rows to take, or null to take the first count
+	 * @param count the number of rows to take
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	void loadColumn(int column,
+					DataValueDescriptor[][] rows,
+					int position,
+					int[] selected,
+					int count)
+		throws StandardException
+	{
+		int c = column - 1;
+		boolean[] isNull = nulls[c];
+		boolean anyNull = false;
+
+		if (kinds[c] == DOUBLE)
+		{
+			double[] values = doubles[c];
+			for (int i = 0; i < count; i++)
+			{
+				DataValueDescriptor value =
+					rows[selected == null ? i : selected[i]][position];
+				if (value.isNull())
+				{
+					isNull[i] = anyNull = true;
+					values[i] = 0;
+				}
+				else
+				{
+					isNull[i] = false;
+					values[i] = value.getDouble();
+				}
+			}
+		}
+		else
+		{
+			long[] values = longs[c];
+			int kind = kinds[c];
+			for (int i = 0; i < count; i++)
+			{
+				DataValueDescriptor value =
+					rows[selected == null ? i : selected[i]][position];
+				if (value.isNull())
+				{
+					isNull[i] = anyNull = true;
+					values[i] = 0;
+				}
+				else
+				{
+					isNull[i] = false;
+					values[i] = (kind == DATE) ?
+						((SQLDate) value).getEncodedDate() :
+						value.getLong();
+				}
+			}
+		}
+
+		hasNulls[c] = anyNull;
+	}
+
+	/**
+	 * Make the columns of this batch the columns of another batch, in
+	 * another order, without copying them.
+	 *
+	 * @param source the batch to take the columns from
+	 * @param map the 1-based column of the source batch for each column of
+	 *		this batch, or -1 to leave the column out. Columns the source
+	 *		batch does not hold are left out too.
+	 */
+	void project(ColumnBatch source, int[] map)
+	{
+		for (int i = 0; i < map.length; i++)
+		{
+			int c = map[i] - 1;
+			if (c < 0 || c >= source.kinds.length)
+			{
+				kinds[i] = UNSUPPORTED;
+				longs[i] = null;
+				doubles[i] = null;
+				nulls[i] = null;
+				hasNulls[i] = false;
+			}
+			else
+			{
+				kinds[i] = source.kinds[c];
+				longs[i] = source.longs[c];
+				doubles[i] = source.doubles[c];
+				nulls[i] = source.nulls[c];
+				hasNulls[i] = source.hasNulls[c];
+			}
+		}
+		size = source.size;
+	}
+
+	/**
+	 * Fill this batch with copies of some rows of another batch, which has
+	 * as many columns.
+	 *
+	 * @param source the batch to copy the rows from
+	 * @param rows the rows of the source batch to copy, in the order to
+	 *		copy them in
+	 * @param count the number of rows to copy
+	 */
+	void gather(ColumnBatch source, int[] rows, int count)
+	{
+		for (int c = 0; c < kinds.length; c++)
+		{
+			kinds[c] = source.kinds[c];
+			hasNulls[c] = source.hasNulls[c];
+			if (kinds[c] == UNSUPPORTED)
+			{
+				continue;
+			}
+
+			if (nulls[c] == null)
+			{
+				nulls[c] = new boolean[CAPACITY];
+			}
+			boolean[] fromNulls = source.nulls[c];
+			boolean[] toNulls = nulls[c];
+
+			if (kinds[c] == DOUBLE)
+			{
+				if (doubles[c] == null)
+				{
+					doubles[c] = new double[CAPACITY];
+				}
+				double[] from = source.doubles[c];
+				double[] to = doubles[c];
+				for (int i = 0; i < count; i++)
+				{
+					to[i] = from[rows[i]];
+					toNulls[i] = fromNulls[rows[i]];
+				}
+			}
+			else
+			{
+				if (longs[c] == null)
+				{
+					longs[c] = new long[CAPACITY];
+				}
+				long[] from = source.longs[c];
+				long[] to = longs[c];
+				for (int i = 0; i < count; i++)
+				{
+					to[i] = from[rows[i]];
+					toNulls[i] = fromNulls[rows[i]];
+				}
+			}
+		}
+		size = count;
+	}
+}
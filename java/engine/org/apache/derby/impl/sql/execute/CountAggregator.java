@@ -101,6 +101,16 @@ public final class CountAggregator
 			value++;
 	}
 
+	/**
+	 * Count a number of rows at once.
+	 *
+	 * @param rows the number of rows, or of non-null values
+	 */
+	void accumulateCount(long rows)
+	{
+		value += rows;
+	}
+
 	/**
 	 * @return ExecAggregator the new aggregator
 	 */
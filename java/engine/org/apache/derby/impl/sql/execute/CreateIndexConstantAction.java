@@ -895,6 +895,7 @@ class CreateIndexConstantAction extends IndexConstantAction
 			}
 
 			// create the sorter
+            sortProperties = addIndexSortThreads(tc, sortProperties);
             sortId = tc.createSort(sortProperties,
 					indexTemplateRow.getRowArrayClone(),
 					order,
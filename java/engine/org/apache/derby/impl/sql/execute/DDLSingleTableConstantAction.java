@@ -28,6 +28,8 @@ import java.util.Properties;
 import org.apache.derby.catalog.UUID;
 
 import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.reference.Property;
+import org.apache.derby.iapi.services.property.PropertyUtil;
 
 import org.apache.derby.shared.common.sanity.SanityManager;
 
@@ -39,6 +41,7 @@ import org.apache.derby.iapi.sql.dictionary.KeyConstraintDescriptor;
 import org.apache.derby.iapi.sql.dictionary.DataDictionary;
 import org.apache.derby.iapi.sql.dictionary.TableDescriptor;
 import org.apache.derby.iapi.sql.execute.ConstantAction;
+import org.apache.derby.iapi.store.access.AccessFactoryGlobals;
 import org.apache.derby.iapi.store.access.ConglomerateController;
 import org.apache.derby.iapi.store.access.TransactionController;
 
@@ -342,6 +345,35 @@ abstract class DDLSingleTableConstantAction extends DDLConstantAction
 		return;
 	}
 
+	/**
+	 * Add the number of sort worker threads, derby.storage.indexSortThreads,
+	 * to the properties of a sort which builds an index.
+	 *
+	 * @param tc the transaction controller
+	 * @param sortProperties the properties of the sort, or null if none
+	 *
+	 * @return the properties of the sort, or null if none
+	 */
+	static Properties addIndexSortThreads(TransactionController tc,
+		Properties sortProperties)
+		throws StandardException
+	{
+		int threads = PropertyUtil.getServiceInt(tc,
+			Property.INDEX_SORT_THREADS,
+			1,
+			Property.MAX_INDEX_SORT_THREADS,
+			Property.DEFAULT_INDEX_SORT_THREADS);
+
+		if (threads > 1)
+		{
+			if (sortProperties == null)
+				sortProperties = new Properties();
+			sortProperties.put(AccessFactoryGlobals.SORT_WORKER_THREADS,
+				String.valueOf(threads));
+		}
+		return sortProperties;
+	}
+
 	/**
 	 * Create a ConstantAction which, when executed, will create a
 	 * new conglomerate whose attributes match those of the received
@@ -79,6 +79,7 @@ class DistinctScanResultSet extends HashScanResultSet
 			  false,				  // forUpdate
 			  colRefItem, lockMode, tableLocked, isolationLevel,
 			  false,
+			  false,				  // partitionable
 			  optimizerEstimatedRowCount, optimizerEstimatedCost);
 
 		// Tell super class to eliminate duplicates
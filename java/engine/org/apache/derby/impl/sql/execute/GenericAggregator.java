@@ -290,6 +290,23 @@ class GenericAggregator
 		return ua.didEliminateNulls();
 	}
 
+	/**
+	 * Get a copy of this aggregator for another thread. The copy creates
+	 * its aggregator instances from an instance made here, so the thread
+	 * does not need to load the class of the aggregator.
+	 *
+	 * @return a copy of this aggregator
+	 *
+	 * @exception StandardException on error
+	 */
+	GenericAggregator copy()
+		throws StandardException
+	{
+		GenericAggregator copy = new GenericAggregator(aggInfo, cf);
+		copy.cachedAggregator = getAggregatorInstance();
+		return copy;
+	}
+
 	/**
 	 * Get a new instance of the aggregator and initialize it.
 	 *
@@ -308,7 +308,8 @@ public class GenericResultSetFactory implements ResultSetFactory
 		int maxRowSize,
 		int resultSetNumber, 
 		double optimizerEstimatedRowCount,
-		double optimizerEstimatedCost)
+		double optimizerEstimatedCost,
+		int hashCapacity)
 			throws StandardException
 	{
 		return new SortResultSet(source, 
@@ -320,7 +321,8 @@ public class GenericResultSetFactory implements ResultSetFactory
 			maxRowSize,
 			resultSetNumber, 
 		    optimizerEstimatedRowCount,
-			optimizerEstimatedCost);
+			optimizerEstimatedCost,
+			hashCapacity);
 	}
 
 	/**
@@ -382,13 +384,14 @@ public class GenericResultSetFactory implements ResultSetFactory
 		int resultSetNumber, 
 		double optimizerEstimatedRowCount,
 		double optimizerEstimatedCost,
-		boolean isRollup) 
+		boolean isRollup,
+		int hashCapacity) 
 			throws StandardException
 	{
 		return new GroupedAggregateResultSet(
 						source, isInSortedOrder, aggregateItem, orderItem, source.getActivation(),
 						rowAllocator, maxRowSize, resultSetNumber, optimizerEstimatedRowCount,
-						optimizerEstimatedCost, isRollup);
+						optimizerEstimatedCost, isRollup, hashCapacity);
 	}
 
 	/**
@@ -533,6 +536,7 @@ public class GenericResultSetFactory implements ResultSetFactory
 									int initialCapacity,
 									float loadFactor,
 									int maxCapacity,
+									boolean keepProbeOrder,
 									int hashKeyColumn,
 									String tableName,
 									String userSuppliedOptimizerOverrides,
@@ -578,6 +582,71 @@ public class GenericResultSetFactory implements ResultSetFactory
 								tableLocked,
 								isolationLevel,
 								true,		// Skip rows with 1 or more null key columns
+								! keepProbeOrder,
+								optimizerEstimatedRowCount,
+								optimizerEstimatedCost);
+	}
+
+	/**
+		@see ResultSetFactory#getMergeScanResultSet
+		@exception StandardException thrown on error
+	 */
+	public NoPutResultSet getMergeScanResultSet(
+                        			Activation activation,
+									long conglomId,
+									int scociItem,
+									int resultRowTemplate,
+									int resultSetNumber,
+									GeneratedMethod startKeyGetter,
+									int startSearchOperator,
+									GeneratedMethod stopKeyGetter,
+									int stopSearchOperator,
+									boolean sameStartStopPosition,
+									Qualifier[][] scanQualifiers,
+									Qualifier[][] nextQualifiers,
+									int mergeKeyItem,
+									boolean inputOrdered,
+									String tableName,
+									String userSuppliedOptimizerOverrides,
+									String indexName,
+									boolean isConstraint,
+									boolean forUpdate,
+									int colRefItem,
+									int indexColItem,
+									int lockMode,
+									boolean tableLocked,
+									int isolationLevel,
+									double optimizerEstimatedRowCount,
+									double optimizerEstimatedCost)
+			throws StandardException
+	{
+        StaticCompiledOpenConglomInfo scoci = (StaticCompiledOpenConglomInfo)(activation.getPreparedStatement().
+						getSavedObject(scociItem));
+
+		return new MergeScanResultSet(
+								conglomId,
+								scoci,
+								activation,
+								resultRowTemplate,
+								resultSetNumber,
+								startKeyGetter,
+								startSearchOperator,
+								stopKeyGetter,
+								stopSearchOperator,
+								sameStartStopPosition,
+								scanQualifiers,
+								nextQualifiers,
+								mergeKeyItem,
+								inputOrdered,
+								tableName,
+								userSuppliedOptimizerOverrides,
+								indexName,
+								isConstraint,
+								forUpdate,
+								colRefItem,
+								lockMode,
+								tableLocked,
+								isolationLevel,
 								optimizerEstimatedRowCount,
 								optimizerEstimatedCost);
 	}
@@ -1018,6 +1087,35 @@ public class GenericResultSetFactory implements ResultSetFactory
 										   userSuppliedOptimizerOverrides);
 	}
 
+	/**
+		@see ResultSetFactory#getMergeJoinResultSet
+		@exception StandardException thrown on error
+	 */
+
+    public NoPutResultSet getMergeJoinResultSet(NoPutResultSet leftResultSet,
+								   int leftNumCols,
+								   NoPutResultSet rightResultSet,
+								   int rightNumCols,
+								   GeneratedMethod joinClause,
+								   int resultSetNumber,
+								   boolean oneRowRightSide,
+								   boolean notExistsRightSide,
+								   double optimizerEstimatedRowCount,
+								   double optimizerEstimatedCost,
+								   String userSuppliedOptimizerOverrides)
+			throws StandardException
+	{
+		return new MergeJoinResultSet(leftResultSet, leftNumCols,
+										   rightResultSet, rightNumCols,
+										   leftResultSet.getActivation(), joinClause,
+										   resultSetNumber, 
+										   oneRowRightSide, 
+										   notExistsRightSide, 
+										   optimizerEstimatedRowCount,
+										   optimizerEstimatedCost,
+										   userSuppliedOptimizerOverrides);
+	}
+
 	/**
 		@see ResultSetFactory#getNestedLoopLeftOuterJoinResultSet
 		@exception StandardException thrown on error
@@ -1084,6 +1182,39 @@ public class GenericResultSetFactory implements ResultSetFactory
 										   userSuppliedOptimizerOverrides);
 	}
 
+	/**
+		@see ResultSetFactory#getMergeLeftOuterJoinResultSet
+		@exception StandardException thrown on error
+	 */
+
+    public NoPutResultSet getMergeLeftOuterJoinResultSet(NoPutResultSet leftResultSet,
+								   int leftNumCols,
+								   NoPutResultSet rightResultSet,
+								   int rightNumCols,
+								   GeneratedMethod joinClause,
+								   int resultSetNumber,
+								   GeneratedMethod emptyRowFun,
+								   boolean wasRightOuterJoin,
+								   boolean oneRowRightSide,
+								   boolean notExistsRightSide,
+								   double optimizerEstimatedRowCount,
+								   double optimizerEstimatedCost,
+								   String userSuppliedOptimizerOverrides)
+			throws StandardException
+	{
+		return new MergeLeftOuterJoinResultSet(leftResultSet, leftNumCols,
+										   rightResultSet, rightNumCols,
+										   leftResultSet.getActivation(), joinClause,
+										   resultSetNumber, 
+										   emptyRowFun, 
+										   wasRightOuterJoin,
+										   oneRowRightSide,
+										   notExistsRightSide,
+										   optimizerEstimatedRowCount,
+										   optimizerEstimatedCost,
+										   userSuppliedOptimizerOverrides);
+	}
+
 	/**
 		@see ResultSetFactory#getSetTransactionResultSet
 		@exception StandardException thrown when unable to create the
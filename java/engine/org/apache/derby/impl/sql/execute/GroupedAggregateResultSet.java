@@ -22,6 +22,8 @@
 package org.apache.derby.impl.sql.execute;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Properties;
 import java.util.HashSet;
@@ -65,6 +67,13 @@ import org.apache.derby.iapi.types.RowLocation;
  *   the aggregations inside the sort, and the results are read back directly
  *   from the sorter.
  *
+ * If the data arrive in sorted order and the source can return them in
+ * {@link ColumnBatch}es, the single pass is made over the batches instead
+ * of one row at a time. If the aggregates are computed in the sorter, the
+ * rows of the batches are first aggregated into partial groups in a hash
+ * table, on worker threads if the source reads its table in parallel, and
+ * the sorter merges the partial groups.
+ *
  * Note that, as of the introduction of the ROLLUP support, we no longer
  * ALWAYS compute the aggregates using a SortObserver, which is an
  * arrangement by which the sorter calls back into the aggregates during
@@ -129,6 +138,20 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 	private long genericSortId;
 	private TransactionController tc;
 
+	// Set if the source returns its rows in batches
+	private BatchAggregator[] batchAggregators;
+	private int[] groupColumns;
+	private ColumnBatch batch;
+	private int batchPosition;
+	private ExecIndexRow groupRow;
+	private boolean[] groupKeyNulls;
+	private long[] groupKeyLongs;
+	private double[] groupKeyDoubles;
+
+	// Set if the rows are grouped by hashing before they are sorted
+	private int hashCapacity;
+	private GroupingHashtable hashtable;
+
 	// RTS
 	public Properties sortProperties = new Properties();
 
@@ -147,6 +170,8 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 	 * @param	ra				saved object that builds an empty output row
 	 * @param	maxRowSize		approx row size, passed to sorter
 	 * @param	resultSetNumber	The resultSetNumber for this result set
+	 * @param	hashCapacity	the number of groups to aggregate in a hash
+	 *		table before they are sorted, or 0 to aggregate them in the sort
 	 *
 	 * @exception StandardException Thrown on error
 	 */
@@ -160,7 +185,8 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 					int resultSetNumber,
 				    double optimizerEstimatedRowCount,
 					double optimizerEstimatedCost,
-					boolean isRollup) throws StandardException 
+					boolean isRollup,
+					int hashCapacity) throws StandardException 
 	{
 		super(s, aggregateItem, a, ra, resultSetNumber, optimizerEstimatedRowCount, optimizerEstimatedCost);
 		this.isInSortedOrder = isInSortedOrder;
@@ -184,6 +210,29 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 			!rollup &&
 			!hasDistinctAggregate;
 
+		if (!rollup && !hasDistinctAggregate)
+		{
+			groupColumns = new int[order.length];
+			for (int i = 0; i < order.length; i++)
+			{
+				groupColumns[i] = order[i].getColumnId() + 1;
+			}
+			batchAggregators = BatchAggregator.getBatchAggregators(
+				aggregates, source, getRowTemplate().nColumns(), groupColumns);
+			if (batchAggregators != null && isInSortedOrder)
+			{
+				groupKeyNulls = new boolean[order.length];
+				groupKeyLongs = new long[order.length];
+				groupKeyDoubles = new double[order.length];
+			}
+		}
+
+		// Batches are already aggregated into groups by hashing
+		if (usingAggregateObserver && batchAggregators == null)
+		{
+			this.hashCapacity = hashCapacity;
+		}
+
 		recordConstructorTime();
     }
 
@@ -223,36 +272,46 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 		if (!isInSortedOrder)
 			scanController = loadSorter();
 
-		ExecIndexRow currSortedRow = getNextRowFromRS();
-		resultsComplete = (currSortedRow == null);
-		if (usingAggregateObserver)
+		if (batchAggregators != null && isInSortedOrder)
 		{
-			if (currSortedRow != null)
-				finishedResults.add(
-					finishAggregation(currSortedRow).getClone());
+			// The groups are found when the batches are read
+			resultsComplete = false;
+			batch = null;
+			groupRow = null;
 		}
-		else if (!resultsComplete)
+		else
 		{
-			if (rollup)
-				resultRows = new ExecIndexRow[numGCols()+1];
-			else
-				resultRows = new ExecIndexRow[1];
-			if (aggInfoList.hasDistinct())
-            {
-                distinctValues = new ArrayList<List<Set<DataValueDescriptor>>>(
-                        resultRows.length);
-            }
-			for (int r = 0; r < resultRows.length; r++)
+			ExecIndexRow currSortedRow = getNextRowFromRS();
+			resultsComplete = (currSortedRow == null);
+			if (usingAggregateObserver)
+			{
+				if (currSortedRow != null)
+					finishedResults.add(
+						finishAggregation(currSortedRow).getClone());
+			}
+			else if (!resultsComplete)
 			{
-				resultRows[r] =
-					(ExecIndexRow) currSortedRow.getClone();
-				initializeVectorAggregation(resultRows[r]);
+				if (rollup)
+					resultRows = new ExecIndexRow[numGCols()+1];
+				else
+					resultRows = new ExecIndexRow[1];
 				if (aggInfoList.hasDistinct())
                 {
-                    distinctValues.add(new ArrayList<Set<DataValueDescriptor>>(
-                            aggregates.length));
-                    initializeDistinctMaps(r, true);
+                    distinctValues = new ArrayList<List<Set<DataValueDescriptor>>>(
+                            resultRows.length);
                 }
+				for (int r = 0; r < resultRows.length; r++)
+				{
+					resultRows[r] =
+						(ExecIndexRow) currSortedRow.getClone();
+					initializeVectorAggregation(resultRows[r]);
+					if (aggInfoList.hasDistinct())
+                    {
+                        distinctValues.add(new ArrayList<Set<DataValueDescriptor>>(
+                                aggregates.length));
+                        initializeDistinctMaps(r, true);
+                    }
+				}
 			}
 		}
 		} catch (StandardException e) {
@@ -309,14 +368,37 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 		sorter = tc.openSort(genericSortId);
 	
 		/* The sorter is responsible for doing the cloning */
-		while ((inputRow = getNextRowFromRS()) != null) 
+		if (batchAggregators != null)
+		{
+			insertPartialGroups(sorter);
+		}
+		else if (hashCapacity > 0)
+		{
+			/* Only one row of each group goes into the sorter */
+			hashtable = new GroupingHashtable(activation, order,
+				aggregates, hashCapacity);
+			while ((inputRow = getNextRowFromRS()) != null) 
+			{
+				hashtable.insert(inputRow);
+			}
+			hashtable.finish(sorter);
+		}
+		else
 		{
-			sorter.insert(inputRow.getRowArray());
+			while ((inputRow = getNextRowFromRS()) != null) 
+			{
+				sorter.insert(inputRow.getRowArray());
+			}
 		}
 		source.close();
 		sorter.completedInserts();
 		sortProperties = sorter.getSortInfo().
 			getAllSortInfo(sortProperties);
+		if (hashtable != null)
+		{
+			sortProperties = hashtable.getAllHashInfo(sortProperties);
+			hashtable = null;
+		}
 		if (aggInfoList.hasDistinct())
 		{
 			/*
@@ -338,6 +420,68 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 			activation.getResultSetHoldability());
 	}
 
+	/**
+	 * Aggregate the batches of the source into partial groups, and insert
+	 * them into the sorter, which merges the partial groups of each group.
+	 * If the source reads its table in parallel, every worker thread
+	 * aggregates the batches it reads into partial groups of its own.
+	 *
+	 * @param sorter the sorter, whose observer merges the rows
+	 *
+	 * @exception StandardException thrown on failure.
+	 */
+	private void insertPartialGroups(SortController sorter)
+		throws StandardException
+	{
+		BatchResultSet batchSource = (BatchResultSet) source;
+		int threads = batchSource.getParallelism();
+		PartialGroups[] partials;
+
+		if (threads > 0)
+		{
+			partials = new PartialGroups[threads];
+			for (int i = 0; i < threads; i++)
+			{
+				partials[i] = new PartialGroups(
+					BatchAggregator.copy(batchAggregators),
+					getRowTemplate().getClone(), groupColumns, null);
+			}
+
+			ParallelScan scan = batchSource.startParallel(partials);
+			try
+			{
+				ExecRow partial;
+				while ((partial = scan.takeHandedOver()) != null)
+				{
+					sorter.insert(partial.getRowArray());
+				}
+			}
+			finally
+			{
+				scan.stop();
+			}
+		}
+		else
+		{
+			partials = new PartialGroups[] {
+				new PartialGroups(batchAggregators,
+					getRowTemplate().getClone(), groupColumns, sorter)
+			};
+
+			ColumnBatch batch;
+			while ((batch = batchSource.getNextBatch()) != null)
+			{
+				partials[0].consume(batch, null);
+			}
+			partials[0].finish(null);
+		}
+
+		for (int i = 0; i < partials.length; i++)
+		{
+			rowsInput += partials[i].rows;
+		}
+	}
+
 	/**
 	 * Return the number of grouping columns.
 	 *
@@ -373,6 +517,13 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 		else if (resultsComplete)
 			return null;
 
+		if (batchAggregators != null && isInSortedOrder)
+		{
+			ExecRow row = getNextGroupFromBatches();
+			nextTime += getElapsedMillis(beginTime);
+			return row;
+		}
+
 		ExecIndexRow nextRow = getNextRowFromRS();
 		// No rows, no work to do
 		if (nextRow == null)
@@ -441,6 +592,139 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 
 		return finalizeResults();
 	}
+	/**
+	 * Read batches from the source until the current group is complete,
+	 * and return its row.
+	 *
+	 * @return the row of the group, or null if there are no more groups
+	 *
+	 * @exception StandardException thrown on failure.
+	 */
+	private ExecRow getNextGroupFromBatches() throws StandardException
+	{
+		for (;;)
+		{
+			if (batch == null || batchPosition == batch.size())
+			{
+				batch = ((BatchResultSet) source).getNextBatch();
+				batchPosition = 0;
+				if (batch == null)
+				{
+					resultsComplete = true;
+					return (groupRow == null) ? null : finishGroup();
+				}
+				rowsInput += batch.size();
+			}
+
+			if (groupRow == null)
+			{
+				startGroup();
+			}
+			else if (!sameGroup(batchPosition))
+			{
+				return finishGroup();
+			}
+
+			int size = batch.size();
+			int end = batchPosition + 1;
+			while (end < size && sameGroup(end))
+			{
+				end++;
+			}
+
+			for (int i = 0; i < batchAggregators.length; i++)
+			{
+				batchAggregators[i].accumulate(batch, batchPosition, end);
+			}
+			batchPosition = end;
+
+			if (end < size)
+			{
+				return finishGroup();
+			}
+		}
+	}
+
+	/**
+	 * Start a group with the row of the current batch at batchPosition.
+	 */
+	private void startGroup() throws StandardException
+	{
+		groupRow = (ExecIndexRow) getRowTemplate().getClone();
+		for (int i = 0; i < groupColumns.length; i++)
+		{
+			int column = groupColumns[i];
+			int kind = batch.getKind(column);
+			groupKeyNulls[i] = batch.getNulls(column)[batchPosition];
+			if (groupKeyNulls[i])
+			{
+				groupRow.getColumn(column).setToNull();
+			}
+			else if (kind == ColumnBatch.DOUBLE)
+			{
+				groupKeyDoubles[i] = batch.getDoubles(column)[batchPosition];
+				groupRow.setColumn(column,
+					ColumnBatch.newValue(groupKeyDoubles[i]));
+			}
+			else
+			{
+				groupKeyLongs[i] = batch.getLongs(column)[batchPosition];
+				groupRow.setColumn(column,
+					ColumnBatch.newValue(kind, groupKeyLongs[i]));
+			}
+		}
+
+		for (int i = 0; i < batchAggregators.length; i++)
+		{
+			batchAggregators[i].start(groupRow);
+		}
+	}
+
+	/**
+	 * Return whether or not a row of the current batch has the same
+	 * values for the grouping columns as the current group. NULLs are
+	 * equal to each other, as in sameGroupingValues().
+	 */
+	private boolean sameGroup(int position)
+	{
+		for (int i = 0; i < groupColumns.length; i++)
+		{
+			int column = groupColumns[i];
+			boolean isNull = batch.getNulls(column)[position];
+			if (isNull != groupKeyNulls[i])
+			{
+				return false;
+			}
+			if (isNull)
+			{
+				continue;
+			}
+			if (batch.getKind(column) == ColumnBatch.DOUBLE ?
+				batch.getDoubles(column)[position] != groupKeyDoubles[i] :
+				batch.getLongs(column)[position] != groupKeyLongs[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finish the aggregation of the current group and return its row.
+	 */
+	private ExecRow finishGroup() throws StandardException
+	{
+		for (int i = 0; i < batchAggregators.length; i++)
+		{
+			batchAggregators[i].finish();
+		}
+
+		ExecIndexRow row = finishAggregation(groupRow);
+		groupRow = null;
+		rowsReturned++;
+		return row;
+	}
+
 	// Return the passed row, after ensuring that we call setCurrentRow
 	private ExecRow makeCurrent(Object row)
 		throws StandardException
@@ -517,8 +801,16 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 
 			sortResultRow = null;
 			sourceExecIndexRow = null;
+			batch = null;
+			groupRow = null;
 			closeSource();
 
+			if (hashtable != null)
+			{
+				hashtable.close();
+				hashtable = null;
+			}
+
 			if (!isInSortedOrder)
 			{
 				tc.dropSort(genericSortId);
@@ -818,4 +1110,270 @@ class GroupedAggregateResultSet extends GenericAggregateResultSet
 		}
 	}
 
+	/**
+	 * Aggregates the rows of batches into partial groups, which it keeps
+	 * in a hash table until it holds too many groups or there are no more
+	 * batches. It then inserts them into the sorter, or hands them over to
+	 * the user thread if it consumes the batches of a worker thread of a
+	 * {@link ParallelScan}. A group may thus have several partial groups,
+	 * which the sorter merges.
+	 * <p>
+	 * The rows of each batch are gathered into another batch in the order
+	 * of their groups, so that every group is accumulated from a range of
+	 * rows.
+	 */
+	private static final class PartialGroups implements BatchConsumer
+	{
+		/** The most groups kept before they are inserted or handed over */
+		private static final int MAX_GROUPS = 4096;
+
+		private final BatchAggregator[] aggregators;
+		private final ExecRow template;
+		private final int[] groupColumns;
+		private final SortController sorter;
+
+		private final HashMap<GroupKey, Group> groups =
+			new HashMap<GroupKey, Group>();
+		private final ArrayList<Group> batchGroups = new ArrayList<Group>();
+		private final GroupKey probe;
+		private final Group[] groupOfRow = new Group[ColumnBatch.CAPACITY];
+		private final int[] rowOrder = new int[ColumnBatch.CAPACITY];
+		private ColumnBatch gathered;
+
+		long rows;
+
+		/**
+		 * @param aggregators the aggregators, which must not be used by
+		 *		anybody else while the batches are consumed
+		 * @param template a row to clone for every group
+		 * @param groupColumns the 1-based grouping columns
+		 * @param sorter the sorter to insert the groups into, or null to
+		 *		hand them over to the user thread
+		 */
+		PartialGroups(BatchAggregator[] aggregators,
+					  ExecRow template,
+					  int[] groupColumns,
+					  SortController sorter)
+		{
+			this.aggregators = aggregators;
+			this.template = template;
+			this.groupColumns = groupColumns;
+			this.sorter = sorter;
+			this.probe = new GroupKey(groupColumns.length);
+		}
+
+		public void consume(ColumnBatch batch, ParallelScan scan)
+			throws StandardException
+		{
+			int size = batch.size();
+			rows += size;
+
+			// Find the group of every row, and count the rows of each
+			for (int i = 0; i < size; i++)
+			{
+				probe.set(batch, groupColumns, i);
+				Group group = groups.get(probe);
+				if (group == null)
+				{
+					group = new Group(newGroupRow(batch, i));
+					groups.put(probe.copy(), group);
+				}
+				if (group.count++ == 0)
+				{
+					batchGroups.add(group);
+				}
+				groupOfRow[i] = group;
+			}
+
+			ColumnBatch rangeBatch = batch;
+			if (batchGroups.size() > 1)
+			{
+				int start = 0;
+				for (int g = 0; g < batchGroups.size(); g++)
+				{
+					Group group = batchGroups.get(g);
+					group.start = start;
+					group.next = start;
+					start += group.count;
+				}
+				for (int i = 0; i < size; i++)
+				{
+					rowOrder[groupOfRow[i].next++] = i;
+				}
+
+				if (gathered == null)
+				{
+					gathered = new ColumnBatch(batch.getColumnCount());
+				}
+				gathered.gather(batch, rowOrder, size);
+				rangeBatch = gathered;
+			}
+			else if (batchGroups.size() == 1)
+			{
+				// All rows of the batch are in the one group, which may
+				// have been at another position of an earlier batch
+				batchGroups.get(0).start = 0;
+			}
+
+			for (int g = 0; g < batchGroups.size(); g++)
+			{
+				Group group = batchGroups.get(g);
+				for (int a = 0; a < aggregators.length; a++)
+				{
+					aggregators[a].start(group.row);
+					aggregators[a].accumulate(rangeBatch, group.start,
+											  group.start + group.count);
+					aggregators[a].finish();
+				}
+				group.count = 0;
+			}
+			batchGroups.clear();
+
+			if (groups.size() > MAX_GROUPS)
+			{
+				flush(scan);
+			}
+		}
+
+		public void finish(ParallelScan scan) throws StandardException
+		{
+			flush(scan);
+		}
+
+		/**
+		 * Create the row of a group, with the grouping columns of a row of
+		 * a batch.
+		 */
+		private ExecRow newGroupRow(ColumnBatch batch, int position)
+			throws StandardException
+		{
+			ExecRow row = template.getClone();
+			for (int i = 0; i < groupColumns.length; i++)
+			{
+				int column = groupColumns[i];
+				int kind = batch.getKind(column);
+				if (batch.getNulls(column)[position])
+				{
+					row.getColumn(column).setToNull();
+				}
+				else if (kind == ColumnBatch.DOUBLE)
+				{
+					row.setColumn(column, ColumnBatch.newValue(
+						batch.getDoubles(column)[position]));
+				}
+				else
+				{
+					row.setColumn(column, ColumnBatch.newValue(
+						kind, batch.getLongs(column)[position]));
+				}
+			}
+			return row;
+		}
+
+		/**
+		 * Insert or hand over the groups, and start over with none.
+		 */
+		private void flush(ParallelScan scan) throws StandardException
+		{
+			for (Group group : groups.values())
+			{
+				if (sorter != null)
+				{
+					sorter.insert(group.row.getRowArray());
+				}
+				else if (!scan.handOver(group.row))
+				{
+					break;
+				}
+			}
+			groups.clear();
+		}
+	}
+
+	/**
+	 * A partial group of {@link PartialGroups}.
+	 */
+	private static final class Group
+	{
+		final ExecRow row;
+		int count;
+		int start;
+		int next;
+
+		Group(ExecRow row)
+		{
+			this.row = row;
+		}
+	}
+
+	/**
+	 * The values of the grouping columns of a row of a batch. NULLs are
+	 * equal to each other, and so are the DOUBLE values 0 and -0, as when
+	 * the sorter compares the rows.
+	 */
+	private static final class GroupKey
+	{
+		private final long[] values;
+		private final boolean[] nulls;
+		private int hash;
+
+		GroupKey(int numColumns)
+		{
+			values = new long[numColumns];
+			nulls = new boolean[numColumns];
+		}
+
+		void set(ColumnBatch batch, int[] columns, int position)
+		{
+			int h = 1;
+			for (int i = 0; i < columns.length; i++)
+			{
+				int column = columns[i];
+				long value;
+				nulls[i] = batch.getNulls(column)[position];
+				if (nulls[i])
+				{
+					value = 0;
+				}
+				else if (batch.getKind(column) == ColumnBatch.DOUBLE)
+				{
+					double d = batch.getDoubles(column)[position];
+					value = (d == 0) ? 0 : Double.doubleToLongBits(d);
+				}
+				else
+				{
+					value = batch.getLongs(column)[position];
+				}
+				values[i] = value;
+				h = 31 * h + (nulls[i] ? 1 : (int) (value ^ (value >>> 32)));
+			}
+			hash = h;
+		}
+
+		GroupKey copy()
+		{
+			GroupKey key = new GroupKey(values.length);
+			System.arraycopy(values, 0, key.values, 0, values.length);
+			System.arraycopy(nulls, 0, key.nulls, 0, nulls.length);
+			key.hash = hash;
+			return key;
+		}
+
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		public boolean equals(Object other)
+		{
+			if (!(other instanceof GroupKey))
+			{
+				return false;
+			}
+			GroupKey key = (GroupKey) other;
+			return hash == key.hash &&
+				Arrays.equals(values, key.values) &&
+				Arrays.equals(nulls, key.nulls);
+		}
+	}
 }
@@ -0,0 +1,380 @@
+/*
+
+   Derby - Class org.apache.derby.impl.sql.execute.GroupingHashtable
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+
+package org.apache.derby.impl.sql.execute;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Properties;
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.reference.SQLState;
+import org.apache.derby.iapi.services.i18n.MessageService;
+import org.apache.derby.iapi.sql.Activation;
+import org.apache.derby.iapi.sql.execute.CursorResultSet;
+import org.apache.derby.iapi.sql.execute.ExecAggregator;
+import org.apache.derby.iapi.sql.execute.ExecRow;
+import org.apache.derby.iapi.store.access.ColumnOrdering;
+import org.apache.derby.iapi.store.access.KeyHasher;
+import org.apache.derby.iapi.store.access.SortController;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.iapi.types.UserDataValue;
+
+/**
+ * Groups rows by hashing them, for a GROUP BY or a DISTINCT whose groups
+ * are expected to fit in memory. Every group is kept as a single row, in
+ * which the aggregates of the group are accumulated; a DISTINCT has no
+ * aggregates and keeps the first row of every group.
+ * <p>
+ * The groups are spread over a fixed number of partitions by the hash
+ * code of their keys. When there are more groups than the hash table may
+ * hold, the groups of the largest partition are written to disk, and so
+ * are the rows that belong to that partition from then on. Once all rows
+ * are in, every partition on disk is grouped in turn, with the keys
+ * spread over the partitions by other bits of their hash codes, so that a
+ * partition may again be written to disk in smaller ones.
+ * <p>
+ * The groups end up in a sorter, one row per group, which returns them
+ * in the order of the grouping columns like a sort of all of the rows
+ * would. Its sort observer sees no duplicates.
+ */
+final class GroupingHashtable
+{
+	/** The number of partitions of the groups */
+	private static final int PARTITIONS = 16;
+
+	/** The number of bits of a hash code used to pick a partition */
+	private static final int PARTITION_BITS = 4;
+
+	/**
+	 * The deepest level of partitioning. The keys of the groups in a
+	 * partition of this level have the same hash code, so the partition
+	 * is held in memory whatever its size.
+	 */
+	private static final int MAX_LEVEL = 32 / PARTITION_BITS - 1;
+
+	private final Activation activation;
+	private final int[] keyColumns;
+	private final GenericAggregator[] aggregates;
+	private final int capacity;
+
+	// The groups held in memory by partition, and the partitions written
+	// to disk, at the current level of partitioning
+	private final ArrayList<HashMap<Object, ExecRow>> resident;
+	private final TemporaryRowHolderImpl[] spilled;
+	private ExecRow spillRow;
+	private int residentGroups;
+	private int level;
+
+	// The partitions on disk that are yet to be grouped, with their levels
+	private final ArrayDeque<TemporaryRowHolderImpl> pending =
+		new ArrayDeque<TemporaryRowHolderImpl>();
+	private final ArrayDeque<Integer> pendingLevels = new ArrayDeque<Integer>();
+
+	// RTS
+	private int maxResidentGroups;
+	private int partitionsSpilled;
+
+	/**
+	 * Create a hash table for grouping rows.
+	 *
+	 * @param activation	the activation, for the partitions on disk
+	 * @param order			the grouping columns
+	 * @param aggregates	the aggregates to accumulate, or an empty
+	 *		array to eliminate duplicate rows
+	 * @param capacity		the number of groups to hold in memory
+	 */
+	GroupingHashtable(Activation activation,
+					  ColumnOrdering[] order,
+					  GenericAggregator[] aggregates,
+					  int capacity)
+	{
+		this.activation = activation;
+		this.aggregates = aggregates;
+		this.capacity = capacity;
+
+		keyColumns = new int[order.length];
+		for (int i = 0; i < order.length; i++)
+		{
+			keyColumns[i] = order[i].getColumnId();
+		}
+
+		resident = new ArrayList<HashMap<Object, ExecRow>>(PARTITIONS);
+		for (int i = 0; i < PARTITIONS; i++)
+		{
+			resident.add(new HashMap<Object, ExecRow>());
+		}
+		spilled = new TemporaryRowHolderImpl[PARTITIONS];
+	}
+
+	/**
+	 * Add a row to its group. The row is cloned if it starts a group.
+	 *
+	 * @param row	a row of the source, or a group read back from disk
+	 *
+	 * @exception StandardException thrown on failure.
+	 */
+	void insert(ExecRow row) throws StandardException
+	{
+		DataValueDescriptor[] columns = row.getRowArray();
+		int partition = partitionOf(KeyHasher.buildHashKey(columns, keyColumns));
+		if (spilled[partition] != null)
+		{
+			spilled[partition].insert(spillRow(row));
+			return;
+		}
+
+		HashMap<Object, ExecRow> groups = resident.get(partition);
+		ExecRow group = groups.get(KeyHasher.buildHashKey(columns, keyColumns));
+		if (group != null)
+		{
+			accumulate(row, group);
+			return;
+		}
+
+		group = row.getClone();
+		if (aggregates.length > 0 && isInputRow(group))
+		{
+			for (int i = 0; i < aggregates.length; i++)
+			{
+				aggregates[i].initialize(group);
+				aggregates[i].accumulate(group, group);
+			}
+		}
+		groups.put(KeyHasher.buildHashKey(group.getRowArray(), keyColumns),
+				   group);
+
+		if (++residentGroups > maxResidentGroups)
+		{
+			maxResidentGroups = residentGroups;
+		}
+		if (residentGroups > capacity && level < MAX_LEVEL)
+		{
+			spillLargestPartition();
+		}
+	}
+
+	/**
+	 * Insert every group into a sorter, the groups held in memory first
+	 * and then those of the partitions on disk, which are read back one at
+	 * a time. The partitions on disk are dropped once they are read.
+	 *
+	 * @param sorter	the sorter
+	 *
+	 * @exception StandardException thrown on failure.
+	 */
+	void finish(SortController sorter) throws StandardException
+	{
+		while (true)
+		{
+			for (int i = 0; i < PARTITIONS; i++)
+			{
+				for (ExecRow group : resident.get(i).values())
+				{
+					sorter.insert(group.getRowArray());
+				}
+				resident.get(i).clear();
+
+				if (spilled[i] != null)
+				{
+					pending.add(spilled[i]);
+					pendingLevels.add(level + 1);
+					spilled[i] = null;
+				}
+			}
+			residentGroups = 0;
+
+			if (pending.isEmpty())
+			{
+				return;
+			}
+
+			TemporaryRowHolderImpl holder = pending.poll();
+			level = pendingLevels.poll();
+			CursorResultSet rows = holder.getResultSet();
+			rows.open();
+			try
+			{
+				ExecRow row;
+				while ((row = rows.getNextRow()) != null)
+				{
+					insert(row);
+				}
+			}
+			finally
+			{
+				rows.close();
+				holder.close();
+			}
+		}
+	}
+
+	/**
+	 * Drop the partitions on disk. Only needed if the rows are not all
+	 * read back by {@link #finish}.
+	 *
+	 * @exception StandardException thrown on failure.
+	 */
+	void close() throws StandardException
+	{
+		for (int i = 0; i < PARTITIONS; i++)
+		{
+			resident.get(i).clear();
+			if (spilled[i] != null)
+			{
+				spilled[i].close();
+				spilled[i] = null;
+			}
+		}
+		while (!pending.isEmpty())
+		{
+			pending.poll().close();
+		}
+		pendingLevels.clear();
+	}
+
+	/**
+	 * Add the run time statistics of the hash table to a set of
+	 * properties.
+	 *
+	 * @param prop	the properties, or null to create them
+	 *
+	 * @return the properties
+	 */
+	Properties getAllHashInfo(Properties prop)
+	{
+		if (prop == null)
+		{
+			prop = new Properties();
+		}
+		prop.put(MessageService.getTextMessage(SQLState.RTS_HASH_TABLE_SIZE),
+				 Integer.toString(maxResidentGroups));
+		prop.put(MessageService.getTextMessage(SQLState.RTS_PARTITIONS_SPILLED),
+				 Integer.toString(partitionsSpilled));
+		return prop;
+	}
+
+	/**
+	 * Add a row to the group of its key. A row of the source is
+	 * accumulated, a group read back from disk is merged.
+	 */
+	private void accumulate(ExecRow row, ExecRow group)
+		throws StandardException
+	{
+		if (aggregates.length == 0)
+		{
+			return;
+		}
+
+		if (isInputRow(row))
+		{
+			for (int i = 0; i < aggregates.length; i++)
+			{
+				aggregates[i].accumulate(row, group);
+			}
+			return;
+		}
+
+		for (int i = 0; i < aggregates.length; i++)
+		{
+			GenericAggregator aggregate = aggregates[i];
+			aggregate.merge(row, group);
+
+			// Merging does not carry over the NULLs the group eliminated
+			ExecAggregator partial = (ExecAggregator)
+				((UserDataValue) row.getColumn(
+					aggregate.aggregatorColumnId + 1)).getObject();
+			if (partial.didEliminateNulls())
+			{
+				aggregate.accumulate((DataValueDescriptor) null,
+					group.getColumn(aggregate.aggregatorColumnId + 1));
+			}
+		}
+	}
+
+	/**
+	 * Whether a row comes from the source, and has no aggregators yet, as
+	 * opposed to a group read back from disk.
+	 */
+	private boolean isInputRow(ExecRow row) throws StandardException
+	{
+		return row.getColumn(aggregates[0].aggregatorColumnId + 1).isNull();
+	}
+
+	/**
+	 * Write the groups of the largest partition held in memory to disk.
+	 */
+	private void spillLargestPartition() throws StandardException
+	{
+		int largest = -1;
+		for (int i = 0; i < PARTITIONS; i++)
+		{
+			if (spilled[i] == null &&
+				(largest < 0 ||
+				 resident.get(i).size() > resident.get(largest).size()))
+			{
+				largest = i;
+			}
+		}
+
+		TemporaryRowHolderImpl holder = new TemporaryRowHolderImpl(
+			activation, null, null, 1, false, false);
+		for (ExecRow group : resident.get(largest).values())
+		{
+			holder.insert(spillRow(group));
+		}
+		residentGroups -= resident.get(largest).size();
+		resident.get(largest).clear();
+		spilled[largest] = holder;
+		partitionsSpilled++;
+	}
+
+	/**
+	 * Get a row to write to disk with the columns of a row. The rows of
+	 * the source may be index rows, which the row holder does not take.
+	 */
+	private ExecRow spillRow(ExecRow row)
+	{
+		if (spillRow == null)
+		{
+			spillRow = activation.getExecutionFactory().getValueRow(
+				row.nColumns());
+		}
+		spillRow.setRowArray(row.getRowArray());
+		return spillRow;
+	}
+
+	/**
+	 * Get the partition of a key at the current level of partitioning.
+	 * Every level uses other bits of the mixed hash code of the key.
+	 */
+	private int partitionOf(Object key)
+	{
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return (hash >>> (level * PARTITION_BITS)) & (PARTITIONS - 1);
+	}
+}
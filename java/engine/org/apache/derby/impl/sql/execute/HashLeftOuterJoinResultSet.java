@@ -21,18 +21,24 @@
 
 package org.apache.derby.impl.sql.execute;
 
+import org.apache.derby.iapi.error.StandardException;
 import org.apache.derby.iapi.services.loader.GeneratedMethod;
 import org.apache.derby.iapi.sql.Activation;
+import org.apache.derby.iapi.sql.execute.ExecRow;
 import org.apache.derby.iapi.sql.execute.NoPutResultSet;
 
 
 /**
  * Left outer join using hash join of 2 arbitrary result sets.
  * Simple subclass of nested loop left outer join, differentiated
- * to ease RunTimeStatistics output generation.
+ * to ease RunTimeStatistics output generation, that turns into a hybrid
+ * hash join when the hash table of a base table does not fit in memory.
  */
 class HashLeftOuterJoinResultSet extends NestedLoopLeftOuterJoinResultSet
 {
+	/** Holds back the left rows whose hash table partition is on disk */
+	private final PartitionedHashJoin partitions;
+
     HashLeftOuterJoinResultSet(
 						NoPutResultSet leftResultSet,
 						int leftNumCols,
@@ -55,5 +61,55 @@ class HashLeftOuterJoinResultSet extends NestedLoopLeftOuterJoinResultSet
 			  oneRowRightSide, notExistsRightSide,
 			  optimizerEstimatedRowCount, optimizerEstimatedCost, 
 			  userSuppliedOptimizerOverrides);
+
+		partitions = new PartitionedHashJoin(this);
     }
+
+	//
+	// ResultSet interface (override methods from JoinResultSet)
+	//
+
+	/**
+	 * @see NoPutResultSet#openCore
+	 *
+	 * @exception StandardException		Thrown on error
+	 */
+	public void	openCore() throws StandardException
+	{
+		partitions.reset();
+		super.openCore();
+	}
+
+	/**
+	 * @see NoPutResultSet#reopenCore
+	 *
+	 * @exception StandardException		Thrown on error
+	 */
+	public void	reopenCore() throws StandardException
+	{
+		partitions.reset();
+		super.reopenCore();
+	}
+
+	/**
+	 * @see org.apache.derby.iapi.sql.ResultSet#close
+	 *
+	 * @exception StandardException		Thrown on error
+	 */
+	public void	close() throws StandardException
+	{
+		super.close();
+		partitions.reset();
+	}
+
+	/**
+	 * Hold back the left rows whose partition of the hash table is on
+	 * disk, see {@link PartitionedHashJoin}.
+	 *
+	 * @exception StandardException		Thrown on error
+	 */
+	protected ExecRow getNextLeftRow() throws StandardException
+	{
+		return partitions.getNextLeftRow();
+	}
 }
@@ -21,6 +21,7 @@
 
 package org.apache.derby.impl.sql.execute;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
@@ -54,13 +55,21 @@ import org.apache.derby.iapi.types.RowLocation;
  * <code>DataValueDescriptor[]</code>. The store builds the hash table. When a
  * collision occurs, the store builds a <code>List</code> with the colliding
  * <code>DataValueDescriptor[]</code>s.
+ * <p>
+ * When the join above it asks for it, the hash table is built in
+ * partitions instead, to support a hybrid hash join. The rows are split
+ * into partitions by the hash of their key, and whenever the rows held in
+ * memory exceed the maximum capacity of the hash table, the largest
+ * partition is written to a temporary conglomerate. Probes whose key falls
+ * into such a spilled partition have to be held back by the join until
+ * the partition has been loaded with {@link #loadPartition}.
  */
 public class HashScanResultSet extends ScanResultSet
 	implements CursorResultSet
 {
 	private boolean		hashtableBuilt;
-	private ExecIndexRow	startPosition;
-	private ExecIndexRow	stopPosition;
+	ExecIndexRow	startPosition;
+	ExecIndexRow	stopPosition;
 	protected	ExecRow		compactRow;
 
 	// Variable for managing next() logic on hash entry
@@ -71,12 +80,12 @@ public class HashScanResultSet extends ScanResultSet
 
     // set in constructor and not altered during
     // life of object.
-    private long conglomId;
+    long conglomId;
     protected StaticCompiledOpenConglomInfo scoci;
-	private GeneratedMethod startKeyGetter;
-	private int startSearchOperator;
-	private GeneratedMethod stopKeyGetter;
-	private int stopSearchOperator;
+	GeneratedMethod startKeyGetter;
+	int startSearchOperator;
+	GeneratedMethod stopKeyGetter;
+	int stopSearchOperator;
 	public Qualifier[][] scanQualifiers;
 	public Qualifier[][] nextQualifiers;
 	private int initialCapacity;
@@ -84,11 +93,11 @@ public class HashScanResultSet extends ScanResultSet
 	private int maxCapacity;
 	public String userSuppliedOptimizerOverrides;
 	public boolean forUpdate;
-	private boolean runTimeStatisticsOn;
+	boolean runTimeStatisticsOn;
 	public int[] keyColumns;
-	private boolean sameStartStopPosition;
+	boolean sameStartStopPosition;
 	private boolean skipNullKeyColumns;
-	private boolean keepAfterCommit;
+	boolean keepAfterCommit;
 
 	protected BackingStoreHashtable hashtable;
 	protected boolean eliminateDuplicates;		// set to true in DistinctScanResultSet
@@ -104,6 +113,21 @@ public class HashScanResultSet extends ScanResultSet
 	public static final float DEFAULT_LOADFACTOR = (float) -1.0;
 	public static final	int	DEFAULT_MAX_CAPACITY = -1;
 
+	/** The most partitions a hash table is split into */
+	private static final int MAX_PARTITIONS = 64;
+
+	// Hybrid hash join. A null entry in spilledPartitions is a partition
+	// whose rows are in the hash table. The hash table may only be built
+	// in partitions if the join need not keep the order of the probes.
+	private final boolean partitionable;
+	private boolean partitioningEnabled;
+	private int numPartitions;
+	private TemporaryRowHolderImpl[] spilledPartitions;
+	private int[] partitionColumns;
+
+	// Run time statistics
+	public int partitionsSpilled;
+
 
     //
     // class interface
@@ -131,6 +155,7 @@ public class HashScanResultSet extends ScanResultSet
 		boolean tableLocked,
 		int isolationLevel,
 		boolean skipNullKeyColumns,
+		boolean partitionable,
 		double optimizerEstimatedRowCount,
 		double optimizerEstimatedCost)
 			throws StandardException
@@ -170,6 +195,7 @@ public class HashScanResultSet extends ScanResultSet
 		this.isConstraint = isConstraint;
 		this.forUpdate = forUpdate;
 		this.skipNullKeyColumns = skipNullKeyColumns;
+		this.partitionable = partitionable;
 		this.keepAfterCommit = activation.getResultSetHoldability();
 
 		/* Retrieve the hash key columns */
@@ -255,29 +281,34 @@ public class HashScanResultSet extends ScanResultSet
 			DataValueDescriptor[] stopPositionRow = 
                 stopPosition == null ? null : stopPosition.getRowArray();
 
-            hashtable = 
-                tc.createBackingStoreHashtableFromScan(
-                    conglomId,          // conglomerate to open
-                    (forUpdate ? TransactionController.OPENMODE_FORUPDATE : 0),
-                    lockMode,
-                    isolationLevel,
-                    accessedCols, 
-                    startPositionRow,   
-                    startSearchOperator,
-                    scanQualifiers,
-                    stopPositionRow,   
-                    stopSearchOperator,
-                    -1,                 // no limit on total rows.
-                    keyColumns,      
-                    eliminateDuplicates,// remove duplicates?
-                    -1,                 // RESOLVE - is there a row estimate?
-                    maxCapacity,
-                    initialCapacity,    // in memory Hashtable initial capacity
-                    loadFactor,         // in memory Hashtable load factor
-                    runTimeStatisticsOn,
-					skipNullKeyColumns,
-					keepAfterCommit,
-					fetchRowLocations);
+			partitionsSpilled = 0;
+			if (! partitioningEnabled ||
+				! buildPartitionedHashtable(tc, startPositionRow, stopPositionRow))
+			{
+                hashtable =
+                    tc.createBackingStoreHashtableFromScan(
+                        conglomId,          // conglomerate to open
+                        (forUpdate ? TransactionController.OPENMODE_FORUPDATE : 0),
+                        lockMode,
+                        isolationLevel,
+                        accessedCols, 
+                        startPositionRow,   
+                        startSearchOperator,
+                        scanQualifiers,
+                        stopPositionRow,   
+                        stopSearchOperator,
+                        -1,                 // no limit on total rows.
+                        keyColumns,      
+                        eliminateDuplicates,// remove duplicates?
+                        -1,                 // RESOLVE - is there a row estimate?
+                        maxCapacity,
+                        initialCapacity,    // in memory Hashtable initial capacity
+                        loadFactor,         // in memory Hashtable load factor
+                        runTimeStatisticsOn,
+						skipNullKeyColumns,
+						keepAfterCommit,
+						fetchRowLocations);
+			}
 
 			if (runTimeStatisticsOn)
 			{
@@ -522,6 +553,7 @@ public class HashScanResultSet extends ScanResultSet
 				hashtable.close();
 				hashtable = null;
 				hashtableBuilt = false;
+				dropSpilledPartitions();
 			}
 			startPosition = null;
 			stopPosition = null;
@@ -753,6 +785,407 @@ public class HashScanResultSet extends ScanResultSet
 		return output;
 	}
 
+	/**
+	 * Ask for the hash table to be built in partitions, so that the rows
+	 * which do not fit in memory can be joined one partition at a time.
+	 * Called by the hash join above this result set, before it is opened.
+	 */
+	void enablePartitioning()
+	{
+		/* Without a maximum capacity, the hash table never runs out of room */
+		partitioningEnabled =
+			partitionable && maxCapacity > 0 && ! eliminateDuplicates;
+	}
+
+	/**
+	 * Tell whether some partitions of the hash table were written to disk
+	 * when it was built.
+	 */
+	boolean isPartitioned()
+	{
+		return spilledPartitions != null;
+	}
+
+	/**
+	 * Get the number of partitions the hash table was built in.
+	 */
+	int getNumPartitions()
+	{
+		return numPartitions;
+	}
+
+	/**
+	 * Get the partition that the key of the next probe falls into, if that
+	 * partition is not in the hash table. The probe values are taken from
+	 * the current outer row.
+	 *
+	 * @return the number of a spilled partition, or -1 if the probe can
+	 *		   be done against the hash table
+	 *
+	 * @exception StandardException thrown on error
+	 */
+	int getProbePartition() throws StandardException
+	{
+		if (spilledPartitions == null)
+		{
+			return -1;
+		}
+
+		/* The probe values are cached for the scan, and the outer row moved */
+		clearOrderableCache(nextQualifiers);
+
+		Object key;
+		if (keyColumns.length == 1)
+		{
+			key = nextQualifiers[0][0].getOrderable();
+			if (key == null || ((DataValueDescriptor) key).isNull())
+			{
+				return -1;
+			}
+		}
+		else
+		{
+			KeyHasher mh = new KeyHasher(keyColumns.length);
+			for (int index = 0; index < keyColumns.length; index++)
+			{
+				DataValueDescriptor dvd = nextQualifiers[0][index].getOrderable();
+				if (dvd == null || dvd.isNull())
+				{
+					return -1;
+				}
+				mh.setObject(index, dvd);
+			}
+			key = mh;
+		}
+
+		int partition = partitionOf(key);
+		return (spilledPartitions[partition] == null) ? -1 : partition;
+	}
+
+	/**
+	 * Replace the rows of the hash table with the rows of a partition that
+	 * was written to disk. The partition is dropped once it is loaded. If
+	 * it has more rows than the hash table can hold, the hash table
+	 * overflows to disk as it would without partitioning.
+	 *
+	 * @param partition	The partition to load
+	 *
+	 * @return false if the partition was never written to disk
+	 *
+	 * @exception StandardException thrown on error
+	 */
+	boolean loadPartition(int partition) throws StandardException
+	{
+		TemporaryRowHolderImpl holder = spilledPartitions[partition];
+		if (holder == null)
+		{
+			return false;
+		}
+
+		hashtable.close();
+		hashtable = newPartitionHashtable();
+
+		CursorResultSet rows = holder.getResultSet();
+		rows.open();
+		try
+		{
+			ExecRow row;
+			while ((row = rows.getNextRow()) != null)
+			{
+				hashtable.putRow(false, expandSpilledRow(row), null);
+			}
+		}
+		finally
+		{
+			rows.close();
+			holder.close();
+			spilledPartitions[partition] = null;
+		}
+
+		resetProbeVariables();
+		return true;
+	}
+
+	/**
+	 * Build the hash table in partitions. Nothing is built if the
+	 * conglomerate is expected to fit in memory, in which case the caller
+	 * builds the hash table as usual.
+	 *
+	 * @return true if the hash table was built
+	 *
+	 * @exception StandardException thrown on error
+	 */
+	private boolean buildPartitionedHashtable(
+									TransactionController tc,
+									DataValueDescriptor[] startPositionRow,
+									DataValueDescriptor[] stopPositionRow)
+		throws StandardException
+	{
+		ScanController scan = tc.openScan(
+			conglomId,
+			false,						// hold
+			(forUpdate ? TransactionController.OPENMODE_FORUPDATE : 0),
+			lockMode,
+			isolationLevel,
+			accessedCols,
+			startPositionRow,
+			startSearchOperator,
+			scanQualifiers,
+			stopPositionRow,
+			stopSearchOperator);
+
+		long estimatedRows = scan.getEstimatedRowCount();
+		if (estimatedRows <= maxCapacity)
+		{
+			scan.close();
+			return false;
+		}
+
+		/*
+		** Use enough partitions for each of them to fit in memory, plus
+		** some to spare because the keys are never spread out evenly.
+		*/
+		numPartitions = (int) Math.min(MAX_PARTITIONS,
+									   2 + (2 * estimatedRows) / maxCapacity);
+		if (partitionColumns == null)
+		{
+			partitionColumns = fetchedColumns();
+		}
+
+		ArrayList<List<DataValueDescriptor[]>> resident =
+			new ArrayList<List<DataValueDescriptor[]>>(numPartitions);
+		for (int i = 0; i < numPartitions; i++)
+		{
+			resident.add(new ArrayList<DataValueDescriptor[]>());
+		}
+		TemporaryRowHolderImpl[] spilled =
+			new TemporaryRowHolderImpl[numPartitions];
+		int residentRows = 0;
+
+		DataValueDescriptor[] fetched = candidate.getRowArray();
+		try
+		{
+			while (scan.fetchNext(fetched))
+			{
+				/* Rows with a NULL key cannot join to anything */
+				if (skipNullKeyColumns && hasNullKey(fetched))
+				{
+					continue;
+				}
+
+				DataValueDescriptor[] row =
+					new DataValueDescriptor[fetched.length];
+				for (int i = 0; i < partitionColumns.length; i++)
+				{
+					int column = partitionColumns[i];
+					if (fetchRowLocations && column == fetched.length - 1)
+					{
+						RowLocation rl = scan.newRowLocationTemplate();
+						scan.fetchLocation(rl);
+						row[column] = rl;
+					}
+					else
+					{
+						row[column] = fetched[column].cloneValue(true);
+					}
+				}
+
+				int partition =
+					partitionOf(KeyHasher.buildHashKey(row, keyColumns));
+				if (spilled[partition] != null)
+				{
+					spilled[partition].insert(compactSpilledRow(row));
+					continue;
+				}
+
+				resident.get(partition).add(row);
+				if (++residentRows <= maxCapacity)
+				{
+					continue;
+				}
+
+				/* Out of room, write the largest partition to disk */
+				int largest = 0;
+				for (int i = 1; i < numPartitions; i++)
+				{
+					if (resident.get(i).size() > resident.get(largest).size())
+					{
+						largest = i;
+					}
+				}
+
+				spilled[largest] = new TemporaryRowHolderImpl(
+					activation, null, null, 1, false, false);
+				for (DataValueDescriptor[] spilledRow : resident.get(largest))
+				{
+					spilled[largest].insert(compactSpilledRow(spilledRow));
+				}
+				residentRows -= resident.get(largest).size();
+				resident.get(largest).clear();
+				partitionsSpilled++;
+			}
+
+			if (runTimeStatisticsOn)
+			{
+				if (scanProperties == null)
+				{
+					scanProperties = new Properties();
+				}
+				scan.getScanInfo().getAllScanInfo(scanProperties);
+			}
+		}
+		finally
+		{
+			scan.close();
+		}
+
+		hashtable = newPartitionHashtable();
+		for (int i = 0; i < numPartitions; i++)
+		{
+			for (DataValueDescriptor[] row : resident.get(i))
+			{
+				hashtable.putRow(false, row, null);
+			}
+		}
+
+		if (partitionsSpilled > 0)
+		{
+			spilledPartitions = spilled;
+		}
+		return true;
+	}
+
+	/**
+	 * Create an empty hash table for the rows of the resident partitions,
+	 * or of a partition that is loaded from disk.
+	 */
+	private BackingStoreHashtable newPartitionHashtable()
+		throws StandardException
+	{
+		return new BackingStoreHashtable(
+			activation.getTransactionController(),
+			null,
+			keyColumns,
+			eliminateDuplicates,
+			-1,
+			maxCapacity,
+			initialCapacity,
+			loadFactor,
+			skipNullKeyColumns,
+			keepAfterCommit);
+	}
+
+	/**
+	 * Get the partition of a hash key. The partition is picked with the
+	 * hash code the hash table uses, so that the outer rows land in the
+	 * same partition as the inner rows they join to.
+	 */
+	private int partitionOf(Object key)
+	{
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return (hash & Integer.MAX_VALUE) % numPartitions;
+	}
+
+	private boolean hasNullKey(DataValueDescriptor[] row)
+	{
+		for (int i = 0; i < keyColumns.length; i++)
+		{
+			if (row[keyColumns[i]].isNull())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get the row to write to disk for a full-width row of the hash table,
+	 * which is made up of the columns that are fetched from the scan.
+	 */
+	private ExecRow compactSpilledRow(DataValueDescriptor[] row)
+	{
+		ExecRow compact = activation.getExecutionFactory().
+			getValueRow(partitionColumns.length);
+		for (int i = 0; i < partitionColumns.length; i++)
+		{
+			compact.setColumn(i + 1, row[partitionColumns[i]]);
+		}
+		return compact;
+	}
+
+	/**
+	 * Turn a row that was read back from disk into a full-width row.
+	 */
+	private DataValueDescriptor[] expandSpilledRow(ExecRow compact)
+		throws StandardException
+	{
+		DataValueDescriptor[] row =
+			new DataValueDescriptor[candidate.nColumns()];
+		for (int i = 0; i < partitionColumns.length; i++)
+		{
+			DataValueDescriptor column = compact.getColumn(i + 1);
+			row[partitionColumns[i]] =
+				column.hasStream() ? column.cloneValue(true) : column;
+		}
+		return row;
+	}
+
+	/**
+	 * Drop the partitions that are still on disk.
+	 *
+	 * @exception StandardException thrown on error
+	 */
+	private void dropSpilledPartitions() throws StandardException
+	{
+		if (spilledPartitions == null)
+		{
+			return;
+		}
+
+		for (int i = 0; i < spilledPartitions.length; i++)
+		{
+			if (spilledPartitions[i] != null)
+			{
+				spilledPartitions[i].close();
+				spilledPartitions[i] = null;
+			}
+		}
+		spilledPartitions = null;
+	}
+
+	/**
+	 * Get the positions in the full-width candidate row of the columns
+	 * that are fetched from the conglomerate, followed by the position of
+	 * the row location if it is fetched too.
+	 */
+	int[] fetchedColumns()
+	{
+		int numColumns = candidate.nColumns();
+		if (fetchRowLocations)
+		{
+			numColumns--;
+		}
+
+		int numFetched = 0;
+		int[] columns = new int[numColumns + 1];
+		for (int i = 0; i < numColumns; i++)
+		{
+			if (accessedCols == null || accessedCols.isSet(i))
+			{
+				columns[numFetched++] = i;
+			}
+		}
+		if (fetchRowLocations)
+		{
+			columns[numFetched++] = numColumns;
+		}
+
+		int[] fetched = new int[numFetched];
+		System.arraycopy(columns, 0, fetched, 0, numFetched);
+		return fetched;
+	}
+
 	public Properties getScanProperties()
 	{
 		return scanProperties;
@@ -1851,7 +1851,6 @@ class InsertResultSet extends DMLWriteGeneratedColumnsResultSet implements Targe
 			indexCC.close();
 
 			// We can finally drain the sorter and rebuild the index
-			// RESOLVE - all indexes are btrees right now
 			// Populate the index.
 			sorters[index].completedInserts();
 			sorters[index] = null;
@@ -1860,7 +1859,7 @@ class InsertResultSet extends DMLWriteGeneratedColumnsResultSet implements Targe
 
 			newIndexCongloms[index] = 
                 tc.createAndLoadConglomerate(
-                    "BTREE",
+                    constants.irgs[index].indexType(),
                     indexRows[index].getRowArray(),
                     ordering[index],
                     collation[index],
@@ -2352,7 +2351,7 @@ class InsertResultSet extends DMLWriteGeneratedColumnsResultSet implements Targe
 			// Populate the index.
 			newIndexCongloms[index] = 
                 tc.createAndLoadConglomerate(
-                    "BTREE",
+                    constants.irgs[index].indexType(),
                     idxRows[index].getRowArray(),
                     null, //default column sort order 
                     collation[index],
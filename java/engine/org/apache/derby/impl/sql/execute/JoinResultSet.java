@@ -146,7 +146,7 @@ abstract class JoinResultSet extends NoPutResultSetImpl
 		leftResultSet.openCore();
 
 		try {
-			leftRow = leftResultSet.getNextRowCore();
+			leftRow = getNextLeftRow();
 			if (leftRow != null)
 			{
 				openRight();
@@ -178,7 +178,7 @@ abstract class JoinResultSet extends NoPutResultSetImpl
 
 		// Reopen the left and get the next row
 		leftResultSet.reopenCore();
-		leftRow = leftResultSet.getNextRowCore();
+		leftRow = getNextLeftRow();
 		if (leftRow != null)
 		{
 			// Open the right
@@ -285,6 +285,20 @@ abstract class JoinResultSet extends NoPutResultSetImpl
 		}
 	}
 
+	/**
+	 * Get the next row from the leftResultSet. A join that holds some of
+	 * the left rows back to join them later, like a hash join whose hash
+	 * table did not fit in memory, returns them from here when it is ready.
+	 *
+	 * @return the next left row, or null if there are no more
+	 *
+	 * @exception StandardException		Thrown on error
+	 */
+	protected ExecRow getNextLeftRow() throws StandardException
+	{
+		return leftResultSet.getNextRowCore();
+	}
+
 	/**
 	 * close the rightResultSet
 	 *
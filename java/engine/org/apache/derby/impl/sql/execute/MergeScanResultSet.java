@@ -0,0 +1,609 @@
+/*
+
+   Derby - Class org.apache.derby.impl.sql.execute.MergeScanResultSet
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.sql.execute;
+
+import java.util.ArrayList;
+import java.util.Properties;
+
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.services.loader.GeneratedMethod;
+import org.apache.derby.shared.common.sanity.SanityManager;
+import org.apache.derby.iapi.sql.Activation;
+import org.apache.derby.iapi.sql.execute.ExecIndexRow;
+import org.apache.derby.iapi.sql.execute.ExecRow;
+import org.apache.derby.iapi.store.access.ColumnOrdering;
+import org.apache.derby.iapi.store.access.Qualifier;
+import org.apache.derby.iapi.store.access.RowUtil;
+import org.apache.derby.iapi.store.access.ScanController;
+import org.apache.derby.iapi.store.access.SortController;
+import org.apache.derby.iapi.store.access.StaticCompiledOpenConglomInfo;
+import org.apache.derby.iapi.store.access.TransactionController;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.iapi.types.RowLocation;
+
+/**
+ * The inner side of a sort-merge join. The rows of the conglomerate are
+ * read in ascending order of the merge key column, either straight from
+ * an index that is ordered on that column, or from a sort of the
+ * qualifying rows that is built when the result set is opened. Each probe
+ * (the value of the first equijoin qualifier, taken from the current outer
+ * row) moves the scan forward to the group of rows whose merge key equals
+ * the probe value. Only that group is kept in memory, so successive outer
+ * rows with the same join value are joined to the same group.
+ * <p>
+ * The outer rows are expected to arrive in ascending order of the join
+ * value. If a probe is lower than the one before it, the scan starts over
+ * from the first row, so the results stay correct, if slow, when the
+ * ordering does not hold.
+ */
+class MergeScanResultSet extends HashScanResultSet
+{
+	/** Position of the merge key column in the full-width candidate row */
+	private int mergeColumn;
+
+	/** True if the conglomerate returns its rows in merge key order */
+	public boolean inputOrdered;
+
+	/** Positions in the full-width row of the columns that are sorted */
+	private int[] sortColumns;
+
+	// Source of the ordered rows
+	private ScanController scan;
+	private long sortId;
+	private boolean sortCreated;
+	private ScanController sortScan;
+	private ExecRow sortTemplateRow;
+	private boolean sourceExhausted;
+	private boolean scanSkipped;
+
+	// The group of rows that share the current merge key
+	private final ArrayList<DataValueDescriptor[]> group =
+		new ArrayList<DataValueDescriptor[]>();
+	private DataValueDescriptor groupKey;
+	private boolean groupMatches;
+	private int groupPosition;
+	private DataValueDescriptor[] lookaheadRow;
+	private DataValueDescriptor lastProbe;
+
+	// Run time statistics
+	public long rowsSorted;
+	public int numRewinds;
+
+    //
+    // class interface
+    //
+    MergeScanResultSet(long conglomId,
+		StaticCompiledOpenConglomInfo scoci, Activation activation,
+		int resultRowTemplate,
+		int resultSetNumber,
+		GeneratedMethod startKeyGetter, int startSearchOperator,
+		GeneratedMethod stopKeyGetter, int stopSearchOperator,
+		boolean sameStartStopPosition,
+		Qualifier[][] scanQualifiers,
+		Qualifier[][] nextQualifiers,
+		int mergeKeyItem,
+		boolean inputOrdered,
+		String tableName,
+		String userSuppliedOptimizerOverrides,
+		String indexName,
+		boolean isConstraint,
+		boolean forUpdate,
+		int colRefItem,
+		int lockMode,
+		boolean tableLocked,
+		int isolationLevel,
+		double optimizerEstimatedRowCount,
+		double optimizerEstimatedCost)
+			throws StandardException
+    {
+		super(conglomId, scoci, activation, resultRowTemplate, resultSetNumber,
+			  startKeyGetter, startSearchOperator,
+			  stopKeyGetter, stopSearchOperator,
+			  sameStartStopPosition, scanQualifiers, nextQualifiers,
+			  DEFAULT_INITIAL_CAPACITY, DEFAULT_LOADFACTOR, DEFAULT_MAX_CAPACITY,
+			  mergeKeyItem, tableName, userSuppliedOptimizerOverrides, indexName,
+			  isConstraint, forUpdate, colRefItem, lockMode, tableLocked,
+			  isolationLevel,
+			  true,					// skipNullKeyColumns
+			  false,				// partitionable
+			  optimizerEstimatedRowCount, optimizerEstimatedCost);
+
+		this.inputOrdered = inputOrdered;
+		mergeColumn = keyColumns[0];
+
+		/* Figure out which columns of the candidate row are fetched */
+		sortColumns = fetchedColumns();
+    }
+
+	//
+	// ResultSet interface (override methods from HashScanResultSet)
+	//
+
+	/**
+     * Open the scan, and sort its rows if the conglomerate does not return
+	 * them in merge key order.
+	 *
+	 * @exception StandardException thrown on failure to open
+     */
+	public void	openCore() throws StandardException
+	{
+		beginTime = getCurrentTimeMillis();
+		if (SanityManager.DEBUG)
+		    SanityManager.ASSERT( ! isOpen, "MergeScanResultSet already open");
+
+		initIsolationLevel();
+
+		if (startKeyGetter != null)
+		{
+			startPosition = (ExecIndexRow) startKeyGetter.invoke(activation);
+			if (sameStartStopPosition)
+			{
+				stopPosition = startPosition;
+			}
+		}
+		if (stopKeyGetter != null)
+		{
+			stopPosition = (ExecIndexRow) stopKeyGetter.invoke(activation);
+		}
+
+		// Check whether there are any comparisons with unordered nulls
+		// on either the start or stop position.  If there are, we can
+		// (and must) skip the scan, because no rows can qualify
+		scanSkipped = skipScan(startPosition, stopPosition);
+		if (scanSkipped)
+		{
+			sourceExhausted = true;
+		}
+		else
+		{
+			openSource();
+		}
+
+	    isOpen = true;
+
+		resetMergeVariables();
+		lastProbe = null;
+
+		numOpens++;
+		openTime += getElapsedMillis(beginTime);
+	}
+
+	/**
+	 * Reopen this ResultSet for the next outer row. The scan stays where
+	 * it is; the next probe moves it forward.
+	 *
+	 * @exception StandardException thrown on error
+	 */
+	public void	reopenCore() throws StandardException
+	{
+		if (SanityManager.DEBUG)
+		{
+			SanityManager.ASSERT(isOpen,
+					"MergeScanResultSet not open, cannot reopen");
+		}
+
+		beginTime = getCurrentTimeMillis();
+
+		resetMergeVariables();
+
+		numOpens++;
+		openTime += getElapsedMillis(beginTime);
+	}
+
+	private void resetMergeVariables() throws StandardException
+	{
+		firstNext = true;
+		groupMatches = false;
+		groupPosition = 0;
+
+		if (nextQualifiers != null)
+		{
+			clearOrderableCache(nextQualifiers);
+		}
+	}
+
+	/**
+     * Return the next row of the current group that qualifies.
+	 *
+	 * @exception StandardException thrown on failure to get next row
+	 */
+	public ExecRow getNextRowCore() throws StandardException
+	{
+		if( isXplainOnlyMode() )
+			return null;
+
+	    ExecRow result = null;
+
+		beginTime = getCurrentTimeMillis();
+	    if ( isOpen )
+	    {
+			if (firstNext)
+			{
+				firstNext = false;
+
+				DataValueDescriptor probe = nextQualifiers[0][0].getOrderable();
+				if (probe != null && ! probe.isNull() && ! scanSkipped)
+				{
+					positionGroup(probe);
+				}
+			}
+
+			while (groupMatches && groupPosition < group.size())
+			{
+				DataValueDescriptor[] columns = group.get(groupPosition++);
+
+				/* The merge key matched, the rest of the equijoin and any
+				 * OR clauses still have to be evaluated.
+				 */
+				if (RowUtil.qualifyRow(columns, nextQualifiers))
+				{
+					setCompatRow(compactRow, columns);
+
+					rowsSeen++;
+
+					result = compactRow;
+					break;
+				}
+			}
+		}
+
+		setCurrentRow(result);
+
+		nextTime += getElapsedMillis(beginTime);
+	    return result;
+	}
+
+	/**
+	 * If the result set has been opened, close the scan and drop the sort.
+ 	 *
+	 * @exception StandardException thrown on error
+	 */
+	public void	close() throws StandardException
+	{
+		if ( isOpen )
+		{
+			if (runTimeStatisticsOn)
+			{
+				startPositionString = printStartPosition();
+				stopPositionString = printStopPosition();
+			}
+
+			closeSource();
+			group.clear();
+			groupKey = null;
+			lookaheadRow = null;
+			lastProbe = null;
+		}
+
+		super.close();
+	}
+
+	//
+	// CursorResultSet interface
+	//
+
+	/**
+	 * This result set has its row location from the last fetch done.
+	 *
+	 * @see org.apache.derby.iapi.sql.execute.CursorResultSet
+	 *
+	 * @return the row location of the current cursor row.
+	 */
+	public RowLocation getRowLocation() throws StandardException
+	{
+		if (! isOpen || currentRow == null) return null;
+
+		return (RowLocation) currentRow.getColumn(currentRow.nColumns());
+	}
+
+	//
+	// class implementation
+	//
+
+	/**
+	 * Move the scan to the group of rows whose merge key is the lowest one
+	 * that is not less than the probe value.
+	 *
+	 * @param probe	The join value of the current outer row
+	 *
+	 * @exception StandardException thrown on error
+	 */
+	private void positionGroup(DataValueDescriptor probe)
+		throws StandardException
+	{
+		if (lastProbe != null && probe.compare(lastProbe) < 0)
+		{
+			/* The outer rows are out of order, start over */
+			closeSource();
+			openSource();
+			group.clear();
+			groupKey = null;
+			lookaheadRow = null;
+			numRewinds++;
+		}
+		lastProbe = probe.cloneValue(false);
+
+		if (groupKey == null || groupKey.compare(probe) < 0)
+		{
+			group.clear();
+			groupKey = null;
+
+			DataValueDescriptor[] row = lookaheadRow;
+			lookaheadRow = null;
+			if (row == null)
+			{
+				row = fetchRow();
+			}
+
+			/* NULL keys sort high, so they end the scan */
+			while (row != null &&
+				   ! row[mergeColumn].isNull() &&
+				   row[mergeColumn].compare(probe) < 0)
+			{
+				row = fetchRow();
+			}
+
+			if (row == null || row[mergeColumn].isNull())
+			{
+				sourceExhausted = true;
+			}
+			else
+			{
+				groupKey = row[mergeColumn];
+				group.add(row);
+
+				while ((row = fetchRow()) != null &&
+					   ! row[mergeColumn].isNull() &&
+					   row[mergeColumn].compare(groupKey) == 0)
+				{
+					group.add(row);
+				}
+				lookaheadRow = row;
+			}
+		}
+
+		groupMatches = groupKey != null && groupKey.compare(probe) == 0;
+		groupPosition = 0;
+	}
+
+	/**
+	 * Get the next row of the source in merge key order. The row is a
+	 * full-width array that this result set owns.
+	 *
+	 * @return the row, or null if there are no more rows
+	 *
+	 * @exception StandardException thrown on error
+	 */
+	private DataValueDescriptor[] fetchRow() throws StandardException
+	{
+		if (sourceExhausted)
+		{
+			return null;
+		}
+
+		DataValueDescriptor[] row =
+			new DataValueDescriptor[candidate.nColumns()];
+
+		if (inputOrdered)
+		{
+			DataValueDescriptor[] fetched = candidate.getRowArray();
+			if (! scan.fetchNext(fetched))
+			{
+				sourceExhausted = true;
+				return null;
+			}
+
+			for (int i = 0; i < sortColumns.length; i++)
+			{
+				int column = sortColumns[i];
+				if (fetchRowLocations && column == fetched.length - 1)
+				{
+					RowLocation rl = scan.newRowLocationTemplate();
+					scan.fetchLocation(rl);
+					row[column] = rl;
+				}
+				else
+				{
+					row[column] = fetched[column].cloneValue(true);
+				}
+			}
+		}
+		else
+		{
+			/* The sort hands out new columns for every row */
+			DataValueDescriptor[] sorted =
+				sortTemplateRow.getNewNullRow().getRowArray();
+			if (! sortScan.fetchNext(sorted))
+			{
+				sourceExhausted = true;
+				return null;
+			}
+
+			for (int i = 0; i < sortColumns.length; i++)
+			{
+				row[sortColumns[i]] = sorted[i];
+			}
+		}
+
+		return row;
+	}
+
+	/**
+	 * Open the scan of the conglomerate. If the rows do not come out in
+	 * merge key order, read them all into a sort and open a scan of the
+	 * sorted rows instead.
+	 *
+	 * @exception StandardException thrown on error
+	 */
+	private void openSource() throws StandardException
+	{
+		TransactionController tc = activation.getTransactionController();
+
+		sourceExhausted = false;
+
+		scan = tc.openScan(
+			conglomId,
+			false,						// hold
+			(forUpdate ? TransactionController.OPENMODE_FORUPDATE : 0),
+			lockMode,
+			isolationLevel,
+			accessedCols,
+			startPosition == null ? null : startPosition.getRowArray(),
+			startSearchOperator,
+			scanQualifiers,
+			stopPosition == null ? null : stopPosition.getRowArray(),
+			stopSearchOperator);
+
+		if (inputOrdered)
+		{
+			return;
+		}
+
+		/* Sort the qualifying rows on the merge key */
+		if (sortTemplateRow == null)
+		{
+			sortTemplateRow = activation.getExecutionFactory().
+				getValueRow(sortColumns.length);
+			for (int i = 0; i < sortColumns.length; i++)
+			{
+				sortTemplateRow.setColumn(i + 1,
+					candidate.getColumn(sortColumns[i] + 1).getNewNull());
+			}
+		}
+
+		int sortKey = 0;
+		while (sortColumns[sortKey] != mergeColumn)
+		{
+			sortKey++;
+		}
+		ColumnOrdering[] order = { new IndexColumnOrder(sortKey) };
+
+		sortId = tc.createSort((Properties) null,
+							   sortTemplateRow.getRowArrayClone(),
+							   order,
+							   new BasicSortObserver(true, false,
+													 sortTemplateRow, true),
+							   false,		// not in order
+							   (long) optimizerEstimatedRowCount,
+							   -1);			// row size unknown
+		sortCreated = true;
+
+		SortController sorter = tc.openSort(sortId);
+		DataValueDescriptor[] fetched = candidate.getRowArray();
+		DataValueDescriptor[] sortRow =
+			new DataValueDescriptor[sortColumns.length];
+		RowLocation rl = fetchRowLocations ? scan.newRowLocationTemplate() : null;
+		try
+		{
+			while (scan.fetchNext(fetched))
+			{
+				/* Rows with a NULL key cannot join to anything */
+				if (fetched[mergeColumn].isNull())
+				{
+					continue;
+				}
+
+				for (int i = 0; i < sortColumns.length; i++)
+				{
+					if (fetchRowLocations && i == sortColumns.length - 1)
+					{
+						scan.fetchLocation(rl);
+						sortRow[i] = rl;
+					}
+					else
+					{
+						sortRow[i] = fetched[sortColumns[i]];
+					}
+				}
+
+				sorter.insert(sortRow);
+				rowsSorted++;
+			}
+		}
+		finally
+		{
+			sorter.completedInserts();
+		}
+
+		captureScanInfo();
+		scan.close();
+		scan = null;
+
+		sortScan = tc.openSortScan(sortId, keepAfterCommit);
+
+		/*
+		** Tell the activation about the number of qualifying rows, as a
+		** hash scan does when it builds its hash table.
+		*/
+		activation.informOfRowCount(this, rowsSorted);
+	}
+
+	/**
+	 * Close the scan of the conglomerate and drop the sort, if any.
+	 *
+	 * @exception StandardException thrown on error
+	 */
+	private void closeSource() throws StandardException
+	{
+		if (scan != null)
+		{
+			captureScanInfo();
+			scan.close();
+			scan = null;
+		}
+
+		if (sortScan != null)
+		{
+			sortScan.close();
+			sortScan = null;
+		}
+
+		if (sortCreated)
+		{
+			activation.getTransactionController().dropSort(sortId);
+			sortCreated = false;
+		}
+
+		sourceExhausted = true;
+	}
+
+	/**
+	 * Remember the properties of the conglomerate scan for the run time
+	 * statistics.
+	 */
+	private void captureScanInfo()
+	{
+		if (scanProperties == null)
+		{
+			scanProperties = new Properties();
+		}
+
+		try
+		{
+			scan.getScanInfo().getAllScanInfo(scanProperties);
+		}
+		catch (StandardException se)
+		{
+			// ignore
+		}
+	}
+}
@@ -89,7 +89,7 @@ class NestedLoopLeftOuterJoinResultSet extends NestedLoopJoinResultSet
 			 * and open new scan with new "parameters".  openRight will
 	 		 * reopen the scan.
 			 */
-			leftRow = leftResultSet.getNextRowCore();
+			leftRow = getNextLeftRow();
 			if (leftRow == null)
 			{
 				closeRight();
@@ -131,7 +131,7 @@ class NestedLoopLeftOuterJoinResultSet extends NestedLoopJoinResultSet
 				 * will reopen the scan.
 				 */
 				matchRight = false;
-				leftRow = leftResultSet.getNextRowCore();
+				leftRow = getNextLeftRow();
 				if (leftRow == null)
 				{
 					closeRight();
@@ -0,0 +1,522 @@
+/*
+
+   Derby - Class org.apache.derby.impl.sql.execute.ParallelScan
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+
+package org.apache.derby.impl.sql.execute;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayDeque;
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.reference.SQLState;
+import org.apache.derby.iapi.services.context.ContextManager;
+import org.apache.derby.iapi.services.context.ContextService;
+import org.apache.derby.iapi.services.io.FormatableBitSet;
+import org.apache.derby.iapi.services.monitor.ModuleFactory;
+import org.apache.derby.iapi.services.monitor.Monitor;
+import org.apache.derby.iapi.sql.conn.StatementContext;
+import org.apache.derby.iapi.sql.execute.ExecRow;
+import org.apache.derby.iapi.store.access.GroupFetchScanController;
+import org.apache.derby.iapi.store.access.Qualifier;
+import org.apache.derby.iapi.store.access.ScanController;
+import org.apache.derby.iapi.store.access.StaticCompiledOpenConglomInfo;
+import org.apache.derby.iapi.store.access.TransactionController;
+import org.apache.derby.iapi.store.raw.ContainerHandle;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.iapi.util.InterruptStatus;
+
+/**
+ * Worker threads which read the rows of a heap in {@link ColumnBatch}es,
+ * on behalf of a {@link BulkTableScanResultSet}.
+ * <p>
+ * The workers claim ranges of pages of the heap, a few at a time, until
+ * there are none left, and each reads its ranges with its own scan. Every
+ * worker has its own context manager and a nested read only transaction,
+ * which shares the lock compatibility space of the user transaction, so
+ * its locks never conflict with those of the user transaction and are
+ * released when the worker is done.
+ * <p>
+ * The batches go to the {@link BatchConsumer} of the worker, which
+ * aggregates them on the worker thread and hands its results over to the
+ * user thread. Qualifiers are evaluated once, on the user thread, before
+ * the workers start; each worker compares the rows with its own copies of
+ * the values.
+ * <p>
+ * If a worker fails, the error is rethrown on the user thread when it
+ * takes the next result.
+ * <p>
+ * MT - the results handed over, the number of running workers, the first
+ * error and the stopped flag are protected by synchronizing on this
+ * object. Everything else is set up on the user thread before the workers
+ * start, and is only read by them.
+ */
+final class ParallelScan implements Runnable
+{
+	/** The number of pages a worker claims at a time */
+	private static final int PAGES_PER_CLAIM = 32;
+
+	/** The result set the scan reads the rows of */
+	private final BulkTableScanResultSet owner;
+
+	/** The user transaction */
+	private final TransactionController tc;
+
+	private final ContextService contextService;
+	private final StatementContext statementContext;
+
+	private final long conglomId;
+	private final StaticCompiledOpenConglomInfo scoci;
+	private final int lockMode;
+	private final int isolationLevel;
+	private final FormatableBitSet accessedCols;
+	private final int[] batchColumns;
+	private final int[] batchPositions;
+
+	private final Worker[] workers;
+	private final Thread[] threads;
+	private int nextWorker;
+
+	/** The next page to claim */
+	private long nextPage = ContainerHandle.FIRST_PAGE_NUMBER;
+
+	/** Results handed over and not taken yet, oldest first */
+	private final ArrayDeque<ExecRow> handedOver = new ArrayDeque<ExecRow>();
+	private final int maxHandedOver;
+
+	private int running;
+	private Throwable error;
+	private boolean stopped;
+	private long rowsRead;
+	private boolean reported;
+
+	/**
+	 * Set up the workers of a scan, start them with start(). Called on the
+	 * user thread once the scan of the owner is open.
+	 *
+	 * @param owner the result set the scan reads the rows of
+	 * @param consumers a consumer for each worker
+	 * @param kinds the kinds of the columns of the batches
+	 * @param batchColumns the 1-based columns of the batches to fill
+	 * @param batchPositions the 0-based position of each column in the rows
+	 *		of the heap
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	ParallelScan(BulkTableScanResultSet owner,
+				 BatchConsumer[] consumers,
+				 int[] kinds,
+				 int[] batchColumns,
+				 int[] batchPositions)
+		throws StandardException
+	{
+		this.owner = owner;
+		this.tc = owner.activation.getTransactionController();
+		this.contextService = getContextService();
+		this.statementContext =
+			owner.getLanguageConnectionContext().getStatementContext();
+		this.conglomId = owner.conglomId;
+		this.scoci = owner.scoci;
+		this.lockMode = owner.lockMode;
+		this.isolationLevel = owner.isolationLevel;
+		this.accessedCols = owner.accessedCols;
+		this.batchColumns = batchColumns;
+		this.batchPositions = batchPositions;
+
+		workers = new Worker[consumers.length];
+		for (int i = 0; i < workers.length; i++)
+		{
+			workers[i] = new Worker(consumers[i],
+									copyQualifiers(owner.qualifiers),
+									owner.candidate.getRowArrayClone(),
+									new ColumnBatch(kinds));
+		}
+		threads = new Thread[workers.length];
+		maxHandedOver = 4 * workers.length;
+	}
+
+	/**
+	 * Copy qualifiers, with their values evaluated and cloned, so that a
+	 * worker can use them without the activation.
+	 */
+	private static Qualifier[][] copyQualifiers(Qualifier[][] qualifiers)
+		throws StandardException
+	{
+		if (qualifiers == null)
+		{
+			return null;
+		}
+
+		Qualifier[][] copy = new Qualifier[qualifiers.length][];
+		for (int term = 0; term < qualifiers.length; term++)
+		{
+			copy[term] = new Qualifier[qualifiers[term].length];
+			for (int i = 0; i < qualifiers[term].length; i++)
+			{
+				Qualifier q = qualifiers[term][i];
+				GenericScanQualifier sq = new GenericScanQualifier();
+				sq.setQualifier(q.getColumnId(),
+								q.getOrderable().cloneValue(false),
+								q.getOperator(),
+								q.negateCompareResult(),
+								q.getOrderedNulls(),
+								q.getUnknownRV());
+				copy[term][i] = sq;
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Start the worker threads.
+	 */
+	void start()
+	{
+		running = threads.length;
+		for (int i = 0; i < threads.length; i++)
+		{
+			threads[i] = getMonitor().getDaemonThread(
+				this, "parallel-scan-" + i, false);
+			threads[i].start();
+		}
+	}
+
+	/** Get the number of worker threads. */
+	int getThreadCount()
+	{
+		return threads.length;
+	}
+
+	/**
+	 * Hand a result over to the user thread. Called by the consumers on
+	 * the worker threads. Waits while the user thread is behind.
+	 *
+	 * @param row the result, which the worker must not touch again
+	 *
+	 * @return false if the scan has been stopped, and the worker should
+	 *		stop too
+	 */
+	synchronized boolean handOver(ExecRow row)
+	{
+		while (handedOver.size() >= maxHandedOver && !stopped)
+		{
+			try
+			{
+				wait();
+			}
+			catch (InterruptedException ie)
+			{
+				InterruptStatus.setInterrupted();
+			}
+		}
+
+		if (stopped)
+			return false;
+
+		handedOver.addLast(row);
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Wait for the next result handed over by a worker, and take it.
+	 *
+	 * @return the oldest result not taken yet, or null once all the workers
+	 *		are done and all their results have been taken
+	 *
+	 * @exception StandardException the error of a worker
+	 */
+	synchronized ExecRow takeHandedOver() throws StandardException
+	{
+		while (handedOver.isEmpty() && running > 0 && error == null)
+		{
+			try
+			{
+				wait();
+			}
+			catch (InterruptedException ie)
+			{
+				InterruptStatus.setInterrupted();
+			}
+		}
+
+		if (error != null)
+		{
+			if (error instanceof StandardException)
+				throw (StandardException) error;
+			throw StandardException.plainWrapException(error);
+		}
+
+		ExecRow row = handedOver.pollFirst();
+		if (row != null)
+		{
+			notifyAll();
+		}
+		else
+		{
+			// every row of the heap has been read
+			report();
+			owner.parallelScanComplete();
+		}
+		return row;
+	}
+
+	/**
+	 * Stop the worker threads and wait for them to finish. The results not
+	 * taken are dropped. Called on the user thread, also after the workers
+	 * are done.
+	 */
+	void stop()
+	{
+		synchronized (this)
+		{
+			stopped = true;
+			handedOver.clear();
+			notifyAll();
+		}
+
+		for (int i = 0; i < threads.length; i++)
+		{
+			if (threads[i] == null)
+				continue;
+			try
+			{
+				threads[i].join();
+			}
+			catch (InterruptedException ie)
+			{
+				InterruptStatus.setInterrupted();
+			}
+		}
+
+		report();
+	}
+
+	/**
+	 * Report the number of rows the workers read to the owner, once.
+	 */
+	private synchronized void report()
+	{
+		if (!reported)
+		{
+			reported = true;
+			owner.parallelScanDone(rowsRead);
+		}
+	}
+
+	private synchronized boolean isStopped()
+	{
+		return stopped;
+	}
+
+	/**
+	 * Claim the next range of pages.
+	 *
+	 * @return the first page of the range
+	 */
+	private synchronized long claimPages()
+	{
+		long first = nextPage;
+		nextPage += PAGES_PER_CLAIM;
+		return first;
+	}
+
+	/**
+	 * A worker thread. Reads ranges of pages until there are none left,
+	 * in a transaction of its own.
+	 */
+	public void run()
+	{
+		Worker worker;
+		synchronized (this)
+		{
+			worker = workers[nextWorker++];
+		}
+
+		ContextManager cm = contextService.newContextManager();
+		contextService.setCurrentContextManager(cm);
+
+		TransactionController wtc = null;
+		Throwable failure = null;
+		try
+		{
+			wtc = tc.startNestedReadOnlyUserTransaction(cm);
+			worker.scan(wtc);
+			wtc.commit();
+		}
+		catch (Throwable t)
+		{
+			failure = t;
+		}
+		finally
+		{
+			// aborts the transaction if it was not committed, which
+			// releases its locks
+			if (wtc != null)
+			{
+				try
+				{
+					wtc.destroy();
+				}
+				catch (Throwable t)
+				{
+					if (failure == null)
+						failure = t;
+				}
+			}
+			cm.cleanupOnError(StandardException.normalClose(), false);
+			contextService.resetCurrentContextManager(cm);
+		}
+
+		synchronized (this)
+		{
+			running--;
+			rowsRead += worker.rowsRead;
+			if (failure != null && error == null)
+				error = failure;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * The state of one worker.
+	 */
+	private final class Worker
+	{
+		private final BatchConsumer consumer;
+		private final Qualifier[][] qualifiers;
+		private final DataValueDescriptor[][] rows;
+		private final ColumnBatch batch;
+		long rowsRead;
+
+		Worker(BatchConsumer consumer,
+			   Qualifier[][] qualifiers,
+			   DataValueDescriptor[] templateRow,
+			   ColumnBatch batch)
+		{
+			this.consumer = consumer;
+			this.qualifiers = qualifiers;
+			this.rows = new DataValueDescriptor[ColumnBatch.CAPACITY][];
+			this.batch = batch;
+
+			// the store clones the first row for the others
+			rows[0] = templateRow;
+		}
+
+		/**
+		 * Read ranges of pages and hand the batches to the consumer.
+		 */
+		void scan(TransactionController wtc) throws StandardException
+		{
+			ScanController scan = wtc.openCompiledScan(
+				false,
+				TransactionController.OPENMODE_USE_ONCE,
+				lockMode,
+				isolationLevel,
+				accessedCols,
+				(DataValueDescriptor[]) null,
+				0,
+				qualifiers,
+				(DataValueDescriptor[]) null,
+				0,
+				scoci,
+				wtc.getDynamicCompiledConglomInfo(conglomId));
+
+			try
+			{
+				for (;;)
+				{
+					long first = claimPages();
+					if (!scan.reopenScanByPageRange(
+							first, first + PAGES_PER_CLAIM - 1))
+					{
+						break;
+					}
+
+					int count;
+					while ((count = ((GroupFetchScanController) scan).
+								fetchNextGroup(rows, null)) > 0)
+					{
+						if (isStopped())
+							return;
+						if (statementContext != null &&
+							statementContext.isCancelled())
+						{
+							throw StandardException.newException(
+								SQLState.LANG_STATEMENT_CANCELLED_OR_TIMED_OUT);
+						}
+
+						for (int i = 0; i < batchColumns.length; i++)
+						{
+							batch.loadColumn(batchColumns[i], rows,
+											 batchPositions[i], null, count);
+						}
+						batch.setSize(count);
+						rowsRead += count;
+						consumer.consume(batch, ParallelScan.this);
+					}
+				}
+
+				if (!isStopped())
+					consumer.finish(ParallelScan.this);
+			}
+			finally
+			{
+				scan.close();
+			}
+		}
+	}
+
+    /**
+     * Privileged lookup of the ContextService. Must be private so that user code
+     * can't call this entry point.
+     */
+    private  static  ContextService    getContextService()
+    {
+        return AccessController.doPrivileged
+            (
+             new PrivilegedAction<ContextService>()
+             {
+                 public ContextService run()
+                 {
+                     return ContextService.getFactory();
+                 }
+             }
+             );
+    }
+
+    /**
+     * Privileged Monitor lookup. Must be private so that user code
+     * can't call this entry point.
+     */
+    private  static  ModuleFactory  getMonitor()
+    {
+        return AccessController.doPrivileged
+            (
+             new PrivilegedAction<ModuleFactory>()
+             {
+                 public ModuleFactory run()
+                 {
+                     return Monitor.getMonitor();
+                 }
+             }
+             );
+    }
+}
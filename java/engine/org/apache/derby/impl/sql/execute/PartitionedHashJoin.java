@@ -0,0 +1,396 @@
+/*
+
+   Derby - Class org.apache.derby.impl.sql.execute.PartitionedHashJoin
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.sql.execute;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.services.io.DynamicByteArrayOutputStream;
+import org.apache.derby.iapi.services.io.FormatIdInputStream;
+import org.apache.derby.iapi.services.io.FormatIdOutputStream;
+import org.apache.derby.iapi.sql.Activation;
+import org.apache.derby.iapi.sql.execute.CursorResultSet;
+import org.apache.derby.iapi.sql.execute.ExecRow;
+import org.apache.derby.iapi.sql.execute.NoPutResultSet;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.iapi.types.SQLBlob;
+
+/**
+ * The outer side of a hybrid hash join. When the hash table of the inner
+ * table does not fit in memory, the {@link HashScanResultSet} builds it in
+ * partitions and writes some of them to disk. The outer rows whose join
+ * key falls into one of those partitions cannot be probed right away;
+ * they are written to a matching partition of their own instead. Once the
+ * outer rows run out, each spilled inner partition in turn is loaded into
+ * the hash table, and the outer rows held back for it are joined then.
+ * Every row is written to disk at most once.
+ * <p>
+ * The join restriction and the probe values of the hash scan read the
+ * outer columns from the current rows of the result sets on the outer
+ * side, not only from the row that the outer side returns. So an outer row
+ * is held back together with the current rows of all the result sets
+ * below the left side of the join, and those are put back in the
+ * activation when the row is joined. The result sets of the left side are
+ * numbered after the join and before any result set of the right side.
+ */
+final class PartitionedHashJoin
+{
+	// How a column of a held back row is written
+	private static final byte COLUMN_MISSING = 0;
+	private static final byte COLUMN_NULL = 1;
+	private static final byte COLUMN_VALUE = 2;
+
+	private final JoinResultSet join;
+	private final Activation activation;
+
+	/** The scan that builds the hash table, or null if it cannot spill */
+	private final HashScanResultSet hashScan;
+
+	/** The result set numbers of the left side */
+	private final int firstLeftNumber;
+	private final int lastLeftNumber;
+
+	// Templates for the rows that are read back from disk
+	private ExecRow leftTemplate;
+	private final ExecRow[] currentRowTemplates;
+
+	// The outer rows that were held back, by partition
+	private TemporaryRowHolderImpl[] outerPartitions;
+	private int replayPartition;
+	private CursorResultSet replayRows;
+
+	PartitionedHashJoin(JoinResultSet join)
+	{
+		this.join = join;
+		this.activation = join.getActivation();
+
+		/* Look for the hash scan below the right side */
+		NoPutResultSet right = join.rightResultSet;
+		int firstRightNumber = right.resultSetNumber();
+		while (right instanceof ProjectRestrictResultSet ||
+			   right instanceof IndexRowToBaseRowResultSet)
+		{
+			right = (right instanceof ProjectRestrictResultSet) ?
+				((ProjectRestrictResultSet) right).source :
+				((IndexRowToBaseRowResultSet) right).source;
+			firstRightNumber =
+				Math.min(firstRightNumber, right.resultSetNumber());
+		}
+
+		if (right instanceof HashScanResultSet &&
+			! (right instanceof MergeScanResultSet) &&
+			! (right instanceof DistinctScanResultSet))
+		{
+			hashScan = (HashScanResultSet) right;
+			hashScan.enablePartitioning();
+		}
+		else
+		{
+			hashScan = null;
+		}
+
+		firstLeftNumber = join.resultSetNumber() + 1;
+		lastLeftNumber = firstRightNumber - 1;
+		currentRowTemplates =
+			new ExecRow[Math.max(0, lastLeftNumber - firstLeftNumber + 1)];
+	}
+
+	/**
+	 * Get the next outer row to join. The outer rows whose inner partition
+	 * is on disk are held back, and returned after the last outer row, one
+	 * partition at a time.
+	 *
+	 * @return the next outer row, or null if there are no more
+	 *
+	 * @exception StandardException		Thrown on error
+	 */
+	ExecRow getNextLeftRow() throws StandardException
+	{
+		if (hashScan == null)
+		{
+			return join.leftResultSet.getNextRowCore();
+		}
+
+		while (true)
+		{
+			if (outerPartitions == null || replayPartition < 0)
+			{
+				ExecRow leftRow = join.leftResultSet.getNextRowCore();
+				if (leftRow == null)
+				{
+					if (outerPartitions == null)
+					{
+						return null;
+					}
+					replayPartition = 0;
+					continue;
+				}
+
+				/* The hash table is built when the right side is opened */
+				if (! join.isRightOpen)
+				{
+					join.openRight();
+				}
+
+				int partition = hashScan.getProbePartition();
+				if (partition < 0)
+				{
+					return leftRow;
+				}
+
+				holdBack(partition, leftRow);
+				continue;
+			}
+
+			if (replayRows != null)
+			{
+				ExecRow spilledRow = replayRows.getNextRow();
+				if (spilledRow != null)
+				{
+					return restore(spilledRow.getColumn(1).getBytes());
+				}
+
+				replayRows.close();
+				replayRows = null;
+				outerPartitions[replayPartition].close();
+				outerPartitions[replayPartition] = null;
+				replayPartition++;
+			}
+
+			while (replayPartition < outerPartitions.length &&
+				   outerPartitions[replayPartition] == null)
+			{
+				replayPartition++;
+			}
+			if (replayPartition >= outerPartitions.length)
+			{
+				return null;
+			}
+
+			hashScan.loadPartition(replayPartition);
+			replayRows = outerPartitions[replayPartition].getResultSet();
+			replayRows.open();
+		}
+	}
+
+	/**
+	 * Drop the outer rows that were held back. If the hash table has been
+	 * built in partitions, close the right side, so that it is built over
+	 * again the next time the join is opened.
+	 *
+	 * @exception StandardException		Thrown on error
+	 */
+	void reset() throws StandardException
+	{
+		if (replayRows != null)
+		{
+			replayRows.close();
+			replayRows = null;
+		}
+
+		if (outerPartitions != null)
+		{
+			for (int i = 0; i < outerPartitions.length; i++)
+			{
+				if (outerPartitions[i] != null)
+				{
+					outerPartitions[i].close();
+				}
+			}
+			outerPartitions = null;
+		}
+		replayPartition = -1;
+
+		if (hashScan != null && join.isRightOpen && hashScan.isPartitioned())
+		{
+			join.closeRight();
+		}
+	}
+
+	/**
+	 * Write an outer row to the partition of its join key, together with
+	 * the current rows of the left side.
+	 */
+	private void holdBack(int partition, ExecRow leftRow)
+		throws StandardException
+	{
+		if (outerPartitions == null)
+		{
+			outerPartitions =
+				new TemporaryRowHolderImpl[hashScan.getNumPartitions()];
+			replayPartition = -1;
+		}
+		if (outerPartitions[partition] == null)
+		{
+			outerPartitions[partition] = new TemporaryRowHolderImpl(
+				activation, null, null, 1, false, false);
+		}
+
+		DynamicByteArrayOutputStream bytes = new DynamicByteArrayOutputStream();
+		FormatIdOutputStream out = new FormatIdOutputStream(bytes);
+		try
+		{
+			if (leftTemplate == null)
+			{
+				leftTemplate = leftRow.getNewNullRow();
+			}
+			writeRow(out, leftRow, leftTemplate);
+
+			for (int i = 0; i < currentRowTemplates.length; i++)
+			{
+				ExecRow row = (ExecRow)
+					activation.getCurrentRow(firstLeftNumber + i);
+				out.writeBoolean(row != null);
+				if (row != null)
+				{
+					if (currentRowTemplates[i] == null)
+					{
+						currentRowTemplates[i] = row.getNewNullRow();
+					}
+					writeRow(out, row, currentRowTemplates[i]);
+				}
+			}
+			out.flush();
+		}
+		catch (IOException ioe)
+		{
+			throw StandardException.plainWrapException(ioe);
+		}
+
+		byte[] written = new byte[bytes.getUsed()];
+		System.arraycopy(bytes.getByteArray(), 0, written, 0, written.length);
+
+		ExecRow spilledRow = activation.getExecutionFactory().getValueRow(1);
+		spilledRow.setColumn(1, new SQLBlob(written));
+		outerPartitions[partition].insert(spilledRow);
+	}
+
+	/**
+	 * Put the current rows of the left side of a held back outer row
+	 * back in the activation.
+	 *
+	 * @return the outer row
+	 */
+	private ExecRow restore(byte[] bytes) throws StandardException
+	{
+		FormatIdInputStream in =
+			new FormatIdInputStream(new ByteArrayInputStream(bytes));
+		try
+		{
+			ExecRow leftRow = readRow(in, leftTemplate);
+
+			for (int i = 0; i < currentRowTemplates.length; i++)
+			{
+				if (in.readBoolean())
+				{
+					activation.setCurrentRow(
+						readRow(in, currentRowTemplates[i]),
+						firstLeftNumber + i);
+				}
+				else
+				{
+					activation.clearCurrentRow(firstLeftNumber + i);
+				}
+			}
+
+			return leftRow;
+		}
+		catch (IOException ioe)
+		{
+			throw StandardException.plainWrapException(ioe);
+		}
+		catch (ClassNotFoundException cnfe)
+		{
+			throw StandardException.plainWrapException(cnfe);
+		}
+	}
+
+	/**
+	 * Write the columns of a row. A column that the template does not have
+	 * a type for yet lends it its own.
+	 */
+	private static void writeRow(FormatIdOutputStream out,
+								 ExecRow row,
+								 ExecRow template)
+		throws StandardException, IOException
+	{
+		DataValueDescriptor[] columns = row.getRowArray();
+		out.writeInt(columns.length);
+		for (int i = 0; i < columns.length; i++)
+		{
+			DataValueDescriptor column = columns[i];
+			if (column == null)
+			{
+				out.writeByte(COLUMN_MISSING);
+				continue;
+			}
+
+			if (template.getColumn(i + 1) == null)
+			{
+				template.setColumn(i + 1, column.getNewNull());
+			}
+
+			if (column.isNull())
+			{
+				out.writeByte(COLUMN_NULL);
+			}
+			else
+			{
+				if (column.hasStream())
+				{
+					column = column.cloneValue(true);
+				}
+				out.writeByte(COLUMN_VALUE);
+				column.writeExternal(out);
+			}
+		}
+	}
+
+	/**
+	 * Read the columns of a row that was written by writeRow().
+	 */
+	private static ExecRow readRow(FormatIdInputStream in, ExecRow template)
+		throws StandardException, IOException, ClassNotFoundException
+	{
+		ExecRow row = template.getNewNullRow();
+		int numColumns = in.readInt();
+		for (int i = 1; i <= numColumns; i++)
+		{
+			switch (in.readByte())
+			{
+				case COLUMN_MISSING:
+					row.setColumn(i, null);
+					break;
+
+				case COLUMN_VALUE:
+					row.getColumn(i).readExternal(in);
+					break;
+
+				default:
+					// A NULL is what the template row starts out with
+					break;
+			}
+		}
+		return row;
+	}
+}
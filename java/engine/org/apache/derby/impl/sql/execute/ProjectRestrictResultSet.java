@@ -44,7 +44,7 @@ import org.apache.derby.shared.common.sanity.SanityManager;
  *
  */
 class ProjectRestrictResultSet extends NoPutResultSetImpl
-	implements CursorResultSet 
+	implements CursorResultSet, BatchResultSet
 {
 	/* Run time statistics variables */
 	public long restrictionTime;
@@ -76,6 +76,9 @@ class ProjectRestrictResultSet extends NoPutResultSetImpl
     private final UUID validatingBaseTableUUID;
     Enumeration<Object> rowLocations;
 
+	// Set if the rows are returned in batches
+	private ColumnBatch batch;
+
     // class interface
     //
     ProjectRestrictResultSet(NoPutResultSet s,
@@ -236,6 +239,129 @@ class ProjectRestrictResultSet extends NoPutResultSetImpl
 		openTime += getElapsedMillis(beginTime);
 	}
 
+	/**
+	 * Return the rows in batches if there is no restriction and the
+	 * columns are copied from the rows of a source that can return them in
+	 * batches. Columns computed by the projection are left out of the
+	 * batches.
+	 *
+	 * @see BatchResultSet#enableBatches
+	 */
+	public boolean enableBatches(int[] columns) throws StandardException
+	{
+		if (restriction != null || validatingCheckConstraint ||
+			!(source instanceof BatchResultSet))
+		{
+			return false;
+		}
+
+		int[] sourceColumns = new int[columns.length];
+		for (int i = 0; i < columns.length; i++)
+		{
+			int sourceColumn = projectMapping[columns[i] - 1];
+			if (sourceColumn == -1)
+			{
+				return false;
+			}
+			sourceColumns[i] = sourceColumn;
+		}
+
+		if (!((BatchResultSet) source).enableBatches(sourceColumns))
+		{
+			return false;
+		}
+
+		batch = new ColumnBatch(projectMapping.length);
+		return true;
+	}
+
+	/**
+	 * Get the next batch from the source, with its columns in the order
+	 * of the rows of this result set.
+	 *
+	 * @see BatchResultSet#getNextBatch
+	 */
+	public ColumnBatch getNextBatch() throws StandardException
+	{
+		/* Return null if open was short circuited by false constant expression */
+		if (isXplainOnlyMode() || shortCircuitOpen)
+		{
+			return null;
+		}
+
+		ColumnBatch sourceBatch = ((BatchResultSet) source).getNextBatch();
+		if (sourceBatch == null)
+		{
+			return null;
+		}
+
+		batch.project(sourceBatch, projectMapping);
+		rowsSeen += batch.size();
+		return batch;
+	}
+
+	/**
+	 * @see BatchResultSet#getParallelism
+	 */
+	public int getParallelism() throws StandardException
+	{
+		if (isXplainOnlyMode() || shortCircuitOpen)
+		{
+			return 0;
+		}
+		return ((BatchResultSet) source).getParallelism();
+	}
+
+	/**
+	 * Start the workers of the source, with consumers that project the
+	 * batches of the source before handing them on.
+	 *
+	 * @see BatchResultSet#startParallel
+	 */
+	public ParallelScan startParallel(BatchConsumer[] consumers)
+		throws StandardException
+	{
+		BatchConsumer[] projecting = new BatchConsumer[consumers.length];
+		for (int i = 0; i < consumers.length; i++)
+		{
+			projecting[i] = new ProjectingConsumer(consumers[i]);
+		}
+		return ((BatchResultSet) source).startParallel(projecting);
+	}
+
+	/**
+	 * Projects the batches of a worker of the source, like getNextBatch().
+	 */
+	private final class ProjectingConsumer implements BatchConsumer
+	{
+		private final BatchConsumer target;
+		private final ColumnBatch projected =
+			new ColumnBatch(projectMapping.length);
+		private int rows;
+
+		ProjectingConsumer(BatchConsumer target)
+		{
+			this.target = target;
+		}
+
+		public void consume(ColumnBatch sourceBatch, ParallelScan scan)
+			throws StandardException
+		{
+			projected.project(sourceBatch, projectMapping);
+			rows += projected.size();
+			target.consume(projected, scan);
+		}
+
+		public void finish(ParallelScan scan) throws StandardException
+		{
+			synchronized (ProjectRestrictResultSet.this)
+			{
+				rowsSeen += rows;
+			}
+			target.finish(scan);
+		}
+	}
+
 	/**
      * Return the requested values computed
      * from the next row (if any) for which
@@ -91,6 +91,9 @@ import org.apache.derby.impl.sql.execute.rts.RealInsertVTIResultSetStatistics;
 import org.apache.derby.impl.sql.execute.rts.RealJoinResultSetStatistics;
 import org.apache.derby.impl.sql.execute.rts.RealLastIndexKeyScanStatistics;
 import org.apache.derby.impl.sql.execute.rts.RealMaterializedResultSetStatistics;
+import org.apache.derby.impl.sql.execute.rts.RealMergeJoinStatistics;
+import org.apache.derby.impl.sql.execute.rts.RealMergeLeftOuterJoinStatistics;
+import org.apache.derby.impl.sql.execute.rts.RealMergeScanStatistics;
 import org.apache.derby.impl.sql.execute.rts.RealNestedLoopJoinStatistics;
 import org.apache.derby.impl.sql.execute.rts.RealNestedLoopLeftOuterJoinStatistics;
 import org.apache.derby.impl.sql.execute.rts.RealNormalizeResultSetStatistics;
@@ -627,6 +630,8 @@ public class RealResultSetStatisticsFactory
                     isolationLevel,
                     lockRequestString,
                     tsrs.rowsPerRead,
+                    (tsrs instanceof BulkTableScanResultSet) ?
+                        ((BulkTableScanResultSet) tsrs).parallelThreads : 0,
                     tsrs.coarserLock,
                     tsrs.optimizerEstimatedRowCount,
                     tsrs.optimizerEstimatedCost);
@@ -718,6 +723,33 @@ public class RealResultSetStatisticsFactory
 												hlojrs.rightResultSet),
 											hlojrs.emptyRightRowsReturned);
 		}
+		else if (rs instanceof MergeLeftOuterJoinResultSet)
+		{
+			MergeLeftOuterJoinResultSet mlojrs =
+				(MergeLeftOuterJoinResultSet) rs;
+
+			return new RealMergeLeftOuterJoinStatistics(
+											mlojrs.numOpens,
+											mlojrs.rowsSeen,
+											mlojrs.rowsFiltered,
+											mlojrs.constructorTime,
+											mlojrs.openTime,
+											mlojrs.nextTime,
+											mlojrs.closeTime,
+											mlojrs.resultSetNumber,
+											mlojrs.rowsSeenLeft,
+											mlojrs.rowsSeenRight,
+											mlojrs.rowsReturned,
+											mlojrs.restrictionTime,
+											mlojrs.optimizerEstimatedRowCount,
+											mlojrs.optimizerEstimatedCost,
+											mlojrs.userSuppliedOptimizerOverrides,
+											getResultSetStatistics(
+												mlojrs.leftResultSet),
+											getResultSetStatistics(
+												mlojrs.rightResultSet),
+											mlojrs.emptyRightRowsReturned);
+		}
 		else if (rs instanceof NestedLoopLeftOuterJoinResultSet)
 		{
 			NestedLoopLeftOuterJoinResultSet nllojrs =
@@ -772,6 +804,33 @@ public class RealResultSetStatisticsFactory
 												hjrs.rightResultSet)
 											);
 		}
+		else if (rs instanceof MergeJoinResultSet)
+		{
+			MergeJoinResultSet mjrs = (MergeJoinResultSet) rs;
+
+			return new RealMergeJoinStatistics(
+											mjrs.numOpens,
+											mjrs.rowsSeen,
+											mjrs.rowsFiltered,
+											mjrs.constructorTime,
+											mjrs.openTime,
+											mjrs.nextTime,
+											mjrs.closeTime,
+											mjrs.resultSetNumber,
+											mjrs.rowsSeenLeft,
+											mjrs.rowsSeenRight,
+											mjrs.rowsReturned,
+											mjrs.restrictionTime,
+											mjrs.oneRowRightSide,
+											mjrs.optimizerEstimatedRowCount,
+											mjrs.optimizerEstimatedCost,
+											mjrs.userSuppliedOptimizerOverrides,
+											getResultSetStatistics(
+												mjrs.leftResultSet),
+											getResultSetStatistics(
+												mjrs.rightResultSet)
+											);
+		}
 		else if (rs instanceof NestedLoopJoinResultSet)
 		{
 			NestedLoopJoinResultSet nljrs = (NestedLoopJoinResultSet) rs;
@@ -1105,9 +1164,41 @@ public class RealResultSetStatisticsFactory
 				}
 			}
 
-			// DistinctScanResultSet is simple sub-class of
-			// HashScanResultSet
-			if (rs instanceof DistinctScanResultSet)
+			// DistinctScanResultSet and MergeScanResultSet are simple
+			// sub-classes of HashScanResultSet
+			if (rs instanceof MergeScanResultSet)
+			{
+				MergeScanResultSet msrs = (MergeScanResultSet) rs;
+
+				return new RealMergeScanStatistics(
+											hsrs.numOpens,
+											hsrs.rowsSeen,
+											hsrs.rowsFiltered,
+											hsrs.constructorTime,
+											hsrs.openTime,
+											hsrs.nextTime,
+											hsrs.closeTime,
+											hsrs.resultSetNumber,
+											hsrs.tableName,
+											hsrs.indexName,
+											hsrs.isConstraint,
+											hsrs.keyColumns,
+											msrs.inputOrdered,
+											msrs.rowsSorted,
+											hsrs.printQualifiers(
+												hsrs.scanQualifiers),
+											hsrs.printQualifiers(
+												hsrs.nextQualifiers),
+											hsrs.getScanProperties(),
+											startPosition,
+											stopPosition,
+											isolationLevel,
+											lockString,
+											hsrs.optimizerEstimatedRowCount,
+											hsrs.optimizerEstimatedCost
+											);
+			}
+			else if (rs instanceof DistinctScanResultSet)
 			{
 				return new RealDistinctScanStatistics(
 											hsrs.numOpens,
@@ -1151,6 +1242,7 @@ public class RealResultSetStatisticsFactory
 											hsrs.indexName,
 											hsrs.isConstraint,
 											hsrs.hashtableSize,
+											hsrs.partitionsSpilled,
 											hsrs.keyColumns,
 											hsrs.printQualifiers(
 												hsrs.scanQualifiers),
@@ -1347,6 +1439,7 @@ public class RealResultSetStatisticsFactory
                     isolationLevel,
                     lockRequestString,
                     dsrs.rowsPerRead,
+                    0,
                     dsrs.coarserLock,
                     dsrs.optimizerEstimatedRowCount,
                     dsrs.optimizerEstimatedCost);
@@ -25,9 +25,11 @@ import org.apache.derby.iapi.error.StandardException;
 import org.apache.derby.shared.common.sanity.SanityManager;
 import org.apache.derby.iapi.sql.Activation;
 import org.apache.derby.iapi.sql.execute.CursorResultSet;
+import org.apache.derby.iapi.sql.execute.ExecAggregator;
 import org.apache.derby.iapi.sql.execute.ExecIndexRow;
 import org.apache.derby.iapi.sql.execute.ExecRow;
 import org.apache.derby.iapi.sql.execute.NoPutResultSet;
+import org.apache.derby.iapi.types.DataValueDescriptor;
 import org.apache.derby.iapi.types.RowLocation;
 
 /**
@@ -55,6 +57,9 @@ class ScalarAggregateResultSet extends GenericAggregateResultSet
 	// Remember whether or not a next() has been satisfied
 	private boolean nextSatisfied;
 
+	// Set if the source returns its rows in batches
+	private BatchAggregator[] batchAggregators;
+
     /**
 	 * Constructor
 	 *
@@ -90,6 +95,13 @@ class ScalarAggregateResultSet extends GenericAggregateResultSet
 		}
 		this.singleInputRow = singleInputRow;
 
+		// Read the rows in batches, unless only the first row is read
+		if (!singleInputRow && getClass() == ScalarAggregateResultSet.class)
+		{
+			batchAggregators = BatchAggregator.getBatchAggregators(
+				aggregates, source, getRowTemplate().nColumns(), new int[0]);
+		}
+
 		if (SanityManager.DEBUG)
 		{
 			SanityManager.DEBUG("AggregateTrace","execution time: "+ 
@@ -167,7 +179,18 @@ class ScalarAggregateResultSet extends GenericAggregateResultSet
 		//we are only looking at one aggregate
 		boolean minAgg = (singleInputRow && aggregates[0].getAggregatorInfo().aggregateName.equals("MIN"));
 		beginTime = getCurrentTimeMillis();
-	    if (isOpen)
+	    if (isOpen && batchAggregators != null)
+	    {
+			aggResult = accumulateBatches();
+
+			if (countOfRows == 0)
+			{
+				aggResult = finishAggregation(aggResult);
+				setCurrentRow(aggResult);
+				countOfRows++;
+			}
+	    }
+	    else if (isOpen)
 	    {
 			/*
 			** We are dealing with a scalar aggregate.
@@ -362,6 +385,168 @@ class ScalarAggregateResultSet extends GenericAggregateResultSet
 		return inputRow;
 	}
 
+	/**
+	 * Accumulate all the batches of the source into a clone of the
+	 * template row.
+	 *
+	 * @return the row with the aggregators, or null if there were no rows
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	private ExecIndexRow accumulateBatches() throws StandardException
+	{
+		BatchResultSet batchSource = (BatchResultSet) source;
+		int threads = batchSource.getParallelism();
+		if (threads > 0)
+		{
+			return accumulateInParallel(batchSource, threads);
+		}
+
+		ExecIndexRow aggResult = null;
+		ColumnBatch batch;
+
+		while ((batch = batchSource.getNextBatch()) != null)
+		{
+			int size = batch.size();
+			rowsInput += size;
+
+			if (aggResult == null)
+			{
+				aggResult = (ExecIndexRow) getRowTemplate().getClone();
+				for (int i = 0; i < batchAggregators.length; i++)
+				{
+					batchAggregators[i].start(aggResult);
+				}
+			}
+
+			for (int i = 0; i < batchAggregators.length; i++)
+			{
+				batchAggregators[i].accumulate(batch, 0, size);
+			}
+		}
+
+		if (aggResult != null)
+		{
+			for (int i = 0; i < batchAggregators.length; i++)
+			{
+				batchAggregators[i].finish();
+			}
+		}
+
+		return aggResult;
+	}
+
+	/**
+	 * Accumulate the batches of the source on worker threads, each into a
+	 * partial result of its own, and merge the partial results, the way
+	 * the sorter merges the partial results of a grouped aggregate.
+	 *
+	 * @return the row with the aggregators, or null if there were no rows
+	 *
+	 * @exception StandardException Thrown on error
+	 */
+	private ExecIndexRow accumulateInParallel(BatchResultSet batchSource,
+											  int threads)
+		throws StandardException
+	{
+		PartialAggregate[] partials = new PartialAggregate[threads];
+		for (int i = 0; i < threads; i++)
+		{
+			partials[i] = new PartialAggregate(
+				BatchAggregator.copy(batchAggregators),
+				(ExecIndexRow) getRowTemplate().getClone());
+		}
+
+		ExecIndexRow aggResult = null;
+		ParallelScan scan = batchSource.startParallel(partials);
+		try
+		{
+			ExecRow partial;
+			while ((partial = scan.takeHandedOver()) != null)
+			{
+				if (aggResult == null)
+				{
+					aggResult = (ExecIndexRow) partial;
+					continue;
+				}
+
+				for (int i = 0; i < aggregates.length; i++)
+				{
+					GenericAggregator ga = aggregates[i];
+					DataValueDescriptor column =
+						partial.getColumn(ga.aggregatorColumnId + 1);
+
+					// Merging does not carry over that NULLs were eliminated
+					if (((ExecAggregator) column.getObject()).
+							didEliminateNulls())
+					{
+						ga.accumulate((DataValueDescriptor) null,
+							aggResult.getColumn(ga.aggregatorColumnId + 1));
+					}
+					ga.merge(partial, aggResult);
+				}
+			}
+		}
+		finally
+		{
+			scan.stop();
+		}
+
+		for (int i = 0; i < threads; i++)
+		{
+			rowsInput += partials[i].rows;
+		}
+		return aggResult;
+	}
+
+	/**
+	 * Accumulates the batches of a worker thread into a partial result,
+	 * which it hands over once the worker has read its last batch.
+	 */
+	private static final class PartialAggregate implements BatchConsumer
+	{
+		private final BatchAggregator[] aggregators;
+		private final ExecIndexRow result;
+		private int rows;
+
+		PartialAggregate(BatchAggregator[] aggregators, ExecIndexRow result)
+		{
+			this.aggregators = aggregators;
+			this.result = result;
+		}
+
+		public void consume(ColumnBatch batch, ParallelScan scan)
+			throws StandardException
+		{
+			int size = batch.size();
+			if (rows == 0)
+			{
+				for (int i = 0; i < aggregators.length; i++)
+				{
+					aggregators[i].start(result);
+				}
+			}
+			rows += size;
+
+			for (int i = 0; i < aggregators.length; i++)
+			{
+				aggregators[i].accumulate(batch, 0, size);
+			}
+		}
+
+		public void finish(ParallelScan scan) throws StandardException
+		{
+			if (rows > 0)
+			{
+				for (int i = 0; i < aggregators.length; i++)
+				{
+					aggregators[i].finish();
+				}
+				scan.handOver(result);
+			}
+		}
+	}
+
 	/**
 	 * reopen a scan on the table. scan parameters are evaluated
 	 * at each open, so there is probably some way of altering
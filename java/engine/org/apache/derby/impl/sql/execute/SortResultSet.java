@@ -137,6 +137,10 @@ class SortResultSet extends NoPutResultSetImpl
 	// remember whether or not any sort was performed
 	private boolean sorted;
 
+	// Set if the duplicates are removed by hashing before the sort
+	private int hashCapacity;
+	private GroupingHashtable hashtable;
+
 	// RTS
 	public Properties sortProperties = new Properties();
 
@@ -154,6 +158,9 @@ class SortResultSet extends NoPutResultSetImpl
      * @param   ra              saved object that generates an empty row
 	 * @param	maxRowSize		approx row size, passed to sorter
 	 * @param	resultSetNumber	The resultSetNumber for this result set
+	 * @param	hashCapacity	the number of distinct rows to hold in a hash
+	 *		table, which removes the duplicates before the sort, or 0 to
+	 *		remove them in the sort
 	 *
 	 * @exception StandardException Thrown on error
 	 */
@@ -166,11 +173,16 @@ class SortResultSet extends NoPutResultSetImpl
 					int maxRowSize,
 					int resultSetNumber,
 				    double optimizerEstimatedRowCount,
-				    double optimizerEstimatedCost) throws StandardException 
+				    double optimizerEstimatedCost,
+					int hashCapacity) throws StandardException 
 	{
 		super(a, resultSetNumber, optimizerEstimatedRowCount, optimizerEstimatedCost);
 		this.distinct = distinct;
 		this.isInSortedOrder = isInSortedOrder;
+		if (distinct && !isInSortedOrder)
+		{
+			this.hashCapacity = hashCapacity;
+		}
         source = s;
         originalSource = s;
 		this.maxRowSize = maxRowSize;
@@ -307,14 +319,33 @@ class SortResultSet extends NoPutResultSetImpl
 		genericSortId = sortId;
 		dropGenericSort = true;
 	
-		/* The sorter is responsible for doing the cloning */
-		while ((inputRow = getNextRowFromRS()) != null) 
+		if (hashCapacity > 0)
+		{
+			/* Only one row of each group goes into the sorter */
+			hashtable = new GroupingHashtable(activation, order,
+				new GenericAggregator[0], hashCapacity);
+			while ((inputRow = getNextRowFromRS()) != null) 
+			{
+				hashtable.insert(inputRow);
+			}
+			hashtable.finish(sorter);
+		}
+		else
 		{
 			/* The sorter is responsible for doing the cloning */
-			sorter.insert(inputRow.getRowArray());
+			while ((inputRow = getNextRowFromRS()) != null) 
+			{
+				/* The sorter is responsible for doing the cloning */
+				sorter.insert(inputRow.getRowArray());
+			}
 		}
 		source.close();
 		sortProperties = sorter.getSortInfo().getAllSortInfo(sortProperties);
+		if (hashtable != null)
+		{
+			sortProperties = hashtable.getAllHashInfo(sortProperties);
+			hashtable = null;
+		}
 		sorter.completedInserts();
 
 		return tc.openSortScan(sortId, activation.getResultSetHoldability());
@@ -450,6 +481,12 @@ class SortResultSet extends NoPutResultSetImpl
 			sortResultRow = null;
 			closeSource();
 
+			if (hashtable != null)
+			{
+				hashtable.close();
+				hashtable = null;
+			}
+
 			if (dropGenericSort)
 			{
 				getTransactionController().dropSort(genericSortId);
@@ -338,7 +338,7 @@ class TableScanResultSet extends ScanResultSet
 		if (tc == null)
 			tc = activation.getTransactionController();
 
-        int openMode = 0;
+        int openMode = getUseOnceOpenMode();
         if (forUpdate)
         {
             openMode = TransactionController.OPENMODE_FORUPDATE;
@@ -380,6 +380,24 @@ class TableScanResultSet extends ScanResultSet
 									);
 	}
 
+	/**
+	 * Get the open mode which tells the store that the pages of the
+	 * conglomerate are read once. A read only scan without start and stop
+	 * keys reads every page of the conglomerate once, and its pages should
+	 * not push the pages that other statements use over and over again out
+	 * of the page cache.
+	 *
+	 * @return OPENMODE_USE_ONCE for a read only scan of the whole
+	 * conglomerate, 0 otherwise
+	 */
+	protected int getUseOnceOpenMode()
+	{
+		if (forUpdate || startKeyGetter != null || stopKeyGetter != null)
+			return 0;
+
+		return TransactionController.OPENMODE_USE_ONCE;
+	}
+
 	/*
 	** reopen the scan controller
 	*/
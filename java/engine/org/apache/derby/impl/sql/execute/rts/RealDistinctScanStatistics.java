@@ -88,6 +88,7 @@ public class RealDistinctScanStatistics
 			indexName,
 			isConstraint,
 			hashtableSize,
+			0,						// no partitions
 			hashKeyColumns,
 			scanQualifiers,
 			nextQualifiers,
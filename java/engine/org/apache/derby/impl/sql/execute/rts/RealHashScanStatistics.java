@@ -59,6 +59,7 @@ public class RealHashScanStatistics
 	/* Leave these fields public for object inspectors */
 	public boolean isConstraint;
 	public int hashtableSize;
+	public int partitionsSpilled;
 	public int[] hashKeyColumns;
 	public String isolationLevel;
 	public String lockString;
@@ -89,6 +90,7 @@ public class RealHashScanStatistics
 									String indexName,
 									boolean isConstraint,
 									int hashtableSize,
+									int partitionsSpilled,
 									int[] hashKeyColumns,
 									String scanQualifiers,
 									String nextQualifiers,
@@ -117,6 +119,7 @@ public class RealHashScanStatistics
 		this.indexName = indexName;
 		this.isConstraint = isConstraint;
 		this.hashtableSize = hashtableSize;
+		this.partitionsSpilled = partitionsSpilled;
 		this.hashKeyColumns = ArrayUtil.copy( hashKeyColumns );
 		this.scanQualifiers = scanQualifiers;
 		this.nextQualifiers = nextQualifiers;
@@ -210,6 +213,13 @@ public class RealHashScanStatistics
 			indent + MessageService.getTextMessage(
 												SQLState.RTS_HASH_TABLE_SIZE) +
 						" = " + hashtableSize + "\n" +
+			((partitionsSpilled > 0)
+				?
+					indent + MessageService.getTextMessage(
+										SQLState.RTS_PARTITIONS_SPILLED) +
+								" = " + partitionsSpilled + "\n"
+				:
+					"") +
 			indent + hashKeyColumnString + "\n" +
 			indent + MessageService.getTextMessage(SQLState.RTS_ROWS_SEEN) +
 						" = " + rowsSeen + "\n" +
@@ -0,0 +1,211 @@
+/*
+
+   Derby - Class org.apache.derby.impl.sql.execute.rts.RealMergeScanStatistics
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.sql.execute.rts;
+
+import org.apache.derby.iapi.util.PropertyUtil;
+import org.apache.derby.iapi.util.StringUtil;
+
+import org.apache.derby.iapi.services.i18n.MessageService;
+import org.apache.derby.iapi.reference.SQLState;
+import org.apache.derby.impl.sql.execute.xplain.XPLAINUtil;
+
+import java.util.Properties;
+
+
+/**
+  ResultSetStatistics implemenation for MergeScanResultSet.
+
+
+*/
+public class RealMergeScanStatistics
+	extends RealHashScanStatistics
+{
+
+	/* Leave these fields public for object inspectors */
+	public boolean inputOrdered;
+	public long rowsSorted;
+
+	// CONSTRUCTORS
+
+	/**
+	 * 
+	 *
+	 */
+    public	RealMergeScanStatistics(
+									int numOpens,
+									int rowsSeen,
+									int rowsFiltered,
+									long constructorTime,
+									long openTime,
+									long nextTime,
+									long closeTime,
+									int resultSetNumber,
+									String tableName,
+									String indexName,
+									boolean isConstraint,
+									int[] mergeKeyColumns,
+									boolean inputOrdered,
+									long rowsSorted,
+									String scanQualifiers,
+									String nextQualifiers,
+									Properties scanProperties,
+									String startPosition,
+									String stopPosition,
+									String isolationLevel,
+									String lockString,
+									double optimizerEstimatedRowCount,
+									double optimizerEstimatedCost
+									)
+	{
+		super(
+			numOpens,
+			rowsSeen,
+			rowsFiltered,
+			constructorTime,
+			openTime,
+			nextTime,
+			closeTime,
+			resultSetNumber,
+			tableName,
+			indexName,
+			isConstraint,
+			0,						// no hash table
+			0,						// no partitions
+			mergeKeyColumns,
+			scanQualifiers,
+			nextQualifiers,
+			scanProperties,
+			startPosition,
+			stopPosition,
+			isolationLevel,
+			lockString,
+			optimizerEstimatedRowCount,
+			optimizerEstimatedCost
+			);
+		this.inputOrdered = inputOrdered;
+		this.rowsSorted = rowsSorted;
+	}
+
+	// ResultSetStatistics methods
+
+	/**
+	 * Return the statement execution plan as a String.
+	 *
+	 * @param depth	Indentation level.
+	 *
+	 * @return String	The statement executio plan as a String.
+	 */
+	public String getStatementExecutionPlanText(int depth)
+	{
+		String header;
+
+		initFormatInfo(depth);
+
+		if (indexName != null)
+		{
+            // note that the "constraint" and "index" literals are names of SQL
+            // objects and so do not need to be internationalized
+			header =
+				indent +
+					MessageService.getTextMessage(
+										SQLState.RTS_MERGE_SCAN_RS_USING,
+										tableName,
+                                        isConstraint ? "constraint" : "index",
+										indexName);
+		}
+		else
+		{
+			header =
+				indent +
+					MessageService.getTextMessage(SQLState.RTS_MERGE_SCAN_RS,
+														tableName);
+		}
+
+		header = header + " " +
+					MessageService.getTextMessage(
+										SQLState.RTS_LOCKING,
+										isolationLevel,
+										lockString) +
+					": \n";
+
+		String scanInfo =
+			indent +
+					MessageService.getTextMessage(SQLState.RTS_SCAN_INFO) +
+					": \n" +
+					PropertyUtil.sortProperties(scanProperties, subIndent);
+
+		return
+			header +
+			indent + MessageService.getTextMessage(SQLState.RTS_NUM_OPENS) +
+						" = " + numOpens + "\n" +
+			indent + MessageService.getTextMessage(SQLState.RTS_MERGE_KEY) +
+						" " + hashKeyColumns[0] + "\n" +
+			(inputOrdered
+				?
+					""
+				:
+					indent + MessageService.getTextMessage(
+												SQLState.RTS_ROWS_SORTED) +
+						" = " + rowsSorted + "\n") +
+			indent + MessageService.getTextMessage(SQLState.RTS_ROWS_SEEN) +
+						" = " + rowsSeen + "\n" +
+			indent + MessageService.getTextMessage(
+												SQLState.RTS_ROWS_FILTERED) +
+						" = " + rowsFiltered + "\n" +
+			dumpTimeStats(indent, subIndent) + "\n" +
+			((rowsSeen > 0) 
+				?
+					subIndent + MessageService.getTextMessage(
+													SQLState.RTS_NEXT_TIME) +
+								" = " + (nextTime / rowsSeen) + "\n"
+				: 
+					"") + "\n" +
+			scanInfo +
+			subIndent + MessageService.getTextMessage(
+				SQLState.RTS_START_POSITION) +
+			":\n" + StringUtil.ensureIndent(startPosition, depth + 2) + "\n" +
+			subIndent + MessageService.getTextMessage(
+												SQLState.RTS_STOP_POSITION) +
+			":\n" + StringUtil.ensureIndent(stopPosition, depth + 2) + "\n" +
+			subIndent + MessageService.getTextMessage(
+													SQLState.RTS_SCAN_QUALS) +
+			":\n" + StringUtil.ensureIndent(scanQualifiers, depth + 2) + "\n" +
+			subIndent + MessageService.getTextMessage(
+													SQLState.RTS_NEXT_QUALS) +
+			":\n" + StringUtil.ensureIndent(nextQualifiers, depth + 2) + "\n" +
+
+			// RESOLVE - estimated row count and cost will eventually 
+			// be displayed for all nodes
+			dumpEstimatedCosts(subIndent);
+	}
+
+	/**
+   * Format for display, a name for this node.
+	 *
+	 */
+	public String getNodeName()
+	{
+		return MessageService.getTextMessage(SQLState.RTS_MERGE_SCAN);
+	}
+
+    public String getRSXplainType() { return XPLAINUtil.OP_MERGESCAN; }
+}
@@ -58,6 +58,7 @@ public class RealTableScanStatistics
 	public boolean isConstraint;
 	public boolean coarserLock;
 	public int		fetchSize;
+	public int		parallelThreads;
 	public String isolationLevel;
 	public String tableName;
 	public String userSuppliedOptimizerOverrides;
@@ -93,6 +94,7 @@ public class RealTableScanStatistics
 									String isolationLevel,
 									String lockString,
 									int fetchSize,
+									int parallelThreads,
 									boolean coarserLock,
 									double optimizerEstimatedRowCount,
 									double optimizerEstimatedCost
@@ -126,6 +128,7 @@ public class RealTableScanStatistics
 		this.isolationLevel = isolationLevel;
 		this.lockString = lockString;
 		this.fetchSize = fetchSize;
+		this.parallelThreads = parallelThreads;
 		this.coarserLock = coarserLock;
 	}
 
@@ -206,6 +209,13 @@ public class RealTableScanStatistics
 				" = " + rowsFiltered + "\n" +
 			indent + MessageService.getTextMessage(SQLState.RTS_FETCH_SIZE) +
 				" = " + fetchSize + "\n" +
+			((parallelThreads > 0)
+				?
+					indent + MessageService.getTextMessage(
+									SQLState.RTS_PARALLEL_SCAN_THREADS) +
+								" = " + parallelThreads + "\n"
+				:
+					"") +
 			dumpTimeStats(indent, subIndent) + "\n" +
 			((rowsSeen > 0) 
 				?
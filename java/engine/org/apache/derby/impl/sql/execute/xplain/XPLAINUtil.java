@@ -58,6 +58,7 @@ public class XPLAINUtil {
      public static final String OP_INDEXSCAN                  =   "INDEXSCAN";
      public static final String OP_HASHSCAN                   =   "HASHSCAN";
      public static final String OP_DISTINCTSCAN               =   "DISTINCTSCAN";
+     public static final String OP_MERGESCAN                  =   "MERGESCAN";
      public static final String OP_LASTINDEXKEYSCAN           =   "LASTINDEXKEYSCAN";
      public static final String OP_HASHTABLE                  =   "HASHTABLE";
      public static final String OP_ROWIDSCAN                  =   "ROWIDSCAN";
@@ -69,6 +70,8 @@ public class XPLAINUtil {
      public static final String OP_JOIN_HASH                  =   "HASHJOIN";
      public static final String OP_JOIN_NL_LO                 =   "LONLJOIN";
      public static final String OP_JOIN_HASH_LO               =   "LOHASHJOIN";
+     public static final String OP_JOIN_MERGE                 =   "MERGEJOIN";
+     public static final String OP_JOIN_MERGE_LO              =   "LOMERGEJOIN";
      public static final String OP_UNION                      =   "UNION";
      public static final String OP_SET                        =   "SET";
      
@@ -113,6 +116,7 @@ public class XPLAINUtil {
      /** the scan info codes */
      public static final String SCAN_HEAP                     =   "HEAP";
      public static final String SCAN_BTREE                    =   "BTREE";
+     public static final String SCAN_HASH                     =   "HASH";
      public static final String SCAN_SORT                     =   "SORT";
      public static final String SCAN_BITSET_ALL               =   "ALL";
      
@@ -292,6 +296,10 @@ public class XPLAINUtil {
              if(scan_type_property.equalsIgnoreCase(
                  MessageService.getTextMessage(SQLState.STORE_RTS_BTREE))){
                  scan_type = SCAN_BTREE;
+             } else 
+             if(scan_type_property.equalsIgnoreCase(
+                 MessageService.getTextMessage(SQLState.STORE_RTS_HASH))){
+                 scan_type = SCAN_HASH;
              }             
          } else {
              scan_type = null;
@@ -65,9 +65,12 @@ import org.apache.derby.iapi.store.raw.data.DataFactory;
 
 import org.apache.derby.catalog.UUID;
 
+import org.apache.derby.iapi.reference.Property;
 import org.apache.derby.iapi.reference.SQLState;
 import org.apache.derby.iapi.reference.Attribute;
 
+import org.apache.derby.impl.store.access.conglomerate.RowVersions;
+
 import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
@@ -75,6 +78,7 @@ import java.security.AccessController;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.Properties;
 
 import java.io.Serializable;
@@ -159,6 +163,12 @@ public abstract class RAMAccessManager
      **/
     private CacheManager    conglom_cache;
 
+    /**
+     * The committed versions of the rows being changed by active 
+     * transactions, or null if snapshot reads are not enabled.
+     **/
+    private RowVersions     row_versions;
+
     /**************************************************************************
      * Constructors for This class:
      **************************************************************************
@@ -199,12 +209,21 @@ public abstract class RAMAccessManager
 		return xactProperties;
 	}
 
+    /**
+     * Return the committed versions of the rows being changed by active
+     * transactions, or null if snapshot reads are not enabled.
+     **/
+    public RowVersions getRowVersions()
+    {
+        return row_versions;
+    }
+
     private void boot_load_conglom_map()
         throws StandardException
     {
         // System.out.println("before new code.");
 
-        conglom_map = new ConglomerateFactory[2];
+        conglom_map = new ConglomerateFactory[3];
 
 		// Find the appropriate factory for the desired implementation.
 		MethodFactory mfactory = findMethodFactoryByImpl("heap");
@@ -229,6 +248,17 @@ public abstract class RAMAccessManager
         conglom_map[ConglomerateFactory.BTREE_FACTORY_ID] = 
             (ConglomerateFactory) mfactory;
 
+		// Find the appropriate factory for the desired implementation.
+		mfactory = findMethodFactoryByImpl("HASH");
+
+		if (mfactory == null || !(mfactory instanceof ConglomerateFactory))
+        {
+			throw StandardException.newException(
+                    SQLState.AM_NO_SUCH_CONGLOMERATE_TYPE, "HASH");
+        }
+        conglom_map[ConglomerateFactory.HASH_FACTORY_ID] = 
+            (ConglomerateFactory) mfactory;
+
         // System.out.println("conglom_map[0] = " + conglom_map[0]);
         // System.out.println("conglom_map[1] = " + conglom_map[1]);
     }
@@ -900,6 +930,11 @@ public abstract class RAMAccessManager
 		return rawstore.getTransactionInfo();
 	}
 
+	public Map<String, Long> getLogStatistics()
+	{
+		return rawstore.getLogStatistics();
+	}
+
     /**
      * Start the replication master role for this database.
      * @param dbmaster The master database that is being replicated.
@@ -1188,6 +1223,12 @@ public abstract class RAMAccessManager
         // which may do conglomerate access.
         bootLookupSystemLockLevel(tc);
 
+        if (PropertyUtil.getServiceBoolean(
+                tc, Property.STORAGE_SNAPSHOT_READS, false))
+        {
+            row_versions = new RowVersions();
+        }
+
         lock_mode =
             (getSystemLockLevel() == TransactionController.MODE_TABLE ?
                  LockingPolicy.MODE_CONTAINER : LockingPolicy.MODE_RECORD);
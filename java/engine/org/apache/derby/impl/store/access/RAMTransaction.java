@@ -436,6 +436,7 @@ public class RAMTransaction
                       ContainerHandle.MODE_OPEN_FOR_LOCK_ONLY       |
                       ContainerHandle.MODE_LOCK_NOWAIT              |
                       ContainerHandle.MODE_LOCK_ROW_NOWAIT          |
+                      ContainerHandle.MODE_USE_ONCE                 |
                       ContainerHandle.MODE_TRUNCATE_ON_ROLLBACK     |
                       ContainerHandle.MODE_FLUSH_ON_COMMIT          |
                       ContainerHandle.MODE_NO_ACTIONS_ON_COMMIT     |
@@ -497,6 +498,7 @@ public class RAMTransaction
                    TransactionController.OPENMODE_FOR_LOCK_ONLY |
                    TransactionController.OPENMODE_LOCK_NOWAIT |
                    TransactionController.OPENMODE_LOCK_ROW_NOWAIT |
+                   TransactionController.OPENMODE_USE_ONCE |
                    TransactionController.OPENMODE_SECONDARY_LOCKED)) != 0)
             {
                 SanityManager.THROWASSERT(
@@ -1457,6 +1459,26 @@ public class RAMTransaction
 		return;
     }
 
+    /**
+     * Return underfilled pages of the conglomerate to the container.
+     * <p>
+     * @see TransactionController#shrinkConglomerate
+     *
+     * @param conglomId Id of the conglomerate to shrink.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public void shrinkConglomerate(
+    long    conglomId)
+        throws StandardException
+    {
+        findExistingConglomerate(conglomId).shrinkConglomerate(
+            this,
+            rawtran);
+
+		return;
+    }
+
     /**
      * Compress table in place.
      * <p>
@@ -1943,6 +1965,16 @@ public class RAMTransaction
         return;
 	}
 
+	public void commitAsync()
+		throws StandardException
+	{
+		this.closeControllers(false /* don't close held controllers */ );
+
+        rawtran.commitAsync();
+
+        alterTableCallMade = false;
+	}
+
 	public DatabaseInstant commitNoSync(int commitflag)
 		throws StandardException
 	{
@@ -2362,6 +2394,38 @@ public class RAMTransaction
         return(rt);
     }
 
+    /**
+     * @see TransactionController#startNestedReadOnlyUserTransaction
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public TransactionController startNestedReadOnlyUserTransaction(
+    ContextManager cm)
+        throws StandardException
+    {
+        Transaction child_rawtran = 
+            accessmanager.getRawStore().startNestedReadOnlyUserTransaction(
+                rawtran, 
+                getLockSpace(), 
+                cm,
+                AccessFactoryGlobals.NESTED_READONLY_USER_TRANS);
+
+        // The child has no parent transaction to abort along with it, the
+        // parent belongs to another thread.
+        RAMTransaction rt   = 
+            new RAMTransaction(accessmanager, child_rawtran, null);
+
+        RAMTransactionContext rtc   = 
+			new RAMTransactionContext(
+                cm, 
+                AccessFactoryGlobals.RAMXACT_CHILD_CONTEXT_ID,
+                rt, true /*abortAll */);
+
+        child_rawtran.setDefaultLockingPolicy(
+                accessmanager.getDefaultLockingPolicy());
+
+        return(rt);
+    }
+
     /**
      * Get the Transaction from the Transaction manager.
      * <p>
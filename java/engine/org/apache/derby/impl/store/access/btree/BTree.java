@@ -566,6 +566,23 @@ public abstract class BTree extends GenericConglomerate
 	RowLocationRetRowSource rowSource)
 		throws StandardException;
 
+    /**
+     * Merge the underfilled leaves of the btree, while it is in use.
+     * <p>
+     * Leaves whose rows fit on their left sibling are merged into it and
+     * returned to the container, in small batches of internal transactions.
+     * @see org.apache.derby.iapi.store.access.conglomerate.Conglomerate#shrinkConglomerate
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	public void shrinkConglomerate(
+    TransactionManager              xact_manager,
+    Transaction                     rawtran)
+        throws StandardException
+    {
+        new BTreeLeafMerger(this).mergeLeaves(xact_manager);
+    }
+
     public long getContainerid()
     {
         return(this.id.getContainerId());
@@ -23,6 +23,7 @@ package org.apache.derby.impl.store.access.btree;
 
 import java.util.Properties;
 
+import org.apache.derby.iapi.reference.Property;
 import org.apache.derby.iapi.reference.SQLState;
 
 import org.apache.derby.shared.common.sanity.SanityManager;
@@ -50,6 +51,7 @@ import org.apache.derby.iapi.types.DataValueDescriptor;
 import org.apache.derby.iapi.types.RowLocation;
 
 import org.apache.derby.iapi.services.io.FormatableBitSet;
+import org.apache.derby.iapi.services.property.PropertyUtil;
 import org.apache.derby.impl.store.access.conglomerate.ConglomerateUtil;
 
 /**
@@ -130,7 +132,9 @@ public class BTreeController extends OpenBTree implements ConglomerateController
         try
         {
 
-            if ((controlRow = ControlRow.get(open_btree, pageno)) == null)
+            // The leaf may have been merged into its left sibling and freed
+            // since its latch was released.
+            if ((controlRow = ControlRow.getIfValid(open_btree, pageno)) == null)
                 return(false);
 
             LeafControlRow leaf       = (LeafControlRow) controlRow;
@@ -1046,171 +1050,6 @@ public class BTreeController extends OpenBTree implements ConglomerateController
         return(ret_val);
 	}
 
-    /**
-     * Just insert the row on the current page/slot if it fits.
-     * <p>
-	 * @exception  StandardException  Standard exception policy.
-     **/
-	private boolean do_load_insert(
-    DataValueDescriptor[]   rowToInsert,
-    LeafControlRow          leaf,
-    int                     insert_slot)
-        throws StandardException
-	{
-		LeafControlRow old_leaf         = null;
-        boolean        row_inserted     = false;
-        int            num_rows_on_page = leaf.page.recordCount() - 1;
-
-
-        if (SanityManager.DEBUG)
-        {
-            SanityManager.ASSERT(insert_slot == leaf.page.recordCount());
-            SanityManager.ASSERT(
-                leaf.getrightSiblingPageNumber() == 
-                    ContainerHandle.INVALID_PAGE_NUMBER);
-            this.isIndexableRowConsistent(rowToInsert);
-        }
-
-        if (num_rows_on_page < BTree.maxRowsPerPage)
-        {
-            // By default maxRowsPerPage is set to MAXINT, some tests
-            // set it small to cause splitting to happen quicker with
-            // less data.
-
-            if (SanityManager.DEBUG)
-            {
-                // Caller should have sorted and done duplicate checking.
-
-                if (insert_slot > 1)
-                {
-                    // verify that the row inserted is >= than previous row.
-                    int compare_result =
-                        ControlRow.compareIndexRowFromPageToKey(
-                            leaf,
-                            insert_slot - 1,
-                            scratch_template,
-                            rowToInsert,
-                            this.getConglomerate().nUniqueColumns,
-                            0,
-							this.getConglomerate().ascDescInfo);
-                    
-                    if (compare_result >= 0)
-                    {
-                        // Rows must be presented in order, so the row we are
-                        // inserting must always be greater than the previous 
-                        // row on the page.
-                        SanityManager.THROWASSERT("result = " + compare_result);
-                    }
-                }
-            }
-
-
-            if (leaf.page.insertAtSlot(
-                    insert_slot, 
-                    rowToInsert, 
-                    (FormatableBitSet) null, 
-                    this.btree_undo,
-                    Page.INSERT_DEFAULT,
-					AccessFactoryGlobals.BTREE_OVERFLOW_THRESHOLD) != null)
-            {
-                // Insert succeeded, so we're done.
-                row_inserted = true;
-            }
-            else
-            {
-                // RESOLVE (mikem) - another long row issue.
-                // For now if a row does not fit on a page and there 
-                // is only the control row on the page and at most one
-                // other row on the page, throw an exception
-
-                if (leaf.page.recordCount() <= 2)
-                {
-                    throw StandardException.newException(
-                            SQLState.BTREE_NO_SPACE_FOR_KEY);
-                }
-            }
-        }
-
-        // Check that page just updated is consistent.
-        if (SanityManager.DEBUG)
-        {
-            if (SanityManager.DEBUG_ON("enableBtreeConsistencyCheck"))
-            {
-                leaf.checkConsistency(this, null, true);
-            }
-        }
-
-        return(row_inserted);
-	}
-
-    /**
-     * Create room to insert a row to the right of the largest key in table.
-     * <p>
-     * Perform a split pass on the tree which will move the largest key in
-     * leaf right to a new leaf, splitting parent branch pages as necessary.
-     *
-	 * @exception  StandardException  Standard exception policy.
-     **/
-	private LeafControlRow do_load_split(
-    DataValueDescriptor[]   rowToInsert,
-    LeafControlRow          leaf)
-        throws StandardException
-	{
-		LeafControlRow new_leaf = null;
-
-        BranchRow branchrow = 
-            BranchRow.createBranchRowFromOldLeafRow(
-                rowToInsert, leaf.page.getPageNumber());
-
-        // Release the target page because (a) it may change as a 
-        // result of the split, (b) the latch ordering requires us 
-        // to acquire latches from top to bottom, and (c) this 
-        // loop should be done in a system transaction.
-        long old_leafpage = leaf.page.getPageNumber();
-
-        leaf.release();
-        leaf = null;
-        
-        long new_leaf_pageno = 
-            start_xact_and_dosplit(
-                false /* don't try to reclaim deleted rows */,
-                old_leafpage,
-                scratch_template, 
-                branchrow.getRow(), 
-                (ControlRow.SPLIT_FLAG_LAST_ON_PAGE | 
-                    ControlRow.SPLIT_FLAG_LAST_IN_TABLE));
-
-        new_leaf = (LeafControlRow) ControlRow.get(this, new_leaf_pageno);
-
-        // The leaf must be the rightmost leaf in the table, the first time
-        // the root grows from leaf to branch it will be a leaf with many
-        // rows which will probably have to be split soon, after that it will
-        // be a leaf with only one row.  The current algorithm requires that
-        // there be at least one row for duplicate checking (the duplicate
-        // checking code does not handle going left to the previous leaf) - 
-        // this is the way the split at rightmost leaf row works currently.
-        if (SanityManager.DEBUG)
-        {
-            if (new_leaf.getrightSiblingPageNumber() != 
-                    ContainerHandle.INVALID_PAGE_NUMBER)
-            {
-                SanityManager.THROWASSERT(
-                    "new_leaf.getrightSiblingPageNumber() = " + 
-                        new_leaf.getrightSiblingPageNumber());
-            }
-            if (new_leaf.page.recordCount() <= 1)
-            {
-                SanityManager.THROWASSERT(
-                    "new_leaf.page.recordCount() = " + 
-                    new_leaf.page.recordCount());
-            }
-        }
-
-        return(new_leaf);
-	}
-
-
-
 	/*
 	** public Methods of BTreeController
 	*/
@@ -1471,12 +1310,11 @@ public class BTreeController extends OpenBTree implements ConglomerateController
      * On exit from this routine the conglomerate will be closed (on both
      * error or success).
      * <p>
-     * This routine does an almost bottom up build of a btree.  It assumes
-     * all rows arrive in sorted order, and inserts them directly into the
-     * next (to the right) spot in the current leaf until there is no space.
-     * Then it calls the generic split code to add the next leaf (RESOLVE - 
-     * in the future we could optimize this to split bottom up rather than
-     * top down for create index).
+     * This routine does a bottom up build of a btree, see BTreeLoader.  It
+     * assumes all rows arrive in sorted order, and appends them to the
+     * rightmost leaf until it is full, then starts a new leaf to its right
+     * and appends a branch row for it to the rightmost page of the level
+     * above.  Pages are left derby.storage.indexFillFactor percent full.
      *
      * @exception StandardException Standard exception policy.  If conglomerate
 	 *                              supports uniqueness checks and has been 
@@ -1502,27 +1340,22 @@ public class BTreeController extends OpenBTree implements ConglomerateController
 				"Cannot load a btree incrementally - it must either be entirely logged, or entirely not logged.  Doesn't make sense to log only the allocation when one cannot guarantee to not touch any pre-existing pages");
 		}
 
-        if (scratch_template == null)
-        {
-            scratch_template = runtime_mem.get_template(getRawTran());
-        }
-
-        LeafControlRow current_leaf = null;
+        BTreeLoader loader = null;
 
         try 
         {
             // Btree must just have been created and empty, so there must
             // be one root leaf page which is empty except for the control row.
-            current_leaf = 
-                (LeafControlRow) ControlRow.get(this, BTree.ROOTPAGEID);
-            int current_insert_slot = 1;
+            loader = 
+                new BTreeLoader(
+                    this,
+                    PropertyUtil.getServiceInt(
+                        xact_manager,
+                        Property.INDEX_FILL_FACTOR,
+                        Property.MIN_INDEX_FILL_FACTOR,
+                        Property.MAX_INDEX_FILL_FACTOR,
+                        Property.DEFAULT_INDEX_FILL_FACTOR));
 
-            if (SanityManager.DEBUG)
-            {
-                // root must be empty except for the control row.
-                SanityManager.ASSERT(current_leaf.page.recordCount() == 1);
-            }
-           
             // now loop thru the row source and insert into the btree
             FormatableBitSet  validColumns = rowSource.getValidColumns();
             
@@ -1538,30 +1371,11 @@ public class BTreeController extends OpenBTree implements ConglomerateController
                         validColumns == null, "Does not support partial row");
                 }
 
-                while (true)
-                {
-                    if (do_load_insert(row, current_leaf, current_insert_slot))
-                    {
-                        // row inserted successfully.
-                        break;
-                    }
-                    else
-                    {
-                        // if insert fails, do a split pass. There is an edge
-                        // case where multiple split passes are necessary if
-                        // branch splits are necessary, thus the loop.  It is
-                        // most likely that only a single split pass will be
-                        // necessary.
-                        current_leaf = do_load_split(row, current_leaf);
-
-                        current_insert_slot = current_leaf.page.recordCount();
-                    }
-                }
-                current_insert_slot++;
+                loader.insert(row);
             }
 
-            current_leaf.release();
-            current_leaf = null;
+            loader.release();
+            loader = null;
 
             // Loading done, must flush all pages to disk since it is unlogged.
             if (!this.getConglomerate().isTemporary())
@@ -1569,6 +1383,9 @@ public class BTreeController extends OpenBTree implements ConglomerateController
         }
         finally
         {
+            if (loader != null)
+                loader.release();
+
             this.close();
         }
 
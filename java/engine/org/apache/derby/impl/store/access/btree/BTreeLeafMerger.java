@@ -0,0 +1,435 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.btree.BTreeLeafMerger
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+
+package org.apache.derby.impl.store.access.btree;
+
+import java.util.ArrayList;
+
+import org.apache.derby.shared.common.sanity.SanityManager;
+
+import org.apache.derby.iapi.error.StandardException;
+
+import org.apache.derby.iapi.store.access.ConglomerateController;
+import org.apache.derby.iapi.store.access.DynamicCompiledOpenConglomInfo;
+import org.apache.derby.iapi.store.access.RowUtil;
+import org.apache.derby.iapi.store.access.TransactionController;
+
+import org.apache.derby.iapi.store.access.conglomerate.LogicalUndo;
+import org.apache.derby.iapi.store.access.conglomerate.TransactionManager;
+
+import org.apache.derby.iapi.store.raw.ContainerHandle;
+import org.apache.derby.iapi.store.raw.FetchDescriptor;
+import org.apache.derby.iapi.store.raw.LockingPolicy;
+import org.apache.derby.iapi.store.raw.Page;
+
+import org.apache.derby.iapi.types.DataValueDescriptor;
+
+/**
+ * Merge the underfilled leaves of a btree while it is in use.
+ * <p>
+ * The leaves are visited left to right, one level 1 branch page at a time.
+ * The rows of a leaf are moved to its left sibling when they fit there, and
+ * the emptied leaf is unlinked from its siblings, its branch row is purged
+ * from the parent and the page is returned to the container.  Committed
+ * deleted rows are purged from every leaf visited first, so leaves holding
+ * only those are always freed.  Only leaves with the same parent are
+ * merged, so that no branch row has to change but the one purged.
+ * <p>
+ * The work is done in small batches, each in its own internal transaction,
+ * which holds an IX lock on the base table and row locks only on the
+ * committed deleted rows it purges, gotten NOWAIT as post commit does.  The
+ * parent and the leaves are latched top down and left to right, the order
+ * splits and scans use, and all the latches of a batch are released when
+ * it commits, so concurrent inserts, deletes and scans only ever wait for
+ * one batch.  Scans positioned on a moved row find it again by key, as
+ * they do after a split.
+ * <p>
+ * MT - single thread required
+ **/
+final class BTreeLeafMerger
+{
+    /**
+     * The most leaves visited by one batch.
+     **/
+    private static final int MAX_LEAVES_PER_BATCH = 16;
+
+    /**
+     * The btree whose leaves are merged.
+     **/
+    private final BTree btree;
+
+    /**
+     * The level 1 branch page the next batch works on.
+     **/
+    private long parent_pageno = ContainerHandle.INVALID_PAGE_NUMBER;
+
+    /**
+     * The leaf the next batch starts from, INVALID_PAGE_NUMBER to start
+     * from the left child of the parent.
+     **/
+    private long resume_pageno = ContainerHandle.INVALID_PAGE_NUMBER;
+
+    /**
+     * The number of leaves freed.
+     **/
+    private int freed_pages;
+
+    /**
+     * The pages latched by the current batch, released once it commits.
+     **/
+    private final ArrayList<ControlRow> latched = new ArrayList<ControlRow>();
+
+    BTreeLeafMerger(BTree btree)
+    {
+        this.btree = btree;
+    }
+
+    /**
+     * Merge the underfilled leaves of the btree.
+     *
+	 * @return the number of pages returned to the container.
+     *
+     * @param xact_manager  the user transaction, which is expected to hold
+     *                      a lock on the base table that keeps the btree
+     *                      from being dropped.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    int mergeLeaves(TransactionManager xact_manager)
+        throws StandardException
+    {
+        boolean first = true;
+
+        do
+        {
+            TransactionManager internal_xact =
+                xact_manager.getInternalTransaction();
+
+            OpenBTree open_btree = openIndex(xact_manager, internal_xact);
+
+            if (first)
+            {
+                parent_pageno = getLeftmostParent(open_btree);
+                first = false;
+            }
+
+            if (parent_pageno != ContainerHandle.INVALID_PAGE_NUMBER)
+                mergeBatch(open_btree);
+
+            // Commit the batch before releasing the latches, so that no
+            // other transaction can use the space freed on the pages before
+            // an undo of the batch might need it.
+            internal_xact.commit();
+
+            for (int i = 0; i < latched.size(); i++)
+                latched.get(i).release();
+            latched.clear();
+
+            open_btree.close();
+            internal_xact.destroy();
+
+        } while (parent_pageno != ContainerHandle.INVALID_PAGE_NUMBER);
+
+        return(freed_pages);
+    }
+
+    /**
+     * Open the btree in an internal transaction.
+     * <p>
+     * The base table is locked IX, NOWAIT, and the btree is opened with row
+     * locking, the way post commit opens it to purge committed deleted rows.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private OpenBTree openIndex(
+    TransactionManager  xact_manager,
+    TransactionManager  internal_xact)
+        throws StandardException
+    {
+        OpenBTree open_btree = new OpenBTree();
+
+        ConglomerateController base_cc =
+            btree.lockTable(
+                internal_xact,
+                (ContainerHandle.MODE_FORUPDATE |
+                 ContainerHandle.MODE_LOCK_NOWAIT),
+                TransactionController.MODE_RECORD,
+                TransactionController.ISOLATION_REPEATABLE_READ);
+
+        open_btree.init(
+            xact_manager,
+            internal_xact,
+            (ContainerHandle) null,           // open the container
+            internal_xact.getRawStoreXact(),
+            false,
+            (ContainerHandle.MODE_FORUPDATE | ContainerHandle.MODE_LOCK_NOWAIT),
+            TransactionController.MODE_RECORD,
+            btree.getBtreeLockingPolicy(
+                internal_xact.getRawStoreXact(),
+                TransactionController.MODE_RECORD,
+                LockingPolicy.MODE_RECORD,
+                TransactionController.ISOLATION_REPEATABLE_READ,
+                base_cc,
+                open_btree),
+            btree,
+            (LogicalUndo) null,              // No logical undo necessry.
+            (DynamicCompiledOpenConglomInfo) null);
+
+        return(open_btree);
+    }
+
+    /**
+     * Find the leftmost level 1 branch page.
+     *
+	 * @return the page number, or INVALID_PAGE_NUMBER if the root is a leaf.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private long getLeftmostParent(OpenBTree open_btree)
+        throws StandardException
+    {
+        ControlRow cr = ControlRow.get(open_btree, BTree.ROOTPAGEID);
+
+        try
+        {
+            if (cr.getLevel() == 0)
+                return(ContainerHandle.INVALID_PAGE_NUMBER);
+
+            while (cr.getLevel() > 1)
+            {
+                ControlRow child = cr.getLeftChild(open_btree);
+                cr.release();
+                cr = child;
+            }
+
+            return(cr.page.getPageNumber());
+        }
+        finally
+        {
+            cr.release();
+        }
+    }
+
+    /**
+     * Merge the leaves of one batch.
+     * <p>
+     * Visits up to MAX_LEAVES_PER_BATCH children of the parent, starting
+     * from resume_pageno, and sets parent_pageno and resume_pageno to where
+     * the next batch starts.  Leaves the pages it changed latched, for the
+     * caller to release after commit.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private void mergeBatch(OpenBTree open_btree)
+        throws StandardException
+    {
+        // The parent may have been split, or freed by the post commit shrink
+        // of an emptied btree, since the last batch.  Any page to its right
+        // is still to the right of what was merged, so continue from a split
+        // parent, and stop when there is no level 1 branch page any more.
+        ControlRow cr = ControlRow.getIfValid(open_btree, parent_pageno);
+        if (cr == null)
+        {
+            parent_pageno = ContainerHandle.INVALID_PAGE_NUMBER;
+            return;
+        }
+        latched.add(cr);
+
+        if (!(cr instanceof BranchControlRow) || cr.getLevel() != 1)
+        {
+            parent_pageno = ContainerHandle.INVALID_PAGE_NUMBER;
+            return;
+        }
+
+        BranchControlRow parent = (BranchControlRow) cr;
+
+        // Start from the leaf the last batch stopped at, if it is still
+        // a child of the parent.
+        int slot = 0;
+        if (resume_pageno != ContainerHandle.INVALID_PAGE_NUMBER)
+        {
+            for (int s = parent.page.recordCount() - 1; s > 0; s--)
+            {
+                if (parent.getChildPageIdAtSlot(open_btree, s) ==
+                        resume_pageno)
+                {
+                    slot = s;
+                    break;
+                }
+            }
+        }
+
+        DataValueDescriptor[] scratch_template =
+            open_btree.getRuntimeMem().get_template(open_btree.getRawTran());
+
+        ControlRow left = parent.getChildPageAtSlot(open_btree, slot);
+        latched.add(left);
+        purgeCommittedDeletes(open_btree, left, scratch_template);
+
+        int visited = 1;
+
+        while (slot + 1 < parent.page.recordCount() &&
+               visited < MAX_LEAVES_PER_BATCH)
+        {
+            ControlRow right = parent.getChildPageAtSlot(open_btree, slot + 1);
+            visited++;
+
+            purgeCommittedDeletes(open_btree, right, scratch_template);
+
+            if (!mergeRight(open_btree, parent, slot + 1, left, right))
+            {
+                latched.add(right);
+                left = right;
+                slot++;
+            }
+        }
+
+        if (slot + 1 < parent.page.recordCount())
+        {
+            resume_pageno = left.page.getPageNumber();
+        }
+        else
+        {
+            parent_pageno = parent.getrightSiblingPageNumber();
+            resume_pageno = ContainerHandle.INVALID_PAGE_NUMBER;
+        }
+    }
+
+    /**
+     * Purge the committed deleted rows of a leaf.
+     * <p>
+     * A deleted row is known to be committed deleted if an exclusive lock on
+     * it can be gotten without waiting, as in
+     * BTreePostCommit.purgeRowLevelCommittedDeletes().
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private void purgeCommittedDeletes(
+    OpenBTree               open_btree,
+    ControlRow              leaf,
+    DataValueDescriptor[]   scratch_template)
+        throws StandardException
+    {
+        Page page = leaf.page;
+
+        if (page.recordCount() - 1 == page.nonDeletedRecordCount())
+            return;
+
+        BTreeLockingPolicy btree_locking_policy =
+            open_btree.getLockingPolicy();
+
+        // RowLocation column is in last column of template.
+        FetchDescriptor lock_fetch_desc =
+            RowUtil.getFetchDescriptorConstant(scratch_template.length - 1);
+
+        // loop backward so that purges which affect the slot table
+        // don't affect the loop.
+        for (int slot_no = page.recordCount() - 1; slot_no > 0; slot_no--)
+        {
+            if (page.isDeletedAtSlot(slot_no) &&
+                btree_locking_policy.lockScanCommittedDeletedRow(
+                    open_btree, (LeafControlRow) leaf, scratch_template,
+                    lock_fetch_desc, slot_no))
+            {
+                page.purgeAtSlot(slot_no, 1, true);
+                page.setRepositionNeeded();
+            }
+        }
+    }
+
+    /**
+     * Move the rows of a leaf to its left sibling, and free it.
+     * <p>
+     * On entry the parent and both leaves are latched.  If the rows fit on
+     * the left leaf they are moved there, the right leaf is unlinked from
+     * its siblings and freed, and its branch row is purged from the parent,
+     * which leaves the right leaf unlatched.  Otherwise nothing is changed.
+     *
+	 * @return true if the right leaf was freed.
+     *
+     * @param open_btree    the open btree.
+     * @param parent        the parent of both leaves.
+     * @param slot          the slot of the branch row of the right leaf.
+     * @param left          the leaf to move the rows to.
+     * @param right         the leaf to move the rows from.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private boolean mergeRight(
+    OpenBTree           open_btree,
+    BranchControlRow    parent,
+    int                 slot,
+    ControlRow          left,
+    ControlRow          right)
+        throws StandardException
+    {
+        if (SanityManager.DEBUG)
+        {
+            SanityManager.ASSERT(left.getLevel() == 0);
+            SanityManager.ASSERT(right.getLevel() == 0);
+            SanityManager.ASSERT(
+                left.getrightSiblingPageNumber() ==
+                    right.page.getPageNumber());
+        }
+
+        int left_rows  = left.page.recordCount() - 1;
+        int right_rows = right.page.recordCount() - 1;
+
+        if (right_rows > 0)
+        {
+            if ((left_rows + right_rows > BTree.maxRowsPerPage) ||
+                !left.page.spaceForCopy(right.page, 1, right_rows))
+            {
+                return(false);
+            }
+
+            right.page.copyAndPurge(
+                left.page, 1, right_rows, left_rows + 1);
+        }
+
+        // Scans positioned on the right leaf must find their rows by key.
+        right.page.setRepositionNeeded();
+
+        // Unlink the right leaf.  Its right sibling only gets its left
+        // sibling pointer updated, which needs no space, so it is released
+        // right away as ControlRow.unlink() does.
+        ControlRow rightsib = right.getRightSibling(open_btree);
+        try
+        {
+            left.setRightSibling(rightsib);
+            if (rightsib != null)
+                rightsib.setLeftSibling(left);
+        }
+        finally
+        {
+            if (rightsib != null)
+                rightsib.release();
+        }
+
+        // Free the page, which unlatches it, and purge its branch row.
+        open_btree.container.removePage(right.page);
+        parent.page.purgeAtSlot(slot, 1, true);
+
+        freed_pages++;
+
+        return(true);
+    }
+}
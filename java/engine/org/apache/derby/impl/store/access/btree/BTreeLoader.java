@@ -0,0 +1,451 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.btree.BTreeLoader
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+
+package org.apache.derby.impl.store.access.btree;
+
+import java.util.ArrayList;
+
+import org.apache.derby.iapi.reference.SQLState;
+
+import org.apache.derby.shared.common.sanity.SanityManager;
+
+import org.apache.derby.iapi.error.StandardException;
+
+import org.apache.derby.iapi.store.access.conglomerate.LogicalUndo;
+
+import org.apache.derby.iapi.store.access.AccessFactoryGlobals;
+
+import org.apache.derby.iapi.store.raw.FetchDescriptor;
+import org.apache.derby.iapi.store.raw.Page;
+import org.apache.derby.iapi.store.raw.RecordHandle;
+
+import org.apache.derby.iapi.types.DataValueDescriptor;
+
+import org.apache.derby.iapi.services.io.FormatableBitSet;
+
+/**
+ * Build a btree bottom up from rows which arrive in sorted order.
+ * <p>
+ * The loader keeps the rightmost page of every level of the tree latched.
+ * Rows are appended to the rightmost leaf until it is full, then a new leaf
+ * is allocated to its right, and a branch row for the new leaf is appended
+ * to the rightmost page of the level above, which in turn gets a new page
+ * to its right when it is full. No split pass is ever done from the root,
+ * and every page is written left to right exactly once.
+ * <p>
+ * The root of a btree is always page BTree.ROOTPAGEID, so when the root is
+ * full its rows are moved to a new page of the same level, and the root
+ * moves up a level, the same way a split pass grows the root.
+ * <p>
+ * A page counts as full when the next row does not fit on it, or when it
+ * holds the fill factor percentage of the rows which the first full page
+ * of its level held. The row count stands in for the space used, as the
+ * raw store does not tell how full a page is.
+ * <p>
+ * All the work is done in the transaction of the open btree, which is
+ * expected to have the btree table locked and, when it has just been
+ * created, opened unlogged, as done by Conglomerate.load().
+ * <p>
+ * MT - single thread required
+ **/
+final class BTreeLoader
+{
+    /**
+     * The open btree being loaded.
+     **/
+    private final OpenBTree open_btree;
+
+    /**
+     * How full to leave the pages, in percent.
+     **/
+    private final int fill_factor;
+
+    /**
+     * The rightmost page of every level of the tree, latched, indexed by
+     * level. The last one is the root.
+     **/
+    private final ArrayList<ControlRow> rightmost = new ArrayList<ControlRow>();
+
+    /**
+     * The number of rows on the first full page of every level, indexed by
+     * level, 0 while no page of the level has been full.
+     **/
+    private int[] full_row_count = new int[4];
+
+    /**
+     * Template to fetch the last row of a leaf into, to suffix compress the
+     * branch row of the next leaf.
+     **/
+    private DataValueDescriptor[] last_leaf_row;
+
+    /**
+     * Create a loader for an empty btree.
+     *
+     * @param open_btree    the open btree, with an empty root leaf.
+     * @param fill_factor   how full to leave the pages, in percent.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    BTreeLoader(
+    OpenBTree   open_btree,
+    int         fill_factor)
+        throws StandardException
+    {
+        this.open_btree  = open_btree;
+        this.fill_factor = fill_factor;
+
+        ControlRow root = ControlRow.get(open_btree, BTree.ROOTPAGEID);
+        rightmost.add(root);
+
+        if (SanityManager.DEBUG)
+        {
+            // root must be an empty leaf.
+            SanityManager.ASSERT(root instanceof LeafControlRow);
+            SanityManager.ASSERT(root.page.recordCount() == 1);
+        }
+    }
+
+    /**
+     * Append a row to the btree.
+     * <p>
+     * The row must sort after every row already loaded.
+     *
+     * @param row   the row to append, its columns are copied to the page.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    void insert(DataValueDescriptor[] row)
+        throws StandardException
+    {
+        LeafControlRow leaf = (LeafControlRow) rightmost.get(0);
+
+        if (SanityManager.DEBUG)
+        {
+            if (leaf.page.recordCount() > 1)
+            {
+                // Rows must be presented in order, so the row we are
+                // inserting must always be greater than the previous row.
+                int compare_result =
+                    ControlRow.compareIndexRowFromPageToKey(
+                        leaf,
+                        leaf.page.recordCount() - 1,
+                        open_btree.getConglomerate().createTemplate(
+                            open_btree.getRawTran()),
+                        row,
+                        open_btree.getConglomerate().nUniqueColumns,
+                        0,
+                        open_btree.getConglomerate().ascDescInfo);
+
+                if (compare_result >= 0)
+                {
+                    SanityManager.THROWASSERT("result = " + compare_result);
+                }
+            }
+        }
+
+        if (append(0, leaf, row, open_btree.btree_undo))
+            return;
+
+        leaf = newLeaf(leaf, row);
+
+        if (!append(0, leaf, row, open_btree.btree_undo))
+        {
+            throw StandardException.newException(
+                    SQLState.BTREE_NO_SPACE_FOR_KEY);
+        }
+    }
+
+    /**
+     * Release the latches on the rightmost pages of the tree.
+     * <p>
+     * Called once all the rows are loaded, or when the load fails.
+     **/
+    void release()
+    {
+        for (int i = 0; i < rightmost.size(); i++)
+        {
+            rightmost.get(i).release();
+        }
+        rightmost.clear();
+    }
+
+    /**
+     * Append a row to the rightmost page of a level if the page is not full.
+     *
+     * @return true if the row was appended, false if the page is full.
+     *
+     * @param level     the level of the page.
+     * @param page_row  the control row of the page.
+     * @param row       the row to append.
+     * @param undo      the logical undo for the insert.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private boolean append(
+    int                     level,
+    ControlRow              page_row,
+    DataValueDescriptor[]   row,
+    LogicalUndo             undo)
+        throws StandardException
+    {
+        Page page     = page_row.page;
+        int  num_rows = page.recordCount() - 1;
+
+        if (num_rows >= BTree.maxRowsPerPage)
+        {
+            // By default maxRowsPerPage is set to MAXINT, some tests
+            // set it small to cause splitting to happen quicker with
+            // less data.
+            return(false);
+        }
+
+        if (level >= full_row_count.length)
+        {
+            int[] counts = new int[level * 2];
+            System.arraycopy(
+                full_row_count, 0, counts, 0, full_row_count.length);
+            full_row_count = counts;
+        }
+
+        int full = full_row_count[level];
+        if ((full > 0) && (num_rows > 0) &&
+            ((long) num_rows * 100 >= (long) full * fill_factor))
+        {
+            return(false);
+        }
+
+		byte insertFlag = Page.INSERT_INITIAL;
+		insertFlag |= Page.INSERT_DEFAULT;
+        if (level > 0)
+            insertFlag |= Page.INSERT_UNDO_WITH_PURGE;
+
+        if (page.insertAtSlot(
+                page.recordCount(),
+                row,
+                (FormatableBitSet) null,
+                undo,
+                insertFlag,
+                AccessFactoryGlobals.BTREE_OVERFLOW_THRESHOLD) != null)
+        {
+            return(true);
+        }
+
+        if (full == 0)
+            full_row_count[level] = num_rows;
+
+        return(false);
+    }
+
+    /**
+     * Allocate a new rightmost leaf for a row which does not fit on the
+     * current one.
+     *
+     * @return the new leaf, latched.
+     *
+     * @param leaf  the current rightmost leaf, which is full.
+     * @param row   the first row to go on the new leaf.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private LeafControlRow newLeaf(
+    LeafControlRow          leaf,
+    DataValueDescriptor[]   row)
+        throws StandardException
+    {
+        if (leaf.page.recordCount() == 1)
+        {
+            // The row does not fit on an empty page.
+            throw StandardException.newException(
+                    SQLState.BTREE_NO_SPACE_FOR_KEY);
+        }
+
+        if (leaf.getIsRoot())
+        {
+            leaf = growLeafRoot((LeafControlRow) leaf);
+        }
+
+        // The branch row only has to separate the rows on the full leaf
+        // from the rows going to the new leaf, so try to shorten its key.
+        BranchRow branchrow =
+            BranchRow.createBranchRowFromOldLeafRow(
+                row, BranchRow.DUMMY_PAGE_NUMBER);
+
+        if (last_leaf_row == null)
+        {
+            last_leaf_row =
+                open_btree.getConglomerate().createTemplate(
+                    open_btree.getRawTran());
+        }
+
+        leaf.page.fetchFromSlot(
+            (RecordHandle) null, leaf.page.recordCount() - 1, last_leaf_row,
+            (FetchDescriptor) null, true);
+
+        BranchRow.suffixCompress(
+            last_leaf_row, branchrow.getRow(), open_btree.getConglomerate());
+
+        LeafControlRow newleaf =
+            LeafControlRow.allocate(open_btree, rightmost.get(1));
+        newleaf.linkRight(open_btree, leaf);
+
+        rightmost.set(0, newleaf);
+        leaf.release();
+
+        branchrow.setPageNumber(newleaf.page.getPageNumber());
+        addChild(1, branchrow, newleaf);
+
+        return(newleaf);
+    }
+
+    /**
+     * Append the branch row of a new rightmost child page to the rightmost
+     * page of a level, allocating a new page for the level if it is full.
+     * <p>
+     * The new child must already have replaced its left sibling as the
+     * rightmost page of its level, and have the current rightmost page of
+     * this level as its parent.
+     *
+     * @param level     the level to add the branch row to.
+     * @param branchrow the branch row pointing at the new child.
+     * @param child     the new child page.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private void addChild(
+    int         level,
+    BranchRow   branchrow,
+    ControlRow  child)
+        throws StandardException
+    {
+        BranchControlRow parent = (BranchControlRow) rightmost.get(level);
+
+        if (append(level, parent, branchrow.getRow(), (LogicalUndo) null))
+            return;
+
+        if (parent.page.recordCount() == 1)
+        {
+            // The branch row does not fit on an empty page.
+            throw StandardException.newException(
+                    SQLState.BTREE_NO_SPACE_FOR_KEY);
+        }
+
+        if (parent.getIsRoot())
+        {
+            parent = growBranchRoot(parent);
+        }
+
+        // The new child becomes the left child of a new page to the right
+        // of the full one, and the branch row moves up a level to point at
+        // the new page.
+        BranchControlRow newbranch =
+            BranchControlRow.allocate(
+                open_btree, child, level, rightmost.get(level + 1));
+        child.setParent(newbranch.page.getPageNumber());
+        newbranch.linkRight(open_btree, parent);
+
+        rightmost.set(level, newbranch);
+        parent.release();
+
+        branchrow.setPageNumber(newbranch.page.getPageNumber());
+        addChild(level + 1, branchrow, newbranch);
+    }
+
+    /**
+     * Move the rows of a full leaf root to a new leaf, and turn the root
+     * into a branch page with the new leaf as its left child.
+     *
+     * @return the new leaf, latched.
+     *
+     * @param leafroot  the root.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private LeafControlRow growLeafRoot(
+    LeafControlRow  leafroot)
+        throws StandardException
+    {
+        LeafControlRow newleaf = LeafControlRow.allocate(open_btree, leafroot);
+
+        leafroot.page.copyAndPurge(
+            newleaf.page, 1, leafroot.page.recordCount() - 1, 1);
+
+        // Construction of the BranchControlRow will set it as the aux
+        // object for the page, so leafroot must not be used once the
+        // constructor returns.
+        BranchControlRow branchroot = new BranchControlRow(
+            open_btree, leafroot.page, 1, null, true,
+            newleaf.page.getPageNumber());
+
+        branchroot.page.updateAtSlot(
+            0, branchroot.getRow(), (FormatableBitSet) null);
+
+        rightmost.set(0, newleaf);
+        rightmost.add(branchroot);
+
+        return(newleaf);
+    }
+
+    /**
+     * Move the rows of a full branch root to a new branch page of the same
+     * level, and move the root up a level with the new page as its left
+     * child.
+     * <p>
+     * None of the children of the root may be latched.
+     *
+     * @return the new branch page, latched.
+     *
+     * @param root  the root.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private BranchControlRow growBranchRoot(
+    BranchControlRow    root)
+        throws StandardException
+    {
+        ControlRow       leftchild = root.getLeftChild(open_btree);
+        BranchControlRow branch    = null;
+
+        try
+        {
+            branch =
+                BranchControlRow.allocate(
+                    open_btree, leftchild, root.getLevel(), root);
+
+            root.page.copyAndPurge(
+                branch.page, 1, root.page.recordCount() - 1, 1);
+
+            root.setLeftChild(branch);
+            root.setLevel(root.getLevel() + 1);
+
+            branch.fixChildrensParents(open_btree, leftchild);
+        }
+        finally
+        {
+            leftchild.release();
+        }
+
+        int level = branch.getLevel();
+        rightmost.set(level, branch);
+        rightmost.add(root);
+
+        return(branch);
+    }
+}
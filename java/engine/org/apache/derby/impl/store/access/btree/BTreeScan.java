@@ -1956,6 +1956,15 @@ public abstract class BTreeScan extends OpenBTree implements ScanManager
                 SQLState.BTREE_UNIMPLEMENTED_FEATURE);
     }
 
+    public boolean reopenScanByPageRange(
+    long    firstPage,
+    long    lastPage)
+        throws StandardException
+    {
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+    }
+
     /*
     ** Methods of ScanController, which are not supported by btree.
     */
@@ -1254,7 +1254,7 @@ public class BranchControlRow extends ControlRow
      *
      * @exception StandardException Standard exception policy.
      */
-    private static BranchControlRow allocate(
+    static BranchControlRow allocate(
     OpenBTree         open_btree,
     ControlRow        leftchild,
     int               level,
@@ -1319,7 +1319,7 @@ public class BranchControlRow extends ControlRow
      ** <P>
      ** This
 	 **/
-	private void fixChildrensParents(
+	void fixChildrensParents(
     OpenBTree       btree,
     ControlRow      leftchild)
         throws StandardException
@@ -1381,7 +1381,7 @@ public class BranchControlRow extends ControlRow
         }
 	}
 
-    private long getChildPageIdAtSlot(
+    long getChildPageIdAtSlot(
     OpenBTree       btree,
     int             slot)
         throws StandardException
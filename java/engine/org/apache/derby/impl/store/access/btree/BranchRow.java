@@ -25,6 +25,8 @@ import org.apache.derby.shared.common.sanity.SanityManager;
 
 import org.apache.derby.iapi.error.StandardException;
 
+import org.apache.derby.iapi.services.io.StoredFormatIds;
+
 import org.apache.derby.iapi.store.access.RowUtil;
 
 import org.apache.derby.iapi.store.raw.ContainerHandle;
@@ -215,6 +217,123 @@ public class BranchRow
         return(newbranch);
     }
 
+    /**
+     * Suffix compress the key of a leaf row which is going to be the key of
+     * a new branch row.
+     * <p>
+     * The key of a branch row only has to sort after every row in the
+     * child pages to its left, and not after the first row of its own
+     * child page. When a leaf page is split, and the last row left on the
+     * page and the first row moved to the new page first differ in an
+     * ascending VARCHAR or VARCHAR FOR BIT DATA column, that column of the
+     * split row is cut down to one character (or byte) longer than the
+     * prefix the two rows share. The shorter value is only used if it still
+     * sorts strictly between the two rows, so that collations and padding
+     * rules are respected. Branch rows with long keys then take little space,
+     * which raises the fan-out of the branch pages.
+     * <p>
+     * A compressed branch row has the same format as any other branch row,
+     * so indexes with and without compressed branch rows are read the same
+     * way.
+     *
+     * @param left_row  the last row left on the page being split.
+     * @param split_row the first row moved to the new page, whose key
+     *                  columns are changed in place.
+     * @param btree     the btree being split.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    protected static void suffixCompress(
+    DataValueDescriptor[]   left_row,
+    DataValueDescriptor[]   split_row,
+    BTree                   btree)
+        throws StandardException
+    {
+        for (int i = 0; i < btree.nKeyFields; i++)
+        {
+            DataValueDescriptor left  = left_row[i];
+            DataValueDescriptor right = split_row[i];
+
+            // nulls sort high, leave them alone.
+            if (left.isNull() || right.isNull())
+                return;
+
+            int compare = left.compare(right);
+
+            if (compare == 0)
+                continue;
+
+            // Only compress the first column which differs, and only when
+            // it is an ascending column in the expected order.
+            if ((compare > 0) ||
+                ((btree.ascDescInfo != null) && !btree.ascDescInfo[i]))
+            {
+                return;
+            }
+
+            DataValueDescriptor shorter = right.cloneValue(false);
+
+            switch (right.getTypeFormatId())
+            {
+            case StoredFormatIds.SQL_VARCHAR_ID:
+            {
+                String l = left.getString();
+                String r = right.getString();
+                int length = commonPrefixLength(l, r) + 1;
+                if (length >= r.length())
+                    return;
+                shorter.setValue(r.substring(0, length));
+                break;
+            }
+
+            case StoredFormatIds.SQL_VARBIT_ID:
+            {
+                byte[] l = left.getBytes();
+                byte[] r = right.getBytes();
+                int length = commonPrefixLength(l, r) + 1;
+                if (length >= r.length)
+                    return;
+                byte[] prefix = new byte[length];
+                System.arraycopy(r, 0, prefix, 0, length);
+                shorter.setValue(prefix);
+                break;
+            }
+
+            default:
+                return;
+            }
+
+            if ((left.compare(shorter) < 0) && (shorter.compare(right) < 0))
+                split_row[i] = shorter;
+
+            return;
+        }
+    }
+
+    /**
+     * Return the number of leading characters two strings have in common.
+     **/
+    private static int commonPrefixLength(String a, String b)
+    {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while ((i < max) && (a.charAt(i) == b.charAt(i)))
+            i++;
+        return(i);
+    }
+
+    /**
+     * Return the number of leading bytes two byte arrays have in common.
+     **/
+    private static int commonPrefixLength(byte[] a, byte[] b)
+    {
+        int max = Math.min(a.length, b.length);
+        int i = 0;
+        while ((i < max) && (a[i] == b[i]))
+            i++;
+        return(i);
+    }
+
     /**
      * Return the branch row.
      * <p>
@@ -827,6 +827,26 @@ public abstract class ControlRow implements AuxObject, TypedFormat
 		return getControlRowForPage(container, page);
 	}
 
+	/**
+	Get the control row for the given page, waiting for the latch if
+	necessary, or return null if the page is no longer a valid page.
+	<P>
+	Leaves are merged into their left sibling and freed while other
+	transactions use the btree, so a page number remembered while no
+	latch was held may name a freed page.
+
+    @exception StandardException Standard exception policy.
+	**/
+	public static ControlRow getIfValid(OpenBTree open_btree, long pageNumber)
+		throws StandardException
+	{
+		Page page = open_btree.container.getPage(pageNumber);
+		if (page == null)
+			return null;
+
+		return getControlRowForPage(open_btree.container, page);
+	}
+
 	/**
 	Get the control row for the given page if the latch on the
 	page can be obtained without waiting, else return null.
@@ -115,7 +115,7 @@ public class LeafControlRow extends ControlRow
      * 
      * @exception StandardException Standard exception policy.
      */
-    private static LeafControlRow allocate(
+    static LeafControlRow allocate(
     OpenBTree   btree, 
     ControlRow  parent)
         throws StandardException
@@ -602,6 +602,22 @@ public class LeafControlRow extends ControlRow
             (RecordHandle) null, splitpoint, split_leaf_row, 
             (FetchDescriptor) null, true); 
 
+        // The branch row only has to separate the rows left on this page
+        // from the rows moved to the new page, so try to shorten its key.
+        if (splitpoint > ControlRow.CR_SLOT + 1)
+        {
+            DataValueDescriptor[] left_leaf_row = 
+                open_btree.getConglomerate().createTemplate(
+                        open_btree.getRawTran());
+
+            this.page.fetchFromSlot(
+                (RecordHandle) null, splitpoint - 1, left_leaf_row, 
+                (FetchDescriptor) null, true); 
+
+            BranchRow.suffixCompress(
+                left_leaf_row, split_leaf_row, open_btree.getConglomerate());
+        }
+
         // Create the branch row to insert onto the parent page.  For now
         // use a fake page number because we don't know the real page 
         // number until the allocate is done, but want to delay the 
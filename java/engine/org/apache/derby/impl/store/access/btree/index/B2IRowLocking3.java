@@ -380,8 +380,12 @@ class B2IRowLocking3 implements BTreeLockingPolicy
             current_leaf = null;
 
             // wait on the left leaf, which we could not be granted NOWAIT.
+            // It may have been merged into its own left sibling and freed
+            // meanwhile, then the caller has to search again.
             prev_leaf = (LeafControlRow) 
-                ControlRow.get(open_btree, previous_pageno);
+                ControlRow.getIfValid(open_btree, previous_pageno);
+            if (prev_leaf == null)
+                return(false);
 
             latches_released = true;
         }
@@ -482,7 +486,9 @@ class B2IRowLocking3 implements BTreeLockingPolicy
 
                 // wait on the left page, which we could not get before. 
                 prev_leaf = (LeafControlRow) 
-                    ControlRow.get(open_btree, previous_pageno);
+                    ControlRow.getIfValid(open_btree, previous_pageno);
+                if (prev_leaf == null)
+                    return(false);
 
                 latches_released = true;
             }
@@ -188,13 +188,16 @@ public class B2IUndo implements LogicalUndo, Formatable
               //    logged_index_row_template);
 
             // Get the page where the record was originally, before splits
-            // could have possibly moved it.
-            control_row = ControlRow.get(open_btree, rechandle.getPageNumber());
+            // could have possibly moved it.  The page is gone if it has been
+            // merged into its left sibling since.
+            control_row = 
+                ControlRow.getIfValid(open_btree, rechandle.getPageNumber());
 
             // init compare_result, if record doesn't exist do the search 
             compare_result = 1;
 
-            if (control_row.getPage().recordExists(rechandle, true))
+            if (control_row != null && 
+                control_row.getPage().recordExists(rechandle, true))
             {
 
                 if (SanityManager.DEBUG)
@@ -237,7 +240,8 @@ public class B2IUndo implements LogicalUndo, Formatable
                         logged_index_row_template, ScanController.GE, 
                         template, open_btree, false);
 
-                control_row.release();
+                if (control_row != null)
+                    control_row.release();
                 control_row = null;
                 control_row = 
                     ControlRow.get(open_btree, BTree.ROOTPAGEID).search(sp);
@@ -189,6 +189,8 @@ public abstract class GenericConglomerateController
         }
         else
         {
+            open_conglom.saveRowVersion(pos);
+
             // Delete the row 
             pos.current_page.deleteAtSlot(
                 pos.current_slot, true, (LogicalUndo) null);
@@ -482,6 +484,8 @@ public abstract class GenericConglomerateController
         }
         else
         {
+            open_conglom.saveRowVersion(pos);
+
             // Update the record.  
             pos.current_page.updateAtSlot(pos.current_slot, row, validColumns);
         }
@@ -217,6 +217,20 @@ public abstract class GenericScanController
      **/
     protected RowPosition         scan_position;
 
+    /**
+     * The committed versions of rows changed by other transactions, if this
+     * scan reads them rather than wait for the locks on the rows.  Null if
+     * the scan always locks the rows it reads.
+     **/
+    private RowVersions           row_versions;
+
+    /**
+     * The version the scan read the current row from, null if the current
+     * row was read from the page, and the record handle of that row.
+     **/
+    private RowVersions.Version   current_version;
+    private RecordHandle          current_version_rh;
+
     /**
      * Performance counters ...
      */
@@ -234,6 +248,58 @@ public abstract class GenericScanController
      **************************************************************************
      */
 
+    /**
+     * Read the current row from a saved version rather than from the page.
+     * <p>
+     * Applies the qualifiers of the fetch descriptor to the saved version
+     * of the row, and copies the columns asked for into the row.
+     *
+	 * @return true if the row qualifies.
+     *
+     * @param version   The saved version of the row, null if the row was 
+     *                  inserted by the transaction which holds its lock.
+     * @param row       The row to copy the columns into.
+     * @param fetchDesc Columns to copy and qualifiers to apply, if null all
+     *                  columns are copied.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private boolean fetchFromVersion(
+    DataValueDescriptor[]   version,
+    DataValueDescriptor[]   row,
+    FetchDescriptor         fetchDesc)
+        throws StandardException
+    {
+        // the row did not exist before it was inserted.
+        if (version == null)
+            return(false);
+
+        int[] valid_cols = null;
+
+        if (fetchDesc != null)
+        {
+            if (fetchDesc.getQualifierList() != null &&
+                !RowUtil.qualifyRow(version, fetchDesc.getQualifierList()))
+            {
+                return(false);
+            }
+
+            valid_cols = fetchDesc.getValidColumnsArray();
+        }
+
+        for (int i = 0; i < row.length && i < version.length; i++)
+        {
+            if (row[i] != null &&
+                (valid_cols == null || 
+                 (i < valid_cols.length && valid_cols[i] != 0)))
+            {
+                row[i].setValue(version[i]);
+            }
+        }
+
+        return(true);
+    }
+
     private final void repositionScanForUpateOper()
         throws StandardException
     {
@@ -432,7 +498,25 @@ public abstract class GenericScanController
     RowPosition pos)
         throws StandardException
     {
-        if (pos.current_rh == null)
+        if (pos.current_rh == null &&
+            pos.last_pageno != ContainerHandle.INVALID_PAGE_NUMBER)
+        {
+            // 1st positioning of scan following a reopenScanByPageRange
+            pos.current_page = 
+                open_conglom.getContainer().getNextPage(
+                    pos.first_pageno - 1);
+
+            if (pos.isPastLastPage())
+                pos.unlatch();
+
+            // skip the control row on the first page, as below.
+            pos.current_slot = 
+                (pos.current_page != null && 
+                 pos.current_page.getPageNumber() == 
+                    ContainerHandle.FIRST_PAGE_NUMBER) ?
+                    Page.FIRST_SLOT_NUMBER : Page.FIRST_SLOT_NUMBER - 1;
+        }
+        else if (pos.current_rh == null)
         {
             // 1st positioning of scan (delayed from openScan).
             pos.current_page = 
@@ -499,6 +583,10 @@ public abstract class GenericScanController
             pos.current_page = 
                 open_conglom.getContainer().getNextPage(pageid);
 
+            // the scan of a range of pages ends at the last page of the range
+            if (pos.isPastLastPage())
+                pos.unlatch();
+
             // set up for scan to continue at beginning of this new page.
             pos.current_slot = Page.FIRST_SLOT_NUMBER - 1;
         }
@@ -680,9 +768,34 @@ public abstract class GenericScanController
                 scan_position.positionAtNextSlot();
 
                 // Lock the row.
-                boolean lock_granted_while_latch_held = 
-                    open_conglom.lockPositionForRead(
-                        scan_position, (RowPosition) null, true, true);
+                boolean lock_granted_while_latch_held;
+
+                current_version = null;
+
+                if (row_versions == null)
+                {
+                    lock_granted_while_latch_held = 
+                        open_conglom.lockPositionForRead(
+                            scan_position, (RowPosition) null, true, true);
+                }
+                else if (open_conglom.lockPositionForReadNoWait(scan_position))
+                {
+                    lock_granted_while_latch_held = true;
+                }
+                else
+                {
+                    // Another transaction is changing the row.  If it has 
+                    // saved the committed version of the row, read that 
+                    // version rather than wait for the lock.
+                    current_version = 
+                        row_versions.getVersion(scan_position.current_rh);
+                    current_version_rh = scan_position.current_rh;
+
+                    lock_granted_while_latch_held = 
+                        (current_version != null) ||
+                        open_conglom.lockPositionForRead(
+                            scan_position, (RowPosition) null, true, true);
+                }
 
                 if (!lock_granted_while_latch_held)
                 {
@@ -756,13 +869,24 @@ public abstract class GenericScanController
 
                 // fetchFromSlot returns null if row does not qualify.
 
-                scan_position.current_rh_qualified =
-                    (scan_position.current_page.fetchFromSlot(
-                        scan_position.current_rh, 
-                        scan_position.current_slot, 
-                        fetch_row, 
-                        init_fetchDesc,
-                        false) != null);
+                if (current_version != null)
+                {
+                    scan_position.current_rh_qualified =
+                        fetchFromVersion(
+                            current_version.getRow(), 
+                            fetch_row, 
+                            init_fetchDesc);
+                }
+                else
+                {
+                    scan_position.current_rh_qualified =
+                        (scan_position.current_page.fetchFromSlot(
+                            scan_position.current_rh, 
+                            scan_position.current_slot, 
+                            fetch_row, 
+                            init_fetchDesc,
+                            false) != null);
+                }
 
                 if (scan_position.current_rh_qualified)
                 {
@@ -886,6 +1010,54 @@ public abstract class GenericScanController
         // position the scan at the row before the given record id, so that
         // the first "next" starts on the given row.
         scan_position.current_rh = startRecordHandle;
+        scan_position.last_pageno = ContainerHandle.INVALID_PAGE_NUMBER;
+    }
+
+    /**
+    @see org.apache.derby.iapi.store.access.GenericScanController#reopenScanByPageRange
+    **/
+    public boolean reopenScanByPageRange(
+    long    firstPage,
+    long    lastPage)
+        throws StandardException
+    {
+        if (SanityManager.DEBUG)
+        {
+            SanityManager.ASSERT(
+                firstPage >= ContainerHandle.FIRST_PAGE_NUMBER &&
+                firstPage <= lastPage,
+                "bad page range: " + firstPage + ", " + lastPage);
+        }
+
+        // unlatch and unlock the current position, if any.
+        if (scan_position.current_rh != null)
+        {
+            open_conglom.unlockPositionAfterRead(scan_position);
+        }
+        scan_position.unlatch();
+
+        // find out whether there is anything left to scan, the latch is 
+        // not held, the scan looks for the page again when it starts.
+        Page page = 
+            open_conglom.getContainer().getNextPage(firstPage - 1);
+
+        if (page == null)
+        {
+            this.scan_state = SCAN_DONE;
+            scan_position.current_rh = null;
+            return(false);
+        }
+        page.unlatch();
+
+        // initialize scan position parameters at beginning of scan
+        this.scan_state = 
+            (!open_conglom.getHold() ? SCAN_INIT : SCAN_HOLD_INIT);
+
+        scan_position.current_rh   = null;
+        scan_position.first_pageno = firstPage;
+        scan_position.last_pageno  = lastPage;
+
+        return(true);
     }
 
     protected abstract void setRowLocationArray(
@@ -937,6 +1109,19 @@ public abstract class GenericScanController
             open_conglom.getContainer().getReusableRecordIdSequenceNumber();
     }
 
+    /**
+     * Read the committed version of rows which other transactions are
+     * changing, rather than wait for the locks on them.
+     * <p>
+     * Only for scans at read committed isolation which do not change the
+     * rows they read.  Has no effect unless snapshot reads are enabled, see
+     * RowVersions.
+     **/
+    public final void setSnapshotReads()
+    {
+        row_versions = open_conglom.getRowVersions();
+    }
+
 
     public final int getNumPagesVisited()
     {
@@ -1119,6 +1304,8 @@ public abstract class GenericScanController
         }
         else
         {
+            open_conglom.saveRowVersion(scan_position);
+
             // Delete the row 
             scan_position.current_page.deleteAtSlot(
                 scan_position.current_slot, true, (LogicalUndo) null);
@@ -1352,6 +1539,7 @@ public abstract class GenericScanController
             (!open_conglom.getHold() ? SCAN_INIT : SCAN_HOLD_INIT);
 
         scan_position.current_rh   = null;
+        scan_position.last_pageno  = ContainerHandle.INVALID_PAGE_NUMBER;
     }
 
     /**
@@ -1391,6 +1579,7 @@ public abstract class GenericScanController
         if (page.isDeletedAtSlot(slot)) {
             ret_val = false;
         } else {
+            open_conglom.saveRowVersion(scan_position);
             page.updateAtSlot(slot, row, validColumns);
             ret_val = true;
         }
@@ -1504,6 +1693,25 @@ public abstract class GenericScanController
             throw StandardException.newException(
                     SQLState.AM_SCAN_NOT_POSITIONED);
 
+        // the current row was read from a saved version, read it from
+        // there again.
+        if (current_version != null && 
+            current_version_rh == scan_position.current_rh)
+        {
+            if (!fetchFromVersion(
+                    current_version.getRow(), row, 
+                    qualify ? init_fetchDesc : null))
+            {
+                throw StandardException.newException(
+                        SQLState.AM_RECORD_NOT_FOUND, 
+                        open_conglom.getContainer().getId(),
+                        scan_position.current_rh.getPageNumber(),
+                        scan_position.current_rh.getId());
+            }
+
+            return;
+        }
+
         if (!open_conglom.latchPage(scan_position))
         {
             throw StandardException.newException(
@@ -27,6 +27,8 @@ import org.apache.derby.shared.common.sanity.SanityManager;
 
 import org.apache.derby.iapi.error.StandardException; 
 
+import org.apache.derby.iapi.services.io.StreamStorable;
+
 import org.apache.derby.iapi.store.access.conglomerate.Conglomerate;
 import org.apache.derby.iapi.store.access.conglomerate.TransactionManager;
 
@@ -38,12 +40,15 @@ import org.apache.derby.iapi.store.access.TransactionController;
 import org.apache.derby.iapi.store.raw.ContainerHandle;
 import org.apache.derby.iapi.store.raw.LockingPolicy;
 import org.apache.derby.iapi.store.raw.Page;
+import org.apache.derby.iapi.store.raw.RecordHandle;
 import org.apache.derby.iapi.store.raw.Transaction;
 
 import org.apache.derby.iapi.types.DataValueDescriptor;
 
 import org.apache.derby.iapi.types.RowLocation;
 
+import org.apache.derby.impl.store.access.RAMAccessManager;
+
 import java.util.Properties; 
 
 
@@ -93,6 +98,12 @@ public abstract class OpenConglomerate
      **/
     private OpenConglomerateScratchSpace  runtime_mem;
 
+    /**
+     * where to save the committed versions of changed rows, null if
+     * snapshot reads are not enabled.
+     **/
+    private RowVersions row_versions;
+
 
     /*
      * The open raw store container associated with this open conglomerate
@@ -259,6 +270,12 @@ public abstract class OpenConglomerate
 
             pos.current_page = container.getNextPage(current_pageno);
 
+            // the scan of a range of pages ends at the last page of the range
+            if (pos.isPastLastPage())
+            {
+                pos.unlatch();
+            }
+
             pos.current_slot   = Page.FIRST_SLOT_NUMBER - 1;
 
             // now position is tracked by active page
@@ -500,6 +517,34 @@ public abstract class OpenConglomerate
         return(lock_granted_with_latch_held);
     }
 
+    /**
+     * Lock the row at the given position for read, if that can be done 
+     * without waiting.
+     * <p>
+     * The page pointed to by the RowPosition must be latched, and stays
+     * latched when this method returns.
+     *
+	 * @return true if the lock was granted, false if another transaction
+     *         holds a conflicting lock on the row.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public boolean lockPositionForReadNoWait(
+    RowPosition pos)
+        throws StandardException
+    {
+        if (pos.current_rh == null)
+        {
+            pos.current_rh = 
+                pos.current_page.getRecordHandleAtSlot(pos.current_slot);
+        }
+
+        return(
+            this.container.getLockingPolicy().lockRecordForRead(
+                init_rawtran, container, pos.current_rh, 
+                false /* NOWAIT */, forUpdate));
+    }
+
     /**
      * <p>
      * Lock the row at the given position for write.
@@ -621,6 +666,54 @@ public abstract class OpenConglomerate
     }
 
 
+    /**
+     * Save the row at the given position before changing it.
+     * <p>
+     * Saves the committed version of the row for scans at read committed
+     * isolation, see RowVersions.  The page must be latched, and the row
+     * locked for write.  Does nothing if snapshot reads are not enabled, or 
+     * if the row has columns which can only be read as streams.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public void saveRowVersion(
+    RowPosition pos)
+        throws StandardException
+    {
+        if (row_versions == null)
+            return;
+
+        DataValueDescriptor[] row = runtime_mem.get_row_for_export(init_rawtran);
+
+        pos.current_page.fetchFromSlot(
+            pos.current_rh, pos.current_slot, row, null, true);
+
+        for (int i = 0; i < row.length; i++)
+        {
+            // a stream reads from the page, so it can not be kept.
+            if ((row[i] instanceof StreamStorable) &&
+                ((StreamStorable) row[i]).returnStream() != null)
+            {
+                return;
+            }
+        }
+
+        row_versions.saveVersion(init_rawtran, pos.current_rh, row);
+    }
+
+    /**
+     * Note that the row was inserted by this transaction.
+     * <p>
+     * Scans at read committed isolation skip the row rather than wait for
+     * the lock on it, see RowVersions.  The page must still be latched.
+     **/
+    public void saveInsertedRowVersion(
+    RecordHandle rh)
+    {
+        if (row_versions != null)
+            row_versions.saveVersion(init_rawtran, rh, null);
+    }
+
     /**************************************************************************
      * Public Methods implementing ConglomPropertyQueryable Interface: 
      **************************************************************************
@@ -754,6 +847,11 @@ public abstract class OpenConglomerate
         return(runtime_mem);
     }
 
+    public final RowVersions getRowVersions()
+    {
+        return(row_versions);
+    }
+
     /**************************************************************************
      * Public Methods implementing some ConglomerateController Interfaces: 
      **************************************************************************
@@ -906,6 +1004,14 @@ public abstract class OpenConglomerate
         if (!getBaseTableLocks)
             init_locking_policy = null;
 
+        // rows of temporary conglomerates are not seen by other transactions,
+        // so there is no need to save the versions of them.
+        this.row_versions = 
+            (conglomerate.isTemporary() ? 
+                 null : 
+                 ((RAMAccessManager) xact_manager.getAccessManager()).
+                     getRowVersions());
+
 		// Open the container. 
         this.container = 
             (open_container != null ?  
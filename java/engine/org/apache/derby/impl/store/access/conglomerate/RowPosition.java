@@ -46,6 +46,12 @@ public class RowPosition
     public boolean         current_rh_qualified;
     public long            current_pageno;
 
+    // The range of pages read by a scan which was positioned by
+    // reopenScanByPageRange(), last_pageno is INVALID_PAGE_NUMBER for a scan
+    // which reads to the end of the container.
+    public long            first_pageno;
+    public long            last_pageno = ContainerHandle.INVALID_PAGE_NUMBER;
+
     /**************************************************************************
      * Constructors for This class:
      **************************************************************************
@@ -71,6 +77,7 @@ public class RowPosition
         current_slot            = Page.INVALID_SLOT_NUMBER;
         current_rh_qualified    = false;
         current_pageno          = ContainerHandle.INVALID_PAGE_NUMBER;
+        last_pageno             = ContainerHandle.INVALID_PAGE_NUMBER;
     }
 
     public final void positionAtNextSlot()
@@ -85,6 +92,18 @@ public class RowPosition
         current_rh   = null;
     }
 
+    /**
+     * Is the latched page past the last page of the range of pages read by
+     * the scan?
+     **/
+    public final boolean isPastLastPage()
+    {
+        return(
+            (last_pageno != ContainerHandle.INVALID_PAGE_NUMBER) &&
+            (current_page != null)                              &&
+            (current_page.getPageNumber() > last_pageno));
+    }
+
     public void unlatch()
     {
         if (current_page != null)
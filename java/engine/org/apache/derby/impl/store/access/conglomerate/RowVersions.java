@@ -0,0 +1,199 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.conglomerate.RowVersions
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.conglomerate;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.derby.iapi.services.monitor.DerbyObservable;
+import org.apache.derby.iapi.services.monitor.DerbyObserver;
+import org.apache.derby.iapi.store.raw.RecordHandle;
+import org.apache.derby.iapi.store.raw.Transaction;
+import org.apache.derby.iapi.store.raw.xact.RawTransaction;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+
+/**
+The committed versions of the heap rows which are being changed by
+transactions that have not yet committed.
+<p>
+Before a transaction updates or deletes a heap row for the first time it
+saves the row as it was, and when it inserts a row it saves a marker which
+says that the row did not exist before.  A scan at read committed isolation
+which cannot get the lock on a row without waiting returns the saved version
+instead of waiting for the writer to commit, or skips the row if the writer
+inserted it.  If there is no saved version of the row the scan waits for the
+lock as usual.
+<p>
+The versions of a transaction are removed when it commits or aborts.  The
+raw store notifies the observers of a transaction before it releases the
+locks of the transaction, so a reader which sees that the row is locked
+either finds the version saved by the transaction that holds the lock, or
+waits for that lock and then reads the committed row from the page.  Both
+the writer and the reader hold the latch on the page while they save and
+look up a version, so the reader never sees a changed row without its
+version.
+<p>
+Rows with columns which are read as streams, and rows changed after
+MAX_VERSIONS versions have been saved, get no version; readers wait for the
+lock on those rows.
+**/
+
+public class RowVersions
+{
+    /**
+     * The maximum number of versions kept for the whole database.
+     **/
+    private static final int MAX_VERSIONS = 100000;
+
+    /**
+     * The versions, by the record handle of the row.
+     **/
+    private final ConcurrentHashMap<RecordHandle, Version> versions =
+        new ConcurrentHashMap<RecordHandle, Version>();
+
+    /**
+     * The transactions which have saved versions, and have not yet
+     * committed or aborted.
+     **/
+    private final ConcurrentHashMap<Transaction, Writer> writers =
+        new ConcurrentHashMap<Transaction, Writer>();
+
+    /**
+     * The version of a row saved by a writer.
+     **/
+    public static final class Version
+    {
+        private final Writer                writer;
+        private final DataValueDescriptor[] row;
+
+        Version(Writer writer, DataValueDescriptor[] row)
+        {
+            this.writer = writer;
+            this.row    = row;
+        }
+
+        /**
+         * Return the row as it was before the writer changed it, or null if
+         * the writer inserted the row.
+         **/
+        public DataValueDescriptor[] getRow()
+        {
+            return(row);
+        }
+    }
+
+    /**
+     * The versions saved by one transaction.  Removes them when the
+     * transaction commits or aborts.
+     **/
+    private final class Writer implements DerbyObserver
+    {
+        private final RawTransaction            xact;
+        private final ArrayList<RecordHandle>   handles =
+            new ArrayList<RecordHandle>();
+
+        Writer(RawTransaction xact)
+        {
+            this.xact = xact;
+        }
+
+        public void update(DerbyObservable obj, Object arg)
+        {
+            if (arg.equals(RawTransaction.COMMIT) ||
+                arg.equals(RawTransaction.ABORT))
+            {
+                for (RecordHandle rh : handles)
+                {
+                    Version v = versions.get(rh);
+
+                    if (v != null && v.writer == this)
+                        versions.remove(rh, v);
+                }
+
+                handles.clear();
+                writers.remove(xact);
+                xact.deleteObserver(this);
+            }
+        }
+    }
+
+    public RowVersions()
+    {
+    }
+
+    /**
+     * Save the row as it is before the transaction changes it.
+     * <p>
+     * Must be called while the page is latched and the row is locked for
+     * write by the transaction.  Only the first version saved by a
+     * transaction is kept, as that is the committed one.
+     *
+     * @param rawtran   The transaction which is changing the row.
+     * @param rh        The record handle of the row.
+     * @param row       The full row, or null if the transaction inserted it.
+     **/
+    public void saveVersion(
+    Transaction             rawtran,
+    RecordHandle            rh,
+    DataValueDescriptor[]   row)
+    {
+        Writer  writer  = getWriter(rawtran);
+        Version current = versions.get(rh);
+
+        if (current != null && current.writer == writer)
+            return;
+
+        if (versions.size() >= MAX_VERSIONS)
+        {
+            if (current != null)
+                versions.remove(rh, current);
+            return;
+        }
+
+        versions.put(rh, new Version(writer, row));
+        writer.handles.add(rh);
+    }
+
+    /**
+     * Return the saved version of the row, or null if there is none.
+     * <p>
+     * Must be called while the page is latched.
+     **/
+    public Version getVersion(RecordHandle rh)
+    {
+        return(versions.get(rh));
+    }
+
+    private Writer getWriter(Transaction rawtran)
+    {
+        Writer writer = writers.get(rawtran);
+
+        if (writer == null)
+        {
+            writer = new Writer((RawTransaction) rawtran);
+            writers.put(rawtran, writer);
+            writer.xact.addObserver(writer);
+        }
+
+        return(writer);
+    }
+}
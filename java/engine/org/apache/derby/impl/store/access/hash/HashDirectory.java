@@ -0,0 +1,449 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.hash.HashDirectory
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.hash;
+
+import java.util.Properties;
+
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.reference.Property;
+import org.apache.derby.iapi.services.io.FormatableBitSet;
+import org.apache.derby.iapi.store.access.AccessFactoryGlobals;
+import org.apache.derby.iapi.store.raw.ContainerHandle;
+import org.apache.derby.iapi.store.access.conglomerate.LogicalUndo;
+import org.apache.derby.iapi.store.raw.Page;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.iapi.types.SQLLongint;
+import org.apache.derby.shared.common.sanity.SanityManager;
+
+/**
+ * The layout of the pages of a hash index.
+ * <p>
+ * The first page of the container is the meta page.  Its first row holds the
+ * HashIndex conglomerate object, its second row holds the number of buckets
+ * of the index, the number of buckets described by each directory page and
+ * the number of overflow pages of all the buckets, and each following row
+ * holds the page number of one directory page.
+ * <p>
+ * The rows of a directory page hold the page numbers of the primary pages of
+ * consecutive buckets.  Bucket b is described by row (b % size) of directory
+ * page (b / size), where size is the number of buckets per directory page.
+ * <p>
+ * Every bucket page starts with a control row holding the page number of the
+ * next page of the bucket, or ContainerHandle.INVALID_PAGE_NUMBER for the
+ * last page of the bucket.  The index rows follow the control row, in no
+ * particular order.
+ * <p>
+ * The buckets are picked from the hash of a key by linear hashing.  With n
+ * buckets, the low order bits of the hash give a bucket number below the next
+ * power of two; if that bucket does not exist yet, one bit less is used.
+ * Adding bucket n splits bucket (n - next lower power of two), and moves the
+ * rows whose hash now picks bucket n.  Buckets are added while more than one
+ * in OVERFLOW_RATIO buckets would have an overflow page, so that most lookups
+ * read a single bucket page.
+ * <p>
+ * Latches are always gotten in the order meta page, directory page, bucket
+ * pages in chain order.  The meta page is held until the primary page of a
+ * bucket is latched, and a split holds it throughout, so a bucket never
+ * splits between finding its page and latching it.
+ **/
+
+final class HashDirectory
+{
+    /**
+     * Page number of the meta page.
+     **/
+    static final long META_PAGE = ContainerHandle.FIRST_PAGE_NUMBER;
+
+    /**
+     * Slots of the meta page.
+     **/
+    static final int CONGLOM_SLOT           = 0;
+    static final int SIZE_SLOT              = 1;
+    static final int FIRST_DIRECTORY_SLOT   = 2;
+
+    /**
+     * Slots of a bucket page.
+     **/
+    static final int CONTROL_SLOT           = 0;
+    static final int FIRST_ROW_SLOT         = 1;
+
+    /**
+     * Fields of the size row of the meta page.
+     **/
+    private static final int BUCKET_COUNT_FIELD   = 0;
+    private static final int DIRECTORY_SIZE_FIELD = 1;
+    private static final int OVERFLOW_COUNT_FIELD = 2;
+
+    /**
+     * The index is split until it has at most one overflow page for this
+     * many buckets.
+     **/
+    private static final int OVERFLOW_RATIO       = 8;
+
+    /**
+     * Space set aside for a row of a directory page, including its slot
+     * entry, and for the page header and trailer.
+     **/
+    private static final int DIRECTORY_ROW_SIZE   = 32;
+    private static final int PAGE_OVERHEAD        = 200;
+
+    private HashDirectory()
+    {
+    }
+
+    /**
+     * Set up the pages of a new hash index with a single bucket.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    static void create(ContainerHandle container, HashIndex conglom)
+        throws StandardException
+    {
+        Properties prop = new Properties();
+        prop.put(Property.PAGE_SIZE_PARAMETER, "");
+        container.getContainerProperties(prop);
+        int page_size =
+            Integer.parseInt(prop.getProperty(Property.PAGE_SIZE_PARAMETER));
+
+        Page meta = container.getPage(META_PAGE);
+
+        try
+        {
+            DataValueDescriptor[] control_row = new DataValueDescriptor[1];
+            control_row[0] = conglom;
+
+            meta.insertAtSlot(
+                CONGLOM_SLOT,
+                control_row,
+                (FormatableBitSet) null,
+                (LogicalUndo) null,
+                Page.INSERT_OVERFLOW,
+                AccessFactoryGlobals.HEAP_OVERFLOW_THRESHOLD);
+
+            DataValueDescriptor[] size_row = new DataValueDescriptor[3];
+            size_row[BUCKET_COUNT_FIELD]   = new SQLLongint(0);
+            size_row[DIRECTORY_SIZE_FIELD] =
+                new SQLLongint((page_size - PAGE_OVERHEAD) / DIRECTORY_ROW_SIZE);
+            size_row[OVERFLOW_COUNT_FIELD] = new SQLLongint(0);
+
+            insertLast(meta, size_row);
+
+            Page primary = addBucket(container, meta);
+
+            if (SanityManager.DEBUG)
+            {
+                SanityManager.ASSERT(primary != null);
+            }
+
+            primary.unlatch();
+        }
+        finally
+        {
+            meta.unlatch();
+        }
+    }
+
+    /**
+     * Pick the bucket of a hash code.
+     *
+     * @param hash  The hash code of a key.
+     * @param n     The number of buckets.
+     **/
+    static long bucketFor(int hash, long n)
+    {
+        long level  = Long.highestOneBit(n);
+        long bucket = hash & (2 * level - 1);
+
+        if (bucket >= n)
+            bucket = hash & (level - 1);
+
+        return(bucket);
+    }
+
+    /**
+     * Return the number of buckets, the meta page must be latched.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    static long getBucketCount(Page meta)
+        throws StandardException
+    {
+        return(getLong(meta, SIZE_SLOT, BUCKET_COUNT_FIELD));
+    }
+
+    /**
+     * Return the number of overflow pages of all the buckets, the meta page
+     * must be latched.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    static long getOverflowPageCount(Page meta)
+        throws StandardException
+    {
+        return(getLong(meta, SIZE_SLOT, OVERFLOW_COUNT_FIELD));
+    }
+
+    /**
+     * Add to the number of overflow pages, the meta page must be latched.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    static void addOverflowPages(Page meta, long delta)
+        throws StandardException
+    {
+        if (delta != 0)
+        {
+            meta.updateFieldAtSlot(
+                SIZE_SLOT, OVERFLOW_COUNT_FIELD,
+                new SQLLongint(getOverflowPageCount(meta) + delta),
+                (LogicalUndo) null);
+        }
+    }
+
+    /**
+     * Tell if the index has too many overflow pages for its number of
+     * buckets, the meta page must be latched.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    static boolean needsSplit(Page meta)
+        throws StandardException
+    {
+        return(getOverflowPageCount(meta) * OVERFLOW_RATIO >
+                    getBucketCount(meta));
+    }
+
+    /**
+     * Return the page number of the primary page of a bucket, the meta page
+     * must be latched.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    static long getPrimaryPageNumber(
+    ContainerHandle container,
+    Page            meta,
+    long            bucket)
+        throws StandardException
+    {
+        long dir_size = getLong(meta, SIZE_SLOT, DIRECTORY_SIZE_FIELD);
+
+        Page dir =
+            container.getPage(
+                getLong(
+                    meta,
+                    FIRST_DIRECTORY_SLOT + (int) (bucket / dir_size), 0));
+
+        try
+        {
+            return(getLong(dir, (int) (bucket % dir_size), 0));
+        }
+        finally
+        {
+            dir.unlatch();
+        }
+    }
+
+    /**
+     * Latch the primary page of the bucket of a hash code.
+     * <p>
+     * The meta page is latched until the primary page is, so that the bucket
+     * cannot be split in between.
+     *
+	 * @return The latched primary page of the bucket.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    static Page getBucketPage(ContainerHandle container, int hash)
+        throws StandardException
+    {
+        Page meta = container.getPage(META_PAGE);
+
+        try
+        {
+            return(container.getPage(
+                        getPrimaryPageNumber(
+                            container, meta,
+                            bucketFor(hash, getBucketCount(meta)))));
+        }
+        finally
+        {
+            meta.unlatch();
+        }
+    }
+
+    /**
+     * Return the page number of the next page of a bucket, or
+     * ContainerHandle.INVALID_PAGE_NUMBER if page is the last page.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    static long getNextPageNumber(Page page)
+        throws StandardException
+    {
+        return(getLong(page, CONTROL_SLOT, 0));
+    }
+
+    /**
+     * Link a page of a bucket to the next page.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    static void setNextPageNumber(Page page, long next_pageno)
+        throws StandardException
+    {
+        page.updateFieldAtSlot(
+            CONTROL_SLOT, 0, new SQLLongint(next_pageno), (LogicalUndo) null);
+    }
+
+    /**
+     * Add an empty last page to a bucket.
+     *
+     * @param container The container of the index.
+     * @param last      The latched last page of the bucket, or null for the
+     *                  primary page of a new bucket.
+     *
+	 * @return The latched new page.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    static Page addBucketPage(ContainerHandle container, Page last)
+        throws StandardException
+    {
+        Page page = container.addPage();
+
+        DataValueDescriptor[] control_row = new DataValueDescriptor[1];
+        control_row[0] = new SQLLongint(ContainerHandle.INVALID_PAGE_NUMBER);
+        insertLast(page, control_row);
+
+        if (last != null)
+            setNextPageNumber(last, page.getPageNumber());
+
+        return(page);
+    }
+
+    /**
+     * Add bucket number n, where n is the current number of buckets.
+     * <p>
+     * The primary page of the new bucket is added and entered in the
+     * directory, and the number of buckets is incremented.  The meta page must
+     * be latched, and it must not be unlatched before the rows of the split
+     * bucket are moved.
+     *
+	 * @return The latched primary page of the new bucket, or null if the
+     *         directory is full.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    static Page addBucket(ContainerHandle container, Page meta)
+        throws StandardException
+    {
+        long n        = getBucketCount(meta);
+        long dir_size = getLong(meta, SIZE_SLOT, DIRECTORY_SIZE_FIELD);
+        Page dir;
+
+        if (n % dir_size == 0)
+        {
+            // The last directory page is full, start a new one.
+            DataValueDescriptor[] dir_row = new DataValueDescriptor[1];
+            dir_row[0] = new SQLLongint(ContainerHandle.INVALID_PAGE_NUMBER);
+
+            if (!meta.spaceForInsert(
+                    dir_row, (FormatableBitSet) null,
+                    AccessFactoryGlobals.HEAP_OVERFLOW_THRESHOLD))
+            {
+                return(null);
+            }
+
+            dir = container.addPage();
+            dir_row[0] = new SQLLongint(dir.getPageNumber());
+            insertLast(meta, dir_row);
+        }
+        else
+        {
+            dir =
+                container.getPage(
+                    getLong(
+                        meta,
+                        FIRST_DIRECTORY_SLOT + (int) (n / dir_size), 0));
+        }
+
+        Page primary = null;
+
+        try
+        {
+            if (SanityManager.DEBUG)
+            {
+                SanityManager.ASSERT(dir.recordCount() == n % dir_size,
+                    "directory page " + dir.getPageNumber() + " has " +
+                    dir.recordCount() + " rows, expected " + (n % dir_size));
+            }
+
+            primary = addBucketPage(container, (Page) null);
+
+            DataValueDescriptor[] dir_row = new DataValueDescriptor[1];
+            dir_row[0] = new SQLLongint(primary.getPageNumber());
+            insertLast(dir, dir_row);
+
+            meta.updateFieldAtSlot(
+                SIZE_SLOT, BUCKET_COUNT_FIELD, new SQLLongint(n + 1),
+                (LogicalUndo) null);
+        }
+        finally
+        {
+            dir.unlatch();
+        }
+
+        return(primary);
+    }
+
+    /**
+     * Insert a control row after the last row of a page.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private static void insertLast(Page page, DataValueDescriptor[] row)
+        throws StandardException
+    {
+        page.insertAtSlot(
+            page.recordCount(),
+            row,
+            (FormatableBitSet) null,
+            (LogicalUndo) null,
+            Page.INSERT_DEFAULT,
+            AccessFactoryGlobals.HEAP_OVERFLOW_THRESHOLD);
+    }
+
+    /**
+     * Read a long field of a control row.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private static long getLong(Page page, int slot, int field)
+        throws StandardException
+    {
+        SQLLongint value = new SQLLongint();
+
+        page.fetchFieldFromSlot(slot, field, value);
+
+        return(value.getLong());
+    }
+}
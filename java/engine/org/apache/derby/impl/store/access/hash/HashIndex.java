@@ -0,0 +1,889 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.hash.HashIndex
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.hash;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Properties;
+
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.reference.SQLState;
+import org.apache.derby.iapi.services.cache.ClassSize;
+import org.apache.derby.iapi.services.io.FormatIdUtil;
+import org.apache.derby.iapi.services.io.FormatableBitSet;
+import org.apache.derby.iapi.services.io.Storable;
+import org.apache.derby.iapi.services.io.StoredFormatIds;
+import org.apache.derby.iapi.store.access.ColumnOrdering;
+import org.apache.derby.iapi.store.access.ConglomerateController;
+import org.apache.derby.iapi.store.access.DynamicCompiledOpenConglomInfo;
+import org.apache.derby.iapi.store.access.Qualifier;
+import org.apache.derby.iapi.store.access.RowLocationRetRowSource;
+import org.apache.derby.iapi.store.access.StaticCompiledOpenConglomInfo;
+import org.apache.derby.iapi.store.access.StoreCostController;
+import org.apache.derby.iapi.store.access.TransactionController;
+import org.apache.derby.iapi.store.access.conglomerate.Conglomerate;
+import org.apache.derby.iapi.store.access.conglomerate.ScanManager;
+import org.apache.derby.iapi.store.access.conglomerate.TransactionManager;
+import org.apache.derby.iapi.store.raw.ContainerHandle;
+import org.apache.derby.iapi.store.raw.ContainerKey;
+import org.apache.derby.iapi.store.raw.LockingPolicy;
+import org.apache.derby.iapi.store.raw.RawStoreFactory;
+import org.apache.derby.iapi.store.raw.Transaction;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.shared.common.sanity.SanityManager;
+
+import org.apache.derby.impl.store.access.conglomerate.ConglomerateUtil;
+import org.apache.derby.impl.store.access.conglomerate.GenericConglomerate;
+import org.apache.derby.impl.store.access.conglomerate.OpenConglomerateScratchSpace;
+import org.apache.derby.impl.store.access.conglomerate.TemplateRow;
+
+/**
+ * @derby.formatId ACCESS_HASH_V1_ID
+ *
+ * @derby.purpose   The tag that describes the on disk representation of the
+ *            hash index conglomerate object.  The object is stored in the
+ *            first row of the meta page of the hash index container.
+ *
+ * @derby.upgrade   This is the current version, no upgrade necessary.
+ *
+ * @derby.diskLayout
+ *     format_of_this_conlgomerate(byte[])
+ *     containerid(long)
+ *     segmentid(int)
+ *     number_of_columns(int)
+ *     array_of_format_ids(byte[][])
+ *     collation_ids(compressed array of ints)
+ *     ascend_column_info(boolean[])
+ *     base_conglomerate_id(long)
+ *     row_location_column(int)
+ *     unique(boolean)
+ **/
+
+/**
+ * A hash index is a secondary index which finds the rows with a given key
+ * value by hashing the key, rather than by searching an ordered tree.
+ * <p>
+ * The index uses linear hashing.  The rows are kept in buckets, each of
+ * which is a chain of pages.  The number of buckets grows by one every time
+ * a bucket runs out of space, by splitting the next bucket in turn, so an
+ * equality lookup reads the page of its bucket and seldom any other.  The
+ * pages of the buckets are found through directory pages, which are listed
+ * on the meta page of the container.  See HashDirectory for the layout.
+ * <p>
+ * As in a b-tree secondary index the index rows are the key columns followed
+ * by the RowLocation of the base row, and locking is done on the base rows.
+ * All the rows with the same key are in the same bucket, so a unique index
+ * checks for duplicate keys in the bucket of the key it inserts.  The rows
+ * of a bucket are in no particular order, so a scan which is not an
+ * equality lookup on all the key columns reads every bucket.
+ **/
+
+public class HashIndex
+    extends    GenericConglomerate
+    implements Conglomerate, StaticCompiledOpenConglomInfo
+{
+    /**
+     * Property name for the id of the base table conglomerate.
+     **/
+    public static final String PROPERTY_BASECONGLOMID = "baseConglomerateId";
+
+    /**
+     * Property name for the number of the column holding the RowLocation
+     * of the base row, which is the last column of the index row.
+     **/
+    public static final String PROPERTY_ROWLOCCOLUMN = "rowLocationColumn";
+
+    /**
+     * Property name for the number of columns which make a row unique.  A
+     * unique index has as many as it has key columns, any other index also
+     * counts the RowLocation column.
+     **/
+    public static final String PROPERTY_NUNIQUECOLUMNS = "nUniqueColumns";
+
+	/*
+	** Fields of HashIndex.
+	*/
+
+    /**
+     * Format id of the conglomerate.
+     **/
+	private int conglom_format_id;
+
+	private ContainerKey id;
+
+    /**
+     * The format id's of each of the columns of the index rows.
+     **/
+    int[]    format_ids;
+
+    /**
+    The array of collation id's for each column in the template.
+    **/
+    int[]   collation_ids;
+
+    /**
+     * Tells if there is at least one column in the conglomerate whose collation
+     * isn't StringDataValue.COLLATION_TYPE_UCS_BASIC.
+     */
+    private boolean hasCollatedTypes;
+
+    /**
+     * Whether each column is ascending or descending, used to filter the
+     * rows of scans with start and stop positions.
+     **/
+    boolean[] ascDescInfo;
+
+    /**
+     * The id of the base table conglomerate.
+     **/
+    long baseConglomerateId;
+
+    /**
+     * The number of the column holding the RowLocation of the base row, which
+     * is also the number of key columns that are hashed.
+     **/
+    int rowLocationColumn;
+
+    /**
+     * Whether no two rows of the index may have the same key columns.
+     **/
+    boolean unique;
+
+    private static final int BASE_MEMORY_USAGE =
+        ClassSize.estimateBaseFromCatalog(HashIndex.class);
+    private static final int CONTAINER_KEY_MEMORY_USAGE =
+        ClassSize.estimateBaseFromCatalog(ContainerKey.class);
+
+    public int estimateMemoryUsage()
+    {
+        int sz = BASE_MEMORY_USAGE;
+
+        if( null != id)
+            sz += CONTAINER_KEY_MEMORY_USAGE;
+        if( null != format_ids)
+            sz += format_ids.length*ClassSize.getIntSize();
+        return sz;
+    } // end of estimateMemoryUsage
+
+	/*
+	** Methods of HashIndex.
+	*/
+
+    /**
+     * Zero arg constructor for Monitor to create empty object.
+     **/
+    public HashIndex()
+    {
+    }
+
+    /**
+     * Create a hash index conglomerate.
+     * <p>
+     * Create the container, and set up its meta page, one directory page and
+     * the page of the first bucket.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	void create(
+    Transaction             rawtran,
+    int                     segmentId,
+    long                    input_containerid,
+    DataValueDescriptor[]   template,
+    ColumnOrdering[]        columnOrder,
+    int[]                   collationIds,
+    Properties              properties,
+	int                     tmpFlag)
+		throws StandardException
+	{
+        String property_value;
+
+        property_value = (properties == null) ?
+            null : properties.getProperty(PROPERTY_BASECONGLOMID);
+        if (property_value == null)
+        {
+            throw(StandardException.newException(
+                SQLState.BTREE_PROPERTY_NOT_FOUND, PROPERTY_BASECONGLOMID));
+        }
+        baseConglomerateId = Long.parseLong(property_value);
+
+        property_value = properties.getProperty(PROPERTY_ROWLOCCOLUMN);
+        if (property_value == null)
+        {
+            throw(StandardException.newException(
+                SQLState.BTREE_PROPERTY_NOT_FOUND, PROPERTY_ROWLOCCOLUMN));
+        }
+        rowLocationColumn = Integer.parseInt(property_value);
+
+        property_value = properties.getProperty(PROPERTY_NUNIQUECOLUMNS);
+        if (property_value == null)
+        {
+            throw(StandardException.newException(
+                SQLState.BTREE_PROPERTY_NOT_FOUND, PROPERTY_NUNIQUECOLUMNS));
+        }
+        unique = Integer.parseInt(property_value) == rowLocationColumn;
+
+        if (SanityManager.DEBUG)
+        {
+            SanityManager.ASSERT(rowLocationColumn == template.length - 1,
+                "rowLocationColumn = " + rowLocationColumn +
+                ", template.length = " + template.length);
+        }
+
+        format_ids = ConglomerateUtil.createFormatIds(template);
+        conglom_format_id = StoredFormatIds.ACCESS_HASH_V1_ID;
+
+        collation_ids =
+            ConglomerateUtil.createCollationIds(format_ids.length, collationIds);
+        hasCollatedTypes = hasCollatedColumns(collation_ids);
+
+        ascDescInfo = new boolean[template.length];
+        for (int i = 0; i < ascDescInfo.length; i++)
+        {
+            if (columnOrder != null && i < columnOrder.length)
+                ascDescInfo[i] = columnOrder[i].getIsAscending();
+            else
+                ascDescInfo[i] = true;
+        }
+
+		// Fill up the pages, the rows of a bucket are never updated in place.
+		properties.put(RawStoreFactory.PAGE_RESERVED_SPACE_PARAMETER, "0");
+		properties.put(RawStoreFactory.MINIMUM_RECORD_SIZE_PARAMETER, "1");
+
+		long containerid =
+            rawtran.addContainer(
+                segmentId, input_containerid,
+                ContainerHandle.MODE_DEFAULT, properties, tmpFlag);
+
+		if (containerid <= 0)
+        {
+            throw(StandardException.newException(
+                    SQLState.BTREE_CANT_CREATE_CONTAINER));
+        }
+
+		id = new ContainerKey(segmentId, containerid);
+
+        // No one can get to the container until it has been created, so it
+        // is opened without locks.
+        ContainerHandle container = null;
+
+        try
+        {
+            container =
+                rawtran.openContainer(
+                    id, (LockingPolicy) null,
+                    ContainerHandle.MODE_FORUPDATE |
+                        (isTemporary() ? ContainerHandle.MODE_TEMP_IS_KEPT : 0));
+
+            HashDirectory.create(container, this);
+
+            // Don't include the control rows in the estimated row count.
+            container.setEstimatedRowCount(0, /* unused flag */ 0);
+        }
+        finally
+        {
+            if (container != null)
+                container.close();
+        }
+	}
+
+    /**
+     * Create a new template of an index row.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    DataValueDescriptor[] createTemplate(Transaction rawtran)
+        throws StandardException
+    {
+        return(TemplateRow.newRow(
+                    rawtran, (FormatableBitSet) null,
+                    format_ids, collation_ids));
+    }
+
+    /**
+     * Hash the key columns of a row.
+     * <p>
+     * The first rowLocationColumn columns of the row are hashed.  A column
+     * which is not of the same class as the column of the index, for
+     * instance the value of a key to look up, is first converted to it, so
+     * that equal values always hash alike.
+     *
+     * @param row       The row or key to hash.
+     * @param template  A scratch template of an index row.
+     *
+	 * @return A non-negative hash code.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    int hash(DataValueDescriptor[] row, DataValueDescriptor[] template)
+        throws StandardException
+    {
+        int h = 0;
+
+        for (int i = 0; i < rowLocationColumn; i++)
+        {
+            DataValueDescriptor column = row[i];
+
+            if (column.getClass() != template[i].getClass())
+            {
+                template[i].setValue(column);
+                column = template[i];
+            }
+
+            h = 31 * h + (column.isNull() ? 0 : column.hashCode());
+        }
+
+        // Spread the bits, the buckets are picked by the low order bits.
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+
+        return(h & 0x7fffffff);
+    }
+
+    /**
+     * Compare the first columns of a row to a (partial) key in the order of
+     * the index columns.
+     *
+     * @param row           The index row.
+     * @param key           The key to compare to.
+     * @param num_columns   The number of columns to compare.
+     *
+	 * @return a negative, zero or positive number as the row is less than,
+     *         equal to or greater than the key.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    int compare(
+    DataValueDescriptor[]   row,
+    DataValueDescriptor[]   key,
+    int                     num_columns)
+        throws StandardException
+    {
+        for (int i = 0; i < num_columns; i++)
+        {
+            int r = row[i].compare(key[i]);
+
+            if (r != 0)
+                return(ascDescInfo[i] ? r : -r);
+        }
+
+        return(0);
+    }
+
+	/*
+	** Methods of Conglomerate
+	*/
+
+    /**
+     * Add a column to the conglomerate.
+     * <p>
+     * Columns are not added to indexes.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	public void addColumn(
+	TransactionManager  xact_manager,
+    int                 column_id,
+    Storable            template_column,
+    int                 collation_id)
+        throws StandardException
+    {
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+    }
+
+	/**
+	Drop this hash index.
+	@see Conglomerate#drop
+
+	@exception StandardException Standard exception policy.
+	**/
+	public void drop(TransactionManager xact_manager)
+		throws StandardException
+	{
+        // Get an exclusive lock on the base table, so that no one uses the
+        // index while it goes away.
+        ConglomerateController base_cc =
+            lockTable(
+                xact_manager,
+                TransactionController.OPENMODE_FORUPDATE,
+                TransactionController.MODE_TABLE,
+                TransactionController.ISOLATION_REPEATABLE_READ);
+
+        xact_manager.getRawStoreXact().dropContainer(id);
+
+        if (base_cc != null)
+            base_cc.close();
+	}
+
+    /**
+     * Lock the base table.
+     * <p>
+     * Open the base table for locking only, which gets the table lock, and
+     * return the controller which is used to lock rows of the base table.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    ConglomerateController lockTable(
+    TransactionManager  xact_manager,
+    int                 open_mode,
+    int                 lock_level,
+    int                 isolation_level)
+		throws StandardException
+    {
+        return(xact_manager.openConglomerate(
+                    baseConglomerateId, false,
+                    open_mode | TransactionController.OPENMODE_FOR_LOCK_ONLY,
+                    lock_level, isolation_level));
+    }
+
+    /**
+     * Retrieve the maximum value row in an ordered conglomerate.
+     * <p>
+     * A hash index is not ordered.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	public boolean fetchMaxOnBTree(
+	TransactionManager      xact_manager,
+    Transaction             rawtran,
+    long                    conglomId,
+    int                     open_mode,
+    int                     lock_level,
+    LockingPolicy           locking_policy,
+    int                     isolation_level,
+    FormatableBitSet        scanColumnList,
+    DataValueDescriptor[]   fetchRow)
+        throws StandardException
+    {
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+    }
+
+    public final ContainerKey getId()
+    {
+        return(id);
+    }
+
+    public final long getContainerid()
+    {
+        return(id.getContainerId());
+    }
+
+    /**
+     * Return dynamic information about the conglomerate to be dynamically
+     * reused in repeated execution of a statement.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public DynamicCompiledOpenConglomInfo getDynamicCompiledConglomInfo()
+		throws StandardException
+    {
+        return(new OpenConglomerateScratchSpace(
+                format_ids, collation_ids, hasCollatedTypes));
+    }
+
+    /**
+     * Return static information about the conglomerate to be included in a
+     * a compiled plan.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public StaticCompiledOpenConglomInfo getStaticCompiledConglomInfo(
+    TransactionController   tc,
+    long                    conglomId)
+		throws StandardException
+    {
+        return(this);
+    }
+
+    public boolean isTemporary()
+    {
+        return(id.getSegmentId() == ContainerHandle.TEMPORARY_SEGMENT);
+    }
+
+    /**
+     * Load the rows of a new index.
+     * <p>
+     * The rows are inserted one at a time, as they are spread over the
+     * buckets of the index.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	public long load(
+	TransactionManager      xact_manager,
+	boolean                 createConglom,
+	RowLocationRetRowSource rowSource)
+		 throws StandardException
+	{
+        long num_rows_loaded = 0;
+
+        HashIndexController controller = new HashIndexController();
+
+        try
+        {
+            controller.init(
+                xact_manager,
+                xact_manager.getRawStoreXact(),
+                false,
+                TransactionController.OPENMODE_FORUPDATE,
+                TransactionController.MODE_TABLE,
+                this,
+                (DynamicCompiledOpenConglomInfo) null);
+
+            DataValueDescriptor[] row;
+            while ((row = rowSource.getNextRowFromRowSource()) != null)
+            {
+                num_rows_loaded++;
+                controller.insert(row);
+            }
+        }
+        finally
+        {
+            rowSource.closeRowSource();
+            controller.close();
+        }
+
+        return(num_rows_loaded);
+	}
+
+    /**
+     * Open a hash index controller.
+     *
+	 * @see Conglomerate#open
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	public ConglomerateController open(
+    TransactionManager              xact_manager,
+    Transaction                     rawtran,
+    boolean                         hold,
+    int                             open_mode,
+    int                             lock_level,
+    LockingPolicy                   locking_policy,
+    StaticCompiledOpenConglomInfo   static_info,
+    DynamicCompiledOpenConglomInfo  dynamic_info)
+		throws StandardException
+	{
+        HashIndexController controller = new HashIndexController();
+
+        controller.init(
+            xact_manager, rawtran, hold, open_mode, lock_level, this,
+            dynamic_info);
+
+        return(controller);
+	}
+
+    /**
+     * Open a hash index scan.
+     *
+     * @see Conglomerate#openScan
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	public ScanManager openScan(
+    TransactionManager              xact_manager,
+    Transaction                     rawtran,
+    boolean                         hold,
+    int                             open_mode,
+    int                             lock_level,
+    LockingPolicy                   locking_policy,
+    int                             isolation_level,
+	FormatableBitSet				scanColumnList,
+    DataValueDescriptor[]	        startKeyValue,
+    int                             startSearchOperator,
+    Qualifier                       qualifier[][],
+    DataValueDescriptor[]	        stopKeyValue,
+    int                             stopSearchOperator,
+    StaticCompiledOpenConglomInfo   static_info,
+    DynamicCompiledOpenConglomInfo  dynamic_info)
+		throws StandardException
+	{
+        HashIndexScan scan = new HashIndexScan();
+
+        scan.init(
+            xact_manager, rawtran, hold, open_mode, lock_level,
+            isolation_level, this, scanColumnList,
+            startKeyValue, startSearchOperator, qualifier,
+            stopKeyValue, stopSearchOperator, dynamic_info);
+
+        return(scan);
+	}
+
+    /**
+     * Committed deleted rows are purged from a bucket when an insert finds
+     * no room in it, so there is nothing else to do here.
+     **/
+	public void purgeConglomerate(
+    TransactionManager              xact_manager,
+    Transaction                     rawtran)
+        throws StandardException
+    {
+        return;
+    }
+
+    /**
+     * Return the free pages at the end of the container to the file system.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	public void compressConglomerate(
+    TransactionManager              xact_manager,
+    Transaction                     rawtran)
+        throws StandardException
+    {
+        ConglomerateController base_cc = null;
+        OpenHashIndex open_conglom = null;
+
+        try
+        {
+            // Lock the base table exclusively, no one else may use the index
+            // while its pages are released.
+            base_cc =
+                lockTable(
+                    xact_manager,
+                    TransactionController.OPENMODE_FORUPDATE,
+                    TransactionController.MODE_TABLE,
+                    TransactionController.ISOLATION_REPEATABLE_READ);
+
+            open_conglom = new OpenHashIndex();
+
+            if (open_conglom.init(
+                    (ContainerHandle) null,
+                    this,
+                    this.format_ids,
+                    this.collation_ids,
+                    xact_manager,
+                    rawtran,
+                    false,
+                    TransactionController.OPENMODE_FORUPDATE,
+                    TransactionController.MODE_TABLE,
+                    (LockingPolicy) null,
+                    (DynamicCompiledOpenConglomInfo) null) == null)
+            {
+                throw StandardException.newException(
+                        SQLState.BTREE_CONTAINER_NOT_FOUND,
+                        id.getContainerId());
+            }
+
+            open_conglom.getContainer().compressContainer();
+        }
+        finally
+        {
+            if (open_conglom != null)
+                open_conglom.close();
+            if (base_cc != null)
+                base_cc.close();
+        }
+    }
+
+    /**
+     * The buckets of a hash index have no underfilled leaves to merge, their
+     * emptied overflow pages are freed when a bucket is split.
+     **/
+	public void shrinkConglomerate(
+    TransactionManager              xact_manager,
+    Transaction                     rawtran)
+        throws StandardException
+    {
+        return;
+    }
+
+    /**
+     * Open a compress scan.
+     * <p>
+     * Rows of an index are not moved by a defragment.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	public ScanManager defragmentConglomerate(
+    TransactionManager              xact_manager,
+    Transaction                     rawtran,
+    boolean                         hold,
+    int                             open_mode,
+    int                             lock_level,
+    LockingPolicy                   locking_policy,
+    int                             isolation_level)
+		throws StandardException
+	{
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+	}
+
+    /**
+     * Return an open StoreCostController for the conglomerate.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     *
+     * @see StoreCostController
+     **/
+    public StoreCostController openStoreCost(
+    TransactionManager  xact_manager,
+    Transaction         rawtran)
+		throws StandardException
+    {
+        OpenHashIndex open_conglom = new OpenHashIndex();
+
+        if (open_conglom.init(
+                (ContainerHandle) null,
+                this,
+                this.format_ids,
+                this.collation_ids,
+                xact_manager,
+                rawtran,
+                false,
+                ContainerHandle.MODE_READONLY,
+                TransactionController.MODE_TABLE,
+                (LockingPolicy) null,
+                (DynamicCompiledOpenConglomInfo) null) == null)
+        {
+            throw StandardException.newException(
+                    SQLState.BTREE_CONTAINER_NOT_FOUND,
+                    id.getContainerId());
+        }
+
+        HashIndexCostController costController =
+            new HashIndexCostController();
+
+        costController.init(open_conglom);
+
+		return(costController);
+    }
+
+    /**
+     * Print this hash index.
+     **/
+    public String toString()
+    {
+        return (id == null) ? "null" : id.toString();
+    }
+
+    /**************************************************************************
+     * Public Methods of StaticCompiledOpenConglomInfo Interface:
+     **************************************************************************
+     */
+
+    /**
+     * return the "Conglomerate".
+     * <p>
+     * The hash index both implements Conglomerate and
+     * StaticCompiledOpenConglomInfo.
+     *
+	 * @return this
+     **/
+    public DataValueDescriptor getConglom()
+    {
+        return(this);
+    }
+
+    /**************************************************************************
+	 * Methods of Storable (via Conglomerate)
+	 * Storable interface, implies Externalizable, TypedFormat
+     **************************************************************************
+     */
+
+    /**
+     * Return my format identifier.
+     *
+     * @see org.apache.derby.iapi.services.io.TypedFormat#getTypeFormatId
+     **/
+	public int getTypeFormatId()
+    {
+		return StoredFormatIds.ACCESS_HASH_V1_ID;
+	}
+
+    /**
+     * Return whether the value is null or not.
+     *
+	 * @see org.apache.derby.iapi.services.io.Storable#isNull
+     **/
+	public boolean isNull()
+	{
+		return id == null;
+	}
+
+    /**
+     * Restore the in-memory representation to the null value.
+     *
+     * @see org.apache.derby.iapi.services.io.Storable#restoreToNull
+     **/
+	public void restoreToNull()
+	{
+		id = null;
+	}
+
+    /**
+     * Store the stored representation of column value in stream.
+     **/
+	public void writeExternal(ObjectOutput out) throws IOException
+    {
+        FormatIdUtil.writeFormatIdInteger(out, conglom_format_id);
+
+		out.writeInt((int) id.getSegmentId());
+        out.writeLong(id.getContainerId());
+
+        out.writeInt(format_ids.length);
+        ConglomerateUtil.writeFormatIdArray(format_ids, out);
+        ConglomerateUtil.writeCollationIdArray(collation_ids, out);
+
+        for (int i = 0; i < ascDescInfo.length; i++)
+            out.writeBoolean(ascDescInfo[i]);
+
+        out.writeLong(baseConglomerateId);
+        out.writeInt(rowLocationColumn);
+        out.writeBoolean(unique);
+	}
+
+    /**
+     * Restore the in-memory representation from the stream.
+     *
+     * @see java.io.Externalizable#readExternal
+     **/
+    public void readExternal(ObjectInput in)
+		throws IOException, ClassNotFoundException
+	{
+        conglom_format_id = FormatIdUtil.readFormatIdInteger(in);
+
+		int segmentid = in.readInt();
+        long containerid = in.readLong();
+
+		id = new ContainerKey(segmentid, containerid);
+
+        int num_columns = in.readInt();
+        format_ids = ConglomerateUtil.readFormatIdArray(num_columns, in);
+
+        collation_ids = new int[format_ids.length];
+        hasCollatedTypes =
+            ConglomerateUtil.readCollationIdArray(collation_ids, in);
+
+        ascDescInfo = new boolean[num_columns];
+        for (int i = 0; i < num_columns; i++)
+            ascDescInfo[i] = in.readBoolean();
+
+        baseConglomerateId = in.readLong();
+        rowLocationColumn = in.readInt();
+        unique = in.readBoolean();
+    }
+}
@@ -0,0 +1,993 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.hash.HashIndexController
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.hash;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.reference.SQLState;
+import org.apache.derby.iapi.services.io.FormatableBitSet;
+import org.apache.derby.iapi.services.locks.C_LockFactory;
+import org.apache.derby.iapi.services.locks.LockFactory;
+import org.apache.derby.iapi.services.locks.ShExQual;
+import org.apache.derby.iapi.store.access.AccessFactoryGlobals;
+import org.apache.derby.iapi.store.access.ConglomerateController;
+import org.apache.derby.iapi.store.access.DynamicCompiledOpenConglomInfo;
+import org.apache.derby.iapi.store.access.RowUtil;
+import org.apache.derby.iapi.store.access.TransactionController;
+import org.apache.derby.iapi.store.access.conglomerate.TransactionManager;
+import org.apache.derby.iapi.store.raw.ContainerHandle;
+import org.apache.derby.iapi.store.raw.FetchDescriptor;
+import org.apache.derby.iapi.store.raw.LockingPolicy;
+import org.apache.derby.iapi.store.raw.Page;
+import org.apache.derby.iapi.store.raw.RecordHandle;
+import org.apache.derby.iapi.store.raw.Transaction;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.iapi.types.RowLocation;
+import org.apache.derby.shared.common.sanity.SanityManager;
+
+/**
+ * A hash index controller, which inserts rows into a hash index.
+ * <p>
+ * A row goes to the first page of its bucket with room for it.  When there
+ * is none, an internal transaction first tries to purge the committed deleted
+ * rows of the bucket, as the b-tree does before it splits a leaf, and else
+ * adds an overflow page to the bucket and splits the next bucket in turn.
+ * <p>
+ * An insert gets instant insert locks on the hash of its key and on the whole
+ * index, so that it waits for the serializable scans which have read the rows
+ * of that key, or all the rows of the index.
+ **/
+
+public class HashIndexController
+    extends OpenHashIndex implements ConglomerateController
+{
+    /**
+     * Used to get the insert locks, and the locks of committed deleted rows.
+     **/
+    private ConglomerateController base_cc;
+
+    private int lock_level;
+
+    /**
+     * Scratch space, for the rows read from the pages of a bucket and for
+     * the hashing of keys.
+     **/
+    private DataValueDescriptor[] scratch_row;
+    private DataValueDescriptor[] hash_template;
+    private FetchDescriptor       rowloc_fetch_desc;
+
+    /**
+     * Open the container of the hash index, and the base table for locking.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    void init(
+    TransactionManager              xact_manager,
+    Transaction                     rawtran,
+    boolean                         hold,
+    int                             open_mode,
+    int                             lock_level,
+    HashIndex                       conglomerate,
+    DynamicCompiledOpenConglomInfo  dynamic_info)
+        throws StandardException
+    {
+        if (super.init(
+                (ContainerHandle) null,
+                conglomerate,
+                conglomerate.format_ids,
+                conglomerate.collation_ids,
+                xact_manager,
+                rawtran,
+                hold,
+                open_mode,
+                lock_level,
+                (LockingPolicy) null,
+                dynamic_info) == null)
+        {
+            throw StandardException.newException(
+                    SQLState.BTREE_CONTAINER_NOT_FOUND,
+                    conglomerate.getContainerid());
+        }
+
+        this.lock_level = lock_level;
+
+        base_cc =
+            conglomerate.lockTable(
+                xact_manager, open_mode, lock_level,
+                TransactionController.ISOLATION_REPEATABLE_READ);
+
+        scratch_row       = getRuntimeMem().get_scratch_row(rawtran);
+        hash_template     = getRuntimeMem().get_template(rawtran);
+        rowloc_fetch_desc =
+            RowUtil.getFetchDescriptorConstant(
+                conglomerate.rowLocationColumn);
+    }
+
+    private HashIndex getHashIndex()
+    {
+        return((HashIndex) getConglomerate());
+    }
+
+    /**
+     * Get the instant insert locks on the hash of a key, and on the index.
+     *
+	 * @return true if the locks were granted, only false if wait is false.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private boolean lockForInsert(int hash, boolean wait)
+        throws StandardException
+    {
+        long containerid = getHashIndex().getContainerid();
+        int  lock_oper   =
+            ConglomerateController.LOCK_UPD |
+            ConglomerateController.LOCK_INS_PREVKEY;
+
+        return(
+            base_cc.lockRow(
+                (containerid << 32) | hash, RecordHandle.HASH_KEY_HANDLE,
+                lock_oper, wait, TransactionManager.LOCK_INSTANT_DURATION) &&
+            base_cc.lockRow(
+                containerid, RecordHandle.HASH_INDEX_HANDLE,
+                lock_oper, wait, TransactionManager.LOCK_INSTANT_DURATION));
+    }
+
+    /**
+     * Latch all the pages of a bucket, in chain order.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    static void latchChain(
+    ContainerHandle container,
+    Page            primary,
+    List<Page>      chain)
+        throws StandardException
+    {
+        chain.add(primary);
+
+        long next_pageno = HashDirectory.getNextPageNumber(primary);
+
+        while (next_pageno != ContainerHandle.INVALID_PAGE_NUMBER)
+        {
+            Page page = container.getPage(next_pageno);
+            chain.add(page);
+            next_pageno = HashDirectory.getNextPageNumber(page);
+        }
+    }
+
+    static void unlatchChain(List<Page> chain)
+    {
+        for (Page page : chain)
+            page.unlatch();
+
+        chain.clear();
+    }
+
+    /**
+     * Insert a row, see insert().
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private int doIns(DataValueDescriptor[] row)
+        throws StandardException
+    {
+        HashIndex       conglom     = getHashIndex();
+        ContainerHandle container   = getContainer();
+        int             hash        = conglom.hash(row, hash_template);
+        List<Page>      chain       = new ArrayList<Page>();
+        RowLocation     row_loc     =
+            (RowLocation) row[conglom.rowLocationColumn];
+
+    bucket:
+        while (true)
+        {
+            latchChain(
+                container, HashDirectory.getBucketPage(container, hash), chain);
+
+            try
+            {
+                if (!lockForInsert(hash, false))
+                {
+                    // Wait for the locks without latches, and start over.
+                    unlatchChain(chain);
+                    lockForInsert(hash, true);
+                    continue;
+                }
+
+                Page    target        = null;
+                boolean has_empty_page = false;
+
+                for (Page page : chain)
+                {
+                    int num_rows = page.recordCount();
+
+                    if (num_rows == HashDirectory.FIRST_ROW_SLOT)
+                        has_empty_page = true;
+
+                    for (int slot = HashDirectory.FIRST_ROW_SLOT;
+                         slot < num_rows;
+                         slot++)
+                    {
+                        // Unless the index is unique, only the row of the
+                        // same base row can be the same, so check the row
+                        // location before the key.
+                        page.fetchFromSlot(
+                            (RecordHandle) null, slot, scratch_row,
+                            rowloc_fetch_desc, true);
+
+                        boolean same_base_row =
+                            scratch_row[conglom.rowLocationColumn].equals(
+                                row_loc);
+
+                        if (!same_base_row && !conglom.unique)
+                            continue;
+
+                        page.fetchFromSlot(
+                            (RecordHandle) null, slot, scratch_row,
+                            (FetchDescriptor) null, true);
+
+                        if (conglom.compare(
+                                scratch_row, row,
+                                conglom.rowLocationColumn) != 0)
+                        {
+                            continue;
+                        }
+
+                        if (!same_base_row)
+                        {
+                            // Another row has the same key.  Wait for the
+                            // transaction which inserted or deleted it, as
+                            // the b-tree does, to find out whether it stays.
+                            RowLocation other_loc = (RowLocation)
+                                scratch_row[conglom.rowLocationColumn];
+
+                            if (!base_cc.lockRow(
+                                    other_loc,
+                                    ConglomerateController.LOCK_UPD,
+                                    false,
+                                    TransactionManager.LOCK_COMMIT_DURATION))
+                            {
+                                // Wait for the lock without latches, and
+                                // start over.
+                                unlatchChain(chain);
+                                base_cc.lockRow(
+                                    other_loc,
+                                    ConglomerateController.LOCK_UPD,
+                                    true,
+                                    TransactionManager.LOCK_COMMIT_DURATION);
+                                continue bucket;
+                            }
+
+                            if (page.isDeletedAtSlot(slot))
+                                continue;
+
+                            return(ConglomerateController.ROWISDUPLICATE);
+                        }
+
+                        if (!page.isDeletedAtSlot(slot))
+                            return(ConglomerateController.ROWISDUPLICATE);
+
+                        // The row was deleted by this transaction, as the
+                        // base row is locked, so bring it back.
+                        page.deleteAtSlot(slot, false, hash_undo);
+                        return(0);
+                    }
+
+                    if (target == null &&
+                        page.spaceForInsert(
+                            row, (FormatableBitSet) null,
+                            AccessFactoryGlobals.BTREE_OVERFLOW_THRESHOLD))
+                    {
+                        target = page;
+                    }
+                }
+
+                if (target != null)
+                {
+                    target.insertAtSlot(
+                        target.recordCount(),
+                        row,
+                        (FormatableBitSet) null,
+                        hash_undo,
+                        Page.INSERT_DEFAULT,
+                        AccessFactoryGlobals.BTREE_OVERFLOW_THRESHOLD);
+
+                    return(0);
+                }
+
+                if (has_empty_page)
+                {
+                    // The row does not fit on an empty page.
+                    throw StandardException.newException(
+                            SQLState.BTREE_NO_SPACE_FOR_KEY);
+                }
+            }
+            finally
+            {
+                unlatchChain(chain);
+            }
+
+            if (start_xact_and_grow(hash))
+            {
+                while (start_xact_and_split())
+                    ;
+            }
+        }
+    }
+
+    /**
+     * Open the hash index in an internal transaction.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private OpenHashIndex openInternal(TransactionManager split_xact)
+        throws StandardException
+    {
+        OpenHashIndex split_open = new OpenHashIndex();
+
+        split_open.init(
+            (ContainerHandle) null,
+            getConglomerate(),
+            getHashIndex().format_ids,
+            getHashIndex().collation_ids,
+            split_xact,
+            split_xact.getRawStoreXact(),
+            false,
+            getOpenMode(),
+            TransactionManager.MODE_NONE,
+            (LockingPolicy) null,
+            (DynamicCompiledOpenConglomInfo) null);
+
+        return(split_open);
+    }
+
+    /**
+     * Try to get the split lock of the index exclusive, without waiting.
+     **/
+    private boolean lockForSplit(TransactionManager split_xact)
+        throws StandardException
+    {
+        LockFactory lf          = split_xact.getAccessManager().getLockFactory();
+        Transaction split_rawtran = split_xact.getRawStoreXact();
+
+        return(lf.lockObject(
+                    split_rawtran.getCompatibilitySpace(), split_rawtran,
+                    new HashIndexSplitLock(getConglomerate().getId()),
+                    ShExQual.EX, C_LockFactory.NO_WAIT));
+    }
+
+    /**
+     * Make room in the bucket of a hash code which has none.
+     * <p>
+     * In an internal transaction, purge the committed deleted rows of the
+     * bucket, or if there are none, add an overflow page to the bucket.  The
+     * transaction gets no locks which could conflict with the current user
+     * transaction, except without waiting.
+     *
+	 * @return true if the index now has too many overflow pages.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private boolean start_xact_and_grow(int hash)
+        throws StandardException
+    {
+        TransactionManager split_xact =
+            getXactMgr().getInternalTransaction();
+        OpenHashIndex   split_open = openInternal(split_xact);
+        ContainerHandle container  = split_open.getContainer();
+        List<Page>      chain      = new ArrayList<Page>();
+        boolean         purged     = false;
+        boolean         split;
+
+        Page meta = container.getPage(HashDirectory.META_PAGE);
+
+        try
+        {
+            // Rows may only be purged while no scan is positioned on them.
+            boolean can_purge = lockForSplit(split_xact);
+
+            // The meta page stays latched, for the count of overflow pages.
+            latchChain(
+                container,
+                container.getPage(
+                    HashDirectory.getPrimaryPageNumber(
+                        container, meta,
+                        HashDirectory.bucketFor(
+                            hash, HashDirectory.getBucketCount(meta)))),
+                chain);
+
+            if (can_purge)
+                purged = reclaim_deleted_rows(split_xact, chain);
+
+            if (!purged)
+            {
+                chain.add(
+                    HashDirectory.addBucketPage(
+                        container, chain.get(chain.size() - 1)));
+                HashDirectory.addOverflowPages(meta, 1);
+            }
+
+            split = HashDirectory.needsSplit(meta);
+
+            split_xact.commit();
+        }
+        finally
+        {
+            meta.unlatch();
+            unlatchChain(chain);
+        }
+
+        split_open.close();
+        split_xact.destroy();
+
+        return(split);
+    }
+
+    /**
+     * Purge the committed deleted rows of a bucket.
+     * <p>
+     * Like the b-tree, a deleted row whose base row can be locked exclusive
+     * without waiting was deleted by a committed transaction.  The pages are
+     * left latched until the internal transaction commits.
+     *
+	 * @return true if at least one row was purged.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private boolean reclaim_deleted_rows(
+    TransactionManager  split_xact,
+    List<Page>          chain)
+        throws StandardException
+    {
+        ConglomerateController reclaim_base_cc = null;
+
+        try
+        {
+            reclaim_base_cc =
+                getHashIndex().lockTable(
+                    split_xact,
+                    (ContainerHandle.MODE_FORUPDATE |
+                     ContainerHandle.MODE_LOCK_NOWAIT),
+                    TransactionController.MODE_RECORD,
+                    TransactionController.ISOLATION_REPEATABLE_READ);
+        }
+        catch (StandardException se)
+        {
+            // any error just don't try to reclaim deleted rows.  The
+            // expected error is that we can't get the lock.
+            return(false);
+        }
+
+        boolean purged = false;
+        int     rowloc_column = getHashIndex().rowLocationColumn;
+
+        try
+        {
+            for (Page page : chain)
+            {
+                if (page.recordCount() == page.nonDeletedRecordCount())
+                    continue;
+
+                // loop backward so that purges don't move the rows not yet
+                // looked at.
+                for (int slot = page.recordCount() - 1;
+                     slot >= HashDirectory.FIRST_ROW_SLOT;
+                     slot--)
+                {
+                    if (!page.isDeletedAtSlot(slot))
+                        continue;
+
+                    page.fetchFromSlot(
+                        (RecordHandle) null, slot, scratch_row,
+                        rowloc_fetch_desc, true);
+
+                    if (reclaim_base_cc.lockRow(
+                            (RowLocation) scratch_row[rowloc_column],
+                            ConglomerateController.LOCK_UPD,
+                            false /* NOWAIT */,
+                            TransactionManager.LOCK_COMMIT_DURATION))
+                    {
+                        page.purgeAtSlot(slot, 1, true);
+                        purged = true;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            reclaim_base_cc.close();
+        }
+
+        return(purged);
+    }
+
+    /**
+     * Split the next bucket in turn.
+     * <p>
+     * In an internal transaction, add the next bucket and move the rows
+     * whose hash now picks it from the bucket being split.  The pages of the
+     * split bucket are compacted, and the emptied overflow pages freed.  The
+     * bucket is left alone if a scan of the index is open, or if the
+     * directory is full.
+     *
+	 * @return true if a bucket was split, and the index still has too many
+     *         overflow pages.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private boolean start_xact_and_split()
+        throws StandardException
+    {
+        TransactionManager split_xact =
+            getXactMgr().getInternalTransaction();
+        OpenHashIndex   split_open = openInternal(split_xact);
+        ContainerHandle container  = split_open.getContainer();
+        List<Page>      chain      = new ArrayList<Page>();
+        List<Page>      new_chain  = new ArrayList<Page>();
+        boolean         split_more = false;
+
+        Page meta = container.getPage(HashDirectory.META_PAGE);
+
+        try
+        {
+            if (lockForSplit(split_xact))
+            {
+                long n     = HashDirectory.getBucketCount(meta);
+                long split = n - Long.highestOneBit(n);
+
+                long split_pageno =
+                    HashDirectory.getPrimaryPageNumber(container, meta, split);
+
+                Page primary = HashDirectory.addBucket(container, meta);
+
+                if (primary != null)
+                {
+                    new_chain.add(primary);
+
+                    latchChain(container, container.getPage(split_pageno), chain);
+
+                    int overflow_pages = chain.size() - 1;
+
+                    moveRows(container, chain, new_chain, n);
+                    compactChain(container, chain);
+
+                    HashDirectory.addOverflowPages(
+                        meta,
+                        (chain.size() - 1) + (new_chain.size() - 1) -
+                            overflow_pages);
+
+                    split_more = HashDirectory.needsSplit(meta);
+                }
+            }
+
+            split_xact.commit();
+        }
+        finally
+        {
+            meta.unlatch();
+            unlatchChain(chain);
+            unlatchChain(new_chain);
+        }
+
+        split_open.close();
+        split_xact.destroy();
+
+        return(split_more);
+    }
+
+    /**
+     * Move the rows of a bucket which belong to the new bucket number n.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private void moveRows(
+    ContainerHandle container,
+    List<Page>      chain,
+    List<Page>      new_chain,
+    long            n)
+        throws StandardException
+    {
+        HashIndex conglom = getHashIndex();
+
+        for (Page page : chain)
+        {
+            int slot = HashDirectory.FIRST_ROW_SLOT;
+
+            while (slot < page.recordCount())
+            {
+                page.fetchFromSlot(
+                    (RecordHandle) null, slot, scratch_row,
+                    (FetchDescriptor) null, true);
+
+                if (HashDirectory.bucketFor(
+                        conglom.hash(scratch_row, hash_template), n + 1) != n)
+                {
+                    slot++;
+                    continue;
+                }
+
+                Page dest = new_chain.get(new_chain.size() - 1);
+
+                if (!dest.spaceForCopy(page, slot, 1))
+                {
+                    dest = HashDirectory.addBucketPage(container, dest);
+                    new_chain.add(dest);
+                }
+
+                page.copyAndPurge(dest, slot, 1, dest.recordCount());
+            }
+        }
+    }
+
+    /**
+     * Move the rows of the overflow pages of a bucket to its earlier pages
+     * where they fit, and free the overflow pages which are left empty.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private void compactChain(ContainerHandle container, List<Page> chain)
+        throws StandardException
+    {
+        int i = 1;
+
+        while (i < chain.size())
+        {
+            Page page = chain.get(i);
+            int  slot = HashDirectory.FIRST_ROW_SLOT;
+
+            while (slot < page.recordCount())
+            {
+                Page dest = null;
+
+                for (int j = 0; j < i && dest == null; j++)
+                {
+                    if (chain.get(j).spaceForCopy(page, slot, 1))
+                        dest = chain.get(j);
+                }
+
+                if (dest == null)
+                    slot++;
+                else
+                    page.copyAndPurge(dest, slot, 1, dest.recordCount());
+            }
+
+            if (page.recordCount() == HashDirectory.FIRST_ROW_SLOT)
+            {
+                // Unlink the empty page, and free it, which unlatches it.
+                HashDirectory.setNextPageNumber(
+                    chain.get(i - 1), HashDirectory.getNextPageNumber(page));
+                chain.remove(i);
+                container.removePage(page);
+            }
+            else
+            {
+                i++;
+            }
+        }
+    }
+
+	/*
+	** Methods of ConglomerateController
+	*/
+
+    /**
+    Close the conglomerate controller.
+
+	@see ConglomerateController#close
+    **/
+    public void close()
+        throws StandardException
+	{
+		super.close();
+
+        if (base_cc != null)
+        {
+            base_cc.close();
+            base_cc = null;
+        }
+
+		// If we are closed due to catching an error in the middle of init,
+		// xact_manager may not be set yet. 
+		if (getXactMgr() != null)
+			getXactMgr().closeMe(this);
+	}
+
+    /**
+     * Close conglomerate controller as part of terminating a transaction.
+     *
+     * @see ConglomerateController#closeForEndTransaction
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public boolean closeForEndTransaction(boolean closeHeldScan)
+		throws StandardException
+    {
+        super.close();
+
+        if ((!getHold()) || closeHeldScan) 
+        {
+            // If we are closed due to catching an error in the middle of init,
+            // xact_manager may not be set yet. 
+            if (getXactMgr() != null)
+                getXactMgr().closeMe(this);
+
+            return(true);
+        }
+        else
+        {
+            return(false);
+        }
+    }
+
+    /**
+     * Check the consistency of the hash index.
+     * <p>
+     * Check that the rows of each bucket hash to that bucket.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public void checkConsistency()
+		throws StandardException
+    {
+        if (SanityManager.DEBUG)
+        {
+            HashIndex       conglom   = getHashIndex();
+            ContainerHandle container = getContainer();
+            List<Page>      chain     = new ArrayList<Page>();
+
+            Page meta = container.getPage(HashDirectory.META_PAGE);
+
+            try
+            {
+                long n = HashDirectory.getBucketCount(meta);
+
+                for (long bucket = 0; bucket < n; bucket++)
+                {
+                    latchChain(
+                        container,
+                        container.getPage(
+                            HashDirectory.getPrimaryPageNumber(
+                                container, meta, bucket)),
+                        chain);
+
+                    for (Page page : chain)
+                    {
+                        for (int slot = HashDirectory.FIRST_ROW_SLOT;
+                             slot < page.recordCount();
+                             slot++)
+                        {
+                            page.fetchFromSlot(
+                                (RecordHandle) null, slot, scratch_row,
+                                (FetchDescriptor) null, true);
+
+                            long row_bucket =
+                                HashDirectory.bucketFor(
+                                    conglom.hash(scratch_row, hash_template),
+                                    n);
+
+                            if (row_bucket != bucket)
+                            {
+                                SanityManager.THROWASSERT(
+                                    "row at slot " + slot + " of page " +
+                                    page.getPageNumber() + " of bucket " +
+                                    bucket + " belongs to bucket " +
+                                    row_bucket);
+                            }
+                        }
+                    }
+
+                    unlatchChain(chain);
+                }
+            }
+            finally
+            {
+                unlatchChain(chain);
+                meta.unlatch();
+            }
+        }
+    }
+
+    /**
+    Insert a row into the conglomerate.
+
+    @return 0 if the row was inserted, or ROWISDUPLICATE if the same row is
+    already in the index, or a unique index has another row with the same
+    key.
+
+	@see ConglomerateController#insert
+
+    @exception StandardException Standard exception policy.
+    **/
+	public int insert(DataValueDescriptor[] row) 
+         throws StandardException
+    {
+		if (isClosed())
+        {
+            if (getHold())
+            {
+                reopen();
+
+                base_cc =
+                    getHashIndex().lockTable(
+                        getXactMgr(), getOpenMode(), lock_level,
+                        TransactionController.ISOLATION_REPEATABLE_READ);
+            }
+            else
+            {
+                throw StandardException.newException(
+                            SQLState.BTREE_IS_CLOSED,
+                            getHashIndex().getContainerid());
+            } 
+        }
+
+		return doIns(row);
+	}
+
+    /**
+	Return whether this is a keyed conglomerate.
+	<p>
+	All hash indexes are keyed.
+	@see ConglomerateController#isKeyed
+	**/
+	public boolean isKeyed()
+	{
+		return(true);
+	}
+
+    /**
+    Delete a row from the conglomerate.  
+	@see ConglomerateController#delete
+
+    @exception StandardException Standard exception policy.
+    **/
+    public boolean delete(RowLocation loc)
+		throws StandardException
+	{
+        throw(StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE));
+	}
+
+    /**
+    Fetch the row at the given location.
+	@see ConglomerateController#fetch
+
+    @exception StandardException Standard exception policy.
+    **/
+    public boolean fetch(
+    RowLocation             loc, 
+    DataValueDescriptor[]   row, 
+    FormatableBitSet        validColumns) 
+		throws StandardException
+	{
+        throw(StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE));
+	}
+
+    /**
+    Fetch the row at the given location.
+	@see ConglomerateController#fetch
+
+    @exception StandardException Standard exception policy.
+    **/
+    public boolean fetch(
+    RowLocation             loc, 
+    DataValueDescriptor[]   row, 
+    FormatableBitSet        validColumns,
+    boolean                 waitForLock) 
+		throws StandardException
+	{
+        throw(StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE));
+	}
+
+	/**
+	Insert a row into the conglomerate, and store its location in the
+	provided template row location.
+
+    Unimplemented by hash index.
+
+	@see ConglomerateController#insertAndFetchLocation
+
+    @exception StandardException Standard exception policy.
+	**/
+	public void insertAndFetchLocation(
+    DataValueDescriptor[]	row,
+    RowLocation             templateRowLocation)
+        throws StandardException
+	{
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+	}
+
+	/**
+	Return a row location object of the correct type to be
+	used in calls to insertAndFetchLocation.
+
+	@see ConglomerateController#newRowLocationTemplate
+
+    @exception StandardException Standard exception policy.
+	**/
+	public RowLocation newRowLocationTemplate()
+		throws StandardException
+	{
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+	}
+
+    /**
+     * Lock the given row location.
+     * <p>
+     * Rows of a hash index are locked through the base table.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public boolean lockRow(
+    RowLocation loc,
+    int         lock_operation,
+    boolean     wait,
+    int         lock_duration)
+        throws StandardException
+    {
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+    }
+
+    public boolean lockRow(
+    long        page_num,
+    int         record_id,
+    int         lock_operation,
+    boolean     wait,
+    int         lock_duration)
+        throws StandardException
+    {
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+    }
+
+    public void unlockRowAfterRead(
+    RowLocation     loc,
+    boolean         forUpdate,
+    boolean         row_qualifies)
+        throws StandardException
+    {
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+    }
+
+	/**
+    Replace the entire row at the given location.  
+	@see ConglomerateController#replace
+
+    @exception StandardException Standard exception policy.
+    **/
+    public boolean replace(
+    RowLocation             loc, 
+    DataValueDescriptor[]   row, 
+    FormatableBitSet        validColumns)
+		throws StandardException
+	{
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+	}
+}
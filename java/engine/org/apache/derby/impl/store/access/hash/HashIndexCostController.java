@@ -0,0 +1,323 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.hash.HashIndexCostController
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.hash;
+
+import java.util.Properties;
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.reference.Property;
+import org.apache.derby.iapi.services.io.FormatableBitSet;
+import org.apache.derby.iapi.store.access.StoreCostController;
+import org.apache.derby.iapi.store.access.StoreCostResult;
+import org.apache.derby.iapi.store.raw.ContainerHandle;
+import org.apache.derby.iapi.store.raw.FetchDescriptor;
+import org.apache.derby.iapi.store.raw.Page;
+import org.apache.derby.iapi.store.raw.RecordHandle;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.impl.store.access.conglomerate.GenericCostController;
+import org.apache.derby.impl.store.access.conglomerate.OpenConglomerate;
+import org.apache.derby.shared.common.sanity.SanityManager;
+
+/**
+ * The StoreCostController of a hash index.
+ * <p>
+ * A lookup of a full key reads the directory, which is almost always cached,
+ * and the pages of one bucket, so its cost does not grow with the size of
+ * the index the way the height of a b-tree does.  Any other scan reads every
+ * bucket, and is costed like a scan of a heap.
+ **/
+
+public class HashIndexCostController
+    extends GenericCostController implements StoreCostController
+{
+    /**
+     * Only lookup these estimates from raw store once.
+     **/
+    long    num_pages;
+    long    num_rows;
+    long    num_buckets;
+    long    num_overflow_pages;
+    long    page_size;
+    long    row_size;
+
+    /**
+     * Initialize the cost controller.
+     * <p>
+     * Let super.init() do it's work and then get the initial stats about the
+     * index from raw store, and the number of buckets and overflow pages from
+     * its meta page.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public void init(
+    OpenConglomerate    open_conglom)
+        throws StandardException
+    {
+        super.init(open_conglom);
+
+        ContainerHandle container = open_conglom.getContainer();
+
+        num_pages = container.getEstimatedPageCount(/* unused flag */ 0);
+
+        // subtract one row for every page to account for the control row
+        // which exists on every page.
+        num_rows  =
+            container.getEstimatedRowCount(/*unused flag*/ 0) - num_pages;
+
+        // Don't use 0 rows (use 1 instead), see HeapCostController.
+        if (num_rows <= 0)
+            num_rows = 1;
+
+        Page meta = container.getPage(HashDirectory.META_PAGE);
+        try
+        {
+            num_buckets        = HashDirectory.getBucketCount(meta);
+            num_overflow_pages = HashDirectory.getOverflowPageCount(meta);
+        }
+        finally
+        {
+            meta.unlatch();
+        }
+
+        Properties prop = new Properties();
+        prop.put(Property.PAGE_SIZE_PARAMETER, "");
+        container.getContainerProperties(prop);
+        page_size =
+            Integer.parseInt(prop.getProperty(Property.PAGE_SIZE_PARAMETER));
+
+        row_size = (num_pages * page_size / num_rows);
+    }
+
+    /**
+     * Return the average number of pages in the chain of a bucket.
+     **/
+    private double getPagesPerBucket()
+    {
+        return(1 + ((double) num_overflow_pages) / num_buckets);
+    }
+
+    /**
+     * Count the rows of the index with a key.
+     * <p>
+     * The bucket of the key is read, which is what the lookup itself would
+     * cost, the way a b-tree is searched to cost a scan.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private long countKeyRows(HashIndex conglom, DataValueDescriptor[] key)
+        throws StandardException
+    {
+        ContainerHandle       container = open_conglom.getContainer();
+        DataValueDescriptor[] row       =
+            conglom.createTemplate(open_conglom.getRawTran());
+        long                  count     = 0;
+
+        Page page =
+            HashDirectory.getBucketPage(
+                container,
+                conglom.hash(
+                    key, conglom.createTemplate(open_conglom.getRawTran())));
+
+        try
+        {
+            while (true)
+            {
+                for (int slot = HashDirectory.FIRST_ROW_SLOT;
+                     slot < page.recordCount();
+                     slot++)
+                {
+                    if (page.isDeletedAtSlot(slot))
+                        continue;
+
+                    page.fetchFromSlot(
+                        (RecordHandle) null, slot, row,
+                        (FetchDescriptor) null, true);
+
+                    if (conglom.compare(
+                            row, key, conglom.rowLocationColumn) == 0)
+                    {
+                        count++;
+                    }
+                }
+
+                long next_pageno = HashDirectory.getNextPageNumber(page);
+
+                if (next_pageno == ContainerHandle.INVALID_PAGE_NUMBER)
+                    break;
+
+                // Latch the next page before letting go of this one.
+                Page next_page = container.getPage(next_pageno);
+                page.unlatch();
+                page = next_page;
+            }
+        }
+        finally
+        {
+            page.unlatch();
+        }
+
+        return(count);
+    }
+
+    /* Public Methods of StoreCostController: */
+
+    /**
+     * Return the cost of calling ConglomerateController.fetch().
+     * <p>
+     * A hash index has no row locations of its own, so this is the cost of
+     * fetching a row from a page, as for a heap.
+     *
+	 * @see StoreCostController#getFetchFromRowLocationCost
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public double getFetchFromRowLocationCost(
+    FormatableBitSet    validColumns,
+    int                 access_type)
+		throws StandardException
+    {
+        double ret_cost = row_size * BASE_ROW_PER_BYTECOST;
+
+        if ((access_type & StoreCostController.STORECOST_CLUSTERED) == 0)
+            ret_cost += BASE_UNCACHED_ROW_FETCH_COST;
+        else
+            ret_cost += BASE_CACHED_ROW_FETCH_COST;
+
+        return(ret_cost);
+    }
+
+    /**
+     * Return the cost of exact key lookup.
+     * <p>
+     * The meta page and the directory pages are read by every lookup, so
+     * they are costed as cached, and the pages of the bucket as uncached
+     * unless the lookups are clustered.
+     *
+	 * @see StoreCostController#getFetchFromFullKeyCost
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public double getFetchFromFullKeyCost(
+    FormatableBitSet    validColumns,
+    int                 access_type)
+		throws StandardException
+    {
+        double page_cost =
+            ((access_type & StoreCostController.STORECOST_CLUSTERED) == 0) ?
+                BASE_UNCACHED_ROW_FETCH_COST : BASE_CACHED_ROW_FETCH_COST;
+
+        return(2 * BASE_CACHED_ROW_FETCH_COST +
+               getPagesPerBucket() * page_cost);
+    }
+
+    /**
+     * Calculate the cost of a scan.
+     * <p>
+     * A scan whose start and stop keys are the same full key reads one
+     * bucket, and is estimated to return the rows with that key.  Any other
+     * scan reads the whole index.
+     *
+	 * @see StoreCostController#getScanCost
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	public void getScanCost(
+    int                     scan_type,
+    long                    row_count,
+    int                     group_size,
+    boolean                 forUpdate,
+    FormatableBitSet        scanColumnList,
+    DataValueDescriptor[]   template,
+    DataValueDescriptor[]   startKeyValue,
+    int                     startSearchOperator,
+    DataValueDescriptor[]   stopKeyValue,
+    int                     stopSearchOperator,
+    boolean                 reopen_scan,
+    int                     access_type,
+    StoreCostResult         cost_result)
+        throws StandardException
+    {
+        if (SanityManager.DEBUG)
+        {
+            SanityManager.ASSERT(
+                scan_type == StoreCostController.STORECOST_SCAN_NORMAL ||
+                scan_type == StoreCostController.STORECOST_SCAN_SET);
+        }
+
+        HashIndex conglom =
+            (HashIndex) open_conglom.getConglomerate();
+
+        long input_row_count = ((row_count < 0) ?  num_rows : row_count);
+
+        double cost;
+        long   estimated_row_count;
+        long   pages;
+
+        if (startKeyValue != null &&
+            stopKeyValue != null &&
+            startKeyValue.length >= conglom.rowLocationColumn &&
+            stopKeyValue.length >= conglom.rowLocationColumn &&
+            conglom.compare(
+                startKeyValue, stopKeyValue, conglom.rowLocationColumn) == 0)
+        {
+            cost = getFetchFromFullKeyCost(scanColumnList, access_type);
+
+            // Like the b-tree always estimate at least one row, see
+            // DERBY-6317.
+            estimated_row_count = countKeyRows(conglom, startKeyValue);
+            if (estimated_row_count < 1)
+                estimated_row_count = 1;
+
+            pages = Math.round(getPagesPerBucket());
+        }
+        else
+        {
+            cost = (num_pages * BASE_UNCACHED_ROW_FETCH_COST);
+
+            estimated_row_count = input_row_count;
+
+            pages = num_pages;
+        }
+
+        // the cost associated with the number of bytes in each row:
+        cost += (estimated_row_count * row_size) * BASE_ROW_PER_BYTECOST;
+
+        // the base cost of getting each of the rows from a page assumed
+        // to already be cached, as in a heap scan.
+        long cached_row_count = estimated_row_count - pages;
+        if (cached_row_count < 0)
+            cached_row_count = 0;
+
+        if (scan_type == StoreCostController.STORECOST_SCAN_NORMAL)
+            cost += cached_row_count * BASE_GROUPSCAN_ROW_COST;
+        else
+            cost += cached_row_count * BASE_HASHSCAN_ROW_FETCH_COST;
+
+        if (SanityManager.DEBUG)
+        {
+            SanityManager.ASSERT(cost >= 0);
+            SanityManager.ASSERT(estimated_row_count >= 0);
+        }
+
+        cost_result.setEstimatedCost(cost);
+        cost_result.setEstimatedRowCount(estimated_row_count);
+    }
+}
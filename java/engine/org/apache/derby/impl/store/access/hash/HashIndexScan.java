@@ -0,0 +1,1044 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.hash.HashIndexScan
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.hash;
+
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.reference.SQLState;
+import org.apache.derby.iapi.services.io.FormatableBitSet;
+import org.apache.derby.iapi.services.locks.C_LockFactory;
+import org.apache.derby.iapi.services.locks.LockFactory;
+import org.apache.derby.iapi.services.locks.ShExQual;
+import org.apache.derby.iapi.store.access.BackingStoreHashtable;
+import org.apache.derby.iapi.store.access.ConglomerateController;
+import org.apache.derby.iapi.store.access.DynamicCompiledOpenConglomInfo;
+import org.apache.derby.iapi.store.access.Qualifier;
+import org.apache.derby.iapi.store.access.RowUtil;
+import org.apache.derby.iapi.store.access.ScanController;
+import org.apache.derby.iapi.store.access.ScanInfo;
+import org.apache.derby.iapi.store.access.TransactionController;
+import org.apache.derby.iapi.store.access.conglomerate.ScanManager;
+import org.apache.derby.iapi.store.access.conglomerate.TransactionManager;
+import org.apache.derby.iapi.store.raw.ContainerHandle;
+import org.apache.derby.iapi.store.raw.FetchDescriptor;
+import org.apache.derby.iapi.store.raw.LockingPolicy;
+import org.apache.derby.iapi.store.raw.Page;
+import org.apache.derby.iapi.store.raw.RecordHandle;
+import org.apache.derby.iapi.store.raw.Transaction;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.iapi.types.RowLocation;
+import org.apache.derby.shared.common.sanity.SanityManager;
+
+/**
+ * A scan of a hash index.
+ * <p>
+ * When the start and stop keys of the scan are equal on all the key columns
+ * of the index the scan reads only the bucket of that key, otherwise it reads
+ * every bucket, and the start and stop keys only filter the rows.  Either way
+ * the rows are returned in no particular order.
+ * <p>
+ * The scan holds the split lock of the index shared while it is open, so
+ * that no bucket is split, and no row purged, under its position.  The
+ * position is kept as the page and record handle of the current row, and the
+ * page is unlatched between calls.
+ * <p>
+ * As in a b-tree scan the base row of each index row is locked, through a
+ * controller of the base table opened at the isolation level of the scan.  A
+ * serializable scan also locks the hash of its key, or the whole index, for
+ * the inserts which would add rows to the scan.
+ **/
+
+public class HashIndexScan
+    extends OpenHashIndex implements ScanManager
+{
+    /*
+    ** Scan states.
+    */
+    private static final int SCAN_INIT             = 1;
+    private static final int SCAN_INPROGRESS       = 2;
+    private static final int SCAN_DONE             = 3;
+    private static final int SCAN_HOLD_INIT        = 4;
+    private static final int SCAN_HOLD_INPROGRESS  = 5;
+
+    private int scan_state;
+
+    /*
+    ** Fields set up by init().
+    */
+    private int                     lock_level;
+    private int                     isolation_level;
+    private FormatableBitSet        init_scanColumnList;
+    private DataValueDescriptor[]   init_startKeyValue;
+    private int                     init_startSearchOperator;
+    private Qualifier[][]           init_qualifier;
+    private DataValueDescriptor[]   init_stopKeyValue;
+    private int                     init_stopSearchOperator;
+
+    /**
+     * Used to lock the base rows, and the keys of a serializable scan.
+     **/
+    private ConglomerateController  base_cc;
+    private int                     lock_operation;
+
+    /**
+     * The split lock, held shared while the scan is open.
+     **/
+    private HashIndexSplitLock      split_lock;
+
+    /**
+     * The hash of the key of a scan which reads a single bucket, or -1 for
+     * a scan of all the buckets.
+     **/
+    private int                     probe_hash;
+
+    /*
+    ** The position of the scan: the bucket, the page of the bucket and the
+    ** record handle of the current row, or null before the first row of the
+    ** page.
+    */
+    private long                    current_bucket;
+    private long                    current_pageno;
+    private RecordHandle            current_rh;
+
+    /*
+    ** Scratch space.
+    */
+    private DataValueDescriptor[]   scratch_row;
+    private DataValueDescriptor[]   hash_template;
+    private FetchDescriptor         fetch_desc;
+    private FetchDescriptor         rowloc_fetch_desc;
+    private DataValueDescriptor[][] fetchNext_one_slot_array =
+        new DataValueDescriptor[1][];
+
+    /*
+    ** Performance counters.
+    */
+    private int stat_numpages_visited  = 0;
+    private int stat_numrows_visited   = 0;
+    private int stat_numrows_qualified = 0;
+
+    /**
+     * Open the scan.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    void init(
+    TransactionManager              xact_manager,
+    Transaction                     rawtran,
+    boolean                         hold,
+    int                             open_mode,
+    int                             lock_level,
+    int                             isolation_level,
+    HashIndex                       conglomerate,
+    FormatableBitSet                scanColumnList,
+    DataValueDescriptor[]	        startKeyValue,
+    int                             startSearchOperator,
+    Qualifier                       qualifier[][],
+    DataValueDescriptor[]	        stopKeyValue,
+    int                             stopSearchOperator,
+    DynamicCompiledOpenConglomInfo  dynamic_info)
+        throws StandardException
+    {
+        if (super.init(
+                (ContainerHandle) null,
+                conglomerate,
+                conglomerate.format_ids,
+                conglomerate.collation_ids,
+                xact_manager,
+                rawtran,
+                hold,
+                open_mode,
+                lock_level,
+                (LockingPolicy) null,
+                dynamic_info) == null)
+        {
+            throw StandardException.newException(
+                    SQLState.BTREE_CONTAINER_NOT_FOUND,
+                    conglomerate.getContainerid());
+        }
+
+        this.lock_level          = lock_level;
+        this.isolation_level     = isolation_level;
+        this.init_scanColumnList = scanColumnList;
+
+        lock_operation =
+            (isForUpdate() ?
+                ConglomerateController.LOCK_UPD :
+                ConglomerateController.LOCK_READ);
+
+        if (isUseUpdateLocks())
+            lock_operation |= ConglomerateController.LOCK_UPDATE_LOCKS;
+
+        scratch_row       = getRuntimeMem().get_scratch_row(rawtran);
+        hash_template     = getRuntimeMem().get_template(rawtran);
+        fetch_desc        =
+            new FetchDescriptor(
+                scratch_row.length, scanColumnList, (Qualifier[][]) null);
+        rowloc_fetch_desc =
+            RowUtil.getFetchDescriptorConstant(
+                conglomerate.rowLocationColumn);
+
+        // Keep splits and purges away from the position of the scan.  No
+        // latch is held, so it is fine to wait.
+        split_lock = new HashIndexSplitLock(conglomerate.getId());
+        getLockFactory().lockObject(
+            rawtran.getCompatibilitySpace(), this, split_lock,
+            ShExQual.SH, C_LockFactory.TIMED_WAIT);
+
+        openBaseTable();
+
+        initScanParams(
+            startKeyValue, startSearchOperator,
+            qualifier, stopKeyValue, stopSearchOperator);
+
+        scan_state = SCAN_INIT;
+    }
+
+    HashIndex getHashIndex()
+    {
+        return((HashIndex) getConglomerate());
+    }
+
+    private LockFactory getLockFactory()
+    {
+        return(getXactMgr().getAccessManager().getLockFactory());
+    }
+
+    /**
+     * Open the base table for locking, at the isolation level of the scan.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private void openBaseTable()
+        throws StandardException
+    {
+        base_cc =
+            getHashIndex().lockTable(
+                getXactMgr(), getOpenMode(), lock_level, isolation_level);
+    }
+
+    /**
+     * Set the start and stop keys and the qualifiers of the scan, and decide
+     * if it reads a single bucket.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private void initScanParams(
+    DataValueDescriptor[]   startKeyValue,
+    int                     startSearchOperator,
+    Qualifier               qualifier[][],
+    DataValueDescriptor[]   stopKeyValue,
+    int                     stopSearchOperator)
+        throws StandardException
+    {
+        HashIndex conglom = getHashIndex();
+
+        init_startKeyValue       = startKeyValue;
+        init_startSearchOperator = startSearchOperator;
+        init_qualifier           = qualifier;
+        init_stopKeyValue        = stopKeyValue;
+        init_stopSearchOperator  = stopSearchOperator;
+
+        probe_hash = -1;
+
+        if (startKeyValue != null &&
+            stopKeyValue != null &&
+            startKeyValue.length >= conglom.rowLocationColumn &&
+            stopKeyValue.length >= conglom.rowLocationColumn &&
+            conglom.compare(
+                startKeyValue, stopKeyValue, conglom.rowLocationColumn) == 0)
+        {
+            probe_hash = conglom.hash(startKeyValue, hash_template);
+        }
+    }
+
+    /**
+     * Position the scan on the first bucket it reads.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private void positionAtStartOfScan()
+        throws StandardException
+    {
+        HashIndex conglom = getHashIndex();
+
+        if (isolation_level == TransactionController.ISOLATION_SERIALIZABLE)
+        {
+            // Lock the rows which inserts could add to the scan, no latch is
+            // held so wait for the lock.
+            if (probe_hash >= 0)
+            {
+                base_cc.lockRow(
+                    (conglom.getContainerid() << 32) | probe_hash,
+                    RecordHandle.HASH_KEY_HANDLE,
+                    ConglomerateController.LOCK_READ, true,
+                    TransactionManager.LOCK_COMMIT_DURATION);
+            }
+            else
+            {
+                base_cc.lockRow(
+                    conglom.getContainerid(),
+                    RecordHandle.HASH_INDEX_HANDLE,
+                    ConglomerateController.LOCK_READ, true,
+                    TransactionManager.LOCK_COMMIT_DURATION);
+            }
+        }
+
+        ContainerHandle container = getContainer();
+        Page            meta      = container.getPage(HashDirectory.META_PAGE);
+
+        try
+        {
+            current_bucket =
+                (probe_hash >= 0) ?
+                    HashDirectory.bucketFor(
+                        probe_hash, HashDirectory.getBucketCount(meta)) : 0;
+
+            current_pageno =
+                HashDirectory.getPrimaryPageNumber(
+                    container, meta, current_bucket);
+        }
+        finally
+        {
+            meta.unlatch();
+        }
+
+        current_rh = null;
+        scan_state = SCAN_INPROGRESS;
+    }
+
+    /**
+     * Move the position to the next page of the scan.
+     *
+	 * @return false if there are no more pages to read.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private boolean positionAtNextPage(long next_pageno)
+        throws StandardException
+    {
+        current_rh = null;
+
+        if (next_pageno != ContainerHandle.INVALID_PAGE_NUMBER)
+        {
+            current_pageno = next_pageno;
+            return(true);
+        }
+
+        if (probe_hash >= 0)
+            return(false);
+
+        // The buckets cannot change while the split lock is held.
+        ContainerHandle container = getContainer();
+        Page            meta      = container.getPage(HashDirectory.META_PAGE);
+
+        try
+        {
+            if (++current_bucket >= HashDirectory.getBucketCount(meta))
+                return(false);
+
+            current_pageno =
+                HashDirectory.getPrimaryPageNumber(
+                    container, meta, current_bucket);
+        }
+        finally
+        {
+            meta.unlatch();
+        }
+
+        return(true);
+    }
+
+    /**
+     * Reopen the container and the base table of a held scan after a commit.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private void reopenAfterCommit()
+        throws StandardException
+    {
+        reopen();
+        openBaseTable();
+
+        scan_state =
+            (scan_state == SCAN_HOLD_INIT) ? SCAN_INIT : SCAN_INPROGRESS;
+    }
+
+    /**
+     * Tell if an index row is within the start and stop keys of the scan.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private boolean withinKeys(DataValueDescriptor[] row)
+        throws StandardException
+    {
+        HashIndex conglom = getHashIndex();
+
+        if (init_startKeyValue != null)
+        {
+            int ret =
+                conglom.compare(
+                    row, init_startKeyValue, init_startKeyValue.length);
+
+            if (ret < 0 ||
+                (ret == 0 && init_startSearchOperator == ScanController.GT))
+            {
+                return(false);
+            }
+        }
+
+        if (init_stopKeyValue != null)
+        {
+            int ret =
+                conglom.compare(
+                    row, init_stopKeyValue, init_stopKeyValue.length);
+
+            if (ret > 0 ||
+                (ret == 0 && init_stopSearchOperator == ScanController.GE))
+            {
+                return(false);
+            }
+        }
+
+        return(true);
+    }
+
+    /**
+     * Fetch the next rows of the scan.
+     * <p>
+     * Fetch rows into row_array, or into hash_table if it is not null, until
+     * max_rowcnt rows are fetched or the scan is done.  Each base row is
+     * locked as the row is visited, and the lock released again as the
+     * isolation level of the scan allows.
+     *
+	 * @return The number of rows fetched.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private int fetchRows(
+    DataValueDescriptor[][] row_array,
+    BackingStoreHashtable   hash_table,
+    long                    max_rowcnt)
+        throws StandardException
+    {
+        int ret_row_count = 0;
+
+        if (max_rowcnt == -1)
+            max_rowcnt = Long.MAX_VALUE;
+
+        if (scan_state == SCAN_HOLD_INIT || scan_state == SCAN_HOLD_INPROGRESS)
+            reopenAfterCommit();
+
+        if (scan_state == SCAN_INIT)
+            positionAtStartOfScan();
+        else if (scan_state != SCAN_INPROGRESS)
+            return(0);
+
+        HashIndex             conglom       = getHashIndex();
+        ContainerHandle       container     = getContainer();
+        int                   rowloc_column = conglom.rowLocationColumn;
+        DataValueDescriptor[] fetch_row     = null;
+        Page                  page          = null;
+
+        try
+        {
+            while (true)
+            {
+                page = container.getPage(current_pageno);
+                stat_numpages_visited++;
+
+                int slot =
+                    (current_rh == null) ?
+                        HashDirectory.FIRST_ROW_SLOT :
+                        page.getSlotNumber(current_rh) + 1;
+
+                for (; slot < page.recordCount(); slot++)
+                {
+                    current_rh = page.getRecordHandleAtSlot(slot);
+                    stat_numrows_visited++;
+
+                    page.fetchFromSlot(
+                        (RecordHandle) null, slot, scratch_row,
+                        (FetchDescriptor) null, true);
+
+                    if (probe_hash >= 0 &&
+                        conglom.hash(scratch_row, hash_template) != probe_hash)
+                    {
+                        continue;
+                    }
+
+                    if (!withinKeys(scratch_row))
+                        continue;
+
+                    RowLocation row_loc =
+                        (RowLocation) scratch_row[rowloc_column];
+
+                    // First try to get the lock NOWAIT, while latch is held.
+                    if (!base_cc.lockRow(
+                            row_loc, lock_operation, false,
+                            TransactionManager.LOCK_COMMIT_DURATION))
+                    {
+                        // Release the latch and wait for the lock, the row
+                        // cannot move while the split lock is held.
+                        page.unlatch();
+                        page = null;
+
+                        if ((getOpenMode() &
+                             TransactionManager.OPENMODE_LOCK_ROW_NOWAIT) != 0)
+                        {
+                            throw StandardException.newException(
+                                    SQLState.LOCK_TIMEOUT);
+                        }
+
+                        base_cc.lockRow(
+                            row_loc, lock_operation, true,
+                            TransactionManager.LOCK_COMMIT_DURATION);
+
+                        page = container.getPage(current_pageno);
+                        slot = page.getSlotNumber(current_rh);
+                    }
+
+                    boolean qualified =
+                        !page.isDeletedAtSlot(slot) &&
+                        (init_qualifier == null ||
+                         RowUtil.qualifyRow(scratch_row, init_qualifier));
+
+                    if (qualified)
+                    {
+                        stat_numrows_qualified++;
+
+                        if (hash_table != null || row_array[ret_row_count] == null)
+                        {
+                            fetch_row =
+                                getRuntimeMem().get_row_for_export(
+                                    getRawTran());
+                        }
+                        else
+                        {
+                            fetch_row = row_array[ret_row_count];
+                        }
+
+                        page.fetchFromSlot(
+                            (RecordHandle) null, slot, fetch_row,
+                            fetch_desc, true);
+
+                        if (hash_table != null)
+                        {
+                            hash_table.putRow(
+                                false, fetch_row, (RowLocation) null);
+                        }
+                        else
+                        {
+                            row_array[ret_row_count] = fetch_row;
+                        }
+
+                        ret_row_count++;
+                    }
+
+                    base_cc.unlockRowAfterRead(row_loc, isForUpdate(), qualified);
+
+                    if (qualified && ret_row_count >= max_rowcnt)
+                        return(ret_row_count);
+                }
+
+                long next_pageno = HashDirectory.getNextPageNumber(page);
+                page.unlatch();
+                page = null;
+
+                if (!positionAtNextPage(next_pageno))
+                {
+                    scan_state = SCAN_DONE;
+                    return(ret_row_count);
+                }
+            }
+        }
+        finally
+        {
+            if (page != null)
+                page.unlatch();
+        }
+    }
+
+    /**
+     * Latch the page of the current position of the scan.
+     *
+	 * @return The latched page, the slot of the position is then found with
+     *         getSlotNumber(current_rh).
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private Page latchCurrentPage()
+        throws StandardException
+    {
+        if (scan_state != SCAN_INPROGRESS || current_rh == null)
+        {
+            throw StandardException.newException(
+                    SQLState.AM_SCAN_NOT_POSITIONED);
+        }
+
+        return(getContainer().getPage(current_pageno));
+    }
+
+    /**
+     * Return the number of pages visited by the scan.
+     **/
+    int getNumPagesVisited()
+    {
+        return(stat_numpages_visited);
+    }
+
+    /**
+     * Return the number of rows visited by the scan.
+     **/
+    int getNumRowsVisited()
+    {
+        return(stat_numrows_visited);
+    }
+
+    /**
+     * Return the number of rows which qualified.
+     **/
+    int getNumRowsQualified()
+    {
+        return(stat_numrows_qualified);
+    }
+
+    FormatableBitSet getScanColumnList()
+    {
+        return(init_scanColumnList);
+    }
+
+    /**************************************************************************
+     * Public Methods of ScanController interface:
+     **************************************************************************
+     */
+
+    /**
+    Close the scan.
+    **/
+    public void close()
+        throws StandardException
+    {
+        scan_state = SCAN_DONE;
+
+        if (split_lock != null)
+        {
+            getLockFactory().unlock(
+                getRawTran().getCompatibilitySpace(), this, split_lock,
+                ShExQual.SH);
+            split_lock = null;
+        }
+
+        super.close();
+
+        if (base_cc != null)
+        {
+            base_cc.close();
+            base_cc = null;
+        }
+
+        getXactMgr().closeMe(this);
+    }
+
+    /**
+    Close the scan, a commit or abort is about to happen.
+    **/
+    public boolean closeForEndTransaction(boolean closeHeldScan)
+        throws StandardException
+    {
+        if (!getHold() || closeHeldScan)
+        {
+            close();
+
+            return(true);
+        }
+
+        // The base table controller is closed by the commit, and the split
+        // lock is kept, so the position of the scan stays good.
+        if (scan_state == SCAN_INPROGRESS)
+            scan_state = SCAN_HOLD_INPROGRESS;
+        else if (scan_state == SCAN_INIT)
+            scan_state = SCAN_HOLD_INIT;
+
+        super.close();
+
+        return(false);
+    }
+
+    /**
+    Delete the row at the current position of the scan.
+	@see ScanController#delete
+
+    @exception  StandardException  Standard exception policy.
+    **/
+    public boolean delete()
+        throws StandardException
+    {
+        Page page = latchCurrentPage();
+
+        try
+        {
+            int slot = page.getSlotNumber(current_rh);
+
+            if (page.isDeletedAtSlot(slot))
+                return(false);
+
+            if (isUseUpdateLocks())
+            {
+                // The scan got an update lock on the base row, get it
+                // exclusive now that it is deleted.
+                page.fetchFromSlot(
+                    (RecordHandle) null, slot, scratch_row,
+                    rowloc_fetch_desc, true);
+
+                RowLocation row_loc =
+                    (RowLocation) scratch_row[getHashIndex().rowLocationColumn];
+
+                if (!base_cc.lockRow(
+                        row_loc, ConglomerateController.LOCK_UPD, false,
+                        TransactionManager.LOCK_COMMIT_DURATION))
+                {
+                    page.unlatch();
+                    page = null;
+
+                    base_cc.lockRow(
+                        row_loc, ConglomerateController.LOCK_UPD, true,
+                        TransactionManager.LOCK_COMMIT_DURATION);
+
+                    page = getContainer().getPage(current_pageno);
+                    slot = page.getSlotNumber(current_rh);
+
+                    if (page.isDeletedAtSlot(slot))
+                        return(false);
+                }
+            }
+
+            page.deleteAtSlot(slot, true, hash_undo);
+
+            return(true);
+        }
+        finally
+        {
+            if (page != null)
+                page.unlatch();
+        }
+    }
+
+    /**
+     * A call to allow client to indicate that current row does not qualify.
+     * <p>
+     * The base row locks are released as the rows are read, so there is
+     * nothing to do.
+     **/
+    public void didNotQualify()
+        throws StandardException
+    {
+    }
+
+    /**
+     * Returns true if the current position of the scan still qualifies
+     * under the set of qualifiers passed to the openScan().
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public boolean doesCurrentPositionQualify()
+        throws StandardException
+    {
+        Page page = latchCurrentPage();
+
+        try
+        {
+            int slot = page.getSlotNumber(current_rh);
+
+            if (page.isDeletedAtSlot(slot))
+                return(false);
+
+            page.fetchFromSlot(
+                (RecordHandle) null, slot, scratch_row,
+                (FetchDescriptor) null, true);
+
+            return(init_qualifier == null ||
+                   RowUtil.qualifyRow(scratch_row, init_qualifier));
+        }
+        finally
+        {
+            page.unlatch();
+        }
+    }
+
+    public boolean isHeldAfterCommit() throws StandardException
+    {
+        return (scan_state == SCAN_HOLD_INIT ||
+                scan_state == SCAN_HOLD_INPROGRESS);
+    }
+
+    /**
+    Fetch the row at the current position of the Scan.
+	@see ScanController#fetch
+
+    @exception  StandardException  Standard exception policy.
+    **/
+    public void fetch(DataValueDescriptor[] row)
+        throws StandardException
+    {
+        Page page = latchCurrentPage();
+
+        try
+        {
+            page.fetchFromSlot(
+                (RecordHandle) null, page.getSlotNumber(current_rh), row,
+                fetch_desc, true);
+        }
+        finally
+        {
+            page.unlatch();
+        }
+    }
+
+    public void fetchWithoutQualify(DataValueDescriptor[] row)
+        throws StandardException
+    {
+        fetch(row);
+    }
+
+    /**
+    Fetch the row at the next position of the Scan.
+	@see ScanController#fetchNext
+
+    @exception  StandardException  Standard exception policy.
+    **/
+    public boolean fetchNext(DataValueDescriptor[] row)
+        throws StandardException
+    {
+        fetchNext_one_slot_array[0] = row;
+
+        return(fetchRows(
+                    fetchNext_one_slot_array,
+                    (BackingStoreHashtable) null, 1) == 1);
+    }
+
+    /**
+    Fetch the location of the current position in the scan.
+	@see ScanController#fetchLocation
+
+    @exception  StandardException  Standard exception policy.
+    **/
+    public void fetchLocation(RowLocation templateLocation)
+        throws StandardException
+    {
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+    }
+
+    /**
+    Returns true if the current position of the scan is at a deleted row.
+	@see ScanController#isCurrentPositionDeleted
+
+    @exception  StandardException  Standard exception policy.
+    **/
+    public boolean isCurrentPositionDeleted()
+        throws StandardException
+    {
+        Page page = latchCurrentPage();
+
+        try
+        {
+            return(page.isDeletedAtSlot(page.getSlotNumber(current_rh)));
+        }
+        finally
+        {
+            page.unlatch();
+        }
+    }
+
+    /**
+    Move to the next position in the scan.
+	@see ScanController#next
+
+    @exception  StandardException  Standard exception policy.
+    **/
+    public boolean next()
+        throws StandardException
+    {
+        fetchNext_one_slot_array[0] = getRuntimeMem().get_scratch_row(getRawTran());
+
+        return(fetchRows(
+                    fetchNext_one_slot_array,
+                    (BackingStoreHashtable) null, 1) == 1);
+    }
+
+    public boolean positionAtRowLocation(RowLocation rLoc) 
+        throws StandardException 
+    {
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);        
+    }
+
+    /**
+    Replace the entire row at the current position of the scan.
+
+    Unimplemented interface by hash index, will throw an exception.
+
+    @see ScanController#replace
+    @exception  StandardException  Standard exception policy.
+    **/
+    public boolean replace(DataValueDescriptor[] row, FormatableBitSet validColumns)
+        throws StandardException
+    {
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+    }
+
+    /**************************************************************************
+     * Public Methods of GenericScanController and GroupFetchScanController:
+     **************************************************************************
+     */
+
+    public ScanInfo getScanInfo()
+        throws StandardException
+    {
+        return(new HashIndexScanInfo(this));
+    }
+
+    public boolean isKeyed()
+    {
+        return(true);
+    }
+
+    public boolean isTableLocked()
+    {
+        return(super.isTableLocked());
+    }
+
+    public RowLocation newRowLocationTemplate()
+        throws StandardException
+    {
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+    }
+
+    /**
+    Reposition the current scan.
+	@see org.apache.derby.iapi.store.access.GenericScanController#reopenScan
+
+    @exception StandardException Standard exception policy.
+    **/
+    public void reopenScan(
+    DataValueDescriptor[]   startKeyValue,
+    int                     startSearchOperator,
+    Qualifier               qualifier[][],
+    DataValueDescriptor[]   stopKeyValue,
+    int                     stopSearchOperator)
+        throws StandardException
+    {
+        current_rh = null;
+
+        initScanParams(
+            startKeyValue, startSearchOperator,
+            qualifier, stopKeyValue, stopSearchOperator);
+
+        if (!getHold())
+            scan_state = SCAN_INIT;
+        else
+            scan_state = (getContainer() != null ? SCAN_INIT : SCAN_HOLD_INIT);
+    }
+
+    public void reopenScanByRowLocation(
+    RowLocation startRowLocation,
+    Qualifier   qualifier[][])
+        throws StandardException
+    {
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+    }
+
+    public boolean reopenScanByPageRange(
+    long    firstPage,
+    long    lastPage)
+        throws StandardException
+    {
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+    }
+
+    public int fetchNextGroup(
+    DataValueDescriptor[][] row_array,
+    RowLocation[]           rowloc_array)
+        throws StandardException
+    {
+        return(fetchRows(
+                    row_array, (BackingStoreHashtable) null,
+                    row_array.length));
+    }
+
+    public int fetchNextGroup(
+    DataValueDescriptor[][] row_array,
+    RowLocation[]           old_rowloc_array,
+    RowLocation[]           new_rowloc_array)
+        throws StandardException
+    {
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+    }
+
+    /**
+     * Insert all rows that qualify for the current scan into the input
+     * Hash table.
+     *
+	 * @see ScanManager#fetchSet
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public void fetchSet(
+    long                    max_rowcnt,
+    int[]                   key_column_numbers,
+    BackingStoreHashtable   hash_table)
+        throws StandardException
+    {
+        fetchRows(
+            (DataValueDescriptor[][]) null, hash_table, max_rowcnt);
+    }
+
+    /**************************************************************************
+     * Public Methods of RowCountable interface:
+     **************************************************************************
+     */
+
+    public long getEstimatedRowCount()
+		throws StandardException
+    {
+        if (getContainer() == null)
+            reopen();
+
+        long row_count = getContainer().getEstimatedRowCount(/* unused flag */ 0);
+
+        return(row_count == 0 ? 1 : row_count);
+    }
+
+    public void setEstimatedRowCount(long count)
+		throws StandardException
+    {
+        if (getContainer() == null)
+            reopen();
+
+        getContainer().setEstimatedRowCount(count, /* unused flag */ 0);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.hash.HashIndexSplitLock
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.hash;
+
+import org.apache.derby.iapi.services.locks.ShExLockable;
+import org.apache.derby.iapi.store.raw.ContainerKey;
+
+/**
+ * The lock which keeps the buckets of a hash index from being split, or
+ * purged, while a scan of the index is open.
+ * <p>
+ * Scans get the lock shared, for as long as they are open, so that the rows
+ * they are positioned on stay where they are.  Splits and purges are done
+ * in internal transactions which only try to get it exclusive, without
+ * waiting, and leave the bucket alone if they cannot.
+ **/
+
+final class HashIndexSplitLock extends ShExLockable
+{
+    private final ContainerKey id;
+
+    HashIndexSplitLock(ContainerKey id)
+    {
+        this.id = id;
+    }
+
+    public boolean equals(Object other)
+    {
+        return (other instanceof HashIndexSplitLock) &&
+            id.equals(((HashIndexSplitLock) other).id);
+    }
+
+    public int hashCode()
+    {
+        return(id.hashCode());
+    }
+
+    public String toString()
+    {
+        return("HashIndexSplitLock(" + id + ")");
+    }
+}
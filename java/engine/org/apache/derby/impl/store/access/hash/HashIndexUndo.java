@@ -0,0 +1,256 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.hash.HashIndexUndo
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.hash;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.reference.SQLState;
+import org.apache.derby.iapi.services.io.Formatable;
+import org.apache.derby.iapi.services.io.LimitObjectInput;
+import org.apache.derby.iapi.services.io.StoredFormatIds;
+import org.apache.derby.iapi.store.access.RowUtil;
+import org.apache.derby.iapi.store.access.conglomerate.LogicalUndo;
+import org.apache.derby.iapi.store.raw.ContainerHandle;
+import org.apache.derby.iapi.store.raw.FetchDescriptor;
+import org.apache.derby.iapi.store.raw.LogicalUndoable;
+import org.apache.derby.iapi.store.raw.Page;
+import org.apache.derby.iapi.store.raw.RecordHandle;
+import org.apache.derby.iapi.store.raw.Transaction;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.shared.common.sanity.SanityManager;
+
+/**
+ * @derby.formatId ACCESS_HASHUNDO_V1_ID
+ *
+ * @derby.purpose   Implements the LogicalUndo and Formatable interfaces, basically
+ *            providing a way for raw store recovery to "call back" access code
+ *            to provide logical undo ability.
+ *
+ * @derby.upgrade   This is the current version, no upgrade necessary.
+ *
+ * @derby.diskLayout 
+ *     No state associated with this format.
+ *
+ **/
+
+/**
+
+The HashIndexUndo interface packages up the routines which the rawstore needs
+to call to perform logical undo of a record in a hash index.  A split of a
+bucket, or a purge of its committed deleted rows, may have moved the record
+since it was written, in which case the findUndo() interface hashes the
+logged row to find the bucket where it is now.
+<p>
+This class must not contain any persistent state, as this class is stored
+in the log record of the insert/delete.
+
+@see org.apache.derby.iapi.store.raw.LogicalUndoable
+@see org.apache.derby.iapi.store.raw.Undoable#generateUndo 
+**/
+public class HashIndexUndo implements LogicalUndo, Formatable
+{
+	/**
+	 * Find the page and record to undo.  If no logical undo is necessary,
+	 * i.e., row has not moved, then just return the latched page where undo
+	 * should go.  If the record has moved, it has a new recordId on the new
+	 * page, this routine needs to call pageOp.resetRecord with the new
+	 * RecordHandle so that the logging system can update the compensation
+	 * Operation with the new location.
+     *
+	 * @param rawtran   the transaction doing the rollback
+	 * @param pageOp    the page operation that supports logical undo.  This
+	 * 		            LogicalUndo function pointer is a field of that 
+     * 		            pageOperation
+	 * @param in        data stored in the log stream that contains the record 
+     *                  data necessary to restore the row.
+     *
+     * @exception StandardException Standard Derby error policy
+	 * @exception IOException Method may read from InputStream
+	 */
+	public Page findUndo(
+    Transaction         rawtran, 
+    LogicalUndoable     pageOp,
+    LimitObjectInput    in)
+        throws StandardException, IOException
+    {
+        ContainerHandle       container = pageOp.getContainer();
+        RecordHandle          rechandle = pageOp.getRecordHandle();
+        HashIndex             conglom   = null;
+        DataValueDescriptor[] control_row = new DataValueDescriptor[1];
+        Page                  page      = null;
+        boolean               ok_exit   = false;
+
+        // Need the conglomerate to create templates - get it from the meta
+        // page.
+        page = container.getPage(HashDirectory.META_PAGE);
+
+        try
+        {
+            control_row[0] = new HashIndex();
+
+            page.fetchFromSlot(
+                (RecordHandle) null, HashDirectory.CONGLOM_SLOT, control_row,
+                (FetchDescriptor) null, true);
+
+            conglom = (HashIndex) control_row[0];
+        }
+        finally
+        {
+            page.unlatch();
+            page = null;
+        }
+
+        DataValueDescriptor[] logged_row = conglom.createTemplate(rawtran);
+        DataValueDescriptor[] template   = conglom.createTemplate(rawtran);
+
+        // Get logged row from record.
+        pageOp.restoreLoggedRow(logged_row, in);
+
+        try
+        {
+            // Get the page where the record was originally, before a split
+            // could have moved it.  The page is gone if it has been freed
+            // since, and it may have been reused for another page.
+            page = container.getPage(rechandle.getPageNumber());
+
+            if (page != null && 
+                page.recordExists(rechandle, true) &&
+                page.fetchNumFields(rechandle) == logged_row.length &&
+                sameRow(
+                    conglom, page, page.getSlotNumber(rechandle),
+                    template, logged_row))
+            {
+                // the raw store has the right page and record and there is
+                // no work to be done (this is usual case).
+                ok_exit = true;
+                return(page);
+            }
+
+            if (page != null)
+                page.unlatch();
+
+            // Walk the bucket of the logged row until it is found.
+            page = 
+                HashDirectory.getBucketPage(
+                    container, conglom.hash(logged_row, template));
+
+            while (page != null)
+            {
+                for (int slot = HashDirectory.FIRST_ROW_SLOT;
+                     slot < page.recordCount();
+                     slot++)
+                {
+                    if (sameRow(conglom, page, slot, template, logged_row))
+                    {
+                        pageOp.resetRecordHandle(
+                            page.getRecordHandleAtSlot(slot));
+
+                        ok_exit = true;
+                        return(page);
+                    }
+                }
+
+                long next_pageno = HashDirectory.getNextPageNumber(page);
+                Page next        = 
+                    (next_pageno == ContainerHandle.INVALID_PAGE_NUMBER) ?
+                        null : container.getPage(next_pageno);
+
+                page.unlatch();
+                page = next;
+            }
+
+            if (SanityManager.DEBUG)
+            {
+                SanityManager.THROWASSERT(
+                    "HashIndexUndo - could not find row being searched for:" +
+                    ";row = " + RowUtil.toString(logged_row));
+            }
+
+            throw StandardException.newException(
+                    SQLState.BTREE_ROW_NOT_FOUND_DURING_UNDO);
+        }
+        finally
+        {
+            if ((!ok_exit) && (page != null))
+                page.unlatch();
+        }
+    }
+
+    /**
+     * Tell if the row at a slot is the logged row.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    private boolean sameRow(
+    HashIndex               conglom,
+    Page                    page,
+    int                     slot,
+    DataValueDescriptor[]   template,
+    DataValueDescriptor[]   logged_row)
+        throws StandardException
+    {
+        page.fetchFromSlot(
+            (RecordHandle) null, slot, template, (FetchDescriptor) null, true);
+
+        return(
+            template[conglom.rowLocationColumn].equals(
+                logged_row[conglom.rowLocationColumn]) &&
+            conglom.compare(
+                template, logged_row, conglom.rowLocationColumn) == 0);
+    }
+
+	/**
+		Return my format identifier.
+
+		@see org.apache.derby.iapi.services.io.TypedFormat#getTypeFormatId
+	*/
+	public int getTypeFormatId() 
+    {
+		return StoredFormatIds.ACCESS_HASHUNDO_V1_ID;
+	}
+
+	/**
+    This object has no state, so nothing to write.*/
+
+	public void writeExternal(ObjectOutput out) throws IOException
+    {
+        return;
+	}
+
+	/**
+	Restore the in-memory representation from the stream.
+
+    This object has no state, so nothing to restore.
+	@exception ClassNotFoundException Thrown if the stored representation is
+	serialized and a class named in the stream could not be found.
+
+	@see java.io.Externalizable#readExternal
+	*/
+	public void readExternal(ObjectInput in)
+		throws IOException, ClassNotFoundException
+	{
+        return;
+	}
+}
@@ -0,0 +1,76 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.hash.OpenHashIndex
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.hash;
+
+import org.apache.derby.iapi.reference.SQLState;
+
+import org.apache.derby.iapi.error.StandardException;
+
+import org.apache.derby.iapi.store.access.conglomerate.LogicalUndo;
+
+import org.apache.derby.iapi.types.RowLocation;
+
+import org.apache.derby.impl.store.access.conglomerate.OpenConglomerate;
+
+/**
+ * The open container of a hash index.
+ * <p>
+ * The hash index does its own locking of the base rows and of its keys, so
+ * the container is always opened without a locking policy.
+ **/
+
+class OpenHashIndex extends OpenConglomerate
+{
+    /**************************************************************************
+     * Fields of the class
+     **************************************************************************
+     */
+
+    /**
+     * Finds the rows inserted and deleted through this open index during
+     * undo, after a split may have moved them to another page.
+     **/
+    final LogicalUndo hash_undo = new HashIndexUndo();
+
+    /**************************************************************************
+     * Public Methods of This class:
+     **************************************************************************
+     */
+    public int[] getFormatIds()
+    {
+        return(((HashIndex) getConglomerate()).format_ids);
+    }
+
+    /**
+     * Return an "empty" row location object of the correct type.
+     * <p>
+     * The rows of an index are not located by RowLocations.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	protected RowLocation newRowLocationTemplate()
+		throws StandardException
+	{
+        throw StandardException.newException(
+                SQLState.BTREE_UNIMPLEMENTED_FEATURE);
+	}
+}
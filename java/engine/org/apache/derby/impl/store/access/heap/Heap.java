@@ -879,6 +879,18 @@ public class Heap
             stopKeyValue,
             stopSearchOperator);
 
+        // a scan at read committed which does not change the rows it reads
+        // may read the committed version of rows being changed by other 
+        // transactions, rather than wait for the locks on them.
+        if ((isolation_level == 
+                 TransactionController.ISOLATION_READ_COMMITTED ||
+             isolation_level == 
+                 TransactionController.ISOLATION_READ_COMMITTED_NOHOLDLOCK) &&
+            !open_conglom.isForUpdate())
+        {
+            heapscan.setSnapshotReads();
+        }
+
 		return(heapscan);
 	}
 
@@ -1060,6 +1072,16 @@ public class Heap
         return;
     }
 
+	public void shrinkConglomerate(
+    TransactionManager              xact_manager,
+    Transaction                     rawtran)
+        throws StandardException
+    {
+        // heap pages are not merged online, a heap is shrunk by an in place
+        // compress.
+        return;
+    }
+
     /**
      * Open a heap compress scan.
      * <p>
@@ -23,6 +23,8 @@ package org.apache.derby.impl.store.access.heap;
 
 import org.apache.derby.shared.common.sanity.SanityManager;
 
+import org.apache.derby.iapi.reference.SQLState;
+
 import org.apache.derby.iapi.error.StandardException;
 
 import org.apache.derby.iapi.store.access.SpaceInfo;
@@ -353,6 +355,21 @@ class HeapCompressScan
         open_conglom.latchPageAndRepositionScan(scan_position);
     }
 
+    /**
+     * The compress scan moves rows between pages, so it always reads the
+     * whole heap.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public boolean reopenScanByPageRange(
+    long    firstPage,
+    long    lastPage)
+        throws StandardException
+    {
+        throw(StandardException.newException(
+                SQLState.HEAP_UNIMPLEMENTED_FEATURE));
+    }
+
     /**
      * Move the scan from SCAN_INIT to SCAN_INPROGRESS.
      * <p>
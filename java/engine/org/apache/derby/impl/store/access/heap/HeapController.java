@@ -256,6 +256,8 @@ public class HeapController
             // for the row.
             rh = page.insert(row, null, insert_mode,
 				AccessFactoryGlobals.HEAP_OVERFLOW_THRESHOLD);
+            if (rh != null)
+                open_conglom.saveInsertedRowVersion(rh);
             page.unlatch();
             page = null;
 
@@ -289,6 +291,8 @@ public class HeapController
             
             rh = page.insert(row, null, insert_mode,
 				AccessFactoryGlobals.HEAP_OVERFLOW_THRESHOLD);
+            if (rh != null)
+                open_conglom.saveInsertedRowVersion(rh);
 
             page.unlatch();
             page = null;
@@ -308,6 +312,8 @@ public class HeapController
 
         rh = page.insert(row, null, Page.INSERT_OVERFLOW,
 			AccessFactoryGlobals.HEAP_OVERFLOW_THRESHOLD);
+        if (rh != null)
+            open_conglom.saveInsertedRowVersion(rh);
         page.unlatch();
         page = null;
 
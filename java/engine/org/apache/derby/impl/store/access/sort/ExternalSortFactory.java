@@ -37,6 +37,7 @@ import org.apache.derby.iapi.error.StandardException;
 import org.apache.derby.iapi.store.access.conglomerate.Sort;
 import org.apache.derby.iapi.store.access.conglomerate.SortFactory;
 
+import org.apache.derby.iapi.store.access.AccessFactoryGlobals;
 import org.apache.derby.iapi.store.access.SortObserver;
 import org.apache.derby.iapi.store.access.SortCostController;
 import org.apache.derby.iapi.store.access.ColumnOrdering;
@@ -67,7 +68,7 @@ public class ExternalSortFactory implements
 	private static final String FORMATUUIDSTRING = "D2976090-D9F5-11d0-B54D-00A024BF8879";
 	private UUID formatUUID = null;
 	private static final int DEFAULT_SORTBUFFERMAX = 1024;
-	private static final int MINIMUM_SORTBUFFERMAX = 4;
+	static final int MINIMUM_SORTBUFFERMAX = 4;
 
 	protected static final int DEFAULT_MEM_USE = 1024*1024; // aim for about 1Meg
 	// how many sort runs to combined into a larger sort run
@@ -230,6 +231,18 @@ public class ExternalSortFactory implements
 		sort.initialize(
             template, columnOrdering, sortObserver, 
             alreadyInOrder, estimatedRows, sortBufferMax);
+
+		// Sort the merge runs on worker threads, if asked to.  The workers
+		// compare rows concurrently, which a sort observer that remembers
+		// duplicates while comparing (deferrable constraints) cannot allow.
+		if (implParameters != null &&
+			(sortObserver == null || !sortObserver.deferrable()))
+		{
+			String threads = implParameters.getProperty(
+				AccessFactoryGlobals.SORT_WORKER_THREADS);
+			if (threads != null)
+				sort.sortWorkerThreads = Integer.parseInt(threads);
+		}
 		return sort;
 	}
 
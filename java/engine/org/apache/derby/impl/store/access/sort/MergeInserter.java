@@ -58,6 +58,18 @@ final class MergeInserter implements SortController
 	**/
 	private SortBuffer sortBuffer;
 
+	/**
+	The workers which sort the merge runs, once the sort has become
+	external, if the sort has sort workers.  The rows are then collected
+	in chunks instead of in the sort buffer.
+	**/
+	private SortWorkers sortWorkers;
+
+	/**
+	The chunk being filled, if there are sort workers.
+	**/
+	private SortWorkers.Chunk chunk;
+
 	/**
 	Information about memory usage to dynamically tune the
 	in-memory sort buffer size.
@@ -95,6 +107,14 @@ final class MergeInserter implements SortController
 		// Check that the inserted row is of the correct type
 		sort.checkColumnTypes(row);
 
+		if (sortWorkers != null)
+		{
+            stat_numRowsInput++;
+			if (insertIntoChunk(row))
+                stat_numRowsOutput++;
+			return;
+		}
+
 		// Insert the row into the sort buffer, which will
 		// sort it into the right order with the rest of the
 		// rows and remove any duplicates.
@@ -198,6 +218,14 @@ final class MergeInserter implements SortController
             totalRunSize += runSize;
             stat_mergeRunsSize.addElement(runSize);
 
+			// Sort the rest of the runs on the sort workers, if asked to.
+			if (sort.sortWorkerThreads > 1)
+			{
+				startSortWorkers();
+				insertIntoChunk(row);
+				return;
+			}
+
 			// Re-insert the row into the sort buffer.
 			// This is guaranteed to work since the sort
 			// buffer has just been emptied.
@@ -214,16 +242,22 @@ final class MergeInserter implements SortController
 
 	public void completedInserts()
 	{
+		// Hand the last chunk to the sort workers.
+		if (sortWorkers != null && chunk.size() > 0)
+			handOver(chunk);
+		chunk = null;
+
 		// Tell the sort that we're closed, and hand off
-		// the sort buffer and the vector of merge runs.
+		// the sort buffer, the vector of merge runs and the
+		// sort workers with the chunks not yet written.
 		if (sort != null)
-			sort.doneInserting(this, sortBuffer, mergeRuns);
+			sort.doneInserting(this, sortBuffer, mergeRuns, sortWorkers);
 
         // if this is an external sort, there will actually
         // be one last merge run with the contents of the
         // current sortBuffer. It will be created when the user
         // reads the result of the sort using openSortScan
-        if (stat_sortType == "external")
+        if (stat_sortType == "external" && sortWorkers == null)
         {
             stat_numMergeRuns++;
             stat_mergeRunsSize.addElement(stat_numRowsInput - totalRunSize);
@@ -237,6 +271,7 @@ final class MergeInserter implements SortController
 		tran = null;
 		mergeRuns = null;
 		sortBuffer = null;
+		sortWorkers = null;
 	}
 
 	/*
@@ -261,6 +296,68 @@ final class MergeInserter implements SortController
     }
 
 
+	/**
+	Hand a full chunk to the sort workers.
+	**/
+	private void handOver(SortWorkers.Chunk chunk)
+	{
+		sortWorkers.sort(chunk);
+
+        stat_numMergeRuns++;
+        stat_mergeRunsSize.addElement(chunk.size());
+	}
+
+	/**
+	Insert a row into the chunk being filled for the sort workers.  When
+	the chunk is full, hand it to the workers and write the chunks they
+	have sorted as merge runs, so that no more chunks than there are
+	workers wait for a worker or to be written.
+	@return false if the sort observer dropped the row
+	**/
+	private boolean insertIntoChunk(DataValueDescriptor[] row)
+		throws StandardException
+	{
+		// The chunk keeps the row, so it needs a copy.
+		DataValueDescriptor[] copy = row;
+		if (sort.sortObserver != null)
+		{
+			copy = sort.sortObserver.insertNonDuplicateKey(row);
+			if (copy == null)
+				return false;
+		}
+
+		if (!chunk.add(copy))
+			return true;
+
+		handOver(chunk);
+		chunk = new SortWorkers.Chunk(sort, chunk.capacity());
+
+		while (sortWorkers.handedOverCount() >= sortWorkers.getThreadCount())
+		{
+			long conglomid = sort.createMergeRun(tran, sortWorkers.takeSorted());
+			mergeRuns.addElement(conglomid);
+		}
+		return true;
+	}
+
+	/**
+	Start the sort workers when the first merge run has been written.  The
+	chunks are smaller than the sort buffer, so that the chunks being
+	sorted and the one being filled use about as much memory as the sort
+	buffer did.
+	**/
+	private void startSortWorkers()
+	{
+		int threads = sort.sortWorkerThreads;
+		sortWorkers = new SortWorkers(threads);
+		sortWorkers.start();
+
+		int capacity = sortBuffer.capacity() / (threads + 1);
+		if (capacity < ExternalSortFactory.MINIMUM_SORTBUFFERMAX)
+			capacity = ExternalSortFactory.MINIMUM_SORTBUFFERMAX;
+		chunk = new SortWorkers.Chunk(sort, capacity);
+	}
+
 	/**
 	Initialize this inserter.
 	@return true if initialization was successful
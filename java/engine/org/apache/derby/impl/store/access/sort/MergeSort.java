@@ -155,6 +155,19 @@ class MergeSort implements Sort
 	**/
 	private SortBuffer sortBuffer = null;
 
+	/**
+	The sort workers, with the chunks the MergeInserter handed to them and
+	did not write as merge runs yet.  Null if the sort has no workers, or
+	until it becomes external.
+	**/
+	private SortWorkers sortWorkers = null;
+
+	/**
+	The number of worker threads which sort the merge runs once the sort
+	becomes external.  No workers unless greater than 1.
+	**/
+	int sortWorkerThreads = 1;
+
 	/**
 	The maximum number of entries a sort buffer can hold.
 	**/
@@ -235,9 +248,14 @@ class MergeSort implements Sort
 		}
 		else
 		{
-			// Dump the rows in the sort buffer to a merge run.
-			long containerId = createMergeRun(tran, sortBuffer);
-			mergeRuns.addElement(containerId);
+			// Write the chunks left with the sort workers, and dump the
+			// rows in the sort buffer, to merge runs.
+			writeSortedChunks(tran);
+			if (!sortBuffer.isEmpty())
+			{
+				long containerId = createMergeRun(tran, sortBuffer);
+				mergeRuns.addElement(containerId);
+			}
 
 			// If there are more merge runs than we can sort
 			// at once with our sort buffer, we have to reduce
@@ -294,9 +312,14 @@ class MergeSort implements Sort
 		}
 		else
 		{
-			// Dump the rows in the sort buffer to a merge run.
-			long containerId = createMergeRun(tran, sortBuffer);
-			mergeRuns.addElement(containerId);
+			// Write the chunks left with the sort workers, and dump the
+			// rows in the sort buffer, to merge runs.
+			writeSortedChunks(tran);
+			if (!sortBuffer.isEmpty())
+			{
+				long containerId = createMergeRun(tran, sortBuffer);
+				mergeRuns.addElement(containerId);
+			}
 
 			// If there are more merge runs than we can sort
 			// at once with our sort buffer, we have to reduce
@@ -345,6 +368,13 @@ class MergeSort implements Sort
 			inserter.completedInserts();
 		inserter = null;
 
+		// Stop the sort workers, dropping the chunks not yet written.
+		if (sortWorkers != null)
+		{
+			sortWorkers.stop();
+			sortWorkers = null;
+		}
+
 		// Make sure the scan is closed, if there is one.
 		// This will cause the callback to doneScanning().
 		if (scan != null)
@@ -577,7 +607,8 @@ class MergeSort implements Sort
 	An inserter is closing.
 	**/
 	void doneInserting(MergeInserter inserter,
-		SortBuffer sortBuffer, Vector<Long> mergeRuns)
+		SortBuffer sortBuffer, Vector<Long> mergeRuns,
+		SortWorkers sortWorkers)
 	{
         if (SanityManager.DEBUG)
         {
@@ -586,6 +617,7 @@ class MergeSort implements Sort
 
 		this.sortBuffer = sortBuffer;
 		this.mergeRuns = mergeRuns;
+		this.sortWorkers = sortWorkers;
 		this.inserter = null;
 
 		this.state = STATE_DONE_INSERTING;
@@ -770,4 +802,40 @@ class MergeSort implements Sort
 
 		return id;
 	}
+
+	/**
+	Store the rows of a chunk sorted by the sort workers in a merge run.
+	Returns the container id of the merge run.
+	**/
+	long createMergeRun(TransactionManager tran, SortWorkers.Chunk chunk)
+		throws StandardException
+	{
+		Transaction rawTran = tran.getRawStoreXact();
+		int segmentId = StreamContainerHandle.TEMPORARY_SEGMENT;
+		return rawTran.addAndLoadStreamContainer(segmentId,
+			properties, chunk);
+	}
+
+	/**
+	Wait for the sort workers to sort the chunks the inserter left with
+	them, write the chunks to merge runs, and stop the workers.
+	**/
+	private void writeSortedChunks(TransactionManager tran)
+		throws StandardException
+	{
+		if (sortWorkers == null)
+			return;
+
+		try
+		{
+			SortWorkers.Chunk chunk;
+			while ((chunk = sortWorkers.takeSorted()) != null)
+				mergeRuns.addElement(createMergeRun(tran, chunk));
+		}
+		finally
+		{
+			sortWorkers.stop();
+			sortWorkers = null;
+		}
+	}
 }
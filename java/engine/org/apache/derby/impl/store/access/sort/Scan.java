@@ -292,6 +292,20 @@ public abstract class Scan implements ScanManager, ScanInfo
                 SQLState.SORT_IMPROPER_SCAN_METHOD);
     }
 
+	/**
+	 * Not supported by sorts.
+	 *
+	 * @exception StandardException Standard exception policy.
+	 */
+	public boolean reopenScanByPageRange(
+    long    firstPage,
+    long    lastPage)
+        throws StandardException
+    {
+        throw StandardException.newException(
+                SQLState.SORT_IMPROPER_SCAN_METHOD);
+    }
+
     /**
     Replace the entire row at the current position of the scan.
 	@see ScanController#replace
@@ -197,6 +197,14 @@ class SortBuffer
 		return allocator.capacity() - 1;
 	}
 
+	/**
+	Return true if the tree holds no keys.
+	**/
+	boolean isEmpty()
+	{
+		return head.rightLink == null;
+	}
+
 	/**
 	Insert a key k into the tree. Returns true if the
 	key was inserted, false if the tree is full.  Silently
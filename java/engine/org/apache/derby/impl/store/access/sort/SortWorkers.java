@@ -0,0 +1,400 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.access.sort.SortWorkers
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.access.sort;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.services.io.FormatableBitSet;
+import org.apache.derby.iapi.services.monitor.ModuleFactory;
+import org.apache.derby.iapi.services.monitor.Monitor;
+import org.apache.derby.iapi.store.access.RowSource;
+import org.apache.derby.iapi.types.DataValueDescriptor;
+import org.apache.derby.iapi.util.InterruptStatus;
+
+/**
+	Worker threads which sort the merge runs of an external sort.
+	<P>
+	Once an external sort with sort workers has written its first merge
+	run, the MergeInserter stops inserting rows into its sort buffer.
+	It collects the rows in chunks instead, and hands every full chunk to
+	the workers, which sort it while the inserting thread goes on with
+	the next chunk. The inserting thread then writes the sorted chunks as
+	merge runs, in the order they were handed over, and the merge runs are
+	merged like the merge runs of any other external sort.
+	<P>
+	The workers only compare rows. Cloning the inserted rows, the sort
+	observer callbacks for duplicate rows and writing the merge runs all
+	happen on the inserting thread, which owns the transaction and the
+	contexts they need. For the same reason sorts whose observer remembers
+	duplicates while comparing (deferrable constraints) get no workers.
+	<P>
+	If a worker fails, the error is rethrown on the inserting thread when
+	it takes the chunk back.
+	<P>
+	MT - the chunks waiting for a worker, the chunks handed over and the
+	state of every chunk are protected by synchronizing on this object.
+*/
+final class SortWorkers implements Runnable
+{
+	/** the worker threads */
+	private final Thread[] threads;
+
+	/** chunks waiting for a worker */
+	private final ArrayDeque<Chunk> waiting = new ArrayDeque<Chunk>();
+
+	/** chunks handed over and not taken back yet, oldest first */
+	private final ArrayDeque<Chunk> handedOver = new ArrayDeque<Chunk>();
+
+	/** set when the workers must stop */
+	private boolean stopped;
+
+	/**
+		Create the workers of a sort, start them with start().
+
+		@param threads the number of worker threads
+	*/
+	SortWorkers(int threads)
+	{
+		this.threads = new Thread[threads];
+	}
+
+	/**
+		Start the worker threads.
+	*/
+	void start()
+	{
+		for (int i = 0; i < threads.length; i++)
+		{
+			threads[i] = getMonitor().getDaemonThread(
+				this, "sort-worker-" + i, false);
+			threads[i].start();
+		}
+	}
+
+	/** Get the number of worker threads. */
+	int getThreadCount()
+	{
+		return threads.length;
+	}
+
+	/**
+		Hand a chunk over to be sorted.
+	*/
+	synchronized void sort(Chunk chunk)
+	{
+		waiting.addLast(chunk);
+		handedOver.addLast(chunk);
+		notifyAll();
+	}
+
+	/** Get the number of chunks handed over and not taken back yet. */
+	synchronized int handedOverCount()
+	{
+		return handedOver.size();
+	}
+
+	/**
+		Wait for the oldest chunk handed over to be sorted, and take it back.
+
+		@return the sorted chunk, or null if every chunk has been taken back
+
+		@exception StandardException the error of the worker which sorted
+		the chunk
+	*/
+	synchronized Chunk takeSorted() throws StandardException
+	{
+		Chunk chunk = handedOver.peekFirst();
+		if (chunk == null)
+			return null;
+
+		while (!chunk.sorted && !stopped)
+		{
+			try
+			{
+				wait();
+			}
+			catch (InterruptedException ie)
+			{
+				InterruptStatus.setInterrupted();
+			}
+		}
+
+		if (!chunk.sorted)
+			return null;
+
+		handedOver.removeFirst();
+
+		if (chunk.error != null)
+		{
+			if (chunk.error instanceof StandardException)
+				throw (StandardException) chunk.error;
+			throw StandardException.plainWrapException(chunk.error);
+		}
+		return chunk;
+	}
+
+	/**
+		Stop the worker threads and wait for them to finish. The chunks
+		not taken back are dropped.
+	*/
+	void stop()
+	{
+		synchronized (this)
+		{
+			stopped = true;
+			waiting.clear();
+			handedOver.clear();
+			notifyAll();
+		}
+
+		for (int i = 0; i < threads.length; i++)
+		{
+			if (threads[i] == null)
+				continue;
+			try
+			{
+				threads[i].join();
+			}
+			catch (InterruptedException ie)
+			{
+				InterruptStatus.setInterrupted();
+			}
+		}
+	}
+
+	/**
+		A worker thread. Sorts the waiting chunks until stopped.
+	*/
+	public void run()
+	{
+		for (;;)
+		{
+			Chunk chunk;
+			synchronized (this)
+			{
+				while (waiting.isEmpty() && !stopped)
+				{
+					try
+					{
+						wait();
+					}
+					catch (InterruptedException ie)
+					{
+						InterruptStatus.setInterrupted();
+					}
+				}
+				if (stopped)
+					return;
+				chunk = waiting.removeFirst();
+			}
+
+			Throwable error = null;
+			try
+			{
+				chunk.sortRows();
+			}
+			catch (Throwable t)
+			{
+				error = t;
+			}
+
+			synchronized (this)
+			{
+				chunk.sorted = true;
+				chunk.error = error;
+				notifyAll();
+			}
+		}
+	}
+
+    /**
+     * Privileged Monitor lookup. Must be private so that user code
+     * can't call this entry point.
+     */
+    private  static  ModuleFactory  getMonitor()
+    {
+        return AccessController.doPrivileged
+            (
+             new PrivilegedAction<ModuleFactory>()
+             {
+                 public ModuleFactory run()
+                 {
+                     return Monitor.getMonitor();
+                 }
+             }
+             );
+    }
+
+	/**
+		A chunk of the rows of a sort, which is sorted by a worker and then
+		read back, as a row source, into a merge run.
+		<P>
+		Adjacent rows which compare equal once sorted are passed to the
+		sort observer as duplicates while reading, the way the sort buffer
+		does while inserting.
+		<P>
+		MT - filled and read by the inserting thread, sorted by a worker
+		in between. The sorted and error fields are protected by
+		synchronizing on the SortWorkers.
+	*/
+	static final class Chunk implements RowSource
+	{
+		private final MergeSort sort;
+		private final DataValueDescriptor[][] rows;
+		private int count;
+
+		/** the next row to read */
+		private int next;
+
+		/** set once a worker has sorted the chunk */
+		boolean sorted;
+
+		/** the error of the worker which sorted the chunk */
+		Throwable error;
+
+		Chunk(MergeSort sort, int capacity)
+		{
+			this.sort = sort;
+			this.rows = new DataValueDescriptor[capacity][];
+		}
+
+		/**
+			Add a row to the chunk.
+
+			@return true if the chunk is full
+		*/
+		boolean add(DataValueDescriptor[] row)
+		{
+			rows[count++] = row;
+			return count == rows.length;
+		}
+
+		/** Get the number of rows the chunk holds when full. */
+		int capacity()
+		{
+			return rows.length;
+		}
+
+		/** Get the number of rows in the chunk. */
+		int size()
+		{
+			return count;
+		}
+
+		/**
+			Sort the rows, on a worker thread.
+		*/
+		void sortRows() throws StandardException
+		{
+			try
+			{
+				Arrays.sort(rows, 0, count,
+					new Comparator<DataValueDescriptor[]>()
+					{
+						public int compare(
+							DataValueDescriptor[] r1, DataValueDescriptor[] r2)
+						{
+							try
+							{
+								return sort.compare(r1, r2);
+							}
+							catch (StandardException se)
+							{
+								throw new CompareFailure(se);
+							}
+						}
+					});
+			}
+			catch (CompareFailure cf)
+			{
+				throw cf.se;
+			}
+		}
+
+		/*
+		 * Methods of RowSource
+		 */
+
+		public DataValueDescriptor[] getNextRowFromRowSource()
+			throws StandardException
+		{
+			if (next >= count)
+				return null;
+
+			DataValueDescriptor[] row = rows[next];
+			rows[next++] = null;
+
+			// Without a sort observer the duplicates are all kept.
+			if (sort.sortObserver == null)
+				return row;
+
+			// Let the sort observer drop the duplicates of the row,
+			// or keep them.
+			while (next < count && sort.compare(rows[next], row) == 0)
+			{
+				DataValueDescriptor[] dup =
+					sort.sortObserver.insertDuplicateKey(rows[next], row);
+				if (dup != null)
+				{
+					rows[next] = dup;
+					break;
+				}
+				rows[next++] = null;
+			}
+
+			// The merge run copies the row, so it can be reused.
+			sort.sortObserver.addToFreeList(row, sort.sortBufferMax);
+			return row;
+		}
+
+		public boolean needsToClone()
+		{
+			return false;
+		}
+
+		public FormatableBitSet getValidColumns()
+		{
+			return null;
+		}
+
+		public void closeRowSource()
+		{
+		}
+	}
+
+	/**
+		Carries a StandardException out of a Comparator.
+	*/
+	private static final class CompareFailure extends RuntimeException
+	{
+		private final StandardException se;
+
+		CompareFailure(StandardException se)
+		{
+			this.se = se;
+		}
+	}
+}
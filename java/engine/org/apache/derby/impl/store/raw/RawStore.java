@@ -73,6 +73,7 @@ import java.security.PrivilegedActionException;
 import java.security.SecureRandom;
 
 import java.util.Date;
+import java.util.Map;
 import java.util.Properties;
 import java.io.Serializable;
 import java.io.File;
@@ -1228,6 +1229,11 @@ public final class RawStore implements RawStoreFactory, ModuleControl, ModuleSup
 		return xactFactory.getTransactionInfo();
 	}
 
+	public Map<String, Long> getLogStatistics()
+	{
+		return logFactory.getLogStatistics();
+	}
+
 
 	public ScanHandle openFlushedScan(DatabaseInstant start, int groupsIWant)
 		 throws StandardException
@@ -924,6 +924,12 @@ abstract class BaseContainer implements Lockable {
 		return false;
 	}
 
+	// Not counted in the lock statistics.
+	public long getLockStatisticsContainerId()
+	{
+		return -1;
+	}
+
 	
 
 }
@@ -123,6 +123,16 @@ public class BaseContainerHandle extends DerbyObservable
 	private PageActions		            actionsSet;
 	private AllocationActions           allocActionsSet;
 
+    /**
+     * Sequential access detection for read-ahead, see
+     * FileContainer.readAhead.  These are only hints, so they are not
+     * synchronized.
+     **/
+	long                                lastPageRead =
+        ContainerHandle.INVALID_PAGE_NUMBER;
+	int                                 sequentialPagesRead;
+	long                                readAheadPageNumber;
+
 
 	/*
 	** Constructor
@@ -81,6 +81,7 @@ import org.apache.derby.iapi.services.io.FileUtil;
 import org.apache.derby.iapi.services.property.PropertyUtil;
 
 import java.util.Date;
+import java.util.List;
 import java.util.Properties;
 import java.util.Hashtable;
 import java.util.Enumeration;
@@ -133,6 +134,24 @@ public class BaseDataFileFactory
 	private     CacheManager	pageCache;
 	private     CacheManager	containerCache;
 
+	/**
+	 * The dirty page table of incremental checkpoints, null if they are
+	 * not enabled (derby.storage.incrementalCheckpoint).
+	 */
+	private     DirtyPageTable  dirtyPageTable;
+
+	/**
+	 * Number of pages per second an incremental checkpoint writes out,
+	 * 0 for no limit.
+	 */
+	private     int             checkpointPageRate;
+
+	/**
+	 * Set when someone waits for an incremental checkpoint to finish, to
+	 * write out its remaining pages without pausing.
+	 */
+	private volatile boolean    hurryCheckpoint;
+
 	private     LogFactory	    logFactory;
 
 	private     ProductVersionHolder jbmsVersion;
@@ -179,6 +198,18 @@ public class BaseDataFileFactory
 	private static final String LINE = 
         "----------------------------------------------------------------";
 
+	// default number of pages per second written by incremental checkpoints
+	private static final int CHECKPOINT_PAGE_RATE_DEFAULT = 1000;
+
+	// largest number of pages read ahead of a sequential scan
+	private static final int READ_AHEAD_PAGES_MAXIMUM = 4096;
+
+	// default number of pages per second written by the background writer
+	private static final int BACKGROUND_WRITER_RATE_DEFAULT = 1000;
+
+	// value of derby.storage.pageReplacementPolicy for the 2Q policy
+	private static final String PAGE_REPLACEMENT_2Q = "2Q";
+
     // disable syncing of data during page allocation.  DERBY-888 changes
     // the system to not require data syncing at allocation.  
     boolean dataNotSyncedAtAllocation = true;
@@ -186,6 +217,14 @@ public class BaseDataFileFactory
     // disable syncing of data during checkpoint.
     boolean dataNotSyncedAtCheckpoint = false;
 
+    // read pages through memory mapped segments of the container files,
+    // see RAFContainer4 (derby.storage.mappedReads).
+    boolean mappedReads = false;
+
+	// reads pages ahead of sequential scans, null if read-ahead is off
+	// (derby.storage.readAheadPages).
+	private ReadAhead readAhead;
+
 	// these fields can be accessed directly by subclasses if it needs a
 	// different set of actions
 	private PageActions       loggablePageActions; 
@@ -423,6 +462,22 @@ public class BaseDataFileFactory
 
 
 
+		if (PropertyUtil.getSystemBoolean(
+                Property.STORAGE_INCREMENTAL_CHECKPOINT))
+		{
+			// must be set up before the page cache creates any pages
+			dirtyPageTable = new DirtyPageTable();
+			checkpointPageRate = getIntParameter(
+                    Property.STORAGE_CHECKPOINT_PAGE_RATE,
+                    null,
+                    CHECKPOINT_PAGE_RATE_DEFAULT,
+                    0,
+                    Integer.MAX_VALUE);
+		}
+
+		mappedReads =
+            PropertyUtil.getSystemBoolean(Property.STORAGE_MAPPED_READS);
+
 		CacheFactory cf = (CacheFactory) 
             startSystemModule(
                 org.apache.derby.iapi.reference.Module.CacheFactory);
@@ -435,9 +490,14 @@ public class BaseDataFileFactory
                     RawStoreFactory.PAGE_CACHE_SIZE_MINIMUM,
                     RawStoreFactory.PAGE_CACHE_SIZE_MAXIMUM);
 
+		boolean scanResistant = PAGE_REPLACEMENT_2Q.equalsIgnoreCase(
+            PropertyUtil.getSystemProperty(
+                Property.STORAGE_PAGE_REPLACEMENT_POLICY));
+
 		pageCache =
             cf.newCacheManager(
-                this, "PageCache", pageCacheSize / 2, pageCacheSize);
+                this, "PageCache", pageCacheSize / 2, pageCacheSize,
+                scanResistant);
 
         // Initialize the container cache
 	    int fileCacheSize = getIntParameter(
@@ -505,12 +565,35 @@ public class BaseDataFileFactory
 		}
 
         fileHandler = new RFResource( this);
+
+		int readAheadPages = getIntParameter(
+                    Property.STORAGE_READ_AHEAD_PAGES,
+                    null,
+                    0,
+                    0,
+                    READ_AHEAD_PAGES_MAXIMUM);
+		if (readAheadPages > 0)
+		{
+			int readAheadBudget = getIntParameter(
+                    Property.STORAGE_READ_AHEAD_BUDGET,
+                    null,
+                    8 * readAheadPages,
+                    readAheadPages,
+                    Integer.MAX_VALUE);
+
+			readAhead = new ReadAhead(readAheadPages, readAheadBudget);
+			readAhead.start(
+                getMonitor().getDaemonThread(readAhead, "read-ahead", false));
+		}
 	} // end of boot
 
 	public void	stop() 
     {
 		boolean OK = false;
 
+		if (readAhead != null)
+			readAhead.stop();
+
 		if (rawStoreFactory != null)
 		{
 			DaemonService rawStoreDaemon = rawStoreFactory.getDaemon();
@@ -1264,6 +1347,111 @@ public class BaseDataFileFactory
 		containerCache.cleanAll();
 	}
 
+    /**
+     * Implement incremental checkpoint, write/sync the oldest dirty pages.
+     * <p>
+     * Instead of writing every dirty page like checkpoint() does, only the
+     * pages changed by log records before the target are written, oldest
+     * change first, along with the pages whose first change has not been
+     * logged yet (see DirtyPageTable).  The writes are spread out to
+     * derby.storage.checkpointPageRate pages per second, see DERBY-799.
+     * The writes are then forced to disk by syncing the containers like a
+     * full checkpoint does.
+     * <p>
+     * Pages changed by later log records may stay in the cache, and the
+     * caller must not move the redo low water mark past the oldest of those
+     * changes, which is returned.
+     *
+     * @param target    changes logged before this instant are written out,
+     *                  null to write out every dirty page.
+     *
+	 * @return the instant of the oldest logged change that may still only be
+     *         in the cache, or null if there is none.
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+	public LogInstant checkpoint(LogInstant target) throws StandardException
+    {
+		if (dirtyPageTable == null || target == null)
+		{
+			checkpoint();
+			return null;
+		}
+
+		List<PageKey> pages = dirtyPageTable.getPagesToWrite(target);
+
+		hurryCheckpoint = false;
+		long start = System.currentTimeMillis();
+		int written = 0;
+
+		for (PageKey key : pages)
+		{
+			// the page may have been written out and left the cache since
+			Cacheable page = pageCache.findCached(key);
+			if (page == null)
+				continue;
+
+			try
+			{
+				page.clean(false);
+			}
+			finally
+			{
+				pageCache.release(page);
+			}
+
+			written++;
+
+			if (checkpointPageRate > 0 && !hurryCheckpoint)
+			{
+				long due = start + (written * 1000L) / checkpointPageRate;
+				long now = System.currentTimeMillis();
+				if (due > now)
+				{
+					try
+					{
+						Thread.sleep(due - now);
+					}
+					catch (InterruptedException ie)
+					{
+						InterruptStatus.setInterrupted();
+					}
+				}
+			}
+		}
+
+		containerCache.cleanAll();
+
+		return dirtyPageTable.getOldestInstant();
+	}
+
+	/**
+	 * Finish an incremental checkpoint in progress without pausing between
+	 * page writes, because someone is waiting for it.
+	 */
+	public void hurryCheckpoint()
+	{
+		hurryCheckpoint = true;
+	}
+
+	/**
+	 * Get the dirty page table, null if incremental checkpoints are not
+	 * enabled.
+	 */
+	DirtyPageTable getDirtyPageTable()
+	{
+		return dirtyPageTable;
+	}
+
+	/**
+	 * Get the read-ahead of sequential scans, null if read-ahead is not
+	 * enabled.
+	 */
+	ReadAhead getReadAhead()
+	{
+		return readAhead;
+	}
+
 	public void idle() throws StandardException 
     {
 		pageCache.ageOut();
@@ -2396,11 +2584,28 @@ public class BaseDataFileFactory
 	}
 
     /**
-     * Set up the cache cleaner for the container cache and the page cache.
+     * Set up the cache cleaner for the container cache and the page cache,
+     * and the background writer of the page cache if it is enabled.
      */
     public void setupCacheCleaner(DaemonService daemon) {
         containerCache.useDaemonService(daemon);
         pageCache.useDaemonService(daemon);
+
+        int writerPercent = getIntParameter(
+                    Property.STORAGE_BACKGROUND_WRITER_PERCENT,
+                    null,
+                    0,
+                    0,
+                    100);
+        if (writerPercent > 0 && !isReadOnly()) {
+            int writerRate = getIntParameter(
+                    Property.STORAGE_BACKGROUND_WRITER_RATE,
+                    null,
+                    BACKGROUND_WRITER_RATE_DEFAULT,
+                    1,
+                    Integer.MAX_VALUE);
+            pageCache.startBackgroundWriter(writerPercent, writerRate);
+        }
     }
 
 	public void freezePersistentStore() throws StandardException
@@ -111,6 +111,14 @@ public abstract class CachedPage extends BasePage implements Cacheable
 	*/
 	protected BaseDataFileFactory		dataFactory;  // my factory class.
 
+	/**
+		The dirty page table of incremental checkpoints, null if they are
+		not enabled.
+
+		<BR> MT - Immutable
+	*/
+	private DirtyPageTable		dirtyPageTable;
+
 
 	protected static final int PAGE_FORMAT_ID_SIZE = 4;
 
@@ -134,6 +142,7 @@ public abstract class CachedPage extends BasePage implements Cacheable
 		dataFactory     = factory;
 		pageCache       = factory.getPageCache();
 		containerCache  = factory.getContainerCache();
+		dirtyPageTable  = factory.getDirtyPageTable();
 	}
 
 	/**
@@ -288,6 +297,13 @@ public abstract class CachedPage extends BasePage implements Cacheable
 
 		initialRowCount = 0;
 
+		synchronized (this)
+		{
+			// the page was dirtied by createPage before it had an identity
+			if (isDirty || preDirty)
+				addDirtyPage();
+		}
+
 		/*
 		 * if we need to grow the container and the page has not been
 		 * preallocated, writing page before the log is written so that we
@@ -446,7 +462,11 @@ public abstract class CachedPage extends BasePage implements Cacheable
 		synchronized (this) 
         {
 			if (!isDirty)
+			{
+				if (!preDirty)
+					addDirtyPage();
 				preDirty = true;
+			}
 		}
 	}
 
@@ -460,11 +480,47 @@ public abstract class CachedPage extends BasePage implements Cacheable
     {
 		synchronized (this) 
         {
+			if (!isDirty && !preDirty)
+				addDirtyPage();
 			isDirty  = true;
 			preDirty = false;
 		}
 	}
 
+    /**
+     * Record the log instant of a change to the page, after the page has
+     * been set dirty.  The first logged change since the page became dirty
+     * is where redo recovery of the page must start, see DirtyPageTable.
+     *
+     * @param instant the log instant of the change
+     **/
+	protected final void setRecoveryInstant(LogInstant instant)
+	{
+		if (dirtyPageTable != null && identity != null)
+			dirtyPageTable.logged(identity, instant);
+	}
+
+    /**
+     * Add the page to the dirty page table, if there is one.  Called while
+     * synchronized on the page when it stops being clean.
+     **/
+	private void addDirtyPage()
+	{
+		if (dirtyPageTable != null && identity != null)
+			dirtyPageTable.add(identity);
+	}
+
+    /**
+     * Remove the page from the dirty page table, if there is one.  Called
+     * while synchronized on the page when it becomes clean or leaves the
+     * cache.
+     **/
+	private void removeDirtyPage(PageKey key)
+	{
+		if (dirtyPageTable != null && key != null)
+			dirtyPageTable.remove(key);
+	}
+
     /**
      * exclusive latch on page is being released.
      * <p>
@@ -602,6 +658,7 @@ public abstract class CachedPage extends BasePage implements Cacheable
                 // latch without really dirtying the page
 				preDirty = false; 
 				inClean  = false;
+				removeDirtyPage(identity);
 				notifyAll();
 				return;
 			}
@@ -639,6 +696,10 @@ public abstract class CachedPage extends BasePage implements Cacheable
 
 	public void clearIdentity() 
     {
+		synchronized (this)
+		{
+			removeDirtyPage(identity);
+		}
 		alreadyReadPage = false;
 		super.clearIdentity();
 	}
@@ -843,6 +904,7 @@ public abstract class CachedPage extends BasePage implements Cacheable
             // change page state to not dirty after the successful write
 			isDirty     = false;
 			preDirty    = false;
+			removeDirtyPage(identity);
 		}
 	}
 
@@ -0,0 +1,156 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.raw.data.DirtyPageTable
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.raw.data;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.derby.iapi.store.raw.PageKey;
+import org.apache.derby.iapi.store.raw.log.LogInstant;
+
+/**
+	The dirty page table used by incremental checkpoints.
+	<P>
+	The table has an entry for every page in the page cache which is dirty
+	or pre-dirty (see CachedPage).  The entry holds the instant of the oldest
+	log record whose change to the page may not have been written out yet,
+	the recovery instant of the page.  Redo recovery never needs to start
+	before the smallest recovery instant in the table, which lets a
+	checkpoint move the redo low water mark forward without writing out
+	every dirty page.
+	<P>
+	An entry is added when a clean page becomes dirty or pre-dirty, with an
+	unknown recovery instant, and the instant is filled in by the first
+	logged change to the page.  A page whose recovery instant is unknown
+	is either about to write its first log record, or has only been changed
+	without logging, and is always written out by a checkpoint.  The entry
+	is removed when the page becomes clean again, or leaves the cache.
+	<P>
+	MT - MT safe.  The callers change the table while synchronized on the
+	page, so that the table follows the dirty state of the page.  The table
+	synchronizes on itself and calls nothing while doing so.
+*/
+final class DirtyPageTable
+{
+	/** recovery instant of each dirty page, null if not known yet */
+	private final HashMap<PageKey, LogInstant> pages =
+		new HashMap<PageKey, LogInstant>();
+
+	/**
+		A clean page has become dirty or pre-dirty.
+	*/
+	synchronized void add(PageKey key)
+	{
+		if (!pages.containsKey(key))
+			pages.put(key, null);
+	}
+
+	/**
+		A change to a dirty page has been logged.  The recovery instant is
+		only set by the first logged change since the page became dirty.
+	*/
+	synchronized void logged(PageKey key, LogInstant instant)
+	{
+		if (pages.containsKey(key) && pages.get(key) == null)
+			pages.put(key, instant);
+	}
+
+	/**
+		A page has become clean, or has left the page cache.
+	*/
+	synchronized void remove(PageKey key)
+	{
+		pages.remove(key);
+	}
+
+	/**
+		Get the pages a checkpoint has to write out: the pages whose
+		recovery instant is unknown, and the pages whose recovery instant is
+		before the target, oldest first.
+
+		@param target changes logged before this instant must be written out
+	*/
+	synchronized List<PageKey> getPagesToWrite(LogInstant target)
+	{
+		ArrayList<Map.Entry<PageKey, LogInstant>> old =
+			new ArrayList<Map.Entry<PageKey, LogInstant>>();
+		ArrayList<PageKey> unknown = new ArrayList<PageKey>();
+
+		for (Map.Entry<PageKey, LogInstant> e : pages.entrySet())
+		{
+			LogInstant instant = e.getValue();
+			if (instant == null)
+				unknown.add(e.getKey());
+			else if (instant.lessThan(target))
+				old.add(new AbstractMap.SimpleImmutableEntry<PageKey, LogInstant>(
+					e.getKey(), instant));
+		}
+
+		Collections.sort(old, OLDEST_FIRST);
+
+		ArrayList<PageKey> result =
+			new ArrayList<PageKey>(unknown.size() + old.size());
+		result.addAll(unknown);
+		for (Map.Entry<PageKey, LogInstant> e : old)
+			result.add(e.getKey());
+		return result;
+	}
+
+	/**
+		Get the smallest known recovery instant of the dirty pages.
+
+		@return the smallest recovery instant, or null if no dirty page has
+		a logged change
+	*/
+	synchronized LogInstant getOldestInstant()
+	{
+		LogInstant oldest = null;
+		for (LogInstant instant : pages.values())
+		{
+			if (instant != null &&
+				(oldest == null || instant.lessThan(oldest)))
+			{
+				oldest = instant;
+			}
+		}
+		return oldest;
+	}
+
+	private static final Comparator<Map.Entry<PageKey, LogInstant>>
+		OLDEST_FIRST = new Comparator<Map.Entry<PageKey, LogInstant>>()
+		{
+			public int compare(Map.Entry<PageKey, LogInstant> a,
+							   Map.Entry<PageKey, LogInstant> b)
+			{
+				if (a.getValue().lessThan(b.getValue()))
+					return -1;
+				if (b.getValue().lessThan(a.getValue()))
+					return 1;
+				return 0;
+			}
+		};
+}
@@ -62,6 +62,8 @@ import org.apache.derby.iapi.util.ByteArray;
 import java.io.IOException;
 import java.io.DataInput;
 
+import java.nio.ByteBuffer;
+
 import java.security.PrivilegedAction;
 import java.security.AccessController;
 
@@ -134,6 +136,10 @@ abstract class FileContainer
 	private static final int DEFAULT_PRE_ALLOC_SIZE = 8;
 	private static final int MAX_PRE_ALLOC_SIZE     = 1000;
 
+	// read-ahead parameters, see readAhead
+	private static final int READ_AHEAD_GAP              = 4;
+	private static final int READ_AHEAD_SEQUENTIAL_PAGES = 4;
+
 	/* 
 	** Mutable fields, only valid when the identity is valid.
 	*/
@@ -2537,10 +2543,18 @@ abstract class FileContainer
 			return null;
 		}
 
+		ReadAhead readAhead = dataFactory.getReadAhead();
+		if (readAhead != null)
+			readAhead(handle, pageNumber, readAhead);
+
 		// RESOLVE: no translation!
 
 		PageKey pageSearch = new PageKey(identity, pageNumber);
-		BasePage page = (BasePage)pageCache.find(pageSearch);
+		BasePage page;
+		if ((handle.getMode() & ContainerHandle.MODE_USE_ONCE) != 0)
+			page = (BasePage)pageCache.findUseOnce(pageSearch);
+		else
+			page = (BasePage)pageCache.find(pageSearch);
 
 		if (page == null)
 		{
@@ -2572,6 +2586,81 @@ abstract class FileContainer
 		return page;
 	}
 
+	/**
+		Watch the pages read through a container handle, and ask for the
+		next pages to be read ahead once the handle reads pages in ascending
+		order.
+		<P>
+		A page counts as the next one if it is at most READ_AHEAD_GAP pages
+		after the previous page read through the handle, so that pages of
+		another table or index in between do not stop the read-ahead.  After
+		READ_AHEAD_SEQUENTIAL_PAGES such pages, the pages up to
+		readAheadPages after the current one are requested, and more are
+		requested every time the scan is half way through them.  Nothing is
+		requested if the first page to read ahead is in the page cache
+		already.
+
+		<BR> MT - thread safe, the state kept in the handle is only a hint
+
+		@exception StandardException Standard Derby error policy
+	*/
+	private void readAhead(BaseContainerHandle handle, long pageNumber,
+						   ReadAhead readAhead)
+		 throws StandardException
+	{
+		long lastPageRead = handle.lastPageRead;
+		handle.lastPageRead = pageNumber;
+
+		if (pageNumber <= lastPageRead ||
+			pageNumber > lastPageRead + READ_AHEAD_GAP)
+		{
+			handle.sequentialPagesRead = 0;
+			handle.readAheadPageNumber = pageNumber;
+			return;
+		}
+
+		if (++handle.sequentialPagesRead < READ_AHEAD_SEQUENTIAL_PAGES)
+			return;
+
+		int readAheadPages = readAhead.getReadAheadPages();
+		if (handle.readAheadPageNumber - pageNumber > readAheadPages / 2)
+			return;
+
+		long firstPageNumber =
+			Math.max(pageNumber, handle.readAheadPageNumber) + 1;
+		long lastPageNumber = pageNumber + readAheadPages;
+		handle.readAheadPageNumber = lastPageNumber;
+
+		// a scan of a table that is in the page cache does not need it
+		PageKey first = new PageKey(identity, firstPageNumber);
+		Cacheable page = pageCache.findCached(first);
+		if (page != null)
+		{
+			pageCache.release(page);
+			return;
+		}
+
+		readAhead.request(this, identity, firstPageNumber,
+						  (int) (lastPageNumber - firstPageNumber + 1));
+	}
+
+	/**
+		Read pages into the file system cache ahead of a scan, see ReadAhead.
+		Pages past the end of the file are ignored, and so are errors, since
+		the scan reads the pages again anyway.  This implementation does
+		nothing.
+
+		@param firstPageNumber the first page to read
+		@param pageCount the number of pages to read
+		@param buffer a scratch buffer to read into
+
+		@return the number of pages read
+	*/
+	int readAhead(long firstPageNumber, int pageCount, ByteBuffer buffer)
+	{
+		return 0;
+	}
+
 	protected void trackUnfilledPage(long pagenumber, boolean unfilled)
 	{
 		if (!dataFactory.isReadOnly())
@@ -274,8 +274,10 @@ public final class InsertOperation extends LogicalPageOperation
 			// stores record on the page, 
 			// only a page knows how to restore a logged row back to a storable row
 			// first get the page where the insert went even though the row may no
-			// longer be there
-			p = getContainer().getPage(getPageId().getPageNumber());
+			// longer be there.  The page may even have been freed since, if it
+			// was a btree leaf merged into its left sibling, so get it whatever
+			// its state.
+			p = containerHdl.getAnyPage(getPageId().getPageNumber());
 
 			((BasePage)p).restoreRecordFromStream(in, row);
 
@@ -26,6 +26,7 @@ import org.apache.derby.iapi.reference.SQLState;
 import org.apache.derby.iapi.store.raw.LockingPolicy;
 import org.apache.derby.iapi.store.raw.Loggable;
 import org.apache.derby.iapi.store.raw.Page;
+import org.apache.derby.iapi.store.raw.PageLoggable;
 import org.apache.derby.iapi.store.raw.RePreparable;
 import org.apache.derby.iapi.store.raw.Transaction;
 import org.apache.derby.iapi.store.raw.PageKey;
@@ -72,7 +73,7 @@ import org.apache.derby.iapi.services.io.LimitObjectInput;
 	@see Loggable
 */
 
-abstract class PageBasicOperation implements Loggable, RePreparable
+abstract class PageBasicOperation implements PageLoggable, RePreparable
 {
 
 
@@ -252,7 +253,7 @@ abstract class PageBasicOperation implements Loggable, RePreparable
 		pageId = new PageKey(pageId.getContainerId(), pageNumber);
 	}
 
-	protected final PageKey getPageId() {
+	public final PageKey getPageId() {
 		return pageId;
 	}
 
@@ -33,11 +33,17 @@ import org.apache.derby.iapi.util.InterruptDetectedException;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.AsynchronousCloseException;
+import java.security.AccessController;
+import java.security.PrivilegedExceptionAction;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.derby.io.StorageRandomAccessFile;
 
 /**
@@ -115,6 +121,70 @@ class RAFContainer4 extends RAFContainer {
      */
     private int iosInProgress = 0; // protected by monitor on "this"
 
+    /**
+     * Size of the memory mapped segments of the container file when pages
+     * are read through memory mapping (derby.storage.mappedReads). A
+     * multiple of every page size.
+     */
+    private static final long MAPPED_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * How much a file must have grown past the end of its last mapped
+     * segment before that segment is mapped again. Until then, the new pages
+     * are read from the channel, so that a growing file is not mapped again
+     * for every new page.
+     */
+    private static final long MAPPED_SEGMENT_GROWTH = 1024L * 1024;
+
+    /**
+     * The memory mapped segments of the container file, indexed by file
+     * offset divided by MAPPED_SEGMENT_SIZE. A segment is mapped by the
+     * first page read from it. The array is replaced under both the
+     * monitor on "this" and the write lock of mappingLock, and read under
+     * either of them. Dropped and unmapped when the file is closed or
+     * truncated.
+     */
+    private MappedByteBuffer[] mappedSegments;
+
+    /**
+     * Page reads from mappedSegments hold the read lock while they copy a
+     * page, the segments are replaced or unmapped under the write lock. A
+     * segment must not be unmapped while a page is read from it, and a
+     * page must not be read from a mapping past the end of a truncated
+     * file, since either is a fatal error in the JVM rather than an
+     * exception. The write lock is taken under the monitor on "this", never
+     * the other way round.
+     */
+    private final ReentrantReadWriteLock mappingLock =
+        new ReentrantReadWriteLock();
+
+    /**
+     * sun.misc.Unsafe, and its invokeCleaner method which releases a
+     * mapping right away rather than once the buffer is garbage collected,
+     * or null if they are not available.
+     */
+    private static Object unsafe;
+    private static Method invokeCleaner;
+
+    static {
+        try {
+            AccessController.doPrivileged(
+                (PrivilegedExceptionAction<Void>) () -> {
+                    Class<?> c = Class.forName("sun.misc.Unsafe");
+                    Field f = c.getDeclaredField("theUnsafe");
+                    f.setAccessible(true);
+                    invokeCleaner =
+                        c.getMethod("invokeCleaner", ByteBuffer.class);
+                    unsafe = f.get(null);
+                    return null;
+                });
+        } catch (Exception e) {
+            // the mappings are released by the garbage collector
+            unsafe = null;
+            invokeCleaner = null;
+        }
+    }
+
     public RAFContainer4(BaseDataFileFactory factory) {
         super(factory);
     }
@@ -232,6 +302,7 @@ class RAFContainer4 extends RAFContainer {
                     "Container closed while IO operations are in progress. "
                     + " This should not happen.");
         }
+        unmapSegments();
         if(ourChannel != null) {
             try {
                 ourChannel.close();
@@ -431,7 +502,10 @@ class RAFContainer4 extends RAFContainer {
                 if (offset == -1L) {
                     // Normal page read doesn't specify offset,
                     // so use one computed from page number.
-                    readFull(pageBuf, ioChannel, pageOffset);
+                    if (!readMappedPage(
+                            pageNumber, pageData, ioChannel, pageOffset)) {
+                        readFull(pageBuf, ioChannel, pageOffset);
+                    }
                 } else {
                     // getEmbryonicPage specifies it own offset, so use that
                     if (SanityManager.DEBUG) {
@@ -464,6 +538,238 @@ class RAFContainer4 extends RAFContainer {
     }
 
 
+    /**
+     * Read a page through a memory mapped segment of the container file, if
+     * pages are read that way. If the page is past the end of the segment
+     * because the file has grown since it was mapped, the segment is mapped
+     * again once the file has grown by MAPPED_SEGMENT_GROWTH.
+     *
+     * @param pageNumber the page number to read
+     * @param pageData the buffer to read the page into
+     * @param ioChannel the channel of the container file
+     * @param pageOffset the offset of the page in the file
+     * @return true if the page was read, false if it must be read from the
+     *         channel
+     * @exception IOException exception mapping the file
+     */
+    private boolean readMappedPage(long pageNumber, byte[] pageData,
+                                   FileChannel ioChannel, long pageOffset)
+         throws IOException
+    {
+        // The first allocation page shares its space with the container
+        // header, and is read with the channel under synchronization.
+        if (!dataFactory.mappedReads ||
+                pageNumber == FIRST_ALLOC_PAGE_NUMBER) {
+            return false;
+        }
+
+        int segment = (int) (pageOffset / MAPPED_SEGMENT_SIZE);
+        int position = (int) (pageOffset % MAPPED_SEGMENT_SIZE);
+
+        for (boolean mapped = false; ; mapped = true) {
+            mappingLock.readLock().lock();
+            try {
+                MappedByteBuffer[] segments = mappedSegments;
+                MappedByteBuffer buffer =
+                    (segments != null && segment < segments.length) ?
+                    segments[segment] : null;
+
+                if (buffer != null &&
+                        buffer.capacity() >= position + pageSize) {
+                    // a duplicate has its own position, so that concurrent
+                    // reads of the same segment do not interfere
+                    ByteBuffer page = buffer.duplicate();
+                    page.position(position);
+                    page.get(pageData, 0, pageSize);
+                    return true;
+                }
+            } finally {
+                mappingLock.readLock().unlock();
+            }
+
+            // Map the segment without the read lock, and read the page
+            // from it if it has not been unmapped again in the meantime.
+            if (mapped ||
+                    !mapSegment(ioChannel, segment, position + pageSize)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Map a segment of the container file, up to the end of the segment or
+     * the end of the file.
+     *
+     * @param ioChannel the channel to map
+     * @param segment the number of the segment
+     * @param length the smallest length of the mapping that is of any use
+     * @return true if the segment is mapped, false if the file is too
+     *         short, has not grown enough since the segment was mapped, or
+     *         the channel has been replaced, in which case the page must be
+     *         read from the channel
+     * @exception IOException exception mapping the file
+     */
+    private synchronized boolean mapSegment(FileChannel ioChannel,
+                                            int segment,
+                                            int length)
+         throws IOException
+    {
+        if (ioChannel != ourChannel) {
+            return false;
+        }
+
+        MappedByteBuffer[] segments = mappedSegments;
+        MappedByteBuffer current =
+            (segments != null && segment < segments.length) ?
+            segments[segment] : null;
+        if (current != null && current.capacity() >= length) {
+            // mapped by another thread in the meantime
+            return true;
+        }
+
+        long segmentStart = segment * MAPPED_SEGMENT_SIZE;
+        long mapLength =
+            Math.min(MAPPED_SEGMENT_SIZE, ioChannel.size() - segmentStart);
+        if (mapLength < length) {
+            return false;
+        }
+        if (current != null && mapLength < MAPPED_SEGMENT_SIZE &&
+                mapLength - current.capacity() < MAPPED_SEGMENT_GROWTH) {
+            return false;
+        }
+
+        MappedByteBuffer buffer = ioChannel.map(
+            FileChannel.MapMode.READ_ONLY, segmentStart, mapLength);
+
+        MappedByteBuffer[] newSegments = new MappedByteBuffer[
+            segments == null ? segment + 1 :
+            Math.max(segment + 1, segments.length)];
+        if (segments != null) {
+            System.arraycopy(segments, 0, newSegments, 0, segments.length);
+        }
+        newSegments[segment] = buffer;
+
+        mappingLock.writeLock().lock();
+        try {
+            mappedSegments = newSegments;
+            if (current != null) {
+                unmap(current);
+            }
+        } finally {
+            mappingLock.writeLock().unlock();
+        }
+
+        return true;
+    }
+
+    /**
+     * Drop the memory mapped segments and release their mappings, once the
+     * page reads from them have finished.
+     */
+    private void unmapSegments() {
+        mappingLock.writeLock().lock();
+        try {
+            MappedByteBuffer[] segments = mappedSegments;
+            mappedSegments = null;
+            if (segments != null) {
+                for (int i = 0; i < segments.length; i++) {
+                    if (segments[i] != null) {
+                        unmap(segments[i]);
+                    }
+                }
+            }
+        } finally {
+            mappingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Release a mapping, if sun.misc.Unsafe allows it. The buffer may not be
+     * used afterwards.
+     *
+     * @param buffer the mapping to release
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (invokeCleaner != null) {
+            try {
+                invokeCleaner.invoke(unsafe, buffer);
+            } catch (Exception e) {
+                // released by the garbage collector instead
+            }
+        }
+    }
+
+    /**
+     * Truncate pages of a container. Memory mapped segments are dropped and
+     * unmapped first, once the page reads from them have finished, since
+     * reading a mapped page past the end of the file is a fatal error in
+     * the JVM rather than an exception.
+     * <p/>
+     * override of RAFContainer#truncatePages
+     *
+     * @exception StandardException Standard Derby error policy
+     */
+    protected void truncatePages(long lastValidPagenum)
+        throws StandardException
+    {
+        synchronized (this) {
+            unmapSegments();
+            super.truncatePages(lastValidPagenum);
+        }
+    }
+
+    /**
+     * Read pages into the file system cache ahead of a scan, through the
+     * channel and in blocks the size of the buffer. The pages are not
+     * decrypted or checked, they are thrown away. The read stops at the end
+     * of the file, and at the first error, like the channel being closed
+     * because the container was closed or another thread was interrupted.
+     * <p/>
+     * override of FileContainer#readAhead
+     *
+     * @param firstPageNumber the first page to read
+     * @param pageCount the number of pages to read
+     * @param buffer a scratch buffer to read into
+     * @return the number of pages read
+     */
+    int readAhead(long firstPageNumber, int pageCount, ByteBuffer buffer)
+    {
+        FileChannel ioChannel;
+        synchronized (this) {
+            if (getCommittedDropState()) {
+                return 0;
+            }
+            ioChannel = getChannel();
+        }
+
+        if (ioChannel == null) {
+            return 0;
+        }
+
+        long position = firstPageNumber * pageSize;
+        long end = position + (long) pageCount * pageSize;
+        long start = position;
+
+        try {
+            while (position < end) {
+                buffer.clear();
+                if (end - position < buffer.capacity()) {
+                    buffer.limit((int) (end - position));
+                }
+
+                int n = ioChannel.read(buffer, position);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+            }
+        } catch (IOException ioe) {
+            // the scan reads the pages itself
+        }
+
+        return (int) ((position - start) / pageSize);
+    }
+
     /**
      *  Write a page from the supplied array.
      *  <p/>
@@ -0,0 +1,239 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.raw.data.ReadAhead
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.raw.data;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+import org.apache.derby.iapi.store.raw.ContainerKey;
+import org.apache.derby.iapi.util.InterruptStatus;
+import org.apache.derby.shared.common.sanity.SanityManager;
+
+/**
+	Read-ahead for sequential scans of containers.
+	<P>
+	FileContainer watches the pages read through each container handle, and
+	once a handle has read a few pages in ascending order it asks for the
+	next pages of the container to be read ahead of the scan.  The requests
+	are queued here and served by a single dedicated thread, which reads each
+	range of pages from the container file in large blocks.
+	<P>
+	The pages are read into the file system cache, not into the page cache.
+	Putting a page into the page cache needs the container to be open and the
+	page to be allocated, which only a transaction can make sure of; a page
+	read ahead of a scan of a container that is being compressed or dropped
+	could otherwise be left in the page cache after the container no longer
+	has it.  Read from the file system cache, the page costs the scan a copy
+	instead of a wait for the disk.
+	<P>
+	The number of pages queued and not yet read is bounded by a global
+	budget.  A request that does not fit in the budget is dropped, and the
+	scan reads those pages itself.
+	<P>
+	MT - the queue is protected by synchronizing on this object.  The reads
+	are done by the read-ahead thread without holding that monitor.
+*/
+final class ReadAhead implements Runnable
+{
+	/** size of the blocks the pages are read in */
+	private static final int READ_BLOCK_SIZE = 256 * 1024;
+
+	/** a range of pages to read ahead */
+	private static final class Request
+	{
+		final FileContainer container;
+		final ContainerKey identity;
+		final long firstPageNumber;
+		final int pageCount;
+
+		Request(FileContainer container, ContainerKey identity,
+				long firstPageNumber, int pageCount)
+		{
+			this.container = container;
+			this.identity = identity;
+			this.firstPageNumber = firstPageNumber;
+			this.pageCount = pageCount;
+		}
+	}
+
+	/** number of pages each scan may have requested ahead of itself */
+	private final int readAheadPages;
+
+	/** largest number of pages queued and not yet read */
+	private final int budgetPages;
+
+	private final ArrayDeque<Request> queue = new ArrayDeque<Request>();
+
+	/** number of pages in the queue */
+	private int queuedPages;
+
+	private boolean stopped;
+
+	private Thread readAheadThread;
+
+	/** number of pages read ahead, for diagnostics */
+	private long pagesRead;
+
+	/** number of pages dropped because the budget was used up */
+	private long pagesDropped;
+
+	ReadAhead(int readAheadPages, int budgetPages)
+	{
+		this.readAheadPages = readAheadPages;
+		this.budgetPages = budgetPages;
+	}
+
+	/**
+		Get the number of pages a scan may have requested ahead of the page
+		it is reading.
+	*/
+	int getReadAheadPages()
+	{
+		return readAheadPages;
+	}
+
+	/**
+		Start the read-ahead thread.
+	*/
+	synchronized void start(Thread t)
+	{
+		if (SanityManager.DEBUG)
+			SanityManager.ASSERT(readAheadThread == null,
+								 "read-ahead already started");
+
+		readAheadThread = t;
+		readAheadThread.start();
+	}
+
+	/**
+		Stop the read-ahead thread and wait for it to finish.  Requests still
+		queued are dropped.
+	*/
+	void stop()
+	{
+		Thread t;
+		synchronized (this)
+		{
+			stopped = true;
+			queue.clear();
+			queuedPages = 0;
+			t = readAheadThread;
+			notifyAll();
+		}
+
+		if (t != null && t != Thread.currentThread())
+		{
+			try
+			{
+				t.join();
+			}
+			catch (InterruptedException ie)
+			{
+				InterruptStatus.setInterrupted();
+			}
+		}
+	}
+
+	/**
+		Ask for a range of pages of a container to be read ahead.  Returns at
+		once; the request is dropped if it does not fit in the budget.
+
+		@param container the container to read from
+		@param identity the identity of the container, the container object
+		may be reused for another container before the request is served
+		@param firstPageNumber the first page to read
+		@param pageCount the number of pages to read
+	*/
+	synchronized void request(FileContainer container, ContainerKey identity,
+							  long firstPageNumber, int pageCount)
+	{
+		if (stopped)
+			return;
+
+		if (queuedPages + pageCount > budgetPages)
+		{
+			pagesDropped += pageCount;
+			return;
+		}
+
+		queue.addLast(
+			new Request(container, identity, firstPageNumber, pageCount));
+		queuedPages += pageCount;
+
+		if (queue.size() == 1)
+			notifyAll();
+	}
+
+	/**
+		The read-ahead thread.  Takes requests off the queue in the order
+		they were made and reads the pages.
+	*/
+	public void run()
+	{
+		ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BLOCK_SIZE);
+
+		for (;;)
+		{
+			Request r;
+
+			synchronized (this)
+			{
+				while (queue.isEmpty() && !stopped)
+				{
+					try
+					{
+						wait();
+					}
+					catch (InterruptedException ie)
+					{
+						InterruptStatus.setInterrupted();
+					}
+				}
+
+				if (stopped)
+					return;
+
+				r = queue.removeFirst();
+				queuedPages -= r.pageCount;
+			}
+
+			// skip the request if the container object has been reused
+			if (!r.identity.equals(r.container.getIdentity()))
+				continue;
+
+			int read = r.container.readAhead(
+				r.firstPageNumber, r.pageCount, buffer);
+
+			synchronized (this)
+			{
+				pagesRead += read;
+			}
+		}
+	}
+
+	public synchronized String toString()
+	{
+		return "ReadAhead: pages read = " + pagesRead +
+			", pages dropped = " + pagesDropped +
+			", pages queued = " + queuedPages;
+	}
+}
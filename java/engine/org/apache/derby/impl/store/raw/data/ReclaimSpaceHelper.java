@@ -497,6 +497,9 @@ public class ReclaimSpaceHelper
 			containerHdl.close();
 			tran.commit();
 
+			// the container is gone, and so are its lock statistics
+			tran.getLockFactory().removeLockStatistics(work.getContainerId());
+
 			if (SanityManager.DEBUG)
             {
                 if (SanityManager.DEBUG_ON(DaemonService.DaemonTrace))
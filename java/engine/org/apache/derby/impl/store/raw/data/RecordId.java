@@ -301,4 +301,12 @@ public final class RecordId implements RecordHandle {
 		return true;
 	}
 
+	/**
+		Row locks are counted in the lock statistics of their container.
+	 */
+	public long getLockStatisticsContainerId()
+	{
+		return pageId.getContainerId().getContainerId();
+	}
+
 }
@@ -1365,6 +1365,44 @@ public class StoredPage extends CachedPage
         return((freeSpace - bytesNeeded) >= 0);
     }
 
+    /**
+     * Does this page have enough space to copy rows of another page to it?
+     * <p>
+     * Adds up the space the rows take on the source page, including their
+     * reserved space, with the record ids they will get on this page.
+     *
+     * @see Page#spaceForCopy
+     *
+	 * @exception  StandardException  Standard exception policy.
+     **/
+    public boolean spaceForCopy(
+    Page    srcPage,
+    int     src_slot,
+    int     num_rows)
+        throws StandardException
+    {
+        StoredPage src = (StoredPage) srcPage;
+
+        int bytesNeeded = 0;
+        int id          = nextId;
+
+        for (int i = 0; i < num_rows; i++, id++)
+        {
+            int slot        = src_slot + i;
+            int spaceNeeded = 
+                src.getTotalSpace(slot) 
+                - StoredRecordHeader.getStoredSizeRecordId(
+                    src.getHeaderAtSlot(slot).getId())
+                + StoredRecordHeader.getStoredSizeRecordId(id);
+
+            bytesNeeded += slotEntrySize + 
+                (spaceNeeded >= minimumRecordSize ? 
+                     spaceNeeded : minimumRecordSize);
+        }
+
+        return((freeSpace - bytesNeeded) >= 0);
+    }
+
     /**
      * Does this page have enough space to move the row to it.
      * <p>
@@ -7102,6 +7140,9 @@ public class StoredPage extends CachedPage
 
         setDirty();
 
+        if (instant != null)
+            setRecoveryInstant(instant);
+
         bumpPageVersion();
         updateLastLogInstant(instant);
     }
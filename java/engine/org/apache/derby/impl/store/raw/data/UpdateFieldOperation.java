@@ -219,8 +219,10 @@ public final class UpdateFieldOperation extends LogicalPageOperation
 			// stores record on the page, 
 			// only a page knows how to restore a logged row back to a storable row
 			// first get the page where the insert went even though the row may no
-			// longer be there
-			p = (BasePage)(getContainer().getPage(getPageId().getPageNumber()));
+			// longer be there.  The page may even have been freed since, if it
+			// was a btree leaf merged into its left sibling, so get it whatever
+			// its state.
+			p = (BasePage)(containerHdl.getAnyPage(getPageId().getPageNumber()));
 
 			// skip over the before and after image of the column, position the
 			// input stream at the entire row
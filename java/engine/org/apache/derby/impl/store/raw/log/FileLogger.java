@@ -45,6 +45,7 @@ import org.apache.derby.iapi.store.raw.ContainerHandle;
 import org.apache.derby.iapi.store.raw.LockingPolicy;
 import org.apache.derby.iapi.store.raw.Loggable;
 import org.apache.derby.iapi.store.raw.Page;
+import org.apache.derby.iapi.store.raw.PageLoggable;
 import org.apache.derby.iapi.store.raw.RePreparable;
 import org.apache.derby.iapi.store.raw.Undoable;
 
@@ -102,6 +103,27 @@ import org.apache.derby.impl.store.raw.data.InitPageOperation;
 	@derby.endFormat
 	</PRE>
 
+	<P>	A log record that is not a compensation operation may be compressed
+	if it is at least derby.storage.logCompressionThreshold bytes long.  The
+	form of a compressed log record is
+	<PRE>
+	@derby.formatId	no formatId, format is implied by the log file format and the
+	log record content.
+	@derby.purpose	a large log record and its optional data, compressed
+	@derby.upgrade
+	@derby.diskLayout
+		formatId(LOG_RECORD)
+		group(CompressedInt) the group of the log record, with the
+			Loggable.COMPRESSED bit set
+		xactId(TransactionId) the transaction the log record belongs to
+		length(int) length of the uncompressed log record
+		compressedData(byte[]) the whole uncompressed log record, including
+			its optional data, compressed by LogCompressor
+	@derby.endFormat
+	</PRE>
+	The log scans replace a compressed log record by the uncompressed one,
+	so only the logger and the scans know about the compressed form.
+
     <BR>
 
 	<P>Multithreading considerations:<BR>
@@ -125,6 +147,14 @@ public class FileLogger implements Logger {
 
 	private LogToFile logFactory;	// actually writes the log records.
 
+	// buffers for the compression of large log records, created when the
+	// first log record is compressed
+	private LogCompressor compressor;
+	private DynamicByteArrayOutputStream compressedHeaderBuffer;
+	private FormatIdOutputStream compressedHeaderOut;
+	private byte[] compressionInput;
+	private byte[] compressionBuffer;
+
 	/**
 		Make a new Logger with its own log record buffers
 		MT - not needed for constructor
@@ -289,6 +319,38 @@ public class FileLogger implements Logger {
 			logicalOut.writeInt(optionalDataLength);
 			completeLength = logOutputBuffer.getPosition() + optionalDataLength;
 
+			// what goes to the log, which is the compressed log record if
+			// it is large enough and compresses well
+			byte[] recordData = logOutputBuffer.getByteArray();
+			int recordLength = completeLength;
+			byte[] recordOptionalData = preparedLog;
+			int recordOptionalDataOffset = optionalDataOffset;
+			int recordOptionalDataLength = optionalDataLength;
+
+			// Compressed log records were added in 10.16, older versions
+			// cannot recover a log that contains them, so they are only
+			// written once the database has been upgraded to 10.16.
+			int compressionThreshold = logFactory.getLogCompressionThreshold();
+			if (compressionThreshold > 0 &&
+				completeLength >= compressionThreshold &&
+				logFactory.checkVersion(
+					RawStoreFactory.DERBY_STORE_MAJOR_VERSION_10,
+					RawStoreFactory.DERBY_STORE_MINOR_VERSION_16))
+			{
+				int compressedLength = compressLogRecord(
+					completeLength, preparedLog,
+					optionalDataOffset, optionalDataLength);
+
+				if (compressedLength > 0)
+				{
+					// the optional data is part of the compressed log record
+					recordData = compressionBuffer;
+					recordLength = compressedLength;
+					recordOptionalData = null;
+					recordOptionalDataOffset = -1;
+					recordOptionalDataLength = 0;
+				}
+			}
 
 			LogInstant logInstant = null;
 			int encryptedLength = 0; // in case of encryption, we need to pad
@@ -299,7 +361,7 @@ public class FileLogger implements Logger {
 				{
 					// we must pad the encryption data to be multiple of block
 					// size, which is logFactory.getEncryptionBlockSize()
-					encryptedLength = completeLength;
+					encryptedLength = recordLength;
 					if ((encryptedLength % logFactory.getEncryptionBlockSize()) != 0)
 						encryptedLength = encryptedLength + logFactory.getEncryptionBlockSize() - (encryptedLength % logFactory.getEncryptionBlockSize());
 
@@ -307,13 +369,13 @@ public class FileLogger implements Logger {
 						encryptionBuffer.length < encryptedLength)
 						encryptionBuffer = new byte[encryptedLength];
 
-					System.arraycopy(logOutputBuffer.getByteArray(), 0, 
-									 encryptionBuffer, 0, completeLength-optionalDataLength);
+					System.arraycopy(recordData, 0, 
+									 encryptionBuffer, 0, recordLength-recordOptionalDataLength);
 
-					if (optionalDataLength > 0)
-						System.arraycopy(preparedLog, optionalDataOffset, 
+					if (recordOptionalDataLength > 0)
+						System.arraycopy(recordOptionalData, recordOptionalDataOffset, 
 									 encryptionBuffer,
-									 completeLength-optionalDataLength, optionalDataLength);
+									 recordLength-recordOptionalDataLength, recordOptionalDataLength);
 
 					// do not bother to clear out the padding area 
 					int len = 
@@ -343,10 +405,10 @@ public class FileLogger implements Logger {
 						else
 						{
 							instant = logFactory.
-								appendLogRecord(logOutputBuffer.getByteArray(),
-												0, completeLength, preparedLog,
-												optionalDataOffset,
-												optionalDataLength);
+								appendLogRecord(recordData,
+												0, recordLength, recordOptionalData,
+												recordOptionalDataOffset,
+												recordOptionalDataLength);
 						}
 						logInstant = new LogCounter(instant);
 
@@ -368,10 +430,10 @@ public class FileLogger implements Logger {
 					else
 					{
 						instant = logFactory.
-							appendLogRecord(logOutputBuffer.getByteArray(), 0,
-											completeLength, preparedLog,
-											optionalDataOffset,
-											optionalDataLength); 
+							appendLogRecord(recordData, 0,
+											recordLength, recordOptionalData,
+											recordOptionalDataOffset,
+											recordOptionalDataLength); 
 					}
 
 					logInstant = new LogCounter(instant);
@@ -408,6 +470,9 @@ public class FileLogger implements Logger {
                         completeLength + "\n" + operation + "\n");
                 }
 			}
+
+			xact.addLogBytes(completeLength);
+
 			return logInstant;
 		}
 
@@ -428,6 +493,71 @@ public class FileLogger implements Logger {
 
 	}
 
+	/**
+		Compress the log record in logOutputBuffer and its optional data into
+		compressionBuffer, in the form described in the class comment.  The
+		compressed log record is only worth writing if it saves at least an
+		eighth of the log record.
+
+		<P>MT - caller provide synchronization
+
+		@param completeLength length of the log record and its optional data
+		@param optionalData the optional data, or null
+		@param optionalDataOffset offset of the optional data
+		@param optionalDataLength length of the optional data
+
+		@return the length of the compressed log record, or 0 if the log
+		record should not be compressed
+
+		@exception IOException error writing to the log buffer
+	*/
+	private int compressLogRecord(int completeLength, byte[] optionalData,
+								  int optionalDataOffset,
+								  int optionalDataLength)
+		 throws IOException
+	{
+		if (compressor == null)
+		{
+			compressor = new LogCompressor();
+			compressedHeaderBuffer = new DynamicByteArrayOutputStream(64);
+			compressedHeaderOut =
+				new FormatIdOutputStream(compressedHeaderBuffer);
+		}
+
+		// the log record and its optional data have to be in one array
+		int recordLength = completeLength - optionalDataLength;
+		if (compressionInput == null || compressionInput.length < completeLength)
+			compressionInput = new byte[completeLength];
+
+		System.arraycopy(logOutputBuffer.getByteArray(), 0,
+						 compressionInput, 0, recordLength);
+		if (optionalDataLength > 0)
+			System.arraycopy(optionalData, optionalDataOffset,
+							 compressionInput, recordLength, optionalDataLength);
+
+		compressedHeaderBuffer.reset();
+		logRecord.writeCompressedHeader(compressedHeaderOut);
+		compressedHeaderOut.writeInt(completeLength);
+		int headerLength = compressedHeaderBuffer.getPosition();
+
+		int maxLength =
+			headerLength + LogCompressor.maxCompressedLength(completeLength);
+		if (compressionBuffer == null || compressionBuffer.length < maxLength)
+			compressionBuffer = new byte[maxLength];
+
+		System.arraycopy(compressedHeaderBuffer.getByteArray(), 0,
+						 compressionBuffer, 0, headerLength);
+
+		int compressedLength = headerLength + compressor.compress(
+			compressionInput, 0, completeLength, compressionBuffer, headerLength);
+
+		if (compressedLength > completeLength - (completeLength >> 3))
+			return 0;
+
+		logFactory.logRecordCompressed(completeLength, compressedLength);
+		return compressedLength;
+	}
+
 	/**
 		Writes out a compensation log record to the log stream, and call its
 		doMe method to undo the change of a previous log operation.
@@ -565,6 +695,8 @@ public class FileLogger implements Logger {
 
 	/**
 		Flush the log up to the given log instant.
+		The transaction calls this at commit, abort and prepare, so the
+		flush may be coalesced with other transactions by group commit.
 
 		<P>MT - not needed, wrapper method
 
@@ -582,7 +714,21 @@ public class FileLogger implements Logger {
             }
 		}
 
-		logFactory.flush(where);
+		logFactory.flushCommit(where);
+	}
+
+	/**
+		Have the log flushed up to the given log instant in the background.
+		The transaction calls this at an asynchronous commit.
+
+		<P>MT - not needed, wrapper method
+
+		@exception StandardException cannot sync log file
+	*/
+	public void flushLater(LogInstant where) 
+		 throws StandardException
+	{
+		logFactory.flushLater(where);
 	}
 
 	/**
@@ -1102,6 +1248,11 @@ public class FileLogger implements Logger {
 		<LI>if it isComplete(), then the transaction object is closed.
 		</OL>
 
+		<P> If derby.storage.redoThreads is greater than 1, operations on a
+		single page are not redone here but handed to redo workers, see
+		ParallelRedo.  Any other operation is only redone once the workers
+		have caught up with the scan.
+
 		<P> MT - caller provides synchronization
 
 		@param transFactory     - the transaction factory
@@ -1166,6 +1317,9 @@ public class FileLogger implements Logger {
 		Loggable      op        = null;
 		long          logEnd    = 0;  // we need to determine the log's true end
 
+		// redo workers, or null if the log is redone serially
+		ParallelRedo  parallelRedo = logFactory.startParallelRedo(transFactory);
+
 		try 
         {
 
@@ -1392,7 +1546,28 @@ public class FileLogger implements Logger {
 					 	"recovery transaction handles post termination work");
                 }
 
-				if (op.needsRedo(recoveryTransaction))
+				if (parallelRedo != null)
+				{
+					if (op instanceof PageLoggable && !record.isCLR())
+					{
+						// a worker decides whether the operation needs redo
+						int dataLength = logIn.readInt();
+						logIn.setLimit(dataLength);
+
+						parallelRedo.redo((PageLoggable) op, instant, logIn);
+						op = null;
+					}
+					else if ((op.group() &
+							  (Loggable.FIRST | Loggable.LAST)) == 0)
+					{
+						// may depend on, or change, pages the workers have
+						// not redone yet. Transaction begin and end only
+						// change the transaction table.
+						parallelRedo.waitForWorkers();
+					}
+				}
+
+				if (op != null && op.needsRedo(recoveryTransaction))
 				{
 					redoCount++;
 
@@ -1511,6 +1686,25 @@ public class FileLogger implements Logger {
 				}
 			} // while redoScan.getNextRecord() != null
 
+			// every operation must be redone before the undo pass
+			if (parallelRedo != null)
+			{
+				parallelRedo.waitForWorkers();
+
+				if (SanityManager.DEBUG)
+				{
+					if (SanityManager.DEBUG_ON(LogToFile.DBG_FLAG))
+					{
+						SanityManager.DEBUG(
+							LogToFile.DBG_FLAG,
+							"parallel redo with " +
+							parallelRedo.getThreadCount() + " threads, " +
+							parallelRedo.getOperationsQueued() +
+							" operations handed to redo workers");
+					}
+				}
+			}
+
             // If the scan ended in an empty file, update logEnd to reflect that
             // in order to avoid to continue logging to an older file
             long end = redoScan.getLogRecordEnd(); 
@@ -1522,11 +1716,21 @@ public class FileLogger implements Logger {
 		}
 		catch (StandardException se)
 		{
+			// report the operation a redo worker failed on, if any
+			if (parallelRedo != null &&
+				parallelRedo.getFailedOperation() != null)
+			{
+				op = parallelRedo.getFailedOperation();
+			}
+
             throw StandardException.newException(
                     SQLState.LOG_REDO_FAILED, se, op);
 		}
 		finally
 		{
+			if (parallelRedo != null)
+				parallelRedo.stop();
+
 			// close all the io streams
 			redoScan.close();
 			redoScan = null;
@@ -257,6 +257,9 @@ public class FlushedScan implements StreamLogScan {
 
 			} while (candidate == false);
 
+			if (lr.isCompressed())
+				lr = LogCompressor.uncompress(lr, input);
+
 			return lr;
 		}
 		catch (ClassNotFoundException cnfe)
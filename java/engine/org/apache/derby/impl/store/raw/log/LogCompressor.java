@@ -0,0 +1,322 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.raw.log.LogCompressor
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.raw.log;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.derby.iapi.services.io.ArrayInputStream;
+
+/**
+	Compression of large log records.
+	<P>
+	The compressed data is in the LZ4 block format: a sequence of literal
+	runs, each followed by a back reference of at least 4 bytes into the
+	last 64K of uncompressed data.  Every sequence starts with a token byte
+	holding the literal length in its high 4 bits and the match length less
+	4 in its low 4 bits, a value of 15 meaning that more length bytes follow.
+	The last sequence has literals only, and the last 5 bytes are always
+	literals.  The format is simple enough to decompress with a few bounds
+	checks, and fast enough to compress while holding the log record.
+	<P>
+	See FileLogger for the format of a compressed log record.
+	<P>
+	MT - compress uses a hash table owned by the compressor, so each
+	compressor must only be used by one thread at a time.  The static
+	methods are MT safe.
+*/
+final class LogCompressor
+{
+	private static final int HASH_LOG = 12;
+	private static final int MIN_MATCH = 4;
+	private static final int MAX_DISTANCE = 65535;
+	private static final int LAST_LITERALS = 5;
+	private static final int MF_LIMIT = 12;
+	private static final int RUN_MASK = 15;
+
+	/** position in the source of the last 4 bytes with each hash value */
+	private final int[] hashTable = new int[1 << HASH_LOG];
+
+	/**
+		Get the largest length the compressed data of the given length
+		can have.
+	*/
+	static int maxCompressedLength(int length)
+	{
+		return length + length / 255 + 16;
+	}
+
+	/**
+		Compress data.
+
+		@param src the data to compress
+		@param srcOff offset of the data in src
+		@param srcLen length of the data
+		@param dst where to put the compressed data, must have room for
+		maxCompressedLength(srcLen) bytes
+		@param dstOff offset in dst
+
+		@return the length of the compressed data
+	*/
+	int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff)
+	{
+		int end = srcOff + srcLen;
+		int matchLimit = end - LAST_LITERALS;
+		int mfLimit = end - MF_LIMIT;
+
+		int anchor = srcOff;
+		int ip = srcOff;
+		int op = dstOff;
+
+		Arrays.fill(hashTable, -1);
+
+		while (ip < mfLimit)
+		{
+			int sequence = readInt(src, ip);
+			int h = hash(sequence);
+			int ref = hashTable[h];
+			hashTable[h] = ip;
+
+			if (ref < 0 || ip - ref > MAX_DISTANCE ||
+				readInt(src, ref) != sequence)
+			{
+				// skip faster over data that does not compress
+				ip += 1 + ((ip - anchor) >>> 6);
+				continue;
+			}
+
+			// extend the match backwards into the literals
+			while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1])
+			{
+				ip--;
+				ref--;
+			}
+
+			int matchLength = MIN_MATCH;
+			while (ip + matchLength < matchLimit &&
+				   src[ip + matchLength] == src[ref + matchLength])
+			{
+				matchLength++;
+			}
+
+			int token = op;
+			op = writeSequence(src, anchor, ip - anchor, dst, op);
+			dst[op++] = (byte) (ip - ref);
+			dst[op++] = (byte) ((ip - ref) >>> 8);
+
+			int length = matchLength - MIN_MATCH;
+			if (length >= RUN_MASK)
+			{
+				dst[token] |= RUN_MASK;
+				op = writeLength(length - RUN_MASK, dst, op);
+			}
+			else
+			{
+				dst[token] |= length;
+			}
+
+			ip += matchLength;
+			anchor = ip;
+		}
+
+		// the rest is literals
+		op = writeSequence(src, anchor, end - anchor, dst, op);
+
+		return op - dstOff;
+	}
+
+	/**
+		Decompress data compressed by compress.  Any bytes after the end
+		of the compressed data, like the padding of an encrypted log
+		record, are ignored.
+
+		@param src the compressed data
+		@param srcOff offset of the compressed data in src
+		@param srcLen largest length of the compressed data
+		@param dst where to put the decompressed data
+		@param dstOff offset in dst
+		@param dstLen the length of the decompressed data
+
+		@exception IOException the compressed data is corrupt
+	*/
+	static void decompress(byte[] src, int srcOff, int srcLen,
+						   byte[] dst, int dstOff, int dstLen)
+		 throws IOException
+	{
+		int ip = srcOff;
+		int end = srcOff + srcLen;
+		int op = dstOff;
+		int opEnd = dstOff + dstLen;
+
+		while (op < opEnd)
+		{
+			if (ip >= end)
+				throw corrupt();
+
+			int token = src[ip++] & 0xff;
+
+			int literals = token >>> 4;
+			if (literals == RUN_MASK)
+			{
+				int b;
+				do
+				{
+					if (ip >= end)
+						throw corrupt();
+					b = src[ip++] & 0xff;
+					literals += b;
+				} while (b == 255);
+			}
+
+			if (literals > end - ip || literals > opEnd - op)
+				throw corrupt();
+
+			System.arraycopy(src, ip, dst, op, literals);
+			ip += literals;
+			op += literals;
+
+			// the last sequence has no match
+			if (op == opEnd)
+				break;
+
+			if (end - ip < 2)
+				throw corrupt();
+
+			int offset = (src[ip] & 0xff) | ((src[ip + 1] & 0xff) << 8);
+			ip += 2;
+
+			if (offset == 0 || offset > op - dstOff)
+				throw corrupt();
+
+			int matchLength = token & RUN_MASK;
+			if (matchLength == RUN_MASK)
+			{
+				int b;
+				do
+				{
+					if (ip >= end)
+						throw corrupt();
+					b = src[ip++] & 0xff;
+					matchLength += b;
+				} while (b == 255);
+			}
+			matchLength += MIN_MATCH;
+
+			if (matchLength > opEnd - op)
+				throw corrupt();
+
+			int ref = op - offset;
+			if (offset >= matchLength)
+			{
+				System.arraycopy(dst, ref, dst, op, matchLength);
+				op += matchLength;
+			}
+			else
+			{
+				// the match overlaps the bytes it is copied to
+				for (int i = 0; i < matchLength; i++)
+					dst[op++] = dst[ref++];
+			}
+		}
+	}
+
+	/**
+		Read a log record whose group has the Loggable.COMPRESSED bit set
+		and return the uncompressed log record in its place.  The input is
+		left holding the uncompressed log record, positioned right after its
+		group, as if the uncompressed log record had been read instead.
+
+		@param lr the compressed log record, as read from input
+		@param input the input stream the log record was read from, with its
+		limit set to the end of the log record
+
+		@exception IOException the log record is corrupt
+		@exception ClassNotFoundException the log record is corrupt
+	*/
+	static LogRecord uncompress(LogRecord lr, ArrayInputStream input)
+		 throws IOException, ClassNotFoundException
+	{
+		// the transaction id may have been read by the scan already
+		lr.getTransactionId();
+
+		int length = input.readInt();
+		if (length <= 0)
+			throw corrupt();
+
+		byte[] data = new byte[length];
+		decompress(input.getData(), input.getPosition(), input.available(),
+				   data, 0, length);
+
+		input.setData(data);
+		input.setLimit(0, length);
+
+		return (LogRecord) input.readObject();
+	}
+
+	private static IOException corrupt()
+	{
+		return new IOException("corrupt compressed log record");
+	}
+
+	/**
+		Write a token, the literal length and the literals.  The match
+		length in the token is left 0.
+	*/
+	private static int writeSequence(byte[] src, int anchor, int literals,
+									 byte[] dst, int op)
+	{
+		if (literals >= RUN_MASK)
+		{
+			dst[op++] = (byte) (RUN_MASK << 4);
+			op = writeLength(literals - RUN_MASK, dst, op);
+		}
+		else
+		{
+			dst[op++] = (byte) (literals << 4);
+		}
+
+		System.arraycopy(src, anchor, dst, op, literals);
+		return op + literals;
+	}
+
+	private static int writeLength(int length, byte[] dst, int op)
+	{
+		while (length >= 255)
+		{
+			dst[op++] = (byte) 255;
+			length -= 255;
+		}
+		dst[op++] = (byte) length;
+		return op;
+	}
+
+	private static int readInt(byte[] b, int i)
+	{
+		return (b[i] & 0xff) | ((b[i + 1] & 0xff) << 8) |
+			((b[i + 2] & 0xff) << 16) | ((b[i + 3] & 0xff) << 24);
+	}
+
+	private static int hash(int sequence)
+	{
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+}
@@ -0,0 +1,345 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.raw.log.LogFlusher
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.raw.log;
+
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.util.InterruptStatus;
+import org.apache.derby.shared.common.sanity.SanityManager;
+
+/**
+	Group commit and asynchronous commit support for LogToFile.
+	<P>
+	When group commit is enabled, a transaction that must have its commit
+	log record on disk before it returns does not write and sync the log
+	itself. Instead it hands the instant of its commit log record to the log
+	flusher and waits. The log flusher is a single dedicated thread which
+	collects the requests of all transactions that commit at about the same
+	time, and then does one write and sync of the log buffers on behalf of all
+	of them. The number of syncs issued is therefore bounded by the sync rate
+	of the disk rather than by the number of committing transactions.
+	<P>
+	A group is closed and flushed when either maxBatchSize transactions are
+	waiting, or when maxWaitNanos has elapsed since the first transaction of
+	the group started waiting, whichever comes first.
+	<P>
+	A transaction doing an asynchronous commit only posts the instant of its
+	commit log record and returns at once. The flusher then syncs the log no
+	later than maxAsyncDelayNanos after the first such request, together with
+	any group commit that happens in the meantime.
+	<P>
+	If the flush fails, the log factory is marked corrupt by LogToFile.flush()
+	and every transaction waiting for the group gets the error.
+	<P>
+	MT - all state is protected by synchronizing on this object.  The actual
+	flush is done by the flusher thread without holding that monitor, so that
+	transactions can queue up for the next group while one is being synced.
+*/
+final class LogFlusher implements Runnable
+{
+	private final LogToFile logFactory;
+
+	/** longest time to wait for a group to fill up */
+	private final long maxWaitNanos;
+
+	/** number of waiting transactions which closes a group */
+	private final int maxBatchSize;
+
+	/** longest time an asynchronous commit may stay unsynced */
+	private final long maxAsyncDelayNanos;
+
+	/** the highest log instant a transaction has asked to have on disk */
+	private long requestedInstant = LogCounter.INVALID_LOG_INSTANT;
+
+	/** number of transactions waiting for the next group flush */
+	private int pendingRequests;
+
+	/** when the group of waiting transactions must be flushed */
+	private long groupDeadline;
+
+	/** true if an asynchronous commit is waiting for the next flush */
+	private boolean asyncPending;
+
+	/** when the pending asynchronous commits must be flushed */
+	private long asyncDeadline;
+
+	/** every log record up to this instant has been synced by the flusher */
+	private long flushedInstant = LogCounter.INVALID_LOG_INSTANT;
+
+	/** set if a group flush failed, rethrown to all waiting transactions */
+	private StandardException flushError;
+
+	private boolean stopped;
+
+	private Thread flusherThread;
+
+	/** number of group flushes done, for diagnostics */
+	private long groupsFlushed;
+
+	/** number of transactions served by group flushes, for diagnostics */
+	private long requestsFlushed;
+
+	/** number of asynchronous commits posted, for diagnostics */
+	private long asyncRequests;
+
+	LogFlusher(LogToFile logFactory, long maxWaitMicros, int maxBatchSize,
+			   long maxAsyncDelayMillis)
+	{
+		this.logFactory = logFactory;
+		this.maxWaitNanos = maxWaitMicros * 1000L;
+		this.maxBatchSize = maxBatchSize;
+		this.maxAsyncDelayNanos = maxAsyncDelayMillis * 1000000L;
+	}
+
+	/**
+		Start the flusher thread.
+	*/
+	synchronized void start(Thread t)
+	{
+		if (SanityManager.DEBUG)
+			SanityManager.ASSERT(flusherThread == null,
+								 "log flusher already started");
+
+		flusherThread = t;
+		flusherThread.start();
+	}
+
+	/**
+		Stop the flusher thread and wait for it to finish.  Transactions
+		still waiting are released and flush the log themselves.
+	*/
+	void stop()
+	{
+		Thread t;
+		synchronized (this)
+		{
+			stopped = true;
+			t = flusherThread;
+			notifyAll();
+		}
+
+		if (t != null && t != Thread.currentThread())
+		{
+			try
+			{
+				t.join();
+			}
+			catch (InterruptedException ie)
+			{
+				InterruptStatus.setInterrupted();
+			}
+		}
+	}
+
+	/**
+		Wait until the log is synced up to and including the log record at
+		the given instant.
+
+		@return true if the log was flushed by a group commit, false if the
+		flusher has been stopped and the caller must flush the log itself.
+
+		@exception StandardException the group flush failed
+	*/
+	boolean flush(long instant) throws StandardException
+	{
+		synchronized (this)
+		{
+			if (stopped)
+				return false;
+
+			if (instant > requestedInstant)
+				requestedInstant = instant;
+
+			// wake up the flusher for the first request of a group, and
+			// again when the group is full
+			if (++pendingRequests == 1)
+			{
+				groupDeadline = System.nanoTime() + maxWaitNanos;
+				notifyAll();
+			}
+			else if (pendingRequests >= maxBatchSize)
+				notifyAll();
+
+			while (flushedInstant < instant)
+			{
+				if (flushError != null)
+					throw flushError;
+
+				if (stopped)
+					return false;
+
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException ie)
+				{
+					InterruptStatus.setInterrupted();
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+		Ask for the log to be synced up to and including the log record at
+		the given instant within the asynchronous commit delay, without
+		waiting for it.
+
+		@return true if the request was posted, false if the flusher has been
+		stopped and the caller must flush the log itself.
+	*/
+	synchronized boolean flushLater(long instant)
+	{
+		if (stopped)
+			return false;
+
+		if (instant > requestedInstant)
+			requestedInstant = instant;
+
+		asyncRequests++;
+
+		if (!asyncPending)
+		{
+			asyncPending = true;
+			asyncDeadline = System.nanoTime() + maxAsyncDelayNanos;
+			notifyAll();
+		}
+
+		return true;
+	}
+
+	/**
+		The flusher thread. Waits for a group of commit requests to form, or
+		for the asynchronous commit delay to pass, then flushes the log once
+		for all of them.
+	*/
+	public void run()
+	{
+		for (;;)
+		{
+			long flushTo;
+			int batch;
+
+			synchronized (this)
+			{
+				while (pendingRequests == 0 && !asyncPending && !stopped)
+				{
+					try
+					{
+						wait();
+					}
+					catch (InterruptedException ie)
+					{
+						InterruptStatus.setInterrupted();
+					}
+				}
+
+				if (stopped)
+					return;
+
+				// give other committing transactions a chance to join. A
+				// transaction waiting for its commit may arrive while only
+				// asynchronous commits are pending, so recompute the
+				// deadline every time around.
+				while (pendingRequests < maxBatchSize && !stopped)
+				{
+					long deadline;
+					if (pendingRequests == 0)
+						deadline = asyncDeadline;
+					else if (!asyncPending)
+						deadline = groupDeadline;
+					else
+						deadline = Math.min(groupDeadline, asyncDeadline);
+
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0)
+						break;
+
+					try
+					{
+						wait(remaining / 1000000L, (int) (remaining % 1000000L));
+					}
+					catch (InterruptedException ie)
+					{
+						InterruptStatus.setInterrupted();
+					}
+				}
+
+				if (stopped)
+					return;
+
+				flushTo = requestedInstant;
+				batch = pendingRequests;
+				pendingRequests = 0;
+				asyncPending = false;
+			}
+
+			StandardException error = null;
+			try
+			{
+				logFactory.flush(LogCounter.getLogFileNumber(flushTo),
+								 LogCounter.getLogFilePosition(flushTo));
+			}
+			catch (StandardException se)
+			{
+				error = se;
+			}
+			catch (RuntimeException re)
+			{
+				// the thread must not die silently while transactions are
+				// waiting for it
+				error = logFactory.markCorrupt(
+					StandardException.plainWrapException(re));
+			}
+
+			synchronized (this)
+			{
+				if (error == null)
+				{
+					if (flushTo > flushedInstant)
+						flushedInstant = flushTo;
+					groupsFlushed++;
+					requestsFlushed += batch;
+				}
+				else
+				{
+					flushError = error;
+					stopped = true;
+				}
+				notifyAll();
+			}
+
+			if (error != null)
+				return;
+		}
+	}
+
+	public synchronized String toString()
+	{
+		return "LogFlusher: groups flushed = " + groupsFlushed +
+			", commits flushed = " + requestsFlushed +
+			", async commits = " + asyncRequests +
+			", pending = " + pendingRequests +
+			", flushed to " + LogCounter.toDebugString(flushedInstant);
+	}
+}
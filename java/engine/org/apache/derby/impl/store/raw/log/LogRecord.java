@@ -64,6 +64,10 @@ import java.io.IOException;
 		op(Loggable)					the log operation
 	@derby.endFormat
 	</PRE>
+	<P>
+	A log record whose group has the Loggable.COMPRESSED bit set is
+	followed by the compressed log record instead of the log operation, see
+	FileLogger.
 
 */
 public class LogRecord implements Formatable {
@@ -113,6 +117,21 @@ public class LogRecord implements Formatable {
 		op = null;
 	}
 
+	/**
+		Write out the header of the compressed form of this log record: the
+		format id, the group with the Loggable.COMPRESSED bit set and the
+		transaction id, so that log scans can filter the compressed log record
+		like any other.
+
+		@exception IOException error writing to log stream
+	*/
+	void writeCompressedHeader(ObjectOutput out) throws IOException
+	{
+		FormatIdUtil.writeFormatIdInteger(out, StoredFormatIds.LOG_RECORD);
+		CompressedNumber.writeInt(out, group | Loggable.COMPRESSED);
+		out.writeObject(xactId);
+	}
+
 	/**
 		Return my format identifier.
 	*/
@@ -311,4 +330,8 @@ public class LogRecord implements Formatable {
 	public boolean isChecksum()	{
 		return ((group & Loggable.CHECKSUM) != 0);
 	}
+
+	public boolean isCompressed()	{
+		return ((group & Loggable.COMPRESSED) != 0);
+	}
 }
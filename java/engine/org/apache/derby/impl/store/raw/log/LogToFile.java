@@ -93,7 +93,11 @@ import java.security.PrivilegedAction;
 import java.security.PrivilegedExceptionAction;
 import java.security.PrivilegedActionException;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
 
 /**
@@ -264,6 +268,23 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 	private static final int LOG_BUFFER_SIZE_MAX = LOG_SWITCH_INTERVAL_MAX;
 	private int logBufferSize = DEFAULT_LOG_BUFFER_SIZE;
 
+	//group commit values, max wait is in microseconds
+	private static final int DEFAULT_GROUP_COMMIT_MAX_WAIT = 1000;
+	private static final int GROUP_COMMIT_MAX_WAIT_MAX = 1000000;
+	private static final int DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE = 64;
+	private static final int GROUP_COMMIT_MAX_BATCH_SIZE_MAX = 100000;
+
+	//asynchronous commit window, in milliseconds
+	private static final int DEFAULT_ASYNC_COMMIT_MAX_DELAY = 10;
+	private static final int ASYNC_COMMIT_MAX_DELAY_MAX = 10000;
+
+	//spare log files, named spare<n>.dat in the log directory
+	private static final String SPARE_LOG_FILE_PREFIX = "spare";
+	private static final int LOG_FILE_POOL_SIZE_MAX = 100;
+
+	//number of recovery redo threads
+	private static final int REDO_THREADS_MAX = 64;
+
 	/* Log Control file flags. */
 	private static final byte IS_BETA_FLAG = 0x1;
 	
@@ -385,6 +406,16 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 	long					 checkpointInstant;
 								// log instant of te curerntCheckpoint
 
+	private LogInstant		 lastCheckpointStart;
+	private long			 lastCheckpointUndoLWM;
+								// end of the log and undo LWM when the
+								// previous checkpoint since boot started.
+								// The next incremental checkpoint writes out
+								// the pages changed before that, and can use
+								// them as its redo LWM and undo LWM.
+								//
+								// MT - only changed or access in checkpoint
+
 	private DaemonService	 checkpointDaemon;	// the background worker thread who is going to
 								// do checkpoints for this log factory.
 
@@ -460,6 +491,48 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
     // disable syncing of log file when running in derby.system.durability=test
     private boolean logNotSynced = false;
 
+	// if derby.storage.logGroupCommit is set, transaction end flushes are
+	// done by the log flusher thread on behalf of all waiting transactions.
+	private boolean groupCommit = false;
+	private int groupCommitMaxWait = DEFAULT_GROUP_COMMIT_MAX_WAIT;
+	private int groupCommitMaxBatchSize = DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE;
+	private int asyncCommitMaxDelay = DEFAULT_ASYNC_COMMIT_MAX_DELAY;
+	private volatile LogFlusher logFlusher;
+
+	// set when the log factory is stopped, no log flusher may be started
+	// after that. MT - protected by synchronizing on this.
+	private boolean logFlusherStopped;
+
+	// if derby.storage.logFilePoolSize is set, log files no longer needed
+	// are zeroed and kept as spares, and a log switch renames a spare file
+	// instead of creating and preallocating a new one.
+	// MT - spareLogFiles and nextSpareLogFileNumber are protected by
+	// synchronizing on this.
+	private int logFilePoolSize = 0;
+	private final ArrayList<StorageFile> spareLogFiles =
+		new ArrayList<StorageFile>();
+	private long nextSpareLogFileNumber = 1;
+
+	// if derby.storage.redoThreads is greater than 1, page operations are
+	// redone by that many threads during recovery, see ParallelRedo
+	private int redoThreads = 1;
+
+	// log records at least this long are compressed if that saves enough,
+	// 0 if log records are never compressed, see FileLogger
+	private int logCompressionThreshold = 0;
+
+	// log compression statistics, updated by the loggers without
+	// synchronizing on this
+	private final AtomicLong compressedLogRecords = new AtomicLong();
+	private final AtomicLong compressedLogBytesSaved = new AtomicLong();
+
+	// log switch statistics, times are in nanoseconds.
+	// MT - protected by synchronizing on this.
+	private long logSwitches;
+	private long logSwitchesFromPool;
+	private long logSwitchTimeTotal;
+	private long logSwitchTimeMax;
+
 	private volatile boolean logArchived = false;
 	private boolean logSwitchRequired = false;
 
@@ -713,6 +786,11 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
             }
         }
 
+		// pick up the spare log files kept by the previous boot before the
+		// checkpoint at the end of recovery can add files to the pool
+		if (!ReadOnlyDB)
+			initLogFilePool();
+
 		// we don't want to set ReadOnlyDB before recovery has a chance to look
 		// at the latest checkpoint and determine that the database is shutdown
 		// cleanly.  If the medium is read only but there are logs that need
@@ -1375,6 +1453,66 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
             // use the same daemon for the cache cleaner
             dataFactory.setupCacheCleaner(checkpointDaemon);
         }
+
+		/////////////////////////////////////////////////////////////
+		// setup the group commit log flusher
+		/////////////////////////////////////////////////////////////
+		if (groupCommit)
+			startLogFlusher();
+	}
+
+	/**
+		Start the recovery redo workers, if more than one redo thread has been
+		asked for with derby.storage.redoThreads.
+
+		<P>MT - only called by the recovery thread
+
+		@param tf the transaction factory, used by the workers to start
+		their own recovery transactions
+		@return the started workers, or null to redo the log serially
+	*/
+	ParallelRedo startParallelRedo(TransactionFactory tf)
+	{
+		if (redoThreads <= 1)
+			return null;
+
+		ParallelRedo parallelRedo = new ParallelRedo(
+			rawStoreFactory, tf, getContextService(), redoThreads);
+
+		Thread[] threads = new Thread[redoThreads];
+		for (int i = 0; i < redoThreads; i++)
+		{
+			threads[i] = getMonitor().getDaemonThread(
+				parallelRedo.getWorker(i), "redo-worker-" + i, false);
+		}
+		parallelRedo.start(threads);
+
+		return parallelRedo;
+	}
+
+	/**
+		Start the log flusher thread unless it is already running. It is
+		started at boot for group commit, or by the first asynchronous commit.
+
+		<P>MT - synchronized, so that only one log flusher is started
+
+		@return the log flusher, or null if the log cannot be written or the
+		log factory has been stopped
+	*/
+	private synchronized LogFlusher startLogFlusher()
+	{
+		if (logFlusher == null && !logFlusherStopped &&
+			!ReadOnlyDB && logOut != null)
+		{
+			LogFlusher flusher = new LogFlusher(
+				this, groupCommitMaxWait, groupCommitMaxBatchSize,
+				asyncCommitMaxDelay);
+			flusher.start(getMonitor().getDaemonThread(
+				flusher, "log-flusher", false));
+			logFlusher = flusher;
+		}
+
+		return logFlusher;
 	}
 
  
@@ -1493,6 +1631,27 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
     boolean             wait)
 		 throws StandardException
 	{
+		return checkpoint(rsf, df, tf, wait, false);
+	}
+
+	/**
+		Checkpoint, which may be incremental.
+
+        @param incremental  If true, only write out the pages changed before
+                            the previous checkpoint, if the data factory
+                            supports incremental checkpoints.  See
+                            checkpointWithTran.
+
+		@exception StandardException Derby Standard Error Policy 
+	*/
+	private boolean checkpoint(
+    RawStoreFactory     rsf,
+    DataFactory         df,
+    TransactionFactory  tf, 
+    boolean             wait,
+    boolean             incremental)
+		 throws StandardException
+	{
 
 		if (inReplicationSlavePreMode) 
         {
@@ -1504,7 +1663,7 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 		}
 
 		// call checkpoint with no pre-started transaction
-		boolean done = checkpointWithTran(null, rsf, df, tf, wait);
+		boolean done = checkpointWithTran(null, rsf, df, tf, wait, incremental);
 
 		return done;
 	}
@@ -1519,6 +1678,11 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
                             wait=true then this routine will wait for the 
                             checkpoint to complete and the do another checkpoint
                             and wait for it to finish before returning.
+        @param incremental  If true and the data factory supports it, only
+                            write out the pages changed before the previous
+                            checkpoint, and keep the redo LWM of the previous
+                            checkpoint if later changes are left in the page
+                            cache.
 
 		@exception StandardException Derby Standard Error Policy 
 	*/
@@ -1527,7 +1691,8 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
     RawStoreFactory     rsf,
     DataFactory         df,
     TransactionFactory  tf,
-    boolean             wait)
+    boolean             wait,
+    boolean             incremental)
 		 throws StandardException
 	{
 		LogInstant  redoLWM;
@@ -1592,6 +1757,10 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
                         // the other thread which is actually doing the the 
                         // checkpoint completes.  And then the code will loop
                         // until this thread executes the checkpoint.
+
+                        // an incremental checkpoint should stop pacing its
+                        // writes now that someone waits for it
+                        df.hurryCheckpoint();
  
                         while (inCheckpoint)
                         {
@@ -1707,7 +1876,47 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 			/////////////////////////////////////////////////////
 			// clean the buffer cache
 			/////////////////////////////////////////////////////
-			df.checkpoint();
+
+			// The checkpoint of the checkpoint daemon is incremental if the
+			// data factory supports it: it only writes out the pages changed
+			// before the previous checkpoint started.  Everybody else who
+			// needs a checkpoint (user, backup, compress, shutdown) gets a
+			// full one.
+			LogInstant checkpointStart = redoLWM;
+			long checkpointUndoLWM = undoLWM_long;
+
+			LogInstant oldestDirty = df.checkpoint(
+				!incremental ? null :
+				(lastCheckpointStart != null ? lastCheckpointStart : redoLWM));
+
+			if (oldestDirty != null && oldestDirty.lessThan(redoLWM))
+			{
+				// Pages changed since the previous checkpoint started are
+				// still in the cache, so recovery must start where it would
+				// have started for the previous checkpoint.  Its redo LWM
+				// and undo LWM are used rather than the oldest change in the
+				// cache, because recovery relies on every transaction with
+				// log records after the redo LWM having its first log record
+				// after the undo LWM.
+				if (lastCheckpointStart == null ||
+					oldestDirty.lessThan(lastCheckpointStart))
+				{
+					// cannot happen, the incremental checkpoint has written
+					// out all those pages.  Be safe.
+					df.checkpoint();
+				}
+				else
+				{
+					redoLWM = lastCheckpointStart;
+					redoLWM_long = 
+						((LogCounter) lastCheckpointStart).getValueAsLong();
+					if (lastCheckpointUndoLWM < undoLWM_long)
+						undoLWM_long = lastCheckpointUndoLWM;
+				}
+			}
+
+			lastCheckpointStart = checkpointStart;
+			lastCheckpointUndoLWM = checkpointUndoLWM;
 
 
 			/////////////////////////////////////////////////////
@@ -1771,6 +1980,9 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 				truncateLog(currentCheckpoint);
 			}
 
+			// make spare log files ready for the next log switches
+			fillLogFilePool();
+
 			// delete the committted container drop stubs 
             // that are no longer required during recovery. 
             // If a backup is in progress don't delete the stubs until 
@@ -1842,6 +2054,83 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 		flush(fileNumber, wherePosition);
 	}
 
+	/**
+		Flush all unwritten log record up to the log instance indicated to disk
+		and sync, on behalf of a transaction that is ending.
+		<P>
+		If group commit is enabled, the flush is handed to the log flusher
+		thread which syncs the log once for all transactions ending at about
+		the same time.  Otherwise this is the same as flush(LogInstant).
+
+		<P>MT - not needed, wrapper method
+
+		@param where flush log up to here
+
+		@exception StandardException Standard Derby error policy
+	*/
+	public void flushCommit(LogInstant where) throws StandardException
+	{
+		LogFlusher flusher = groupCommit ? logFlusher : null;
+
+		if (flusher != null && where != null)
+		{
+			LogCounter whereC = (LogCounter) where;
+
+			if (isFlushed(whereC))
+				return;
+
+			if (flusher.flush(whereC.getValueAsLong()))
+				return;
+		}
+
+		flush(where);
+	}
+
+	/**
+		Have the log flushed up to the given log instant by the log flusher
+		thread, without waiting for it. Used for asynchronous commit; the
+		flusher syncs the log within derby.storage.logAsyncCommitMaxDelay
+		milliseconds. Because the log is always written in order, a crash
+		before that loses a suffix of the log and recovery still finds a
+		consistent database.
+		<P>
+		If the log flusher cannot be used, the log is flushed at once.
+
+		@param where flush log up to here
+
+		@exception StandardException Standard Derby error policy
+	*/
+	public void flushLater(LogInstant where) throws StandardException
+	{
+		if (where == null)
+			return;
+
+		LogCounter whereC = (LogCounter) where;
+
+		if (isFlushed(whereC))
+			return;
+
+		LogFlusher flusher = logFlusher;
+		if (flusher == null)
+			flusher = startLogFlusher();
+
+		if (flusher == null || !flusher.flushLater(whereC.getValueAsLong()))
+			flush(where);
+	}
+
+	/**
+		Tell whether the log is already on disk up to the given instant, as
+		long as the database is neither corrupt nor frozen.
+
+		<P>MT - synchronized on this
+	*/
+	private synchronized boolean isFlushed(LogCounter where)
+	{
+		return corrupt == null && !isFrozen &&
+			(where.getLogFileNumber() < logFileNumber ||
+			 where.getLogFilePosition() < lastFlush);
+	}
+
 	/**
 		Flush all unwritten log record to disk and sync.
 		Also check to see if database is frozen or corrupt.
@@ -1974,6 +2263,26 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 		}
 
 
+		writeLogFileHeader(newlog, number, prevLogRecordEndInstant);
+
+		return true;
+	}
+
+	/**
+		Write the log file header at the beginning of a new log file, or of
+		a spare log file that is being reused, and sync it.
+
+		@param newlog the new log file
+		@param number the new log file number
+		@param prevLogRecordEndInstant the end of the last log record in the
+		previous log file
+
+		@exception IOException if the header cannot be written
+	*/
+	private void writeLogFileHeader(StorageRandomAccessFile newlog, long number,
+									long prevLogRecordEndInstant)
+		 throws IOException, StandardException
+	{
 		newlog.seek(0);
 
 		newlog.writeInt(fid);
@@ -1982,8 +2291,6 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 		newlog.writeLong(prevLogRecordEndInstant);
 
 		syncFile(newlog);
-
-		return true;
 	}
 
 	/**
@@ -2027,6 +2334,8 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 				}	
 			}
 
+			long switchStart = System.nanoTime();
+
 			// we have an empty log file here, refuse to switch.
 			if (endPosition == LOG_FILE_HEADER_SIZE)
 			{
@@ -2050,6 +2359,7 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
             }
 
 			StorageRandomAccessFile newLog = null;	// the new log file
+			boolean recycled = false;	// the new log file is a spare file
 			try 
 			{
 				// if the log file exist and cannot be deleted, cannot
@@ -2062,9 +2372,23 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 					return;
 				}
 
+				// use a zeroed spare log file from the pool if there is one.
+				// It already has its full size, so it can be opened for
+				// write sync right away and needs no preallocation.
+				StorageFile spare = takeSpareLogFile();
+				if (spare != null)
+				{
+					recycled = privRenameTo(spare, newLogFile);
+					if (!recycled)
+						privDelete(spare);
+				}
+
 				try
 				{
-                    newLog =   privRandomAccessFile(newLogFile, "rw");
+					if (recycled && isWriteSynced)
+						newLog = openLogFileInWriteMode(newLogFile);
+					else
+						newLog = privRandomAccessFile(newLogFile, "rw");
 				}
 				catch (IOException ioe)
 				{
@@ -2080,8 +2404,22 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 					return;
 				}
 
-				if (initLogFile(newLog, logFileNumber+1,
-								LogCounter.makeLogInstantAsLong(logFileNumber, endPosition)))
+				long prevLogRecordEndInstant =
+					LogCounter.makeLogInstantAsLong(logFileNumber, endPosition);
+				boolean initialized;
+				if (recycled)
+				{
+					writeLogFileHeader(
+						newLog, logFileNumber+1, prevLogRecordEndInstant);
+					initialized = true;
+				}
+				else
+				{
+					initialized = initLogFile(
+						newLog, logFileNumber+1, prevLogRecordEndInstant);
+				}
+
+				if (initialized)
 				{
 
 					// New log file init ok, close the old one and
@@ -2117,7 +2455,7 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 					setEndPosition( newLog.getFilePointer() );
 					lastFlush = endPosition;
 					
-					if(isWriteSynced)
+					if(isWriteSynced && !recycled)
 					{
 						//extend the file by wring zeros to it
 						preAllocateNewLogFile(newLog);
@@ -2145,6 +2483,14 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 											 "empty log file has wrong size");
 					}
 
+					long switchTime = System.nanoTime() - switchStart;
+					logSwitches++;
+					if (recycled)
+						logSwitchesFromPool++;
+					logSwitchTimeTotal += switchTime;
+					if (switchTime > logSwitchTimeMax)
+						logSwitchTimeMax = switchTime;
+
 				}
 				else	// something went wrong, delete the half baked file
 				{
@@ -2297,7 +2643,7 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 			try
 			{
 				uselessLogFile = getLogFileName(oldFirstLog);
-                if (privDelete(uselessLogFile))
+                if (recycleLogFile(uselessLogFile))
 				{
 					if (SanityManager.DEBUG)
 					{
@@ -2327,6 +2673,210 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 		}
 	}
 
+	/**
+		Keep a log file that is no longer needed as a spare for a later log
+		switch if the log file pool has room for it, otherwise delete it.
+
+		<P>MT - only called by the checkpoint thread. The log is not frozen
+		while the file is zeroed.
+
+		@param logFile the log file that is no longer needed
+		@return true if the log file was recycled or deleted
+
+		@exception StandardException Standard Derby error policy
+	*/
+	private boolean recycleLogFile(StorageFile logFile)
+		throws StandardException
+	{
+		StorageFile spare = null;
+
+		synchronized (this)
+		{
+			if (spareLogFiles.size() < logFilePoolSize)
+				spare = getSpareLogFileName(nextSpareLogFileNumber++);
+		}
+
+		// only rename the file once it is completely zeroed, so that every
+		// spare file found at boot can be used
+		if (spare != null &&
+			prepareSpareLogFile(logFile) && privRenameTo(logFile, spare))
+		{
+			synchronized (this)
+			{
+				spareLogFiles.add(spare);
+			}
+			return true;
+		}
+
+		return privDelete(logFile);
+	}
+
+	/**
+		Create new spare log files until the log file pool is full.
+
+		<P>MT - only called by the checkpoint thread. The log is not frozen
+		while the files are written.
+
+		@exception StandardException Standard Derby error policy
+	*/
+	private void fillLogFilePool() throws StandardException
+	{
+		for (;;)
+		{
+			StorageFile spare;
+
+			synchronized (this)
+			{
+				if (spareLogFiles.size() >= logFilePoolSize ||
+					ReadOnlyDB || logOut == null)
+				{
+					return;
+				}
+				spare = getSpareLogFileName(nextSpareLogFileNumber++);
+			}
+
+			if (!prepareSpareLogFile(spare))
+			{
+				privDelete(spare);
+				return;
+			}
+
+			synchronized (this)
+			{
+				spareLogFiles.add(spare);
+			}
+		}
+	}
+
+	/**
+		Zero the given file up to the log switch interval, so that it can
+		become a new log file. Zeros end a log scan, so that nothing in the
+		file past the end of the log is taken for a log record by recovery,
+		just like in a preallocated log file.
+
+		@param file the file to prepare, created if it does not exist
+		@return true if the file was prepared, false on I/O error
+	*/
+	private boolean prepareSpareLogFile(StorageFile file)
+	{
+		StorageRandomAccessFile raf = null;
+		try
+		{
+			raf = privRandomAccessFile(file, "rw");
+
+			long oldLength = raf.length();
+			int size = logSwitchInterval;
+			byte[] zeros = new byte[Math.min(logBufferSize * 2, size)];
+
+			raf.seek(0);
+			for (int written = 0; written < size; )
+			{
+				int amount = Math.min(zeros.length, size - written);
+				raf.write(zeros, 0, amount);
+				written += amount;
+			}
+
+			if (oldLength > size)
+				raf.setLength(size);
+
+			if (!logNotSynced)
+				raf.sync();
+
+			raf.close();
+			return true;
+		}
+		catch (IOException ioe)
+		{
+			if (raf != null)
+			{
+				try
+				{
+					raf.close();
+				}
+				catch (IOException ioe2) {}
+			}
+			return false;
+		}
+	}
+
+	/**
+		Get a spare log file for a log switch.
+
+		<P>MT - caller must synchronize on this
+
+		@return a zeroed spare log file, or null if the pool is empty
+	*/
+	private StorageFile takeSpareLogFile()
+	{
+		int size = spareLogFiles.size();
+		return size == 0 ? null : spareLogFiles.remove(size - 1);
+	}
+
+	/**
+		Adopt the spare log files found in the log directory at boot, and
+		delete the ones the log file pool has no room for.
+	*/
+	private void initLogFilePool()
+	{
+		StorageFile logDir;
+		try
+		{
+			logDir = getLogDirectory();
+		}
+		catch (StandardException se)
+		{
+			return;
+		}
+
+		String[] logfiles = privList(logDir);
+		if (logfiles == null)
+			return;
+
+		for (int i = 0; i < logfiles.length; i++)
+		{
+			long number = getSpareLogFileNumber(logfiles[i]);
+			if (number < 0)
+				continue;
+
+			StorageFile spare =
+				logStorageFactory.newStorageFile(logDir, logfiles[i]);
+
+			synchronized (this)
+			{
+				if (number >= nextSpareLogFileNumber)
+					nextSpareLogFileNumber = number + 1;
+
+				if (spareLogFiles.size() < logFilePoolSize)
+				{
+					spareLogFiles.add(spare);
+					continue;
+				}
+			}
+
+			privDelete(spare);
+		}
+	}
+
+	/**
+		Return the number of a spare log file given its name, or -1 if it is
+		not the name of a spare log file.
+	*/
+	private static long getSpareLogFileNumber(String name)
+	{
+		if (!name.startsWith(SPARE_LOG_FILE_PREFIX) || !name.endsWith(".dat"))
+			return -1;
+
+		try
+		{
+			return Long.parseLong(name.substring(
+				SPARE_LOG_FILE_PREFIX.length(), name.length() - 4));
+		}
+		catch (NumberFormatException nfe)
+		{
+			return -1;
+		}
+	}
+
    
 
     /**
@@ -2839,6 +3389,18 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 		return logStorageFactory.newStorageFile( getLogDirectory(), "log" + filenumber + ".dat");
 	}
 
+	/**
+		Given a spare log file number, return its file name 
+
+		<P> MT- read only
+	*/
+	private StorageFile getSpareLogFileName(long number)
+		throws StandardException
+	{
+		return logStorageFactory.newStorageFile(
+			getLogDirectory(), SPARE_LOG_FILE_PREFIX + number + ".dat");
+	}
+
 	/*
 		Find a checkpoint log record at the checkpointInstant
 
@@ -3213,6 +3775,29 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 												   LOG_BUFFER_SIZE_MIN, 
 												   LOG_BUFFER_SIZE_MAX, 
 												   DEFAULT_LOG_BUFFER_SIZE);
+
+		groupCommit = PropertyUtil.getSystemBoolean(
+			org.apache.derby.iapi.reference.Property.LOG_GROUP_COMMIT);
+		groupCommitMaxWait = PropertyUtil.getSystemInt(
+			org.apache.derby.iapi.reference.Property.LOG_GROUP_COMMIT_MAX_WAIT,
+			0, GROUP_COMMIT_MAX_WAIT_MAX, DEFAULT_GROUP_COMMIT_MAX_WAIT);
+		groupCommitMaxBatchSize = PropertyUtil.getSystemInt(
+			org.apache.derby.iapi.reference.Property.LOG_GROUP_COMMIT_MAX_BATCH_SIZE,
+			1, GROUP_COMMIT_MAX_BATCH_SIZE_MAX,
+			DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE);
+		asyncCommitMaxDelay = PropertyUtil.getSystemInt(
+			org.apache.derby.iapi.reference.Property.LOG_ASYNC_COMMIT_MAX_DELAY,
+			0, ASYNC_COMMIT_MAX_DELAY_MAX, DEFAULT_ASYNC_COMMIT_MAX_DELAY);
+		logFilePoolSize = PropertyUtil.getSystemInt(
+			org.apache.derby.iapi.reference.Property.LOG_FILE_POOL_SIZE,
+			0, LOG_FILE_POOL_SIZE_MAX, 0);
+		redoThreads = PropertyUtil.getSystemInt(
+			org.apache.derby.iapi.reference.Property.LOG_REDO_THREADS,
+			1, REDO_THREADS_MAX, 1);
+		logCompressionThreshold = PropertyUtil.getSystemInt(
+			org.apache.derby.iapi.reference.Property.LOG_COMPRESSION_THRESHOLD,
+			0, Integer.MAX_VALUE, 0);
+
 		jbmsVersion = getMonitor().getEngineVersion();
 
 		
@@ -3526,6 +4111,18 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 			checkpointDaemon.stop();
 		}
 
+		// stop the log flusher, transactions still waiting for it will flush
+		// the log themselves
+		LogFlusher flusher;
+		synchronized (this) {
+			flusher = logFlusher;
+			logFlusher = null;
+			logFlusherStopped = true;
+		}
+		if (flusher != null) {
+			flusher.stop();
+		}
+
 		synchronized(this)
 		{
 			stopped = true;
@@ -3555,7 +4152,8 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 						   "\ntotal number of bytes written to log = " +
 						   LogAccessFile.mon_numBytesToLog +
 						   "\ntotal number of writes to log file = " +
-						   LogAccessFile.mon_numWritesToLog);
+						   LogAccessFile.mon_numWritesToLog +
+						   (flusher == null ? "" : "\n" + flusher));
 		}
 		
 
@@ -3728,7 +4326,8 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 
 			// checkpoint will start its own internal transaction on the current
 			// context.
-			rawStoreFactory.checkpoint();
+			checkpoint(rawStoreFactory, dataFactory,
+					   rawStoreFactory.getXactFactory(), true, true);
 		}
 		catch (StandardException se)
 		{
@@ -4476,6 +5075,54 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 
 
 
+	/**
+		Get statistics about the log. Switch times are in microseconds.
+
+		<P>MT - synchronized on this
+
+		@see LogFactory#getLogStatistics
+	*/
+	public synchronized Map<String, Long> getLogStatistics()
+	{
+		Map<String, Long> stats = new LinkedHashMap<String, Long>();
+
+		stats.put("LOG_FILE_NUMBER", logFileNumber);
+		stats.put("LOG_SWITCHES", logSwitches);
+		stats.put("LOG_SWITCHES_FROM_POOL", logSwitchesFromPool);
+		stats.put("LOG_SWITCH_TIME_TOTAL", logSwitchTimeTotal / 1000);
+		stats.put("LOG_SWITCH_TIME_MAX", logSwitchTimeMax / 1000);
+		stats.put("SPARE_LOG_FILES", (long) spareLogFiles.size());
+		stats.put("COMPRESSED_LOG_RECORDS", compressedLogRecords.get());
+		stats.put("COMPRESSED_LOG_BYTES_SAVED", compressedLogBytesSaved.get());
+
+		return stats;
+	}
+
+	/**
+		Get the length from which log records are compressed, or 0 if log
+		records are not compressed.
+
+		<P>MT - MT safe, set at boot time
+	*/
+	int getLogCompressionThreshold()
+	{
+		return logCompressionThreshold;
+	}
+
+	/**
+		Count a log record written in compressed form.
+
+		<P>MT - MT safe
+
+		@param length the length of the uncompressed log record
+		@param compressedLength the length of the compressed log record
+	*/
+	void logRecordCompressed(int length, int compressedLength)
+	{
+		compressedLogRecords.incrementAndGet();
+		compressedLogBytesSaved.addAndGet(length - compressedLength);
+	}
+
 	/**
 	  Get the instant of the first record which was not
 	  flushed.
@@ -5675,6 +6322,7 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 	private int action;
 	private StorageFile activeFile;
 	private File toFile;
+	private StorageFile renameToFile;
 	private String activePerms;
 
     protected boolean privExists(StorageFile file)
@@ -5805,6 +6453,19 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
 		return runBooleanAction(7, file);
 	}
 
+	private synchronized boolean privRenameTo(StorageFile from, StorageFile to)
+	{
+		renameToFile = to;
+		try
+		{
+			return runBooleanAction(11, from);
+		}
+		finally
+		{
+			renameToFile = null;
+		}
+	}
+
 
 	private synchronized boolean runBooleanAction(int action, StorageFile file) {
 		this.action = action;
@@ -5877,6 +6538,9 @@ public final class LogToFile implements LogFactory, ModuleControl, ModuleSupport
             return FileUtil.copyFile(logStorageFactory, toFile, activeFile);
         case 10:
         	return(new OutputStreamWriter(activeFile.getOutputStream(),"UTF8"));
+		case 11:
+			// SECURITY PERMISSION - OP4
+			return activeFile.renameTo(renameToFile);
 
 		default:
 			return null;
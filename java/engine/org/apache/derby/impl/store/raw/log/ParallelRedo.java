@@ -0,0 +1,412 @@
+/*
+
+   Derby - Class org.apache.derby.impl.store.raw.log.ParallelRedo
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.impl.store.raw.log;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import org.apache.derby.iapi.error.StandardException;
+import org.apache.derby.iapi.services.context.ContextManager;
+import org.apache.derby.iapi.services.context.ContextService;
+import org.apache.derby.iapi.services.io.ArrayInputStream;
+import org.apache.derby.iapi.store.access.AccessFactoryGlobals;
+import org.apache.derby.iapi.store.raw.Loggable;
+import org.apache.derby.iapi.store.raw.PageLoggable;
+import org.apache.derby.iapi.store.raw.RawStoreFactory;
+import org.apache.derby.iapi.store.raw.xact.RawTransaction;
+import org.apache.derby.iapi.store.raw.xact.TransactionFactory;
+import org.apache.derby.iapi.util.InterruptStatus;
+
+/**
+	Parallel recovery redo support for FileLogger.
+	<P>
+	The redo scan still reads the log sequentially on the recovery thread.
+	Log operations that only change a single page (PageLoggable) are handed
+	to a number of redo workers instead of being redone by the recovery
+	thread. The operations are partitioned by container, so all operations
+	on one container are redone by the same worker in log order, and page
+	reads and writes of different containers overlap.
+	<P>
+	Every other log operation is redone by the recovery thread, after
+	waiting for the workers to finish everything handed to them so far.
+	That keeps the order between, for instance, the creation of a container
+	and the first operation on one of its pages.
+	<P>
+	Each worker has its own context manager and its own recovery transaction
+	which, like the transaction of the recovery thread, is not in the
+	transaction table and never writes to the log.
+	<P>
+	If a worker fails, the error is rethrown on the recovery thread the next
+	time it hands work to the workers or waits for them. The workers then
+	discard the rest of their work.
+	<P>
+	MT - the queue of each worker is protected by synchronizing on the
+	worker. The first error is protected by synchronizing on this object.
+*/
+final class ParallelRedo
+{
+	/** largest number of operations queued for one worker */
+	private static final int MAX_QUEUED = 256;
+
+	private final RawStoreFactory rawStoreFactory;
+	private final TransactionFactory transFactory;
+	private final ContextService contextService;
+
+	private final Worker[] workers;
+
+	/** the first error of any worker */
+	private Throwable error;
+
+	/** the operation that failed */
+	private Loggable failedOperation;
+
+	/** number of operations handed to the workers, for diagnostics */
+	private long operationsQueued;
+
+	ParallelRedo(RawStoreFactory rawStoreFactory,
+				 TransactionFactory transFactory,
+				 ContextService contextService,
+				 int threads)
+	{
+		this.rawStoreFactory = rawStoreFactory;
+		this.transFactory = transFactory;
+		this.contextService = contextService;
+
+		workers = new Worker[threads];
+		for (int i = 0; i < threads; i++)
+			workers[i] = new Worker();
+	}
+
+	/**
+		Get the number of workers.
+	*/
+	int getThreadCount()
+	{
+		return workers.length;
+	}
+
+	/**
+		Get a worker, to be started in the given thread.
+	*/
+	Runnable getWorker(int i)
+	{
+		return workers[i];
+	}
+
+	/**
+		Start the workers.
+
+		@param threads one thread for each worker, see getWorker
+	*/
+	void start(Thread[] threads)
+	{
+		for (int i = 0; i < workers.length; i++)
+			workers[i].start(threads[i]);
+	}
+
+	/**
+		Hand a log operation to the worker of its container.  The optional
+		data of the log record is copied, since the log buffer is reused for
+		the next record.
+
+		@param op the operation to redo
+		@param instant the log instant of the operation
+		@param in positioned at the optional data of the operation, with its
+		limit set to the length of the optional data
+
+		@exception StandardException a worker has failed
+		@exception IOException a worker has failed
+	*/
+	void redo(PageLoggable op, long instant, ArrayInputStream in)
+		 throws StandardException, IOException
+	{
+		checkError();
+
+		int position = in.getPosition();
+		int length = in.available();
+		ArrayInputStream data = new ArrayInputStream(
+			Arrays.copyOf(in.getData(), position + length));
+		data.setLimit(position, length);
+
+		int hash = op.getPageId().getContainerId().hashCode();
+		workers[(hash & 0x7fffffff) % workers.length].add(
+			new RedoTask(op, instant, data));
+
+		operationsQueued++;
+	}
+
+	/**
+		Wait until the workers have redone every operation handed to them.
+
+		@exception StandardException a worker has failed
+		@exception IOException a worker has failed
+	*/
+	void waitForWorkers() throws StandardException, IOException
+	{
+		for (int i = 0; i < workers.length; i++)
+			workers[i].waitUntilIdle();
+
+		checkError();
+	}
+
+	/**
+		Stop the workers and wait for their threads to finish.  Operations
+		that have not been redone yet are discarded.
+	*/
+	void stop()
+	{
+		for (int i = 0; i < workers.length; i++)
+			workers[i].stop();
+	}
+
+	/**
+		Get the number of operations handed to the workers.
+	*/
+	long getOperationsQueued()
+	{
+		return operationsQueued;
+	}
+
+	/**
+		Get the operation which a worker failed to redo, or null.
+	*/
+	synchronized Loggable getFailedOperation()
+	{
+		return failedOperation;
+	}
+
+	private synchronized void setError(Throwable t, Loggable op)
+	{
+		if (error == null)
+		{
+			error = t;
+			failedOperation = op;
+		}
+	}
+
+	private synchronized boolean hasError()
+	{
+		return error != null;
+	}
+
+	/**
+		Rethrow the first error of any worker.
+	*/
+	private synchronized void checkError()
+		 throws StandardException, IOException
+	{
+		if (error == null)
+			return;
+
+		if (error instanceof StandardException)
+			throw (StandardException) error;
+		if (error instanceof IOException)
+			throw (IOException) error;
+
+		throw StandardException.plainWrapException(error);
+	}
+
+	/** A log operation waiting to be redone */
+	private static final class RedoTask
+	{
+		final PageLoggable op;
+		final LogCounter instant;
+		final ArrayInputStream data;
+
+		RedoTask(PageLoggable op, long instant, ArrayInputStream data)
+		{
+			this.op = op;
+			this.instant = new LogCounter(instant);
+			this.data = data;
+		}
+	}
+
+	/** A redo worker, redoing the operations of a set of containers */
+	private final class Worker implements Runnable
+	{
+		private final ArrayDeque<RedoTask> queue = new ArrayDeque<RedoTask>();
+
+		/** true while an operation taken off the queue is being redone */
+		private boolean busy;
+
+		private boolean stopped;
+
+		private Thread thread;
+
+		synchronized void start(Thread t)
+		{
+			thread = t;
+			thread.start();
+		}
+
+		synchronized void add(RedoTask task)
+		{
+			while (queue.size() >= MAX_QUEUED && !stopped)
+			{
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException ie)
+				{
+					InterruptStatus.setInterrupted();
+				}
+			}
+
+			queue.addLast(task);
+			notifyAll();
+		}
+
+		synchronized void waitUntilIdle()
+		{
+			while ((busy || !queue.isEmpty()) && !stopped)
+			{
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException ie)
+				{
+					InterruptStatus.setInterrupted();
+				}
+			}
+		}
+
+		void stop()
+		{
+			Thread t;
+			synchronized (this)
+			{
+				stopped = true;
+				t = thread;
+				notifyAll();
+			}
+
+			if (t != null && t != Thread.currentThread())
+			{
+				try
+				{
+					t.join();
+				}
+				catch (InterruptedException ie)
+				{
+					InterruptStatus.setInterrupted();
+				}
+			}
+		}
+
+		/**
+			Take the next operation off the queue.
+
+			@return the next operation, or null once the worker is stopped,
+			in which case operations still queued are discarded
+		*/
+		private synchronized RedoTask take()
+		{
+			busy = false;
+			notifyAll();
+
+			while (queue.isEmpty() || stopped)
+			{
+				if (stopped)
+				{
+					queue.clear();
+					return null;
+				}
+
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException ie)
+				{
+					InterruptStatus.setInterrupted();
+				}
+			}
+
+			busy = true;
+			return queue.removeFirst();
+		}
+
+		public void run()
+		{
+			ContextManager cm = contextService.newContextManager();
+			contextService.setCurrentContextManager(cm);
+
+			RawTransaction xact = null;
+			try
+			{
+				xact = transFactory.startTransaction(
+					rawStoreFactory, cm, AccessFactoryGlobals.USER_TRANS_NAME);
+
+				// like the transaction of the recovery thread, this one is
+				// not in the transaction table and writes no log
+				xact.recoveryTransaction();
+			}
+			catch (StandardException se)
+			{
+				setError(se, null);
+			}
+
+			RedoTask task;
+			while ((task = take()) != null)
+			{
+				// after an error, only empty the queue so that the
+				// recovery thread does not wait for us
+				if (xact == null || hasError())
+					continue;
+
+				try
+				{
+					if (task.op.needsRedo(xact))
+					{
+						task.op.doMe(xact, task.instant, task.data);
+						task.op.releaseResource(xact);
+					}
+				}
+				catch (Throwable t)
+				{
+					setError(t, task.op);
+				}
+			}
+
+			try
+			{
+				if (xact != null && !hasError())
+				{
+					xact.commit();
+					xact.close();
+				}
+			}
+			catch (StandardException se)
+			{
+				setError(se, null);
+			}
+			finally
+			{
+				cm.cleanupOnError(StandardException.normalClose(), false);
+				contextService.resetCurrentContextManager(cm);
+			}
+		}
+	}
+}
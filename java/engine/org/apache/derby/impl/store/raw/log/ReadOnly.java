@@ -50,6 +50,8 @@ import org.apache.derby.io.StorageFile;
 import org.apache.derby.iapi.store.access.DatabaseInstant;
 import org.apache.derby.catalog.UUID;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.io.File;
 
@@ -488,4 +490,9 @@ public class ReadOnly implements LogFactory, ModuleSupportable {
     public void stopReplicationMasterRole() {
     }
 
+    /** A read only database writes no log, so there are no statistics. */
+    public Map<String, Long> getLogStatistics() {
+        return new LinkedHashMap<String, Long>();
+    }
+
 }
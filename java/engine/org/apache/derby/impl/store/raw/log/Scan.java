@@ -205,6 +205,9 @@ public class Scan implements StreamLogScan {
 			else if (scanDirection == FORWARD)
 				lr = getNextRecordForward(input, tranId, groupmask);
 
+			if (lr != null && lr.isCompressed())
+				lr = LogCompressor.uncompress(lr, input);
+
 			return lr;
 
 		}
@@ -101,6 +101,8 @@ public class RowLocking3Escalate extends ContainerLocking3
             t.getCompatibilitySpace(), t, 
             new EscalateContainerKey(container.getId()));
 
+		lf.countEscalation(container.getId());
+
         if (SanityManager.DEBUG)
         {
             SanityManager.ASSERT(
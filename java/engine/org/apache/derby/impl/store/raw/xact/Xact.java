@@ -128,6 +128,7 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 	private static final int COMMIT_SYNC            = 0x00010000;
 	private static final int COMMIT_NO_SYNC         = 0x00020000;
 	private static final int COMMIT_PREPARE         = 0x00040000;
+	private static final int COMMIT_ASYNC           = 0x00080000;
 
 
 	/*
@@ -219,6 +220,10 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 	private LogInstant		logLast;  // the last log record written by this
 									  // transaction 
 
+	private volatile long	logBytes; // the number of bytes of log written
+									  // by this transaction, read by the
+									  // lock manager without synchronization
+
 	private Stack<SavePoint>			savePoints;	// stack of SavePoint objects.
 
 	protected List<Serviceable> postCommitWorks; // a list of post commit work
@@ -478,6 +483,15 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 		logLast = instant;
 	}
 
+	/**
+		Add the length of a log record written by this transaction to the
+		number of bytes of log it has written.
+	*/
+	public void addLogBytes(int length)
+	{
+		logBytes += length;
+	}
+
 	/**
 		Get the log instant for the last log record written by this transaction. 
 	*/
@@ -703,6 +717,15 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 		return commit(COMMIT_SYNC);
 	}
 
+	/** 
+	  @exception StandardException  Standard Derby exception policy
+	  @see Transaction#commitAsync
+	*/
+	public LogInstant commitAsync() throws StandardException
+	{
+		return commit(COMMIT_SYNC | COMMIT_ASYNC);
+	}
+
 	/** 
 	  @exception StandardException  Standard Derby exception policy
 	*/
@@ -814,6 +837,12 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
                         // will need to flush the log
 						needSync = true; 
                     }
+					else if ((commitflag & COMMIT_ASYNC) != 0)
+					{
+						// the log flusher syncs the log for us shortly
+						logger.flushLater(flushTo);
+						needSync = false;
+					}
 					else
 					{
 						logger.flush(flushTo);
@@ -1195,6 +1224,7 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 		myId = null;
 		logStart = null;
 		logLast = null;
+		logBytes = 0;
 
 
 
@@ -1681,6 +1711,7 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 			myId = null;
 			logStart = null;
 			logLast = null;
+			logBytes = 0;
 			state = IDLE;
 		}
 	}
@@ -1835,6 +1866,7 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
 
 		logStart = null;
 		logLast = null;
+		logBytes = 0;
 
 		if (SanityManager.DEBUG)
 		{
@@ -2900,6 +2932,11 @@ public class Xact extends RawTransaction implements Limit, LockOwner {
             return parentTransactionId.equals( ((Xact) other).getId() );
         }
     }
+
+    public long getLogBytesWritten()
+    {
+        return logBytes;
+    }
 }
 
 class LockCount {
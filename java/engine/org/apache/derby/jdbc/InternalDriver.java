@@ -536,6 +536,7 @@ public class InternalDriver implements ModuleControl, Driver {
 		checkBoolean(finfo, Attribute.SHUTDOWN_ATTR);
         checkBoolean(finfo, Attribute.DEREGISTER_ATTR);
 		checkBoolean(finfo, Attribute.UPGRADE_ATTR);
+		checkBoolean(finfo, Attribute.ASYNC_COMMIT_ATTR);
 
 		return finfo;
 	}
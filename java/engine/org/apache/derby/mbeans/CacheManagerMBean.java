@@ -74,6 +74,26 @@ public interface CacheManagerMBean {
      */
     long getEvictionCount();
 
+    /**
+     * Get the number of dirty cached objects that have been cleaned by the
+     * background writer before they were evicted. The background writer is
+     * only used by the page cache, when enabled with the
+     * {@code derby.storage.backgroundWriterPercent} property.
+     *
+     * @return the number of objects cleaned by the background writer
+     */
+    long getBackgroundCleanCount();
+
+    /**
+     * Get the number of dirty cached objects that had to be cleaned by the
+     * thread that wanted to evict them, in order to make room for other
+     * objects.
+     *
+     * @return the number of objects cleaned before eviction by the threads
+     *         using the cache
+     */
+    long getForegroundCleanCount();
+
     /**
      * Get the maximum number of entries that could be held by this cache.
      *
@@ -0,0 +1,84 @@
+/*
+
+   Derby - Class org.apache.derby.mbeans.LockManagerMBean
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derby.mbeans;
+
+/**
+ * This is an MBean that provides information about the lock manager of a
+ * database. The counts are totals over all tables and indexes since the
+ * database was booted. The counts for each table and index can be seen in
+ * the SYSCS_DIAG.LOCK_STATISTICS table.
+ */
+public interface LockManagerMBean {
+    /**
+     * Get the number of objects that are currently locked, or that lock
+     * requests are waiting for.
+     *
+     * @return the number of objects in the lock table
+     */
+    long getLockedObjectCount();
+
+    /**
+     * Get the number of table and row locks that have been granted.
+     *
+     * @return the number of granted locks
+     */
+    long getAcquisitionCount();
+
+    /**
+     * Get the number of table and row lock requests that could not be
+     * granted at once, and had to wait.
+     *
+     * @return the number of lock waits
+     */
+    long getWaitCount();
+
+    /**
+     * Get the total time table and row lock requests have spent waiting.
+     *
+     * @return the total wait time, in milliseconds
+     */
+    long getWaitTime();
+
+    /**
+     * Get the number of lock requests that gave up because they waited
+     * longer than the lock timeout.
+     *
+     * @return the number of lock timeouts
+     */
+    long getTimeoutCount();
+
+    /**
+     * Get the number of lock requests that were picked as the victim of a
+     * deadlock.
+     *
+     * @return the number of deadlocks
+     */
+    long getDeadlockCount();
+
+    /**
+     * Get the number of times the row locks a transaction held on a table
+     * were escalated to a table lock.
+     *
+     * @return the number of lock escalations
+     */
+    long getEscalationCount();
+}
@@ -303,6 +303,7 @@ public interface SQLState {
 	String STORE_RTS_SORT										= "XSAJH.U";
 	String STORE_RTS_EXTERNAL									= "XSAJI.U";
 	String STORE_RTS_INTERNAL									= "XSAJJ.U";
+	String STORE_RTS_HASH										= "XSAJK.U";
 
 	/*
 	** Store - access.protocol.XA statement exceptions
@@ -1349,6 +1350,17 @@ public interface SQLState {
 	String RTS_END_DEPENDENT_NUMBER									   = "43Y55.U";	
 	String RTS_USER_SUPPLIED_OPTIMIZER_OVERRIDES_FOR_TABLE			   = "43Y56.U";	
 	String RTS_USER_SUPPLIED_OPTIMIZER_OVERRIDES_FOR_JOIN			   = "43Y57.U";
+	String RTS_MERGE_JOIN											   = "43Y58.U";
+	String RTS_MERGE_JOIN_RS										   = "43Y59.U";
+	String RTS_MERGE_LEFT_OJ										   = "43Y60.U";
+	String RTS_MERGE_LEFT_OJ_RS										   = "43Y61.U";
+	String RTS_MERGE_SCAN_RS_USING									   = "43Y62.U";
+	String RTS_MERGE_SCAN_RS										   = "43Y63.U";
+	String RTS_MERGE_KEY											   = "43Y64.U";
+	String RTS_MERGE_SCAN											   = "43Y65.U";
+	String RTS_ROWS_SORTED											   = "43Y66.U";
+	String RTS_PARTITIONS_SPILLED									   = "43Y67.U";
+	String RTS_PARALLEL_SCAN_THREADS								   = "43Y68.U";
 
 	// org.apache.derby.catalog.types
 	String TI_SQL_TYPE_NAME			= "44X00.U";
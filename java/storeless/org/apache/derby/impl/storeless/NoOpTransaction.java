@@ -125,6 +125,12 @@ class NoOpTransaction implements TransactionController {
         return this;
     }
 
+    public TransactionController startNestedReadOnlyUserTransaction(
+    ContextManager cm)
+            throws StandardException {
+        return this;
+    }
+
     public Properties getUserCreateConglomPropList() {
         // Auto-generated method stub
         return null;
@@ -211,6 +217,11 @@ class NoOpTransaction implements TransactionController {
 
     }
 
+    public void shrinkConglomerate(long conglomId) throws StandardException {
+        // Auto-generated method stub
+
+    }
+
     public boolean fetchMaxOnBtree(long conglomId, int open_mode,
             int lock_level, int isolation_level,
             FormatableBitSet scanColumnList, DataValueDescriptor[] fetchRow)
@@ -323,6 +334,11 @@ class NoOpTransaction implements TransactionController {
 
     }
 
+    public void commitAsync() throws StandardException {
+        // Auto-generated method stub
+
+    }
+
     public DatabaseInstant commitNoSync(int commitflag)
             throws StandardException {
         // Auto-generated method stub
@@ -0,0 +1,212 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.lang.BatchExecutionTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.lang;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for aggregates that are computed from batches of INTEGER, BIGINT,
+ * DOUBLE and DATE columns. Aggregates over expressions of the columns are
+ * computed one row at a time, so each query is checked against the same
+ * query with the columns replaced by expressions.
+ */
+public class BatchExecutionTest extends BaseJDBCTestCase
+{
+    public BatchExecutionTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        Test test = TestConfiguration.embeddedSuite(BatchExecutionTest.class);
+        return new CleanDatabaseTestSetup(test)
+        {
+            protected void decorateSQL(Statement s) throws SQLException
+            {
+                s.executeUpdate("create table t(g int, a int, b bigint, " +
+                                "d double, dt date, s varchar(10))");
+
+                // Enough rows for several batches, and groups that span
+                // batches
+                PreparedStatement ps = s.getConnection().prepareStatement(
+                    "insert into t values (?, ?, ?, ?, ?, ?)");
+                for (int n = 0; n < 5000; n++)
+                {
+                    if (n % 97 == 0)
+                    {
+                        ps.setNull(1, java.sql.Types.INTEGER);
+                    }
+                    else
+                    {
+                        ps.setInt(1, n % 3);
+                    }
+                    if (n % 89 == 0)
+                    {
+                        ps.setNull(2, java.sql.Types.INTEGER);
+                        ps.setNull(3, java.sql.Types.BIGINT);
+                        ps.setNull(4, java.sql.Types.DOUBLE);
+                        ps.setNull(5, java.sql.Types.DATE);
+                    }
+                    else
+                    {
+                        ps.setInt(2, n % 1000 - 300);
+                        ps.setLong(3, n * 1000000007L);
+                        ps.setDouble(4, n / 7.0);
+                        ps.setDate(5, java.sql.Date.valueOf(
+                                       (1990 + n % 20) + "-0" +
+                                       (1 + n % 9) + "-1" + (n % 10)));
+                    }
+                    ps.setString(6, "s" + n);
+                    ps.executeUpdate();
+                }
+                ps.close();
+
+                s.executeUpdate("create index tx on t(g, a, b, d, dt)");
+                s.executeUpdate("create index tdx on t(dt, d)");
+
+                // A group that starts late in the first batch, and is the
+                // only group of the batches after it
+                s.executeUpdate("create table runs(g int, v int)");
+                ps = s.getConnection().prepareStatement(
+                    "insert into runs values (?, ?)");
+                for (int n = 0; n < 4100; n++)
+                {
+                    ps.setInt(1, n < 1000 ? 0 : 1);
+                    ps.setInt(2, n % 17);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                ps.close();
+
+                s.executeUpdate("create table big(a int, b bigint, d double)");
+                s.executeUpdate("insert into big values " +
+                                "(2147483647, 9223372036854775807, 1e308), " +
+                                "(1, 1, 1e308), " +
+                                "(-5, -5, -1e308)");
+            }
+        };
+    }
+
+    /**
+     * Check that a query returns the same rows as the same query with
+     * the columns of its aggregates replaced by expressions.
+     */
+    private void checkAggregates(String sql) throws SQLException, IOException
+    {
+        String rowSql = sql.replaceAll("(sum|avg|min|max|count)\\(([a-z]+)\\)",
+                                       "$1($2 + 0)")
+                           .replaceAll("\\(dt \\+ 0\\)", "(date(dt))");
+        assertFalse(sql, sql.equals(rowSql));
+
+        Statement s = createStatement();
+        Statement s2 = createStatement();
+        JDBC.assertSameContents(s.executeQuery(sql), s2.executeQuery(rowSql));
+        s2.close();
+        s.close();
+    }
+
+    public void testScalarAggregates() throws SQLException, IOException
+    {
+        checkAggregates("select count(a), sum(a), avg(a), min(a), max(a) " +
+                        "from t");
+        checkAggregates("select count(b), sum(b), avg(b), min(b), max(b) " +
+                        "from t");
+        checkAggregates("select count(d), sum(d), avg(d), min(d), max(d) " +
+                        "from t");
+        checkAggregates("select count(*), count(dt), min(dt), max(dt) from t");
+
+        // Qualifiers are applied by the scan
+        checkAggregates("select count(*), sum(a), max(dt) from t " +
+                        "where a > 100 and b < 3000000000000");
+
+        // No rows
+        checkAggregates("select count(*), sum(a), avg(d), min(dt) from t " +
+                        "where a > 1000");
+    }
+
+    public void testGroupedAggregates() throws SQLException, IOException
+    {
+        // The index delivers the rows in the order of the groups
+        checkAggregates("select g, count(*), sum(a), avg(b), min(d), " +
+                        "max(dt) from t group by g order by g");
+        checkAggregates("select g, a, count(b), sum(b), max(d) from t " +
+                        "group by g, a order by g, a");
+        checkAggregates("select dt, count(*), sum(d), min(d) from t " +
+                        "group by dt order by dt");
+        checkAggregates("select g, sum(a) from t group by g " +
+                        "having count(*) > 1000 order by g");
+
+        // The rows are not in the order of the groups
+        checkAggregates("select g, count(*), sum(v), avg(v), min(v), " +
+                        "max(v) from runs group by g order by g");
+    }
+
+    /**
+     * The sum overflows the type of the column at the same row as when the
+     * rows are accumulated one at a time, also if a later row brings it
+     * back into range. AVG promotes the type of the sum instead.
+     */
+    public void testOverflow() throws SQLException, IOException
+    {
+        Statement s = createStatement();
+        assertStatementError("22003", s, "select sum(a) from big");
+        assertStatementError("22003", s, "select sum(a + 0) from big");
+        assertStatementError("22003", s, "select sum(b) from big");
+        assertStatementError("22003", s, "select sum(d) from big");
+        s.close();
+
+        checkAggregates("select avg(a) from big");
+        checkAggregates("select avg(b) from big");
+        checkAggregates("select avg(d) from big");
+    }
+
+    /**
+     * A warning tells that NULLs were eliminated from the aggregates.
+     */
+    public void testNullsEliminated() throws SQLException
+    {
+        Statement s = createStatement();
+
+        ResultSet rs = s.executeQuery("select sum(a) from t");
+        assertTrue(rs.next());
+        assertNotNull(rs.getWarnings());
+        assertSQLState("01003", rs.getWarnings());
+        rs.close();
+
+        rs = s.executeQuery("select count(*) from t");
+        assertTrue(rs.next());
+        assertNull(rs.getWarnings());
+        rs.close();
+
+        s.close();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.lang.HashGroupingTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.lang;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.RuntimeStatisticsParser;
+import org.apache.derbyTesting.junit.SQLUtilities;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for GROUP BY and DISTINCT that group the rows by hashing them,
+ * which is chosen when the index statistics tell that there are few groups
+ * for the rows. Grouping by an expression of the columns sorts all of the
+ * rows, so each query is checked against the same query grouped by such
+ * an expression, which must return the same rows in the same order.
+ */
+public class HashGroupingTest extends BaseJDBCTestCase
+{
+    private static final String HASHED = "Hash table size=";
+    private static final String SPILLED =
+        "Number of hash table partitions spilled to disk=";
+
+    public HashGroupingTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        // The statistics of table grown must stay out of date
+        Properties props = new Properties();
+        props.setProperty("derby.storage.indexStats.auto", "false");
+
+        Test test = TestConfiguration.embeddedSuite(HashGroupingTest.class);
+        test = new CleanDatabaseTestSetup(test)
+        {
+            protected void decorateSQL(Statement s) throws SQLException
+            {
+                s.executeUpdate("create table t(g int, a int, b bigint, " +
+                                "d double, s varchar(20))");
+
+                PreparedStatement ps = s.getConnection().prepareStatement(
+                    "insert into t values (?, ?, ?, ?, ?)");
+                for (int n = 0; n < 6000; n++)
+                {
+                    if (n % 101 == 0)
+                    {
+                        ps.setNull(1, java.sql.Types.INTEGER);
+                    }
+                    else
+                    {
+                        ps.setInt(1, n % 20);
+                    }
+                    if (n % 89 == 0)
+                    {
+                        ps.setNull(2, java.sql.Types.INTEGER);
+                    }
+                    else
+                    {
+                        ps.setInt(2, n % 1000);
+                    }
+                    ps.setLong(3, n);
+                    ps.setDouble(4, n / 4.0);
+                    ps.setString(5, "s" + (n % 300));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                ps.close();
+
+                s.executeUpdate("create index tg on t(g)");
+                s.executeUpdate("create index tgs on t(g, s)");
+                s.execute("call syscs_util.syscs_update_statistics" +
+                          "('APP', 'T', null)");
+
+                // Three groups when the statistics were taken, and
+                // thousands of them now, which do not fit in memory
+                s.executeUpdate("create table grown(g int, a int, " +
+                                "s varchar(20))");
+                s.executeUpdate("insert into grown select mod(b, 3), a, s " +
+                                "from t");
+                s.executeUpdate("create index grownx on grown(g)");
+                s.execute("call syscs_util.syscs_update_statistics" +
+                          "('APP', 'GROWN', null)");
+                s.executeUpdate("insert into grown select b + 3, a, s " +
+                                "from t");
+                s.executeUpdate("insert into grown select b + 3, a, s " +
+                                "from t");
+            }
+        };
+        return new SystemPropertyTestSetup(test, props, true);
+    }
+
+    /**
+     * Check that a query groups its rows by hashing them, and returns the
+     * same rows in the same order as a query that sorts them.
+     *
+     * @return the run time statistics of the query
+     */
+    private RuntimeStatisticsParser checkHashed(String sql, String sortedSql)
+        throws SQLException, IOException
+    {
+        Statement s = createStatement();
+        s.execute("call syscs_util.syscs_set_runtimestatistics(1)");
+        Statement s2 = createStatement();
+
+        JDBC.assertSameContents(s2.executeQuery(sortedSql),
+                                s.executeQuery(sql));
+        RuntimeStatisticsParser rtsp =
+            SQLUtilities.getRuntimeStatisticsParser(s);
+        assertTrue(rtsp.toString(), rtsp.findString(HASHED, 1));
+
+        s2.executeQuery(sortedSql).close();
+        RuntimeStatisticsParser sorted =
+            SQLUtilities.getRuntimeStatisticsParser(s2);
+        assertFalse(sorted.toString(), sorted.findString(HASHED, 1));
+
+        s.execute("call syscs_util.syscs_set_runtimestatistics(0)");
+        s2.close();
+        s.close();
+        return rtsp;
+    }
+
+    public void testGroupBy() throws SQLException, IOException
+    {
+        checkHashed("select g, count(*), sum(a), max(s) from t group by g",
+                    "select g, count(*), sum(a), max(s) from t " +
+                    "group by g + 0, g");
+        checkHashed("select g, avg(d), min(s) from t where b > 100 " +
+                    "group by g having count(a) > 250",
+                    "select g, avg(d), min(s) from t where b > 100 " +
+                    "group by g + 0, g having count(a) > 250");
+        checkHashed("select g, s, count(*), max(d) from t group by g, s",
+                    "select g, s, count(*), max(d) from t " +
+                    "group by g + 0, g, s");
+    }
+
+    public void testDistinct() throws SQLException, IOException
+    {
+        checkHashed("select distinct t.g, t.s from t, t u " +
+                    "where t.b = u.b",
+                    "select distinct t.g + 0, t.s from t, t u " +
+                    "where t.b = u.b");
+    }
+
+    /**
+     * The statistics tell of fewer groups than there are, so the hash
+     * table writes groups to disk.
+     */
+    public void testSpill() throws SQLException, IOException
+    {
+        RuntimeStatisticsParser rtsp = checkHashed(
+            "select g, count(*), sum(a), max(s) from grown group by g",
+            "select g, count(*), sum(a), max(s) from grown " +
+            "group by g + 0, g");
+        assertFalse(rtsp.toString(), rtsp.findString(SPILLED + "0", 1));
+        assertTrue(rtsp.toString(), rtsp.findString(SPILLED, 1));
+    }
+
+    /**
+     * A warning tells that NULLs were eliminated from the aggregates.
+     */
+    public void testNullsEliminated() throws SQLException
+    {
+        Statement s = createStatement();
+
+        ResultSet rs = s.executeQuery(
+            "select g, sum(a), max(s) from t group by g");
+        assertTrue(rs.next());
+        assertNotNull(rs.getWarnings());
+        assertSQLState("01003", rs.getWarnings());
+        rs.close();
+
+        rs = s.executeQuery("select g, count(*), max(s) from t group by g");
+        assertTrue(rs.next());
+        assertNull(rs.getWarnings());
+        rs.close();
+
+        s.close();
+    }
+}
@@ -0,0 +1,262 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.lang.HybridHashJoinTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.lang;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.RuntimeStatisticsParser;
+import org.apache.derbyTesting.junit.SQLUtilities;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for hash joins whose hash table does not fit in memory, so that
+ * some of its partitions are written to disk and joined afterwards.
+ */
+public class HybridHashJoinTest extends BaseJDBCTestCase
+{
+    private static final String SPILLED =
+        "Number of hash table partitions spilled to disk";
+
+    public HybridHashJoinTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        // Leave room for a few dozen rows in each hash table
+        Properties props = new Properties();
+        props.setProperty("derby.language.maxMemoryPerTable", "1");
+
+        Test test = TestConfiguration.embeddedSuite(HybridHashJoinTest.class);
+        test = new CleanDatabaseTestSetup(test)
+        {
+            protected void decorateSQL(Statement s) throws SQLException
+            {
+                s.executeUpdate("create table o(a int, b varchar(10), c int)");
+                s.executeUpdate("create table i(x int, y varchar(10), z int)");
+
+                PreparedStatement ps = s.getConnection().prepareStatement(
+                    "insert into o values (?, ?, ?)");
+                for (int n = 0; n < 600; n++)
+                {
+                    if (n % 50 == 0)
+                    {
+                        ps.setNull(1, java.sql.Types.INTEGER);
+                    }
+                    else
+                    {
+                        ps.setInt(1, n % 211);
+                    }
+                    ps.setString(2, "o" + n);
+                    ps.setInt(3, n % 5);
+                    ps.executeUpdate();
+                }
+                ps.close();
+
+                ps = s.getConnection().prepareStatement(
+                    "insert into i values (?, ?, ?)");
+                for (int n = 0; n < 500; n++)
+                {
+                    if (n % 40 == 0)
+                    {
+                        ps.setNull(1, java.sql.Types.INTEGER);
+                    }
+                    else
+                    {
+                        ps.setInt(1, (n * 7) % 307);
+                    }
+                    ps.setString(2, "i" + n);
+                    ps.setInt(3, n % 3);
+                    ps.executeUpdate();
+                }
+                ps.close();
+            }
+        };
+        return new SystemPropertyTestSetup(test, props, true);
+    }
+
+    /**
+     * Run a query with a hash join and with a nested loop join, and check
+     * that they return the same rows and that the hash join spilled.
+     *
+     * @param sql the query, with STRATEGY in place of the join strategy
+     *      of the inner table
+     */
+    private void checkJoin(String sql) throws SQLException, IOException
+    {
+        Statement s = createStatement();
+        s.execute("call syscs_util.syscs_set_runtimestatistics(1)");
+        JDBC.assertDrainResults(
+            s.executeQuery(sql.replaceAll("STRATEGY", "HASH")));
+        RuntimeStatisticsParser rtsp =
+            SQLUtilities.getRuntimeStatisticsParser(s);
+        assertTrue(rtsp.toString(), rtsp.findString(SPILLED, 1));
+        s.execute("call syscs_util.syscs_set_runtimestatistics(0)");
+
+        Statement s2 = createStatement();
+        JDBC.assertSameContents(
+            s.executeQuery(sql.replaceAll("STRATEGY", "HASH")),
+            s2.executeQuery(sql.replaceAll("STRATEGY", "NESTEDLOOP")));
+        s2.close();
+        s.close();
+    }
+
+    /**
+     * Join rows whose inner partition was on disk after the other rows.
+     */
+    public void testInnerJoin() throws SQLException, IOException
+    {
+        checkJoin("select o.a, o.b, i.y from --DERBY-PROPERTIES joinOrder=FIXED\n" +
+                  "o, i --DERBY-PROPERTIES joinStrategy=STRATEGY\n" +
+                  "where o.a = i.x order by o.b, i.y");
+
+        // A restriction that refers to columns of both tables
+        checkJoin("select o.b, i.y from --DERBY-PROPERTIES joinOrder=FIXED\n" +
+                  "o, i --DERBY-PROPERTIES joinStrategy=STRATEGY\n" +
+                  "where o.a = i.x and o.c + i.z > 2 order by o.b, i.y");
+
+        // A join on two columns
+        checkJoin("select o.b, i.y from --DERBY-PROPERTIES joinOrder=FIXED\n" +
+                  "o, i --DERBY-PROPERTIES joinStrategy=STRATEGY\n" +
+                  "where o.a = i.x and o.c = i.z order by o.b, i.y");
+    }
+
+    /**
+     * Outer rows without a match are joined to a row of NULLs, also when
+     * they were held back for a partition on disk.
+     */
+    public void testLeftOuterJoin() throws SQLException, IOException
+    {
+        checkJoin("select o.b, i.y from o left outer join i " +
+                  "--DERBY-PROPERTIES joinStrategy=STRATEGY\n" +
+                  "on o.a = i.x order by o.b, i.y");
+
+        checkJoin("select o.b, i.y from o left outer join i " +
+                  "--DERBY-PROPERTIES joinStrategy=STRATEGY\n" +
+                  "on o.a = i.x and i.z <> o.c order by o.b, i.y");
+    }
+
+    /**
+     * The outer rows of a hash join come out of another join, and the
+     * join restriction refers to columns of both of its tables.
+     */
+    public void testOuterJoinOfJoin() throws SQLException, IOException
+    {
+        checkJoin("select o.b, o2.b, i.y from --DERBY-PROPERTIES joinOrder=FIXED\n" +
+                  "o, o o2 --DERBY-PROPERTIES joinStrategy=NESTEDLOOP\n" +
+                  ", i --DERBY-PROPERTIES joinStrategy=STRATEGY\n" +
+                  "where o.a = o2.a and o2.a = i.x and o.c = i.z " +
+                  "order by o.b, o2.b, i.y");
+    }
+
+    /**
+     * A hash join that is opened once for each row of a correlated
+     * subquery builds its hash table over again every time.
+     */
+    public void testReopen() throws SQLException, IOException
+    {
+        Statement s = createStatement();
+        String sql =
+            "select o3.b, (select count(*) from " +
+            "--DERBY-PROPERTIES joinOrder=FIXED\n" +
+            "o, i --DERBY-PROPERTIES joinStrategy=STRATEGY\n" +
+            "where o.a = i.x and o.c = o3.c) from o o3 " +
+            "where o3.a < 5 order by o3.b";
+        JDBC.assertSameContents(
+            s.executeQuery(sql.replaceAll("STRATEGY", "HASH")),
+            createStatement().executeQuery(
+                sql.replaceAll("STRATEGY", "NESTEDLOOP")));
+        s.close();
+    }
+
+    /**
+     * A hash join that spills returns the rows of the outer table that
+     * probe partitions on disk last, so a plan that relies on the order of
+     * the outer table to avoid sorting the rows for an ORDER BY must either
+     * sort them or keep the hash table from being partitioned.
+     */
+    public void testSortAvoidance() throws SQLException, IOException
+    {
+        setAutoCommit(false);
+        Statement s = createStatement();
+        s.executeUpdate("create index oa on o(a)");
+        s.execute("call syscs_util.syscs_set_runtimestatistics(1)");
+
+        String sql =
+            "select o.a, i.y from --DERBY-PROPERTIES joinOrder=FIXED\n" +
+            "o --DERBY-PROPERTIES index=OA\n" +
+            ", i --DERBY-PROPERTIES joinStrategy=STRATEGY\n" +
+            "where o.a = i.x and o.a >= 0 order by o.a";
+        ResultSet rs = s.executeQuery(sql.replaceAll("STRATEGY", "HASH"));
+        int rows = 0;
+        int last = Integer.MIN_VALUE;
+        while (rs.next())
+        {
+            assertTrue(rs.getInt(1) + " after " + last, rs.getInt(1) >= last);
+            last = rs.getInt(1);
+            rows++;
+        }
+        rs.close();
+        assertTrue(rows > 0);
+
+        RuntimeStatisticsParser rtsp =
+            SQLUtilities.getRuntimeStatisticsParser(s);
+        assertTrue(rtsp.toString(), rtsp.usedHashJoin());
+        assertTrue(rtsp.toString(), rtsp.whatSortingRequired());
+        s.execute("call syscs_util.syscs_set_runtimestatistics(0)");
+
+        Statement s2 = createStatement();
+        JDBC.assertSameContents(
+            s.executeQuery(sql.replaceAll("STRATEGY", "HASH")),
+            s2.executeQuery(sql.replaceAll("STRATEGY", "NESTEDLOOP")));
+        s2.close();
+        s.close();
+    }
+
+    /**
+     * The optimizer may pick a hash join even if the hash table does not
+     * fit in memory.
+     */
+    public void testChosenByOptimizer() throws SQLException
+    {
+        Statement s = createStatement();
+        s.execute("call syscs_util.syscs_set_runtimestatistics(1)");
+        JDBC.assertDrainResults(s.executeQuery(
+            "select o.b, i.y from o, i where o.a = i.x"));
+        RuntimeStatisticsParser rtsp =
+            SQLUtilities.getRuntimeStatisticsParser(s);
+        assertTrue(rtsp.toString(), rtsp.usedHashJoin());
+        assertTrue(rtsp.toString(), rtsp.findString(SPILLED, 1));
+        s.execute("call syscs_util.syscs_set_runtimestatistics(0)");
+        s.close();
+    }
+}
@@ -0,0 +1,233 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.lang.MergeJoinTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.lang;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.RuntimeStatisticsParser;
+import org.apache.derbyTesting.junit.SQLUtilities;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for the sort-merge join strategy, selected with
+ * {@code joinStrategy=MERGE} or picked by the optimizer.
+ */
+public class MergeJoinTest extends BaseJDBCTestCase
+{
+    private static final String[][] EQUIJOIN_ROWS = {
+        { "1", "o1", "i1" },
+        { "2", "o2", "i2" },
+        { "2", "o2", "i2b" },
+        { "2", "o2b", "i2" },
+        { "2", "o2b", "i2b" },
+        { "5", "o5", "i5" },
+    };
+
+    public MergeJoinTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        // Keep hash tables from fitting in memory, so that the optimizer
+        // has a reason to pick a merge join over a hash join.
+        Properties props = new Properties();
+        props.setProperty("derby.language.maxMemoryPerTable", "1");
+
+        Test test = TestConfiguration.embeddedSuite(MergeJoinTest.class);
+        test = new CleanDatabaseTestSetup(test)
+        {
+            protected void decorateSQL(Statement s) throws SQLException
+            {
+                s.executeUpdate("create table o(a int, b varchar(10))");
+                s.executeUpdate("create index oa on o(a)");
+                s.executeUpdate("create table i(x int, y varchar(10))");
+                s.executeUpdate("create index ix on i(x)");
+                s.executeUpdate(
+                    "insert into o values (1, 'o1'), (2, 'o2'), (2, 'o2b'), " +
+                    "(3, 'o3'), (null, 'on'), (5, 'o5'), (7, 'o7')");
+                s.executeUpdate(
+                    "insert into i values (2, 'i2'), (1, 'i1'), (2, 'i2b'), " +
+                    "(4, 'i4'), (null, 'in'), (5, 'i5'), (9, 'i9')");
+            }
+        };
+        return new SystemPropertyTestSetup(test, props, true);
+    }
+
+    /**
+     * Run a query with runtime statistics on and check its rows and
+     * whether it used a merge join.
+     */
+    private void checkJoin(String sql, String[][] expected, boolean merged)
+        throws SQLException
+    {
+        Statement s = createStatement();
+        s.execute("call syscs_util.syscs_set_runtimestatistics(1)");
+        JDBC.assertUnorderedResultSet(s.executeQuery(sql), expected);
+        RuntimeStatisticsParser rtsp =
+            SQLUtilities.getRuntimeStatisticsParser(s);
+        assertEquals(rtsp.toString(), merged, rtsp.usedMergeJoin());
+        s.execute("call syscs_util.syscs_set_runtimestatistics(0)");
+        s.close();
+    }
+
+    /**
+     * Merge the rows of a heap with the rows of an index. The heap rows are
+     * sorted on the join column when the inner scan is opened.
+     */
+    public void testSortedInner() throws SQLException
+    {
+        checkJoin("select o.a, o.b, i.y from --DERBY-PROPERTIES joinOrder=FIXED\n" +
+                  "o --DERBY-PROPERTIES index=oa\n" +
+                  ", i --DERBY-PROPERTIES joinStrategy=MERGE, index=null\n" +
+                  "where o.a = i.x",
+                  EQUIJOIN_ROWS, true);
+
+        Statement s = createStatement();
+        s.execute("call syscs_util.syscs_set_runtimestatistics(1)");
+        JDBC.assertDrainResults(s.executeQuery(
+            "select o.a, i.y from --DERBY-PROPERTIES joinOrder=FIXED\n" +
+            "o --DERBY-PROPERTIES index=oa\n" +
+            ", i --DERBY-PROPERTIES joinStrategy=MERGE, index=null\n" +
+            "where o.a = i.x"));
+        RuntimeStatisticsParser rtsp =
+            SQLUtilities.getRuntimeStatisticsParser(s);
+        // The row with a NULL join value is not sorted
+        assertTrue(rtsp.toString(), rtsp.findString("Rows sorted = 6", 1));
+        s.execute("call syscs_util.syscs_set_runtimestatistics(0)");
+        s.close();
+    }
+
+    /**
+     * Merge the rows of two indexes on the join columns, without a sort.
+     */
+    public void testOrderedInner() throws SQLException
+    {
+        checkJoin("select o.a, o.b, i.y from --DERBY-PROPERTIES joinOrder=FIXED\n" +
+                  "o --DERBY-PROPERTIES index=oa\n" +
+                  ", i --DERBY-PROPERTIES joinStrategy=MERGE, index=ix\n" +
+                  "where o.a = i.x",
+                  EQUIJOIN_ROWS, true);
+
+        // Restrictions on the inner table are applied by the merge scan
+        checkJoin("select o.a, o.b, i.y from --DERBY-PROPERTIES joinOrder=FIXED\n" +
+                  "o --DERBY-PROPERTIES index=oa\n" +
+                  ", i --DERBY-PROPERTIES joinStrategy=MERGE, index=ix\n" +
+                  "where o.a = i.x and i.y <> 'i2'",
+                  new String[][] {
+                      { "1", "o1", "i1" },
+                      { "2", "o2", "i2b" },
+                      { "2", "o2b", "i2b" },
+                      { "5", "o5", "i5" },
+                  }, true);
+    }
+
+    /**
+     * Outer rows without a match are joined to a row of NULLs.
+     */
+    public void testLeftOuterJoin() throws SQLException
+    {
+        String[][] expected = {
+            { "1", "o1", "i1" },
+            { "2", "o2", "i2" },
+            { "2", "o2", "i2b" },
+            { "2", "o2b", "i2" },
+            { "2", "o2b", "i2b" },
+            { "3", "o3", null },
+            { "5", "o5", "i5" },
+            { "7", "o7", null },
+            { null, "on", null },
+        };
+
+        Statement s = createStatement();
+        JDBC.assertUnorderedResultSet(s.executeQuery(
+            "select o.a, o.b, i.y from o --DERBY-PROPERTIES index=oa\n" +
+            "left outer join i --DERBY-PROPERTIES joinStrategy=MERGE, index=null\n" +
+            "on o.a = i.x"), expected);
+        JDBC.assertUnorderedResultSet(s.executeQuery(
+            "select o.a, o.b, i.y from o --DERBY-PROPERTIES index=oa\n" +
+            "left outer join i --DERBY-PROPERTIES joinStrategy=MERGE, index=ix\n" +
+            "on o.a = i.x"), expected);
+        s.close();
+    }
+
+    /**
+     * A merge join needs outer rows that come out of an index on the join
+     * column.
+     */
+    public void testNeedsOrderedOuter() throws SQLException
+    {
+        assertCompileError("42Y69",
+            "select o.a, i.y from --DERBY-PROPERTIES joinOrder=FIXED\n" +
+            "o --DERBY-PROPERTIES index=null\n" +
+            ", i --DERBY-PROPERTIES joinStrategy=MERGE\n" +
+            "where o.a = i.x");
+        assertCompileError("42Y69",
+            "select o.a, i.y from --DERBY-PROPERTIES joinOrder=FIXED\n" +
+            "o --DERBY-PROPERTIES index=oa\n" +
+            ", i --DERBY-PROPERTIES joinStrategy=MERGE\n" +
+            "where o.b = i.y");
+    }
+
+    /**
+     * The optimizer merges two large inputs that are ordered on the join
+     * columns when their hash table would not fit in memory.
+     */
+    public void testChosenByOptimizer() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table bo(a int, b int)");
+        s.executeUpdate("create table bi(x int, y int)");
+
+        setAutoCommit(false);
+        PreparedStatement ps = prepareStatement("insert into bo values (?, ?)");
+        for (int i = 0; i < 2048; i++)
+        {
+            ps.setInt(1, i);
+            ps.setInt(2, i % 7);
+            ps.executeUpdate();
+        }
+        ps.close();
+        s.executeUpdate("insert into bi select a * 2, b from bo");
+        commit();
+        setAutoCommit(true);
+
+        s.executeUpdate("create index boa on bo(a, b)");
+        s.executeUpdate("create index bix on bi(x, y)");
+
+        checkJoin("select count(*) from bo, bi " +
+                  "where bo.a = bi.x and bo.b + bi.y >= 0",
+                  new String[][] { { "1024" } }, true);
+
+        dropTable("BO");
+        dropTable("BI");
+        s.close();
+    }
+}
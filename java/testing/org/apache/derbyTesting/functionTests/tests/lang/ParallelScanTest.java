@@ -0,0 +1,237 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.lang.ParallelScanTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.lang;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.CleanDatabaseTestSetup;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.RuntimeStatisticsParser;
+import org.apache.derbyTesting.junit.SQLUtilities;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for aggregates over heap scans that are read by several worker
+ * threads. Aggregates over expressions of the columns are computed one row
+ * at a time on the user thread, so each query is checked against the same
+ * query with the columns replaced by expressions.
+ */
+public class ParallelScanTest extends BaseJDBCTestCase
+{
+    private static final String PARALLEL =
+        "Number of parallel scan threads = 4";
+
+    public ParallelScanTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        Properties props = new Properties();
+        props.setProperty("derby.language.parallelScanThreads", "4");
+        props.setProperty("derby.language.parallelScanMinRows", "1");
+
+        Test test = TestConfiguration.embeddedSuite(ParallelScanTest.class);
+        test = new CleanDatabaseTestSetup(test)
+        {
+            protected void decorateSQL(Statement s) throws SQLException
+            {
+                s.executeUpdate("create table t(g int, a int, b bigint, " +
+                                "c int, d double, s varchar(100))");
+
+                // Enough pages for every worker to read several ranges
+                // of them, and more groups of column a than a worker
+                // keeps at a time
+                PreparedStatement ps = s.getConnection().prepareStatement(
+                    "insert into t values (?, ?, ?, ?, ?, ?)");
+                for (int n = 0; n < 20000; n++)
+                {
+                    ps.setInt(1, n % 7);
+                    if (n % 89 == 0)
+                    {
+                        ps.setNull(2, java.sql.Types.INTEGER);
+                        ps.setNull(3, java.sql.Types.BIGINT);
+                        ps.setNull(5, java.sql.Types.DOUBLE);
+                    }
+                    else
+                    {
+                        ps.setInt(2, n % 5000);
+                        ps.setLong(3, n * 1000000007L);
+                        ps.setDouble(5, (n % 13) / 4.0);
+                    }
+                    ps.setInt(4, n * 1000);
+                    ps.setString(6, "row number " + n + " of table t");
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                ps.close();
+            }
+        };
+        return new SystemPropertyTestSetup(test, props, true);
+    }
+
+    /**
+     * Run a query and count the warnings raised while its rows were read.
+     */
+    private static int countWarnings(Statement s, String sql)
+        throws SQLException
+    {
+        ResultSet rs = s.executeQuery(sql);
+        int count = 0;
+        while (rs.next())
+        {
+            count = 0;
+            for (SQLWarning w = rs.getWarnings(); w != null;
+                 w = w.getNextWarning())
+            {
+                count++;
+            }
+        }
+        rs.close();
+        return count;
+    }
+
+    /**
+     * Check that a query returns the same rows and raises as many
+     * warnings as the same query with the columns of its aggregates
+     * replaced by expressions, and that its table was read by worker
+     * threads.
+     */
+    private void checkAggregates(String sql) throws SQLException, IOException
+    {
+        String rowSql = sql.replaceAll("(sum|avg|min|max|count)\\(([a-z]+)\\)",
+                                       "$1($2 + 0)");
+        assertFalse(sql, sql.equals(rowSql));
+
+        Statement s = createStatement();
+        s.execute("call syscs_util.syscs_set_runtimestatistics(1)");
+        Statement s2 = createStatement();
+        JDBC.assertSameContents(s.executeQuery(sql), s2.executeQuery(rowSql));
+
+        RuntimeStatisticsParser rtsp =
+            SQLUtilities.getRuntimeStatisticsParser(s);
+        assertTrue(rtsp.toString(), rtsp.findString(PARALLEL, 1));
+
+        assertEquals(sql, countWarnings(s2, rowSql), countWarnings(s, sql));
+
+        s.execute("call syscs_util.syscs_set_runtimestatistics(0)");
+        s2.close();
+        s.close();
+    }
+
+    public void testScalarAggregates() throws SQLException, IOException
+    {
+        checkAggregates("select count(*), count(a), sum(a), avg(a), " +
+                        "min(a), max(a) from t");
+        checkAggregates("select count(b), sum(b), min(b), max(b) from t");
+        checkAggregates("select count(d), min(d), max(d) from t");
+
+        // Qualifiers are applied by every worker
+        checkAggregates("select count(*), sum(a), max(b) from t " +
+                        "where a > 100 and g <> 3");
+
+        // No rows
+        checkAggregates("select count(*), sum(a), min(d) from t " +
+                        "where a > 10000");
+    }
+
+    public void testGroupedAggregates() throws SQLException, IOException
+    {
+        checkAggregates("select g, count(*), sum(a), avg(b), min(d), " +
+                        "max(a) from t group by g");
+        checkAggregates("select a, count(*), sum(b), max(d) from t " +
+                        "group by a");
+        checkAggregates("select d, g, count(a), min(b) from t " +
+                        "group by d, g");
+        checkAggregates("select g, sum(a) from t where d > 1 " +
+                        "group by g having count(*) > 1000");
+    }
+
+    /**
+     * The sum overflows the type of the column on a worker thread, or when
+     * the partial sums are merged.
+     */
+    public void testOverflow() throws SQLException
+    {
+        Statement s = createStatement();
+        assertStatementError("22003", s, "select sum(c) from t");
+        assertStatementError("22003", s, "select g, sum(c) from t group by g");
+        s.close();
+    }
+
+    /**
+     * A warning tells that NULLs were eliminated from the aggregates, also
+     * if only some of the workers eliminated them.
+     */
+    public void testNullsEliminated() throws SQLException
+    {
+        Statement s = createStatement();
+
+        ResultSet rs = s.executeQuery("select sum(a) from t");
+        assertTrue(rs.next());
+        assertNotNull(rs.getWarnings());
+        assertSQLState("01003", rs.getWarnings());
+        rs.close();
+
+        rs = s.executeQuery("select count(*) from t");
+        assertTrue(rs.next());
+        assertNull(rs.getWarnings());
+        rs.close();
+
+        // One warning per group that NULLs were eliminated from
+        s.executeUpdate("create table nulls(k int, v int)");
+        s.executeUpdate("insert into nulls values " +
+                        "(1, 1), (1, null), (2, null), (2, null), (3, 3)");
+        assertEquals(2, countWarnings(s, "select k, sum(v) from nulls " +
+                                         "group by k"));
+        s.executeUpdate("drop table nulls");
+
+        s.close();
+    }
+
+    /**
+     * Under SERIALIZABLE the workers read the table once the user
+     * transaction has locked it as a whole, which the optimizer asks for
+     * when it scans all of the table.
+     */
+    public void testSerializable() throws SQLException, IOException
+    {
+        Connection c = getConnection();
+        c.setAutoCommit(false);
+        c.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+
+        checkAggregates("select count(*), sum(a), max(d) from t");
+        checkAggregates("select g, count(a), min(b) from t group by g");
+
+        c.commit();
+    }
+}
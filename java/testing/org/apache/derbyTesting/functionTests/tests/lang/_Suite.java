@@ -75,6 +75,11 @@ public class _Suite extends BaseTestCase  {
         suite.addTest(InbetweenTest.suite());
         suite.addTest(InsertTest.suite());
         suite.addTest(JoinTest.suite());
+        suite.addTest(MergeJoinTest.suite());
+        suite.addTest(HybridHashJoinTest.suite());
+        suite.addTest(BatchExecutionTest.suite());
+        suite.addTest(ParallelScanTest.suite());
+        suite.addTest(HashGroupingTest.suite());
         suite.addTest(LangProcedureTest.suite());
         suite.addTest(LangScripts.suite());
         suite.addTest(LikeTest.suite());
@@ -132,7 +132,8 @@ public class maxMemPerTab {
 		
 		JDBCDisplayUtil.setMaxDisplayWidth(2500);
 		
-		//should use nested loop join due to maxMemoryPerTable property setting
+		//should use hash join that spills partitions of the hash table to
+		//disk due to maxMemoryPerTable property setting
 		executeQuery(stmt,conn,"select * from tab1, tab2 where tab1.c2 = tab2.c2");
 		executeQuery(stmt,conn,"values SYSCS_UTIL.SYSCS_GET_RUNTIMESTATISTICS()");
 		
@@ -24,6 +24,7 @@ package org.apache.derbyTesting.functionTests.tests.management;
 import java.security.Permission;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Set;
 import javax.management.ObjectName;
@@ -46,6 +47,7 @@ public class CacheManagerMBeanTest extends MBeanTest {
 
     private static String[] ALL_ATTRIBUTES = {
         "CollectAccessCounts", "HitCount", "MissCount", "EvictionCount",
+        "BackgroundCleanCount", "ForegroundCleanCount",
         "MaxEntries", "AllocatedEntries", "UsedEntries"
     };
 
@@ -167,6 +169,8 @@ public class CacheManagerMBeanTest extends MBeanTest {
         assertLongAttribute(0, name, "HitCount");
         assertLongAttribute(0, name, "MissCount");
         assertLongAttribute(0, name, "EvictionCount");
+        // The background writer is not enabled by default.
+        assertLongAttribute(0, name, "BackgroundCleanCount");
         assertLongAttribute(DEFAULT_PAGE_CACHE_SIZE, name, "MaxEntries");
         // Cannot reliably tell how many entries to expect.
         // More than 0 for sure.
@@ -200,6 +204,138 @@ public class CacheManagerMBeanTest extends MBeanTest {
         assertBooleanAttribute(false, name, "CollectAccessCounts");
     }
 
+    /**
+     * Test that the background writer of the page cache cleans pages, and
+     * that the statement cache and the container cache do not have one.
+     */
+    public void testBackgroundWriter() throws Exception {
+        // The database has been shut down by setUp(), so that it boots with
+        // these properties.
+        setSystemProperty("derby.storage.backgroundWriterPercent", "50");
+        setSystemProperty("derby.storage.pageCacheSize", "40");
+        try {
+            checkBackgroundWriter();
+        } finally {
+            removeSystemProperty("derby.storage.backgroundWriterPercent");
+            removeSystemProperty("derby.storage.pageCacheSize");
+        }
+    }
+
+    private void checkBackgroundWriter() throws Exception {
+        Statement s = createStatement();
+        s.executeUpdate("create table bgw(id int primary key, v varchar(500))");
+
+        ObjectName name =
+            queryMBeans(createObjectName("PageCache", null)).iterator().next();
+        assertLongAttribute(40, name, "MaxEntries");
+
+        // Dirty many more pages than the cache holds, and wait for the
+        // background writer to clean some of them.
+        char[] value = new char[400];
+        Arrays.fill(value, 'x');
+        PreparedStatement ps =
+            prepareStatement("insert into bgw values (?, ?)");
+        for (int i = 0; i < 1000; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, new String(value));
+            ps.executeUpdate();
+        }
+        ps.close();
+
+        long cleaned = 0;
+        for (int i = 0; i < 100 && cleaned == 0; i++) {
+            Thread.sleep(100);
+            cleaned = (Long) getAttribute(name, "BackgroundCleanCount");
+        }
+        assertTrue("Background cleans: " + cleaned, cleaned > 0);
+
+        for (ObjectName other : queryMBeans(createObjectName(null, null))) {
+            if (!other.equals(name)) {
+                assertLongAttribute(0, other, "BackgroundCleanCount");
+            }
+        }
+
+        s.executeUpdate("drop table bgw");
+        s.close();
+    }
+
+    /**
+     * Test that the scan resistant replacement policy of the page cache
+     * keeps the pages that are used over and over again while large tables
+     * are scanned.
+     */
+    public void testScanResistantPageCache() throws Exception {
+        // The database has been shut down by setUp(), so that it boots with
+        // these properties.
+        setSystemProperty("derby.storage.pageReplacementPolicy", "2Q");
+        setSystemProperty("derby.storage.pageCacheSize", "40");
+        try {
+            checkScanResistantPageCache();
+        } finally {
+            removeSystemProperty("derby.storage.pageReplacementPolicy");
+            removeSystemProperty("derby.storage.pageCacheSize");
+        }
+    }
+
+    private void checkScanResistantPageCache() throws Exception {
+        Statement s = createStatement();
+        s.executeUpdate("create table hot(id int primary key, v varchar(500))");
+        s.executeUpdate("create table big(id int, v varchar(500))");
+
+        char[] value = new char[400];
+        Arrays.fill(value, 'x');
+        setAutoCommit(false);
+        PreparedStatement ps = prepareStatement("insert into hot values (?, ?)");
+        for (int i = 0; i < 30; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, new String(value));
+            ps.executeUpdate();
+        }
+        ps.close();
+        ps = prepareStatement("insert into big values (?, ?)");
+        for (int i = 0; i < 3000; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, new String(value));
+            ps.executeUpdate();
+        }
+        ps.close();
+        commit();
+        setAutoCommit(true);
+
+        ObjectName name =
+            queryMBeans(createObjectName("PageCache", null)).iterator().next();
+        assertLongAttribute(40, name, "MaxEntries");
+        setAttribute(name, "CollectAccessCounts", Boolean.TRUE);
+
+        PreparedStatement scan =
+            prepareStatement("select count(*) from big where v like 'x%'");
+        PreparedStatement lookup =
+            prepareStatement("select v from hot where id = ?");
+
+        // Scan the large table, which holds many times the pages the cache
+        // does, in between looking up all the rows of the small table. The
+        // pages of the small table should stay in the cache once they have
+        // been looked up again after being evicted.
+        long misses = 0;
+        for (int round = 0; round < 4; round++) {
+            JDBC.assertSingleValueResultSet(scan.executeQuery(), "3000");
+            long missesBefore = (Long) getAttribute(name, "MissCount");
+            for (int i = 0; i < 30; i++) {
+                lookup.setInt(1, i);
+                JDBC.assertSingleValueResultSet(
+                        lookup.executeQuery(), new String(value));
+            }
+            misses = (Long) getAttribute(name, "MissCount") - missesBefore;
+        }
+        assertEquals("Page cache misses while looking up rows", 0, misses);
+
+        scan.close();
+        lookup.close();
+        s.executeUpdate("drop table big");
+        s.executeUpdate("drop table hot");
+        s.close();
+    }
+
     /**
      * Test the {@code CacheManagerMBean} for the page cache.
      */
@@ -0,0 +1,140 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.management.LockManagerMBeanTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.management;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Hashtable;
+import java.util.Set;
+import javax.management.ObjectName;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Test cases for {@code LockManagerMBean}.
+ */
+public class LockManagerMBeanTest extends MBeanTest {
+
+    public LockManagerMBeanTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return MBeanTest.suite(LockManagerMBeanTest.class,
+                               "LockManagerMBeanTest");
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        // Set up management.
+        super.setUp();
+
+        // Shut down the database so that the test cases start before the
+        // lock manager bean has started. Get a connection first, since
+        // shutdownDatabase() fails if the database is not booted.
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+    }
+
+    /**
+     * Create an {@code ObjectName} pattern that matches the
+     * {@code LockManager} management beans of all databases.
+     */
+    private ObjectName createObjectName() throws Exception {
+        Hashtable<String, String> props = new Hashtable<String, String>();
+        props.put("type", "LockManager");
+        props.put("db", "*");
+        return getDerbyMBeanName(props);
+    }
+
+    /**
+     * Test that the {@code LockManagerMBean} starts when the database is
+     * booted, and stops when the database is shut down.
+     */
+    public void testMBeanStartedAndStopped() throws Exception {
+        ObjectName pattern = createObjectName();
+
+        Set<ObjectName> names = queryMBeans(pattern);
+        if (!names.isEmpty()) {
+            fail("Should not find MBeans before boot, found: " + names);
+        }
+
+        getConnection();
+        names = queryMBeans(pattern);
+        assertEquals("Incorrect number of MBeans found in " + names,
+                     1, names.size());
+
+        TestConfiguration.getCurrent().shutdownDatabase();
+        names = queryMBeans(pattern);
+        if (!names.isEmpty()) {
+            fail("Should not find MBeans after shutdown, found: " + names);
+        }
+    }
+
+    /**
+     * Test that lock waits and timeouts are counted.
+     */
+    public void testLockTimeout() throws Exception {
+        // The database has been shut down by setUp(), so that it boots with
+        // this property.
+        setSystemProperty("derby.locks.waitTimeout", "1");
+        try {
+            checkLockTimeout();
+        } finally {
+            removeSystemProperty("derby.locks.waitTimeout");
+        }
+    }
+
+    private void checkLockTimeout() throws Exception {
+        Statement s = createStatement();
+        s.executeUpdate("create table lockstats(id int, v int)");
+        s.executeUpdate("insert into lockstats values (1, 0)");
+
+        ObjectName name = queryMBeans(createObjectName()).iterator().next();
+        long acquisitions = (Long) getAttribute(name, "AcquisitionCount");
+        assertTrue("Acquisitions: " + acquisitions, acquisitions > 0);
+        assertLongAttribute(0, name, "WaitCount");
+        assertLongAttribute(0, name, "TimeoutCount");
+        assertLongAttribute(0, name, "DeadlockCount");
+
+        setAutoCommit(false);
+        s.executeUpdate("update lockstats set v = 1");
+        long locked = (Long) getAttribute(name, "LockedObjectCount");
+        assertTrue("Locked objects: " + locked, locked > 0);
+
+        Connection other = openDefaultConnection();
+        Statement os = other.createStatement();
+        assertStatementError("40XL1", os, "update lockstats set v = 2");
+        os.close();
+        other.close();
+
+        assertLongAttribute(1, name, "WaitCount");
+        assertLongAttribute(1, name, "TimeoutCount");
+        long waitTime = (Long) getAttribute(name, "WaitTime");
+        assertTrue("Wait time: " + waitTime, waitTime >= 500);
+
+        rollback();
+        setAutoCommit(true);
+        s.executeUpdate("drop table lockstats");
+        s.close();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.AsyncCommitTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for asynchronous commit, requested with the asyncCommit connection
+ * attribute. Commits return before the log is synced and the log flusher
+ * syncs it within derby.storage.logAsyncCommitMaxDelay milliseconds.
+ */
+public class AsyncCommitTest extends BaseJDBCTestCase
+{
+    private static final int ROWS = 500;
+
+    public AsyncCommitTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("AsyncCommitTest");
+
+        Properties props = new Properties();
+        props.setProperty("derby.storage.logAsyncCommitMaxDelay", "50");
+
+        Test test = TestConfiguration.embeddedSuite(AsyncCommitTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(
+            TestConfiguration.singleUseDatabaseDecorator(test, "AsyncCommitDB"));
+        return suite;
+    }
+
+    /**
+     * Open a connection to the default database with asynchronous commit.
+     */
+    private Connection openAsyncConnection() throws SQLException
+    {
+        return DriverManager.getConnection(
+            getTestConfiguration().getJDBCUrl() + ";asyncCommit=true",
+            getTestConfiguration().getUserName(),
+            getTestConfiguration().getUserPassword());
+    }
+
+    /**
+     * Commit asynchronously and check that the rows are visible to other
+     * connections at once, and still there after a reboot.
+     */
+    public void testAsyncCommit() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table ac(i int)");
+
+        Connection c = openAsyncConnection();
+        PreparedStatement ps = c.prepareStatement("insert into ac values ?");
+        for (int i = 0; i < ROWS; i++)
+        {
+            ps.setInt(1, i);
+            ps.executeUpdate();
+        }
+        ps.close();
+
+        String expected = Integer.toString(ROWS);
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from ac"), expected);
+
+        // rollback must still work on an asynchronous connection
+        c.setAutoCommit(false);
+        Statement cs = c.createStatement();
+        cs.executeUpdate("delete from ac");
+        c.rollback();
+        cs.close();
+        c.close();
+
+        s.close();
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        s = createStatement();
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from ac"), expected);
+        s.executeUpdate("drop table ac");
+    }
+
+    /**
+     * An invalid value for the asyncCommit attribute is rejected.
+     */
+    public void testInvalidAttributeValue()
+    {
+        try
+        {
+            DriverManager.getConnection(
+                getTestConfiguration().getJDBCUrl() + ";asyncCommit=maybe");
+            fail("asyncCommit=maybe should have been rejected");
+        }
+        catch (SQLException sqle)
+        {
+            assertSQLState("XJ05B", sqle);
+        }
+    }
+
+    /**
+     * Check that a transaction committed asynchronously survives a crash
+     * once the asynchronous commit window has passed.
+     */
+    public void testCommitSurvivesCrash() throws Exception
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table ac_crash(i int)");
+        s.close();
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        assertLaunchedJUnitTestMethod(
+            "org.apache.derbyTesting.functionTests.tests.store." +
+            "AsyncCommitTest.launchAsyncCommitAndCrash",
+            TestConfiguration.getCurrent().getDefaultDatabaseName());
+
+        s = createStatement();
+        JDBC.assertFullResultSet(
+            s.executeQuery("select i from ac_crash"),
+            new String[][] { { "1" } });
+        s.executeUpdate("drop table ac_crash");
+    }
+
+    /**
+     * Run in a forked JVM by testCommitSurvivesCrash. Commits one row
+     * asynchronously, waits well beyond the asynchronous commit window and
+     * exits without shutting down the database.
+     */
+    public void launchAsyncCommitAndCrash() throws Exception
+    {
+        // boot the database through the test framework, which also loads
+        // the driver
+        getConnection();
+
+        Connection c = openAsyncConnection();
+        c.setAutoCommit(false);
+        Statement s = c.createStatement();
+        s.executeUpdate("insert into ac_crash values 1");
+        c.commit();
+        s.executeUpdate("insert into ac_crash values 2");
+        Thread.sleep(1000);
+    }
+}
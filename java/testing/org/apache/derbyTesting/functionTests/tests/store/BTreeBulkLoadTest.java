@@ -0,0 +1,270 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.BTreeBulkLoadTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for the bottom up build of B-tree indexes from sorted rows, used
+ * by CREATE INDEX and bulk inserts, and for derby.storage.indexFillFactor.
+ */
+public class BTreeBulkLoadTest extends BaseJDBCTestCase
+{
+    private static final int ROWS = 6000;
+
+    public BTreeBulkLoadTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("BTreeBulkLoadTest");
+
+        // Use small pages, so that the index gets several levels.
+        Properties props = new Properties();
+        props.setProperty("derby.storage.pageSize", "4096");
+
+        Test test = TestConfiguration.embeddedSuite(BTreeBulkLoadTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(TestConfiguration.singleUseDatabaseDecorator(
+                          test, "BTreeBulkLoadDB"));
+        return suite;
+    }
+
+    protected void setUp() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table t(k varchar(300), id int)");
+        s.close();
+
+        // Insert the even ids in scattered order, the odd ones are left
+        // for inserts into the loaded index.
+        setAutoCommit(false);
+        PreparedStatement ps = prepareStatement("insert into t values (?, ?)");
+        for (int i = 0; i < ROWS; i++)
+        {
+            int id = 2 * ((i * 7919) % ROWS);
+            ps.setString(1, key(id));
+            ps.setInt(2, id);
+            ps.executeUpdate();
+        }
+        ps.close();
+        commit();
+        setAutoCommit(true);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        dropTable("T");
+        super.tearDown();
+    }
+
+    /**
+     * Make a long key, which only differs from the keys of other ids in its
+     * last characters, so that the branch rows are long too.
+     */
+    private static String key(int id)
+    {
+        char[] prefix = new char[200];
+        Arrays.fill(prefix, 'x');
+        return new String(prefix) + String.format("%06d", id);
+    }
+
+    /**
+     * Count the pages allocated to the index of table T.
+     */
+    private int indexPages() throws SQLException
+    {
+        ResultSet rs = createStatement().executeQuery(
+            "select numallocatedpages from table(" +
+            "syscs_diag.space_table('APP', 'T')) t where isindex = 1");
+        assertTrue(rs.next());
+        int pages = rs.getInt(1);
+        assertFalse(rs.next());
+        rs.close();
+        return pages;
+    }
+
+    /**
+     * Check the index, and that it finds all the rows with the given ids.
+     */
+    private void checkIndex(int rows, int step, boolean descending)
+        throws SQLException
+    {
+        assertCheckTable("T");
+
+        // Scan the whole index in order.
+        ResultSet rs = createStatement().executeQuery(
+            "select id from t --DERBY-PROPERTIES index=T_IDX\n" +
+            "order by k" + (descending ? " desc" : ""));
+        for (int i = 0; i < rows; i++)
+        {
+            assertTrue(rs.next());
+            int expected = descending ? (rows - 1 - i) * step : i * step;
+            assertEquals(expected, rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        rs.close();
+
+        PreparedStatement lookup = prepareStatement(
+            "select id from t --DERBY-PROPERTIES index=T_IDX\n" +
+            "where k = ?");
+        for (int i = 0; i < rows; i += 97)
+        {
+            lookup.setString(1, key(i * step));
+            JDBC.assertSingleValueResultSet(
+                lookup.executeQuery(), String.valueOf(i * step));
+        }
+        lookup.close();
+
+        PreparedStatement range = prepareStatement(
+            "select count(*) from t --DERBY-PROPERTIES index=T_IDX\n" +
+            "where k >= ? and k < ?");
+        range.setString(1, key(1000));
+        range.setString(2, key(3000));
+        JDBC.assertSingleValueResultSet(
+            range.executeQuery(), String.valueOf(2000 / step));
+        range.close();
+    }
+
+    private void setFillFactor(String value) throws SQLException
+    {
+        CallableStatement cs = prepareCall(
+            "call syscs_util.syscs_set_database_property(" +
+            "'derby.storage.indexFillFactor', ?)");
+        cs.setString(1, value);
+        cs.execute();
+        cs.close();
+    }
+
+    /**
+     * Build an index with several levels of branch pages, and check that
+     * it finds every row.
+     */
+    public void testCreateIndex() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create index t_idx on t(k)");
+        s.close();
+
+        checkIndex(ROWS, 2, false);
+    }
+
+    /**
+     * Build a descending unique index, and check that it finds every row
+     * and still rejects duplicates.
+     */
+    public void testDescendingUniqueIndex() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create unique index t_idx on t(k desc)");
+
+        checkIndex(ROWS, 2, true);
+
+        assertStatementError(
+            "23505", s, "insert into t values ('" + key(0) + "', 0)");
+        s.close();
+    }
+
+    /**
+     * Check that building a unique index on duplicate keys fails, and
+     * leaves no index behind.
+     */
+    public void testDuplicateKeys() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("insert into t values ('" + key(4000) + "', 4000)");
+
+        assertStatementError("23505", s, "create unique index t_idx on t(k)");
+        assertStatementError("42X65", s, "drop index t_idx");
+        assertCheckTable("T");
+        s.close();
+    }
+
+    /**
+     * Check that rows inserted between the keys of a loaded index, which
+     * split its pages, are found along with the loaded ones.
+     */
+    public void testInsertAfterLoad() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create index t_idx on t(k)");
+
+        setAutoCommit(false);
+        PreparedStatement ps = prepareStatement("insert into t values (?, ?)");
+        for (int i = 0; i < ROWS; i++)
+        {
+            int id = 2 * i + 1;
+            ps.setString(1, key(id));
+            ps.setInt(2, id);
+            ps.executeUpdate();
+        }
+        ps.close();
+        commit();
+        setAutoCommit(true);
+
+        checkIndex(2 * ROWS, 1, false);
+        s.close();
+    }
+
+    /**
+     * Check that an index built with a lower fill factor leaves room on
+     * its pages, and still finds every row.
+     */
+    public void testFillFactor() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create index t_idx on t(k)");
+        int fullPages = indexPages();
+        s.executeUpdate("drop index t_idx");
+
+        setFillFactor("50");
+        try
+        {
+            s.executeUpdate("create index t_idx on t(k)");
+        }
+        finally
+        {
+            setFillFactor(null);
+        }
+        int halfFullPages = indexPages();
+
+        assertTrue("pages at fill factor 50: " + halfFullPages +
+                   ", at 100: " + fullPages,
+                   halfFullPages > fullPages + fullPages / 2);
+        checkIndex(ROWS, 2, false);
+        s.close();
+    }
+}
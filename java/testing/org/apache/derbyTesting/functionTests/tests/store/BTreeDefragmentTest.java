@@ -0,0 +1,342 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.BTreeDefragmentTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for SYSCS_UTIL.SYSCS_DEFRAGMENT_INDEX, which merges the underfilled
+ * leaves of an index while other transactions use it.
+ */
+public class BTreeDefragmentTest extends BaseJDBCTestCase
+{
+    private static final int ROWS = 3000;
+
+    public BTreeDefragmentTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("BTreeDefragmentTest");
+
+        // Use small pages, so that the index gets many leaves, and do not
+        // wait long for the locks of the other transaction.
+        Properties props = new Properties();
+        props.setProperty("derby.storage.pageSize", "4096");
+        props.setProperty("derby.locks.waitTimeout", "2");
+
+        Test test = TestConfiguration.embeddedSuite(BTreeDefragmentTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(TestConfiguration.singleUseDatabaseDecorator(
+                          test, "BTreeDefragmentDB"));
+        return suite;
+    }
+
+    protected void setUp() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table t(id int, k varchar(300))");
+        s.executeUpdate("create index t_idx on t(k)");
+        s.executeUpdate("create index t_id on t(id)");
+        s.close();
+
+        setAutoCommit(false);
+        PreparedStatement ps = prepareStatement("insert into t values (?, ?)");
+        for (int i = 0; i < ROWS; i++)
+        {
+            ps.setInt(1, 10 * i);
+            ps.setString(2, key(10 * i));
+            ps.executeUpdate();
+        }
+        ps.close();
+        commit();
+        setAutoCommit(true);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        dropTable("T");
+        super.tearDown();
+    }
+
+    /**
+     * Make a long key, so that a leaf holds few rows.
+     */
+    private static String key(int id)
+    {
+        char[] prefix = new char[150];
+        Arrays.fill(prefix, 'x');
+        return new String(prefix) + String.format("%06d", id);
+    }
+
+    /**
+     * Count the pages allocated to an index of table T.
+     */
+    private int indexPages(String index) throws SQLException
+    {
+        PreparedStatement ps = prepareStatement(
+            "select numallocatedpages from table(" +
+            "syscs_diag.space_table('APP', 'T')) t " +
+            "where conglomeratename = ?");
+        ps.setString(1, index);
+        ResultSet rs = ps.executeQuery();
+        assertTrue(rs.next());
+        int pages = rs.getInt(1);
+        assertFalse(rs.next());
+        rs.close();
+        ps.close();
+        return pages;
+    }
+
+    private void defragment(String index) throws SQLException
+    {
+        PreparedStatement ps = prepareStatement(
+            "call syscs_util.syscs_defragment_index('APP', 'T', ?)");
+        ps.setString(1, index);
+        ps.execute();
+        ps.close();
+    }
+
+    /**
+     * Delete all but every step'th row.
+     */
+    private void thin(int step) throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("delete from t where mod(id, " + (10 * step) + ") <> 0");
+        s.close();
+    }
+
+    /**
+     * Check the index, and that a scan of it returns the given ids in order.
+     */
+    private void checkIndex(int[] ids) throws SQLException
+    {
+        assertCheckTable("T");
+
+        ResultSet rs = createStatement().executeQuery(
+            "select id from t --DERBY-PROPERTIES index=T_IDX\n" +
+            "order by k");
+        for (int i = 0; i < ids.length; i++)
+        {
+            assertTrue(rs.next());
+            assertEquals(ids[i], rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        rs.close();
+
+        PreparedStatement lookup = prepareStatement(
+            "select id from t --DERBY-PROPERTIES index=T_IDX\n" +
+            "where k = ?");
+        for (int i = 0; i < ids.length; i += 7)
+        {
+            lookup.setString(1, key(ids[i]));
+            JDBC.assertSingleValueResultSet(
+                lookup.executeQuery(), String.valueOf(ids[i]));
+        }
+        lookup.close();
+    }
+
+    private static int[] ids(int first, int step, int count)
+    {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++)
+            ids[i] = first + i * step;
+        return ids;
+    }
+
+    /**
+     * Merge the leaves of an index after most of its rows are deleted, and
+     * check that the freed pages are returned and every row is still found.
+     */
+    public void testDefragmentIndex() throws SQLException
+    {
+        thin(10);
+        int before = indexPages("T_IDX");
+        int otherBefore = indexPages("T_ID");
+
+        defragment("T_IDX");
+
+        int after = indexPages("T_IDX");
+        assertTrue("pages before: " + before + ", after: " + after,
+                   after < before / 3);
+        assertEquals(otherBefore, indexPages("T_ID"));
+        checkIndex(ids(0, 100, ROWS / 10));
+
+        // Inserts into the merged leaves split them again.
+        setAutoCommit(false);
+        PreparedStatement ps = prepareStatement("insert into t values (?, ?)");
+        for (int i = 0; i < ROWS / 10; i++)
+        {
+            ps.setInt(1, 100 * i + 50);
+            ps.setString(2, key(100 * i + 50));
+            ps.executeUpdate();
+        }
+        ps.close();
+        commit();
+        setAutoCommit(true);
+        checkIndex(ids(0, 50, ROWS / 5));
+    }
+
+    /**
+     * Check that a null index name defragments every index of the table, and
+     * that an index whose leaves are all full is left alone.
+     */
+    public void testAllIndexes() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create index t_idx2 on t(k, id)");
+        int full = indexPages("T_IDX2");
+        defragment("T_IDX2");
+        assertEquals(full, indexPages("T_IDX2"));
+
+        thin(5);
+        int before = indexPages("T_IDX");
+        int before2 = indexPages("T_IDX2");
+        defragment(null);
+        assertTrue(indexPages("T_IDX") < before / 2);
+        assertTrue(indexPages("T_IDX2") < before2 / 2);
+        checkIndex(ids(0, 50, ROWS / 5));
+
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from t " +
+                           "--DERBY-PROPERTIES index=T_IDX2\n" +
+                           "where k > '" + key(1000) + "'"),
+            String.valueOf(ROWS / 5 - 21));
+        s.close();
+    }
+
+    /**
+     * Check that the rows inserted and deleted by an uncommitted transaction
+     * are moved along with the committed ones, keep their locks, and are
+     * found again by the rollback of the transaction.
+     */
+    public void testConcurrentTransaction() throws SQLException
+    {
+        thin(10);
+
+        Connection other = openDefaultConnection();
+        other.setAutoCommit(false);
+        Statement os = other.createStatement();
+        PreparedStatement ps = other.prepareStatement(
+            "insert into t values (?, ?)");
+        for (int i = 0; i < ROWS / 10; i += 3)
+        {
+            ps.setInt(1, 100 * i + 50);
+            ps.setString(2, key(100 * i + 50));
+            ps.executeUpdate();
+        }
+        ps.close();
+        os.executeUpdate("delete from t where mod(id, 700) = 0");
+
+        int before = indexPages("T_IDX");
+        defragment("T_IDX");
+        assertTrue(indexPages("T_IDX") < before / 2);
+
+        // The rows of the other transaction are still locked.
+        setAutoCommit(false);
+        Statement s = createStatement();
+        assertStatementError(
+            "40XL1", s,
+            "select id from t --DERBY-PROPERTIES index=T_IDX\n" +
+            "where k = '" + key(50) + "' for update");
+        rollback();
+        setAutoCommit(true);
+
+        other.rollback();
+        os.close();
+        other.close();
+
+        checkIndex(ids(0, 100, ROWS / 10));
+        s.close();
+    }
+
+    /**
+     * Check that a scan positioned in the index while it is defragmented
+     * goes on with the next row.
+     */
+    public void testOpenScan() throws SQLException
+    {
+        thin(10);
+
+        Connection other = openDefaultConnection();
+        other.setAutoCommit(false);
+        other.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        ResultSet rs = other.createStatement().executeQuery(
+            "select id from t --DERBY-PROPERTIES index=T_IDX\n" +
+            "order by k");
+        int expected = 0;
+        for (; expected < 1000 * 10; expected += 100)
+        {
+            assertTrue(rs.next());
+            assertEquals(expected, rs.getInt(1));
+        }
+
+        defragment("T_IDX");
+
+        for (; expected < ROWS * 10; expected += 100)
+        {
+            assertTrue(rs.next());
+            assertEquals(expected, rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        rs.close();
+        other.commit();
+        other.close();
+
+        checkIndex(ids(0, 100, ROWS / 10));
+    }
+
+    public void testErrors() throws SQLException
+    {
+        Statement s = createStatement();
+        assertStatementError(
+            "42X05", s,
+            "call syscs_util.syscs_defragment_index('APP', 'NO_SUCH', null)");
+        assertStatementError(
+            "42X65", s,
+            "call syscs_util.syscs_defragment_index('APP', 'T', 'NO_SUCH')");
+
+        // A table without indexes, and an empty index, are fine.
+        s.executeUpdate("create table t2(c int)");
+        s.execute("call syscs_util.syscs_defragment_index('APP', 'T2', null)");
+        s.executeUpdate("create index t2_idx on t2(c)");
+        s.execute(
+            "call syscs_util.syscs_defragment_index('APP', 'T2', 'T2_IDX')");
+        s.executeUpdate("drop table t2");
+        s.close();
+    }
+}
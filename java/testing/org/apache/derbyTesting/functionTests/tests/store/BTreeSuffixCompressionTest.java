@@ -0,0 +1,244 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.BTreeSuffixCompressionTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for the suffix compression of the keys of branch rows in B-tree
+ * indexes, which keeps only as much of a long VARCHAR key in the branch
+ * pages as is needed to tell the rows of two leaf pages apart.
+ */
+public class BTreeSuffixCompressionTest extends BaseJDBCTestCase
+{
+    private static final int ROWS = 2000;
+
+    public BTreeSuffixCompressionTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("BTreeSuffixCompressionTest");
+
+        // Use small pages, so that the index gets several levels.
+        Properties props = new Properties();
+        props.setProperty("derby.storage.pageSize", "4096");
+
+        Test test = TestConfiguration.embeddedSuite(
+            BTreeSuffixCompressionTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(TestConfiguration.singleUseDatabaseDecorator(
+                          test, "BTreeSuffixCompressionDB"));
+        return suite;
+    }
+
+    protected void tearDown() throws Exception
+    {
+        dropTable("URLS");
+        dropTable("PATHS");
+        super.tearDown();
+    }
+
+    /**
+     * Make a key which differs from the keys of other ids in its first
+     * characters, followed by a long common suffix.
+     */
+    private static String key(int id)
+    {
+        return "http://" + String.format("%05d", id) + "/" + filler();
+    }
+
+    /**
+     * Make a key as long as {@link #key(int)}, which only differs from the
+     * keys of other ids in its last characters.
+     */
+    private static String lateKey(int id)
+    {
+        return "http://" + filler() + "/" + String.format("%05d", id);
+    }
+
+    private static String filler()
+    {
+        char[] filler = new char[800];
+        Arrays.fill(filler, 'x');
+        return new String(filler);
+    }
+
+    /**
+     * Count the pages allocated to the index of a table.
+     */
+    private int indexPages(String table) throws SQLException
+    {
+        PreparedStatement ps = prepareStatement(
+            "select numallocatedpages from table(" +
+            "syscs_diag.space_table('APP', ?)) t where isindex = 1");
+        ps.setString(1, table);
+        ResultSet rs = ps.executeQuery();
+        assertTrue(rs.next());
+        int pages = rs.getInt(1);
+        assertFalse(rs.next());
+        rs.close();
+        ps.close();
+        return pages;
+    }
+
+    /**
+     * Check that an index on long keys which differ early needs few branch
+     * pages, and that lookups and range scans through the compressed
+     * branch rows find every row.
+     */
+    private void checkLongKeys(String createIndex, int[] order)
+        throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table urls(url varchar(1000), id int)");
+        s.executeUpdate("create table paths(url varchar(1000), id int)");
+        s.executeUpdate(createIndex + " urls_idx on urls(url)");
+        s.executeUpdate(createIndex + " paths_idx on paths(url)");
+
+        setAutoCommit(false);
+        PreparedStatement ins =
+            prepareStatement("insert into urls values (?, ?)");
+        PreparedStatement insLate =
+            prepareStatement("insert into paths values (?, ?)");
+        for (int i = 0; i < order.length; i++)
+        {
+            ins.setString(1, key(order[i]));
+            ins.setInt(2, order[i]);
+            ins.executeUpdate();
+            insLate.setString(1, lateKey(order[i]));
+            insLate.setInt(2, order[i]);
+            insLate.executeUpdate();
+        }
+        ins.close();
+        insLate.close();
+        commit();
+        setAutoCommit(true);
+
+        // Each page only holds a few rows, in the leaves as in the branch
+        // pages of an index whose branch rows cannot be compressed. The
+        // compressed branch rows of URLS_IDX take almost no space, so that
+        // index should have about as many pages as it has leaves.
+        int pages = indexPages("URLS");
+        int uncompressedPages = indexPages("PATHS");
+        assertTrue("index pages: " + pages + ", without compression: " +
+                   uncompressedPages, pages * 5 < uncompressedPages * 4);
+
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+            "values syscs_util.syscs_check_table('APP', 'URLS')"), "1");
+
+        PreparedStatement lookup = prepareStatement(
+            "select id from urls --DERBY-PROPERTIES index=URLS_IDX \n" +
+            "where url = ?");
+        for (int i = 0; i < ROWS; i++)
+        {
+            lookup.setString(1, key(i));
+            JDBC.assertSingleValueResultSet(
+                lookup.executeQuery(), String.valueOf(i));
+        }
+        lookup.close();
+
+        PreparedStatement range = prepareStatement(
+            "select count(*) from urls --DERBY-PROPERTIES index=URLS_IDX \n" +
+            "where url >= ? and url < ?");
+        range.setString(1, key(100));
+        range.setString(2, key(1100));
+        JDBC.assertSingleValueResultSet(range.executeQuery(), "1000");
+        range.setString(1, "http://00100");
+        range.setString(2, "http://01100");
+        JDBC.assertSingleValueResultSet(range.executeQuery(), "1000");
+        range.close();
+
+        s.close();
+    }
+
+    /**
+     * Test an ascending index with keys inserted in ascending order.
+     */
+    public void testAscendingInserts() throws SQLException
+    {
+        int[] order = new int[ROWS];
+        for (int i = 0; i < ROWS; i++)
+        {
+            order[i] = i;
+        }
+        checkLongKeys("create index", order);
+    }
+
+    /**
+     * Test a unique index with keys inserted in a scattered order, so that
+     * leaf pages are split in the middle.
+     */
+    public void testScatteredInserts() throws SQLException
+    {
+        int[] order = new int[ROWS];
+        for (int i = 0; i < ROWS; i++)
+        {
+            order[i] = (i * 7919) % ROWS;
+        }
+        checkLongKeys("create unique index", order);
+    }
+
+    /**
+     * Test that a descending index, whose branch rows are not compressed,
+     * still works.
+     */
+    public void testDescendingIndex() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table urls(url varchar(1000), id int)");
+        s.executeUpdate("create index urls_idx on urls(url desc)");
+
+        setAutoCommit(false);
+        PreparedStatement ins =
+            prepareStatement("insert into urls values (?, ?)");
+        for (int i = 0; i < 500; i++)
+        {
+            ins.setString(1, key(i));
+            ins.setInt(2, i);
+            ins.executeUpdate();
+        }
+        ins.close();
+        commit();
+        setAutoCommit(true);
+
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+            "values syscs_util.syscs_check_table('APP', 'URLS')"), "1");
+        JDBC.assertSingleValueResultSet(s.executeQuery(
+            "select count(*) from urls --DERBY-PROPERTIES index=URLS_IDX \n" +
+            "where url > 'http://00250'"), "250");
+        s.close();
+    }
+}
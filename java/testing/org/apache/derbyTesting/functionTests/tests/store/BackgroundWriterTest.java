@@ -0,0 +1,170 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.BackgroundWriterTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for the background writer of the page cache
+ * (derby.storage.backgroundWriterPercent), which cleans pages while other
+ * threads keep changing them.
+ */
+public class BackgroundWriterTest extends BaseJDBCTestCase
+{
+    private static final int ROWS = 2000;
+    private static final int THREADS = 3;
+    private static final int UPDATES = 2000;
+
+    public BackgroundWriterTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("BackgroundWriterTest");
+
+        Properties props = new Properties();
+        props.setProperty("derby.storage.backgroundWriterPercent", "100");
+        props.setProperty("derby.storage.backgroundWriterRate", "100000");
+        props.setProperty("derby.storage.pageCacheSize", "40");
+
+        Test test = TestConfiguration.embeddedSuite(BackgroundWriterTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(TestConfiguration.singleUseDatabaseDecorator(
+                          test, "BackgroundWriterDB"));
+        return suite;
+    }
+
+    /**
+     * Update a table from several threads, each thread adding to its own
+     * column, and check the sums before and after a reboot.
+     */
+    public void testConcurrentUpdates() throws Exception
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table bw(id int primary key, " +
+                        "c0 int, c1 int, c2 int, v varchar(400))");
+
+        setAutoCommit(false);
+        PreparedStatement ps =
+            prepareStatement("insert into bw values (?, 0, 0, 0, ?)");
+        for (int i = 0; i < ROWS; i++)
+        {
+            ps.setInt(1, i);
+            ps.setString(2, pad(i));
+            ps.executeUpdate();
+        }
+        ps.close();
+        commit();
+        setAutoCommit(true);
+
+        final Exception[] failures = new Exception[THREADS];
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++)
+        {
+            final int column = t;
+            final Connection c = openDefaultConnection();
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        update(c, column);
+                        c.close();
+                    }
+                    catch (Exception e)
+                    {
+                        failures[column] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        for (int t = 0; t < THREADS; t++)
+        {
+            threads[t].join();
+            if (failures[t] != null)
+                throw failures[t];
+        }
+
+        checkTable(s);
+        s.close();
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        s = createStatement();
+        checkTable(s);
+        s.executeUpdate("drop table bw");
+        s.close();
+    }
+
+    /**
+     * Add 1 to the given column of rows spread over the whole table, so that
+     * pages are changed again while they are being written.
+     */
+    private static void update(Connection c, int column) throws SQLException
+    {
+        PreparedStatement ps = c.prepareStatement(
+            "update bw set c" + column + " = c" + column + " + 1 " +
+            "where id = ?");
+        for (int i = 0; i < UPDATES; i++)
+        {
+            ps.setInt(1, (i * 7 + column * 13) % ROWS);
+            assertEquals(1, ps.executeUpdate());
+        }
+        ps.close();
+    }
+
+    private static String pad(int i)
+    {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 300)
+            sb.append(i).append('-');
+        return sb.toString();
+    }
+
+    private void checkTable(Statement s) throws SQLException
+    {
+        JDBC.assertFullResultSet(
+            s.executeQuery("select sum(c0), sum(c1), sum(c2) from bw"),
+            new String[][] {{
+                Integer.toString(UPDATES),
+                Integer.toString(UPDATES),
+                Integer.toString(UPDATES) }});
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("values SYSCS_UTIL.SYSCS_CHECK_TABLE('APP', 'BW')"),
+            "1");
+    }
+}
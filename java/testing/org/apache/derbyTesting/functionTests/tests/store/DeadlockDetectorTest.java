@@ -0,0 +1,164 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.DeadlockDetectorTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for the background deadlock detector
+ * (derby.locks.deadlockDetectorInterval), which breaks deadlocks without
+ * waiting for derby.locks.deadlockTimeout, and picks the transaction which
+ * has written the least log as the victim.
+ */
+public class DeadlockDetectorTest extends BaseJDBCTestCase
+{
+    private static final String DEADLOCK = "40001";
+
+    /**
+     * Much longer than the test is allowed to wait for the deadlock, so
+     * that a deadlock found by the waiters themselves fails the test.
+     */
+    private static final int DEADLOCK_TIMEOUT = 60;
+
+    public DeadlockDetectorTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("DeadlockDetectorTest");
+
+        Properties props = new Properties();
+        props.setProperty("derby.locks.deadlockDetectorInterval", "50");
+        props.setProperty(
+            "derby.locks.deadlockTimeout", String.valueOf(DEADLOCK_TIMEOUT));
+        props.setProperty(
+            "derby.locks.waitTimeout", String.valueOf(2 * DEADLOCK_TIMEOUT));
+
+        Test test = TestConfiguration.embeddedSuite(DeadlockDetectorTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(TestConfiguration.singleUseDatabaseDecorator(
+                          test, "DeadlockDetectorDB"));
+        return suite;
+    }
+
+    protected void setUp() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table t(id int primary key, v varchar(20))");
+        s.executeUpdate("insert into t values (1, 'one'), (2, 'two')");
+        s.executeUpdate("create table log_filler(v varchar(1000))");
+        s.close();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        Statement s = createStatement();
+        s.executeUpdate("drop table t");
+        s.executeUpdate("drop table log_filler");
+        s.close();
+        super.tearDown();
+    }
+
+    /**
+     * Set up a deadlock between two transactions where the first one has
+     * written more log than the second one, and check that the second one
+     * is picked as the victim well before the deadlock timeout, and that
+     * the first one then gets its lock.
+     */
+    public void testVictimWithLeastLog() throws Exception
+    {
+        final Connection big = openDefaultConnection();
+        big.setAutoCommit(false);
+        Connection small = openDefaultConnection();
+        small.setAutoCommit(false);
+
+        Statement bs = big.createStatement();
+        assertUpdateCount(bs, 1, "update t set v = 'big' where id = 1");
+        PreparedStatement ps =
+            big.prepareStatement("insert into log_filler values ?");
+        for (int i = 0; i < 100; i++)
+        {
+            ps.setString(1, String.valueOf(i) + new String(new char[900]));
+            ps.executeUpdate();
+        }
+        ps.close();
+
+        Statement ss = small.createStatement();
+        assertUpdateCount(ss, 1, "update t set v = 'small' where id = 2");
+
+        final SQLException[] bigFailure = new SQLException[1];
+        Thread bigThread = new Thread() {
+            public void run() {
+                try {
+                    Statement s = big.createStatement();
+                    s.executeUpdate("update t set v = 'big' where id = 2");
+                    s.close();
+                } catch (SQLException sqle) {
+                    bigFailure[0] = sqle;
+                }
+            }
+        };
+        bigThread.start();
+
+        long start = System.currentTimeMillis();
+        try
+        {
+            assertStatementError(
+                DEADLOCK, ss, "update t set v = 'small' where id = 1");
+        }
+        finally
+        {
+            small.rollback();
+            bigThread.join();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        if (bigFailure[0] != null)
+        {
+            throw bigFailure[0];
+        }
+        assertTrue("deadlock took " + elapsed + " ms to break",
+                   elapsed < DEADLOCK_TIMEOUT * 1000 / 2);
+
+        big.commit();
+        JDBC.assertFullResultSet(
+            createStatement().executeQuery("select id, v from t order by id"),
+            new String[][] {{"1", "big"}, {"2", "big"}});
+
+        ss.close();
+        bs.close();
+        small.close();
+        big.close();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.GroupCommitTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for group commit (derby.storage.logGroupCommit), where a dedicated
+ * log flusher thread syncs the log on behalf of all committing transactions.
+ */
+public class GroupCommitTest extends BaseJDBCTestCase
+{
+    private static final int THREADS = 8;
+    private static final int COMMITS_PER_THREAD = 100;
+
+    public GroupCommitTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("GroupCommitTest");
+
+        Properties props = new Properties();
+        props.setProperty("derby.storage.logGroupCommit", "true");
+        props.setProperty("derby.storage.logGroupCommitMaxWait", "2000");
+        props.setProperty("derby.storage.logGroupCommitMaxBatchSize", "4");
+
+        Test test = TestConfiguration.embeddedSuite(GroupCommitTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(
+            TestConfiguration.singleUseDatabaseDecorator(test, "GroupCommitDB"));
+        return suite;
+    }
+
+    /**
+     * Commit from many threads at once and check that every committed row
+     * is there, also after the database has been rebooted.
+     */
+    public void testConcurrentCommits() throws Exception
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table gc(thread int, seq int)");
+
+        final List<Throwable> errors =
+            Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < threads.length; i++)
+        {
+            final int id = i;
+            final Connection c = openDefaultConnection();
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        PreparedStatement ps =
+                            c.prepareStatement("insert into gc values (?, ?)");
+                        for (int j = 0; j < COMMITS_PER_THREAD; j++) {
+                            ps.setInt(1, id);
+                            ps.setInt(2, j);
+                            ps.executeUpdate();
+                        }
+                        ps.close();
+                        c.close();
+                    } catch (Throwable t) {
+                        errors.add(t);
+                    }
+                }
+            };
+        }
+
+        for (int i = 0; i < threads.length; i++)
+            threads[i].start();
+        for (int i = 0; i < threads.length; i++)
+            threads[i].join();
+
+        if (!errors.isEmpty())
+            fail("commit failed", errors.get(0));
+
+        String expected = Integer.toString(THREADS * COMMITS_PER_THREAD);
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from gc"), expected);
+
+        s.close();
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        s = createStatement();
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from gc"), expected);
+        s.executeUpdate("drop table gc");
+    }
+
+    /**
+     * Check that a transaction committed through the log flusher survives
+     * a crash, and that an uncommitted one is rolled back.
+     */
+    public void testCommitSurvivesCrash() throws Exception
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table gc_crash(i int)");
+        s.close();
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        assertLaunchedJUnitTestMethod(
+            "org.apache.derbyTesting.functionTests.tests.store." +
+            "GroupCommitTest.launchCommitAndCrash",
+            TestConfiguration.getCurrent().getDefaultDatabaseName());
+
+        s = createStatement();
+        JDBC.assertFullResultSet(
+            s.executeQuery("select i from gc_crash"),
+            new String[][] { { "1" } });
+        s.executeUpdate("drop table gc_crash");
+    }
+
+    /**
+     * Run in a forked JVM by testCommitSurvivesCrash. Commits one row with
+     * group commit enabled and exits without shutting down the database.
+     */
+    public void launchCommitAndCrash() throws SQLException
+    {
+        setSystemProperty("derby.storage.logGroupCommit", "true");
+
+        Connection c = getConnection();
+        c.setAutoCommit(false);
+        Statement s = createStatement();
+        s.executeUpdate("insert into gc_crash values 1");
+        c.commit();
+        s.executeUpdate("insert into gc_crash values 2");
+    }
+}
@@ -0,0 +1,519 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.HashIndexTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.UUID;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.RuntimeStatisticsParser;
+import org.apache.derbyTesting.junit.SQLUtilities;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for hash indexes, created with CREATE INDEX ... USING HASH.
+ */
+public class HashIndexTest extends BaseJDBCTestCase
+{
+    private static final int ROWS = 5000;
+
+    public HashIndexTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("HashIndexTest");
+
+        // Use small pages, so that the buckets of the index are split many
+        // times, and do not wait long for the locks of the other transaction.
+        Properties props = new Properties();
+        props.setProperty("derby.storage.pageSize", "4096");
+        props.setProperty("derby.locks.waitTimeout", "2");
+
+        Test test = TestConfiguration.embeddedSuite(HashIndexTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(TestConfiguration.singleUseDatabaseDecorator(
+                          test, "HashIndexDB"));
+        return suite;
+    }
+
+    /**
+     * Tell if this is a fixture run in a forked JVM by another test case,
+     * which works on the table of the test case that launched it.
+     */
+    private boolean isLaunched()
+    {
+        return getName().startsWith("launch");
+    }
+
+    protected void setUp() throws SQLException
+    {
+        if (isLaunched())
+            return;
+
+        Statement s = createStatement();
+        s.executeUpdate("create table t(id int, k char(36), v int)");
+        s.executeUpdate("create index t_hash on t(k) using hash");
+        s.close();
+
+        insert(0, ROWS);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        if (!isLaunched())
+            dropTable("T");
+        super.tearDown();
+    }
+
+    private static String key(int id)
+    {
+        return UUID.nameUUIDFromBytes(String.valueOf(id).getBytes()).toString();
+    }
+
+    /**
+     * Insert the rows with ids from first to last - 1.
+     */
+    private void insert(int first, int last) throws SQLException
+    {
+        setAutoCommit(false);
+        insert(getConnection(), first, last);
+        commit();
+        setAutoCommit(true);
+    }
+
+    /**
+     * Insert the rows with ids from first to last - 1, without committing.
+     */
+    private static void insert(Connection conn, int first, int last)
+        throws SQLException
+    {
+        PreparedStatement ps =
+            conn.prepareStatement("insert into t values (?, ?, ?)");
+        for (int i = first; i < last; i++)
+        {
+            ps.setInt(1, i);
+            ps.setString(2, key(i));
+            ps.setInt(3, i % 10);
+            ps.executeUpdate();
+        }
+        ps.close();
+    }
+
+    /**
+     * Look up every step'th id through the hash index, and check that the
+     * ids from first to last - 1 are found, and no others.
+     */
+    private void checkLookups(int first, int last, int step)
+        throws SQLException
+    {
+        PreparedStatement lookup = prepareStatement(
+            "select id from t --DERBY-PROPERTIES index=T_HASH\n" +
+            "where k = ?");
+        for (int i = 0; i < ROWS * 2; i += step)
+        {
+            lookup.setString(1, key(i));
+            ResultSet rs = lookup.executeQuery();
+            if (i >= first && i < last)
+                JDBC.assertSingleValueResultSet(rs, String.valueOf(i));
+            else
+                JDBC.assertEmpty(rs);
+        }
+        lookup.close();
+    }
+
+    /**
+     * Check that equality lookups use the index, find every row after the
+     * buckets have been split, and read a single bucket.
+     */
+    public void testLookups() throws SQLException
+    {
+        assertCheckTable("T");
+        checkLookups(0, ROWS, 1);
+
+        Statement s = createStatement();
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select descriptor from sys.sysconglomerates " +
+                           "where conglomeratename = 'T_HASH'"),
+            "HASH (2)");
+
+        s.execute("call syscs_util.syscs_set_runtimestatistics(1)");
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select id from t where k = '" + key(17) + "'"),
+            "17");
+        RuntimeStatisticsParser rtsp =
+            SQLUtilities.getRuntimeStatisticsParser(s);
+        assertTrue(rtsp.toString(),
+                   rtsp.usedSpecificIndexForIndexScan("T", "T_HASH"));
+        assertTrue(rtsp.toString(), rtsp.findString("Scan type=hash", 1));
+        assertTrue(rtsp.toString(), rtsp.rowsQualifiedEquals(1));
+        s.execute("call syscs_util.syscs_set_runtimestatistics(0)");
+        s.close();
+    }
+
+    /**
+     * Check that predicates other than equality on the whole key are not
+     * used to search the index, and that the index does not claim to return
+     * rows in order.
+     */
+    public void testNonEqualityPredicates() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create index t_hash2 on t(v, id) using hash");
+
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from t " +
+                           "--DERBY-PROPERTIES index=T_HASH2\n" +
+                           "where v = 3"),
+            String.valueOf(ROWS / 10));
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select id from t " +
+                           "--DERBY-PROPERTIES index=T_HASH2\n" +
+                           "where v = 3 and id = 33"),
+            "33");
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from t " +
+                           "--DERBY-PROPERTIES index=T_HASH2\n" +
+                           "where v = 3 and id < 100"),
+            "10");
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from t " +
+                           "--DERBY-PROPERTIES index=T_HASH\n" +
+                           "where k > '8'"),
+            String.valueOf(countAbove("8")));
+
+        ResultSet rs = s.executeQuery(
+            "select v, id from t --DERBY-PROPERTIES index=T_HASH2\n" +
+            "where v = 7 order by v, id");
+        for (int i = 7; i < ROWS; i += 10)
+        {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(2));
+        }
+        assertFalse(rs.next());
+        rs.close();
+
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select max(id) from t " +
+                           "--DERBY-PROPERTIES index=T_HASH2\n" +
+                           "where v = 9"),
+            String.valueOf(ROWS - 1));
+
+        JDBC.assertFullResultSet(
+            s.executeQuery("select id from t " +
+                           "--DERBY-PROPERTIES index=T_HASH\n" +
+                           "where k in ('" + key(5) + "', '" + key(500) +
+                           "', 'no such key') order by id"),
+            new String[][] {{"5"}, {"500"}});
+        s.close();
+    }
+
+    private static int countAbove(String k)
+    {
+        int count = 0;
+        for (int i = 0; i < ROWS; i++)
+        {
+            if (key(i).compareTo(k) > 0)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Check duplicate and null keys.
+     */
+    public void testDuplicatesAndNulls() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("insert into t values (-1, null, 0), (-2, null, 0)");
+        s.executeUpdate("insert into t select id + " + ROWS + ", k, v " +
+                        "from t where mod(id, 3) = 0 and id >= 0");
+
+        PreparedStatement lookup = prepareStatement(
+            "select count(*) from t --DERBY-PROPERTIES index=T_HASH\n" +
+            "where k = ?");
+        for (int i = 0; i < ROWS; i += 7)
+        {
+            lookup.setString(1, key(i));
+            JDBC.assertSingleValueResultSet(
+                lookup.executeQuery(), i % 3 == 0 ? "2" : "1");
+        }
+        lookup.close();
+
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from t " +
+                           "--DERBY-PROPERTIES index=T_HASH\n" +
+                           "where k is null"),
+            "2");
+        assertCheckTable("T");
+        s.close();
+    }
+
+    /**
+     * Check that deletes, updates and rolled back changes are seen by later
+     * lookups.
+     */
+    public void testChanges() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("delete from t where mod(id, 2) = 1");
+        s.executeUpdate("update t set k = '" + key(ROWS) + "' where id = 0");
+
+        setAutoCommit(false);
+        s.executeUpdate("delete from t where mod(id, 4) = 2");
+        s.executeUpdate("update t set k = '" + key(ROWS + 1) + "' " +
+                        "where id = 4");
+        rollback();
+
+        // Inserts into buckets which have deleted rows reuse the space.
+        insert(ROWS, ROWS + ROWS / 2);
+        rollback();
+        setAutoCommit(true);
+
+        PreparedStatement lookup = prepareStatement(
+            "select id from t --DERBY-PROPERTIES index=T_HASH\n" +
+            "where k = ? order by id");
+        for (int i = 2; i < ROWS; i += 6)
+        {
+            lookup.setString(1, key(i));
+            ResultSet rs = lookup.executeQuery();
+            if (i % 2 == 0)
+                JDBC.assertSingleValueResultSet(rs, String.valueOf(i));
+            else
+                JDBC.assertEmpty(rs);
+        }
+        lookup.setString(1, key(0));
+        JDBC.assertEmpty(lookup.executeQuery());
+        lookup.setString(1, key(ROWS));
+        JDBC.assertFullResultSet(
+            lookup.executeQuery(), new String[][] {{"0"}, {"" + ROWS}});
+        lookup.close();
+        assertCheckTable("T");
+        s.close();
+    }
+
+    /**
+     * Check that the index is rebuilt as a hash index by the compress
+     * procedures.
+     */
+    public void testCompress() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("delete from t where id >= " + (ROWS / 2));
+
+        s.execute("call syscs_util.syscs_compress_table('APP', 'T', 1)");
+        assertCheckTable("T");
+        checkLookups(0, ROWS / 2, 3);
+
+        s.executeUpdate("delete from t where id < " + (ROWS / 4));
+        s.execute("call syscs_util.syscs_inplace_compress_table" +
+                  "('APP', 'T', 1, 1, 1)");
+        assertCheckTable("T");
+        checkLookups(ROWS / 4, ROWS / 2, 3);
+
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select descriptor from sys.sysconglomerates " +
+                           "where conglomeratename = 'T_HASH'"),
+            "HASH (2)");
+        s.close();
+    }
+
+    /**
+     * Check that a serializable lookup and an insert of the same key wait
+     * for each other, and that inserts of other keys do not.
+     */
+    public void testSerializable() throws SQLException
+    {
+        Connection other = openDefaultConnection();
+        other.setAutoCommit(false);
+        other.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        ResultSet rs = other.createStatement().executeQuery(
+            "select id from t --DERBY-PROPERTIES index=T_HASH\n" +
+            "where k = '" + key(2 * ROWS) + "'");
+        assertFalse(rs.next());
+        rs.close();
+
+        Statement s = createStatement();
+        assertStatementError(
+            "40XL1", s,
+            "insert into t values (0, '" + key(2 * ROWS) + "', 0)");
+        s.executeUpdate("insert into t values (0, '" + key(2 * ROWS + 1) +
+                        "', 0)");
+        other.commit();
+
+        setAutoCommit(false);
+        s.executeUpdate("insert into t values (0, '" + key(2 * ROWS) + "', 0)");
+        Statement os = other.createStatement();
+        assertStatementError(
+            "40XL1", os,
+            "select id from t --DERBY-PROPERTIES index=T_HASH\n" +
+            "where k = '" + key(2 * ROWS) + "'");
+        commit();
+        setAutoCommit(true);
+
+        JDBC.assertSingleValueResultSet(
+            os.executeQuery(
+                "select id from t --DERBY-PROPERTIES index=T_HASH\n" +
+                "where k = '" + key(2 * ROWS) + "'"),
+            "0");
+        other.commit();
+        os.close();
+        other.close();
+        s.close();
+    }
+
+    /**
+     * Check that a unique hash index finds the duplicates of a key in its
+     * bucket, after the buckets have been split, and waits for the other
+     * transaction to find out whether a row with the same key stays.
+     */
+    public void testUnique() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("insert into t values (-1, '" + key(7) + "', 0)");
+        assertStatementError(
+            "23505", s, "create unique index t_u on t(k) using hash");
+        s.executeUpdate("delete from t where id = -1");
+        s.executeUpdate("create unique index t_u on t(k) using hash");
+
+        for (int i = 0; i < ROWS; i += 97)
+        {
+            assertStatementError(
+                "23505", s, "insert into t values (-1, '" + key(i) + "', 0)");
+        }
+        s.executeUpdate("insert into t values (-1, null, 0)");
+        assertStatementError("23505", s, "insert into t values (-2, null, 0)");
+
+        // A deleted key may be inserted again, and updating every key to
+        // another one only checks the keys when the statement is done.
+        s.executeUpdate("delete from t where id = 7");
+        s.executeUpdate("insert into t values (7, '" + key(7) + "', 0)");
+        assertUpdateCount(
+            s, ROWS, "update t set k = substr(k, 2) || substr(k, 1, 1) " +
+            "where k is not null");
+        assertUpdateCount(
+            s, ROWS, "update t set k = substr(k, 36) || substr(k, 1, 35) " +
+            "where k is not null");
+        checkLookups(0, ROWS, 7);
+
+        Connection other = openDefaultConnection();
+        other.setAutoCommit(false);
+        Statement os = other.createStatement();
+        os.executeUpdate("delete from t where id = 0");
+        assertStatementError(
+            "40XL1", s, "insert into t values (0, '" + key(0) + "', 0)");
+        other.rollback();
+        assertStatementError(
+            "23505", s, "insert into t values (0, '" + key(0) + "', 0)");
+
+        os.executeUpdate("insert into t values (0, '" + key(ROWS) + "', 0)");
+        assertStatementError(
+            "40XL1", s, "insert into t values (0, '" + key(ROWS) + "', 0)");
+        other.rollback();
+        s.executeUpdate("insert into t values (0, '" + key(ROWS) + "', 0)");
+
+        os.close();
+        other.close();
+        s.executeUpdate("drop index t_u");
+        s.close();
+    }
+
+    /**
+     * Check that the rows inserted and deleted by a transaction are found
+     * by the rollback, after the buckets they were put in have been split.
+     */
+    public void testRollbackAcrossSplits() throws SQLException
+    {
+        setAutoCommit(false);
+        Statement s = createStatement();
+        assertUpdateCount(s, ROWS / 2, "delete from t where mod(id, 2) = 0");
+        insert(getConnection(), ROWS, 2 * ROWS);
+        checkLookups(ROWS, 2 * ROWS, 2);
+        rollback();
+        setAutoCommit(true);
+
+        assertCheckTable("T");
+        checkLookups(0, ROWS, 1);
+        s.close();
+    }
+
+    /**
+     * Check that recovery undoes the rows inserted and deleted by a
+     * transaction which had not committed when the database crashed,
+     * after the buckets they were put in have been split.
+     */
+    public void testRecoveryAcrossSplits() throws Exception
+    {
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        assertLaunchedJUnitTestMethod(
+            "org.apache.derbyTesting.functionTests.tests.store." +
+            "HashIndexTest.launchSplitsAndCrash",
+            TestConfiguration.getCurrent().getDefaultDatabaseName());
+
+        assertCheckTable("T");
+        checkLookups(0, ROWS, 1);
+    }
+
+    /**
+     * Run in a forked JVM by testRecoveryAcrossSplits.  Inserts and
+     * deletes rows in a transaction which is left open, writes the changed
+     * pages with a checkpoint, and exits without shutting down the
+     * database.
+     */
+    public void launchSplitsAndCrash() throws SQLException
+    {
+        // Not closed by tearDown(), which would roll it back.
+        Connection uncommitted =
+            getTestConfiguration().openDefaultConnection();
+        uncommitted.setAutoCommit(false);
+        Statement s = uncommitted.createStatement();
+        assertUpdateCount(s, ROWS / 2, "delete from t where mod(id, 2) = 0");
+        insert(uncommitted, ROWS, 2 * ROWS);
+        s.close();
+
+        s = createStatement();
+        s.execute("call syscs_util.syscs_checkpoint_database()");
+        s.close();
+    }
+
+    public void testErrors() throws SQLException
+    {
+        Statement s = createStatement();
+        assertStatementError(
+            "42X01", s, "create index t_x on t(k) using nosuchtype");
+        s.executeUpdate("create index t_b on t(k) using btree");
+        s.executeUpdate("drop index t_b");
+        s.close();
+    }
+}
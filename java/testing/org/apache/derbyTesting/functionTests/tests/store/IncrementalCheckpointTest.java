@@ -0,0 +1,187 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.IncrementalCheckpointTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for incremental checkpoints (derby.storage.incrementalCheckpoint),
+ * where the checkpoint daemon only writes out the pages changed before the
+ * previous checkpoint and leaves the redo low water mark behind the newer
+ * changes.
+ */
+public class IncrementalCheckpointTest extends BaseJDBCTestCase
+{
+    private static final int ROWS = 2000;
+    private static final int ROUNDS = 10;
+
+    public IncrementalCheckpointTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("IncrementalCheckpointTest");
+
+        Properties props = new Properties();
+        props.setProperty("derby.storage.incrementalCheckpoint", "true");
+        props.setProperty("derby.storage.checkpointPageRate", "5000");
+        // the smallest values allowed, to get many background checkpoints
+        props.setProperty("derby.storage.checkpointInterval", "100000");
+        props.setProperty("derby.storage.logSwitchInterval", "100000");
+        props.setProperty("derby.storage.pageCacheSize", "100");
+
+        Test test = TestConfiguration.embeddedSuite(
+            IncrementalCheckpointTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(TestConfiguration.singleUseDatabaseDecorator(
+            test, "IncrementalCheckpointDB"));
+        return suite;
+    }
+
+    /**
+     * Update a table over and over while background checkpoints run, with
+     * a full checkpoint in between, and check the data after a reboot.
+     */
+    public void testCheckpointsAndReboot() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table icp1(id int primary key, n int, " +
+                        "v varchar(200))");
+        fill("icp1");
+        update("icp1");
+        s.execute("call SYSCS_UTIL.SYSCS_CHECKPOINT_DATABASE()");
+        update("icp1");
+        s.close();
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        s = createStatement();
+        checkTable(s, "icp1", 2 * ROUNDS);
+        s.executeUpdate("drop table icp1");
+        s.close();
+    }
+
+    /**
+     * Update a table in a forked JVM which exits without shutting down the
+     * database, while background checkpoints run, and check that recovery
+     * brings back exactly the committed changes.
+     */
+    public void testCrashRecovery() throws Exception
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table icp2(id int primary key, n int, " +
+                        "v varchar(200))");
+        s.close();
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        assertLaunchedJUnitTestMethod(
+            "org.apache.derbyTesting.functionTests.tests.store." +
+            "IncrementalCheckpointTest.launchUpdatesAndCrash",
+            TestConfiguration.getCurrent().getDefaultDatabaseName());
+
+        s = createStatement();
+        checkTable(s, "icp2", ROUNDS);
+        s.executeUpdate("drop table icp2");
+        s.close();
+    }
+
+    /**
+     * Run in a forked JVM by testCrashRecovery.  Leaves an uncommitted
+     * update behind and exits without shutting down the database.
+     */
+    public void launchUpdatesAndCrash() throws SQLException
+    {
+        fill("icp2");
+        update("icp2");
+
+        setAutoCommit(false);
+        Statement s = createStatement();
+        s.executeUpdate("update icp2 set n = n + 1000");
+        s.close();
+    }
+
+    private void fill(String table) throws SQLException
+    {
+        setAutoCommit(false);
+        PreparedStatement ps =
+            prepareStatement("insert into " + table + " values (?, 0, ?)");
+        for (int i = 0; i < ROWS; i++)
+        {
+            ps.setInt(1, i);
+            ps.setString(2, "row " + i);
+            ps.executeUpdate();
+        }
+        ps.close();
+        commit();
+        setAutoCommit(true);
+    }
+
+    /**
+     * Update every row in a number of transactions, each followed by a
+     * rolled back update.
+     */
+    private void update(String table) throws SQLException
+    {
+        setAutoCommit(false);
+        Statement s = createStatement();
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            s.executeUpdate("update " + table + " set n = n + 1, " +
+                            "v = 'updated in round " + round + "'");
+            commit();
+            s.executeUpdate("update " + table + " set n = n + 100");
+            rollback();
+        }
+        s.close();
+        setAutoCommit(true);
+    }
+
+    private void checkTable(Statement s, String table, int updates)
+        throws SQLException
+    {
+        JDBC.assertFullResultSet(
+            s.executeQuery("select count(*), min(n), max(n), " +
+                           "min(v), max(v) from " + table),
+            new String[][] { {
+                Integer.toString(ROWS),
+                Integer.toString(updates), Integer.toString(updates),
+                "updated in round " + (ROUNDS - 1),
+                "updated in round " + (ROUNDS - 1) } });
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("values SYSCS_UTIL.SYSCS_CHECK_TABLE(" +
+                           "'APP', '" + table.toUpperCase() + "')"),
+            "1");
+    }
+}
@@ -0,0 +1,143 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.LockEscalationTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for derby.locks.escalationLockTableSize, which makes transactions
+ * escalate their row locks to table locks before they reach
+ * derby.locks.escalationThreshold when the lock table holds too many locks.
+ */
+public class LockEscalationTest extends BaseJDBCTestCase
+{
+    /** The lowest escalation threshold Derby accepts. */
+    private static final int ESCALATION_THRESHOLD = 100;
+
+    /** The lock table size above which locks are escalated early. */
+    private static final int LOCK_TABLE_SIZE = 50;
+
+    public LockEscalationTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("LockEscalationTest");
+
+        Properties props = new Properties();
+        props.setProperty("derby.locks.escalationThreshold",
+                          String.valueOf(ESCALATION_THRESHOLD));
+        props.setProperty("derby.locks.escalationLockTableSize",
+                          String.valueOf(LOCK_TABLE_SIZE));
+
+        Test test = TestConfiguration.embeddedSuite(LockEscalationTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(TestConfiguration.singleUseDatabaseDecorator(
+                          test, "LockEscalationDB"));
+        return suite;
+    }
+
+    protected void setUp() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table t(id int primary key, v int)");
+        PreparedStatement ps = prepareStatement("insert into t values (?, 0)");
+        for (int i = 0; i < ESCALATION_THRESHOLD; i++)
+        {
+            ps.setInt(1, i);
+            ps.executeUpdate();
+        }
+        ps.close();
+        s.close();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        rollback();
+        Statement s = createStatement();
+        s.executeUpdate("drop table t");
+        s.close();
+        commit();
+        super.tearDown();
+    }
+
+    /**
+     * Check that a transaction which holds fewer row locks than the lock
+     * table size keeps its row locks.
+     */
+    public void testNoEscalationBelowLockTableSize() throws SQLException
+    {
+        setAutoCommit(false);
+        int rows = LOCK_TABLE_SIZE - 10;
+        assertUpdateCount(createStatement(), rows,
+                          "update t set v = 1 where id < " + rows);
+
+        JDBC.assertUnorderedResultSet(
+            lockSummary(),
+            new String[][] {
+                {"ROW", "X", String.valueOf(rows)},
+                {"TABLE", "IX", "1"},
+            });
+    }
+
+    /**
+     * Check that a transaction which fills the lock table gets its row
+     * locks escalated to a table lock, although it holds fewer locks than
+     * the escalation threshold.
+     */
+    public void testEscalationAboveLockTableSize() throws SQLException
+    {
+        setAutoCommit(false);
+        int rows = LOCK_TABLE_SIZE + 10;
+        assertUpdateCount(createStatement(), rows,
+                          "update t set v = 1 where id < " + rows);
+
+        JDBC.assertUnorderedResultSet(
+            lockSummary(),
+            new String[][] {
+                {"TABLE", "IX", "1"},
+                {"TABLE", "X", "1"},
+            });
+    }
+
+    /**
+     * Summarize the locks held on T by lock type and mode.
+     */
+    private ResultSet lockSummary() throws SQLException
+    {
+        return createStatement().executeQuery(
+            "select type, mode, count(*) from syscs_diag.lock_table " +
+            "where tablename = 'T' group by type, mode");
+    }
+}
@@ -0,0 +1,225 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.LockStatisticsTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for the SYSCS_DIAG.LOCK_STATISTICS table, which shows the locks
+ * requested on each table and index since the database was booted.
+ */
+public class LockStatisticsTest extends BaseJDBCTestCase
+{
+    private static final String LOCK_TIMEOUT = "40XL1";
+
+    public LockStatisticsTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("LockStatisticsTest");
+
+        Properties props = new Properties();
+        props.setProperty("derby.locks.waitTimeout", "1");
+        props.setProperty("derby.locks.escalationThreshold", "100");
+
+        Test test = TestConfiguration.embeddedSuite(LockStatisticsTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(TestConfiguration.singleUseDatabaseDecorator(
+                          test, "LockStatisticsDB"));
+        return suite;
+    }
+
+    protected void setUp() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table t(id int primary key, v int)");
+        PreparedStatement ps = prepareStatement("insert into t values (?, 0)");
+        for (int i = 0; i < 150; i++)
+        {
+            ps.setInt(1, i);
+            ps.executeUpdate();
+        }
+        ps.close();
+        s.close();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        rollback();
+        setAutoCommit(true);
+        Statement s = createStatement();
+        s.executeUpdate("drop table t");
+        s.close();
+        super.tearDown();
+    }
+
+    /**
+     * Get the statistics of the locks on the table T itself, not on its
+     * indexes.
+     */
+    private long[] tableStatistics() throws SQLException
+    {
+        PreparedStatement ps = prepareStatement(
+            "select acquisitions, waits, wait_time, timeouts, deadlocks, " +
+            "escalations from syscs_diag.lock_statistics " +
+            "where tablename = 'T' and indexname is null and tabletype = 'T'");
+        ResultSet rs = ps.executeQuery();
+        assertTrue("no lock statistics for T", rs.next());
+        long[] stats = new long[6];
+        for (int i = 0; i < stats.length; i++)
+        {
+            stats[i] = rs.getLong(i + 1);
+        }
+        assertFalse(rs.next());
+        rs.close();
+        ps.close();
+        return stats;
+    }
+
+    /**
+     * Check that the locks a transaction obtains are counted, and that
+     * another transaction which times out waiting for one of them is
+     * counted as a wait and a timeout.
+     */
+    public void testWaitAndTimeout() throws SQLException
+    {
+        long[] before = tableStatistics();
+        assertTrue("acquisitions: " + before[0], before[0] >= 150);
+
+        setAutoCommit(false);
+        assertUpdateCount(createStatement(), 1,
+                          "update t set v = 1 where id = 7");
+        long[] locked = tableStatistics();
+        assertTrue("acquisitions: " + locked[0], locked[0] > before[0]);
+
+        Connection other = openDefaultConnection();
+        other.setAutoCommit(false);
+        Statement s = other.createStatement();
+        assertStatementError(LOCK_TIMEOUT, s,
+                             "update t set v = 2 where id = 7");
+        other.rollback();
+        s.close();
+        other.close();
+
+        long[] after = tableStatistics();
+        assertEquals("waits", locked[1] + 1, after[1]);
+        assertTrue("wait time: " + after[2], after[2] >= locked[2] + 500);
+        assertEquals("timeouts", locked[3] + 1, after[3]);
+        assertEquals("deadlocks", locked[4], after[4]);
+        assertEquals("escalations", locked[5], after[5]);
+    }
+
+    /**
+     * Check that an escalation of row locks to a table lock is counted.
+     */
+    public void testEscalation() throws SQLException
+    {
+        long[] before = tableStatistics();
+
+        setAutoCommit(false);
+        assertUpdateCount(createStatement(), 150, "update t set v = 1");
+
+        long[] after = tableStatistics();
+        assertEquals("escalations", before[5] + 1, after[5]);
+        assertEquals("waits", before[1], after[1]);
+    }
+
+    /**
+     * Get the number of containers in the lock statistics.
+     */
+    private int containerCount() throws SQLException
+    {
+        Statement s = createStatement();
+        ResultSet rs = s.executeQuery(
+            "select count(*) from syscs_diag.lock_statistics");
+        assertTrue(rs.next());
+        int count = rs.getInt(1);
+        rs.close();
+        s.close();
+        return count;
+    }
+
+    /**
+     * Check that the statistics of a table and its index are dropped once
+     * the table has been dropped, and its containers removed by the post
+     * commit work, so that tables created and dropped again and again do
+     * not add up. The containers of tables dropped by earlier test cases
+     * may still be removed meanwhile, so the count may only go down.
+     */
+    public void testDroppedTable() throws SQLException, InterruptedException
+    {
+        Statement s = createStatement();
+        int before = containerCount();
+
+        for (int i = 0; i < 3; i++)
+        {
+            s.executeUpdate("create table churn(id int primary key, v int)");
+            s.executeUpdate("insert into churn values (1, 1), (2, 2)");
+            JDBC.assertSingleValueResultSet(
+                s.executeQuery("select count(*) " +
+                               "from syscs_diag.lock_statistics " +
+                               "where tablename = 'CHURN'"), "2");
+            s.executeUpdate("drop table churn");
+
+            // The containers are removed in the background
+            int count = containerCount();
+            for (int wait = 0; count > before && wait < 100; wait++)
+            {
+                Thread.sleep(100);
+                count = containerCount();
+            }
+            assertTrue("containers: " + count + " > " + before,
+                       count <= before);
+        }
+        s.close();
+    }
+
+    /**
+     * Check that the statistics of the primary key index of T are shown
+     * separately, with the name of the index.
+     */
+    public void testIndexNames() throws SQLException
+    {
+        JDBC.assertFullResultSet(
+            createStatement().executeQuery(
+                "select s.tablename, c.isindex " +
+                "from syscs_diag.lock_statistics s " +
+                "left outer join sys.sysconglomerates c " +
+                "on s.indexname = c.conglomeratename " +
+                "where s.tablename = 'T' and s.indexname is not null"),
+            new String[][] {{"T", "true"}});
+    }
+}
@@ -0,0 +1,222 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.LogCompressionTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for the compression of large log records
+ * (derby.storage.logCompressionThreshold), which must be uncompressed
+ * transparently by rollback and by recovery.
+ */
+public class LogCompressionTest extends BaseJDBCTestCase
+{
+    private static final int ROWS = 200;
+    private static final int VALUE_LENGTH = 4000;
+
+    public LogCompressionTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("LogCompressionTest");
+
+        Properties props = new Properties();
+        props.setProperty("derby.storage.logCompressionThreshold", "1000");
+
+        Test test = TestConfiguration.embeddedSuite(LogCompressionTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(
+            TestConfiguration.singleUseDatabaseDecorator(test, "LogCompressionDB"));
+        return suite;
+    }
+
+    /**
+     * Insert and update large rows, roll some of it back, and check the
+     * data and the log statistics before and after a reboot.
+     */
+    public void testRollbackAndReboot() throws SQLException
+    {
+        long compressed = getLogStatistic("COMPRESSED_LOG_RECORDS");
+        long saved = getLogStatistic("COMPRESSED_LOG_BYTES_SAVED");
+
+        Statement s = createStatement();
+        s.executeUpdate("create table lc1(id int primary key, v long varchar)");
+        change("lc1");
+
+        assertTrue(getLogStatistic("COMPRESSED_LOG_RECORDS") >=
+                   compressed + ROWS);
+        assertTrue(getLogStatistic("COMPRESSED_LOG_BYTES_SAVED") >
+                   saved + ROWS * VALUE_LENGTH / 2);
+
+        checkTable(s, "lc1");
+        s.close();
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        s = createStatement();
+        checkTable(s, "lc1");
+        s.executeUpdate("drop table lc1");
+        s.close();
+    }
+
+    /**
+     * Change a table with large rows in a forked JVM which exits without
+     * shutting down the database, and check that recovery redoes the
+     * compressed log records and undoes the uncommitted ones.
+     */
+    public void testCrashRecovery() throws Exception
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table lc2(id int primary key, v long varchar)");
+        s.close();
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        assertLaunchedJUnitTestMethod(
+            "org.apache.derbyTesting.functionTests.tests.store." +
+            "LogCompressionTest.launchChangesAndCrash",
+            TestConfiguration.getCurrent().getDefaultDatabaseName());
+
+        s = createStatement();
+        checkTable(s, "lc2");
+        s.executeUpdate("drop table lc2");
+        s.close();
+    }
+
+    /**
+     * Run in a forked JVM by testCrashRecovery.  Changes the table without
+     * a checkpoint, leaves an uncommitted update behind and exits without
+     * shutting down the database.
+     */
+    public void launchChangesAndCrash() throws SQLException
+    {
+        setSystemProperty("derby.storage.checkpointInterval", "128000000");
+
+        change("lc2");
+
+        setAutoCommit(false);
+        Statement s = createStatement();
+        s.executeUpdate("update lc2 set v = 'uncommitted'");
+        s.close();
+    }
+
+    /**
+     * Insert rows with large, compressible values, then update them, and
+     * roll back a second update and a delete.
+     */
+    private void change(String table) throws SQLException
+    {
+        setAutoCommit(false);
+        PreparedStatement ps =
+            prepareStatement("insert into " + table + " values (?, ?)");
+        for (int i = 0; i < ROWS; i++)
+        {
+            ps.setInt(1, i);
+            ps.setString(2, value("inserted", i));
+            ps.executeUpdate();
+        }
+        ps.close();
+        commit();
+
+        ps = prepareStatement("update " + table + " set v = ? where id = ?");
+        for (int i = 0; i < ROWS; i++)
+        {
+            ps.setString(1, value("updated", i));
+            ps.setInt(2, i);
+            ps.executeUpdate();
+        }
+        commit();
+
+        for (int i = 0; i < ROWS; i++)
+        {
+            ps.setString(1, value("rolled back", i));
+            ps.setInt(2, i);
+            ps.executeUpdate();
+        }
+        ps.close();
+        rollback();
+
+        Statement s = createStatement();
+        s.executeUpdate("delete from " + table);
+        s.close();
+        rollback();
+        setAutoCommit(true);
+    }
+
+    private static String value(String prefix, int id)
+    {
+        StringBuilder sb = new StringBuilder(VALUE_LENGTH);
+        while (sb.length() < VALUE_LENGTH)
+            sb.append(prefix).append(' ').append(id).append(' ');
+        sb.setLength(VALUE_LENGTH);
+        return sb.toString();
+    }
+
+    private void checkTable(Statement s, String table) throws SQLException
+    {
+        ResultSet rs =
+            s.executeQuery("select id, v from " + table + " order by id");
+        for (int i = 0; i < ROWS; i++)
+        {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+            assertEquals(value("updated", i), rs.getString(2));
+        }
+        assertFalse(rs.next());
+        rs.close();
+
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("values SYSCS_UTIL.SYSCS_CHECK_TABLE(" +
+                           "'APP', '" + table.toUpperCase() + "')"),
+            "1");
+    }
+
+    /**
+     * Get the value of a statistic from SYSCS_DIAG.LOG_STATISTICS.
+     */
+    private long getLogStatistic(String name) throws SQLException
+    {
+        PreparedStatement ps = prepareStatement(
+            "select value from SYSCS_DIAG.LOG_STATISTICS where name = ?");
+        ps.setString(1, name);
+        ResultSet rs = ps.executeQuery();
+        assertTrue("no statistic " + name, rs.next());
+        long value = rs.getLong(1);
+        assertFalse(rs.next());
+        rs.close();
+        ps.close();
+        return value;
+    }
+}
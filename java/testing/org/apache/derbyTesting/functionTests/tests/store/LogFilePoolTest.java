@@ -0,0 +1,166 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.LogFilePoolTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for the log file pool (derby.storage.logFilePoolSize), where log
+ * files made obsolete by a checkpoint are zeroed and kept as spare files
+ * for later log switches, and for the SYSCS_DIAG.LOG_STATISTICS table.
+ */
+public class LogFilePoolTest extends BaseJDBCTestCase
+{
+    private static final int ROUNDS = 6;
+    private static final int ROWS_PER_ROUND = 100;
+
+    public LogFilePoolTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("LogFilePoolTest");
+
+        Properties props = new Properties();
+        props.setProperty("derby.storage.logFilePoolSize", "2");
+        // the smallest log files allowed, to get many log switches
+        props.setProperty("derby.storage.logSwitchInterval", "100000");
+
+        Test test = TestConfiguration.embeddedSuite(LogFilePoolTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(
+            TestConfiguration.singleUseDatabaseDecorator(test, "LogFilePoolDB"));
+        return suite;
+    }
+
+    /**
+     * Get the value of a statistic from SYSCS_DIAG.LOG_STATISTICS.
+     */
+    private long getLogStatistic(String name) throws SQLException
+    {
+        PreparedStatement ps = prepareStatement(
+            "select value from SYSCS_DIAG.LOG_STATISTICS where name = ?");
+        ps.setString(1, name);
+        ResultSet rs = ps.executeQuery();
+        assertTrue("no statistic " + name, rs.next());
+        long value = rs.getLong(1);
+        assertFalse(rs.next());
+        rs.close();
+        ps.close();
+        return value;
+    }
+
+    /**
+     * Check that the diagnostic table lists the expected statistics.
+     */
+    public void testLogStatisticsTable() throws SQLException
+    {
+        Statement s = createStatement();
+        JDBC.assertColumnNames(
+            s.executeQuery("select * from SYSCS_DIAG.LOG_STATISTICS"),
+            new String[] { "NAME", "VALUE" });
+        JDBC.assertUnorderedResultSet(
+            s.executeQuery("select name from SYSCS_DIAG.LOG_STATISTICS"),
+            new String[][] {
+                { "LOG_FILE_NUMBER" },
+                { "LOG_SWITCHES" },
+                { "LOG_SWITCHES_FROM_POOL" },
+                { "LOG_SWITCH_TIME_TOTAL" },
+                { "LOG_SWITCH_TIME_MAX" },
+                { "SPARE_LOG_FILES" },
+                { "COMPRESSED_LOG_RECORDS" },
+                { "COMPRESSED_LOG_BYTES_SAVED" },
+            });
+        s.close();
+    }
+
+    /**
+     * Write enough log to switch log files many times, with checkpoints in
+     * between so that obsolete log files go back to the pool. Check that
+     * later switches reuse spare files and that the data is intact after
+     * a reboot.
+     */
+    public void testLogSwitchesUseSpareFiles() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table lfp(i int, c varchar(1000))");
+
+        long switchesBefore = getLogStatistic("LOG_SWITCHES");
+
+        setAutoCommit(false);
+        PreparedStatement ps =
+            prepareStatement("insert into lfp values (?, ?)");
+        char[] filler = new char[1000];
+        Arrays.fill(filler, 'x');
+        String c = new String(filler);
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            for (int i = 0; i < ROWS_PER_ROUND; i++)
+            {
+                ps.setInt(1, round * ROWS_PER_ROUND + i);
+                ps.setString(2, c);
+                ps.executeUpdate();
+            }
+            commit();
+            s.execute("call SYSCS_UTIL.SYSCS_CHECKPOINT_DATABASE()");
+        }
+        ps.close();
+        setAutoCommit(true);
+
+        assertTrue("no log switches",
+            getLogStatistic("LOG_SWITCHES") > switchesBefore);
+        assertTrue("no log switch reused a spare log file",
+            getLogStatistic("LOG_SWITCHES_FROM_POOL") > 0);
+        long spare = getLogStatistic("SPARE_LOG_FILES");
+        assertTrue("spare log files: " + spare, spare >= 0 && spare <= 2);
+        assertTrue(getLogStatistic("LOG_SWITCH_TIME_MAX") <=
+                   getLogStatistic("LOG_SWITCH_TIME_TOTAL"));
+
+        String expected = Integer.toString(ROUNDS * ROWS_PER_ROUND);
+        s.close();
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        // the spare files are adopted again on reboot
+        s = createStatement();
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from lfp"), expected);
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(distinct i) from lfp"), expected);
+        assertEquals(0, getLogStatistic("LOG_SWITCHES_FROM_POOL"));
+        s.executeUpdate("drop table lfp");
+        s.close();
+    }
+}
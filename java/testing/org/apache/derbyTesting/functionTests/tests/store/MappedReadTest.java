@@ -0,0 +1,246 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.MappedReadTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for reading pages through memory mapped container files
+ * (derby.storage.mappedReads), with a page cache much smaller than the
+ * table so that pages are read over and over while the file grows and
+ * shrinks.
+ */
+public class MappedReadTest extends BaseJDBCTestCase
+{
+    private static final int ROWS = 3000;
+
+    public MappedReadTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("MappedReadTest");
+
+        Properties props = new Properties();
+        props.setProperty("derby.storage.mappedReads", "true");
+        props.setProperty("derby.storage.pageCacheSize", "40");
+
+        Test test = TestConfiguration.embeddedSuite(MappedReadTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(
+            TestConfiguration.singleUseDatabaseDecorator(test, "MappedReadDB"));
+        return suite;
+    }
+
+    /**
+     * Grow a table and its index while reading them, shrink it with a
+     * compress, and check the data before and after a reboot.
+     */
+    public void testGrowAndShrink() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table mr(id int primary key, n int, " +
+                        "v varchar(500))");
+        s.executeUpdate("create index mr_n on mr(n)");
+
+        setAutoCommit(false);
+        PreparedStatement ps =
+            prepareStatement("insert into mr values (?, ?, ?)");
+        for (int i = 0; i < ROWS; i++)
+        {
+            ps.setInt(1, i);
+            ps.setInt(2, i % 100);
+            ps.setString(3, pad(i));
+            ps.executeUpdate();
+
+            // read the whole table now and then while it grows
+            if (i % 1000 == 999)
+                checkTable(s, i + 1);
+        }
+        ps.close();
+        commit();
+
+        s.executeUpdate("update mr set n = n + 1000");
+        commit();
+        checkTable(s, ROWS);
+
+        s.executeUpdate("delete from mr where id >= " + (ROWS / 3));
+        commit();
+        setAutoCommit(true);
+        s.execute("call SYSCS_UTIL.SYSCS_COMPRESS_TABLE('APP', 'MR', 0)");
+        checkTable(s, ROWS / 3);
+
+        s.close();
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        s = createStatement();
+        checkTable(s, ROWS / 3);
+        s.executeUpdate("drop table mr");
+        s.close();
+    }
+
+    /**
+     * Scan a table in other threads while it is truncated over and over by
+     * an in-place compress, which drops and unmaps the memory mapped
+     * segments of its file while pages may be read from them.
+     */
+    public void testTruncateWhileReading() throws Exception
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table tr(id int primary key, " +
+                        "v varchar(500))");
+        insert(0, ROWS);
+
+        final List<Throwable> errors =
+            Collections.synchronizedList(new ArrayList<Throwable>());
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread[] readers = new Thread[3];
+        for (int i = 0; i < readers.length; i++)
+        {
+            readers[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        Connection c = openDefaultConnection();
+                        c.setTransactionIsolation(
+                            Connection.TRANSACTION_READ_UNCOMMITTED);
+                        Statement rs = c.createStatement();
+                        while (!done.get())
+                        {
+                            ResultSet r = rs.executeQuery(
+                                "select count(*) from tr where v like '%-'");
+                            JDBC.assertDrainResults(r, 1);
+                        }
+                        rs.close();
+                        c.close();
+                    }
+                    catch (Throwable t)
+                    {
+                        errors.add(t);
+                    }
+                }
+            };
+            readers[i].start();
+        }
+
+        try
+        {
+            for (int round = 0; round < 10; round++)
+            {
+                s.executeUpdate("delete from tr where id >= " + (ROWS / 3));
+                s.execute("call SYSCS_UTIL.SYSCS_INPLACE_COMPRESS_TABLE(" +
+                          "'APP', 'TR', 1, 1, 1)");
+                insert(ROWS / 3, ROWS);
+            }
+        }
+        finally
+        {
+            done.set(true);
+            for (int i = 0; i < readers.length; i++)
+                readers[i].join();
+        }
+
+        if (!errors.isEmpty())
+            fail("reader failed", errors.get(0));
+
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from tr where v like '%-'"),
+            Integer.toString(ROWS));
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("values SYSCS_UTIL.SYSCS_CHECK_TABLE('APP', 'TR')"),
+            "1");
+        s.executeUpdate("drop table tr");
+        s.close();
+    }
+
+    /**
+     * Insert rows into the table TR, in one transaction.
+     */
+    private void insert(int first, int last) throws SQLException
+    {
+        setAutoCommit(false);
+        PreparedStatement ps = prepareStatement("insert into tr values (?, ?)");
+        for (int i = first; i < last; i++)
+        {
+            ps.setInt(1, i);
+            ps.setString(2, pad(i));
+            ps.executeUpdate();
+        }
+        ps.close();
+        commit();
+        setAutoCommit(true);
+    }
+
+    private static String pad(int i)
+    {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 400)
+            sb.append(i).append('-');
+        return sb.toString();
+    }
+
+    private void checkTable(Statement s, int rows) throws SQLException
+    {
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from mr where v like '%-'"),
+            Integer.toString(rows));
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from mr " +
+                           "--derby-properties index=mr_n\n" +
+                           "where n >= 0"),
+            Integer.toString(rows));
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select sum(id) from mr where mod(id, 7) = 0"),
+            Long.toString(sumMultiplesOf7(rows)));
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("values SYSCS_UTIL.SYSCS_CHECK_TABLE('APP', 'MR')"),
+            "1");
+    }
+
+    private static long sumMultiplesOf7(int rows)
+    {
+        long sum = 0;
+        for (int i = 0; i < rows; i += 7)
+            sum += i;
+        return sum;
+    }
+}
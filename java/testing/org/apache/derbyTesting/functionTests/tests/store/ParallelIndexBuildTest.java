@@ -0,0 +1,191 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.ParallelIndexBuildTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for the index builds whose external sorts sort their merge runs on
+ * worker threads (derby.storage.indexSortThreads).
+ */
+public class ParallelIndexBuildTest extends BaseJDBCTestCase
+{
+    private static final int ROWS = 5000;
+
+    public ParallelIndexBuildTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("ParallelIndexBuildTest");
+
+        // Make the sorts external from the start, with small merge runs,
+        // so that the workers sort many chunks and the runs need more than
+        // one merge pass.
+        Properties props = new Properties();
+        props.setProperty("derby.storage.indexSortThreads", "4");
+        props.setProperty("derby.storage.sortBufferMax", "64");
+        props.setProperty("derby.debug.true", "testSort");
+
+        Test test = TestConfiguration.embeddedSuite(
+            ParallelIndexBuildTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(TestConfiguration.singleUseDatabaseDecorator(
+                          test, "ParallelIndexBuildDB"));
+        return suite;
+    }
+
+    protected void setUp() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table t(k int, v varchar(20))");
+        s.close();
+
+        // Insert the keys in scattered order.
+        setAutoCommit(false);
+        PreparedStatement ps = prepareStatement("insert into t values (?, ?)");
+        for (int i = 0; i < ROWS; i++)
+        {
+            int k = (i * 3739) % ROWS;
+            ps.setInt(1, k);
+            ps.setString(2, "v" + k);
+            ps.executeUpdate();
+        }
+        ps.close();
+        commit();
+        setAutoCommit(true);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        dropTable("T");
+        super.tearDown();
+    }
+
+    /**
+     * Check the index, and that a scan of it returns the keys in order.
+     */
+    private void checkIndex(String index, int rows, boolean descending)
+        throws SQLException
+    {
+        assertCheckTable("T");
+
+        ResultSet rs = createStatement().executeQuery(
+            "select k from t --DERBY-PROPERTIES index=" + index + "\n" +
+            "order by k" + (descending ? " desc" : ""));
+        for (int i = 0; i < rows; i++)
+        {
+            assertTrue(rs.next());
+            assertEquals(descending ? rows - 1 - i : i, rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        rs.close();
+    }
+
+    /**
+     * Build indexes of every kind from a sort with workers.
+     */
+    public void testCreateIndex() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create index t_idx on t(k)");
+        checkIndex("T_IDX", ROWS, false);
+        s.executeUpdate("drop index t_idx");
+
+        s.executeUpdate("create unique index t_idx on t(k desc)");
+        checkIndex("T_IDX", ROWS, true);
+        assertStatementError("23505", s, "insert into t values (17, 'x')");
+        s.close();
+    }
+
+    /**
+     * Check that duplicate keys are found, both when they are sorted into
+     * the same merge run and when they are in different runs.
+     */
+    public void testDuplicateKeys() throws SQLException
+    {
+        Statement s = createStatement();
+
+        // Inserted right after each other, so in the same chunk.
+        s.executeUpdate("insert into t values (4000, 'dup'), (4000, 'dup')");
+        assertStatementError("23505", s, "create unique index t_idx on t(k)");
+        s.executeUpdate("delete from t where v = 'dup'");
+
+        // One in the first merge run, the other in the last one.
+        s.executeUpdate("insert into t values (0, 'dup')");
+        assertStatementError("23505", s, "create unique index t_idx on t(k)");
+        assertStatementError("42X65", s, "drop index t_idx");
+
+        s.executeUpdate("delete from t where v = 'dup'");
+        s.executeUpdate("create unique index t_idx on t(k)");
+        checkIndex("T_IDX", ROWS, false);
+        s.close();
+    }
+
+    /**
+     * Check a unique constraint on a nullable column, whose sort lets
+     * nulls be duplicates.
+     */
+    public void testUniqueWithNulls() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("insert into t values (null, 'a'), (null, 'b')");
+        s.executeUpdate("alter table t add constraint t_uk unique (k)");
+        assertCheckTable("T");
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from t where k is null"), "2");
+        assertStatementError("23505", s, "insert into t values (42, 'x')");
+        s.close();
+    }
+
+    /**
+     * Check that compressing the table rebuilds its indexes from sorts
+     * with workers.
+     */
+    public void testCompressTable() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create index t_idx on t(k)");
+        s.executeUpdate("create index t_idx2 on t(v)");
+        s.executeUpdate("delete from t where k >= " + ROWS / 2);
+        s.execute("call syscs_util.syscs_compress_table('APP', 'T', 1)");
+        checkIndex("T_IDX", ROWS / 2, false);
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from t " +
+                           "--DERBY-PROPERTIES index=T_IDX2\n" +
+                           "where v like 'v1%'"),
+            "1111");
+        s.close();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.ParallelRedoTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for parallel recovery redo (derby.storage.redoThreads), where log
+ * operations on pages are redone by several threads partitioned by
+ * container.
+ */
+public class ParallelRedoTest extends BaseJDBCTestCase
+{
+    private static final int TABLES = 4;
+    private static final int ROWS = 1000;
+
+    public ParallelRedoTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("ParallelRedoTest");
+
+        Properties props = new Properties();
+        props.setProperty("derby.storage.redoThreads", "4");
+
+        Test test = TestConfiguration.embeddedSuite(ParallelRedoTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(
+            TestConfiguration.singleUseDatabaseDecorator(test, "ParallelRedoDB"));
+        return suite;
+    }
+
+    /**
+     * Change several tables and their indexes in a forked JVM which exits
+     * without shutting down the database, and check that recovery with
+     * several redo threads brings back exactly the committed changes.
+     */
+    public void testParallelRedo() throws Exception
+    {
+        Statement s = createStatement();
+        for (int t = 0; t < TABLES; t++)
+        {
+            s.executeUpdate("create table pr" + t +
+                            "(id int primary key, v varchar(100), n int)");
+            s.executeUpdate("create index pr" + t + "_n on pr" + t + "(n)");
+        }
+        s.close();
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        assertLaunchedJUnitTestMethod(
+            "org.apache.derbyTesting.functionTests.tests.store." +
+            "ParallelRedoTest.launchChangesAndCrash",
+            TestConfiguration.getCurrent().getDefaultDatabaseName());
+
+        s = createStatement();
+        for (int t = 0; t < TABLES; t++)
+        {
+            // every other row was deleted, the rest updated once, and the
+            // rolled back and uncommitted changes are gone
+            JDBC.assertFullResultSet(
+                s.executeQuery("select count(*), sum(n), min(v), max(v) " +
+                               "from pr" + t),
+                new String[][] { {
+                    Integer.toString(ROWS / 2),
+                    Integer.toString(ROWS / 2),
+                    "updated", "updated" } });
+            JDBC.assertSingleValueResultSet(
+                s.executeQuery("select count(*) from pr" + t +
+                               " --derby-properties index=pr" + t + "_n\n" +
+                               " where n = 1"),
+                Integer.toString(ROWS / 2));
+            JDBC.assertSingleValueResultSet(
+                s.executeQuery("values SYSCS_UTIL.SYSCS_CHECK_TABLE(" +
+                               "'APP', 'PR" + t + "')"),
+                "1");
+            s.executeUpdate("drop table pr" + t);
+        }
+        s.close();
+    }
+
+    /**
+     * Run in a forked JVM by testParallelRedo. Changes the tables without
+     * a checkpoint, so that recovery must redo all of it, and exits without
+     * shutting down the database.
+     */
+    public void launchChangesAndCrash() throws SQLException
+    {
+        setSystemProperty("derby.storage.checkpointInterval", "128000000");
+
+        Connection c = getConnection();
+        c.setAutoCommit(false);
+        Statement s = createStatement();
+        for (int t = 0; t < TABLES; t++)
+        {
+            PreparedStatement ps =
+                prepareStatement("insert into pr" + t + " values (?, ?, 0)");
+            for (int i = 0; i < ROWS; i++)
+            {
+                ps.setInt(1, i);
+                ps.setString(2, "inserted " + i);
+                ps.executeUpdate();
+            }
+            ps.close();
+            c.commit();
+
+            s.executeUpdate("delete from pr" + t + " where mod(id, 2) = 1");
+            c.commit();
+
+            s.executeUpdate("update pr" + t + " set v = 'updated', n = n + 1");
+            c.commit();
+
+            s.executeUpdate("update pr" + t + " set n = n + 10");
+            c.rollback();
+        }
+
+        s.executeUpdate("delete from pr0");
+    }
+}
@@ -0,0 +1,184 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.ReadAheadTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for reading pages ahead of sequential scans
+ * (derby.storage.readAheadPages), with a page cache much smaller than the
+ * tables so that the scans read most pages from disk, and with the tables
+ * shrinking and being dropped while pages are read ahead.
+ */
+public class ReadAheadTest extends BaseJDBCTestCase
+{
+    private static final int ROWS = 3000;
+
+    public ReadAheadTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("ReadAheadTest");
+
+        Properties props = new Properties();
+        props.setProperty("derby.storage.readAheadPages", "16");
+        props.setProperty("derby.storage.readAheadBudget", "32");
+        props.setProperty("derby.storage.pageCacheSize", "40");
+
+        Test test = TestConfiguration.embeddedSuite(ReadAheadTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(
+            TestConfiguration.singleUseDatabaseDecorator(test, "ReadAheadDB"));
+        return suite;
+    }
+
+    /**
+     * Scan a table and its index after a reboot, with a second scan of
+     * another table interleaved, and again after the table has shrunk.
+     */
+    public void testScans() throws SQLException
+    {
+        Statement s = createStatement();
+        createTable(s, "ra1");
+        createTable(s, "ra2");
+
+        s.close();
+        getConnection().close();
+        TestConfiguration.getCurrent().shutdownDatabase();
+
+        s = createStatement();
+        checkTable(s, "ra1", ROWS);
+
+        // two scans going on at the same time
+        Statement s2 = createStatement();
+        ResultSet rs1 = s.executeQuery("select id, v from ra1 order by id");
+        ResultSet rs2 = s2.executeQuery(
+            "select id from ra2 --derby-properties index=ra2_n\n" +
+            "where n >= 0");
+        int rows1 = 0;
+        int rows2 = 0;
+        while (rs1.next())
+        {
+            assertEquals(rows1, rs1.getInt(1));
+            assertEquals(pad(rows1), rs1.getString(2));
+            rows1++;
+            if (rs2.next())
+                rows2++;
+        }
+        while (rs2.next())
+            rows2++;
+        rs1.close();
+        rs2.close();
+        s2.close();
+        assertEquals(ROWS, rows1);
+        assertEquals(ROWS, rows2);
+
+        s.executeUpdate("delete from ra1 where id >= " + (ROWS / 3));
+        s.execute("call SYSCS_UTIL.SYSCS_COMPRESS_TABLE('APP', 'RA1', 0)");
+        checkTable(s, "ra1", ROWS / 3);
+
+        s.executeUpdate("drop table ra1");
+        checkTable(s, "ra2", ROWS);
+        s.executeUpdate("drop table ra2");
+        s.close();
+    }
+
+    /**
+     * Shrink and drop tables right after scanning them, while the pages
+     * read ahead of the scans may still be queued.
+     */
+    public void testShrinkAndDrop() throws SQLException
+    {
+        Statement s = createStatement();
+        for (int i = 0; i < 3; i++)
+        {
+            createTable(s, "ra3");
+            checkTable(s, "ra3", ROWS);
+            s.executeUpdate("delete from ra3");
+            s.execute("call SYSCS_UTIL.SYSCS_INPLACE_COMPRESS_TABLE(" +
+                      "'APP', 'RA3', 1, 1, 1)");
+            checkTable(s, "ra3", 0);
+            s.executeUpdate("drop table ra3");
+        }
+        s.close();
+    }
+
+    private void createTable(Statement s, String table) throws SQLException
+    {
+        s.executeUpdate("create table " + table +
+                        "(id int primary key, n int, v varchar(500))");
+        s.executeUpdate("create index " + table + "_n on " + table + "(n)");
+
+        setAutoCommit(false);
+        PreparedStatement ps =
+            prepareStatement("insert into " + table + " values (?, ?, ?)");
+        for (int i = 0; i < ROWS; i++)
+        {
+            ps.setInt(1, i);
+            ps.setInt(2, i % 100);
+            ps.setString(3, pad(i));
+            ps.executeUpdate();
+        }
+        ps.close();
+        commit();
+        setAutoCommit(true);
+    }
+
+    private static String pad(int i)
+    {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 400)
+            sb.append(i).append('-');
+        return sb.toString();
+    }
+
+    private void checkTable(Statement s, String table, int rows)
+        throws SQLException
+    {
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from " + table +
+                           " where v like '%-'"),
+            Integer.toString(rows));
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("select count(*) from " + table +
+                           " --derby-properties index=" + table + "_n\n" +
+                           "where n >= 0"),
+            Integer.toString(rows));
+        JDBC.assertSingleValueResultSet(
+            s.executeQuery("values SYSCS_UTIL.SYSCS_CHECK_TABLE('APP', '" +
+                           table.toUpperCase() + "')"),
+            "1");
+    }
+}
@@ -0,0 +1,183 @@
+/*
+
+   Derby - Class org.apache.derbyTesting.functionTests.tests.store.SnapshotReadTest
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to you under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.derbyTesting.functionTests.tests.store;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import junit.framework.Test;
+import org.apache.derbyTesting.junit.BaseJDBCTestCase;
+import org.apache.derbyTesting.junit.BaseTestSuite;
+import org.apache.derbyTesting.junit.JDBC;
+import org.apache.derbyTesting.junit.SystemPropertyTestSetup;
+import org.apache.derbyTesting.junit.TestConfiguration;
+
+/**
+ * Tests for snapshot reads (derby.storage.snapshotReads), which let table
+ * scans at read committed isolation read the committed version of rows that
+ * other transactions are changing, instead of waiting for their locks.
+ */
+public class SnapshotReadTest extends BaseJDBCTestCase
+{
+    private static final String LOCK_TIMEOUT = "40XL1";
+
+    private static final String[][] COMMITTED =
+        {{"1", "one"}, {"2", "two"}, {"3", "three"}};
+
+    /** Connection which changes the rows without committing. */
+    private Connection writer;
+
+    public SnapshotReadTest(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        BaseTestSuite suite = new BaseTestSuite("SnapshotReadTest");
+
+        Properties props = new Properties();
+        props.setProperty("derby.storage.snapshotReads", "true");
+        props.setProperty("derby.locks.waitTimeout", "2");
+
+        Test test = TestConfiguration.embeddedSuite(SnapshotReadTest.class);
+        test = new SystemPropertyTestSetup(test, props, true);
+        suite.addTest(TestConfiguration.singleUseDatabaseDecorator(
+                          test, "SnapshotReadDB"));
+        return suite;
+    }
+
+    protected void setUp() throws SQLException
+    {
+        Statement s = createStatement();
+        s.executeUpdate("create table t(id int, v varchar(20))");
+        s.executeUpdate(
+            "insert into t values (1, 'one'), (2, 'two'), (3, 'three')");
+        s.close();
+
+        writer = openDefaultConnection();
+        writer.setAutoCommit(false);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        writer.rollback();
+        writer.close();
+        writer = null;
+
+        rollback();
+        setAutoCommit(true);
+        Statement s = createStatement();
+        s.executeUpdate("drop table t");
+        s.close();
+        super.tearDown();
+    }
+
+    /**
+     * Change rows in one transaction, and check that a read committed scan
+     * in another transaction sees the committed rows without waiting, and
+     * the new rows once the changes are committed.
+     */
+    public void testReadCommittedDoesNotWait() throws SQLException
+    {
+        changeRows(writer);
+
+        Statement reader = createStatement();
+        JDBC.assertFullResultSet(
+            reader.executeQuery("select id, v from t order by id"),
+            COMMITTED);
+        JDBC.assertSingleValueResultSet(
+            reader.executeQuery("select id from t where v = 'two'"), "2");
+        JDBC.assertSingleValueResultSet(
+            reader.executeQuery("select count(*) from t where v = 'ONE'"),
+            "0");
+
+        // the writer sees its own changes
+        Statement ws = writer.createStatement();
+        JDBC.assertFullResultSet(
+            ws.executeQuery("select id, v from t order by id"),
+            new String[][] {{"1", "ONE"}, {"3", "three"}, {"4", "four"}});
+        ws.close();
+
+        writer.commit();
+
+        JDBC.assertFullResultSet(
+            reader.executeQuery("select id, v from t order by id"),
+            new String[][] {{"1", "ONE"}, {"3", "three"}, {"4", "four"}});
+        reader.close();
+    }
+
+    /**
+     * Check that the committed rows are read after the writer has rolled
+     * back its changes, and while it changes them again.
+     */
+    public void testRollback() throws SQLException
+    {
+        changeRows(writer);
+        writer.rollback();
+
+        Statement reader = createStatement();
+        JDBC.assertFullResultSet(
+            reader.executeQuery("select id, v from t order by id"),
+            COMMITTED);
+
+        changeRows(writer);
+        JDBC.assertFullResultSet(
+            reader.executeQuery("select id, v from t order by id"),
+            COMMITTED);
+        reader.close();
+    }
+
+    /**
+     * Snapshot reads are not used at serializable isolation, where the
+     * reader must still wait for the writer.
+     */
+    public void testSerializableWaits() throws SQLException
+    {
+        changeRows(writer);
+
+        getConnection().setTransactionIsolation(
+            Connection.TRANSACTION_SERIALIZABLE);
+        setAutoCommit(false);
+        Statement reader = createStatement();
+        assertStatementError(
+            LOCK_TIMEOUT, reader, "select id, v from t order by id");
+        reader.close();
+        rollback();
+        getConnection().setTransactionIsolation(
+            Connection.TRANSACTION_READ_COMMITTED);
+    }
+
+    /**
+     * Update, delete and insert a row in the transaction of the given
+     * connection, without committing.
+     */
+    private static void changeRows(Connection c) throws SQLException
+    {
+        Statement s = c.createStatement();
+        assertUpdateCount(s, 1, "update t set v = 'ONE' where id = 1");
+        assertUpdateCount(s, 1, "delete from t where id = 2");
+        assertUpdateCount(s, 1, "insert into t values (4, 'four')");
+        s.close();
+    }
+}
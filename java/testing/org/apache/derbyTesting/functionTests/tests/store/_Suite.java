@@ -86,6 +86,24 @@ public class _Suite extends BaseTestCase  {
         suite.addTest(StoreScriptsTest.suite());
         suite.addTest(Derby4923Test.suite());
         suite.addTest(SpaceTableTest.suite());
+        suite.addTest(GroupCommitTest.suite());
+        suite.addTest(AsyncCommitTest.suite());
+        suite.addTest(LogFilePoolTest.suite());
+        suite.addTest(ParallelRedoTest.suite());
+        suite.addTest(IncrementalCheckpointTest.suite());
+        suite.addTest(LogCompressionTest.suite());
+        suite.addTest(MappedReadTest.suite());
+        suite.addTest(ReadAheadTest.suite());
+        suite.addTest(BackgroundWriterTest.suite());
+        suite.addTest(SnapshotReadTest.suite());
+        suite.addTest(DeadlockDetectorTest.suite());
+        suite.addTest(LockEscalationTest.suite());
+        suite.addTest(LockStatisticsTest.suite());
+        suite.addTest(BTreeSuffixCompressionTest.suite());
+        suite.addTest(BTreeBulkLoadTest.suite());
+        suite.addTest(ParallelIndexBuildTest.suite());
+        suite.addTest(BTreeDefragmentTest.suite());
+        suite.addTest(HashIndexTest.suite());
         
         /* Tests that only run in sane builds */
         if (SanityManager.DEBUG) {
@@ -349,6 +349,14 @@ public class RuntimeStatisticsParser {
         return (statistics.indexOf("Hash Join ResultSet") != -1);
     }
 
+    /**
+     * @return true if a merge join was used
+     */
+    public boolean usedMergeJoin()
+    {
+        return (statistics.indexOf("Merge Join ResultSet") != -1);
+    }
+
     /**
      * @return true if a nested loop left outer join was used
      */
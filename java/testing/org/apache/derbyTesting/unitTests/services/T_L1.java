@@ -86,4 +86,9 @@ class T_L1 implements Lockable {
 	{
 		return false;
 	}
+
+	public long getLockStatisticsContainerId()
+	{
+		return -1;
+	}
 }
@@ -98,5 +98,10 @@ class T_L2 implements Lockable {
 	{
 		return false;
 	}
+
+	public long getLockStatisticsContainerId()
+	{
+		return -1;
+	}
 	
 }
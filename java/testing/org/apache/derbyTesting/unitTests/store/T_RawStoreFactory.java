@@ -3091,8 +3091,8 @@ public class T_RawStoreFactory extends T_MultiThreadedIterations {
 		rhs[1] = page1.makeRecordHandle(RecordHandle.RESERVED1_RECORD_HANDLE);
 		rhs[2] = page1.makeRecordHandle(RecordHandle.DEALLOCATE_PROTECTION_HANDLE);
 		rhs[3] = page1.makeRecordHandle(RecordHandle.PREVIOUS_KEY_HANDLE);
-		rhs[4] = page1.makeRecordHandle(RecordHandle.RESERVED4_RECORD_HANDLE);
-		rhs[5] = page1.makeRecordHandle(RecordHandle.RESERVED5_RECORD_HANDLE);
+		rhs[4] = page1.makeRecordHandle(RecordHandle.HASH_KEY_HANDLE);
+		rhs[5] = page1.makeRecordHandle(RecordHandle.HASH_INDEX_HANDLE);
 
 		for (int i = 0; i < RecordHandle.FIRST_RECORD_ID; i++)
 		{